@@ -9,12 +9,14 @@ module uk.ac.leeds.ccg.grids {
     exports uk.ac.leeds.ccg.grids.d2.chunk.b;
     exports uk.ac.leeds.ccg.grids.d2.chunk.bd;
     exports uk.ac.leeds.ccg.grids.d2.chunk.d;
+    exports uk.ac.leeds.ccg.grids.d2.chunk.f;
     exports uk.ac.leeds.ccg.grids.d2.chunk.i;
     exports uk.ac.leeds.ccg.grids.d2.chunk.stats;
     exports uk.ac.leeds.ccg.grids.d2.grid;
     exports uk.ac.leeds.ccg.grids.d2.grid.b;
     exports uk.ac.leeds.ccg.grids.d2.grid.bd;
     exports uk.ac.leeds.ccg.grids.d2.grid.d;
+    exports uk.ac.leeds.ccg.grids.d2.grid.f;
     exports uk.ac.leeds.ccg.grids.d2.grid.i;
     exports uk.ac.leeds.ccg.grids.d2.grid.stats;
     exports uk.ac.leeds.ccg.grids.d2.stats;
@@ -18,7 +18,10 @@ package uk.ac.leeds.ccg.grids.core;
 import uk.ac.leeds.ccg.grids.memory.Grids_Memory;
 import uk.ac.leeds.ccg.grids.memory.Grids_MemoryManager;
 import uk.ac.leeds.ccg.grids.memory.Grids_AccountDetail;
+import uk.ac.leeds.ccg.grids.memory.Grids_DirectBufferPool;
 import uk.ac.leeds.ccg.grids.memory.Grids_Account;
+import uk.ac.leeds.ccg.grids.memory.Grids_EvictionPolicy;
+import uk.ac.leeds.ccg.grids.memory.Grids_EvictionPolicyLRU;
 import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
 import uk.ac.leeds.ccg.grids.d2.chunk.Grids_Chunk;
 import uk.ac.leeds.ccg.grids.d2.grid.Grids_Grid;
@@ -28,12 +31,22 @@ import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
 import uk.ac.leeds.ccg.generic.core.Generic_Environment;
 import uk.ac.leeds.ccg.generic.io.Generic_Defaults;
 import uk.ac.leeds.ccg.generic.io.Generic_Path;
 import uk.ac.leeds.ccg.math.Math_BigDecimal;
+import uk.ac.leeds.ccg.grids.io.Grids_ChunkPrefetcher;
+import uk.ac.leeds.ccg.grids.io.Grids_CompressedChunkStore;
 import uk.ac.leeds.ccg.grids.io.Grids_Files;
 import uk.ac.leeds.ccg.grids.process.Grids_Processor;
 
@@ -64,51 +77,6 @@ public class Grids_Environment extends Grids_MemoryManager
      */
     protected transient Set<Grids_Grid> grids;
 
-    /**
-     * For indicating which chunks of which grids are not to be cleared from the
-     * fast access memory. This map is modified by data processing algorithms to
-     * to try to ensure a reasonable efficiency and prevent chunks being cleared
-     * only to be reloaded shortly afterwards, when there were either: other
-     * chunks to clear that would not have been reloaded in the same frame; or,
-     * some other data from some other environment that would have been better
-     * to clear instead.
-     *
-     * Maintaining this map has a marginal efficiency cost which may be
-     * noticeable when all the data fits easily into the available fast access
-     * memory and comparing the processing functionality of this library with
-     * other libraries which essentially generate the same processed results.
-     * However this library is more geared to supporting the processing of large
-     * volumes of data (when it is typically not the case that all the data will
-     * fit in the fast access memory of the machine, and processing may involve
-     * a significant amount of caching, clearing and reloading of data). In such
-     * circumstances it would be more interesting to compare the performance of
-     * this library with other software that is also geared are not geared for
-     * such memory management.
-     *
-     * For some methods cell values from a set of neighbouring chunks are wanted
-     * along with other nearby cell values or chunk statistics from other grids.
-     * An example case is calculating geographically weighted statistics such as
-     * the difference between two grids, where the statistic takes in values
-     * from each grid within a specific distance of any cell to produce a result
-     * for a given cell in a new output grid.
-     *
-     * There are additional maps and sets that help improve algorithmic
-     * efficiency further, including a set of very lightweight chunks which are
-     * hardly worth clearing unless options are very limited.
-     *
-     * In some cases it might be best for the method to throw an Exception
-     * rather than to slowly grind on and potentially taking overly long to
-     * produce a result when restructuring the data into smaller or larger
-     * chunks or storing the data in chunks of different types may be a
-     * worthwhile step.
-     *
-     * An overhead is involved in changing chunk types and chunk restructuring.
-     * What is best to do depends on many factors, but generally what is wanted
-     * is a good solution or a solution that works rather than the best solution
-     * - the one that creates a result in the fastest and most efficient way.
-     */
-    protected transient HashMap<Grids_Grid, Set<Grids_2D_ID_int>> notToClear;
-
     /**
      * For storing a {@link Math_BigDecimal} instance.
      */
@@ -119,6 +87,133 @@ public class Grids_Environment extends Grids_MemoryManager
      */
     protected transient Grids_Processor processor;
 
+    /**
+     * For deciding which chunks to swap. By default this is a
+     * {@link Grids_EvictionPolicyLRU}.
+     */
+    protected transient Grids_EvictionPolicy evictionPolicy;
+
+    /**
+     * The number of threads used to write swapped chunks in the background.
+     * If this is {@code 0} then chunks are written on the thread that swaps
+     * them.
+     */
+    protected int writeBehindThreads = 1;
+
+    /**
+     * The maximum number of chunks that may be waiting to be written. When
+     * this is reached swapping another chunk waits for a write to finish so
+     * that the heap does not fill with chunks that have been swapped but not
+     * released.
+     */
+    protected int writeBehindLimit = 16;
+
+    /**
+     * For writing swapped chunks in the background.
+     */
+    protected transient ExecutorService writeBehindPool;
+
+    /**
+     * Limits the number of pending writes to {@link #writeBehindLimit}.
+     */
+    protected transient Semaphore writeBehindPermits;
+
+    /**
+     * The chunks that have been swapped out of grids and are waiting to be
+     * written (or for which writing failed). Each chunk stays referenced here
+     * until it is written, and if it is needed again it is taken from here
+     * rather than being read from file. These chunks are released from
+     * {@link #memoryUsed} when they are handed to be written (see
+     * {@link #writeBehind(Grids_Grid, Grids_2D_ID_int, Grids_Chunk)}), the
+     * memory they use being bounded by {@link #writeBehindLimit}.
+     */
+    protected transient ConcurrentHashMap<Grids_Grid, ConcurrentHashMap<Grids_2D_ID_int, PendingWrite>> pendingWrites;
+
+    /**
+     * The number of threads used to read chunks ahead of them being needed.
+     * If this is {@code 0} then chunks are not read ahead.
+     */
+    protected int prefetchThreads = 1;
+
+    /**
+     * For reading chunks ahead of them being needed.
+     */
+    protected transient Grids_ChunkPrefetcher prefetcher;
+
+    /**
+     * For holding swapped chunks in memory in compressed form. If this is
+     * {@code null} then swapped chunks are written to file.
+     */
+    protected transient Grids_CompressedChunkStore compressedStore;
+
+    /**
+     * The number of bytes the loaded chunks of {@link #grids} may use before
+     * fast access memory is regarded as low and chunks are swapped. By default
+     * this is half the maximum heap size. If this is not positive then memory
+     * is instead regarded as low when
+     * {@code getTotalFreeMemory() < Memory_Threshold}.
+     */
+    protected long memoryBudget = Runtime.getRuntime().maxMemory() / 2L;
+
+    /**
+     * A running total of the number of bytes accounted as used by loaded
+     * chunks. Chunks are accounted when they are put into a grid and released
+     * when they are cleared (see {@link #account(Grids_Chunk)} and
+     * {@link #release(Grids_Chunk)}).
+     */
+    protected final AtomicLong memoryUsed = new AtomicLong();
+
+    /**
+     * The number of bytes outside the heap the loaded chunks of
+     * {@link #grids} may use before fast access memory is regarded as low and
+     * chunks are swapped. By default this is half the maximum heap size, which
+     * is also the default limit on direct memory. Jobs with large off heap
+     * grids are expected to raise this along with the JVM limit on direct
+     * memory ({@code -XX:MaxDirectMemorySize}).
+     */
+    protected long offHeapBudget = Runtime.getRuntime().maxMemory() / 2L;
+
+    /**
+     * A running total of the number of bytes outside the heap accounted as
+     * used by loaded chunks (see {@link Grids_Chunk#getOffHeapFootprint()}).
+     */
+    protected final AtomicLong offHeapMemoryUsed = new AtomicLong();
+
+    /**
+     * For allocating and freeing the direct buffers of off heap chunks.
+     */
+    protected transient Grids_DirectBufferPool directBufferPool;
+
+    /**
+     * A chunk waiting to be written and the task writing it.
+     */
+    protected static class PendingWrite {
+
+        /**
+         * The chunk.
+         */
+        protected final Grids_Chunk c;
+
+        /**
+         * The permits from which a permit was acquired for the write.
+         */
+        protected final Semaphore permits;
+
+        /**
+         * The task writing the chunk.
+         */
+        protected Future<?> f;
+
+        /**
+         * @param c What {@link #c} is set to.
+         * @param permits What {@link #permits} is set to.
+         */
+        protected PendingWrite(Grids_Chunk c, Semaphore permits) {
+            this.c = c;
+            this.permits = permits;
+        }
+    }
+
     /**
      * For storing a {@link Grids_Files} instance.
      */
@@ -192,6 +287,505 @@ public class Grids_Environment extends Grids_MemoryManager
         return processor;
     }
 
+    /**
+     * If {@link #evictionPolicy} is {@code null} it is initialised as a new
+     * {@link Grids_EvictionPolicyLRU}.
+     *
+     * @return {@link #evictionPolicy} initialising it first if it is
+     * {@code null}.
+     */
+    public Grids_EvictionPolicy getEvictionPolicy() {
+        if (evictionPolicy == null) {
+            evictionPolicy = new Grids_EvictionPolicyLRU();
+        }
+        return evictionPolicy;
+    }
+
+    /**
+     * Sets {@link #evictionPolicy} to {@code p} and adds the chunks loaded in
+     * {@link #grids} to it. The access times recorded on loaded chunks are
+     * logical times of the previous policy, so they are reset to zero.
+     *
+     * @param p What {@link #evictionPolicy} is set to.
+     */
+    public void setEvictionPolicy(Grids_EvictionPolicy p) {
+        evictionPolicy = p;
+        grids.forEach(g -> g.getData().values().forEach(c -> {
+            c.setLastAccess(0L);
+            p.added(c);
+        }));
+    }
+
+    /**
+     * For checking whether fast access memory is low. If
+     * {@link #memoryBudget} is positive this is a comparison of
+     * {@link #memoryUsed} with it, which is cheap enough to be done for each
+     * cell processed and is not dependent on when garbage is collected.
+     * Otherwise this polls the free memory of the runtime. Memory is also
+     * low if the off heap memory used exceeds {@link #offHeapBudget}.
+     *
+     * @return {@code true} if fast access memory is low.
+     */
+    public final boolean isMemoryLow() {
+        if (offHeapMemoryUsed.get() > offHeapBudget) {
+            return true;
+        }
+        if (memoryBudget > 0L) {
+            return memoryUsed.get() > memoryBudget;
+        }
+        return getTotalFreeMemory() < Memory_Threshold;
+    }
+
+    /**
+     * @return {@link #memoryBudget}
+     */
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Sets {@link #memoryBudget} and then swaps chunks until the loaded chunks
+     * are within it.
+     *
+     * @param b What {@link #memoryBudget} is set to. If this is not positive
+     * then the free memory of the runtime is polled instead.
+     * @throws IOException If encountered.
+     * @throws Exception If encountered.
+     */
+    public void setMemoryBudget(long b) throws IOException, Exception {
+        memoryBudget = b;
+        checkAndMaybeFreeMemory();
+    }
+
+    /**
+     * @return The number of bytes accounted as used by loaded chunks.
+     */
+    public long getMemoryUsed() {
+        return memoryUsed.get();
+    }
+
+    /**
+     * Accounts for the memory used by {@code c}. If {@code c} is already
+     * accounted for then the difference is accounted for.
+     *
+     * @param c The chunk.
+     */
+    public void account(Grids_Chunk c) {
+        long b = c.getMemoryFootprint();
+        memoryUsed.addAndGet(b - c.getAccountedMemory());
+        c.setAccountedMemory(b);
+        long o = c.getOffHeapFootprint();
+        if (o != 0L || c.getAccountedOffHeapMemory() != 0L) {
+            offHeapMemoryUsed.addAndGet(o - c.getAccountedOffHeapMemory());
+            c.setAccountedOffHeapMemory(o);
+        }
+    }
+
+    /**
+     * Releases the memory accounted for {@code c}.
+     *
+     * @param c The chunk.
+     */
+    public void release(Grids_Chunk c) {
+        memoryUsed.addAndGet(-c.getAccountedMemory());
+        c.setAccountedMemory(0L);
+        offHeapMemoryUsed.addAndGet(-c.getAccountedOffHeapMemory());
+        c.setAccountedOffHeapMemory(0L);
+    }
+
+    /**
+     * @return The number of bytes outside the heap accounted as used by loaded
+     * chunks.
+     */
+    public long getOffHeapMemoryUsed() {
+        return offHeapMemoryUsed.get();
+    }
+
+    /**
+     * @return {@link #offHeapBudget}
+     */
+    public long getOffHeapBudget() {
+        return offHeapBudget;
+    }
+
+    /**
+     * Sets {@link #offHeapBudget} and then swaps chunks until the loaded
+     * chunks are within it.
+     *
+     * @param b What {@link #offHeapBudget} is set to.
+     * @throws IOException If encountered.
+     * @throws Exception If encountered.
+     */
+    public void setOffHeapBudget(long b) throws IOException, Exception {
+        offHeapBudget = b;
+        checkAndMaybeFreeMemory();
+    }
+
+    /**
+     * @return {@link #directBufferPool} initialising it if it is {@code null}
+     * to keep up to 64 MiB of free buffers.
+     */
+    public synchronized Grids_DirectBufferPool getDirectBufferPool() {
+        if (directBufferPool == null) {
+            directBufferPool = new Grids_DirectBufferPool(1L << 26);
+        }
+        return directBufferPool;
+    }
+
+    /**
+     * Uses {@link #evictionPolicy} to select a chunk to swap from all the
+     * chunks worth swapping in {@link #grids} that are not pinned.
+     *
+     * @param g A grid from which no chunk is to be selected. If {@code null}
+     * then chunks are selected from all grids.
+     * @return The chunk selected or {@code null} if there are no chunks to
+     * select from.
+     */
+    protected Grids_Chunk selectChunkToSwap(Grids_Grid g) {
+        return getEvictionPolicy().select(c -> {
+            Grids_Grid cg = c.getGrid();
+            return cg != g && grids.contains(cg) && cg.isWorthSwapping(c);
+        });
+    }
+
+    /**
+     * @return {@code true} if swapped chunks are written in the background.
+     */
+    public boolean isWriteBehind() {
+        return writeBehindThreads > 0;
+    }
+
+    /**
+     * @return {@link #writeBehindThreads}
+     */
+    public int getWriteBehindThreads() {
+        return writeBehindThreads;
+    }
+
+    /**
+     * Sets the number of threads used to write swapped chunks in the
+     * background. Any pending writes are finished first.
+     *
+     * @param n What {@link #writeBehindThreads} is set to. If this is
+     * {@code 0} then swapped chunks are written on the thread that swaps them.
+     * @param limit What {@link #writeBehindLimit} is set to.
+     * @throws IOException If a pending write failed.
+     */
+    public synchronized void setWriteBehind(int n, int limit)
+            throws IOException {
+        awaitWrites();
+        if (writeBehindPool != null) {
+            writeBehindPool.shutdown();
+            writeBehindPool = null;
+        }
+        writeBehindThreads = n;
+        writeBehindLimit = Math.max(1, limit);
+        writeBehindPermits = null;
+    }
+
+    /**
+     * Initialises {@link #writeBehindPool}, {@link #writeBehindPermits} and
+     * {@link #pendingWrites} if they are {@code null}.
+     */
+    private synchronized void initWriteBehind() {
+        if (pendingWrites == null) {
+            pendingWrites = new ConcurrentHashMap<>();
+        }
+        if (writeBehindPermits == null) {
+            writeBehindPermits = new Semaphore(writeBehindLimit);
+        }
+        if (writeBehindPool == null) {
+            writeBehindPool = Executors.newFixedThreadPool(writeBehindThreads,
+                    r -> {
+                        Thread t = new Thread(r, "Grids_WriteBehind");
+                        t.setDaemon(true);
+                        return t;
+                    });
+        }
+    }
+
+    /**
+     * Hands the chunk {@code c} that has been cleared from grid {@code g} to
+     * be written in the background. This waits if there are already
+     * {@link #writeBehindLimit} chunks waiting to be written. The memory used
+     * by {@code c} has been released (see {@link #release(Grids_Chunk)}) when
+     * it was cleared, so swapping it lowers {@link #memoryUsed} straight away
+     * and the loops that swap chunks until memory is not low do not swap
+     * more chunks than needed. The memory used by the chunks waiting to be
+     * written that is not accounted is bounded by {@link #writeBehindLimit}.
+     * If the chunk is reclaimed before it is written (see
+     * {@link #reclaimPendingWrite(Grids_Grid, Grids_2D_ID_int)}) it is
+     * accounted for again by the grid.
+     *
+     * @param g The grid.
+     * @param i The chunk ID.
+     * @param c The chunk.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public void writeBehind(Grids_Grid g, Grids_2D_ID_int i, Grids_Chunk c)
+            throws InterruptedException {
+        initWriteBehind();
+        Semaphore permits = writeBehindPermits;
+        permits.acquire();
+        PendingWrite pw = new PendingWrite(c, permits);
+        ConcurrentHashMap<Grids_2D_ID_int, PendingWrite> m
+                = pendingWrites.computeIfAbsent(g,
+                        k -> new ConcurrentHashMap<>());
+        // Synchronized so pw.f is set before others waiting on pw can get it.
+        synchronized (pw) {
+            m.put(i, pw);
+            pw.f = writeBehindPool.submit(() -> {
+                try {
+                    g.write(i, c);
+                    c.setCacheUpToDate(true);
+                    if (m.remove(i, pw)) {
+                        // Not reclaimed so no longer needed.
+                        c.free();
+                    }
+                } catch (IOException ex) {
+                    // Keep c in pendingWrites so the data are not lost. The
+                    // write is tried again by awaitWrites.
+                    env.log(ex.getMessage());
+                    throw ex;
+                } finally {
+                    permits.release();
+                }
+                return null;
+            });
+        }
+    }
+
+    /**
+     * If the chunk with chunk ID {@code i} in grid {@code g} is waiting to be
+     * written, then it is removed from {@link #pendingWrites} and returned. If
+     * the write has not started it is cancelled, otherwise this waits for it
+     * to finish so that the chunk is not modified while being written.
+     *
+     * @param g The grid.
+     * @param i The chunk ID.
+     * @return The chunk or {@code null} if it is not waiting to be written.
+     */
+    public Grids_Chunk reclaimPendingWrite(Grids_Grid g, Grids_2D_ID_int i) {
+        if (pendingWrites == null) {
+            return null;
+        }
+        ConcurrentHashMap<Grids_2D_ID_int, PendingWrite> m
+                = pendingWrites.get(g);
+        if (m == null) {
+            return null;
+        }
+        PendingWrite pw = m.remove(i);
+        if (pw == null) {
+            return null;
+        }
+        Future<?> f;
+        // This waits for any write being retried by awaitWrites to finish.
+        synchronized (pw) {
+            f = pw.f;
+        }
+        if (f.cancel(false)) {
+            // The task will not run so release its permit here.
+            pw.permits.release();
+        } else {
+            try {
+                f.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | CancellationException ex) {
+                // The chunk is still not cached.
+            }
+        }
+        return pw.c;
+    }
+
+    /**
+     * @param g The grid.
+     * @param i The chunk ID.
+     * @return {@code true} if the chunk with chunk ID {@code i} in grid
+     * {@code g} is waiting to be written.
+     */
+    public boolean isPendingWrite(Grids_Grid g, Grids_2D_ID_int i) {
+        if (pendingWrites == null) {
+            return false;
+        }
+        ConcurrentHashMap<Grids_2D_ID_int, PendingWrite> m
+                = pendingWrites.get(g);
+        return m != null && m.containsKey(i);
+    }
+
+    /**
+     * If {@link #prefetchThreads} is greater than {@code 0} and
+     * {@link #prefetcher} is {@code null}, then {@link #prefetcher} is
+     * initialised to read ahead 2 chunks in chunk row major order and hold at
+     * most 8 chunks that have been read ahead.
+     *
+     * @return {@link #prefetcher} which is {@code null} if chunks are not read
+     * ahead.
+     */
+    public Grids_ChunkPrefetcher getPrefetcher() {
+        if (prefetcher == null && prefetchThreads > 0) {
+            synchronized (this) {
+                if (prefetcher == null) {
+                    prefetcher = new Grids_ChunkPrefetcher(this,
+                            prefetchThreads, 2, 8);
+                }
+            }
+        }
+        return prefetcher;
+    }
+
+    /**
+     * Sets the number of threads used to read chunks ahead of them being
+     * needed. Any chunks already read ahead are discarded.
+     *
+     * @param n What {@link #prefetchThreads} is set to. If this is {@code 0}
+     * then chunks are not read ahead.
+     * @param depth The number of chunks to read ahead in chunk row major
+     * order.
+     * @param limit The maximum number of chunks held that have been read
+     * ahead.
+     */
+    public synchronized void setPrefetch(int n, int depth, int limit) {
+        if (prefetcher != null) {
+            prefetcher.shutdown();
+            prefetcher = null;
+        }
+        prefetchThreads = n;
+        if (n > 0) {
+            prefetcher = new Grids_ChunkPrefetcher(this, n, depth, limit);
+        }
+    }
+
+    /**
+     * @return {@link #compressedStore} which is {@code null} if swapped chunks
+     * are not held in memory in compressed form.
+     */
+    public Grids_CompressedChunkStore getCompressedStore() {
+        return compressedStore;
+    }
+
+    /**
+     * Sets the number of bytes of memory that may be used to hold swapped
+     * chunks in compressed form. Any chunks already held are spilled.
+     *
+     * @param capacity The maximum number of compressed bytes to hold. If this
+     * is not positive then swapped chunks are not held in memory.
+     * @param minRatio The minimum ratio of uncompressed to compressed bytes
+     * for a chunk to be held.
+     * @throws IOException If encountered spilling chunks.
+     */
+    public synchronized void setCompressedStore(long capacity,
+            double minRatio) throws IOException {
+        if (compressedStore != null) {
+            compressedStore.spill();
+            compressedStore = null;
+        }
+        if (capacity > 0L) {
+            compressedStore = new Grids_CompressedChunkStore(this, capacity,
+                    minRatio);
+        }
+    }
+
+    /**
+     * @param g The grid.
+     * @param i The chunk ID.
+     * @return {@code true} if the chunk with chunk ID {@code i} in grid
+     * {@code g} is held in {@link #compressedStore}.
+     */
+    public boolean isCompressed(Grids_Grid g, Grids_2D_ID_int i) {
+        Grids_CompressedChunkStore s = compressedStore;
+        return s != null && s.contains(g, i);
+    }
+
+    /**
+     * @return The number of chunks waiting to be written.
+     */
+    public int getNumberOfPendingWrites() {
+        if (pendingWrites == null) {
+            return 0;
+        }
+        return pendingWrites.values().stream().mapToInt(m -> m.size()).sum();
+    }
+
+    /**
+     * Waits for all the chunks waiting to be written to be written.
+     *
+     * @throws IOException If a write failed.
+     */
+    public void awaitWrites() throws IOException {
+        if (pendingWrites != null) {
+            for (Grids_Grid g : pendingWrites.keySet()) {
+                awaitWrites(g);
+            }
+        }
+    }
+
+    /**
+     * Waits for the chunks of grid {@code g} that are waiting to be written
+     * to be written. If writing a chunk in the background failed, then it is
+     * written again by the calling thread.
+     *
+     * @param g The grid.
+     * @throws IOException If writing a chunk failed again. The chunks for
+     * which writing failed remain in {@link #pendingWrites} so they are not
+     * lost and are tried again by the next call.
+     */
+    public void awaitWrites(Grids_Grid g) throws IOException {
+        if (pendingWrites == null) {
+            return;
+        }
+        ConcurrentHashMap<Grids_2D_ID_int, PendingWrite> m
+                = pendingWrites.get(g);
+        if (m == null) {
+            return;
+        }
+        for (Map.Entry<Grids_2D_ID_int, PendingWrite> e : m.entrySet()) {
+            Grids_2D_ID_int i = e.getKey();
+            PendingWrite pw = e.getValue();
+            Future<?> f;
+            synchronized (pw) {
+                f = pw.f;
+            }
+            try {
+                f.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (CancellationException ex) {
+                // Reclaimed.
+            } catch (ExecutionException ex) {
+                retryWrite(g, m, i, pw);
+            }
+        }
+    }
+
+    /**
+     * Writes a chunk for which writing in the background failed. This holds
+     * the lock of {@code pw}, so the chunk cannot be reclaimed whilst it is
+     * being written.
+     *
+     * @param g The grid.
+     * @param m The chunks of {@code g} waiting to be written.
+     * @param i The chunk ID.
+     * @param pw The pending write.
+     * @throws IOException If writing fails.
+     */
+    private void retryWrite(Grids_Grid g,
+            ConcurrentHashMap<Grids_2D_ID_int, PendingWrite> m,
+            Grids_2D_ID_int i, PendingWrite pw) throws IOException {
+        synchronized (pw) {
+            if (m.get(i) != pw) {
+                // Reclaimed.
+                return;
+            }
+            g.write(i, pw.c);
+            pw.c.setCacheUpToDate(true);
+            if (m.remove(i, pw)) {
+                pw.c.free();
+            }
+        }
+    }
+
     /**
      * If {@link #grids} is {@code null} it is initialised as a new
      * {@link java.util.Set}.
@@ -203,36 +797,40 @@ public class Grids_Environment extends Grids_MemoryManager
     }
 
     /**
-     * Initialise or re-initialise a store of references to data that would
-     * ideally not be cleared.
+     * Removes the not to clear marks of all the chunks of all the grids in
+     * {@link #grids}. This re-initialises what would ideally not be cleared.
+     * Chunks pinned with {@link Grids_Grid#pin(Grids_2D_ID_int)} stay pinned,
+     * so this is safe whilst chunks are being processed in other threads.
      */
     public final void initNotToClear() {
-        notToClear = new HashMap<>();
+        if (grids != null) {
+            grids.forEach(Grids_Grid::clearNotToClear);
+        }
     }
 
     /**
-     * Adds the chunk IDs of {@code g} to {@link #notToClear}.
+     * Marks all the chunks of {@code g} as not to clear.
      *
-     * @param g The grid to add to {@link #notToClear}.
+     * @param g The grid.
      */
     public final void addToNotToClear(Grids_Grid g) {
-        notToClear.put(g, g.getChunkIDs());
+        g.getChunkIDs().forEach(g::addToNotToClear);
     }
 
     /**
-     * Removes the chunk IDs of {@code g} from {@link #notToClear}.
+     * Removes the not to clear marks of all the chunks of {@code g}.
      *
-     * @param g The grid to remove from {@link #notToClear}.
+     * @param g The grid.
      */
     public final void removeFromNotToClear(Grids_Grid g) {
-        notToClear.remove(g);
+        g.clearNotToClear();
     }
 
     /**
-     * Adds chunk row {@code cr} of chunks of {@code g} to {@link #notToClear}.
+     * Marks chunk row {@code cr} of chunks of {@code g} as not to clear.
      *
-     * @param g The grid with chunks to add to {@link #notToClear}.
-     * @param cr The row of chunks in {@code g} to add to {@link #notToClear}.
+     * @param g The grid.
+     * @param cr The row of chunks in {@code g} to mark.
      */
     public final void addToNotToClear(Grids_Grid g, int cr) {
         int n = g.getNChunkCols();
@@ -242,12 +840,11 @@ public class Grids_Environment extends Grids_MemoryManager
     }
 
     /**
-     * Removed chunk row {@code cr} of chunks of {@code g} from
-     * {@link #notToClear}.
+     * Removes the not to clear marks of chunk row {@code cr} of chunks of
+     * {@code g}.
      *
-     * @param g The grid with chunks to remove from {@link #notToClear}.
-     * @param cr The row of chunks in {@code g} to remove from
-     * {@link #notToClear}.
+     * @param g The grid.
+     * @param cr The row of chunks in {@code g} to unmark.
      */
     public final void removeFromNotToClear(Grids_Grid g, int cr) {
         int n = g.getNChunkCols();
@@ -257,28 +854,26 @@ public class Grids_Environment extends Grids_MemoryManager
     }
 
     /**
-     * Adds the chunk ID {@code i} of {@code g} to {@link #notToClear}.
+     * Marks the chunk with chunk ID {@code i} in {@code g} as not to clear.
+     * Unlike {@link Grids_Grid#pin(Grids_2D_ID_int)} this does not count, so
+     * a single call to
+     * {@link #removeFromNotToClear(Grids_Grid, Grids_2D_ID_int)} removes the
+     * mark. The marks are separate from pin counts, so removing them never
+     * unpins a chunk pinned by other code.
      *
      * @param g The grid containing chunk with chunk ID {@code i}.
-     * @param i The chunk ID to add to {@link #notToClear}.
+     * @param i The chunk ID.
      */
     public final void addToNotToClear(Grids_Grid g, Grids_2D_ID_int i) {
-        if (notToClear.containsKey(g)) {
-            notToClear.get(g).add(i);
-        } else {
-            Set<Grids_2D_ID_int> chunkIDs = new HashSet<>();
-            chunkIDs.add(i);
-            notToClear.put(g, chunkIDs);
-        }
+        g.addToNotToClear(i);
     }
 
     /**
-     * Adds the chunk ID {@code i} of each grid in {@code g} to
-     * {@link #notToClear}.
+     * Marks the chunk with chunk ID {@code i} in each grid in {@code g} as not
+     * to clear.
      *
-     * @param g The array of grids for which each chunk ID {@code i} is added to
-     * {@link #notToClear}.
-     * @param i The chunk ID to add to {@link #notToClear}.
+     * @param g The grids.
+     * @param i The chunk ID.
      */
     public final void addToNotToClear(Grids_Grid[] g, Grids_2D_ID_int i) {
         for (Grids_Grid g1 : g) {
@@ -287,109 +882,75 @@ public class Grids_Environment extends Grids_MemoryManager
     }
 
     /**
-     * Puts everything in {@code m} into {@link notToClear}.
+     * Marks the chunks in {@code m} as not to clear.
      *
-     * @param m The map contents to add to {@link #notToClear}.
+     * @param m The chunk IDs to mark keyed by grid.
      */
     public final void addToNotToClear(
-            HashMap<Grids_Grid, Set<Grids_2D_ID_int>> m) {
-        Iterator<Grids_Grid> ite = m.keySet().iterator();
-        while (ite.hasNext()) {
-            Grids_Grid g = ite.next();
-            if (notToClear.containsKey(g)) {
-                notToClear.get(g).addAll(m.get(g));
-            } else {
-                notToClear.put(g, m.get(g));
-            }
-        }
+            Map<Grids_Grid, Set<Grids_2D_ID_int>> m) {
+        m.forEach((g, s) -> addToNotToClear(g, s));
     }
 
     /**
-     * Removes the chunk ID {@code i} of each grid in {@code g} from
-     * {@link #notToClear}.
+     * Removes the not to clear marks of the chunk with chunk ID {@code i} in
+     * each grid in {@code g}.
      *
-     * @param g The array of grids for which each chunk ID {@code i} is removed
-     * from {@link #notToClear}.
-     * @param i The chunk ID to remove from {@link #notToClear}.
+     * @param g The grids.
+     * @param i The chunk ID.
      */
     public final void removeFromNotToClear(Grids_Grid[] g, Grids_2D_ID_int i) {
         for (Grids_Grid g1 : g) {
             removeFromNotToClear(g1, i);
         }
     }
-    
+
     /**
-     * Adds all the chunk IDs in {@code chunkIDs} of chunks in {@code g} into
-     * {@link #notToClear}.
+     * Removes the not to clear marks of the chunks of {@code g} with chunk IDs
+     * in {@code s}.
      *
-     * @param g The grid with chunk IDs to add to {@link #notToClear}.
-     * @param s The chunk IDs to add to {@link #notToClear}.
+     * @param g The grid.
+     * @param s The chunk IDs.
      */
     public final void removeFromNotToClear(Grids_Grid g, Set<Grids_2D_ID_int> s) {
-        if (notToClear.containsKey(g)) {
-            notToClear.get(g).removeAll(s);
-        }
+        s.forEach(g::removeFromNotToClear);
     }
 
     /**
-     * Removes everything in {@code m} from {@link notToClear}.
+     * Removes the not to clear marks of the chunks in {@code m}.
      *
-     * @param m The map contents to remove from {@link #notToClear}.
+     * @param m The chunk IDs to unmark keyed by grid.
      */
     public final void removeFromNotToClear(
-            HashMap<Grids_Grid, Set<Grids_2D_ID_int>> m) {
-        Iterator<Grids_Grid> ite = m.keySet().iterator();
-        while (ite.hasNext()) {
-            Grids_Grid g = ite.next();
-            if (notToClear.containsKey(g)) {
-                notToClear.get(g).removeAll(m.get(g));
-            }
-        }
+            Map<Grids_Grid, Set<Grids_2D_ID_int>> m) {
+        m.forEach((g, s) -> removeFromNotToClear(g, s));
     }
 
     /**
-     * Adds all the chunk IDs in {@code chunkIDs} of chunks in {@code g} into
-     * {@link #notToClear}.
+     * Marks the chunks of {@code g} with chunk IDs in {@code s} as not to
+     * clear.
      *
-     * @param g The grid with chunk IDs to add to {@link #notToClear}.
-     * @param s The chunk IDs to add to {@link #notToClear}.
+     * @param g The grid.
+     * @param s The chunk IDs.
      */
     public final void addToNotToClear(Grids_Grid g, Set<Grids_2D_ID_int> s) {
-        if (notToClear.containsKey(g)) {
-            notToClear.get(g).addAll(s);
-        } else {
-            notToClear.put(g, s);
-        }
+        s.forEach(g::addToNotToClear);
     }
 
     /**
-     * Remove the chunk with chunk ID {@code i} in {@code g} from
-     * {@link #notToClear}.
+     * Removes the not to clear mark of the chunk with chunk ID {@code i} in
+     * {@code g}. Pins counted by {@link Grids_Grid#pin(Grids_2D_ID_int)} are
+     * not changed.
      *
-     * @param g The grid with chunk ID {@code i} which will be removed from
-     * {@link #notToClear} if it is there.
-     * @param i The chunk ID of {@code g} to remove from {@link #notToClear}.
+     * @param g The grid.
+     * @param i The chunk ID.
      */
     public final void removeFromNotToClear(Grids_Grid g, Grids_2D_ID_int i) {
-        if (notToClear.containsKey(g)) {
-            /**
-             * Decided that it is best not to remove g from notToClear if
-             * notToClear.get(g).isEmpty(). So the empty Set remains and this
-             * takes up a small amount of resource, but it is probably better to
-             * keep it in case it is re-used rather than destroying it.
-             */
-            notToClear.get(g).remove(i);
-//            Set<Grids_2D_ID_int> chunkIDs = notToClear.get(g);
-//            chunkIDs.remove(chunkID);
-//            if (chunkIDs.isEmpty()) {
-//                notToClear.remove(g);
-//            }
-        }
+        g.removeFromNotToClear(i);
     }
 
     /**
-     * Adds all the ChunkIDs of g that are within cellDistance of the chunk with
-     * chunk ID {@code i} to {@link #notToClear}.
+     * Marks all the chunks of g that are within cellDistance of the chunk with
+     * chunk ID {@code i}.
      *
      * @param g The Grid.
      * @param i Central chunk ID.
@@ -401,19 +962,12 @@ public class Grids_Environment extends Grids_MemoryManager
      * have fewer.)
      * @param chunkNCols The normal number of columns in a chunk. (The last
      * column may have fewer.)
-     * @param cellDistance The cell distance within which all chunk IDs in
-     * {@code g} are added to {@link #notToClear}.
+     * @param cellDistance The cell distance within which all chunks in
+     * {@code g} are marked.
      */
     public final void addToNotToClear(Grids_Grid g, Grids_2D_ID_int i,
             int chunkRow, int chunkCol, int chunkNRows, int chunkNCols,
             int cellDistance) {
-        Set<Grids_2D_ID_int> s;
-        if (notToClear.containsKey(g)) {
-            s = notToClear.get(g);
-        } else {
-            s = new HashSet<>();
-            notToClear.put(g, s);
-        }
         int t;
         int r = 0;
         t = 0;
@@ -432,7 +986,7 @@ public class Grids_Environment extends Grids_MemoryManager
             for (int l = -j; l <= j; l++) {
                 int cc = chunkCol + l;
                 if (g.isInGrid(cr, cc)) {
-                    s.add(new Grids_2D_ID_int(cr, cc));
+                    g.addToNotToClear(new Grids_2D_ID_int(cr, cc));
                 }
             }
         }
@@ -479,6 +1033,9 @@ public class Grids_Environment extends Grids_MemoryManager
      */
     public void removeGrid(Grids_Grid g) {
         grids.remove(g);
+        if (compressedStore != null) {
+            compressedStore.clear(g);
+        }
     }
 
     /**
@@ -1108,7 +1665,7 @@ public class Grids_Environment extends Grids_MemoryManager
      * A method to check and maybe free fast access memory by writing chunks to
      * file. If available fast access memory is not low then this simply returns
      * true. If available fast access memory is low, then an attempt is made to
-     * clear some chunks. Chunks in {@link #notToClear} are not cleared unless
+     * clear some chunks. Chunks in pinned chunks are not cleared unless
      * desperate. If not enough data is found to clear then an OutOfMemoryError
      * is thrown.
      *
@@ -1132,7 +1689,7 @@ public class Grids_Environment extends Grids_MemoryManager
                 env.log("<DEBUG>");
                 env.log("dataToClear " + Boolean.toString(this.dataToClear));
                 env.log("" + this.grids.size() + " Grids");
-                env.log("" + this.notToClear.size() + " notToClear.size()");
+                env.log("" + getNotToClear().size() + " notToClear.size()");
                 env.log("</DEBUG>");
                 checkAndMaybeFreeMemory(hoome);
                 
@@ -1158,7 +1715,7 @@ public class Grids_Environment extends Grids_MemoryManager
      * A method to check and maybe free fast access memory by clearing chunks
      * from memory. If available fast access memory is not low then this simply
      * returns {@code true}. If available fast access memory is low, then an
-     * attempt is made to cache some chunks. Chunks in {@link #notToClear} are
+     * attempt is made to cache some chunks. Chunks in pinned chunks are
      * not cleared unless desperate.
      *
      * @return {@code true} if there is sufficient memory to continue and
@@ -1167,19 +1724,20 @@ public class Grids_Environment extends Grids_MemoryManager
      */
     @Override
     public boolean checkAndMaybeFreeMemory() throws IOException, Exception {
-        if (getTotalFreeMemory() < Memory_Threshold) {
-            if (notToClear.isEmpty()) {
+        if (isMemoryLow()) {
+            HashMap<Grids_Grid, Set<Grids_2D_ID_int>> ntc = getNotToClear();
+            if (ntc.isEmpty()) {
                 return checkAndMaybeFreeMemory_ClearAny();
             } else {
                 do {
-                    if (swapChunkExcept(notToClear)) {
-                        if (getTotalFreeMemory() < Memory_Threshold) {
+                    if (swapChunkExcept(ntc)) {
+                        if (!isMemoryLow()) {
                             return true;
                         }
                     } else {
                         break;
                     }
-                } while (getTotalFreeMemory() < Memory_Threshold);
+                } while (isMemoryLow());
                 return checkAndMaybeFreeMemory_ClearAny();
             }
         } else {
@@ -1199,13 +1757,13 @@ public class Grids_Environment extends Grids_MemoryManager
      */
     protected boolean checkAndMaybeFreeMemory_ClearAny() throws IOException,
             Exception {
-        if (getTotalFreeMemory() < Memory_Threshold) {
+        if (isMemoryLow()) {
             do {
                 if (!swapChunk()) {
                     break;
                 }
-            } while (getTotalFreeMemory() < Memory_Threshold);
-            return getTotalFreeMemory() < Memory_Threshold;
+            } while (isMemoryLow());
+            return !isMemoryLow();
         } else {
             return true;
         }
@@ -1260,7 +1818,7 @@ public class Grids_Environment extends Grids_MemoryManager
      * A method to check and maybe free fast access memory by writing chunks to
      * file. If available fast access memory is not low then this returns
      * {@code true}. If available fast access memory is low, then an attempt is
-     * made to clear some chunks. Chunks in {@link #notToClear} are not cleared
+     * made to clear some chunks. Chunks in pinned chunks are not cleared
      * unless desperate. No chunk in {@code g} is cleared.
      *
      * @param g The grid from which chunks are not cleared.
@@ -1270,19 +1828,20 @@ public class Grids_Environment extends Grids_MemoryManager
      */
     protected boolean checkAndMaybeFreeMemory(Grids_Grid g) throws IOException,
             Exception {
-        if (getTotalFreeMemory() < Memory_Threshold) {
-            notToClear.put(g, g.getChunkIDs());
+        if (isMemoryLow()) {
+            HashMap<Grids_Grid, Set<Grids_2D_ID_int>> m = getNotToClear();
+            m.put(g, g.getChunkIDs());
             do {
-                if (!swapChunkExcept(notToClear)) {
+                if (!swapChunkExcept(m)) {
                     break;
                 }
-            } while (getTotalFreeMemory() < Memory_Threshold);
+            } while (isMemoryLow());
             do {
                 if (!swapChunkExcept(g)) {
                     break;
                 }
-            } while (getTotalFreeMemory() < Memory_Threshold);
-            return getTotalFreeMemory() < Memory_Threshold;
+            } while (isMemoryLow());
+            return !isMemoryLow();
         } else {
             return true;
         }
@@ -1293,12 +1852,12 @@ public class Grids_Environment extends Grids_MemoryManager
      * file. The chunk with chunk ID {@code i} in {@code g} is not cleared. If
      * available fast access memory is not low then this simply returns
      * {@code true}. If available fast access memory is low, then an attempt is
-     * made to clear chunks with IDs not in {@link #notToClear}. If this is
+     * made to clear chunks with IDs not in pinned chunks. If this is
      * unsuccessful in clearing sufficient memory such that
-     * {@code getTotalFreeMemory() < Memory_Threshold}, then chunks with IDs in
-     * {@link #notToClear} are cleared. If this is unsuccessful in clearing
+     * {@code !isMemoryLow()}, then chunks with IDs in
+     * pinned chunks are cleared. If this is unsuccessful in clearing
      * sufficient memory such that
-     * {@code getTotalFreeMemory() < Memory_Threshold}, then {@code false} is
+     * {@code !isMemoryLow()}, then {@code false} is
      * returned.
      *
      * @param g The grid from which the chunk with ID {@code i} is not cleared.
@@ -1344,12 +1903,12 @@ public class Grids_Environment extends Grids_MemoryManager
      * The chunk with chunk ID {@code i} in {@code g} is not cleared. If
      * available fast access memory is not low then this simply returns
      * {@code true}. If available fast access memory is low, then an attempt is
-     * made to clear chunks with IDs not in {@link #notToClear}. If this is
+     * made to clear chunks with IDs not in pinned chunks. If this is
      * unsuccessful in clearing sufficient memory such that
-     * {@code getTotalFreeMemory() < Memory_Threshold}, then chunks with IDs in
-     * {@link #notToClear} are cleared. If this is unsuccessful in clearing
+     * {@code !isMemoryLow()}, then chunks with IDs in
+     * pinned chunks are cleared. If this is unsuccessful in clearing
      * sufficient memory such that
-     * {@code getTotalFreeMemory() < Memory_Threshold}, then {@code false} is
+     * {@code !isMemoryLow()}, then {@code false} is
      * returned.
      *
      * @param g The grid from which the chunk with ID {@code i} is not cleared.
@@ -1361,19 +1920,20 @@ public class Grids_Environment extends Grids_MemoryManager
      */
     protected boolean checkAndMaybeFreeMemory(Grids_Grid g,
             Grids_2D_ID_int i) throws IOException, Exception {
-        if (getTotalFreeMemory() < Memory_Threshold) {
+        if (isMemoryLow()) {
             addToNotToClear(g, i);
+            HashMap<Grids_Grid, Set<Grids_2D_ID_int>> ntc = getNotToClear();
             do {
-                if (!swapChunkExcept(notToClear)) {
+                if (!swapChunkExcept(ntc)) {
                     break;
                 }
-            } while (getTotalFreeMemory() < Memory_Threshold);
+            } while (isMemoryLow());
             do {
-                if (swapChunkExcept(g, i)) {
+                if (!swapChunkExcept(g, i)) {
                     break;
                 }
-            } while (getTotalFreeMemory() < Memory_Threshold);
-            return getTotalFreeMemory() < Memory_Threshold;
+            } while (isMemoryLow());
+            return !isMemoryLow();
         } else {
             return true;
         }
@@ -1383,12 +1943,12 @@ public class Grids_Environment extends Grids_MemoryManager
      * A method to check and maybe free fast access memory by writing chunks to
      * file. If available fast access memory is not low then this simply returns
      * {@code true}. If available fast access memory is low, then an attempt is
-     * made to clear chunks with IDs not in {@link #notToClear}. If this is
+     * made to clear chunks with IDs not in pinned chunks. If this is
      * unsuccessful in clearing sufficient memory such that
-     * {@code getTotalFreeMemory() < Memory_Threshold}, then chunks with IDs in
-     * {@link #notToClear} are cleared. If this is unsuccessful in clearing
+     * {@code !isMemoryLow()}, then chunks with IDs in
+     * pinned chunks are cleared. If this is unsuccessful in clearing
      * sufficient memory such that
-     * {@code getTotalFreeMemory() < Memory_Threshold}, then {@code false} is
+     * {@code !isMemoryLow()}, then {@code false} is
      * returned.
      *
      * @param i The chunk ID of chunks not to be cleared.
@@ -1432,28 +1992,31 @@ public class Grids_Environment extends Grids_MemoryManager
      * file. No chunks with chunk ID {@code i} are cleared. If available fast
      * access memory is not low then this simply returns {@code true}. If
      * available fast access memory is low, then an attempt is made to clear
-     * chunks with IDs not in {@link #notToClear}. If this is unsuccessful in
+     * chunks with IDs not in pinned chunks. If this is unsuccessful in
      * clearing sufficient memory such that
-     * {@code getTotalFreeMemory() < Memory_Threshold}, then chunks with IDs in
-     * {@link #notToClear} are cleared. If this is unsuccessful in clearing
+     * {@code !isMemoryLow()}, then chunks with IDs in
+     * pinned chunks are cleared. If this is unsuccessful in clearing
      * sufficient memory such that
-     * {@code getTotalFreeMemory() < Memory_Threshold}, then {@code false} is
+     * {@code !isMemoryLow()}, then {@code false} is
      * returned.
      *
      * @param i The chunk ID of chunks not to be cleared.
-     * @return {@code true} if {@code getTotalFreeMemory() < Memory_Threshold}
+     * @return {@code true} if {@code !isMemoryLow()}
      * or if sufficient memory is freed so that this is the case.
      * @throws IOException If encountered.
      * @throws Exception If encountered.
      */
     protected boolean checkAndMaybeFreeMemory(Grids_2D_ID_int i)
             throws IOException, Exception {
-        if (getTotalFreeMemory() < Memory_Threshold) {
+        if (isMemoryLow()) {
+            HashMap<Grids_Grid, Set<Grids_2D_ID_int>> ntc = getNotToClear();
             Iterator<Grids_Grid> ite = grids.iterator();
             while (ite.hasNext()) {
-                addToNotToClear(ite.next(), i);
-                if (swapChunkExcept(notToClear)) {
-                    if (getTotalFreeMemory() < Memory_Threshold) {
+                Grids_Grid g = ite.next();
+                addToNotToClear(g, i);
+                ntc.computeIfAbsent(g, k -> new HashSet<>()).add(i);
+                if (swapChunkExcept(ntc)) {
+                    if (!isMemoryLow()) {
                         return true;
                     }
                 }
@@ -1461,7 +2024,7 @@ public class Grids_Environment extends Grids_MemoryManager
             ite = grids.iterator();
             while (ite.hasNext()) {
                 if (swapChunkExcept(i)) {
-                    if (getTotalFreeMemory() < Memory_Threshold) {
+                    if (!isMemoryLow()) {
                         return true;
                     }
                 }
@@ -1477,11 +2040,11 @@ public class Grids_Environment extends Grids_MemoryManager
      * file. No data in {@code m} is cleared. If available fast access memory is
      * not low then this simply returns {@code true}. If available fast access
      * memory is low, then an attempt is made to clear chunks with IDs not in
-     * {@link #notToClear}. If this is unsuccessful in clearing sufficient
-     * memory such that {@code getTotalFreeMemory() < Memory_Threshold}, then
-     * chunks with IDs in {@link #notToClear} are cleared. If this is
+     * pinned chunks. If this is unsuccessful in clearing sufficient
+     * memory such that {@code !isMemoryLow()}, then
+     * chunks with IDs in pinned chunks are cleared. If this is
      * unsuccessful in clearing sufficient memory such that
-     * {@code getTotalFreeMemory() < Memory_Threshold}, then {@code false} is
+     * {@code !isMemoryLow()}, then {@code false} is
      * returned.
      *
      * @param m Indicates which chunks not to clear unless deperate.
@@ -1527,11 +2090,11 @@ public class Grids_Environment extends Grids_MemoryManager
      * file. No data in {@code m} is cleared. If available fast access memory is
      * not low then this simply returns {@code true}. If available fast access
      * memory is low, then an attempt is made to clear chunks with IDs not in
-     * {@link #notToClear}. If this is unsuccessful in clearing sufficient
-     * memory such that {@code getTotalFreeMemory() < Memory_Threshold}, then
-     * chunks with IDs in {@link #notToClear} are cleared. If this is
+     * pinned chunks. If this is unsuccessful in clearing sufficient
+     * memory such that {@code !isMemoryLow()}, then
+     * chunks with IDs in pinned chunks are cleared. If this is
      * unsuccessful in clearing sufficient memory such that
-     * {@code getTotalFreeMemory() < Memory_Threshold}, then {@code false} is
+     * {@code !isMemoryLow()}, then {@code false} is
      * returned.
      *
      * @param m Indicates which chunks not to clear unless deperate.
@@ -1543,19 +2106,20 @@ public class Grids_Environment extends Grids_MemoryManager
     protected boolean checkAndMaybeFreeMemory(
             HashMap<Grids_Grid, Set<Grids_2D_ID_int>> m) throws IOException,
             Exception {
-        if (getTotalFreeMemory() < Memory_Threshold) {
+        if (isMemoryLow()) {
             addToNotToClear(m);
+            HashMap<Grids_Grid, Set<Grids_2D_ID_int>> ntc = getNotToClear();
             do {
-                if (!swapChunkExcept(notToClear)) {
+                if (!swapChunkExcept(ntc)) {
                     break;
                 }
-            } while (getTotalFreeMemory() < Memory_Threshold);
+            } while (isMemoryLow());
             do {
-                if (swapChunkExcept(m)) {
+                if (!swapChunkExcept(m)) {
                     break;
                 }
-            } while (getTotalFreeMemory() < Memory_Threshold);
-            return getTotalFreeMemory() < Memory_Threshold;
+            } while (isMemoryLow());
+            return !isMemoryLow();
         } else {
             return true;
         }
@@ -1566,12 +2130,12 @@ public class Grids_Environment extends Grids_MemoryManager
      * file. No chunks from {@code g} with chunk IDs in {@code s} are cleared.
      * If available fast access memory is not low then this simply returns
      * {@code true}. If available fast access memory is low, then an attempt is
-     * made to clear chunks with IDs not in {@link #notToClear}. If this is
+     * made to clear chunks with IDs not in pinned chunks. If this is
      * unsuccessful in clearing sufficient memory such that
-     * {@code getTotalFreeMemory() < Memory_Threshold}, then chunks with IDs in
-     * {@link #notToClear} are cleared. If this is unsuccessful in clearing
+     * {@code !isMemoryLow()}, then chunks with IDs in
+     * pinned chunks are cleared. If this is unsuccessful in clearing
      * sufficient memory such that
-     * {@code getTotalFreeMemory() < Memory_Threshold}, then {@code false} is
+     * {@code !isMemoryLow()}, then {@code false} is
      * returned.
      *
      * @param g The grid from which no chunks with chunk IDs in {@code s} are
@@ -1589,7 +2153,7 @@ public class Grids_Environment extends Grids_MemoryManager
     public boolean checkAndMaybeFreeMemory(Grids_Grid g, Set<Grids_2D_ID_int> s,
             boolean hoome) throws IOException, Exception {
         try {
-            while (getTotalFreeMemory() < Memory_Threshold) {
+            while (isMemoryLow()) {
                 if (swapChunkExcept(g, s)) {
                     env.log("Warning! No data to clear in "
                             + this.getClass().getName()
@@ -1632,12 +2196,12 @@ public class Grids_Environment extends Grids_MemoryManager
      * file. No chunks from {@code g} with chunk IDs in {@code s} are cleared.
      * If available fast access memory is not low then this simply returns
      * {@code true}. If available fast access memory is low, then an attempt is
-     * made to clear chunks with IDs not in {@link #notToClear}. If this is
+     * made to clear chunks with IDs not in pinned chunks. If this is
      * unsuccessful in clearing sufficient memory such that
-     * {@code getTotalFreeMemory() < Memory_Threshold}, then chunks with IDs in
-     * {@link #notToClear} are cleared. If this is unsuccessful in clearing
+     * {@code !isMemoryLow()}, then chunks with IDs in
+     * pinned chunks are cleared. If this is unsuccessful in clearing
      * sufficient memory such that
-     * {@code getTotalFreeMemory() < Memory_Threshold}, then {@code false} is
+     * {@code !isMemoryLow()}, then {@code false} is
      * returned.
      *
      * @param g The grid from which no chunks with chunk IDs in {@code s} are
@@ -1650,27 +2214,28 @@ public class Grids_Environment extends Grids_MemoryManager
      */
     protected boolean checkAndMaybeFreeMemory(Grids_Grid g,
             Set<Grids_2D_ID_int> s) throws IOException, Exception {
-        if (getTotalFreeMemory() < Memory_Threshold) {
+        if (isMemoryLow()) {
             addToNotToClear(g, s);
+            HashMap<Grids_Grid, Set<Grids_2D_ID_int>> ntc = getNotToClear();
             do {
-                if (swapChunkExcept(notToClear)) {
-                    if (getTotalFreeMemory() < Memory_Threshold) {
+                if (swapChunkExcept(ntc)) {
+                    if (!isMemoryLow()) {
                         return true;
                     }
                 } else {
                     break;
                 }
-            } while (getTotalFreeMemory() < Memory_Threshold);
+            } while (isMemoryLow());
             do {
                 if (swapChunkExcept(g, s)) {
-                    if (getTotalFreeMemory() < Memory_Threshold) {
+                    if (!isMemoryLow()) {
                         return true;
                     }
                 } else {
                     break;
                 }
-            } while (getTotalFreeMemory() < Memory_Threshold);
-            return getTotalFreeMemory() < Memory_Threshold;
+            } while (isMemoryLow());
+            return !isMemoryLow();
         } else {
             return true;
         }
@@ -1680,12 +2245,12 @@ public class Grids_Environment extends Grids_MemoryManager
      * A method to check and maybe free fast access memory by writing chunks to
      * file. If available fast access memory is not low then this simply returns
      * {@code true}. If available fast access memory is low, then an attempt is
-     * made to clear chunks with IDs not in {@link #notToClear}. If this is
+     * made to clear chunks with IDs not in pinned chunks. If this is
      * unsuccessful in clearing sufficient memory such that
-     * {@code getTotalFreeMemory() < Memory_Threshold}, then chunks with IDs in
-     * {@link #notToClear} are cleared. If this is unsuccessful in clearing
+     * {@code !isMemoryLow()}, then chunks with IDs in
+     * pinned chunks are cleared. If this is unsuccessful in clearing
      * sufficient memory such that
-     * {@code getTotalFreeMemory() < Memory_Threshold}, then {@code false} is
+     * {@code !isMemoryLow()}, then {@code false} is
      * returned.
      *
      * @param hoome If {@code true} then if an {@link OutOfMemoryError} is
@@ -1731,16 +2296,17 @@ public class Grids_Environment extends Grids_MemoryManager
      */
     protected Grids_Account checkAndMaybeFreeMemory_Account() throws IOException,
             Exception {
-        if (getTotalFreeMemory() < Memory_Threshold) {
+        if (isMemoryLow()) {
             Grids_Account r = new Grids_Account();
+            HashMap<Grids_Grid, Set<Grids_2D_ID_int>> ntc = getNotToClear();
             do {
-                if (swapChunkExcept(notToClear)) {
+                if (swapChunkExcept(ntc)) {
                     r.detail++;
                 } else {
                     break;
                 }
-            } while (getTotalFreeMemory() < Memory_Threshold);
-            if (getTotalFreeMemory() < Memory_Threshold) {
+            } while (isMemoryLow());
+            if (!isMemoryLow()) {
                 r.success = true;
             } else {
                 do {
@@ -1749,8 +2315,8 @@ public class Grids_Environment extends Grids_MemoryManager
                     } else {
                         break;
                     }
-                } while (getTotalFreeMemory() < Memory_Threshold);
-                r.success = getTotalFreeMemory() < Memory_Threshold;
+                } while (isMemoryLow());
+                r.success = !isMemoryLow();
             }
             return r;
         } else {
@@ -1809,17 +2375,18 @@ public class Grids_Environment extends Grids_MemoryManager
      */
     protected Grids_Account checkAndMaybeFreeMemory_Account(Grids_Grid g)
             throws IOException, Exception {
-        if (getTotalFreeMemory() < Memory_Threshold) {
+        if (isMemoryLow()) {
             Grids_Account r = new Grids_Account();
             addToNotToClear(g);
+            HashMap<Grids_Grid, Set<Grids_2D_ID_int>> ntc = getNotToClear();
             do {
-                if (swapChunkExcept(notToClear)) {
+                if (swapChunkExcept(ntc)) {
                     r.detail++;
                 } else {
                     break;
                 }
-            } while (getTotalFreeMemory() < Memory_Threshold);
-            if (getTotalFreeMemory() < Memory_Threshold) {
+            } while (isMemoryLow());
+            if (!isMemoryLow()) {
                 r.success = true;
             } else {
                 do {
@@ -1828,8 +2395,8 @@ public class Grids_Environment extends Grids_MemoryManager
                     } else {
                         break;
                     }
-                } while (getTotalFreeMemory() < Memory_Threshold);
-                r.success = getTotalFreeMemory() < Memory_Threshold;
+                } while (isMemoryLow());
+                r.success = !isMemoryLow();
             }
             return r;
         }
@@ -1890,27 +2457,28 @@ public class Grids_Environment extends Grids_MemoryManager
      */
     public Grids_Account checkAndMaybeFreeMemory_Account(Grids_Grid g,
             Grids_2D_ID_int i) throws IOException, Exception {
-        if (getTotalFreeMemory() < Memory_Threshold) {
+        if (isMemoryLow()) {
             Grids_Account r = new Grids_Account();
             addToNotToClear(g, i);
+            HashMap<Grids_Grid, Set<Grids_2D_ID_int>> ntc = getNotToClear();
             do {
-                if (swapChunkExcept(notToClear)) {
+                if (swapChunkExcept(ntc)) {
                     r.detail++;
                 } else {
                     break;
                 }
-            } while (getTotalFreeMemory() < Memory_Threshold);
-            if (getTotalFreeMemory() < Memory_Threshold) {
+            } while (isMemoryLow());
+            if (!isMemoryLow()) {
                 r.success = true;
             } else {
                 do {
                     if (swapChunkExcept(g, i)) {
-                        break;
-                    } else {
                         r.add();
+                    } else {
+                        break;
                     }
-                } while (getTotalFreeMemory() < Memory_Threshold);
-                r.success = getTotalFreeMemory() < Memory_Threshold;
+                } while (isMemoryLow());
+                r.success = !isMemoryLow();
             }
             return r;
         }
@@ -1970,15 +2538,17 @@ public class Grids_Environment extends Grids_MemoryManager
      */
     public Grids_Account checkAndMaybeFreeMemory_Account(Grids_2D_ID_int i)
             throws IOException, Exception {
-        if (getTotalFreeMemory() < Memory_Threshold) {
+        if (isMemoryLow()) {
             Grids_Account r = new Grids_Account();
+            HashMap<Grids_Grid, Set<Grids_2D_ID_int>> ntc = getNotToClear();
             Iterator<Grids_Grid> ite = grids.iterator();
             while (ite.hasNext()) {
                 Grids_Grid g = ite.next();
                 addToNotToClear(g, i);
-                if (swapChunkExcept(notToClear)) {
+                ntc.computeIfAbsent(g, k -> new HashSet<>()).add(i);
+                if (swapChunkExcept(ntc)) {
                     r.add();
-                    if (getTotalFreeMemory() < Memory_Threshold) {
+                    if (!isMemoryLow()) {
                         r.success = true;
                         return r;
                     }
@@ -1988,7 +2558,7 @@ public class Grids_Environment extends Grids_MemoryManager
             while (ite.hasNext()) {
                 Grids_Grid g = ite.next();
                 if (swapChunkExcept(g, i)) {
-                    if (getTotalFreeMemory() < Memory_Threshold) {
+                    if (!isMemoryLow()) {
                         r.success = true;
                         return r;
                     }
@@ -2056,17 +2626,18 @@ public class Grids_Environment extends Grids_MemoryManager
     public Grids_Account checkAndMaybeFreeMemory_Account(
             HashMap<Grids_Grid, Set<Grids_2D_ID_int>> m) throws IOException,
             Exception {
-        if (getTotalFreeMemory() < Memory_Threshold) {
+        if (isMemoryLow()) {
             Grids_Account r = new Grids_Account();
             addToNotToClear(m);
+            HashMap<Grids_Grid, Set<Grids_2D_ID_int>> ntc = getNotToClear();
             do {
-                if (swapChunkExcept(notToClear)) {
+                if (swapChunkExcept(ntc)) {
                     r.add(1);
                 } else {
                     break;
                 }
-            } while (getTotalFreeMemory() < Memory_Threshold);
-            if (getTotalFreeMemory() < Memory_Threshold) {
+            } while (isMemoryLow());
+            if (!isMemoryLow()) {
                 r.success = true;
             } else {
                 do {
@@ -2075,8 +2646,8 @@ public class Grids_Environment extends Grids_MemoryManager
                     } else {
                         break;
                     }
-                } while (getTotalFreeMemory() < Memory_Threshold);
-                r.success = getTotalFreeMemory() < Memory_Threshold;
+                } while (isMemoryLow());
+                r.success = !isMemoryLow();
             }
             return r;
         }
@@ -2136,17 +2707,18 @@ public class Grids_Environment extends Grids_MemoryManager
      */
     public Grids_Account checkAndMaybeFreeMemory_Account(Grids_Grid g,
             Set<Grids_2D_ID_int> s) throws IOException, Exception {
-        if (getTotalFreeMemory() < Memory_Threshold) {
+        if (isMemoryLow()) {
             Grids_Account r = new Grids_Account();
             addToNotToClear(g, s);
+            HashMap<Grids_Grid, Set<Grids_2D_ID_int>> ntc = getNotToClear();
             do {
-                if (swapChunkExcept(notToClear)) {
+                if (swapChunkExcept(ntc)) {
                     r.add();
                 } else {
                     break;
                 }
-            } while (getTotalFreeMemory() < Memory_Threshold);
-            if (getTotalFreeMemory() < Memory_Threshold) {
+            } while (isMemoryLow());
+            if (!isMemoryLow()) {
                 r.success = true;
             } else {
                 do {
@@ -2155,8 +2727,8 @@ public class Grids_Environment extends Grids_MemoryManager
                     } else {
                         break;
                     }
-                } while (getTotalFreeMemory() < Memory_Threshold);
-                r.success = getTotalFreeMemory() < Memory_Threshold;
+                } while (isMemoryLow());
+                r.success = !isMemoryLow();
             }
             return r;
         }
@@ -2213,33 +2785,34 @@ public class Grids_Environment extends Grids_MemoryManager
      */
     protected Grids_AccountDetail checkAndMaybeFreeMemory_AccountDetail()
             throws IOException, Exception {
-        if (getTotalFreeMemory() < Memory_Threshold) {
+        if (isMemoryLow()) {
             Grids_AccountDetail r = new Grids_AccountDetail();
             Grids_AccountDetail pr;
+            HashMap<Grids_Grid, Set<Grids_2D_ID_int>> ntc = getNotToClear();
             do {
-                pr = swapChunkExcept_AccountDetail(notToClear);
+                pr = swapChunkExcept_AccountDetail(ntc);
                 if (pr.detail.isEmpty()) {
                     break;
                 } else {
                     r.add(pr);
-                    if (getTotalFreeMemory() < Memory_Threshold) {
+                    if (!isMemoryLow()) {
                         r.success = true;
                         return r;
                     }
                 }
-            } while (getTotalFreeMemory() < Memory_Threshold);
+            } while (isMemoryLow());
             do {
                 pr = swapChunk_AccountDetail();
                 if (pr.detail.isEmpty()) {
                     break;
                 } else {
                     r.add(pr);
-                    if (getTotalFreeMemory() < Memory_Threshold) {
+                    if (!isMemoryLow()) {
                         r.success = true;
                         return r;
                     }
                 }
-            } while (getTotalFreeMemory() < Memory_Threshold);
+            } while (isMemoryLow());
             r.success = false;
             return r;
         }
@@ -2301,34 +2874,35 @@ public class Grids_Environment extends Grids_MemoryManager
      */
     protected Grids_AccountDetail checkAndMaybeFreeMemory_AccountDetail(
             Grids_Grid g) throws IOException, Exception {
-        if (getTotalFreeMemory() < Memory_Threshold) {
+        if (isMemoryLow()) {
             Grids_AccountDetail r = new Grids_AccountDetail();
             addToNotToClear(g);
             Grids_AccountDetail pr;
+            HashMap<Grids_Grid, Set<Grids_2D_ID_int>> ntc = getNotToClear();
             do {
-                pr = swapChunkExcept_AccountDetail(notToClear);
+                pr = swapChunkExcept_AccountDetail(ntc);
                 if (pr.detail.isEmpty()) {
                     break;
                 } else {
                     r.add(pr);
-                    if (getTotalFreeMemory() < Memory_Threshold) {
+                    if (!isMemoryLow()) {
                         r.success = true;
                         return r;
                     }
                 }
-            } while (getTotalFreeMemory() < Memory_Threshold);
+            } while (isMemoryLow());
             do {
                 pr = swapChunkExcept_AccountDetail(g);
                 if (pr.detail.isEmpty()) {
                     break;
                 } else {
                     r.add(pr);
-                    if (getTotalFreeMemory() < Memory_Threshold) {
+                    if (!isMemoryLow()) {
                         r.success = true;
                         return r;
                     }
                 }
-            } while (getTotalFreeMemory() < Memory_Threshold);
+            } while (isMemoryLow());
             r.success = false;
             return r;
         }
@@ -2398,34 +2972,35 @@ public class Grids_Environment extends Grids_MemoryManager
      */
     protected Grids_AccountDetail checkAndMaybeFreeMemory_AccountDetail(
             Grids_Grid g, Grids_2D_ID_int i) throws IOException, Exception {
-        if (getTotalFreeMemory() < Memory_Threshold) {
+        if (isMemoryLow()) {
             Grids_AccountDetail r = new Grids_AccountDetail();
             addToNotToClear(g, i);
             Grids_AccountDetail pr;
+            HashMap<Grids_Grid, Set<Grids_2D_ID_int>> ntc = getNotToClear();
             do {
-                pr = swapChunkExcept_AccountDetail(notToClear);
+                pr = swapChunkExcept_AccountDetail(ntc);
                 if (pr.detail.isEmpty()) {
                     break;
                 } else {
                     r.add(pr);
-                    if (getTotalFreeMemory() < Memory_Threshold) {
+                    if (!isMemoryLow()) {
                         r.success = true;
                         return r;
                     }
                 }
-            } while (getTotalFreeMemory() < Memory_Threshold);
+            } while (isMemoryLow());
             do {
                 pr = swapChunkExcept_AccountDetail(g, i);
                 if (pr.detail.isEmpty()) {
                     break;
                 } else {
                     r.add(pr);
-                    if (getTotalFreeMemory() < Memory_Threshold) {
+                    if (!isMemoryLow()) {
                         r.success = true;
                         return r;
                     }
                 }
-            } while (getTotalFreeMemory() < Memory_Threshold);
+            } while (isMemoryLow());
             r.success = false;
             return r;
         }
@@ -2491,25 +3066,27 @@ public class Grids_Environment extends Grids_MemoryManager
      */
     protected Grids_AccountDetail checkAndMaybeFreeMemory_AccountDetail(
             Grids_2D_ID_int i) throws IOException, Exception {
-        if (getTotalFreeMemory() < Memory_Threshold) {
+        if (isMemoryLow()) {
             Grids_AccountDetail r = new Grids_AccountDetail();
+            HashMap<Grids_Grid, Set<Grids_2D_ID_int>> ntc = getNotToClear();
             Iterator<Grids_Grid> ite = grids.iterator();
             while (ite.hasNext()) {
                 Grids_Grid g = ite.next();
                 addToNotToClear(g, i);
+                ntc.computeIfAbsent(g, k -> new HashSet<>()).add(i);
                 Grids_AccountDetail pr;
                 do {
-                    pr = swapChunkExcept_AccountDetail(notToClear);
+                    pr = swapChunkExcept_AccountDetail(ntc);
                     if (pr.detail.isEmpty()) {
                         break;
                     } else {
                         r.add(pr);
-                        if (getTotalFreeMemory() < Memory_Threshold) {
+                        if (!isMemoryLow()) {
                             r.success = true;
                             return r;
                         }
                     }
-                } while (getTotalFreeMemory() < Memory_Threshold);
+                } while (isMemoryLow());
             }
             ite = grids.iterator();
             while (ite.hasNext()) {
@@ -2521,12 +3098,12 @@ public class Grids_Environment extends Grids_MemoryManager
                         break;
                     } else {
                         r.add(pr);
-                        if (getTotalFreeMemory() < Memory_Threshold) {
+                        if (!isMemoryLow()) {
                             r.success = true;
                             return r;
                         }
                     }
-                } while (getTotalFreeMemory() < Memory_Threshold);
+                } while (isMemoryLow());
             }
             r.success = false;
             return r;
@@ -2594,34 +3171,35 @@ public class Grids_Environment extends Grids_MemoryManager
     protected Grids_AccountDetail checkAndMaybeFreeMemory_AccountDetail(
             HashMap<Grids_Grid, Set<Grids_2D_ID_int>> m) throws IOException,
             Exception {
-        if (getTotalFreeMemory() < Memory_Threshold) {
+        if (isMemoryLow()) {
             Grids_AccountDetail r = new Grids_AccountDetail();
             addToNotToClear(m);
             Grids_AccountDetail pr;
+            HashMap<Grids_Grid, Set<Grids_2D_ID_int>> ntc = getNotToClear();
             do {
-                pr = swapChunkExcept_AccountDetail(notToClear);
+                pr = swapChunkExcept_AccountDetail(ntc);
                 if (pr.detail.isEmpty()) {
                     break;
                 } else {
                     r.add(pr);
-                    if (getTotalFreeMemory() < Memory_Threshold) {
+                    if (!isMemoryLow()) {
                         r.success = true;
                         return r;
                     }
                 }
-            } while (getTotalFreeMemory() < Memory_Threshold);
+            } while (isMemoryLow());
             do {
                 pr = swapChunkExcept_AccountDetail(m);
                 if (pr.detail.isEmpty()) {
                     break;
                 } else {
                     r.add(pr);
-                    if (getTotalFreeMemory() < Memory_Threshold) {
+                    if (!isMemoryLow()) {
                         r.success = true;
                         return r;
                     }
                 }
-            } while (getTotalFreeMemory() < Memory_Threshold);
+            } while (isMemoryLow());
             r.success = false;
             return r;
         }
@@ -2690,34 +3268,35 @@ public class Grids_Environment extends Grids_MemoryManager
      */
     protected Grids_AccountDetail checkAndMaybeFreeMemory_AccountDetail(
             Grids_Grid g, Set<Grids_2D_ID_int> s) throws IOException, Exception {
-        if (getTotalFreeMemory() < Memory_Threshold) {
+        if (isMemoryLow()) {
             Grids_AccountDetail r = new Grids_AccountDetail();
             addToNotToClear(g, s);
             Grids_AccountDetail pr;
+            HashMap<Grids_Grid, Set<Grids_2D_ID_int>> ntc = getNotToClear();
             do {
-                pr = swapChunkExcept_AccountDetail(notToClear);
+                pr = swapChunkExcept_AccountDetail(ntc);
                 if (pr.detail.isEmpty()) {
                     break;
                 } else {
                     r.add(pr);
-                    if (getTotalFreeMemory() < Memory_Threshold) {
+                    if (!isMemoryLow()) {
                         r.success = true;
                         return r;
                     }
                 }
-            } while (getTotalFreeMemory() < Memory_Threshold);
+            } while (isMemoryLow());
             do {
                 pr = swapChunkExcept_AccountDetail(g, s);
                 if (pr.detail.isEmpty()) {
                     break;
                 } else {
                     r.add(pr);
-                    if (getTotalFreeMemory() < Memory_Threshold) {
+                    if (!isMemoryLow()) {
                         r.success = true;
                         return r;
                     }
                 }
-            } while (getTotalFreeMemory() < Memory_Threshold);
+            } while (isMemoryLow());
             r.success = false;
             return r;
         }
@@ -2737,7 +3316,7 @@ public class Grids_Environment extends Grids_MemoryManager
     public Grids_AccountDetail swapChunks_AccountDetail(
             boolean hoome) throws IOException, Exception, Exception {
         try {
-            Grids_AccountDetail r = swapChunks_AccountDetail(notToClear);
+            Grids_AccountDetail r = swapChunks_AccountDetail(getNotToClear());
             try {
                 if (r.detail.isEmpty()) {
                     r = checkAndMaybeFreeMemory_AccountDetail();
@@ -2964,7 +3543,7 @@ public class Grids_Environment extends Grids_MemoryManager
 
     /**
      * Attempts to swap a chunk in {@link #grids} trying first not to cache any
-     * in {@link #notToClear}.
+     * in pinned chunks.
      *
      * @param hoome If {@code true} then if an {@link OutOfMemoryError} is
      * thrown, then an attempt is made to handle it by clearing data from the
@@ -3010,30 +3589,30 @@ public class Grids_Environment extends Grids_MemoryManager
 
     /**
      * Attempts to swap a chunk in {@link #grids} trying first not to cache any
-     * in {@link #notToClear}.
+     * in pinned chunks.
      *
      * @return {@code true} if a chunk is swapped.
      * @throws IOException If encountered.
      * @throws Exception If encountered.
      */
     protected boolean swapChunk() throws IOException, Exception {
-        Iterator<Grids_Grid> ite = grids.iterator();
-        while (ite.hasNext()) {
-            Grids_Grid g = ite.next();
-            if (notToClear.containsKey(g)) {
-                Set<Grids_2D_ID_int> s = notToClear.get(g);
-                if (!s.isEmpty()) {
-                    Grids_2D_ID_int i = g.swapChunkExcept_AccountChunk(s);
-                    if (i != null) {
-                        return true;
-                    }
-                }
-            } else {
-                if (g.swapChunk() != null) {
-                    return true;
-                }
+        Grids_Chunk c = selectChunkToSwap(null);
+        if (c != null) {
+            if (c.getGrid().swapChunk(c.getId())) {
+                return true;
             }
         }
+        if (prefetcher != null && prefetcher.clear()) {
+            return true;
+        }
+        if (compressedStore != null && compressedStore.spill()) {
+            return true;
+        }
+        if (getNumberOfPendingWrites() > 0) {
+            // The heap they use is freed once the pending writes are done.
+            awaitWrites();
+            return true;
+        }
         dataToClear = false;
         return false;
     }
@@ -3091,14 +3670,9 @@ public class Grids_Environment extends Grids_MemoryManager
      */
     protected boolean swapChunkExcept(Grids_Grid g) throws IOException,
             Exception {
-        Iterator<Grids_Grid> ite = grids.iterator();
-        while (ite.hasNext()) {
-            Grids_Grid bg = ite.next();
-            if (bg != g) {
-                if (bg.swapChunk() != null) {
-                    return true;
-                }
-            }
+        Grids_Chunk c = selectChunkToSwap(g);
+        if (c != null) {
+            return c.getGrid().swapChunk(c.getId());
         }
         return false;
     }
@@ -3112,15 +3686,16 @@ public class Grids_Environment extends Grids_MemoryManager
      */
     protected Grids_AccountDetail swapChunk_AccountDetail() throws IOException,
             Exception {
-        Iterator<Grids_Grid> ite = grids.iterator();
-        while (ite.hasNext()) {
-            Grids_Grid g = ite.next();
-            if (notToClear.containsKey(g)) {
-                Grids_AccountDetail r = g.swapChunkExcept_AccountDetail(
-                        notToClear.get(g));
-                if (!r.detail.isEmpty()) {
-                    return r;
-                }
+        Grids_Chunk c = selectChunkToSwap(null);
+        if (c != null) {
+            Grids_Grid g = c.getGrid();
+            Grids_2D_ID_int i = c.getId();
+            if (g.swapChunk(i)) {
+                Grids_AccountDetail r = new Grids_AccountDetail();
+                Set<Grids_2D_ID_int> s = new HashSet<>(1);
+                s.add(i);
+                r.detail.put(g, s);
+                return r;
             }
         }
         dataToClear = false;
@@ -3257,11 +3832,13 @@ public class Grids_Environment extends Grids_MemoryManager
     protected Grids_Account swapChunkExcept_Account(Grids_2D_ID_int i)
             throws IOException, Exception {
         Grids_Account r = new Grids_Account();
+        HashMap<Grids_Grid, Set<Grids_2D_ID_int>> ntc = getNotToClear();
         Iterator<Grids_Grid> ite = grids.iterator();
         while (ite.hasNext()) {
             Grids_Grid g = ite.next();
             addToNotToClear(g, i);
-            if (swapChunkExcept(notToClear)) {
+            ntc.computeIfAbsent(g, k -> new HashSet<>()).add(i);
+            if (swapChunkExcept(ntc)) {
                 r.add();
                 return r;
             }
@@ -3605,7 +4182,7 @@ public class Grids_Environment extends Grids_MemoryManager
         while (ite.hasNext()) {
             Grids_Grid g2 = ite.next();
             if (g2 != g) {
-                TreeMap<Grids_2D_ID_int, Grids_Chunk> m = g2.getData();
+                ConcurrentHashMap<Grids_2D_ID_int, Grids_Chunk> m = g2.getData();
                 Set<Grids_2D_ID_int> s2 = m.keySet();
                 Iterator<Grids_2D_ID_int> iteb = s2.iterator();
                 while (iteb.hasNext()) {
@@ -4460,10 +5037,20 @@ public class Grids_Environment extends Grids_MemoryManager
     }
 
     /**
-     * @return {@link #notToClear}
+     * @return A map of the chunk IDs of the chunks that are pinned or marked
+     * as not to clear keyed by grid. Only grids with such chunks are included
+     * and the sets are copies.
      */
     public HashMap<Grids_Grid, Set<Grids_2D_ID_int>> getNotToClear() {
-        return notToClear;
+        HashMap<Grids_Grid, Set<Grids_2D_ID_int>> r = new HashMap<>();
+        grids.forEach(g -> {
+            Set<Grids_2D_ID_int> s = new HashSet<>(g.getPinned());
+            s.addAll(g.getNotToClear());
+            if (!s.isEmpty()) {
+                r.put(g, s);
+            }
+        });
+        return r;
     }
 
 }
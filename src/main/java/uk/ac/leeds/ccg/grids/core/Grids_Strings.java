@@ -29,9 +29,11 @@ public class Grids_Strings extends Generic_Strings {
     public static final String s_GridBigInteger = "GridBigInteger";
     public static final String s_GridBinary = "GridBinary";
     public static final String s_GridBoolean = "GridBoolean";
+    public static final String s_GridByte = "GridByte";
     public static final String s_GridDouble = "GridDouble";
     public static final String s_GridFloat = "GridFloat";
     public static final String s_GridInt = "GridInt";
+    public static final String s_GridShort = "GridShort";
     public static final String s_Grids = "Grids";
     public static final String s_grids = "grids";
     public static final String s_Processor = "Processor";
@@ -14,6 +14,7 @@
  * limitations under the License.
  */package uk.ac.leeds.ccg.grids.d2.chunk;
 
+import java.util.BitSet;
 import uk.ac.leeds.ccg.grids.d2.grid.Grids_Grid;
 import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
 import uk.ac.leeds.ccg.grids.core.Grids_Object;
@@ -28,6 +29,48 @@ public abstract class Grids_Chunk extends Grids_Object {
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * An estimate of the number of bytes of an object header. The estimates
+     * assume references are not compressed so that they err on the high side.
+     */
+    public static final long BYTES_OBJECT = 16L;
+
+    /**
+     * An estimate of the number of bytes of a reference.
+     */
+    public static final long BYTES_REFERENCE = 8L;
+
+    /**
+     * An estimate of the number of bytes of a chunk excluding its data.
+     */
+    public static final long BYTES_CHUNK = 64L;
+
+    /**
+     * An estimate of the number of bytes of an Integer or a Double.
+     */
+    public static final long BYTES_BOX = 16L;
+
+    /**
+     * An estimate of the number of bytes of a BigDecimal with a value that
+     * fits in a long.
+     */
+    public static final long BYTES_BIG_DECIMAL = 40L;
+
+    /**
+     * An estimate of the number of bytes of a {@link Grids_2D_ID_int}.
+     */
+    public static final long BYTES_ID = 24L;
+
+    /**
+     * An estimate of the number of bytes of an entry in a TreeMap.
+     */
+    public static final long BYTES_TREE_MAP_ENTRY = 40L;
+
+    /**
+     * An estimate of the number of bytes of an entry in a HashMap.
+     */
+    public static final long BYTES_HASH_MAP_ENTRY = 32L;
+
     /**
      * A reference to the grid.
      */
@@ -58,6 +101,32 @@ public abstract class Grids_Chunk extends Grids_Object {
      */
     protected final boolean worthClearing;
 
+    /**
+     * The logical time at which this chunk was last accessed. This is set by
+     * the eviction policy of the environment and is used to decide which
+     * chunks to swap.
+     */
+    protected transient long lastAccess;
+
+    /**
+     * A reference bit set when this chunk is accessed and cleared by a
+     * {@link uk.ac.leeds.ccg.grids.memory.Grids_EvictionPolicyClock} sweep.
+     */
+    protected transient boolean referenced;
+
+    /**
+     * The number of bytes this chunk is accounted as using in the environment.
+     * This is set when the chunk is put into a grid and zeroed when it is
+     * cleared.
+     */
+    protected transient long accountedMemory;
+
+    /**
+     * The number of bytes outside the heap this chunk is accounted as using
+     * in the environment.
+     */
+    protected transient long accountedOffHeapMemory;
+
     /**
      * @param g What {@link #grid} is set to.
      * @param i What {@link #id} is set to.
@@ -101,6 +170,181 @@ public abstract class Grids_Chunk extends Grids_Object {
         //return id;
     }
 
+    /**
+     * @return {@link #chunkNRows}
+     */
+    public int getChunkNRows() {
+        return chunkNRows;
+    }
+
+    /**
+     * @return {@link #chunkNCols}
+     */
+    public int getChunkNCols() {
+        return chunkNCols;
+    }
+
+    /**
+     * @return {@link #worthClearing}
+     */
+    public boolean isWorthClearing() {
+        return worthClearing;
+    }
+
+    /**
+     * @return {@link #lastAccess}
+     */
+    public long getLastAccess() {
+        return lastAccess;
+    }
+
+    /**
+     * @param t What {@link #lastAccess} is set to.
+     */
+    public void setLastAccess(long t) {
+        lastAccess = t;
+    }
+
+    /**
+     * @return {@link #referenced}
+     */
+    public boolean isReferenced() {
+        return referenced;
+    }
+
+    /**
+     * @param b What {@link #referenced} is set to.
+     */
+    public void setReferenced(boolean b) {
+        referenced = b;
+    }
+
+    /**
+     * @return {@link #accountedMemory}
+     */
+    public long getAccountedMemory() {
+        return accountedMemory;
+    }
+
+    /**
+     * @param b What {@link #accountedMemory} is set to.
+     */
+    public void setAccountedMemory(long b) {
+        accountedMemory = b;
+    }
+
+    /**
+     * Accounts afresh for the memory used by this if it is accounted for in
+     * {@link #env}. For chunks whose data grows as cells are set.
+     */
+    protected void reaccount() {
+        if (accountedMemory != 0L && env != null) {
+            env.account(this);
+        }
+    }
+
+    /**
+     * @return {@link #accountedOffHeapMemory}
+     */
+    public long getAccountedOffHeapMemory() {
+        return accountedOffHeapMemory;
+    }
+
+    /**
+     * @param b What {@link #accountedOffHeapMemory} is set to.
+     */
+    public void setAccountedOffHeapMemory(long b) {
+        accountedOffHeapMemory = b;
+    }
+
+    /**
+     * For getting an estimate of the number of bytes of fast access memory
+     * this chunk uses. This is for accounting memory against the budget of
+     * the environment, so it is computed when a chunk is put into a grid and
+     * not as cells are got or set. Subclasses add the bytes of their data to
+     * {@link #BYTES_CHUNK}.
+     *
+     * @return An estimate of the number of bytes this chunk uses.
+     */
+    public long getMemoryFootprint() {
+        return BYTES_CHUNK;
+    }
+
+    /**
+     * For getting the number of bytes this chunk uses outside the heap. This
+     * is accounted separately from {@link #getMemoryFootprint()}.
+     *
+     * @return {@code 0} as by default chunks are held on the heap.
+     */
+    public long getOffHeapFootprint() {
+        return 0L;
+    }
+
+    /**
+     * For freeing memory this chunk uses outside the heap once it is no
+     * longer needed, which is once it has been swapped and written or
+     * replaced. The chunk must not be used after this. By default chunks are
+     * held on the heap and this does nothing.
+     */
+    public void free() {
+    }
+
+    /**
+     * @param n The number of bytes.
+     * @return {@code n} rounded up to a multiple of 8 as objects are aligned.
+     */
+    public static long align(long n) {
+        return (n + 7L) & ~7L;
+    }
+
+    /**
+     * @param n The length of the array.
+     * @param bytes The number of bytes of each element.
+     * @return An estimate of the number of bytes of an array.
+     */
+    public static long getArrayFootprint(long n, long bytes) {
+        return align(BYTES_OBJECT + n * bytes);
+    }
+
+    /**
+     * @param nrows The number of rows.
+     * @param ncols The number of columns.
+     * @param bytes The number of bytes of each element.
+     * @return An estimate of the number of bytes of a two dimensional array.
+     */
+    public static long getArrayFootprint(int nrows, int ncols, long bytes) {
+        return getArrayFootprint(nrows, BYTES_REFERENCE)
+                + nrows * getArrayFootprint(ncols, bytes);
+    }
+
+    /**
+     * @param b The BitSet.
+     * @return An estimate of the number of bytes of {@code b} or {@code 0} if
+     * {@code b} is {@code null}.
+     */
+    public static long getBitSetFootprint(BitSet b) {
+        if (b == null) {
+            return 0L;
+        }
+        return BYTES_OBJECT + BYTES_REFERENCE
+                + getArrayFootprint((b.size() + 63) / 64, Long.BYTES);
+    }
+
+    /**
+     * @param n The number of elements.
+     * @param bytes The number of bytes of each element.
+     * @return An estimate of the number of bytes of a HashSet containing
+     * {@code n} elements.
+     */
+    public static long getHashSetFootprint(int n, long bytes) {
+        long capacity = 16L;
+        while (capacity * 3L / 4L < n) {
+            capacity <<= 1;
+        }
+        return BYTES_OBJECT * 4L + getArrayFootprint(capacity, BYTES_REFERENCE)
+                + n * (BYTES_HASH_MAP_ENTRY + bytes);
+    }
+
     /**
      * This method is public so that it can be accessed in memory management
      * without checking there is enough memory to continue.
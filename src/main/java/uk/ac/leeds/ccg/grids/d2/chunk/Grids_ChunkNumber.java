@@ -55,6 +55,14 @@ public abstract class Grids_ChunkNumber extends Grids_Chunk
      */
     public abstract BigDecimal getCellBigDecimal(int row, int col);
 
+    /**
+     * @param row The chunk row index.
+     * @param col The chunk column index.
+     * @return The value at row, col as a double or {@link Double#NaN} if it
+     * is the no data value.
+     */
+    public abstract double getCellDouble(int row, int col);
+
     /**
      * @return The sum of all data values.
      */
@@ -36,7 +36,8 @@ public abstract class Grids_ChunkRowMajorOrderIterator
     protected Grids_ChunkRowMajorOrderIterator(Grids_Chunk chunk) {
         super(chunk);
         row = 0;
-        col = 0;
+        // So that the first call to next0 moves to the first cell.
+        col = -1;
         nRows = grid.getChunkNRows(chunk.id);
         nCols = grid.getChunkNCols(chunk.id);
     }
@@ -15,11 +15,15 @@
  */
 package uk.ac.leeds.ccg.grids.d2.chunk.b;
 
+import java.util.function.LongBinaryOperator;
 import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
 import uk.ac.leeds.ccg.grids.d2.grid.b.Grids_GridBinary;
 
 /**
- * Stores the data in a {@code boolean[][]}.
+ * Stores the data in a {@code long[]} with one bit for each cell. The value at
+ * chunk cell row {@code row}, chunk cell column {@code col} is bit
+ * {@code k & 63} of element {@code k >>> 6} where
+ * {@code k = row * chunkNCols + col}.
  *
  * @author Andy Turner
  * @version 1.0.0
@@ -28,7 +32,7 @@ public class Grids_ChunkBinaryArray extends Grids_ChunkBinaryArrayOrMap {
 
     private static final long serialVersionUID = 1L;
 
-    boolean[][] data;
+    long[] data;
 
     public Grids_ChunkBinaryArray(Grids_GridBinary g, Grids_2D_ID_int i) {
         super(g, i);
@@ -60,7 +64,7 @@ public class Grids_ChunkBinaryArray extends Grids_ChunkBinaryArrayOrMap {
         initData();
         for (int row = 0; row < chunkNRows; row++) {
             for (int col = 0; col < chunkNCols; col++) {
-                data[row][col] = c.getCell(row, col);
+                initCell(row, col, c.getCell(row, col));
             }
         }
         cacheUpToDate = false;
@@ -68,10 +72,15 @@ public class Grids_ChunkBinaryArray extends Grids_ChunkBinaryArrayOrMap {
     
     @Override
     protected final void initData() {
-        Grids_GridBinary g = getGrid();
-        int chunkNrows = g.getChunkNRows(id);
-        int chunkNcols = g.getChunkNCols(id);
-        data = new boolean[chunkNrows][chunkNcols];
+        data = new long[getNWords(chunkNRows * chunkNCols)];
+    }
+
+    /**
+     * @param n The number of cells.
+     * @return The number of longs needed to store {@code n} bits.
+     */
+    public static int getNWords(int n) {
+        return (n + 63) >>> 6;
     }
 
     /**
@@ -83,7 +92,8 @@ public class Grids_ChunkBinaryArray extends Grids_ChunkBinaryArrayOrMap {
      */
     @Override
     public boolean getCell(int row, int col) {
-        return this.data[row][col];
+        int k = row * chunkNCols + col;
+        return (data[k >>> 6] & (1L << k)) != 0L;
     }
 
     /**
@@ -98,8 +108,8 @@ public class Grids_ChunkBinaryArray extends Grids_ChunkBinaryArrayOrMap {
      */
     @Override
     public boolean setCell(int row, int col, boolean v) {
-        boolean v0 = this.data[row][col];
-        this.data[row][col] = v;
+        boolean v0 = getCell(row, col);
+        initCell(row, col, v);
         if (isCacheUpToDate()) {
             if (v != v0) {
                 setCacheUpToDate(false);
@@ -117,7 +127,12 @@ public class Grids_ChunkBinaryArray extends Grids_ChunkBinaryArrayOrMap {
      */
     @Override
     public void initCell(int row, int col, boolean v) {
-        this.data[row][col] = v;
+        int k = row * chunkNCols + col;
+        if (v) {
+            data[k >>> 6] |= 1L << k;
+        } else {
+            data[k >>> 6] &= ~(1L << k);
+        }
     }
 
     /**
@@ -128,22 +143,87 @@ public class Grids_ChunkBinaryArray extends Grids_ChunkBinaryArrayOrMap {
         data = null;
     }
 
-    protected boolean[][] getData() {
+    /**
+     * @return An estimate of the number of bytes of this including the
+     * array of values.
+     */
+    @Override
+    public long getMemoryFootprint() {
+        if (data == null) {
+            return BYTES_CHUNK;
+        }
+        return BYTES_CHUNK + getArrayFootprint(data.length, Long.BYTES);
+    }
+
+    protected long[] getData() {
         return data;
     }
 
+    /**
+     * Sets the values in this to the result of applying {@code op} to the
+     * values in {@code c0} and {@code c1} a long (64 cells) at a time. The
+     * chunks must have the same number of rows and columns as this. A singlet
+     * is treated as if every bit were set to its value.
+     *
+     * @param op The operator, e.g. {@code (a, b) -> a & b}.
+     * @param c0 The first chunk.
+     * @param c1 The second chunk.
+     */
+    public void setWords(LongBinaryOperator op, Grids_ChunkBinary c0,
+            Grids_ChunkBinary c1) {
+        long[] d0 = getWords(c0);
+        long[] d1 = getWords(c1);
+        long k0 = getWord(c0);
+        long k1 = getWord(c1);
+        for (int w = 0; w < data.length; w++) {
+            data[w] = op.applyAsLong(d0 == null ? k0 : d0[w],
+                    d1 == null ? k1 : d1[w]);
+        }
+        // Clear any bits beyond the last cell.
+        int tail = (chunkNRows * chunkNCols) & 63;
+        if (tail != 0) {
+            data[data.length - 1] &= (1L << tail) - 1L;
+        }
+        setCacheUpToDate(false);
+    }
+
+    /**
+     * @param c The chunk.
+     * @return The words of {@code c} if it is a Grids_ChunkBinaryArray and
+     * {@code null} otherwise.
+     */
+    private static long[] getWords(Grids_ChunkBinary c) {
+        if (c instanceof Grids_ChunkBinaryArray) {
+            return ((Grids_ChunkBinaryArray) c).data;
+        }
+        return null;
+    }
+
+    /**
+     * @param c The chunk.
+     * @return A long with every bit set if {@code c} is a singlet with value
+     * {@code true} and {@code 0} otherwise.
+     */
+    public static long getWord(Grids_ChunkBinary c) {
+        if (c instanceof Grids_ChunkBinarySinglet
+                && ((Grids_ChunkBinarySinglet) c).v) {
+            return -1L;
+        }
+        return 0L;
+    }
+
     public Grids_ChunkIteratorBinaryArray iterator() {
         return new Grids_ChunkIteratorBinaryArray(this);
     }
 
+    /**
+     * @return The number of cells with {@code true} values.
+     */
     @Override
     public Long getN() {
         long n = 0;
-        Grids_ChunkIteratorBinaryArray ite = iterator();
-        while (ite.hasNext()) {
-            if (ite.next()) {
-                n++;
-            }
+        for (long w : data) {
+            n += Long.bitCount(w);
         }
         return n;
     }
@@ -58,6 +58,14 @@ public class Grids_ChunkBinarySinglet extends Grids_ChunkBinary {
     protected void clearData() {
     }
 
+    /**
+     * @return {@link #BYTES_CHUNK} as the value is held in a field.
+     */
+    @Override
+    public long getMemoryFootprint() {
+        return BYTES_CHUNK;
+    }
+
     /**
      * Beware OutOfMemoryErrors being thrown if calling this method.
      *
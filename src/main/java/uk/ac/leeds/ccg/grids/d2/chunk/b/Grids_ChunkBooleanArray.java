@@ -15,14 +15,18 @@
  */
 package uk.ac.leeds.ccg.grids.d2.chunk.b;
 
-import java.util.Arrays;
 import java.util.Objects;
+import java.util.function.LongBinaryOperator;
 import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
 import uk.ac.leeds.ccg.grids.d2.grid.b.Grids_GridBoolean;
 
 /**
- * Stores the data in a {@code Boolean[][]}.
-*
+ * Stores the data in a {@code long[]} with two bits for each cell: {@code 0}
+ * for {@code null}, {@code 1} for {@code false} and {@code 2} for
+ * {@code true}. The bits for chunk cell row {@code row}, chunk cell column
+ * {@code col} are bits {@code (k & 31) << 1} and {@code ((k & 31) << 1) + 1}
+ * of element {@code k >>> 5} where {@code k = row * chunkNCols + col}.
+ *
  * @author Andy Turner
  * @version 1.0.0
  */
@@ -30,7 +34,19 @@ public class Grids_ChunkBooleanArray extends Grids_ChunkBooleanArrayOrMap {
 
     private static final long serialVersionUID = 1L;
     
-    Boolean[][] data;
+    long[] data;
+
+    /**
+     * For masking the low bit of each pair of bits in a long (which is set for
+     * {@code false} values).
+     */
+    private static final long LOW_BITS = 0x5555555555555555L;
+
+    /**
+     * For masking the high bit of each pair of bits in a long (which is set
+     * for {@code true} values).
+     */
+    private static final long HIGH_BITS = 0xAAAAAAAAAAAAAAAAL;
 
 //    public Grids_ChunkBooleanArray(Grids_GridBoolean g, Grids_2D_ID_int i) {
 //        super(g, i);
@@ -46,10 +62,7 @@ public class Grids_ChunkBooleanArray extends Grids_ChunkBooleanArrayOrMap {
      */
     public Grids_ChunkBooleanArray(Grids_GridBoolean g, Grids_2D_ID_int i) {
         super(g, i);
-        data = new Boolean[chunkNRows][chunkNCols];
-        for (int row = 0; row < chunkNRows; row++) {
-            Arrays.fill(data[row], null);
-        }
+        initData();
         cacheUpToDate = false;
     }
 
@@ -62,7 +75,7 @@ public class Grids_ChunkBooleanArray extends Grids_ChunkBooleanArrayOrMap {
         initData();
         for (int row = 0; row < chunkNRows; row++) {
             for (int col = 0; col < chunkNCols; col++) {
-                data[row][col] = c.getCell(row, col);
+                initCell(row, col, c.getCell(row, col));
             }
         }
         cacheUpToDate = false;
@@ -70,10 +83,7 @@ public class Grids_ChunkBooleanArray extends Grids_ChunkBooleanArrayOrMap {
     
     @Override
     protected final void initData() {
-        Grids_GridBoolean g = getGrid();
-        int chunkNrows = g.getChunkNRows(id);
-        int chunkNcols = g.getChunkNCols(id);
-        data = new Boolean[chunkNrows][chunkNcols];
+        data = new long[(chunkNRows * chunkNCols + 31) >>> 5];
     }
 
     /**
@@ -85,7 +95,15 @@ public class Grids_ChunkBooleanArray extends Grids_ChunkBooleanArrayOrMap {
      */
     @Override
     public Boolean getCell(int row, int col) {
-        return data[row][col];
+        int k = row * chunkNCols + col;
+        switch ((int) (data[k >>> 5] >>> ((k & 31) << 1)) & 3) {
+            case 1:
+                return Boolean.FALSE;
+            case 2:
+                return Boolean.TRUE;
+            default:
+                return null;
+        }
     }
 
     /**
@@ -100,8 +118,8 @@ public class Grids_ChunkBooleanArray extends Grids_ChunkBooleanArrayOrMap {
      */
     @Override
     public Boolean setCell(int row, int col, Boolean v) {
-        Boolean v0 = data[row][col];
-        data[row][col] = v;
+        Boolean v0 = getCell(row, col);
+        initCell(row, col, v);
         if (isCacheUpToDate()) {
             if (!Objects.equals(v, v0)) {
                 setCacheUpToDate(false);
@@ -119,7 +137,15 @@ public class Grids_ChunkBooleanArray extends Grids_ChunkBooleanArrayOrMap {
      */
     @Override
     public void initCell(int row, int col, Boolean v) {
-        data[row][col] = v;
+        int k = row * chunkNCols + col;
+        int shift = (k & 31) << 1;
+        long bits;
+        if (v == null) {
+            bits = 0L;
+        } else {
+            bits = v ? 2L : 1L;
+        }
+        data[k >>> 5] = (data[k >>> 5] & ~(3L << shift)) | (bits << shift);
     }
 
     /**
@@ -130,23 +156,108 @@ public class Grids_ChunkBooleanArray extends Grids_ChunkBooleanArrayOrMap {
         data = null;
     }
 
-    protected Boolean[][] getData() {
+    /**
+     * @return An estimate of the number of bytes of this including the
+     * array of values.
+     */
+    @Override
+    public long getMemoryFootprint() {
+        if (data == null) {
+            return BYTES_CHUNK;
+        }
+        return BYTES_CHUNK + getArrayFootprint(data.length, Long.BYTES);
+    }
+
+    protected long[] getData() {
         return data;
     }
 
+    /**
+     * Sets the values in this to the result of applying {@code op} to the
+     * values in {@code c0} and {@code c1} 32 cells at a time. The chunks must
+     * have the same number of rows and columns as this. A value is set to
+     * {@code null} where either value is {@code null}. Otherwise {@code op}
+     * is applied to longs in which bit {@code 2k} is set if the value of cell
+     * {@code k} is {@code true}, and the value is set to {@code true} if that
+     * bit of the result is set. A singlet is treated as if every cell had its
+     * value.
+     *
+     * @param op The operator, e.g. {@code (a, b) -> a & b}.
+     * @param c0 The first chunk.
+     * @param c1 The second chunk.
+     */
+    public void setWords(LongBinaryOperator op, Grids_ChunkBoolean c0,
+            Grids_ChunkBoolean c1) {
+        long[] d0 = getWords(c0);
+        long[] d1 = getWords(c1);
+        long k0 = getWord(c0);
+        long k1 = getWord(c1);
+        int tail = ((chunkNRows * chunkNCols) & 31) << 1;
+        for (int w = 0; w < data.length; w++) {
+            long w0 = d0 == null ? k0 : d0[w];
+            long w1 = d1 == null ? k1 : d1[w];
+            long valid = (w0 | (w0 >>> 1)) & (w1 | (w1 >>> 1)) & LOW_BITS;
+            if (tail != 0 && w == data.length - 1) {
+                valid &= (1L << tail) - 1L;
+            }
+            long t = op.applyAsLong((w0 >>> 1) & LOW_BITS,
+                    (w1 >>> 1) & LOW_BITS) & valid;
+            data[w] = (t << 1) | (valid & ~t);
+        }
+        setCacheUpToDate(false);
+    }
+
+    /**
+     * @param c The chunk.
+     * @return The words of {@code c} if it is a Grids_ChunkBooleanArray and
+     * {@code null} otherwise.
+     */
+    private static long[] getWords(Grids_ChunkBoolean c) {
+        if (c instanceof Grids_ChunkBooleanArray) {
+            return ((Grids_ChunkBooleanArray) c).data;
+        }
+        return null;
+    }
+
+    /**
+     * @param c The chunk.
+     * @return A long with the bits for every cell set as they would be for
+     * the value of {@code c} if it is a singlet and {@code 0} otherwise.
+     */
+    private static long getWord(Grids_ChunkBoolean c) {
+        if (c instanceof Grids_ChunkBooleanSinglet) {
+            Boolean v = ((Grids_ChunkBooleanSinglet) c).v;
+            if (v != null) {
+                return v ? HIGH_BITS : LOW_BITS;
+            }
+        }
+        return 0L;
+    }
+
     public Grids_ChunkIteratorBooleanArray iterator() {
         return new Grids_ChunkIteratorBooleanArray(this);
     }
 
+    /**
+     * @return The number of cells with {@code true} or {@code false} values.
+     * Exactly one of the two bits for each such cell is set.
+     */
     @Override
     public Long getN() {
         long n = 0;
-        Grids_ChunkIteratorBooleanArray ite = iterator();
-        while (ite.hasNext()) {
-            Boolean b = ite.next();
-            if (b != null) {
-                n++;
-            }
+        for (long w : data) {
+            n += Long.bitCount(w);
+        }
+        return n;
+    }
+
+    /**
+     * @return The number of cells with {@code true} values.
+     */
+    public long getNTrue() {
+        long n = 0;
+        for (long w : data) {
+            n += Long.bitCount(w & HIGH_BITS);
         }
         return n;
     }
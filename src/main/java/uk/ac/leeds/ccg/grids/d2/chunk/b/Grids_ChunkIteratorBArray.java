@@ -39,7 +39,8 @@ public abstract class Grids_ChunkIteratorBArray extends Grids_ChunkIterator {
     public Grids_ChunkIteratorBArray(Grids_ChunkBinaryArray chunk) {
         super(chunk);
         row = 0;
-        col = 0;
+        // So that the first call to next0 moves to the first cell.
+        col = -1;
         Grids_GridBinary g = chunk.getGrid();
         nRows = g.getChunkNRows(chunk.getId());
         nCols = g.getChunkNCols(chunk.getId());
@@ -48,7 +49,8 @@ public abstract class Grids_ChunkIteratorBArray extends Grids_ChunkIterator {
     public Grids_ChunkIteratorBArray(Grids_ChunkBooleanArray chunk) {
         super(chunk);
         row = 0;
-        col = 0;
+        // So that the first call to next0 moves to the first cell.
+        col = -1;
         Grids_GridBoolean g = chunk.getGrid();
         nRows = g.getChunkNRows(chunk.getId());
         nCols = g.getChunkNCols(chunk.getId());
@@ -26,11 +26,8 @@ public class Grids_ChunkIteratorBinaryArray extends Grids_ChunkIteratorBArray {
 
     private static final long serialVersionUID = 1L;
 
-    protected boolean[][] data;
-
     public Grids_ChunkIteratorBinaryArray(Grids_ChunkBinaryArray chunk) {
         super(chunk);
-        data = chunk.getData();
     }
 
     /**
@@ -38,6 +35,6 @@ public class Grids_ChunkIteratorBinaryArray extends Grids_ChunkIteratorBArray {
      */
     public boolean next() {
         super.next0();
-        return data[row][col];
+        return ((Grids_ChunkBinaryArray) chunk).getCell(row, col);
     }
 }
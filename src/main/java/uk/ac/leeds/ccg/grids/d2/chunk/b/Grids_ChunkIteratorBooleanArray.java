@@ -26,11 +26,8 @@ public class Grids_ChunkIteratorBooleanArray extends Grids_ChunkIteratorBArray {
 
     private static final long serialVersionUID = 1L;
 
-    protected Boolean[][] data;
-
     public Grids_ChunkIteratorBooleanArray(Grids_ChunkBooleanArray chunk) {
         super(chunk);
-        data = chunk.getData();
     }
 
     /**
@@ -38,6 +35,6 @@ public class Grids_ChunkIteratorBooleanArray extends Grids_ChunkIteratorBArray {
      */
     public Boolean next() {
         next0();
-        return data[row][col];
+        return ((Grids_ChunkBooleanArray) chunk).getCell(row, col);
     }
 }
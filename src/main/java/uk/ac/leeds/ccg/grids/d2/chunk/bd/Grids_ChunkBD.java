@@ -73,6 +73,21 @@ public abstract class Grids_ChunkBD extends Grids_ChunkNumber {
         return getCell(r, c);
     }
 
+    /**
+     * @param r The chunk cell row index.
+     * @param c The chunk cell column index.
+     * @return The value at chunk cell row {@code r}, chunk cell column index
+     * {@code c} as a double or {@link Double#NaN} if it is the no data value.
+     */
+    @Override
+    public double getCellDouble(int r, int c) {
+        BigDecimal v = getCell(r, c);
+        if (v.compareTo(getGrid().ndv) == 0) {
+            return Double.NaN;
+        }
+        return v.doubleValue();
+    }
+
     /**
      * Initialises the value at chunk cell row {@code r}, chunk cell column
      * {@code c} to {@code v}.
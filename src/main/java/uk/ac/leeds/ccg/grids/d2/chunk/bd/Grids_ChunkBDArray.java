@@ -92,6 +92,19 @@ public class Grids_ChunkBDArray extends Grids_ChunkBDArrayOrMap {
         //System.gc();
     }
 
+    /**
+     * @return An estimate of the number of bytes of this including the
+     * array of values and the values.
+     */
+    @Override
+    public long getMemoryFootprint() {
+        if (data == null) {
+            return BYTES_CHUNK;
+        }
+        return BYTES_CHUNK + getArrayFootprint(chunkNRows, chunkNCols, BYTES_REFERENCE)
+                + (long) chunkNRows * chunkNCols * BYTES_BIG_DECIMAL;
+    }
+
     /**
      * @param row The row index of the cell w.r.t. the origin of this chunk.
      * @param col The column index of the cell w.r.t. the origin of this chunk.
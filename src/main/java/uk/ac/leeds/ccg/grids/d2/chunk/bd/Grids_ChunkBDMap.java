@@ -164,6 +164,44 @@ public class Grids_ChunkBDMap extends Grids_ChunkBDArrayOrMap {
         //System.gc();
     }
 
+    /**
+     * @return An estimate of the number of bytes of this including the
+     * BitSets and maps of values. This iterates over the distinct values.
+     */
+    @Override
+    public long getMemoryFootprint() {
+        long r = BYTES_CHUNK + getBitSetFootprint(noData)
+                + getBitSetFootprint(inDataMapHashSet)
+                + getBitSetFootprint(inDataMapBitSet);
+        if (Data != null) {
+            r += BYTES_OBJECT * 3L;
+            for (OffsetBitSet o : Data.DataMapBitSet.values()) {
+                r += BYTES_TREE_MAP_ENTRY + BYTES_BIG_DECIMAL + BYTES_OBJECT
+                        + getBitSetFootprint(o.bitSet);
+            }
+            for (HashSet<Grids_2D_ID_int> s : Data.DataMapHashSet.values()) {
+                r += BYTES_TREE_MAP_ENTRY + BYTES_BIG_DECIMAL
+                        + getHashSetFootprint(s.size(), BYTES_ID);
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @param nc The number of cells in the chunk.
+     * @param n The number of cells with values other than the default value.
+     * @return An estimate of the number of bytes of a chunk with {@code nc}
+     * cells and {@code n} values other than the default value. This assumes
+     * each of these values is different, so it is an upper bound.
+     */
+    public static long getMemoryFootprintEstimate(int nc, int n) {
+        long bitSet = BYTES_OBJECT + getArrayFootprint((nc + 63) / 64,
+                Long.BYTES);
+        return BYTES_CHUNK + bitSet * 3L + BYTES_OBJECT * 3L
+                + n * (BYTES_TREE_MAP_ENTRY + BYTES_BIG_DECIMAL)
+                + getHashSetFootprint(n, BYTES_ID);
+    }
+
     /**
      * @return Values as a double[][] indexed by row and column.
      */
@@ -570,6 +608,7 @@ public class Grids_ChunkBDMap extends Grids_ChunkBDArrayOrMap {
                             offsetBitSet.bitSet.set(0);
                             m2.put(v, offsetBitSet);
                             inDataMapBitSet.set(pos);
+                            reaccount();
                             return r;
                         }
                     }
@@ -635,6 +674,7 @@ public class Grids_ChunkBDMap extends Grids_ChunkBDArrayOrMap {
                             offsetBitSet.bitSet.set(0);
                             m2.put(v, offsetBitSet);
                             inDataMapBitSet.set(pos);
+                            reaccount();
                             return r;
                         }
                     }
@@ -0,0 +1,595 @@
+/*
+ * Copyright 2019 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.grids.d2.chunk.bd;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
+import uk.ac.leeds.ccg.grids.d2.grid.bd.Grids_GridBD;
+
+/**
+ * Grids_ChunkBD extension that stores cell values in fixed point: each value
+ * is held as an unscaled {@code long} and all values share one
+ * {@link #scale}, so the value of a cell is {@code data[p] / 10^scale}. This
+ * uses 8 bytes per cell rather than a {@link BigDecimal} object for each
+ * cell, and a {@link BigDecimal} is only created when a value is got.
+ *
+ * A value can be held if it has at most {@link #MAX_SCALE} decimal places and
+ * its unscaled value at the scale needed fits in a {@code long}. If a value
+ * with more decimal places than {@link #scale} is set, the values held are
+ * rescaled if they can be. Values that cannot be held are reported by
+ * {@link #isRepresentable(BigDecimal)} and the grid converts the chunk to
+ * another type before setting them.
+ *
+ * The arithmetic methods {@link #add(BigDecimal)},
+ * {@link #add(Grids_ChunkBDScaled)} and {@link #multiply(BigDecimal)} work on
+ * the unscaled values and so are exact. They change nothing and return
+ * {@code false} if the result cannot be held.
+ *
+ * Values are got at {@link #scale}, so for example if {@code 1.5} is set in a
+ * chunk with scale {@code 2} then {@code 1.50} is got.
+ *
+ * @author Andy Turner
+ * @version 1.0.0
+ */
+public class Grids_ChunkBDScaled extends Grids_ChunkBDArrayOrMap {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The unscaled value used for cells with the no data value.
+     */
+    public static final long NO_DATA = Long.MIN_VALUE;
+
+    /**
+     * The maximum scale.
+     */
+    public static final int MAX_SCALE = 18;
+
+    /**
+     * Powers of ten up to {@link #MAX_SCALE}.
+     */
+    private static final long[] POW10 = new long[MAX_SCALE + 1];
+
+    static {
+        POW10[0] = 1L;
+        for (int k = 1; k <= MAX_SCALE; k++) {
+            POW10[k] = POW10[k - 1] * 10L;
+        }
+    }
+
+    /**
+     * The unscaled values in row major order.
+     */
+    private long[] data;
+
+    /**
+     * The number of decimal places of the values.
+     */
+    protected int scale;
+
+    /**
+     * Creates a new chunk with all values the no data value.
+     *
+     * @param g What {@link #grid} is set to.
+     * @param i What {@link #id} is set to.
+     * @param scale What {@link #scale} is set to.
+     */
+    protected Grids_ChunkBDScaled(Grids_GridBD g, Grids_2D_ID_int i,
+            int scale) {
+        super(g, i);
+        this.scale = scale;
+        initData();
+        Arrays.fill(data, NO_DATA);
+        cacheUpToDate = false;
+    }
+
+    /**
+     * Creates a new chunk with the values of {@code c}. This should only be
+     * called if {@link #getScale(Grids_ChunkBD)} is not negative.
+     *
+     * @param c The chunk that's values will be duplicated.
+     * @param i The chunkID.
+     * @param scale What {@link #scale} is set to.
+     */
+    protected Grids_ChunkBDScaled(Grids_ChunkBD c, Grids_2D_ID_int i,
+            int scale) {
+        super(c.getGrid(), i);
+        this.scale = scale;
+        initData();
+        BigDecimal ndv = getGrid().ndv;
+        int p = 0;
+        for (int row = 0; row < chunkNRows; row++) {
+            for (int col = 0; col < chunkNCols; col++) {
+                data[p] = toUnscaled(c.getCell(row, col), ndv, scale);
+                p++;
+            }
+        }
+        cacheUpToDate = false;
+    }
+
+    /**
+     * Initialises {@link #data}.
+     */
+    @Override
+    protected final void initData() {
+        data = new long[chunkNRows * chunkNCols];
+    }
+
+    /**
+     * Sets {@link #data} to {@code null}.
+     */
+    @Override
+    protected void clearData() {
+        data = null;
+    }
+
+    /**
+     * @return {@link #scale}
+     */
+    public int getScale() {
+        return scale;
+    }
+
+    /**
+     * @return An estimate of the number of bytes of this including the array
+     * of values.
+     */
+    @Override
+    public long getMemoryFootprint() {
+        if (data == null) {
+            return BYTES_CHUNK;
+        }
+        return getMemoryFootprintEstimate(chunkNRows * chunkNCols);
+    }
+
+    /**
+     * @param n The number of cells.
+     * @return An estimate of the number of bytes of a chunk of this type with
+     * {@code n} cells.
+     */
+    public static long getMemoryFootprintEstimate(int n) {
+        return BYTES_CHUNK + getArrayFootprint(n, 8L);
+    }
+
+    /**
+     * @param v The value.
+     * @return The number of decimal places needed to hold {@code v} exactly
+     * (which is not negative).
+     */
+    public static int getScale(BigDecimal v) {
+        int s = v.scale();
+        if (s <= 0) {
+            return 0;
+        }
+        return Math.max(0, v.stripTrailingZeros().scale());
+    }
+
+    /**
+     * @param c The chunk.
+     * @return The least scale at which all the values of {@code c} (other
+     * than no data values) can be held in a chunk of this type, or {@code -1}
+     * if they cannot all be held.
+     */
+    public static int getScale(Grids_ChunkBD c) {
+        BigDecimal ndv = c.getGrid().ndv;
+        int nrows = c.getChunkNRows();
+        int ncols = c.getChunkNCols();
+        int r = 0;
+        for (int row = 0; row < nrows; row++) {
+            for (int col = 0; col < ncols; col++) {
+                BigDecimal v = c.getCell(row, col);
+                if (v.compareTo(ndv) != 0) {
+                    r = Math.max(r, getScale(v));
+                }
+            }
+        }
+        if (r > MAX_SCALE) {
+            return -1;
+        }
+        for (int row = 0; row < nrows; row++) {
+            for (int col = 0; col < ncols; col++) {
+                BigDecimal v = c.getCell(row, col);
+                if (v.compareTo(ndv) != 0 && toUnscaled(v, r) == NO_DATA) {
+                    return -1;
+                }
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @param v The value.
+     * @param s The scale.
+     * @return The unscaled value of {@code v} at scale {@code s} or
+     * {@link #NO_DATA} if this does not fit in a {@code long} or {@code v}
+     * has more than {@code s} decimal places.
+     */
+    protected static long toUnscaled(BigDecimal v, int s) {
+        BigInteger u;
+        try {
+            u = v.setScale(s, RoundingMode.UNNECESSARY).unscaledValue();
+        } catch (ArithmeticException e) {
+            return NO_DATA;
+        }
+        if (u.bitLength() > 63) {
+            return NO_DATA;
+        }
+        return u.longValue();
+    }
+
+    /**
+     * @param v The value.
+     * @param ndv The no data value.
+     * @param s The scale.
+     * @return The unscaled value of {@code v} at scale {@code s}.
+     * @throws ArithmeticException If {@code v} cannot be held at scale
+     * {@code s}.
+     */
+    private static long toUnscaled(BigDecimal v, BigDecimal ndv, int s) {
+        if (v.compareTo(ndv) == 0) {
+            return NO_DATA;
+        }
+        long u = toUnscaled(v, s);
+        if (u == NO_DATA) {
+            throw new ArithmeticException(v + " cannot be held at scale " + s);
+        }
+        return u;
+    }
+
+    /**
+     * @param v The value to test.
+     * @return {@code true} if {@code v} can be set in this, rescaling the
+     * values held if necessary.
+     */
+    public boolean isRepresentable(BigDecimal v) {
+        if (v.compareTo(getGrid().ndv) == 0) {
+            return true;
+        }
+        int s = Math.max(scale, getScale(v));
+        if (s > MAX_SCALE || toUnscaled(v, s) == NO_DATA) {
+            return false;
+        }
+        return s == scale || canRescale(s);
+    }
+
+    /**
+     * @param s The scale.
+     * @return {@code true} if all the values held can be rescaled to
+     * {@code s} which is not less than {@link #scale}.
+     */
+    private boolean canRescale(int s) {
+        long m = POW10[s - scale];
+        long max = Long.MAX_VALUE / m;
+        for (long u : data) {
+            if (u != NO_DATA && (u > max || u < -max)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Rescales the values held to {@code s} which is not less than
+     * {@link #scale}. This should only be called if {@link #canRescale(int)}.
+     *
+     * @param s The scale.
+     */
+    private void rescale(int s) {
+        long m = POW10[s - scale];
+        for (int p = 0; p < data.length; p++) {
+            if (data[p] != NO_DATA) {
+                data[p] *= m;
+            }
+        }
+        scale = s;
+    }
+
+    /**
+     * @param row The row index of the cell w.r.t. the origin of this chunk.
+     * @param col The column index of the cell w.r.t. the origin of this chunk.
+     * @return The value at position given by: chunk cell row {@code row}; chunk
+     * cell column {@code col}.
+     */
+    @Override
+    public BigDecimal getCell(int row, int col) {
+        long u = data[row * chunkNCols + col];
+        if (u == NO_DATA) {
+            return getGrid().ndv;
+        }
+        return BigDecimal.valueOf(u, scale);
+    }
+
+    /**
+     * @param row The row index of the cell w.r.t. the origin of this chunk.
+     * @param col The column index of the cell w.r.t. the origin of this chunk.
+     * @return The unscaled value at position given by: chunk cell row
+     * {@code row}; chunk cell column {@code col} or {@link #NO_DATA}.
+     */
+    public long getUnscaled(int row, int col) {
+        return data[row * chunkNCols + col];
+    }
+
+    /**
+     * Initialises the unscaled value at position given by: row, col.
+     *
+     * @param row The row index of the cell w.r.t. the origin of this chunk.
+     * @param col The column index of the cell w.r.t. the origin of this chunk.
+     * @param u The unscaled value initialised or {@link #NO_DATA}.
+     */
+    public void initUnscaled(int row, int col, long u) {
+        data[row * chunkNCols + col] = u;
+    }
+
+    /**
+     * Initialises the value at position given by: row, col.
+     *
+     * @param row The row index of the cell w.r.t. the origin of this chunk.
+     * @param col The column index of the cell w.r.t. the origin of this chunk.
+     * @param v The value initialised.
+     * @throws ArithmeticException If {@code v} is not representable (see
+     * {@link #isRepresentable(BigDecimal)}).
+     */
+    @Override
+    public void initCell(int row, int col, BigDecimal v) {
+        set(row * chunkNCols + col, v);
+    }
+
+    /**
+     * Sets the value at position given by: chunk cell row {@code row}; chunk
+     * cell row {@code col} to {@code v}.
+     *
+     * @param row The row index of the cell w.r.t. the origin of this chunk.
+     * @param col The column index of the cell w.r.t. the origin of this chunk.
+     * @param v The value set.
+     * @return The value at position given by: chunk cell row {@code row};
+     * chunk cell row {@code col} prior to it being set to {@code v}.
+     * @throws ArithmeticException If {@code v} is not representable (see
+     * {@link #isRepresentable(BigDecimal)}).
+     */
+    @Override
+    public BigDecimal setCell(int row, int col, BigDecimal v) {
+        int p = row * chunkNCols + col;
+        long u0 = data[p];
+        BigDecimal r = u0 == NO_DATA ? getGrid().ndv
+                : BigDecimal.valueOf(u0, scale);
+        set(p, v);
+        if (isCacheUpToDate() && data[p] != u0) {
+            setCacheUpToDate(false);
+        }
+        return r;
+    }
+
+    /**
+     * Sets the value at {@code p} to {@code v} rescaling if necessary.
+     *
+     * @param p The position in {@link #data}.
+     * @param v The value.
+     */
+    private void set(int p, BigDecimal v) {
+        BigDecimal ndv = getGrid().ndv;
+        if (v.compareTo(ndv) != 0) {
+            int s = getScale(v);
+            if (s > scale) {
+                if (s > MAX_SCALE || toUnscaled(v, s) == NO_DATA
+                        || !canRescale(s)) {
+                    throw new ArithmeticException(v
+                            + " cannot be held at scale " + s);
+                }
+                rescale(s);
+            }
+        }
+        data[p] = toUnscaled(v, ndv, scale);
+    }
+
+    /**
+     * Adds {@code v} to each value. Cells with the no data value are set to
+     * {@code v} (as in {@link Grids_GridBD#addToCell(long, long, BigDecimal)}).
+     *
+     * @param v The value to add.
+     * @return {@code false} if the result cannot be held in which case nothing
+     * is changed.
+     */
+    public boolean add(BigDecimal v) {
+        if (v.compareTo(getGrid().ndv) == 0) {
+            return true;
+        }
+        int s = Math.max(scale, getScale(v));
+        if (s > MAX_SCALE || (s > scale && !canRescale(s))) {
+            return false;
+        }
+        long w = toUnscaled(v, s);
+        if (w == NO_DATA) {
+            return false;
+        }
+        long m = POW10[s - scale];
+        long[] r = new long[data.length];
+        try {
+            for (int p = 0; p < data.length; p++) {
+                long u = data[p];
+                r[p] = u == NO_DATA ? w : Math.addExact(u * m, w);
+            }
+        } catch (ArithmeticException e) {
+            return false;
+        }
+        return update(r, s);
+    }
+
+    /**
+     * Adds the values of {@code c} to the values of this cell by cell. Where
+     * either value is the no data value the other is taken (as in
+     * {@link Grids_GridBD#addToCell(long, long, BigDecimal)}).
+     *
+     * @param c A chunk with the same number of rows and columns as this.
+     * @return {@code false} if the result cannot be held in which case nothing
+     * is changed.
+     */
+    public boolean add(Grids_ChunkBDScaled c) {
+        int s = Math.max(scale, c.scale);
+        if ((s > scale && !canRescale(s)) || (s > c.scale && !c.canRescale(s))) {
+            return false;
+        }
+        long m = POW10[s - scale];
+        long mc = POW10[s - c.scale];
+        long[] r = new long[data.length];
+        try {
+            for (int p = 0; p < data.length; p++) {
+                long u = data[p];
+                long uc = c.data[p];
+                if (uc == NO_DATA) {
+                    r[p] = u == NO_DATA ? NO_DATA : u * m;
+                } else if (u == NO_DATA) {
+                    r[p] = uc * mc;
+                } else {
+                    r[p] = Math.addExact(u * m, uc * mc);
+                }
+            }
+        } catch (ArithmeticException e) {
+            return false;
+        }
+        return update(r, s);
+    }
+
+    /**
+     * Multiplies each value by {@code v}. Cells with the no data value are
+     * left.
+     *
+     * @param v The value to multiply by.
+     * @return {@code false} if the result cannot be held in which case nothing
+     * is changed.
+     */
+    public boolean multiply(BigDecimal v) {
+        int sv = getScale(v);
+        int s = scale + sv;
+        if (s > MAX_SCALE) {
+            return false;
+        }
+        long w = toUnscaled(v, sv);
+        if (w == NO_DATA) {
+            return false;
+        }
+        long[] r = new long[data.length];
+        try {
+            for (int p = 0; p < data.length; p++) {
+                long u = data[p];
+                r[p] = u == NO_DATA ? NO_DATA : Math.multiplyExact(u, w);
+            }
+        } catch (ArithmeticException e) {
+            return false;
+        }
+        return update(r, s);
+    }
+
+    /**
+     * Sets {@link #data} to {@code r} and {@link #scale} to {@code s} unless
+     * any value in {@code r} is {@link #NO_DATA} where the value in
+     * {@link #data} is not (which happens if a result is
+     * {@link Long#MIN_VALUE}).
+     *
+     * @param r The new unscaled values.
+     * @param s The new scale.
+     * @return {@code true} if {@link #data} is set.
+     */
+    private boolean update(long[] r, int s) {
+        for (int p = 0; p < r.length; p++) {
+            if (r[p] == NO_DATA && data[p] != NO_DATA) {
+                return false;
+            }
+        }
+        if (!Arrays.equals(r, data) || s != scale) {
+            data = r;
+            scale = s;
+            setCacheUpToDate(false);
+        }
+        return true;
+    }
+
+    /**
+     * @return The values in a 2D array.
+     */
+    public BigDecimal[][] to2DBDArray() {
+        BigDecimal[][] r = new BigDecimal[chunkNRows][chunkNCols];
+        for (int row = 0; row < chunkNRows; row++) {
+            for (int col = 0; col < chunkNCols; col++) {
+                r[row][col] = getCell(row, col);
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @return An iterator for iterating over the cells in this.
+     */
+    public Grids_ChunkIteratorBDArrayOrMap iterator() {
+        return new Grids_ChunkIteratorBDArrayOrMap(this);
+    }
+
+    @Override
+    public Long getN() {
+        long r = 0;
+        for (long u : data) {
+            if (u != NO_DATA) {
+                r++;
+            }
+        }
+        return r;
+    }
+
+    @Override
+    public BigDecimal getSum() {
+        long r = 0L;
+        BigInteger big = BigInteger.ZERO;
+        for (long u : data) {
+            if (u != NO_DATA) {
+                try {
+                    r = Math.addExact(r, u);
+                } catch (ArithmeticException e) {
+                    big = big.add(BigInteger.valueOf(r));
+                    r = u;
+                }
+            }
+        }
+        return new BigDecimal(big.add(BigInteger.valueOf(r)), scale);
+    }
+
+    @Override
+    public BigDecimal getMin(boolean update) {
+        long r = Long.MAX_VALUE;
+        boolean found = false;
+        for (long u : data) {
+            if (u != NO_DATA) {
+                r = Math.min(r, u);
+                found = true;
+            }
+        }
+        return found ? BigDecimal.valueOf(r, scale) : getGrid().ndv;
+    }
+
+    @Override
+    public BigDecimal getMax(boolean update) {
+        long r = Long.MIN_VALUE;
+        boolean found = false;
+        for (long u : data) {
+            if (u != NO_DATA) {
+                r = Math.max(r, u);
+                found = true;
+            }
+        }
+        return found ? BigDecimal.valueOf(r, scale) : getGrid().ndv;
+    }
+}
@@ -60,6 +60,15 @@ public class Grids_ChunkBDSinglet extends Grids_ChunkBD {
     protected void clearData() {
     }
 
+    /**
+     * @return An estimate of the number of bytes of this including the
+     * value.
+     */
+    @Override
+    public long getMemoryFootprint() {
+        return BYTES_CHUNK + BYTES_BIG_DECIMAL;
+    }
+
     /**
      * Beware OutOfMemoryErrors being thrown if calling this method.
      *
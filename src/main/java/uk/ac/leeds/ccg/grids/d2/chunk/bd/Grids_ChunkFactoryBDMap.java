@@ -42,6 +42,18 @@ public class Grids_ChunkFactoryBDMap extends Grids_ChunkFactoryBD {
         return new Grids_ChunkBDMap(c, i, c.getGrid().getNoDataValue());
     }
 
+    /**
+     * Creates a chunk for {@code g} with no values other than {@code dv}.
+     *
+     * @param g The grid.
+     * @param i The ID of the chunk to create.
+     * @param dv The default value.
+     * @return A chunk.
+     */
+    public Grids_ChunkBDMap create(Grids_GridBD g, Grids_2D_ID_int i, BigDecimal dv) {
+        return new Grids_ChunkBDMap(g, i, dv);
+    }
+
     /**
      * Creates a chunk with values taken from {@code chunk}. The chunk is put
      * (as a value) with {@code i} (as the key) into {@code g.chunkIDChunkMap}.
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2019 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.grids.d2.chunk.bd;
+
+import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
+import uk.ac.leeds.ccg.grids.d2.grid.bd.Grids_GridBD;
+
+/**
+ * A factory for constructing {@link Grids_ChunkBDScaled} instances. Chunks
+ * with values that cannot all be held in fixed point are constructed as
+ * {@link Grids_ChunkBDArray} instances instead.
+ *
+ * @author Andy Turner
+ * @version 1.0.0
+ */
+public class Grids_ChunkFactoryBDScaled extends Grids_ChunkFactoryBD {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The scale of chunks created with no data values.
+     */
+    protected int scale;
+
+    /**
+     * Creates a factory for chunks with no data values of scale {@code 0}.
+     */
+    public Grids_ChunkFactoryBDScaled() {
+        this(0);
+    }
+
+    /**
+     * @param scale What {@link #scale} is set to.
+     */
+    public Grids_ChunkFactoryBDScaled(int scale) {
+        this.scale = scale;
+    }
+
+    @Override
+    public Grids_ChunkBDScaled create(Grids_GridBD g, Grids_2D_ID_int i) {
+        return new Grids_ChunkBDScaled(g, i, scale);
+    }
+
+    /**
+     * Creates a chunk with values taken from {@code c} at the least scale that
+     * holds them all.
+     *
+     * @param c The chunk to get values from.
+     * @param i The ID of the chunk to create.
+     * @return A {@link Grids_ChunkBDScaled} or if the values of {@code c}
+     * cannot all be held in fixed point a {@link Grids_ChunkBDArray}.
+     */
+    @Override
+    public Grids_ChunkBD create(Grids_ChunkBD c, Grids_2D_ID_int i) {
+        int s = Grids_ChunkBDScaled.getScale(c);
+        if (s < 0) {
+            return new Grids_ChunkBDArray(c, i);
+        }
+        return new Grids_ChunkBDScaled(c, i, s);
+    }
+
+    /**
+     * Creates a chunk with values taken from {@code c}.
+     *
+     * @param c The chunk to get values from.
+     * @param i The ID of the chunk to create.
+     * @param scale The scale which must be at least
+     * {@link Grids_ChunkBDScaled#getScale(Grids_ChunkBD)}.
+     * @return A chunk.
+     */
+    public Grids_ChunkBDScaled create(Grids_ChunkBD c, Grids_2D_ID_int i,
+            int scale) {
+        return new Grids_ChunkBDScaled(c, i, scale);
+    }
+}
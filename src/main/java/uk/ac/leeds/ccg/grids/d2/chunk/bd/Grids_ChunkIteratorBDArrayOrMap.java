@@ -43,6 +43,11 @@ public class Grids_ChunkIteratorBDArrayOrMap
         data = chunk.to2DBDArray();
     }
 
+    public Grids_ChunkIteratorBDArrayOrMap(Grids_ChunkBDScaled chunk) {
+        super(chunk);
+        data = chunk.to2DBDArray();
+    }
+
     /**
      * Returns the next element in the iteration.
      *
@@ -73,6 +73,21 @@ public abstract class Grids_ChunkDouble extends Grids_ChunkNumber {
         return BigDecimal.valueOf(getCell(r, c));
     }
 
+    /**
+     * @param r The chunk cell row index.
+     * @param c The chunk cell column index.
+     * @return The value at chunk cell row {@code r}, chunk cell column index
+     * {@code c} as a double or {@link Double#NaN} if it is the no data value.
+     */
+    @Override
+    public double getCellDouble(int r, int c) {
+        double v = getCell(r, c);
+        if (v == getGrid().getNoDataValue()) {
+            return Double.NaN;
+        }
+        return v;
+    }
+
     /**
      * Initialises the value at chunk cell row {@code r}, chunk cell column
      * {@code c} to {@code v}.
@@ -96,6 +111,51 @@ public abstract class Grids_ChunkDouble extends Grids_ChunkNumber {
      */
     public abstract double setCell(int r, int c, double v) throws Exception;
 
+    /**
+     * Copies the values in chunk cell row {@code r} into {@code dst}
+     * starting at {@code off}.
+     *
+     * @param r The chunk cell row.
+     * @param dst The array to copy into. This must have at least
+     * {@code off + getChunkNCols()} elements.
+     * @param off The index in {@code dst} of the first value copied.
+     */
+    public void getRow(int r, double[] dst, int off) {
+        for (int c = 0; c < chunkNCols; c++) {
+            dst[off + c] = getCell(r, c);
+        }
+    }
+
+    /**
+     * Sets the values in chunk cell row {@code r} to those in {@code src}
+     * starting at {@code off}.
+     *
+     * @param r The chunk cell row.
+     * @param src The array of values. This must have at least
+     * {@code off + getChunkNCols()} elements.
+     * @param off The index in {@code src} of the first value.
+     * @throws Exception If encountered.
+     */
+    public void setRow(int r, double[] src, int off) throws Exception {
+        for (int c = 0; c < chunkNCols; c++) {
+            setCell(r, c, src[off + c]);
+        }
+    }
+
+    /**
+     * Copies all the values including noDataValues in row major order into
+     * {@code dst} starting at {@code off}.
+     *
+     * @param dst The array to copy into. This must have at least
+     * {@code off + getChunkNRows() * getChunkNCols()} elements.
+     * @param off The index in {@code dst} of the first value copied.
+     */
+    public void copyInto(double[] dst, int off) {
+        for (int r = 0; r < chunkNRows; r++) {
+            getRow(r, dst, off + r * chunkNCols);
+        }
+    }
+
     /**
      * @return All the values including noDataValue's in row major order as a
      * double[].
@@ -105,13 +165,7 @@ public abstract class Grids_ChunkDouble extends Grids_ChunkNumber {
         int nrows = g.getChunkNRows(id);
         int ncols = g.getChunkNCols(id);
         double[] array = new double[nrows * ncols];
-        int count = 0;
-        for (int row = 0; row < nrows; row++) {
-            for (int col = 0; col < ncols; col++) {
-                array[count] = getCell(row, col);
-                count++;
-            }
-        }
+        copyInto(array, 0);
         return array;
     }
 
@@ -152,10 +206,8 @@ public abstract class Grids_ChunkDouble extends Grids_ChunkNumber {
         for (int row = 0; row < nrows; row++) {
             for (int col = 0; col < ncols; col++) {
                 double value = getCell(row, col);
-                if (Double.isNaN(value) && Double.isFinite(value)) {
-                    if (value != noDataValue) {
-                        n++;
-                    }
+                if (Double.isFinite(value) && value != noDataValue) {
+                    n++;
                 }
             }
         }
@@ -20,7 +20,8 @@ import java.util.Arrays;
 import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
 
 /**
- * Grids_ChunkDouble extension that stores cell values in a double[][].
+ * Grids_ChunkDouble extension that stores cell values in a double[] in
+ * row major order.
  *
  * @author Andy Turner
  * @version 1.0.0
@@ -30,9 +31,11 @@ public class Grids_ChunkDoubleArray extends Grids_ChunkDoubleArrayOrMap {
     private static final long serialVersionUID = 1L;
 
     /**
-     * For storing values arranged in rows and columns.
+     * For storing values in row major order: the value at chunk cell row
+     * {@code row}, chunk cell column {@code col} is at index
+     * {@code row * chunkNCols + col}.
      */
-    private double[][] data;
+    private double[] data;
 
     /**
      * Creates a new Grids_GridChunkDoubleArray for g containing all no data
@@ -44,11 +47,8 @@ public class Grids_ChunkDoubleArray extends Grids_ChunkDoubleArrayOrMap {
     protected Grids_ChunkDoubleArray(Grids_GridDouble g, Grids_2D_ID_int i) {
         super(g, i);
         double noDataValue = g.getNoDataValue();
-        data = new double[chunkNRows][chunkNCols];
-        int row;
-        for (row = 0; row < chunkNRows; row++) {
-            Arrays.fill(data[row], noDataValue);
-        }
+        initData();
+        Arrays.fill(data, noDataValue);
         cacheUpToDate = false;
     }
 
@@ -63,11 +63,7 @@ public class Grids_ChunkDoubleArray extends Grids_ChunkDoubleArrayOrMap {
     protected Grids_ChunkDoubleArray(Grids_ChunkDouble c, Grids_2D_ID_int i) {
         super(c.getGrid(), i);
         initData();
-        for (int row = 0; row < chunkNRows; row++) {
-            for (int col = 0; col < chunkNCols; col++) {
-                data[row][col] = c.getCell(row, col);
-            }
-        }
+        c.copyInto(data, 0);
         cacheUpToDate = false;
     }
 
@@ -76,7 +72,7 @@ public class Grids_ChunkDoubleArray extends Grids_ChunkDoubleArrayOrMap {
      */
     @Override
     protected final void initData() {
-        data = new double[chunkNRows][chunkNCols];
+        data = new double[chunkNRows * chunkNCols];
     }
 
     /**
@@ -84,7 +80,7 @@ public class Grids_ChunkDoubleArray extends Grids_ChunkDoubleArrayOrMap {
      *
      * @return {@link #data}.
      */
-    protected double[][] getData() {
+    protected double[] getData() {
         return data;
     }
 
@@ -97,6 +93,19 @@ public class Grids_ChunkDoubleArray extends Grids_ChunkDoubleArrayOrMap {
         //System.gc();
     }
 
+    /**
+     * @return An estimate of the number of bytes of this including the
+     * array of values.
+     */
+    @Override
+    public long getMemoryFootprint() {
+        if (data == null) {
+            return BYTES_CHUNK;
+        }
+        return BYTES_CHUNK + getArrayFootprint(
+                (long) chunkNRows * chunkNCols, Double.BYTES);
+    }
+
     /**
      * @param row The row index of the cell w.r.t. the origin of this chunk.
      * @param col The column index of the cell w.r.t. the origin of this chunk.
@@ -105,7 +114,7 @@ public class Grids_ChunkDoubleArray extends Grids_ChunkDoubleArrayOrMap {
      */
     @Override
     public double getCell(int row, int col) {
-        return data[row][col];
+        return data[row * chunkNCols + col];
     }
 
     /**
@@ -117,7 +126,7 @@ public class Grids_ChunkDoubleArray extends Grids_ChunkDoubleArrayOrMap {
      */
     @Override
     public void initCell(int row, int col, double v) {
-        data[row][col] = v;
+        data[row * chunkNCols + col] = v;
     }
 
     /**
@@ -131,8 +140,9 @@ public class Grids_ChunkDoubleArray extends Grids_ChunkDoubleArrayOrMap {
      */
     @Override
     public double setCell(int row, int col, double v) {
-        double oldValue = data[row][col];
-        data[row][col] = v;
+        int k = row * chunkNCols + col;
+        double oldValue = data[k];
+        data[k] = v;
         if (isCacheUpToDate()) {
             if (v != oldValue) {
                 setCacheUpToDate(false);
@@ -148,33 +158,41 @@ public class Grids_ChunkDoubleArray extends Grids_ChunkDoubleArrayOrMap {
         return new Grids_ChunkIteratorDoubleArrayOrMap(this);
     }
 
+    @Override
+    public void getRow(int r, double[] dst, int off) {
+        System.arraycopy(data, r * chunkNCols, dst, off, chunkNCols);
+    }
+
+    @Override
+    public void setRow(int r, double[] src, int off) {
+        System.arraycopy(src, off, data, r * chunkNCols, chunkNCols);
+        setCacheUpToDate(false);
+    }
+
+    @Override
+    public void copyInto(double[] dst, int off) {
+        System.arraycopy(data, 0, dst, off, data.length);
+    }
+
     @Override
     public Double getMin(boolean update) {
-        Double r = data[0][0];
-        Grids_GridDouble g = getGrid();
-        double noDataValue = g.getNoDataValue();
-        for (int row = 0; row < chunkNRows; row++) {
-            for (int col = 0; col < chunkNCols; col++) {
-                double v = data[chunkNRows][chunkNCols];
-                if (v != noDataValue) {
-                    r = Math.min(r, v);
-                }
+        Double r = null;
+        double noDataValue = getGrid().getNoDataValue();
+        for (double v : data) {
+            if (v != noDataValue) {
+                r = (r == null) ? v : Math.min(r, v);
             }
         }
         return r;
     }
 
     @Override
-    public Number getMax(boolean update) {
-        Double r = data[0][0];
-        Grids_GridDouble g = getGrid();
-        double noDataValue = g.getNoDataValue();
-        for (int row = 0; row < chunkNRows; row++) {
-            for (int col = 0; col < chunkNCols; col++) {
-                double v = data[chunkNRows][chunkNCols];
-                if (v != noDataValue) {
-                    r = Math.max(r, v);
-                }
+    public Double getMax(boolean update) {
+        Double r = null;
+        double noDataValue = getGrid().getNoDataValue();
+        for (double v : data) {
+            if (v != noDataValue) {
+                r = (r == null) ? v : Math.max(r, v);
             }
         }
         return r;
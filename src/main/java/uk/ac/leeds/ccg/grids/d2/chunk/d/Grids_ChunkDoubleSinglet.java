@@ -60,6 +60,14 @@ public class Grids_ChunkDoubleSinglet extends Grids_ChunkDouble {
     protected void clearData() {
     }
 
+    /**
+     * @return {@link #BYTES_CHUNK} as the value is held in a field.
+     */
+    @Override
+    public long getMemoryFootprint() {
+        return BYTES_CHUNK;
+    }
+
     /**
      * Beware OutOfMemoryErrors being thrown if calling this method.
      *
@@ -41,6 +41,18 @@ public class Grids_ChunkFactoryDoubleMap extends Grids_ChunkFactoryDouble {
         return new Grids_ChunkDoubleMap(c, i, c.getGrid().getNoDataValue());
     }
 
+    /**
+     * Creates a chunk for {@code g} with no values other than {@code dv}.
+     *
+     * @param g The grid.
+     * @param i The ID of the chunk to create.
+     * @param dv The default value.
+     * @return A chunk.
+     */
+    public Grids_ChunkDoubleMap create(Grids_GridDouble g, Grids_2D_ID_int i, double dv) {
+        return new Grids_ChunkDoubleMap(g, i, dv);
+    }
+
     /**
      * Creates a chunk with values taken from {@code chunk}. The chunk is put
      * (as a value) with {@code i} (as the key) into {@code g.chunkIDChunkMap}.
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2019 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.grids.d2.chunk.d;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
+import uk.ac.leeds.ccg.grids.d2.grid.d.Grids_GridDouble;
+
+/**
+ * A factory for constructing {@link Grids_ChunkDoubleMapped} instances. Using
+ * this as the default chunk factory of a grid factory results in grids that
+ * are backed by a memory mapped file. Any {@link IOException} from mapping is
+ * rethrown as an {@link UncheckedIOException}.
+ *
+ * @author Andy Turner
+ * @version 1.0.0
+ */
+public class Grids_ChunkFactoryDoubleMapped extends Grids_ChunkFactoryDouble {
+
+    private static final long serialVersionUID = 1L;
+
+    public Grids_ChunkFactoryDoubleMapped() {
+    }
+
+    @Override
+    public Grids_ChunkDoubleMapped create(Grids_GridDouble g, Grids_2D_ID_int i) {
+        try {
+            return new Grids_ChunkDoubleMapped(g, i);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Grids_ChunkDoubleMapped create(Grids_ChunkDouble c, Grids_2D_ID_int i) {
+        try {
+            return new Grids_ChunkDoubleMapped(c, i);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
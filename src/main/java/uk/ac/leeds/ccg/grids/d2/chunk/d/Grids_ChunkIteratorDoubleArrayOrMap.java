@@ -33,7 +33,7 @@ public class Grids_ChunkIteratorDoubleArrayOrMap
     /**
      * A reference to or copy of the data to iterate over.
      */
-    protected double[][] data;
+    protected double[] data;
 
     public Grids_ChunkIteratorDoubleArrayOrMap(
             Grids_ChunkDoubleArrayOrMap c) {
@@ -41,7 +41,8 @@ public class Grids_ChunkIteratorDoubleArrayOrMap
         if (c instanceof Grids_ChunkDoubleArray) {
             data = ((Grids_ChunkDoubleArray) c).getData();
         } else {
-            data = ((Grids_ChunkDoubleMap) c).to2DDoubleArray();
+            data = new double[nRows * nCols];
+            c.copyInto(data, 0);
         }
     }
 
@@ -52,10 +53,10 @@ public class Grids_ChunkIteratorDoubleArrayOrMap
      */
     public Double next() {
         next0();
-        return data[row][col];
+        return data[row * nCols + col];
     }
 
     public void remove() {
-        data[row][col] = ((Grids_GridDouble) grid).getNoDataValue();
+        data[row * nCols + col] = ((Grids_GridDouble) grid).getNoDataValue();
     }
 }
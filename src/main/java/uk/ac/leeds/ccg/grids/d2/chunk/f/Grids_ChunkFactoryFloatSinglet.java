@@ -0,0 +1,58 @@
+/*
+ * Copyright 2019 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.grids.d2.chunk.f;
+
+import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
+import uk.ac.leeds.ccg.grids.d2.grid.f.Grids_GridFloat;
+
+/**
+ * A factory for constructing Grids_ChunkFloat instances.
+ *
+ * @author Andy Turner
+ * @version 1.0.0
+ */
+public class Grids_ChunkFactoryFloatSinglet extends Grids_ChunkFactoryFloat {
+
+    private static final long serialVersionUID = 1L;
+
+    float defaultValue;
+
+    /**
+     * Creates a new Grids_ChunkFactoryFloatSinglet.
+     */
+    protected Grids_ChunkFactoryFloatSinglet() {
+    }
+
+    /**
+     * Creates a new Grids_ChunkFactoryFloatSinglet.
+     *
+     * @param dv What {@link #defaultValue} is set to.
+     */
+    public Grids_ChunkFactoryFloatSinglet(float dv) {
+        defaultValue = dv;
+    }
+
+    @Override
+    public Grids_ChunkFloatSinglet create(Grids_GridFloat g, Grids_2D_ID_int i) {
+        return new Grids_ChunkFloatSinglet(g, i, defaultValue);
+    }
+
+    @Override
+    public Grids_ChunkFloatSinglet create(Grids_ChunkFloat c, Grids_2D_ID_int i) {
+        return new Grids_ChunkFloatSinglet(c.getGrid(), i, defaultValue);
+    }
+
+}
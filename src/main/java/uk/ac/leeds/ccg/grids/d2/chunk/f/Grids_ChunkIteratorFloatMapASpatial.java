@@ -0,0 +1,78 @@
+/*
+ * Copyright 2019 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.grids.d2.chunk.f;
+
+import java.util.NoSuchElementException;
+import uk.ac.leeds.ccg.grids.d2.chunk.Grids_ChunkNumberMapASpatialIterator;
+
+/**
+ * For iterating through the values in a {@link Grids_ChunkFloatMap} instance.
+ * The values are not returned in any particular spatial order: first all the
+ * default values are returned, then the values stored.
+ *
+ * @author Andy Turner
+ * @version 1.0.0
+ */
+public class Grids_ChunkIteratorFloatMapASpatial
+        extends Grids_ChunkNumberMapASpatialIterator {
+
+    private static final long serialVersionUID = 1L;
+
+    protected int numberOfDefaultValues;
+
+    protected float defaultValue;
+
+    /**
+     * A copy of the values stored.
+     */
+    protected float[] values;
+
+    /**
+     * The index in {@link #values} of the next value to return.
+     */
+    protected int index;
+
+    public Grids_ChunkIteratorFloatMapASpatial(Grids_ChunkFloatMap chunk) {
+        super(chunk);
+        defaultValue = chunk.defaultValue;
+        numberOfDefaultValues = chunk.getNumberOfDefaultValues(numberOfCells);
+        values = chunk.getValues();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return defaultValueIndex < numberOfDefaultValues
+                || index < values.length;
+    }
+
+    /**
+     * Returns the next element in the iteration.
+     *
+     * @return the next element in the iteration.
+     * @exception NoSuchElementException iteration has no more elements.
+     */
+    public Float next() {
+        if (defaultValueIndex < numberOfDefaultValues) {
+            defaultValueIndex++;
+            return defaultValue;
+        }
+        if (index < values.length) {
+            index++;
+            return values[index - 1];
+        }
+        throw new NoSuchElementException();
+    }
+}
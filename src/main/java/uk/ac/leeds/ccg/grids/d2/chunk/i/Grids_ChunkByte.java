@@ -0,0 +1,453 @@
+/*
+ * Copyright 2019 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.grids.d2.chunk.i;
+
+import uk.ac.leeds.ccg.grids.d2.grid.i.Grids_GridByte;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.HashSet;
+import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
+import uk.ac.leeds.ccg.grids.d2.chunk.Grids_ChunkNumber;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import uk.ac.leeds.ccg.math.Math_BigDecimal;
+
+/**
+ * For chunks that represent values at cell locations that are {@code byte}
+ * type numbers.
+ *
+ * @author Andy Turner
+ * @version 1.0.0
+ */
+public abstract class Grids_ChunkByte extends Grids_ChunkNumber {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param g What {@link #grid} is set to.
+     * @param i What {@link #id} is set to.
+     * @param worthClearing What {@link #worthClearing} is set to.
+     */
+    protected Grids_ChunkByte(Grids_GridByte g, Grids_2D_ID_int i,
+            boolean worthClearing) {
+        super(g, i, worthClearing);
+    }
+
+    /**
+     * @return (Grids_GridByte) grid;
+     */
+    @Override
+    public final Grids_GridByte getGrid() {
+        return (Grids_GridByte) grid;
+    }
+
+    /**
+     * @param r The chunk cell row index.
+     * @param c The chunk cell column index.
+     * @return The value at chunk cell row {@code r}, chunk cell column index
+     * {@code c}.
+     */
+    public abstract byte getCell(int r, int c);
+
+    /**
+     * @param r The chunk cell row index.
+     * @param c The chunk cell column index.
+     * @return The value at chunk cell row {@code r}, chunk cell column index
+     * {@code c} as a BigDecimal.
+     */
+    @Override
+    public BigDecimal getCellBigDecimal(int r, int c) {
+        return BigDecimal.valueOf(getCell(r, c));
+    }
+
+    /**
+     * @param r The chunk cell row index.
+     * @param c The chunk cell column index.
+     * @return The value at chunk cell row {@code r}, chunk cell column index
+     * {@code c} as a double or {@link Double#NaN} if it is the no data value.
+     */
+    @Override
+    public double getCellDouble(int r, int c) {
+        byte v = getCell(r, c);
+        if (v == getGrid().getNoDataValue()) {
+            return Double.NaN;
+        }
+        return v;
+    }
+
+    /**
+     * Initialises the value at chunk cell row {@code r}, chunk cell column
+     * {@code c} to {@code v}.
+     *
+     * @param r The chunk cell row.
+     * @param c The chunk cell column.
+     * @param v The value to initialise.
+     */
+    public abstract void initCell(int r, int c, byte v);
+
+    /**
+     * Returns the value at chunk cell row {@code r}, chunk cell column
+     * {@code c} and sets it to {@code v}.
+     *
+     * @param r The chunk cell row.
+     * @param c The chunk cell column.
+     * @param v The value the cell is to be set to.
+     * @return The value at chunk cell row {@code r}, chunk cell column
+     * {@code c} before it is set.
+     * @throws Exception If encountered.
+     */
+    public abstract byte setCell(int r, int c, byte v) throws Exception;
+
+    /**
+     * Copies the values in chunk cell row {@code r} into {@code dst}
+     * starting at {@code off}.
+     *
+     * @param r The chunk cell row.
+     * @param dst The array to copy into. This must have at least
+     * {@code off + getChunkNCols()} elements.
+     * @param off The index in {@code dst} of the first value copied.
+     */
+    public void getRow(int r, byte[] dst, int off) {
+        for (int c = 0; c < chunkNCols; c++) {
+            dst[off + c] = getCell(r, c);
+        }
+    }
+
+    /**
+     * Sets the values in chunk cell row {@code r} to those in {@code src}
+     * starting at {@code off}.
+     *
+     * @param r The chunk cell row.
+     * @param src The array of values. This must have at least
+     * {@code off + getChunkNCols()} elements.
+     * @param off The index in {@code src} of the first value.
+     * @throws Exception If encountered.
+     */
+    public void setRow(int r, byte[] src, int off) throws Exception {
+        for (int c = 0; c < chunkNCols; c++) {
+            setCell(r, c, src[off + c]);
+        }
+    }
+
+    /**
+     * Copies all the values including noDataValues in row major order into
+     * {@code dst} starting at {@code off}.
+     *
+     * @param dst The array to copy into. This must have at least
+     * {@code off + getChunkNRows() * getChunkNCols()} elements.
+     * @param off The index in {@code dst} of the first value copied.
+     */
+    public void copyInto(byte[] dst, int off) {
+        for (int r = 0; r < chunkNRows; r++) {
+            getRow(r, dst, off + r * chunkNCols);
+        }
+    }
+
+    /**
+     * @return All the values including noDataValue's in row major order as a
+     * byte[].
+     */
+    public byte[] toArrayIncludingNoDataValues() {
+        Grids_GridByte g = getGrid();
+        int nrows = g.getChunkNRows(id);
+        int ncols = g.getChunkNCols(id);
+        byte[] array = new byte[nrows * ncols];
+        copyInto(array, 0);
+        return array;
+    }
+
+    /**
+     * @return All the values excluding noDataValues in row major order as a
+     * byte[].
+     */
+    public byte[] toArrayNotIncludingNoDataValues() {
+        Grids_GridByte g = getGrid();
+        int nrows = g.getChunkNRows(id);
+        int ncols = g.getChunkNCols(id);
+        byte noDataValue = g.getNoDataValue();
+        long n = getN();
+        byte[] array = new byte[(int) n];
+        int count = 0;
+        for (int row = 0; row < nrows; row++) {
+            for (int col = 0; col < ncols; col++) {
+                byte v = getCell(row, col);
+                if (v != noDataValue) {
+                    array[count] = v;
+                    count++;
+                }
+            }
+        }
+        return array;
+    }
+
+    /**
+     * @return The number of cells with data values.
+     */
+    @Override
+    public Long getN() {
+        long n = 0;
+        Grids_GridByte g = getGrid();
+        int nrows = g.getChunkNRows(id);
+        int ncols = g.getChunkNCols(id);
+        byte noDataValue = g.getNoDataValue();
+        for (int row = 0; row < nrows; row++) {
+            for (int col = 0; col < ncols; col++) {
+                byte value = getCell(row, col);
+                if (value != noDataValue) {
+                    n++;
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * @return The sum of all data values as a BigDecimal.
+     */
+    @Override
+    public BigDecimal getSum() {
+        BigDecimal sum = BigDecimal.ZERO;
+        Grids_GridByte g = getGrid();
+        int nrows = g.getChunkNRows(id);
+        int ncols = g.getChunkNCols(id);
+        byte noDataValue = g.getNoDataValue();
+        for (int row = 0; row < nrows; row++) {
+            for (int col = 0; col < ncols; col++) {
+                byte v = getCell(row, col);
+                if (v != noDataValue) {
+                    sum = sum.add(new BigDecimal(v));
+                }
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @return The minimum of all data values.
+     */
+    protected Byte getMin() {
+        byte min = Byte.MAX_VALUE;
+        Grids_GridByte g = getGrid();
+        int nrows = g.getChunkNRows(id);
+        int ncols = g.getChunkNCols(id);
+        byte noDataValue = g.getNoDataValue();
+        for (int row = 0; row < nrows; row++) {
+            for (int col = 0; col < ncols; col++) {
+                byte v = getCell(row, col);
+                if (v != noDataValue) {
+                    min = (byte) Math.min(min, v);
+                }
+            }
+        }
+        return min;
+    }
+
+    /**
+     * @return The maximum of all data values.
+     */
+    protected Byte getMax() {
+        byte max = Byte.MIN_VALUE;
+        Grids_GridByte g = getGrid();
+        int nrows = g.getChunkNRows(id);
+        int ncols = g.getChunkNCols(id);
+        byte noDataValue = g.getNoDataValue();
+        for (int row = 0; row < nrows; row++) {
+            for (int col = 0; col < ncols; col++) {
+                byte v = getCell(row, col);
+                if (v != noDataValue) {
+                    max = (byte) Math.max(max, v);
+                }
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @return The mode of all data values.
+     */
+    protected HashSet<Byte> getMode() {
+        HashSet<Byte> mode = new HashSet<>();
+        long n = getN();
+        if (n > 0) {
+            Grids_GridByte g = getGrid();
+            int nrows = g.getChunkNRows(id);
+            int ncols = g.getChunkNCols(id);
+            byte noDataValue = g.getNoDataValue();
+            Object[] tmode = initMode(nrows, ncols, noDataValue);
+            if (tmode[0] == null) {
+                return mode;
+            } else {
+                byte value;
+                long count;
+                long modeCount = (Long) tmode[0];
+                mode.add((Byte) tmode[1]);
+                Grids_2D_ID_int chunkCellID = (Grids_2D_ID_int) tmode[2];
+                // Do remainder of the row
+                int p = chunkCellID.getRow();
+                for (int q = chunkCellID.getCol() + 1; q < ncols; q++) {
+                    value = getCell(p, q);
+                    if (value != noDataValue) {
+                        count = count(p, q, nrows, ncols, value);
+                        if (count > modeCount) {
+                            mode.clear();
+                            mode.add(value);
+                            modeCount = count;
+                        } else {
+                            if (count == modeCount) {
+                                mode.add(value);
+                            }
+                        }
+                    }
+                }
+                // Do remainder of the grid
+                for (p++; p < nrows; p++) {
+                    for (int q = 0; q < ncols; q++) {
+                        value = getCell(p, q);
+                        if (value != noDataValue) {
+                            count = count(p, q, nrows, ncols, value);
+                            if (count > modeCount) {
+                                mode.clear();
+                                mode.add(value);
+                                modeCount = count;
+                            } else {
+                                if (count == modeCount) {
+                                    mode.add(value);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return mode;
+    }
+
+    /**
+     * Initialises the mode.
+     *
+     * @see #getMode()
+     */
+    private Object[] initMode(int nrows, int ncols, byte noDataValue) {
+        Object[] initMode = new Object[3];
+        long modeCount;
+        byte thisValue;
+        for (int p = 0; p < nrows; p++) {
+            for (int q = 0; q < ncols; q++) {
+               byte v = getCell(p, q);
+                if (v != noDataValue) {
+                    modeCount = 0L;
+                    for (int row = 0; row < nrows; row++) {
+                        for (int col = 0; col < ncols; col++) {
+                            thisValue = getCell(row, col);
+                            if (thisValue == v) {
+                                modeCount++;
+                            }
+                        }
+                    }
+                    initMode[0] = modeCount;
+                    initMode[1] = v;
+                    initMode[2] = new Grids_2D_ID_int(p, q);
+                    return initMode;
+                }
+            }
+        }
+        return initMode;
+    }
+
+    /**
+     * @param p The row index of the cell from which counting starts.
+     * @param q The column index of the cell from which counting starts.
+     * @param nrows The number of rows in the chunk.
+     * @param ncols The number of columns in the chunk.
+     * @param v The value to be counted.
+     * @return A count of the remaining cells with value {@code v} starting from
+     * p, q and going in row major order.
+     */
+    private long count(int p, int q, int nrows, int ncols, byte v) {
+        long count = 1L;
+        byte thisValue;
+        // Do remainder of the row
+        for (q++; q < ncols; q++) {
+            thisValue = getCell(p, q);
+            if (thisValue == v) {
+                count++;
+            }
+        }
+        // Do remainder of the grid
+        for (p++; p < nrows; p++) {
+            for (q = 0; q < ncols; q++) {
+                thisValue = getCell(p, q);
+                if (thisValue == v) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return The median of all data values as a double. This method requires
+     * that all data in chunk can be stored as a new array.
+     */
+    public double getMedian() {
+        long n = getN();
+        BigInteger n2 = BigInteger.valueOf(n);
+        if (n > 0) {
+            byte[] array = toArrayNotIncludingNoDataValues();
+            Arrays.sort(array, 0, array.length);
+            BigInteger[] n2DAR2 = n2.divideAndRemainder(new BigInteger("2"));
+            if (n2DAR2[1].compareTo(BigInteger.ZERO) == 0) {
+                int index = n2DAR2[0].intValue();
+                return (array[index] + array[index - 1]) / 2.0d;
+            } else {
+                int index = n2DAR2[0].intValue();
+                return array[index];
+            }
+        } else {
+            return getGrid().getNoDataValue();
+        }
+    }
+
+    /**
+     * @param dp The number of decimal places the result is to be accurate to.
+     * @param rm The rounding mode.
+     * @return The standard deviation of all data values.
+     */
+    protected BigDecimal getStandardDeviation(int dp, RoundingMode rm) {
+        BigDecimal sd = BigDecimal.ZERO;
+        BigDecimal mean = getArithmeticMean(dp, rm);
+        Grids_GridByte g = getGrid();
+        int nrows = g.getChunkNRows(id);
+        int ncols = g.getChunkNCols(id);
+        byte noDataValue = g.getNoDataValue();
+        long count = 0;
+        for (int row = 0; row < nrows; row++) {
+            for (int col = 0; col < ncols; col++) {
+                byte v = getCell(row, col);
+                if (v != noDataValue) {
+                    sd = sd.add(BigDecimal.valueOf(v).subtract(mean).pow(2));
+                    count++;
+                }
+            }
+        }
+        if ((count - 1L) > 0L) {
+            return Math_BigDecimal.sqrt(Math_BigDecimal.divideRoundIfNecessary(
+                    sd, BigInteger.valueOf(count - 1L), dp * 2, rm), dp, rm);
+        } else {
+            return sd;
+        }
+    }
+}
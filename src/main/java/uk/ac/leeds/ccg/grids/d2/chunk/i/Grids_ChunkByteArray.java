@@ -0,0 +1,195 @@
+/*
+ * Copyright 2019 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.grids.d2.chunk.i;
+
+import uk.ac.leeds.ccg.grids.d2.grid.i.Grids_GridByte;
+import java.util.Arrays;
+import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
+
+/**
+ * Grids_ChunkByte extension that stores cell values in a byte[] in
+ * row major order.
+ *
+ * @author Andy Turner
+ * @version 1.0.0
+ */
+public class Grids_ChunkByteArray extends Grids_ChunkByteArrayOrMap {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * For storing values in row major order: the value at chunk cell row
+     * {@code row}, chunk cell column {@code col} is at index
+     * {@code row * chunkNCols + col}.
+     */
+    private byte[] data;
+
+    /**
+     * Creates a new Grids_GridChunkByteArray for g containing all no data
+     * values.
+     *
+     * @param g The Grids_GridByte this is to be a chunk of.
+     * @param i The ID to be id.
+     */
+    protected Grids_ChunkByteArray(Grids_GridByte g, Grids_2D_ID_int i) {
+        super(g, i);
+        byte noDataValue = g.getNoDataValue();
+        initData();
+        Arrays.fill(data, noDataValue);
+        cacheUpToDate = false;
+    }
+
+    /**
+     * @param c The chunk that's values will be duplicated.
+     * @param i The chunkID.
+     */
+    protected Grids_ChunkByteArray(Grids_ChunkByte c, Grids_2D_ID_int i) {
+        super(c.getGrid(), i);
+        initData();
+        c.copyInto(data, 0);
+        cacheUpToDate = false;
+    }
+
+    /**
+     * Initialises {@link #data}.
+     */
+    @Override
+    protected final void initData() {
+        data = new byte[chunkNRows * chunkNCols];
+    }
+
+    /**
+     * @return {@link #data}.
+     */
+    protected byte[] getData() {
+        return data;
+    }
+
+    /**
+     * Sets {@link #data} to {@code null}.
+     */
+    @Override
+    protected void clearData() {
+        data = null;
+        //System.gc();
+    }
+
+    /**
+     * @return An estimate of the number of bytes of this including the
+     * array of values.
+     */
+    @Override
+    public long getMemoryFootprint() {
+        if (data == null) {
+            return BYTES_CHUNK;
+        }
+        return BYTES_CHUNK + getArrayFootprint(
+                (long) chunkNRows * chunkNCols, Byte.BYTES);
+    }
+
+    /**
+     * @param row The row index of the cell w.r.t. the origin of this chunk.
+     * @param col The column index of the cell w.r.t. the origin of this chunk.
+     * @return The value at position given by: chunk cell row {@code row}; chunk
+     * cell column {@code col}.
+     */
+    @Override
+    public byte getCell(int row, int col) {
+        return data[row * chunkNCols + col];
+    }
+
+    /**
+     * Initialises the value at position given by: row, col.
+     *
+     * @param row The row index of the cell w.r.t. the origin of this chunk.
+     * @param col The column index of the cell w.r.t. the origin of this chunk.
+     * @param v The value initialised.
+     */
+    @Override
+    public void initCell(int row, int col, byte v) {
+        data[row * chunkNCols + col] = v;
+    }
+
+    /**
+     * Sets the value at position given by: chunk cell row {@code row}; chunk
+     * cell row {@code col} to {@code v}.
+     * @param row The row index of the cell w.r.t. the origin of this chunk.
+     * @param col The column index of the cell w.r.t. the origin of this chunk.
+     * @param v The value set.
+     * @return The value at position given by: chunk cell row {@code row};
+     * chunk cell row {@code col} prior to it being set to {@code v}.
+     */
+    @Override
+    public byte setCell(int row, int col, byte v) {
+        int k = row * chunkNCols + col;
+        byte oldValue = data[k];
+        data[k] = v;
+        if (isCacheUpToDate()) {
+            if (v != oldValue) {
+                setCacheUpToDate(false);
+            }
+        }
+        return oldValue;
+    }
+
+    /**
+     * @return An iterator for iterating over the cells in this.
+     */
+    public Grids_ChunkIteratorByteArrayOrMap iterator() {
+        return new Grids_ChunkIteratorByteArrayOrMap(this);
+    }
+
+    @Override
+    public void getRow(int r, byte[] dst, int off) {
+        System.arraycopy(data, r * chunkNCols, dst, off, chunkNCols);
+    }
+
+    @Override
+    public void setRow(int r, byte[] src, int off) {
+        System.arraycopy(src, off, data, r * chunkNCols, chunkNCols);
+        setCacheUpToDate(false);
+    }
+
+    @Override
+    public void copyInto(byte[] dst, int off) {
+        System.arraycopy(data, 0, dst, off, data.length);
+    }
+
+    @Override
+    public Byte getMin(boolean update) {
+        Byte r = null;
+        byte noDataValue = getGrid().getNoDataValue();
+        for (byte v : data) {
+            if (v != noDataValue) {
+                r = (r == null) ? v : (byte) Math.min(r, v);
+            }
+        }
+        return r;
+    }
+
+    @Override
+    public Byte getMax(boolean update) {
+        Byte r = null;
+        byte noDataValue = getGrid().getNoDataValue();
+        for (byte v : data) {
+            if (v != noDataValue) {
+                r = (r == null) ? v : (byte) Math.max(r, v);
+            }
+        }
+        return r;
+    }
+
+}
@@ -0,0 +1,582 @@
+/*
+ * Copyright 2019 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.grids.d2.chunk.i;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.HashSet;
+import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
+import uk.ac.leeds.ccg.grids.d2.grid.i.Grids_GridByte;
+import uk.ac.leeds.ccg.math.Math_BigDecimal;
+
+/**
+ * Stores the values of the cells that are not {@link #defaultValue} in two
+ * primitive arrays: the positions of the cells in row major order sorted
+ * ascending and their values. Getting a value is a binary search of the
+ * positions, so it is O(log n) in the number of values stored, and neither the
+ * values nor the cell positions are boxed. Setting a cell that has no value
+ * stored shifts the entries that follow, which is cheap while few values are
+ * stored and free when values are initialised in row major order. This is for
+ * chunks in which most cells have the same value (usually the noDataValue) and
+ * for these it uses much less memory than an array chunk. The statistics are
+ * calculated from the values stored and the number of default values.
+ *
+ * @author Andy Turner
+ * @version 1.0.0
+ */
+public class Grids_ChunkByteMap extends Grids_ChunkByteArrayOrMap {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The initial capacity of {@link #pos} and {@link #vs}.
+     */
+    private static final int INITIAL_CAPACITY = 8;
+
+    /**
+     * The value of all the cells that have no value stored. Storage is
+     * optimised with this set to the most common value.
+     */
+    public byte defaultValue;
+
+    /**
+     * This is a copy of getGrid().getNoDataValue() for convenience.
+     */
+    private final byte noDataValue;
+
+    /**
+     * The positions in row major order of the cells that have a value stored
+     * sorted ascending. Only the first {@link #n} are used.
+     */
+    private int[] pos;
+
+    /**
+     * The values of the cells at the positions in {@link #pos}.
+     */
+    private byte[] vs;
+
+    /**
+     * The number of values stored.
+     */
+    private int n;
+
+    /**
+     * The number of values stored that are {@link #noDataValue}.
+     */
+    private int nNoData;
+
+    /**
+     * {@link #defaultValue} is set to {@code 0}.
+     *
+     * @param g What {@link #grid} is set to.
+     * @param i What {@link #id} is set to.
+     */
+    protected Grids_ChunkByteMap(Grids_GridByte g, Grids_2D_ID_int i) {
+        this(g, i, (byte) 0);
+    }
+
+    /**
+     * Usually it is best if the defaultValue is the most common value.
+     *
+     * @param g What {@link #grid} is set to.
+     * @param i What {@link #id} is set to.
+     * @param dv What {@link #defaultValue} is set to.
+     */
+    protected Grids_ChunkByteMap(Grids_GridByte g, Grids_2D_ID_int i, byte dv) {
+        super(g, i);
+        defaultValue = dv;
+        noDataValue = g.getNoDataValue();
+        initData();
+        cacheUpToDate = false;
+    }
+
+    /**
+     * Usually it is best if the defaultValue is the most common value. The
+     * chunk created will have the same cell values as {@code c}.
+     *
+     * @param c The chunk from which the values in this are set.
+     * @param i The chunkID.
+     * @param dv The default value.
+     */
+    protected Grids_ChunkByteMap(Grids_ChunkByte c, Grids_2D_ID_int i, byte dv) {
+        super(c.getGrid(), i);
+        defaultValue = dv;
+        noDataValue = getGrid().getNoDataValue();
+        initData();
+        for (int row = 0; row < chunkNRows; row++) {
+            for (int col = 0; col < chunkNCols; col++) {
+                initCell(row, col, c.getCell(row, col));
+            }
+        }
+        cacheUpToDate = false;
+    }
+
+    /**
+     * Initialises the arrays of positions and values.
+     */
+    @Override
+    protected final void initData() {
+        pos = new int[INITIAL_CAPACITY];
+        vs = new byte[INITIAL_CAPACITY];
+        n = 0;
+        nNoData = 0;
+    }
+
+    /**
+     * Sets the arrays of positions and values to {@code null}.
+     */
+    @Override
+    protected void clearData() {
+        pos = null;
+        vs = null;
+        n = 0;
+        nNoData = 0;
+    }
+
+    /**
+     * @return An estimate of the number of bytes of this including the arrays
+     * of positions and values.
+     */
+    @Override
+    public long getMemoryFootprint() {
+        long r = BYTES_CHUNK;
+        if (pos != null) {
+            r += getArrayFootprint(pos.length, Integer.BYTES)
+                    + getArrayFootprint(vs.length, Byte.BYTES);
+        }
+        return r;
+    }
+
+    /**
+     * @param n The number of values stored.
+     * @return An estimate of the number of bytes of a chunk storing {@code n}
+     * values with arrays of positions and values that are no larger than
+     * needed (see {@link #trimToSize()}).
+     */
+    public static long getMemoryFootprintEstimate(int n) {
+        return BYTES_CHUNK + getArrayFootprint(n, Integer.BYTES)
+                + getArrayFootprint(n, Byte.BYTES);
+    }
+
+    /**
+     * Reduces the capacity of the arrays of positions and values to the
+     * number of values stored.
+     */
+    public void trimToSize() {
+        if (pos != null && pos.length > n) {
+            pos = Arrays.copyOf(pos, n);
+            vs = Arrays.copyOf(vs, n);
+            reaccount();
+        }
+    }
+
+    /**
+     * @return The number of values stored.
+     */
+    public int getNumberOfValuesStored() {
+        return n;
+    }
+
+    /**
+     * @return A copy of the values stored in row major order of the cells.
+     */
+    public byte[] getValues() {
+        return Arrays.copyOf(vs, n);
+    }
+
+    /**
+     * @param p The position of a cell in row major order.
+     * @return The index of {@code p} in {@link #pos} if a value is stored for
+     * the cell, otherwise {@code (-(insertion point) - 1)}.
+     */
+    private int indexOf(int p) {
+        return Arrays.binarySearch(pos, 0, n, p);
+    }
+
+    /**
+     * @return Values in row major order as a byte[].
+     */
+    @Override
+    public byte[] toArrayIncludingNoDataValues() {
+        byte[] r = new byte[chunkNRows * chunkNCols];
+        copyInto(r, 0);
+        return r;
+    }
+
+    /**
+     * @return Values excluding noDataValues in row major order as a byte[].
+     */
+    @Override
+    public byte[] toArrayNotIncludingNoDataValues() {
+        byte[] r = new byte[(int) (long) getN()];
+        int nc = chunkNRows * chunkNCols;
+        int k = 0;
+        int j = 0;
+        for (int p = 0; p < nc; p++) {
+            byte v;
+            if (k < n && pos[k] == p) {
+                v = vs[k];
+                k++;
+            } else {
+                v = defaultValue;
+            }
+            if (v != noDataValue) {
+                r[j] = v;
+                j++;
+            }
+        }
+        return r;
+    }
+
+    @Override
+    public void copyInto(byte[] dst, int off) {
+        Arrays.fill(dst, off, off + chunkNRows * chunkNCols, defaultValue);
+        for (int k = 0; k < n; k++) {
+            dst[off + pos[k]] = vs[k];
+        }
+    }
+
+    /**
+     * @param row The row index of the cell w.r.t. the origin of this chunk.
+     * @param col The column index of the cell w.r.t. the origin of this chunk.
+     * @return The value at position given by: chunk cell row {@code row}; chunk
+     * cell column {@code col}.
+     */
+    @Override
+    public byte getCell(int row, int col) {
+        int k = indexOf(row * chunkNCols + col);
+        if (k < 0) {
+            return defaultValue;
+        }
+        return vs[k];
+    }
+
+    /**
+     * Initialises the value at position given by: chunk cell row {@code row};
+     * chunk cell column {@code col}. Utility method for constructor.
+     *
+     * @param row The row index of the cell w.r.t. the origin of this chunk.
+     * @param col The column index of the cell w.r.t. the origin of this chunk.
+     * @param v The value with which the cell is initialised.
+     */
+    @Override
+    public final void initCell(int row, int col, byte v) {
+        set(row * chunkNCols + col, v);
+    }
+
+    /**
+     * Returns the value at position given by: row, col and sets it to
+     * {@code v}.
+     *
+     * @param row The chunk row.
+     * @param col The chunk column.
+     * @param v The value the cell is to be set to.
+     * @return The value at position given by: row, col before it is set to
+     * {@code v}.
+     */
+    @Override
+    public byte setCell(int row, int col, byte v) {
+        byte r = set(row * chunkNCols + col, v);
+        if (r != v && isCacheUpToDate()) {
+            setCacheUpToDate(false);
+        }
+        return r;
+    }
+
+    /**
+     * Sets the value of the cell at position {@code p} in row major order to
+     * {@code v}.
+     *
+     * @param p The position of the cell.
+     * @param v The value the cell is to be set to.
+     * @return The value of the cell before it is set to {@code v}.
+     */
+    private byte set(int p, byte v) {
+        int k = indexOf(p);
+        if (k >= 0) {
+            byte r = vs[k];
+            if (r == noDataValue) {
+                nNoData--;
+            }
+            if (v == defaultValue) {
+                System.arraycopy(pos, k + 1, pos, k, n - k - 1);
+                System.arraycopy(vs, k + 1, vs, k, n - k - 1);
+                n--;
+            } else {
+                vs[k] = v;
+                if (v == noDataValue) {
+                    nNoData++;
+                }
+            }
+            return r;
+        }
+        if (v != defaultValue) {
+            k = -k - 1;
+            if (n == pos.length) {
+                int c = Math.min(chunkNRows * chunkNCols,
+                        Math.max(INITIAL_CAPACITY, n + (n >> 1)));
+                pos = Arrays.copyOf(pos, c);
+                vs = Arrays.copyOf(vs, c);
+                reaccount();
+            }
+            System.arraycopy(pos, k, pos, k + 1, n - k);
+            System.arraycopy(vs, k, vs, k + 1, n - k);
+            pos[k] = p;
+            vs[k] = v;
+            n++;
+            if (v == noDataValue) {
+                nNoData++;
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * @return The number of cells with values that are not noDataValues.
+     */
+    @Override
+    public Long getN() {
+        long nc = (long) chunkNRows * (long) chunkNCols;
+        long r = n - nNoData;
+        if (defaultValue != noDataValue) {
+            r += nc - n;
+        }
+        return r;
+    }
+
+    /**
+     * @param nc The number of cells in the chunk.
+     * @return The number of cell values equal to {@link #defaultValue}.
+     */
+    public int getNumberOfDefaultValues(int nc) {
+        return nc - n;
+    }
+
+    /**
+     * @return The number of cells with the value {@link #defaultValue} which
+     * is {@code 0} if {@link #defaultValue} is the noDataValue.
+     */
+    private int getNumberOfDefaultDataValues() {
+        if (defaultValue == noDataValue) {
+            return 0;
+        }
+        return getNumberOfDefaultValues(chunkNRows * chunkNCols);
+    }
+
+    /**
+     * @return The values stored that are not noDataValues sorted ascending.
+     */
+    private byte[] getSortedValues() {
+        byte[] r = new byte[n - nNoData];
+        int j = 0;
+        for (int k = 0; k < n; k++) {
+            if (vs[k] != noDataValue) {
+                r[j] = vs[k];
+                j++;
+            }
+        }
+        Arrays.sort(r);
+        return r;
+    }
+
+    /**
+     * @return The sum of all data values as a BigDecimal.
+     */
+    @Override
+    public BigDecimal getSum() {
+        long r = (long) getNumberOfDefaultDataValues() * defaultValue;
+        for (int k = 0; k < n; k++) {
+            if (vs[k] != noDataValue) {
+                r += vs[k];
+            }
+        }
+        return BigDecimal.valueOf(r);
+    }
+
+    /**
+     * @return The minimum of all data values.
+     */
+    @Override
+    public Byte getMin() {
+        byte r = Byte.MAX_VALUE;
+        if (getNumberOfDefaultDataValues() > 0) {
+            r = defaultValue;
+        }
+        for (int k = 0; k < n; k++) {
+            byte v = vs[k];
+            if (v != noDataValue && v < r) {
+                r = v;
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @return The maximum of all data values.
+     */
+    @Override
+    public Byte getMax() {
+        byte r = Byte.MIN_VALUE;
+        if (getNumberOfDefaultDataValues() > 0) {
+            r = defaultValue;
+        }
+        for (int k = 0; k < n; k++) {
+            byte v = vs[k];
+            if (v != noDataValue && v > r) {
+                r = v;
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @return The mode.
+     */
+    @Override
+    protected HashSet<Byte> getMode() {
+        HashSet<Byte> r = new HashSet<>();
+        long max = getNumberOfDefaultDataValues();
+        if (max > 0) {
+            r.add(defaultValue);
+        }
+        byte[] s = getSortedValues();
+        int k = 0;
+        while (k < s.length) {
+            int j = k + 1;
+            while (j < s.length && s[j] == s[k]) {
+                j++;
+            }
+            long c = j - k;
+            if (c > max) {
+                r.clear();
+                r.add(s[k]);
+                max = c;
+            } else if (c == max) {
+                r.add(s[k]);
+            }
+            k = j;
+        }
+        return r;
+    }
+
+    /**
+     * @return The median.
+     */
+    @Override
+    public double getMedian() {
+        long nv = getN();
+        if (nv > 0) {
+            byte[] s = getSortedValues();
+            int nd = getNumberOfDefaultDataValues();
+            int lo = 0;
+            while (lo < s.length && s[lo] < defaultValue) {
+                lo++;
+            }
+            if (nv % 2L == 0L) {
+                return (((double) getSorted(s, nd, lo, nv / 2L - 1L)
+                        + getSorted(s, nd, lo, nv / 2L)) / 2.0d);
+            } else {
+                return getSorted(s, nd, lo, nv / 2L);
+            }
+        }
+        return getGrid().getNoDataValue();
+    }
+
+    /**
+     * @param s The values stored that are not noDataValues sorted ascending.
+     * @param nd The number of default values that are data values.
+     * @param lo The number of values in {@code s} less than
+     * {@link #defaultValue}.
+     * @param k The index.
+     * @return The {@code k}th data value in ascending order.
+     */
+    private byte getSorted(byte[] s, int nd, int lo, long k) {
+        if (k < lo) {
+            return s[(int) k];
+        } else if (k < lo + nd) {
+            return defaultValue;
+        }
+        return s[(int) k - nd];
+    }
+
+    /**
+     * @return The standard deviation.
+     */
+    @Override
+    protected BigDecimal getStandardDeviation(int dp, RoundingMode rm) {
+        BigDecimal r = BigDecimal.ZERO;
+        BigDecimal mean = getArithmeticMean(dp, rm);
+        long c = getNumberOfDefaultDataValues();
+        if (c > 0) {
+            r = BigDecimal.valueOf(defaultValue).subtract(mean).pow(2)
+                    .multiply(BigDecimal.valueOf(c));
+        }
+        byte[] s = getSortedValues();
+        int k = 0;
+        while (k < s.length) {
+            int j = k + 1;
+            while (j < s.length && s[j] == s[k]) {
+                j++;
+            }
+            r = r.add(BigDecimal.valueOf(s[k]).subtract(mean).pow(2)
+                    .multiply(BigDecimal.valueOf(j - k)));
+            c += j - k;
+            k = j;
+        }
+        if ((c - 1L) > 0L) {
+            return Math_BigDecimal.sqrt(Math_BigDecimal.divideRoundIfNecessary(
+                    r, BigInteger.valueOf(c - 1L), dp * 2, rm), dp, rm);
+        } else {
+            return r;
+        }
+    }
+
+    /**
+     * @return The number of different data values.
+     */
+    protected BigInteger getDiversityBigInteger() {
+        byte[] s = getSortedValues();
+        long r = 0L;
+        for (int k = 0; k < s.length; k++) {
+            if (k == 0 || s[k] != s[k - 1]) {
+                r++;
+            }
+        }
+        if (getNumberOfDefaultDataValues() > 0) {
+            r++;
+        }
+        return BigInteger.valueOf(r);
+    }
+
+    /**
+     * @return An iterator for iterating over the values in this chunk.
+     */
+    public Grids_ChunkIteratorByteArrayOrMap iterator() {
+        return new Grids_ChunkIteratorByteArrayOrMap(this);
+    }
+
+    @Override
+    public Byte getMin(boolean update) {
+        return getMin();
+    }
+
+    @Override
+    public Byte getMax(boolean update) {
+        return getMax();
+    }
+}
@@ -66,6 +66,21 @@ public abstract class Grids_ChunkInt extends Grids_ChunkNumber {
         return BigDecimal.valueOf(getCell(row, col));
     }
 
+    /**
+     * @param row The row of the cell w.r.t. the origin of this chunk.
+     * @param col The column of the cell w.r.t. the origin of this chunk.
+     * @return The value at row, col as a double or {@link Double#NaN} if it is
+     * the no data value.
+     */
+    @Override
+    public double getCellDouble(int row, int col) {
+        int v = getCell(row, col);
+        if (v == getGrid().getNoDataValue()) {
+            return Double.NaN;
+        }
+        return v;
+    }
+
     /**
      * Initialises the value at position given by: row, col.
      *
@@ -89,6 +104,51 @@ public abstract class Grids_ChunkInt extends Grids_ChunkNumber {
      */
     public abstract int setCell(int r, int c, int v) throws Exception;
 
+    /**
+     * Copies the values in chunk cell row {@code r} into {@code dst}
+     * starting at {@code off}.
+     *
+     * @param r The chunk cell row.
+     * @param dst The array to copy into. This must have at least
+     * {@code off + getChunkNCols()} elements.
+     * @param off The index in {@code dst} of the first value copied.
+     */
+    public void getRow(int r, int[] dst, int off) {
+        for (int c = 0; c < chunkNCols; c++) {
+            dst[off + c] = getCell(r, c);
+        }
+    }
+
+    /**
+     * Sets the values in chunk cell row {@code r} to those in {@code src}
+     * starting at {@code off}.
+     *
+     * @param r The chunk cell row.
+     * @param src The array of values. This must have at least
+     * {@code off + getChunkNCols()} elements.
+     * @param off The index in {@code src} of the first value.
+     * @throws Exception If encountered.
+     */
+    public void setRow(int r, int[] src, int off) throws Exception {
+        for (int c = 0; c < chunkNCols; c++) {
+            setCell(r, c, src[off + c]);
+        }
+    }
+
+    /**
+     * Copies all the values including noDataValues in row major order into
+     * {@code dst} starting at {@code off}.
+     *
+     * @param dst The array to copy into. This must have at least
+     * {@code off + getChunkNRows() * getChunkNCols()} elements.
+     * @param off The index in {@code dst} of the first value copied.
+     */
+    public void copyInto(int[] dst, int off) {
+        for (int r = 0; r < chunkNRows; r++) {
+            getRow(r, dst, off + r * chunkNCols);
+        }
+    }
+
     /**
      * @return Values in row major order as an int[].
      */
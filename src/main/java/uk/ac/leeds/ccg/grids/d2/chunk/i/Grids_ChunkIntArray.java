@@ -20,7 +20,7 @@ import java.util.Arrays;
 import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
 
 /**
- * Grids_ChunkInt that stores cell values in a int[][].
+ * Grids_ChunkInt that stores cell values in an int[] in row major order.
  *
  * @author Andy Turner
  * @version 1.0.0
@@ -30,9 +30,11 @@ public class Grids_ChunkIntArray extends Grids_ChunkIntArrayOrMap {
     private static final long serialVersionUID = 1L;
 
     /**
-     * For storing values arranged in rows and columns.
+     * For storing values in row major order: the value at chunk cell row
+     * {@code row}, chunk cell column {@code col} is at index
+     * {@code row * chunkNCols + col}.
      */
-    private int[][] data;
+    private int[] data;
 
     /**
      * Creates a new chunk filled with noDataValues.
@@ -44,10 +46,7 @@ public class Grids_ChunkIntArray extends Grids_ChunkIntArrayOrMap {
         super(g, i);
         initData();
         int noDataValue = g.getNoDataValue();
-        int row;
-        for (row = 0; row < chunkNRows; row++) {
-            Arrays.fill(data[row], noDataValue);
-        }
+        Arrays.fill(data, noDataValue);
         cacheUpToDate = false;
     }
 
@@ -58,11 +57,7 @@ public class Grids_ChunkIntArray extends Grids_ChunkIntArrayOrMap {
     protected Grids_ChunkIntArray(Grids_ChunkInt c, Grids_2D_ID_int i) {
         super(c.getGrid(), i);
         initData();
-        for (int row = 0; row < chunkNRows; row++) {
-            for (int col = 0; col < chunkNCols; col++) {
-                data[row][col] = c.getCell(row, col);
-            }
-        }
+        c.copyInto(data, 0);
         cacheUpToDate = false;
     }
 
@@ -71,13 +66,13 @@ public class Grids_ChunkIntArray extends Grids_ChunkIntArrayOrMap {
      */
     @Override
     protected final void initData() {
-        data = new int[chunkNRows][chunkNCols];
+        data = new int[chunkNRows * chunkNCols];
     }
 
     /**
      * @return {@link #data}.
      */
-    protected int[][] getData() {
+    protected int[] getData() {
         return data;
     }
 
@@ -90,6 +85,19 @@ public class Grids_ChunkIntArray extends Grids_ChunkIntArrayOrMap {
         //System.gc();
     }
 
+    /**
+     * @return An estimate of the number of bytes of this including the
+     * array of values.
+     */
+    @Override
+    public long getMemoryFootprint() {
+        if (data == null) {
+            return BYTES_CHUNK;
+        }
+        return BYTES_CHUNK + getArrayFootprint(
+                (long) chunkNRows * chunkNCols, Integer.BYTES);
+    }
+
     /**
      * @param row The row.
      * @param col The column.
@@ -98,7 +106,7 @@ public class Grids_ChunkIntArray extends Grids_ChunkIntArrayOrMap {
      */
     @Override
     public int getCell(int row, int col) {
-        return data[row][col];
+        return data[row * chunkNCols + col];
     }
 
     /**
@@ -110,7 +118,7 @@ public class Grids_ChunkIntArray extends Grids_ChunkIntArrayOrMap {
      */
     @Override
     public void initCell(int row, int col, int v) {
-        data[row][col] = v;
+        data[row * chunkNCols + col] = v;
     }
 
     /**
@@ -124,8 +132,9 @@ public class Grids_ChunkIntArray extends Grids_ChunkIntArrayOrMap {
      */
     @Override
     public int setCell(int row, int col, int v) {
-        int oldValue = data[row][col];
-        data[row][col] = v;
+        int k = row * chunkNCols + col;
+        int oldValue = data[k];
+        data[k] = v;
         if (isCacheUpToDate()) {
             if (v != oldValue) {
                 setCacheUpToDate(false);
@@ -142,17 +151,29 @@ public class Grids_ChunkIntArray extends Grids_ChunkIntArrayOrMap {
         return new Grids_ChunkIteratorIntArrayOrMap(this);
     }
 
+    @Override
+    public void getRow(int r, int[] dst, int off) {
+        System.arraycopy(data, r * chunkNCols, dst, off, chunkNCols);
+    }
+
+    @Override
+    public void setRow(int r, int[] src, int off) {
+        System.arraycopy(src, off, data, r * chunkNCols, chunkNCols);
+        setCacheUpToDate(false);
+    }
+
+    @Override
+    public void copyInto(int[] dst, int off) {
+        System.arraycopy(data, 0, dst, off, data.length);
+    }
+
     @Override
     public Integer getMin(boolean update) {
-        Integer r = data[0][0];
-        Grids_GridInt g = getGrid();
-        int noDataValue = g.getNoDataValue();
-        for (int row = 0; row < chunkNRows; row++) {
-            for (int col = 0; col < chunkNCols; col++) {
-                int v = data[chunkNRows][chunkNCols];
-                if (v != noDataValue) {
-                    r = Math.min(r, v);
-                }
+        Integer r = null;
+        int noDataValue = getGrid().getNoDataValue();
+        for (int v : data) {
+            if (v != noDataValue) {
+                r = (r == null) ? v : Math.min(r, v);
             }
         }
         return r;
@@ -160,15 +181,11 @@ public class Grids_ChunkIntArray extends Grids_ChunkIntArrayOrMap {
 
     @Override
     public Integer getMax(boolean update) {
-        Integer r = data[0][0];
-        Grids_GridInt g = getGrid();
-        int noDataValue = g.getNoDataValue();
-        for (int row = 0; row < chunkNRows; row++) {
-            for (int col = 0; col < chunkNCols; col++) {
-                int v = data[chunkNRows][chunkNCols];
-                if (v != noDataValue) {
-                    r = Math.min(r, v);
-                }
+        Integer r = null;
+        int noDataValue = getGrid().getNoDataValue();
+        for (int v : data) {
+            if (v != noDataValue) {
+                r = (r == null) ? v : Math.max(r, v);
             }
         }
         return r;
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2019 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.grids.d2.chunk.i;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
+import uk.ac.leeds.ccg.grids.d2.grid.i.Grids_GridInt;
+import uk.ac.leeds.ccg.grids.io.Grids_MappedChunkStore;
+
+/**
+ * Grids_ChunkInt extension that stores cell values in a region of a memory
+ * mapped file (see {@link Grids_MappedChunkStore}). Values are read and
+ * written directly to and from the mapped buffer in row major order, so they
+ * are not held on the heap and changes go to the file via the operating system
+ * page cache. A chunk of this type is always regarded as having an up to date
+ * cache, so swapping it only releases the (small) chunk object and the chunk
+ * is recreated from the same region when next loaded.
+ *
+ * @author Andy Turner
+ * @version 1.0.0
+ */
+public class Grids_ChunkIntMapped extends Grids_ChunkIntArrayOrMap {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The number of bytes used to store each value.
+     */
+    public static final int BYTES = 4;
+
+    /**
+     * The mapped region in which values are stored.
+     */
+    private transient ByteBuffer data;
+
+    /**
+     * The store in which {@link #data} is mapped.
+     */
+    private transient Grids_MappedChunkStore store;
+
+    /**
+     * Creates a new instance backed by the region for chunk {@code i} in the
+     * memory mapped store of {@code g}. If the region has not been
+     * initialised, all values are initialised to the no data value of
+     * {@code g}.
+     *
+     * @param g What {@link #grid} is set to.
+     * @param i What {@link #id} is set to.
+     * @throws IOException If encountered.
+     */
+    protected Grids_ChunkIntMapped(Grids_GridInt g, Grids_2D_ID_int i)
+            throws IOException {
+        super(g, i);
+        store = g.getMappedStore(BYTES);
+        data = store.map(i);
+        if (!store.isInitialised(i)) {
+            int ndv = g.getNoDataValue();
+            int n = chunkNRows * chunkNCols;
+            for (int pos = 0; pos < n; pos++) {
+                data.putInt(pos * BYTES, ndv);
+            }
+            store.setInitialised(i);
+        }
+        cacheUpToDate = true;
+    }
+
+    /**
+     * Creates a new instance with values from {@code c}.
+     *
+     * @param c The chunk that's values will be duplicated.
+     * @param i The chunkID.
+     * @throws IOException If encountered.
+     */
+    protected Grids_ChunkIntMapped(Grids_ChunkInt c, Grids_2D_ID_int i)
+            throws IOException {
+        this(c.getGrid(), i);
+        for (int row = 0; row < chunkNRows; row++) {
+            for (int col = 0; col < chunkNCols; col++) {
+                initCell(row, col, c.getCell(row, col));
+            }
+        }
+    }
+
+    /**
+     * The data is in the mapped region.
+     */
+    @Override
+    protected final void initData() {
+    }
+
+    /**
+     * Sets {@link #data} to {@code null}. The values remain in the mapped
+     * file.
+     */
+    @Override
+    protected void clearData() {
+        data = null;
+    }
+
+    /**
+     * Unmaps the region from {@link #store}. The values remain in the mapped
+     * file and the region is mapped again when the chunk is next loaded.
+     */
+    @Override
+    public void free() {
+        if (store != null) {
+            store.unmap(id);
+        }
+        data = null;
+    }
+
+    /**
+     * @return An estimate of the number of bytes of this. The mapped values
+     * are outside the heap in the page cache and so are not included.
+     */
+    @Override
+    public long getMemoryFootprint() {
+        return BYTES_CHUNK + BYTES_OBJECT * 4L;
+    }
+
+    /**
+     * @return {@link #data}.
+     */
+    protected ByteBuffer getData() {
+        return data;
+    }
+
+    /**
+     * This chunk is always up to date with the mapped file.
+     *
+     * @param b Ignored.
+     */
+    @Override
+    public void setCacheUpToDate(boolean b) {
+    }
+
+    /**
+     * @param row The row index of the cell w.r.t. the origin of this chunk.
+     * @param col The column index of the cell w.r.t. the origin of this chunk.
+     * @return The index in {@link #data} of the value at row, col.
+     */
+    protected final int getIndex(int row, int col) {
+        return ((row * chunkNCols) + col) * BYTES;
+    }
+
+    /**
+     * @param row The row index of the cell w.r.t. the origin of this chunk.
+     * @param col The column index of the cell w.r.t. the origin of this chunk.
+     * @return The value at position given by: chunk cell row {@code row}; chunk
+     * cell column {@code col}.
+     */
+    @Override
+    public int getCell(int row, int col) {
+        return data.getInt(getIndex(row, col));
+    }
+
+    /**
+     * Initialises the value at position given by: row, col.
+     *
+     * @param row The row index of the cell w.r.t. the origin of this chunk.
+     * @param col The column index of the cell w.r.t. the origin of this chunk.
+     * @param v The value initialised.
+     */
+    @Override
+    public void initCell(int row, int col, int v) {
+        data.putInt(getIndex(row, col), v);
+    }
+
+    /**
+     * Sets the value at position given by: chunk cell row {@code row}; chunk
+     * cell row {@code col} to {@code v}.
+     *
+     * @param row The row index of the cell w.r.t. the origin of this chunk.
+     * @param col The column index of the cell w.r.t. the origin of this chunk.
+     * @param v The value set.
+     * @return The value at position given by: chunk cell row {@code row};
+     * chunk cell row {@code col} prior to it being set to {@code v}.
+     */
+    @Override
+    public int setCell(int row, int col, int v) {
+        int index = getIndex(row, col);
+        int oldValue = data.getInt(index);
+        data.putInt(index, v);
+        return oldValue;
+    }
+
+    /**
+     * @return An iterator for iterating over the cells in this.
+     */
+    public Grids_ChunkIteratorIntArrayOrMap iterator() {
+        return new Grids_ChunkIteratorIntArrayOrMap(this);
+    }
+
+    @Override
+    public Integer getMin(boolean update) {
+        int ndv = getGrid().getNoDataValue();
+        Integer r = null;
+        for (int row = 0; row < chunkNRows; row++) {
+            for (int col = 0; col < chunkNCols; col++) {
+                int v = getCell(row, col);
+                if (v != ndv) {
+                    r = (r == null) ? v : Math.min(r, v);
+                }
+            }
+        }
+        return r;
+    }
+
+    @Override
+    public Integer getMax(boolean update) {
+        int ndv = getGrid().getNoDataValue();
+        Integer r = null;
+        for (int row = 0; row < chunkNRows; row++) {
+            for (int col = 0; col < chunkNCols; col++) {
+                int v = getCell(row, col);
+                if (v != ndv) {
+                    r = (r == null) ? v : Math.max(r, v);
+                }
+            }
+        }
+        return r;
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2019 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.grids.d2.chunk.i;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
+import uk.ac.leeds.ccg.grids.d2.grid.i.Grids_GridInt;
+import uk.ac.leeds.ccg.grids.memory.Grids_DirectBufferPool;
+
+/**
+ * Grids_ChunkInt extension that stores cell values in row major order in a
+ * direct buffer outside the heap. The values add nothing to the work of the
+ * garbage collector, so grids with many large chunks of this type can be
+ * processed with a small heap. The buffer is allocated from and freed to the
+ * {@link Grids_DirectBufferPool} of the environment: it is freed when the
+ * chunk is swapped and written, so the memory is reused by the next chunk
+ * loaded rather than waiting for the garbage collector. The bytes of the
+ * buffer are accounted by the environment against its off heap budget (see
+ * {@link #getOffHeapFootprint()}).
+ *
+ * Chunks of this type are written in the same way as array chunks, and are
+ * read back as chunks of this type.
+ *
+ * @author Andy Turner
+ * @version 1.0.0
+ */
+public class Grids_ChunkIntOffHeap extends Grids_ChunkIntArrayOrMap {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The buffer in which values are stored. This is {@code null} once the
+     * chunk is freed.
+     */
+    private transient ByteBuffer data;
+
+    /**
+     * A view of {@link #data} as ints.
+     */
+    private transient IntBuffer values;
+
+    /**
+     * Creates a new instance with all values set to the no data value of
+     * {@code g}.
+     *
+     * @param g What {@link #grid} is set to.
+     * @param i What {@link #id} is set to.
+     */
+    protected Grids_ChunkIntOffHeap(Grids_GridInt g, Grids_2D_ID_int i) {
+        super(g, i);
+        initData();
+        int ndv = g.getNoDataValue();
+        int n = chunkNRows * chunkNCols;
+        for (int k = 0; k < n; k++) {
+            values.put(k, ndv);
+        }
+        cacheUpToDate = false;
+    }
+
+    /**
+     * Creates a new instance with values from {@code c}.
+     *
+     * @param c The chunk that's values will be duplicated.
+     * @param i The chunkID.
+     */
+    protected Grids_ChunkIntOffHeap(Grids_ChunkInt c, Grids_2D_ID_int i) {
+        super(c.getGrid(), i);
+        initData();
+        int[] row = new int[chunkNCols];
+        for (int r = 0; r < chunkNRows; r++) {
+            c.getRow(r, row, 0);
+            setRow(r, row, 0);
+        }
+        cacheUpToDate = false;
+    }
+
+    /**
+     * Allocates {@link #data} from the pool of the environment.
+     */
+    @Override
+    protected final void initData() {
+        setData(env.getDirectBufferPool().allocate(
+                chunkNRows * chunkNCols * Integer.BYTES));
+    }
+
+    private void setData(ByteBuffer b) {
+        data = b;
+        values = b == null ? null : b.asIntBuffer();
+    }
+
+    /**
+     * Frees {@link #data}.
+     */
+    @Override
+    protected void clearData() {
+        free();
+    }
+
+    /**
+     * Returns {@link #data} to the pool of the environment to be reused. This
+     * chunk must not be used after this.
+     */
+    @Override
+    public synchronized void free() {
+        if (data != null) {
+            env.getDirectBufferPool().free(data);
+            setData(null);
+        }
+    }
+
+    /**
+     * @return An estimate of the number of bytes of this on the heap. The
+     * values are outside the heap and not included.
+     */
+    @Override
+    public long getMemoryFootprint() {
+        return BYTES_CHUNK + BYTES_OBJECT * 4L;
+    }
+
+    /**
+     * @return The number of bytes of {@link #data}.
+     */
+    @Override
+    public long getOffHeapFootprint() {
+        ByteBuffer b = data;
+        return b == null ? 0L : b.capacity();
+    }
+
+    /**
+     * @param row The row index of the cell w.r.t. the origin of this chunk.
+     * @param col The column index of the cell w.r.t. the origin of this chunk.
+     * @return The value at position given by: chunk cell row {@code row}; chunk
+     * cell column {@code col}.
+     */
+    @Override
+    public int getCell(int row, int col) {
+        return values.get(row * chunkNCols + col);
+    }
+
+    /**
+     * Initialises the value at position given by: row, col.
+     *
+     * @param row The row index of the cell w.r.t. the origin of this chunk.
+     * @param col The column index of the cell w.r.t. the origin of this chunk.
+     * @param v The value initialised.
+     */
+    @Override
+    public void initCell(int row, int col, int v) {
+        values.put(row * chunkNCols + col, v);
+    }
+
+    /**
+     * Sets the value at position given by: chunk cell row {@code row}; chunk
+     * cell row {@code col} to {@code v}.
+     *
+     * @param row The row index of the cell w.r.t. the origin of this chunk.
+     * @param col The column index of the cell w.r.t. the origin of this chunk.
+     * @param v The value set.
+     * @return The value at position given by: chunk cell row {@code row};
+     * chunk cell row {@code col} prior to it being set to {@code v}.
+     */
+    @Override
+    public int setCell(int row, int col, int v) {
+        int k = row * chunkNCols + col;
+        int oldValue = values.get(k);
+        values.put(k, v);
+        if (isCacheUpToDate()) {
+            if (v != oldValue) {
+                setCacheUpToDate(false);
+            }
+        }
+        return oldValue;
+    }
+
+    /**
+     * @return An iterator for iterating over the cells in this.
+     */
+    public Grids_ChunkIteratorIntArrayOrMap iterator() {
+        return new Grids_ChunkIteratorIntArrayOrMap(this);
+    }
+
+    @Override
+    public void getRow(int r, int[] dst, int off) {
+        IntBuffer b = values.duplicate();
+        b.position(r * chunkNCols);
+        b.get(dst, off, chunkNCols);
+    }
+
+    @Override
+    public void setRow(int r, int[] src, int off) {
+        IntBuffer b = values.duplicate();
+        b.position(r * chunkNCols);
+        b.put(src, off, chunkNCols);
+        setCacheUpToDate(false);
+    }
+
+    @Override
+    public void copyInto(int[] dst, int off) {
+        IntBuffer b = values.duplicate();
+        b.position(0);
+        b.get(dst, off, chunkNRows * chunkNCols);
+    }
+
+    @Override
+    public Integer getMin(boolean update) {
+        int ndv = getGrid().getNoDataValue();
+        Integer r = null;
+        int n = chunkNRows * chunkNCols;
+        for (int k = 0; k < n; k++) {
+            int v = values.get(k);
+            if (v != ndv) {
+                r = (r == null) ? v : Math.min(r, v);
+            }
+        }
+        return r;
+    }
+
+    @Override
+    public Integer getMax(boolean update) {
+        int ndv = getGrid().getNoDataValue();
+        Integer r = null;
+        int n = chunkNRows * chunkNCols;
+        for (int k = 0; k < n; k++) {
+            int v = values.get(k);
+            if (v != ndv) {
+                r = (r == null) ? v : Math.max(r, v);
+            }
+        }
+        return r;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        int[] vs = new int[chunkNRows * chunkNCols];
+        copyInto(vs, 0);
+        out.writeObject(vs);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException,
+            ClassNotFoundException {
+        in.defaultReadObject();
+        int[] vs = (int[]) in.readObject();
+        // The environment is not yet set so the buffer is not pooled.
+        setData(ByteBuffer.allocateDirect(vs.length * Integer.BYTES)
+                .order(ByteOrder.nativeOrder()));
+        values.put(vs);
+        values.clear();
+    }
+}
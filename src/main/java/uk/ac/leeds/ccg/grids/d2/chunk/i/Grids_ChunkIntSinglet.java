@@ -60,6 +60,14 @@ public class Grids_ChunkIntSinglet extends Grids_ChunkInt {
     protected void clearData() {
     }
 
+    /**
+     * @return {@link #BYTES_CHUNK} as the value is held in a field.
+     */
+    @Override
+    public long getMemoryFootprint() {
+        return BYTES_CHUNK;
+    }
+
     @Override
     public int getCell(int row, int col) {
         return v;
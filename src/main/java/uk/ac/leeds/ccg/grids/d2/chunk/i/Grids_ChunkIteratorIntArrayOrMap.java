@@ -30,7 +30,7 @@ public class Grids_ChunkIteratorIntArrayOrMap
 
     private static final long serialVersionUID = 1L;
 
-    protected int[][] data;
+    protected int[] data;
 
     public Grids_ChunkIteratorIntArrayOrMap(Grids_ChunkIntArray chunk) {
         super(chunk);
@@ -39,7 +39,20 @@ public class Grids_ChunkIteratorIntArrayOrMap
     
     public Grids_ChunkIteratorIntArrayOrMap(Grids_ChunkIntMap chunk) {
         super(chunk);
-        data = chunk.to2DIntArray();
+        data = new int[nRows * nCols];
+        chunk.copyInto(data, 0);
+    }
+
+    public Grids_ChunkIteratorIntArrayOrMap(Grids_ChunkIntMapped chunk) {
+        super(chunk);
+        data = new int[nRows * nCols];
+        chunk.copyInto(data, 0);
+    }
+
+    public Grids_ChunkIteratorIntArrayOrMap(Grids_ChunkIntOffHeap chunk) {
+        super(chunk);
+        data = new int[nRows * nCols];
+        chunk.copyInto(data, 0);
     }
 
     /**
@@ -49,10 +62,10 @@ public class Grids_ChunkIteratorIntArrayOrMap
      */
     public Integer next() {
         next0();
-        return data[row][col];
+        return data[row * nCols + col];
     }
 
     public void remove() {
-        data[row][col] = ((Grids_GridInt) grid).getNoDataValue();
+        data[row * nCols + col] = ((Grids_GridInt) grid).getNoDataValue();
     }
 }
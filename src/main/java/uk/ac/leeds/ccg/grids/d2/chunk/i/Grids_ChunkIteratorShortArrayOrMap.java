@@ -0,0 +1,62 @@
+/*
+ * Copyright 2019 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.grids.d2.chunk.i;
+
+import uk.ac.leeds.ccg.grids.d2.chunk.Grids_ChunkRowMajorOrderIterator;
+import uk.ac.leeds.ccg.grids.d2.grid.i.Grids_GridShort;
+
+/**
+ * For iterating through the values in a Grids_GridChunkShortArray instance.
+ * The values are not returned in any particular order.
+ *
+ * @author Andy Turner
+ * @version 1.0.0
+ */
+public class Grids_ChunkIteratorShortArrayOrMap
+        extends Grids_ChunkRowMajorOrderIterator {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * A reference to or copy of the data to iterate over.
+     */
+    protected short[] data;
+
+    public Grids_ChunkIteratorShortArrayOrMap(
+            Grids_ChunkShortArrayOrMap c) {
+        super(c);
+        if (c instanceof Grids_ChunkShortArray) {
+            data = ((Grids_ChunkShortArray) c).getData();
+        } else {
+            data = new short[nRows * nCols];
+            c.copyInto(data, 0);
+        }
+    }
+
+    /**
+     * Returns the next element in the iteration.
+     *
+     * @return the next element in the iteration.
+     */
+    public Short next() {
+        next0();
+        return data[row * nCols + col];
+    }
+
+    public void remove() {
+        data[row * nCols + col] = ((Grids_GridShort) grid).getNoDataValue();
+    }
+}
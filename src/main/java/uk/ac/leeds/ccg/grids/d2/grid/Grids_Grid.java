@@ -16,15 +16,22 @@
 package uk.ac.leeds.ccg.grids.d2.grid;
 
 import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import uk.ac.leeds.ccg.generic.io.Generic_FileStore;
 import uk.ac.leeds.ccg.generic.io.Generic_Path;
 import uk.ac.leeds.ccg.generic.io.Generic_IO;
@@ -32,12 +39,18 @@ import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
 import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_long;
 import uk.ac.leeds.ccg.grids.memory.Grids_Account;
 import uk.ac.leeds.ccg.grids.memory.Grids_AccountDetail;
+import uk.ac.leeds.ccg.grids.memory.Grids_EvictionPolicy;
 import uk.ac.leeds.ccg.grids.core.Grids_Environment;
 import uk.ac.leeds.ccg.grids.core.Grids_Object;
 import uk.ac.leeds.ccg.grids.d2.chunk.Grids_Chunk;
 import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkDoubleSinglet;
 import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkIntSinglet;
 import uk.ac.leeds.ccg.grids.d2.stats.Grids_Stats;
+import uk.ac.leeds.ccg.grids.io.Grids_ChunkIO;
+import uk.ac.leeds.ccg.grids.io.Grids_ChunkCodec;
+import uk.ac.leeds.ccg.grids.io.Grids_ChunkPrefetcher;
+import uk.ac.leeds.ccg.grids.io.Grids_CompressedChunkStore;
+import uk.ac.leeds.ccg.grids.io.Grids_MappedChunkStore;
 import uk.ac.leeds.ccg.grids.io.Grids_ESRIAsciiGridImporter.Header;
 import uk.ac.leeds.ccg.grids.d2.util.Grids_Utilities;
 import java.util.HashSet;
@@ -147,16 +160,95 @@ public abstract class Grids_Grid extends Grids_Object {
     protected final long fsID;
 
     /**
-     * The data are stored in a map with chunk ID keys and values that are
-     * either chunks, or {@code null} - if the chunk is not stored in the fast
-     * access memory, but in the file store {@link #fs}.
+     * The chunks stored in the fast access memory keyed by chunk ID. Chunks
+     * that are not in the fast access memory are in the file store
+     * {@link #fs} and have no mapping. This is a concurrent map so that
+     * different threads can get, load and swap chunks at the same time.
+     * Loading and swapping the chunk with a given chunk ID is serialised by
+     * locking on {@link #getLock(Grids_2D_ID_int)}.
      */
-    protected TreeMap<Grids_2D_ID_int, Grids_Chunk> data;
+    protected ConcurrentHashMap<Grids_2D_ID_int, Grids_Chunk> data;
+
+    /**
+     * The maximum number of chunks a grid can have for {@link #chunkTable}
+     * to be used.
+     */
+    public static final int MAX_CHUNK_TABLE_LENGTH = 1 << 22;
+
+    /**
+     * The chunks in {@link #data} indexed by {@code cr * nChunkCols + cc}
+     * where {@code cr} and {@code cc} are the chunk row and chunk column
+     * indexes. This is for getting loaded chunks by chunk row and column
+     * without creating a chunk ID and looking it up in {@link #data}. It is
+     * kept in step with {@link #data} by {@link #putChunk(Grids_2D_ID_int,
+     * Grids_Chunk)} and {@link #clearChunk(Grids_2D_ID_int)}: an entry is
+     * {@code null} if the chunk is not loaded (or if it has only just been
+     * loaded by another thread), in which case {@link #data} is used. This is
+     * {@code null} for grids with more than {@link #MAX_CHUNK_TABLE_LENGTH}
+     * chunks which are expected to have most chunks not loaded, so for these
+     * only {@link #data} is used.
+     */
+    protected transient volatile AtomicReferenceArray<Grids_Chunk> chunkTable;
 
     /**
      * A set of chunks worth swapping. These do not include singlet type chunks.
      */
-    protected HashSet<Grids_2D_ID_int> worthSwapping;
+    protected Set<Grids_2D_ID_int> worthSwapping;
+
+    /**
+     * The IDs of all the chunks in chunk ID order. This is initialised lazily
+     * by {@link #getChunkIDs()}.
+     */
+    protected transient volatile NavigableSet<Grids_2D_ID_int> chunkIDs;
+
+    /**
+     * The pin counts of chunks keyed by chunk ID. Chunks with a pin count are
+     * not swapped.
+     */
+    protected transient ConcurrentHashMap<Grids_2D_ID_int, Integer> pins
+            = new ConcurrentHashMap<>();
+
+    /**
+     * The chunk IDs of chunks marked as not to clear (see
+     * {@link Grids_Environment#addToNotToClear(Grids_Grid, Grids_2D_ID_int)}).
+     * These are kept apart from {@link #pins} so that clearing the marks never
+     * releases a pin.
+     */
+    protected transient Set<Grids_2D_ID_int> notToClear
+            = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The number of times each chunk has been put, cleared or written keyed
+     * by chunk ID. A chunk read from file is only current if this has not
+     * changed since the read started (see {@link #getVersion}).
+     */
+    protected transient ConcurrentHashMap<Grids_2D_ID_int, Long> versions
+            = new ConcurrentHashMap<>();
+
+    /**
+     * For serialising loading and swapping the chunk with a given chunk ID.
+     */
+    private transient Object[] locks = initLocks(64);
+
+    /**
+     * A memory mapped backing store for chunks. This is {@code null} unless
+     * chunks that are backed by a memory mapped file are used.
+     */
+    protected Grids_MappedChunkStore mappedStore;
+
+    /**
+     * For encoding chunks written to file. This is {@code null} if chunks are
+     * not encoded.
+     */
+    protected Grids_ChunkCodec codec;
+
+    /**
+     * If {@code true} then chunks that have changed since they were last
+     * written are compacted (see {@link #compact(Grids_2D_ID_int)}) before
+     * they are swapped, so they are written and subsequently loaded in the
+     * form that uses least memory.
+     */
+    protected boolean adaptive;
 
     /**
      * For storing the number of chunk rows.
@@ -250,8 +342,46 @@ public abstract class Grids_Grid extends Grids_Object {
         name = fs.getBaseDir().getFileName().toString() + fsID;
         initNChunkRows();
         initNChunkCols();
-        data = new TreeMap<>();
-        worthSwapping = new HashSet<>();
+        data = new ConcurrentHashMap<>();
+        initChunkTable();
+        worthSwapping = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Initialises {@link #chunkTable} from {@link #data} unless there are more
+     * than {@link #MAX_CHUNK_TABLE_LENGTH} chunks. This is to be called
+     * whenever {@link #data} is set.
+     */
+    protected final void initChunkTable() {
+        setChunkTableEnabled((long) nChunkRows * (long) nChunkCols
+                <= MAX_CHUNK_TABLE_LENGTH);
+    }
+
+    /**
+     * @return {@code true} if {@link #chunkTable} is used.
+     */
+    public boolean isChunkTableEnabled() {
+        return chunkTable != null;
+    }
+
+    /**
+     * Sets whether {@link #chunkTable} is used. This is mainly for comparing
+     * performance and should not be called while other threads are using this
+     * grid.
+     *
+     * @param b If {@code true} {@link #chunkTable} is initialised from
+     * {@link #data}, otherwise it is set to {@code null}.
+     */
+    public synchronized void setChunkTableEnabled(boolean b) {
+        if (b) {
+            AtomicReferenceArray<Grids_Chunk> t = new AtomicReferenceArray<>(
+                    Math.toIntExact((long) nChunkRows * (long) nChunkCols));
+            data.forEach((i, c) -> t.set(i.getRow() * nChunkCols + i.getCol(),
+                    c));
+            chunkTable = t;
+        } else {
+            chunkTable = null;
+        }
     }
 
     protected void init(Grids_Stats stats, int chunkNRows, int chunkNCols,
@@ -275,17 +405,159 @@ public abstract class Grids_Grid extends Grids_Object {
      * Sets the references to this in the chunks.
      */
     protected void setReferenceInChunks() {
-        Iterator<Grids_2D_ID_int> ite = data.keySet().iterator();
-        while (ite.hasNext()) {
-            data.get(ite.next()).initGrid(this);
-        }
+        data.values().forEach(c -> {
+            c.initGrid(this);
+            env.account(c);
+        });
     }
 
     /**
-     * @return A set of all chunk IDs.
+     * @return An unmodifiable set of all chunk IDs in chunk ID order.
      */
     public Set<Grids_2D_ID_int> getChunkIDs() {
-        return data.keySet();
+        NavigableSet<Grids_2D_ID_int> r = chunkIDs;
+        if (r == null) {
+            TreeSet<Grids_2D_ID_int> s = new TreeSet<>();
+            for (int cr = 0; cr < nChunkRows; cr++) {
+                for (int cc = 0; cc < nChunkCols; cc++) {
+                    s.add(new Grids_2D_ID_int(cr, cc));
+                }
+            }
+            r = Collections.unmodifiableNavigableSet(s);
+            chunkIDs = r;
+        }
+        return r;
+    }
+
+    /**
+     * @param n The number of locks.
+     * @return An array of {@code n} objects to lock on.
+     */
+    private static Object[] initLocks(int n) {
+        Object[] r = new Object[n];
+        for (int i = 0; i < n; i++) {
+            r[i] = new Object();
+        }
+        return r;
+    }
+
+    /**
+     * @param i The chunk ID.
+     * @return The object to lock on when loading or swapping the chunk with
+     * chunk ID {@code i}. Locks are striped so different chunk IDs may share
+     * a lock.
+     */
+    protected final Object getLock(Grids_2D_ID_int i) {
+        return locks[(i.hashCode() & 0x7fffffff) % locks.length];
+    }
+
+    /**
+     * Initialises the transient pin counts and locks on deserialisation.
+     *
+     * @param in The stream.
+     * @throws IOException If encountered.
+     * @throws ClassNotFoundException If encountered.
+     */
+    private void readObject(ObjectInputStream in) throws IOException,
+            ClassNotFoundException {
+        in.defaultReadObject();
+        pins = new ConcurrentHashMap<>();
+        notToClear = ConcurrentHashMap.newKeySet();
+        versions = new ConcurrentHashMap<>();
+        locks = initLocks(64);
+        initChunkTable();
+    }
+
+    /**
+     * Pins the chunk with chunk ID {@code i} so that it is not swapped until
+     * it is unpinned as many times as it has been pinned. The chunk need not
+     * be loaded.
+     *
+     * @param i The chunk ID.
+     */
+    public void pin(Grids_2D_ID_int i) {
+        pins.merge(i, 1, Integer::sum);
+    }
+
+    /**
+     * Decrements the pin count of the chunk with chunk ID {@code i}.
+     *
+     * @param i The chunk ID.
+     */
+    public void unpin(Grids_2D_ID_int i) {
+        pins.computeIfPresent(i, (k, n) -> n > 1 ? n - 1 : null);
+    }
+
+    /**
+     * Marks the chunk with chunk ID {@code i} as not to clear. This is for
+     * code that marks chunks as not to be cleared without keeping count and
+     * does not affect the pin count.
+     *
+     * @param i The chunk ID.
+     */
+    public void addToNotToClear(Grids_2D_ID_int i) {
+        notToClear.add(i);
+    }
+
+    /**
+     * Removes the mark made by {@link #addToNotToClear(Grids_2D_ID_int)}. The
+     * chunk stays pinned if it has a pin count.
+     *
+     * @param i The chunk ID.
+     */
+    public void removeFromNotToClear(Grids_2D_ID_int i) {
+        notToClear.remove(i);
+    }
+
+    /**
+     * Removes all the marks made by
+     * {@link #addToNotToClear(Grids_2D_ID_int)}. Pin counts are not changed.
+     */
+    public void clearNotToClear() {
+        notToClear.clear();
+    }
+
+    /**
+     * @param i The chunk ID.
+     * @return {@code true} if the chunk with chunk ID {@code i} is pinned or
+     * marked as not to clear.
+     */
+    public boolean isPinned(Grids_2D_ID_int i) {
+        return pins.containsKey(i) || notToClear.contains(i);
+    }
+
+    /**
+     * @return A view of the chunk IDs of the chunks with a pin count.
+     */
+    public Set<Grids_2D_ID_int> getPinned() {
+        return pins.keySet();
+    }
+
+    /**
+     * @return A view of the chunk IDs of the chunks marked as not to clear.
+     */
+    public Set<Grids_2D_ID_int> getNotToClear() {
+        return Collections.unmodifiableSet(notToClear);
+    }
+
+    /**
+     * @param i The chunk ID.
+     * @return The version of the chunk with chunk ID {@code i}. This changes
+     * each time the chunk is put into or cleared from {@link #data} or is
+     * written, so a copy of the chunk read from file whilst this stayed the
+     * same is current.
+     */
+    public long getVersion(Grids_2D_ID_int i) {
+        return versions.getOrDefault(i, 0L);
+    }
+
+    /**
+     * Changes the version of the chunk with chunk ID {@code i}.
+     *
+     * @param i The chunk ID.
+     */
+    protected void changed(Grids_2D_ID_int i) {
+        versions.merge(i, 1L, Long::sum);
     }
 
     /**
@@ -315,6 +587,12 @@ public abstract class Grids_Grid extends Grids_Object {
         } else {
             r += "grids.size()=" + grids.size() + ", ";
         }
+        if (codec != null) {
+            r += "codec=" + codec.toString() + ", ";
+        }
+        if (adaptive) {
+            r += "adaptive=" + adaptive + ", ";
+        }
         r += getStats().toString();
         return r;
     }
@@ -327,6 +605,109 @@ public abstract class Grids_Grid extends Grids_Object {
         return getClass().getSimpleName() + "[" + getFieldsDescription() + "]";
     }
 
+    /**
+     * @return {@link #codec}
+     */
+    public Grids_ChunkCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * Sets {@link #codec} for encoding chunks subsequently written to file.
+     * Chunks already written are read whatever codec they were written with.
+     *
+     * @param type The codec type (e.g. {@link Grids_ChunkCodec#DELTA_DEFLATE}).
+     * If this is {@link Grids_ChunkCodec#NONE} then chunks are not encoded.
+     */
+    public void setCodec(byte type) {
+        if (type == Grids_ChunkCodec.NONE) {
+            codec = null;
+        } else {
+            codec = new Grids_ChunkCodec(type);
+        }
+    }
+
+    /**
+     * @return {@link #adaptive}
+     */
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    /**
+     * @param adaptive What {@link #adaptive} is set to.
+     */
+    public void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    /**
+     * Compacts each chunk that is loaded and is not pinned (see
+     * {@link #compact(Grids_2D_ID_int)}).
+     *
+     * @return The number of chunks converted to another type of chunk.
+     */
+    public int compact() {
+        int r = 0;
+        for (Grids_2D_ID_int i : new ArrayList<>(data.keySet())) {
+            if (compact(i)) {
+                r++;
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Converts the chunk with chunk ID {@code i} to whichever type of chunk
+     * uses least memory for its values (see
+     * {@link #getCompactChunk(Grids_2D_ID_int, Grids_Chunk)}). Nothing is done
+     * if the chunk is not loaded or is pinned: a pinned chunk may be being
+     * changed via a reference to it.
+     *
+     * @param i The chunk ID.
+     * @return {@code true} if the chunk is converted to another type of chunk.
+     */
+    public boolean compact(Grids_2D_ID_int i) {
+        synchronized (getLock(i)) {
+            if (isPinned(i)) {
+                return false;
+            }
+            Grids_Chunk c = data.get(i);
+            return c != null && compact(i, c) != c;
+        }
+    }
+
+    /**
+     * Replaces {@code c} in {@link #data} with the chunk returned from
+     * {@link #getCompactChunk(Grids_2D_ID_int, Grids_Chunk)} if this is
+     * different. This should be called holding the lock for {@code i}.
+     *
+     * @param i The chunk ID.
+     * @param c The chunk with chunk ID {@code i}.
+     * @return The chunk with chunk ID {@code i}.
+     */
+    protected Grids_Chunk compact(Grids_2D_ID_int i, Grids_Chunk c) {
+        Grids_Chunk r = getCompactChunk(i, c);
+        if (r != c) {
+            r.setLastAccess(c.getLastAccess());
+            putChunk(i, r);
+        }
+        return r;
+    }
+
+    /**
+     * For grids with chunks that can be held in more than one form this is
+     * overridden to return a chunk with the same values as {@code c} in the
+     * form that uses least memory.
+     *
+     * @param i The chunk ID.
+     * @param c The chunk with chunk ID {@code i}.
+     * @return {@code c}
+     */
+    protected Grids_Chunk getCompactChunk(Grids_2D_ID_int i, Grids_Chunk c) {
+        return c;
+    }
+
     /**
      * @return The path to the directory in {@link #fs} where this is currently
      * stored.
@@ -376,6 +757,7 @@ public abstract class Grids_Grid extends Grids_Object {
      * Initialises NChunkRows.
      */
     protected final void initNChunkRows() {
+        chunkIDs = null;
         long cnr = (long) chunkNRows;
         if ((nRows % cnr) != 0) {
             nChunkRows = (int) (nRows / cnr) + 1;
@@ -408,6 +790,7 @@ public abstract class Grids_Grid extends Grids_Object {
      * Initialises NChunkCols.
      */
     protected final void initNChunkCols() {
+        chunkIDs = null;
         long cnc = (long) this.chunkNCols;
         if ((nCols % cnc) != 0) {
             nChunkCols = (int) (nCols / cnc) + 1;
@@ -608,7 +991,7 @@ public abstract class Grids_Grid extends Grids_Object {
 
     /**
      * This is for getting all the chunk IDs between (crMin, ccMin) and (crMax,
-     * ccMax). This way returns a subset of keys from {@link #data}.
+     * ccMax). This way returns a subset of {@link #getChunkIDs()}.
      *
      * @return A set of chunk identifiers for all chunks in the range given by
      * crMin, crMax, ccMin, ccMax.
@@ -620,7 +1003,7 @@ public abstract class Grids_Grid extends Grids_Object {
      */
     public Set<Grids_2D_ID_int> getChunkIDs(int crMin, int crMax, int ccMin,
             int ccMax) {
-        return data.keySet().parallelStream()
+        return getChunkIDs().stream()
                 .filter(i -> i.getRow() >= crMin)
                 .filter(i -> i.getRow() <= crMax)
                 .filter(i -> i.getCol() >= ccMin)
@@ -807,6 +1190,10 @@ public abstract class Grids_Grid extends Grids_Object {
      */
     public void cache() throws IOException, Exception {
         swapChunks();
+        env.awaitWrites(this);
+        if (mappedStore != null) {
+            mappedStore.force();
+        }
         Generic_IO.writeObject(this, getPathThisFile(getDirectory()));
     }
 
@@ -819,14 +1206,79 @@ public abstract class Grids_Grid extends Grids_Object {
      * @throws java.io.IOException If encountered.
      */
     public final Grids_2D_ID_int swapChunk() throws IOException, Exception {
-        if (worthSwapping.isEmpty()) {
+        Grids_2D_ID_int i = selectChunkToSwap(null);
+        if (i == null) {
             return null;
         }
-        Grids_2D_ID_int i = worthSwapping.stream().findAny().get();
         swapChunk(i); // This removes i from worthSwapping.
         return i;
     }
 
+    /**
+     * @param s The chunk IDs of chunks not to include. If {@code null} then
+     * no chunks are excluded.
+     * @return A list of the loaded chunks in {@link #worthSwapping} that are
+     * not pinned and do not have a chunk ID in {@code s} in chunk ID order.
+     */
+    public List<Grids_Chunk> getChunksWorthSwapping(Set<Grids_2D_ID_int> s) {
+        List<Grids_2D_ID_int> ids = new ArrayList<>(worthSwapping);
+        ids.sort(null);
+        List<Grids_Chunk> r = new ArrayList<>(ids.size());
+        for (Grids_2D_ID_int i : ids) {
+            if ((s == null || !s.contains(i)) && !isPinned(i)) {
+                Grids_Chunk c = data.get(i);
+                if (c != null) {
+                    r.add(c);
+                }
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @param c The chunk.
+     * @return {@code true} if {@code c} is the chunk loaded in {@link #data}
+     * for its chunk ID, that chunk ID is in {@link #worthSwapping} and it is
+     * not pinned.
+     */
+    public boolean isWorthSwapping(Grids_Chunk c) {
+        Grids_2D_ID_int i = c.getId();
+        return data.get(i) == c && worthSwapping.contains(i) && !isPinned(i);
+    }
+
+    /**
+     * Uses the eviction policy of {@link #env} to select a chunk to swap from
+     * those in {@link #worthSwapping} that do not have a chunk ID in
+     * {@code s}.
+     *
+     * @param s The chunk IDs of chunks not to select. If {@code null} then no
+     * chunks are excluded.
+     * @return The chunk ID of the chunk selected or {@code null} if there are
+     * no chunks to select from.
+     */
+    protected Grids_2D_ID_int selectChunkToSwap(Set<Grids_2D_ID_int> s) {
+        if (worthSwapping.isEmpty()) {
+            return null;
+        }
+        Grids_Chunk c = env.getEvictionPolicy().select(x -> x.getGrid() == this
+                && (s == null || !s.contains(x.getId())) && isWorthSwapping(x));
+        return c == null ? null : c.getId();
+    }
+
+    /**
+     * Uses the eviction policy of {@link #env} to select a chunk to swap from
+     * those in {@link #worthSwapping} that have a chunk ID in {@code s}.
+     *
+     * @param s The chunk IDs of chunks that may be selected.
+     * @return The chunk ID of the chunk selected or {@code null} if there are
+     * no chunks to select from.
+     */
+    protected Grids_2D_ID_int selectChunkToSwapFrom(Set<Grids_2D_ID_int> s) {
+        Grids_Chunk c = env.getEvictionPolicy().select(x -> x.getGrid() == this
+                && s.contains(x.getId()) && isWorthSwapping(x));
+        return c == null ? null : c.getId();
+    }
+
     /**
      * Attempts to swap a chunk in {@link #data} that is in
      * {@link #worthSwapping} and {@code s}.This method does not consider those
@@ -842,14 +1294,9 @@ public abstract class Grids_Grid extends Grids_Object {
         if (worthSwapping.isEmpty()) {
             return null;
         }
-        Set<Grids_2D_ID_int> s2 = worthSwapping.stream().filter(i
-                -> s.contains(i)).collect(Collectors.toSet());
-        Iterator<Grids_2D_ID_int> ite = s2.iterator();
-        while (ite.hasNext()) {
-            Grids_2D_ID_int i = ite.next();
-            if (swapChunk(i)) {
-                return i;
-            }
+        Grids_2D_ID_int i = selectChunkToSwapFrom(s);
+        if (i != null && swapChunk(i)) {
+            return i;
         }
         return null;
     }
@@ -868,10 +1315,7 @@ public abstract class Grids_Grid extends Grids_Object {
         Grids_Chunk c = data.get(i);
         if (c != null) {
             if (!c.isCacheUpToDate()) {
-                Path file = Paths.get(getDirectory().toString(),
-                        i.getRow() + "_" + i.getCol());
-                //Files.createDirectory(file.getParent());
-                Generic_IO.writeObject(c, file);
+                write(i, c);
                 //System.gc();
                 c.setCacheUpToDate(true);
             }
@@ -881,6 +1325,29 @@ public abstract class Grids_Grid extends Grids_Object {
         return r;
     }
 
+    /**
+     * Writes the chunk {@code c} with chunk ID {@code i} to file. This does
+     * not change {@link #data} and so can be called from a thread other than
+     * those processing this grid provided that {@code c} is not being
+     * modified.
+     *
+     * @param i The chunk ID of the chunk to write.
+     * @param c The chunk to write.
+     * @throws IOException If encountered.
+     */
+    public void write(Grids_2D_ID_int i, Grids_Chunk c) throws IOException {
+        Path file = getChunkFile(i);
+        //Files.createDirectory(file.getParent());
+        try {
+            if (Grids_ChunkIO.write(c, file, codec) < 0) {
+                Generic_IO.writeObject(c, file);
+            }
+        } finally {
+            // Reads of the file started before or during this are stale.
+            changed(i);
+        }
+    }
+
     /**
      * Attempts to swap chunks that have a chunk ID in {@code s}.
      *
@@ -888,7 +1355,7 @@ public abstract class Grids_Grid extends Grids_Object {
      * @return The number of chunks swapped.
      */
     public final int swapChunks(Set<Grids_2D_ID_int> s) {
-        return worthSwapping.parallelStream().filter(i -> s.contains(i))
+        return new ArrayList<>(worthSwapping).stream().filter(i -> s.contains(i))
                 .collect(Collectors.summingInt((Grids_2D_ID_int i) -> {
                     try {
                         if (swapChunk(i)) {
@@ -1099,14 +1566,10 @@ public abstract class Grids_Grid extends Grids_Object {
      */
     public Grids_2D_ID_int swapChunkExcept_AccountChunk(
             Set<Grids_2D_ID_int> s) throws IOException, Exception {
-        Iterator<Grids_2D_ID_int> ite = worthSwapping.iterator();
-        while (ite.hasNext()) {
-            Grids_2D_ID_int i = ite.next();
-            if (!s.contains(i)) {
-                cache(i);
-                clearChunk(i);
-                return i;
-            }
+        Grids_2D_ID_int i = selectChunkToSwap(s);
+        if (i != null) {
+            swapChunk(i);
+            return i;
         }
 //        for (chunkRow = 0; chunkRow < NChunkRows; chunkRow++) {
 //            for (chunkCol = 0; chunkCol < NChunkCols; chunkCol++) {
@@ -1161,21 +1624,51 @@ public abstract class Grids_Grid extends Grids_Object {
 
     /**
      * Checks the chunk with chunk ID {@code i}. If there is not already an up
-     * to date cache then it is cached. If the chunk is cached, then it is
-     * cleared from memory.
+     * to date cache then it is cached (having first been compacted if
+     * {@link #adaptive} is {@code true}). If the chunk is cached, then it is
+     * cleared from memory. If the environment uses write-behind then the chunk
+     * is cleared from {@link #data} straight away and handed to the
+     * environment to be written in the background. If the environment holds
+     * swapped chunks in compressed form (see
+     * {@link Grids_Environment#getCompressedStore()}) and the chunk compresses
+     * well, then the chunk is held in that form instead of being written.
      *
      * @param i The chunk ID of the chunk to cache (if the cache is not already
      * up to date) and anyway clear.
-     * @return {@code 1} if a chunk is cleared and {@code 0} otherwise.
+     * @return {@code true} if a chunk is cleared and {@code false} otherwise,
+     * which includes if the chunk is pinned.
      * @throws java.io.IOException If encountered.
      */
     public boolean swapChunk(Grids_2D_ID_int i) throws IOException,
             Exception {
-        if (cache(i)) {
-            clearChunk(i);
-            return true;
+        synchronized (getLock(i)) {
+            if (isPinned(i)) {
+                return false;
+            }
+            Grids_Chunk c = data.get(i);
+            if (c != null && adaptive && !c.isCacheUpToDate()) {
+                c = compact(i, c);
+            }
+            Grids_CompressedChunkStore store = env.getCompressedStore();
+            if (c != null && store != null && store.store(c)) {
+                clearChunk(i);
+                c.free();
+                return true;
+            }
+            if (c != null && !c.isCacheUpToDate() && env.isWriteBehind()) {
+                clearChunk(i);
+                env.writeBehind(this, i, c);
+                return true;
+            }
+            if (cache(i)) {
+                clearChunk(i);
+                if (c != null) {
+                    c.free();
+                }
+                return true;
+            }
+            return false;
         }
-        return false;
     }
 
     /**
@@ -1256,21 +1749,15 @@ public abstract class Grids_Grid extends Grids_Object {
     public Grids_AccountDetail swapChunkExcept_AccountDetail(Grids_2D_ID_int chunkID)
             throws IOException, Exception {
         Grids_AccountDetail r = new Grids_AccountDetail();
-        for (int cri = 0; cri < nChunkRows; cri++) {
-            for (int cci = 0; cci < nChunkCols; cci++) {
-                Grids_2D_ID_int bid = new Grids_2D_ID_int(cri, cci);
-                if (!bid.equals(chunkID)) {
-                    if (isWorthCaching(bid)) {
-                        cache(bid);
-                        clearChunk(bid);
-                        Set<Grids_2D_ID_int> chunks;
-                        chunks = new HashSet<>(1);
-                        chunks.add(bid);
-                        r.detail.put(this, chunks);
-                        return r;
-                    }
-                }
-            }
+        Set<Grids_2D_ID_int> s = new HashSet<>(1);
+        s.add(chunkID);
+        Grids_2D_ID_int bid = selectChunkToSwap(s);
+        if (bid != null) {
+            swapChunk(bid);
+            Set<Grids_2D_ID_int> chunks;
+            chunks = new HashSet<>(1);
+            chunks.add(bid);
+            r.detail.put(this, chunks);
         }
         return r;
     }
@@ -1321,19 +1808,13 @@ public abstract class Grids_Grid extends Grids_Object {
      */
     public Grids_2D_ID_int swapChunkExcept_AccountChunk(
             Grids_2D_ID_int cid) throws IOException, Exception {
-        for (int cri = 0; cri < nChunkRows; cri++) {
-            for (int cci = 0; cci < nChunkCols; cci++) {
-                Grids_2D_ID_int r = new Grids_2D_ID_int(cri, cci);
-                if (!r.equals(cid)) {
-                    if (isWorthCaching(r)) {
-                        cache(r);
-                        clearChunk(r);
-                        return r;
-                    }
-                }
-            }
+        Set<Grids_2D_ID_int> s = new HashSet<>(1);
+        s.add(cid);
+        Grids_2D_ID_int r = selectChunkToSwap(s);
+        if (r != null) {
+            swapChunk(r);
         }
-        return null;
+        return r;
     }
 
     /**
@@ -1395,8 +1876,7 @@ public abstract class Grids_Grid extends Grids_Object {
                 Grids_2D_ID_int i2 = new Grids_2D_ID_int(chunkRow, chunkCol);
                 if (!i.equals(i2)) {
                     if (isWorthCaching(i2)) {
-                        cache(i2);
-                        clearChunk(i2);
+                        swapChunk(i2);
                         s.add(i2);
                     }
                 }
@@ -1408,10 +1888,11 @@ public abstract class Grids_Grid extends Grids_Object {
 
     /**
      * Swap out or clear from memory all chunks in this that are in
-     * {@link #worthSwapping}.
+     * {@link #worthSwapping}. This iterates over a copy of
+     * {@link #worthSwapping} as swapping removes from it.
      */
     public void swapChunks() {
-        worthSwapping.parallelStream().forEach(i -> {
+        new ArrayList<>(worthSwapping).forEach(i -> {
             try {
                 swapChunk(i);
             } catch (Exception ex) {
@@ -1522,8 +2003,7 @@ public abstract class Grids_Grid extends Grids_Object {
                 Grids_2D_ID_int i = new Grids_2D_ID_int(cri, cci);
                 if (!s.contains(i)) {
                     if (isWorthCaching(i)) {
-                        cache(i);
-                        clearChunk(i);
+                        swapChunk(i);
                         s2.add(i);
                     }
                 }
@@ -1587,8 +2067,13 @@ public abstract class Grids_Grid extends Grids_Object {
      */
     public final boolean swapChunkExcept(Grids_2D_ID_int i)
             throws IOException, Exception {
-        return swapChunk(worthSwapping.stream().filter(i2 -> i2 != i).findAny()
-                .get());
+        Set<Grids_2D_ID_int> s = new HashSet<>(1);
+        s.add(i);
+        Grids_2D_ID_int i2 = selectChunkToSwap(s);
+        if (i2 == null) {
+            return false;
+        }
+        return swapChunk(i2);
 //        for (int cri = 0; cri < nChunkRows; cri++) {
 //            for (int cci = 0; cci < nChunkCols; cci++) {
 //                Grids_2D_ID_int i2 = new Grids_2D_ID_int(cri, cci);
@@ -1658,7 +2143,7 @@ public abstract class Grids_Grid extends Grids_Object {
      */
     public final int swapChunksExcept(Grids_2D_ID_int i)
             throws IOException, Exception {
-        return worthSwapping.parallelStream().filter(i2 -> i2 != i)
+        return new ArrayList<>(worthSwapping).stream().filter(i2 -> !i2.equals(i))
                 .collect(Collectors.summingInt((Grids_2D_ID_int i2) -> {
                     try {
                         if (swapChunk(i2)) {
@@ -1699,7 +2184,7 @@ public abstract class Grids_Grid extends Grids_Object {
      */
     public final int swapChunksExcept(Set<Grids_2D_ID_int> s)
             throws IOException, Exception {
-        return worthSwapping.parallelStream().filter(i2 -> !s.contains(i2))
+        return new ArrayList<>(worthSwapping).stream().filter(i2 -> !s.contains(i2))
                 .collect(Collectors.summingInt((Grids_2D_ID_int i2) -> {
                     try {
                         if (swapChunk(i2)) {
@@ -1784,8 +2269,7 @@ public abstract class Grids_Grid extends Grids_Object {
                 Grids_2D_ID_int i = new Grids_2D_ID_int(cri, cci);
                 if (!s.contains(i)) {
                     if (isWorthCaching(i)) {
-                        cache(i);
-                        clearChunk(i);
+                        swapChunk(i);
                         r.detail.put(this, s);
                         return r;
                     }
@@ -1848,8 +2332,7 @@ public abstract class Grids_Grid extends Grids_Object {
             for (int cci = 0; cci < nChunkCols; cci++) {
                 Grids_2D_ID_int i = new Grids_2D_ID_int(cri, cci);
                 if (isWorthCaching(i)) {
-                    cache(i);
-                    clearChunk(i);
+                    swapChunk(i);
                     s.add(i);
                 }
             }
@@ -1950,8 +2433,7 @@ public abstract class Grids_Grid extends Grids_Object {
      * access memory.
      */
     public final boolean isLoaded(Grids_2D_ID_int i) {
-        return data.get(i) != null;
-//        return data.containsKey(chunkID);
+        return data.containsKey(i);
     }
 
     /**
@@ -1974,20 +2456,76 @@ public abstract class Grids_Grid extends Grids_Object {
      * cleared.
      */
     public final void clearChunk(Grids_2D_ID_int chunkID) {
-        data.replace(chunkID, null);
+        changed(chunkID);
+        Grids_Chunk c = data.remove(chunkID);
+        if (c != null) {
+            AtomicReferenceArray<Grids_Chunk> t = chunkTable;
+            if (t != null) {
+                t.compareAndSet(chunkID.getRow() * nChunkCols
+                        + chunkID.getCol(), c, null);
+            }
+            Grids_EvictionPolicy p = env.getEvictionPolicy();
+            p.evicted();
+            p.removed(c);
+            env.release(c);
+        }
         worthSwapping.remove(chunkID);
         //System.gc();
     }
 
     /**
-     * Clear all chunks by setting them to null in {@link #data}.
+     * Clear all chunks by removing them from {@link #data}.
      */
     public final void clearChunks() {
-        data.keySet().parallelStream().forEach(i -> data.replace(i, null));
-        worthSwapping = new HashSet<>();
+        AtomicReferenceArray<Grids_Chunk> t = chunkTable;
+        data.keySet().forEach(i -> {
+            changed(i);
+            Grids_Chunk c = data.remove(i);
+            if (c != null) {
+                if (t != null) {
+                    t.compareAndSet(i.getRow() * nChunkCols + i.getCol(), c,
+                            null);
+                }
+                env.getEvictionPolicy().removed(c);
+                env.release(c);
+            }
+        });
+        worthSwapping.clear();
         //System.gc();
     }
 
+    /**
+     * Puts {@code c} into {@link #data} and accounts for the memory it uses
+     * in {@link #env} releasing (and freeing) any chunk it replaces. If
+     * {@code c} replaces itself then it is accounted for afresh. The eviction
+     * policy of {@link #env} is told of any change in the chunks loaded.
+     *
+     * @param i The chunk ID.
+     * @param c The chunk.
+     */
+    protected void putChunk(Grids_2D_ID_int i, Grids_Chunk c) {
+        changed(i);
+        Grids_Chunk c0 = data.put(i, c);
+        AtomicReferenceArray<Grids_Chunk> t = chunkTable;
+        if (t != null) {
+            t.set(i.getRow() * nChunkCols + i.getCol(), c);
+        }
+        Grids_EvictionPolicy p = env.getEvictionPolicy();
+        if (c0 != null) {
+            env.release(c0);
+            if (c0 != c) {
+                p.removed(c0);
+                c0.free();
+            }
+        }
+        if (c != null) {
+            env.account(c);
+            if (c0 != c) {
+                p.added(c);
+            }
+        }
+    }
+
     /**
      * @return a Grids_2D_ID_long[] - the cell IDs for cells thats centroids are
      * intersected by circle with centre at x-coordinate x, y-coordinate y, and
@@ -2514,7 +3052,7 @@ public abstract class Grids_Grid extends Grids_Object {
     /**
      * @return {@link #data}
      */
-    public TreeMap<Grids_2D_ID_int, Grids_Chunk> getData() {
+    public ConcurrentHashMap<Grids_2D_ID_int, Grids_Chunk> getData() {
         return data;
     }
 
@@ -2587,7 +3125,8 @@ public abstract class Grids_Grid extends Grids_Object {
     /**
      * If not loaded, this attempts to load into memory the chunk with chunk ID
      * {@code i}. If it was not loaded then this means that the chunk perhaps
-     * contained only no data values.
+     * contained only no data values. Loading is done holding
+     * {@link #getLock(Grids_2D_ID_int)} so a chunk is only loaded once.
      *
      * @param i The chunk ID of the chunk to be loaded.
      * @return {@code true} if the chunk was loaded and {@code false} otherwise.
@@ -2597,29 +3136,176 @@ public abstract class Grids_Grid extends Grids_Object {
      */
     public boolean loadChunk(Grids_2D_ID_int i) throws IOException,
             ClassNotFoundException, Exception {
-        if (!isLoaded(i)) {
-            Path f = Paths.get(getDirectory().toString(),
-                    "" + i.getRow() + "_" + i.getCol());
-            if (Files.exists(f)) {
-                //env.env.log("Loading chunk from file" + f);
-                Object o = Generic_IO.readObject(f);
-                Grids_Chunk chunk = (Grids_Chunk) o;
-                chunk.env = env;
-                chunk.initGrid(this);
-                chunk.initChunkID(i);
-                data.put(i, chunk);
-                return true;
-            } else {
-                /**
-                 * It is assumed that the chunk is all noDataValues so if this
-                 * is called in a process which is attempting to set a value,
-                 * then the chunk and value should be created without trying to
-                 * load from the file.
-                 */
-                return false;
+        synchronized (getLock(i)) {
+            if (!isLoaded(i)) {
+                Grids_Chunk pending = env.reclaimPendingWrite(this, i);
+                if (pending != null) {
+                    loaded(i, pending);
+                    return true;
+                }
+                Grids_CompressedChunkStore store = env.getCompressedStore();
+                if (store != null) {
+                    Grids_Chunk c = store.take(this, i);
+                    if (c != null) {
+                        loaded(i, c);
+                        return true;
+                    }
+                }
+                if (mappedStore != null && mappedStore.isInitialised(i)) {
+                    loaded(i, createMappedChunk(i));
+                    return true;
+                }
+                Grids_ChunkPrefetcher prefetcher = env.getPrefetcher();
+                Grids_Chunk chunk = null;
+                if (prefetcher != null) {
+                    chunk = prefetcher.take(this, i);
+                }
+                if (chunk == null) {
+                    chunk = readChunk(i);
+                }
+                if (chunk != null) {
+                    loaded(i, chunk);
+                    if (prefetcher != null) {
+                        prefetcher.loaded(this, i);
+                    }
+                    return true;
+                } else {
+                    /**
+                     * It is assumed that the chunk is all noDataValues so if
+                     * this is called in a process which is attempting to set a
+                     * value, then the chunk and value should be created
+                     * without trying to load from the file.
+                     */
+                    return false;
+                }
             }
+            return false;
         }
-        return false;
+    }
+
+    /**
+     * @param i The chunk ID.
+     * @return The path of the file for the chunk with chunk ID {@code i}.
+     */
+    protected Path getChunkFile(Grids_2D_ID_int i) {
+        return Paths.get(getDirectory().toString(),
+                "" + i.getRow() + "_" + i.getCol());
+    }
+
+    /**
+     * @param i The chunk ID.
+     * @return {@code true} if there is a file for the chunk with chunk ID
+     * {@code i}.
+     */
+    public boolean isChunkFile(Grids_2D_ID_int i) {
+        return Files.exists(getChunkFile(i));
+    }
+
+    /**
+     * Reads the chunk with chunk ID {@code i} from file. This does not change
+     * {@link #data} and so can be called from a thread other than those
+     * processing this grid.
+     *
+     * @param i The chunk ID.
+     * @return The chunk read or {@code null} if there is no file for it.
+     * @throws IOException If encountered.
+     * @throws ClassNotFoundException If encountered.
+     */
+    public Grids_Chunk readChunk(Grids_2D_ID_int i) throws IOException,
+            ClassNotFoundException {
+        Path f = getChunkFile(i);
+        if (!Files.exists(f)) {
+            return null;
+        }
+        //env.env.log("Loading chunk from file" + f);
+        Grids_Chunk r = Grids_ChunkIO.read(this, i, f);
+        if (r == null) {
+            // Written using Java Object Serialization.
+            r = (Grids_Chunk) Generic_IO.readObject(f);
+            r.env = env;
+            r.initGrid(this);
+            r.initChunkID(i);
+        }
+        return r;
+    }
+
+    /**
+     * Puts the loaded chunk {@code c} into {@link #data}, adds it to
+     * {@link #worthSwapping} if it is worth clearing and records the load as a
+     * miss with the eviction policy of {@link #env}.
+     *
+     * @param i The chunk ID.
+     * @param c The chunk loaded.
+     */
+    protected void loaded(Grids_2D_ID_int i, Grids_Chunk c) {
+        putChunk(i, c);
+        if (c.isWorthClearing()) {
+            worthSwapping.add(i);
+        }
+        env.getEvictionPolicy().miss(c);
+    }
+
+    /**
+     * For getting the chunk with chunk ID {@code i} loading it if it is not
+     * loaded. The access is recorded with the eviction policy of {@link #env}.
+     *
+     * @param i The chunk ID.
+     * @return The chunk with chunk ID {@code i} or {@code null} if there is no
+     * such chunk.
+     * @throws IOException If encountered.
+     * @throws ClassNotFoundException If encountered.
+     * @throws Exception If encountered.
+     */
+    protected final Grids_Chunk accessChunk(Grids_2D_ID_int i)
+            throws IOException, ClassNotFoundException, Exception {
+        Grids_Chunk c = data.get(i);
+        if (c == null) {
+            // A miss is recorded when the chunk is loaded.
+            synchronized (getLock(i)) {
+                loadChunk(i);
+                return data.get(i);
+            }
+        }
+        env.getEvictionPolicy().hit(c);
+        return c;
+    }
+
+    /**
+     * For getting the memory mapped backing store for chunks of this grid.
+     * If {@link #mappedStore} is {@code null} it is initialised and the file
+     * is created in the directory of this grid. If the file is not open (as
+     * after this grid is deserialised), then it is reopened.
+     *
+     * @param bytesPerCell The number of bytes used to store each cell value.
+     * @return {@link #mappedStore}.
+     * @throws IOException If encountered.
+     */
+    public synchronized Grids_MappedChunkStore getMappedStore(int bytesPerCell)
+            throws IOException {
+        if (mappedStore == null) {
+            mappedStore = new Grids_MappedChunkStore(bytesPerCell, chunkNRows,
+                    chunkNCols, nChunkCols);
+        }
+        if (!mappedStore.isOpen()) {
+            mappedStore.open(Paths.get(getDirectory().toString(),
+                    Grids_MappedChunkStore.FILENAME));
+        }
+        return mappedStore;
+    }
+
+    /**
+     * For creating a chunk backed by {@link #mappedStore} for the chunk with
+     * chunk ID {@code i}. This is used in {@link #loadChunk(Grids_2D_ID_int)}
+     * and is overridden for grids with types of chunk that can be backed by a
+     * memory mapped file.
+     *
+     * @param i The chunk ID.
+     * @return A chunk backed by {@link #mappedStore}.
+     * @throws IOException If encountered.
+     */
+    protected Grids_Chunk createMappedChunk(Grids_2D_ID_int i)
+            throws IOException {
+        throw new UnsupportedOperationException();
     }
 
     /**
@@ -2635,9 +3321,34 @@ public abstract class Grids_Grid extends Grids_Object {
      */
     public final Grids_Chunk getChunk(int cr, int cc)
             throws IOException, ClassNotFoundException, Exception {
+        Grids_Chunk c = getLoadedChunk(cr, cc);
+        if (c != null) {
+            env.getEvictionPolicy().hit(c);
+            return c;
+        }
         return getChunk(new Grids_2D_ID_int(cr, cc));
     }
 
+    /**
+     * For getting the chunk at chunk row index {@code cr}, chunk col index
+     * {@code cc} from {@link #chunkTable} without creating a chunk ID. The
+     * access is not recorded with the eviction policy of {@link #env}.
+     *
+     * @param cr The chunk row index.
+     * @param cc The chunk column index.
+     * @return The chunk if it is in {@link #chunkTable}, otherwise
+     * {@code null} in which case it may still be loaded (see
+     * {@link #chunkTable}).
+     */
+    public final Grids_Chunk getLoadedChunk(int cr, int cc) {
+        AtomicReferenceArray<Grids_Chunk> t = chunkTable;
+        if (t != null && cr >= 0 && cr < nChunkRows && cc >= 0
+                && cc < nChunkCols) {
+            return t.get(cr * nChunkCols + cc);
+        }
+        return null;
+    }
+
     /**
      * For getting the chunk with chunk ID {@code i} at chunk row index
      * {@code r}, chunk col index {@code c}.
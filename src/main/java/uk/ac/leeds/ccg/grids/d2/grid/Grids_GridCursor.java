@@ -0,0 +1,229 @@
+/*
+ * Copyright 2019 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.grids.d2.grid;
+
+import java.io.IOException;
+import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
+import uk.ac.leeds.ccg.grids.d2.chunk.Grids_Chunk;
+
+/**
+ * For getting and setting cell values around a position in a grid. The chunk
+ * of the cell last got or set is held and pinned (see
+ * {@link Grids_Grid#pin(Grids_2D_ID_int)}) so it is not swapped, and cells in
+ * it are got and set directly without working out which chunk they are in or
+ * looking it up in the grid. Getting and setting cells allocates nothing
+ * unless a cell is in a different chunk to the one held.
+ *
+ * The cursor has a position ({@link #row}, {@link #col}) which is set by
+ * {@link #moveTo(long, long)} and {@link #move(long, long)}. Cells are got and
+ * set relative to this position, so for example a 3x3 neighbourhood is got by
+ * moving to the centre cell and getting the cells with offsets from
+ * {@code -1} to {@code 1}. Cells outside the grid are got as the no data
+ * value and are not set.
+ *
+ * A cursor is for use by one thread. While it is open cells in the chunk it
+ * holds should only be set via the cursor: if such a cell is set otherwise,
+ * the chunk may be replaced in the grid and the cursor would then get values
+ * from the chunk that was replaced. A cursor must be closed to unpin the
+ * chunk it holds.
+ *
+ * @author Andy Turner
+ * @version 1.0.0
+ */
+public abstract class Grids_GridCursor implements AutoCloseable {
+
+    /**
+     * The grid.
+     */
+    protected final Grids_Grid grid;
+
+    /**
+     * The cell row index of the position.
+     */
+    protected long row;
+
+    /**
+     * The cell column index of the position.
+     */
+    protected long col;
+
+    /**
+     * The chunk ID of the chunk held or {@code null}.
+     */
+    protected Grids_2D_ID_int chunkID;
+
+    /**
+     * The cell row index of the first row of the chunk held.
+     */
+    protected long r0;
+
+    /**
+     * The cell row index after the last row of the chunk held.
+     */
+    protected long r1;
+
+    /**
+     * The cell column index of the first column of the chunk held.
+     */
+    protected long c0;
+
+    /**
+     * The cell column index after the last column of the chunk held.
+     */
+    protected long c1;
+
+    /**
+     * Creates a cursor at cell row {@code 0}, cell column {@code 0} holding no
+     * chunk.
+     *
+     * @param g What {@link #grid} is set to.
+     */
+    protected Grids_GridCursor(Grids_Grid g) {
+        grid = g;
+    }
+
+    /**
+     * @return {@link #grid}
+     */
+    public Grids_Grid getGrid() {
+        return grid;
+    }
+
+    /**
+     * @return {@link #row}
+     */
+    public long getRow() {
+        return row;
+    }
+
+    /**
+     * @return {@link #col}
+     */
+    public long getCol() {
+        return col;
+    }
+
+    /**
+     * @return {@link #chunkID}
+     */
+    public Grids_2D_ID_int getChunkID() {
+        return chunkID;
+    }
+
+    /**
+     * Moves to cell row {@code r}, cell column {@code c}. This need not be in
+     * the grid.
+     *
+     * @param r What {@link #row} is set to.
+     * @param c What {@link #col} is set to.
+     */
+    public void moveTo(long r, long c) {
+        row = r;
+        col = c;
+    }
+
+    /**
+     * Moves {@code dr} rows and {@code dc} columns.
+     *
+     * @param dr The number of rows to move.
+     * @param dc The number of columns to move.
+     */
+    public void move(long dr, long dc) {
+        row += dr;
+        col += dc;
+    }
+
+    /**
+     * Makes the chunk containing cell row {@code r}, cell column {@code c} the
+     * chunk held unless it already is.
+     *
+     * @param r The cell row index.
+     * @param c The cell column index.
+     * @return {@code true} if the cell is in the grid in which case it is in
+     * the chunk held.
+     * @throws IOException If encountered.
+     * @throws ClassNotFoundException If encountered.
+     */
+    protected final boolean select(long r, long c) throws IOException,
+            ClassNotFoundException, Exception {
+        if (r >= r0 && r < r1 && c >= c0 && c < c1) {
+            return true;
+        }
+        if (!grid.isInGrid(r, c)) {
+            return false;
+        }
+        int cr = grid.getChunkRow(r);
+        int cc = grid.getChunkCol(c);
+        Grids_2D_ID_int i = new Grids_2D_ID_int(cr, cc);
+        grid.pin(i);
+        release();
+        chunkID = i;
+        setChunk(grid.getChunk(i));
+        r0 = (long) cr * (long) grid.getChunkNRows();
+        r1 = r0 + grid.getChunkNRows(cr);
+        c0 = (long) cc * (long) grid.getChunkNCols();
+        c1 = c0 + grid.getChunkNCols(cc);
+        return true;
+    }
+
+    /**
+     * Gets the chunk held again from the grid in case it has been replaced
+     * (which happens if setting a cell converts the chunk to another type).
+     *
+     * @throws IOException If encountered.
+     * @throws ClassNotFoundException If encountered.
+     */
+    protected final void refresh() throws IOException, ClassNotFoundException,
+            Exception {
+        Grids_Chunk c = grid.getLoadedChunk(chunkID.getRow(),
+                chunkID.getCol());
+        if (c == null || c != getChunk()) {
+            setChunk(grid.getChunk(chunkID));
+        }
+    }
+
+    /**
+     * Unpins and stops holding the chunk held if there is one.
+     */
+    protected final void release() {
+        if (chunkID != null) {
+            grid.unpin(chunkID);
+            chunkID = null;
+            setChunk(null);
+            r1 = r0;
+            c1 = c0;
+        }
+    }
+
+    /**
+     * @return The chunk held or {@code null}.
+     */
+    protected abstract Grids_Chunk getChunk();
+
+    /**
+     * @param c What the chunk held is set to.
+     */
+    protected abstract void setChunk(Grids_Chunk c);
+
+    /**
+     * Unpins the chunk held. The cursor can still be used after this, but
+     * then should be closed again.
+     */
+    @Override
+    public void close() {
+        release();
+    }
+}
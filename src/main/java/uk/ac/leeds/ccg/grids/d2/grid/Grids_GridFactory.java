@@ -21,6 +21,7 @@ import uk.ac.leeds.ccg.generic.io.Generic_Path;
 import uk.ac.leeds.ccg.grids.core.Grids_Environment;
 import uk.ac.leeds.ccg.grids.core.Grids_Object;
 import uk.ac.leeds.ccg.generic.io.Generic_FileStore;
+import uk.ac.leeds.ccg.grids.io.Grids_ChunkCodec;
 
 /**
  * Grids_GridFactory.
@@ -52,6 +53,19 @@ public abstract class Grids_GridFactory extends Grids_Object {
      */
     protected Grids_Dimensions dim;
 
+    /**
+     * The type of codec for encoding the chunks of grids created when they
+     * are written to file (see {@link Grids_ChunkCodec}).
+     */
+    protected byte codec = Grids_ChunkCodec.NONE;
+
+    /**
+     * Whether grids created compact their chunks when they are swapped (see
+     * {@link Grids_Grid#setAdaptive(boolean)}). This has an effect only for
+     * grids with chunks that can be held in more than one form.
+     */
+    protected boolean adaptive;
+
     /**
      * Creates a new grid factory.
      *
@@ -204,6 +218,34 @@ public abstract class Grids_GridFactory extends Grids_Object {
         this.chunkNCols = chunkNCols;
     }
 
+    /**
+     * @return {@link #codec}
+     */
+    public byte getCodec() {
+        return codec;
+    }
+
+    /**
+     * @param codec What {@link #codec} is set to.
+     */
+    public void setCodec(byte codec) {
+        this.codec = codec;
+    }
+
+    /**
+     * @return {@link #adaptive}
+     */
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    /**
+     * @param adaptive What {@link #adaptive} is set to.
+     */
+    public void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+    }
+
     /**
      * @return {@link #dim}
      */
@@ -48,8 +48,13 @@ public abstract class Grids_GridIterator extends Grids_Object {
 
     public abstract Grids_Grid getGrid();
 
+    /**
+     * @return An iterator over all the chunk IDs of {@link #grid}. This is a
+     * new iterator, so unlike {@link #gridIterator} it includes the chunk ID
+     * of the chunk being iterated over.
+     */
     public Iterator<Grids_2D_ID_int> getGridIterator() {
-        return gridIterator;
+        return grid.getChunkIDs().iterator();
     }
 
     public abstract Grids_ChunkIterator getChunkIterator();
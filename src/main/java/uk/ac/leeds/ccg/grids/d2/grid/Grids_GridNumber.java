@@ -15,10 +15,13 @@
  */
 package uk.ac.leeds.ccg.grids.d2.grid;
 
+import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
 import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_long;
 import java.io.IOException;
 import uk.ac.leeds.ccg.grids.core.Grids_Environment;
 import uk.ac.leeds.ccg.grids.d2.chunk.Grids_Chunk;
+import uk.ac.leeds.ccg.grids.d2.chunk.Grids_ChunkNumber;
+import uk.ac.leeds.ccg.grids.io.Grids_ESRIAsciiGridImporter;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import uk.ac.leeds.ccg.generic.io.Generic_FileStore;
@@ -336,6 +339,126 @@ public abstract class Grids_GridNumber extends Grids_Grid {
         return getNearestValuesCellIDsAndDistance(x, y, getRow(y), getCol(x), dp, rm);
     }
 
+    /**
+     * For initialising a cell of a grid given a value as a double.
+     */
+    @FunctionalInterface
+    protected interface CellInitialiser {
+
+        /**
+         * @param row The cell row.
+         * @param col The cell column.
+         * @param v The value or {@link Double#NaN} for no data.
+         * @throws Exception If encountered.
+         */
+        void init(long row, long col, double v) throws Exception;
+    }
+
+    /**
+     * Initialises the cells of this from the cells of {@code g} in the rows
+     * from {@code startRow} to {@code endRow} and the columns from
+     * {@code startCol} to {@code endCol}. Values are got from {@code g} a
+     * chunk at a time (see {@link Grids_ChunkNumber#getCellDouble(int, int)})
+     * and passed to {@code f} with the row and column of the cell in this.
+     *
+     * @param g The grid from which values are got.
+     * @param startRow The row of {@code g} that is row 0 of this.
+     * @param startCol The column of {@code g} that is column 0 of this.
+     * @param endRow The last row of {@code g} from which values are got.
+     * @param endCol The last column of {@code g} from which values are got.
+     * @param f For initialising each cell.
+     * @throws IOException If encountered.
+     * @throws Exception If encountered.
+     */
+    protected void initCells(Grids_GridNumber g, long startRow, long startCol,
+            long endRow, long endCol, CellInitialiser f) throws IOException,
+            Exception {
+        int scr = g.getChunkRow(startRow);
+        int ecr = g.getChunkRow(endRow);
+        int ncr = ecr - scr + 1;
+        int scc = g.getChunkCol(startCol);
+        int ecc = g.getChunkCol(endCol);
+        for (int gcr = scr; gcr <= ecr; gcr++) {
+            env.env.log("Chunk Row " + gcr);
+            int gChunkNRows = g.getChunkNRows(gcr);
+            for (int gcc = scc; gcc <= ecc; gcc++) {
+                Grids_2D_ID_int gi = new Grids_2D_ID_int(gcr, gcc);
+                int gChunkNCols = g.getChunkNCols(gcc);
+                boolean isLoadedChunk = false;
+                do {
+                    try {
+                        env.addToNotToClear(g, gi);
+                        env.checkAndMaybeFreeMemory();
+                        Grids_ChunkNumber c = (Grids_ChunkNumber) g.getChunk(gi);
+                        for (int cr = 0; cr < gChunkNRows; cr++) {
+                            long gRow = g.getRow(gcr, cr);
+                            if (gRow >= startRow && gRow <= endRow) {
+                                long row = gRow - startRow;
+                                for (int cc = 0; cc < gChunkNCols; cc++) {
+                                    long gCol = g.getCol(gcc, cc);
+                                    if (gCol >= startCol && gCol <= endCol) {
+                                        long col = gCol - startCol;
+                                        if (isInGrid(row, col)) {
+                                            f.init(row, col,
+                                                    c.getCellDouble(cr, cc));
+                                        }
+                                    }
+                                }
+                            }
+                        }
+                        isLoadedChunk = true;
+                        env.removeFromNotToClear(g, gi);
+                    } catch (OutOfMemoryError e) {
+                        if (env.HOOME) {
+                            env.clearMemoryReserve(env.env);
+                            freeSomeMemoryAndResetReserve(gi, e);
+                            if (env.swapChunksExcept_Account(this, gi, false)
+                                    .detail < 1) {
+                                throw e;
+                            }
+                            env.initMemoryReserve(this, gi, env.HOOME);
+                        } else {
+                            throw e;
+                        }
+                    }
+                } while (!isLoadedChunk);
+            }
+            env.env.log("Done chunkRow " + gcr + " out of " + ncr);
+        }
+    }
+
+    /**
+     * Initialises the cells of this from the values read by {@code eagi},
+     * which are in rows starting with the last row of this. Values are passed
+     * to {@code f}, the no data value of the file as {@link Double#NaN}.
+     *
+     * @param eagi The importer from which values are read.
+     * @param f For initialising each cell.
+     * @throws IOException If encountered.
+     * @throws Exception If encountered.
+     */
+    protected void initCells(Grids_ESRIAsciiGridImporter eagi,
+            CellInitialiser f) throws IOException, Exception {
+        double fndv = eagi.getHeader().ndv.doubleValue();
+        // Set to report every 10%
+        int reportN = (int) (nRows - 1) / 10;
+        if (reportN == 0) {
+            reportN = 1;
+        }
+        for (long row = nRows - 1; row > -1; row--) {
+            env.checkAndMaybeFreeMemory();
+            env.initNotToClear();
+            for (long col = 0; col < nCols; col++) {
+                double v = eagi.readDouble();
+                f.init(row, col, v == fndv ? Double.NaN : v);
+            }
+            if (row % reportN == 0) {
+                env.env.log("Done row " + row);
+            }
+            env.checkAndMaybeFreeMemory();
+        }
+    }
+
     /**
      * Used to help log a view of the grid.
      *
@@ -37,9 +37,11 @@ import uk.ac.leeds.ccg.grids.d2.stats.Grids_StatsNotUpdatedBinary;
 import uk.ac.leeds.ccg.grids.process.Grids_Processor;
 import uk.ac.leeds.ccg.grids.d2.util.Grids_Utilities;
 import java.util.HashSet;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import uk.ac.leeds.ccg.generic.io.Generic_FileStore;
 import uk.ac.leeds.ccg.grids.d2.chunk.b.Grids_ChunkBinary;
+import uk.ac.leeds.ccg.grids.d2.chunk.b.Grids_ChunkBinarySinglet;
+import uk.ac.leeds.ccg.grids.d2.chunk.b.Grids_ChunkFactoryBinaryArray;
 import uk.ac.leeds.ccg.grids.io.Grids_ESRIAsciiGridImporter;
 import uk.ac.leeds.ccg.math.Math_BigDecimal;
 
@@ -170,6 +172,7 @@ public class Grids_GridBinary extends Grids_GridB {
         stats = g.stats;
         super.init(g);
         data = g.data;
+        initChunkTable();
         setReferenceInChunks();
         worthSwapping = g.worthSwapping;
         // Set the reference to this in stats
@@ -208,7 +211,7 @@ public class Grids_GridBinary extends Grids_GridB {
                 // Try to load chunk.
                 Grids_2D_ID_int chunkID = new Grids_2D_ID_int(r, c);
                 Grids_ChunkBinary chunk = cf.create(this, chunkID);
-                data.put(chunkID, chunk);
+                putChunk(chunkID, chunk);
             }
             env.env.log("Done chunkRow " + r + " out of " + nChunkRows);
         }
@@ -318,7 +321,7 @@ public class Grids_GridBinary extends Grids_GridB {
             java.lang.ClassNotFoundException, Exception {
         env.addToNotToClear(g, gChunkID);
         env.checkAndMaybeFreeMemory();
-        Grids_ChunkBinaryArray c = gb.getChunk(gChunkID);
+        Grids_ChunkBinary c = gb.getChunk(gChunkID);
         int gChunkNCols = g.getChunkNCols(gcc);
         for (int cellRow = 0; cellRow < gChunkNRows; cellRow++) {
             long gRow = g.getRow(gcr, cellRow);
@@ -342,9 +345,9 @@ public class Grids_GridBinary extends Grids_GridB {
                             Grids_ChunkBinary chunk;
                             if (!data.containsKey(chunkID)) {
                                 chunk = cf.create(this, chunkID);
-                                data.put(chunkID, chunk);
+                                putChunk(chunkID, chunk);
                             } else {
-                                chunk = (Grids_ChunkBinaryArray) data
+                                chunk = (Grids_ChunkBinary) data
                                         .get(chunkID);
                             }
                             boolean gValue = gb.getCell(c, cellRow, cellCol);
@@ -419,8 +422,8 @@ public class Grids_GridBinary extends Grids_GridB {
         } else {
             // Assume ESRI AsciiFile
             name = fs.getBaseDir().getFileName().toString() + fsID;
-            data = new TreeMap<>();
-            worthSwapping = new HashSet<>();
+            data = new ConcurrentHashMap<>();
+            worthSwapping = ConcurrentHashMap.newKeySet();
             this.stats = stats;
             this.stats.setGrid(this);
             String filename = gridFile.getFileName().toString();
@@ -502,7 +505,7 @@ public class Grids_GridBinary extends Grids_GridB {
      */
     private void initCell(long row, long col, boolean value, boolean fast)
             throws IOException, ClassNotFoundException, Exception {
-        Grids_ChunkBinaryArray chunk;
+        Grids_ChunkBinary chunk;
         int chunkRow = getChunkRow(row);
         int chunkCol = getChunkCol(col);
         Grids_2D_ID_int chunkID = new Grids_2D_ID_int(chunkRow, chunkCol);
@@ -512,14 +515,14 @@ public class Grids_GridBinary extends Grids_GridB {
          */
         env.addToNotToClear(this, chunkID);
         if (!data.containsKey(chunkID)) {
-            Grids_ChunkBinaryArray gc = new Grids_ChunkBinaryArray(this, chunkID);
-            data.put(chunkID, gc);
+            Grids_ChunkBinary gc = new Grids_ChunkBinaryArray(this, chunkID);
+            putChunk(chunkID, gc);
         } else {
             Grids_Chunk c = data.get(chunkID);
             if (c == null) {
                 loadChunk(chunkID);
             }
-            chunk = (Grids_ChunkBinaryArray) data.get(chunkID);
+            chunk = getChunkToSet(chunkID);
             if (fast) {
                 initCellFast(chunk, row, col, value);
             } else {
@@ -535,19 +538,16 @@ public class Grids_GridBinary extends Grids_GridB {
      * @throws java.lang.ClassNotFoundException If encountered.
      */
     @Override
-    public Grids_ChunkBinaryArray getChunk(Grids_2D_ID_int chunkID)
+    public Grids_ChunkBinary getChunk(Grids_2D_ID_int chunkID)
             throws IOException, ClassNotFoundException, Exception {
         if (isInGrid(chunkID)) {
-            if (data.get(chunkID) == null) {
-                loadChunk(chunkID);
-            }
-            return (Grids_ChunkBinaryArray) data.get(chunkID);
+            return (Grids_ChunkBinary) accessChunk(chunkID);
         }
         return null;
     }
 
     /**
-     * @return Grids_ChunkBinaryArray for the given chunkID.
+     * @return Grids_ChunkBinary for the given chunkID.
      * @param chunkID The identifier for the chunk to return.
      * @param chunkRow The chunk row.
      * @param chunkCol The chunk col.
@@ -555,18 +555,68 @@ public class Grids_GridBinary extends Grids_GridB {
      * @throws java.lang.ClassNotFoundException If encountered.
      */
     @Override
-    public Grids_ChunkBinaryArray getChunk(Grids_2D_ID_int chunkID, int chunkRow,
+    public Grids_ChunkBinary getChunk(Grids_2D_ID_int chunkID, int chunkRow,
             int chunkCol) throws IOException, ClassNotFoundException,
             Exception {
         if (isInGrid(chunkRow, chunkCol)) {
-            if (data.get(chunkID) == null) {
-                loadChunk(chunkID);
-            }
-            return (Grids_ChunkBinaryArray) data.get(chunkID);
+            return (Grids_ChunkBinary) accessChunk(chunkID);
         }
         return null;
     }
 
+    /**
+     * For getting the chunk with chunk ID {@code i} ready for values to be set
+     * in it. If the chunk is a singlet it is converted to a
+     * {@link Grids_ChunkBinaryArray}.
+     *
+     * @param i The chunk ID.
+     * @return The chunk with chunk ID {@code i}.
+     * @throws java.io.IOException If encountered.
+     * @throws java.lang.ClassNotFoundException If encountered.
+     */
+    public Grids_ChunkBinary getChunkToSet(Grids_2D_ID_int i)
+            throws IOException, ClassNotFoundException, Exception {
+        Grids_ChunkBinary r = getChunk(i);
+        if (r instanceof Grids_ChunkBinarySinglet) {
+            r = new Grids_ChunkFactoryBinaryArray().create(r, i);
+            setChunk(i, r);
+        }
+        return r;
+    }
+
+    /**
+     * Sets the chunk with chunk ID {@code i} to {@code c}. Setting chunks
+     * does not update {@link #stats}, so once done {@link #updateStats()}
+     * should be called.
+     *
+     * @param i The chunk ID.
+     * @param c The chunk.
+     */
+    public void setChunk(Grids_2D_ID_int i, Grids_ChunkBinary c) {
+        putChunk(i, c);
+        if (c instanceof Grids_ChunkBinarySinglet) {
+            worthSwapping.remove(i);
+        } else {
+            worthSwapping.add(i);
+        }
+    }
+
+    /**
+     * For updating {@link #stats} after chunks have been set or values have
+     * been set directly in chunks.
+     *
+     * @throws java.io.IOException If encountered.
+     * @throws java.lang.ClassNotFoundException If encountered.
+     */
+    public void updateStats() throws IOException, ClassNotFoundException,
+            Exception {
+        if (stats.isUpdated()) {
+            getStats().update();
+        } else {
+            ((Grids_StatsNotUpdatedBinary) stats).setUpToDate(false);
+        }
+    }
+
     /**
      * If newValue and oldValue are the same then stats won't change. A test
      * might be appropriate in set cell so that this method is not called.
@@ -609,7 +659,7 @@ public class Grids_GridBinary extends Grids_GridB {
     public boolean getCell(long r, long c) throws IOException,
             ClassNotFoundException, Exception {
         if (isInGrid(r, c)) {
-            return getCell((Grids_ChunkBinaryArray) getChunk(getChunkRow(r),
+            return getCell((Grids_ChunkBinary) getChunk(getChunkRow(r),
                     getChunkCol(c)), getChunkCellRow(r), getChunkCellCol(c));
         }
         return false;
@@ -625,7 +675,7 @@ public class Grids_GridBinary extends Grids_GridB {
      * @return Value in chunk at chunk cell row {@code r}, chunk cell col
      * {@code c} or {@code false} if there is no such value.
      */
-    public boolean getCell(Grids_ChunkBinaryArray chunk, int r, int c) {
+    public boolean getCell(Grids_ChunkBinary chunk, int r, int c) {
         if (chunk.inChunk(r, c)) {
             return chunk.getCell(r, c);
         }
@@ -689,8 +739,8 @@ public class Grids_GridBinary extends Grids_GridB {
     public boolean setCell(long r, long c, boolean v)
             throws IOException, ClassNotFoundException, Exception {
         if (isInGrid(r, c)) {
-            return setCell((Grids_ChunkBinaryArray) getChunk(getChunkRow(r),
-                    getChunkCol(c)), getChunkCellRow(r), getChunkCellCol(c), v);
+            return setCell(getChunkToSet(new Grids_2D_ID_int(getChunkRow(r),
+                    getChunkCol(c))), getChunkCellRow(r), getChunkCellCol(c), v);
         }
         return false;
     }
@@ -712,7 +762,8 @@ public class Grids_GridBinary extends Grids_GridB {
      */
     public boolean setCell(int cr, int cc, int ccr, int ccc, boolean v)
             throws IOException, ClassNotFoundException, Exception {
-        return setCell((Grids_ChunkBinaryArray) getChunk(cr, cc), ccr, ccc, v);
+        return setCell(getChunkToSet(new Grids_2D_ID_int(cr, cc)), ccr, ccc,
+                v);
     }
 
     /**
@@ -729,7 +780,7 @@ public class Grids_GridBinary extends Grids_GridB {
      * @throws java.io.IOException If encountered.
      * @throws java.lang.ClassNotFoundException If encountered.
      */
-    public boolean setCell(Grids_ChunkBinaryArray chunk, int ccr, int ccc,
+    public boolean setCell(Grids_ChunkBinary chunk, int ccr, int ccc,
             boolean v) throws IOException, Exception, ClassNotFoundException {
         boolean r = chunk.setCell(ccr, ccc, v);
         // Update stats
@@ -769,7 +820,7 @@ public class Grids_GridBinary extends Grids_GridB {
      * be set.
      * @param value The value to initialise.
      */
-    protected void initCellFast(Grids_ChunkBinaryArray chunk, long row, long col,
+    protected void initCellFast(Grids_ChunkBinary chunk, long row, long col,
             boolean value) {
         chunk.initCell(getChunkCellRow(row), getChunkCellCol(col), value);
     }
@@ -870,15 +921,15 @@ public class Grids_GridBinary extends Grids_GridB {
      */
     public void initCells(boolean v) throws IOException, ClassNotFoundException,
             Exception {
-        Iterator<Grids_2D_ID_int> ite = data.keySet().iterator();
-        int nChunks = data.size();
+        Iterator<Grids_2D_ID_int> ite = getChunkIDs().iterator();
+        int nChunks = getChunkIDs().size();
         int counter = 0;
         while (ite.hasNext()) {
             env.checkAndMaybeFreeMemory();
             env.env.log("Initialising Chunk " + counter + " out of " + nChunks);
             counter++;
             Grids_2D_ID_int chunkID = ite.next();
-            Grids_ChunkBinaryArray chunk = getChunk(chunkID);
+            Grids_ChunkBinary chunk = getChunkToSet(chunkID);
             int cnr = getChunkNRows(chunkID);
             int cnc = getChunkNCols(chunkID);
             for (int row = 0; row < cnr; row++) {
@@ -900,6 +951,14 @@ public class Grids_GridBinary extends Grids_GridB {
         return new Grids_GridIteratorBinary(this);
     }
 
+    /**
+     * @return A new cursor for getting and setting cell values around a
+     * position in this. The cursor should be closed after use.
+     */
+    public Grids_GridCursorBinary cursor() {
+        return new Grids_GridCursorBinary(this);
+    }
+
     /**
      * @return {@code (Grids_StatsBinary) stats}
      */
@@ -945,7 +1004,7 @@ public class Grids_GridBinary extends Grids_GridB {
                         colMax);
                 env.addToNotToClear(this, s);
                 env.checkAndMaybeFreeMemory();
-                Grids_ChunkBinaryArray chunk = getChunk(i, cr, cc);
+                Grids_ChunkBinary chunk = getChunk(i, cr, cc);
                 for (int ccr = 0; ccr < cnr; ccr++) {
                     long row = gb.getRow(cr, ccr);
                     for (int ccc = 0; ccc < cnc; ccc++) {
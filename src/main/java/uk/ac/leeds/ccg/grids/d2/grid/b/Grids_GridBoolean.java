@@ -39,9 +39,11 @@ import uk.ac.leeds.ccg.grids.process.Grids_Processor;
 import uk.ac.leeds.ccg.grids.d2.util.Grids_Utilities;
 import java.math.BigInteger;
 import java.util.HashSet;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import uk.ac.leeds.ccg.generic.io.Generic_FileStore;
 import uk.ac.leeds.ccg.grids.d2.chunk.b.Grids_ChunkBoolean;
+import uk.ac.leeds.ccg.grids.d2.chunk.b.Grids_ChunkBooleanSinglet;
+import uk.ac.leeds.ccg.grids.d2.chunk.b.Grids_ChunkFactoryBooleanArray;
 import uk.ac.leeds.ccg.grids.io.Grids_ESRIAsciiGridImporter;
 import uk.ac.leeds.ccg.grids.io.Grids_ESRIAsciiGridImporter.Header;
 import uk.ac.leeds.ccg.math.Math_BigDecimal;
@@ -173,6 +175,7 @@ public class Grids_GridBoolean extends Grids_GridB {
         stats = g.stats;
         super.init(g);
         data = g.data;
+        initChunkTable();
         setReferenceInChunks();
         worthSwapping = g.worthSwapping;
         // Set the reference to this in stats
@@ -210,7 +213,7 @@ public class Grids_GridBoolean extends Grids_GridB {
                 // Try to load chunk.
                 Grids_2D_ID_int chunkID = new Grids_2D_ID_int(r, c);
                 Grids_ChunkBoolean chunk = cf.create(this, chunkID);
-                data.put(chunkID, chunk);
+                putChunk(chunkID, chunk);
             }
             env.env.log("Done chunkRow " + r + " out of " + nChunkRows);
         }
@@ -343,7 +346,7 @@ public class Grids_GridBoolean extends Grids_GridB {
             ClassNotFoundException, Exception {
         env.addToNotToClear(g, gChunkID);
         env.checkAndMaybeFreeMemory();
-        Grids_ChunkBooleanArray c = gb.getChunk(gChunkID);
+        Grids_ChunkBoolean c = gb.getChunk(gChunkID);
         int gChunkNCols = g.getChunkNCols(gcc);
         for (int cr = 0; cr < gChunkNRows; cr++) {
             long gRow = g.getRow(gcr, cr);
@@ -367,9 +370,9 @@ public class Grids_GridBoolean extends Grids_GridB {
                             Grids_ChunkBoolean chunk;
                             if (!data.containsKey(i)) {
                                 chunk = cf.create(this, i);
-                                data.put(i, chunk);
+                                putChunk(i, chunk);
                             } else {
-                                chunk = (Grids_ChunkBooleanArray) data.get(i);
+                                chunk = (Grids_ChunkBoolean) data.get(i);
                             }
                             boolean gValue = gb.getCell(c, cr, cc);
                             if (gValue) {
@@ -430,8 +433,8 @@ public class Grids_GridBoolean extends Grids_GridB {
         } else {
             // Assume ESRI AsciiFile
             name = fs.getBaseDir().getFileName().toString() + fsID;
-            data = new TreeMap<>();
-            worthSwapping = new HashSet<>();
+            data = new ConcurrentHashMap<>();
+            worthSwapping = ConcurrentHashMap.newKeySet();
             this.stats = stats;
             this.stats.setGrid(this);
             String filename = gridFile.getFileName().toString();
@@ -509,7 +512,7 @@ public class Grids_GridBoolean extends Grids_GridB {
      */
     private void initCell(long row, long col, Boolean value, boolean fast)
             throws IOException, ClassNotFoundException, Exception {
-        Grids_ChunkBooleanArray chunk;
+        Grids_ChunkBoolean chunk;
         int chunkRow = getChunkRow(row);
         int chunkCol = getChunkCol(col);
         Grids_2D_ID_int chunkID = new Grids_2D_ID_int(chunkRow, chunkCol);
@@ -519,14 +522,14 @@ public class Grids_GridBoolean extends Grids_GridB {
          */
         env.addToNotToClear(this, chunkID);
         if (!data.containsKey(chunkID)) {
-            Grids_ChunkBooleanArray gc = new Grids_ChunkBooleanArray(this, chunkID);
-            data.put(chunkID, gc);
+            Grids_ChunkBoolean gc = new Grids_ChunkBooleanArray(this, chunkID);
+            putChunk(chunkID, gc);
         } else {
             Grids_Chunk c = data.get(chunkID);
             if (c == null) {
                 loadChunk(chunkID);
             }
-            chunk = (Grids_ChunkBooleanArray) data.get(chunkID);
+            chunk = getChunkToSet(chunkID);
             if (fast) {
                 initCellFast(chunk, row, col, value);
             } else {
@@ -542,19 +545,16 @@ public class Grids_GridBoolean extends Grids_GridB {
      * @throws java.lang.ClassNotFoundException If encountered.
      */
     @Override
-    public Grids_ChunkBooleanArray getChunk(Grids_2D_ID_int chunkID)
+    public Grids_ChunkBoolean getChunk(Grids_2D_ID_int chunkID)
             throws IOException, ClassNotFoundException, Exception {
         if (isInGrid(chunkID)) {
-            if (data.get(chunkID) == null) {
-                loadChunk(chunkID);
-            }
-            return (Grids_ChunkBooleanArray) data.get(chunkID);
+            return (Grids_ChunkBoolean) accessChunk(chunkID);
         }
         return null;
     }
 
     /**
-     * @return Grids_ChunkBooleanArray for the given chunkID.
+     * @return Grids_ChunkBoolean for the given chunkID.
      * @param chunkID The identifier for the chunk to return.
      * @param chunkRow The chunk row.
      * @param chunkCol The chunk col.
@@ -562,17 +562,67 @@ public class Grids_GridBoolean extends Grids_GridB {
      * @throws java.lang.ClassNotFoundException If encountered.
      */
     @Override
-    public Grids_ChunkBooleanArray getChunk(Grids_2D_ID_int chunkID, int chunkRow,
+    public Grids_ChunkBoolean getChunk(Grids_2D_ID_int chunkID, int chunkRow,
             int chunkCol) throws IOException, ClassNotFoundException, Exception {
         if (isInGrid(chunkRow, chunkCol)) {
-            if (data.get(chunkID) == null) {
-                loadChunk(chunkID);
-            }
-            return (Grids_ChunkBooleanArray) data.get(chunkID);
+            return (Grids_ChunkBoolean) accessChunk(chunkID);
         }
         return null;
     }
 
+    /**
+     * For getting the chunk with chunk ID {@code i} ready for values to be set
+     * in it. If the chunk is a singlet it is converted to a
+     * {@link Grids_ChunkBooleanArray}.
+     *
+     * @param i The chunk ID.
+     * @return The chunk with chunk ID {@code i}.
+     * @throws java.io.IOException If encountered.
+     * @throws java.lang.ClassNotFoundException If encountered.
+     */
+    public Grids_ChunkBoolean getChunkToSet(Grids_2D_ID_int i)
+            throws IOException, ClassNotFoundException, Exception {
+        Grids_ChunkBoolean r = getChunk(i);
+        if (r instanceof Grids_ChunkBooleanSinglet) {
+            r = new Grids_ChunkFactoryBooleanArray().create(r, i);
+            setChunk(i, r);
+        }
+        return r;
+    }
+
+    /**
+     * Sets the chunk with chunk ID {@code i} to {@code c}. Setting chunks
+     * does not update {@link #stats}, so once done {@link #updateStats()}
+     * should be called.
+     *
+     * @param i The chunk ID.
+     * @param c The chunk.
+     */
+    public void setChunk(Grids_2D_ID_int i, Grids_ChunkBoolean c) {
+        putChunk(i, c);
+        if (c instanceof Grids_ChunkBooleanSinglet) {
+            worthSwapping.remove(i);
+        } else {
+            worthSwapping.add(i);
+        }
+    }
+
+    /**
+     * For updating {@link #stats} after chunks have been set or values have
+     * been set directly in chunks.
+     *
+     * @throws java.io.IOException If encountered.
+     * @throws java.lang.ClassNotFoundException If encountered.
+     */
+    public void updateStats() throws IOException, ClassNotFoundException,
+            Exception {
+        if (stats.isUpdated()) {
+            getStats().update();
+        } else {
+            ((Grids_StatsNotUpdatedBoolean) stats).setUpToDate(false);
+        }
+    }
+
     /**
      * If newValue and oldValue are the same then stats won't change. A test
      * might be appropriate in set cell so that this method is not called.
@@ -625,7 +675,7 @@ public class Grids_GridBoolean extends Grids_GridB {
     public Boolean getCell(long r, long c) throws IOException,
             ClassNotFoundException, Exception {
         if (isInGrid(r, c)) {
-            return getCell((Grids_ChunkBooleanArray) getChunk(getChunkRow(r),
+            return getCell((Grids_ChunkBoolean) getChunk(getChunkRow(r),
                     getChunkCol(c)), getChunkCellRow(r), getChunkCellCol(c));
         }
         return null;
@@ -641,7 +691,7 @@ public class Grids_GridBoolean extends Grids_GridB {
      * @return Value in chunk at chunk cell row {@code r}, chunk cell col
      * {@code c} or {@code null} if there is no such value.
      */
-    public Boolean getCell(Grids_ChunkBooleanArray chunk, int r, int c) {
+    public Boolean getCell(Grids_ChunkBoolean chunk, int r, int c) {
         if (chunk.inChunk(r, c)) {
             return chunk.getCell(r, c);
         }
@@ -656,7 +706,7 @@ public class Grids_GridBoolean extends Grids_GridB {
      * @throws java.io.IOException If encountered.
      * @throws java.lang.ClassNotFoundException If encountered.
      */
-    public final boolean getCell(BigDecimal x, BigDecimal y) throws IOException,
+    public final Boolean getCell(BigDecimal x, BigDecimal y) throws IOException,
             ClassNotFoundException, Exception {
         return getCell(getRow(y), getCol(x));
     }
@@ -706,8 +756,8 @@ public class Grids_GridBoolean extends Grids_GridB {
     public Boolean setCell(long r, long c, Boolean v)
             throws IOException, ClassNotFoundException, Exception {
         if (isInGrid(r, c)) {
-            return setCell((Grids_ChunkBooleanArray) getChunk(getChunkRow(r),
-                    getChunkCol(c)), getChunkCellRow(r), getChunkCellCol(c), v);
+            return setCell(getChunkToSet(new Grids_2D_ID_int(getChunkRow(r),
+                    getChunkCol(c))), getChunkCellRow(r), getChunkCellCol(c), v);
         }
         return null;
     }
@@ -729,7 +779,8 @@ public class Grids_GridBoolean extends Grids_GridB {
      */
     public Boolean setCell(int cr, int cc, int ccr, int ccc, boolean v)
             throws IOException, ClassNotFoundException, Exception {
-        return setCell((Grids_ChunkBooleanArray) getChunk(cr, cc), ccr, ccc, v);
+        return setCell(getChunkToSet(new Grids_2D_ID_int(cr, cc)), ccr, ccc,
+                v);
     }
 
     /**
@@ -746,7 +797,7 @@ public class Grids_GridBoolean extends Grids_GridB {
      * @throws java.io.IOException If encountered.
      * @throws java.lang.ClassNotFoundException If encountered.
      */
-    public Boolean setCell(Grids_ChunkBooleanArray chunk, int ccr, int ccc,
+    public Boolean setCell(Grids_ChunkBoolean chunk, int ccr, int ccc,
             Boolean v) throws IOException, Exception, ClassNotFoundException {
         Boolean r = chunk.setCell(ccr, ccc, v);
         // Update stats
@@ -786,7 +837,7 @@ public class Grids_GridBoolean extends Grids_GridB {
      * be set.
      * @param value The value to initialise.
      */
-    protected void initCellFast(Grids_ChunkBooleanArray chunk, long row, long col,
+    protected void initCellFast(Grids_ChunkBoolean chunk, long row, long col,
             Boolean value) {
         chunk.initCell(getChunkCellRow(row), getChunkCellCol(col), value);
     }
@@ -885,15 +936,15 @@ public class Grids_GridBoolean extends Grids_GridB {
      * @throws java.lang.ClassNotFoundException If encountered.
      */
     public void initCells(Boolean v) throws IOException, ClassNotFoundException, Exception {
-        Iterator<Grids_2D_ID_int> ite = data.keySet().iterator();
-        int nChunks = data.size();
+        Iterator<Grids_2D_ID_int> ite = getChunkIDs().iterator();
+        int nChunks = getChunkIDs().size();
         int counter = 0;
         while (ite.hasNext()) {
             env.checkAndMaybeFreeMemory();
             env.env.log("Initialising Chunk " + counter + " out of " + nChunks);
             counter++;
             Grids_2D_ID_int chunkID = ite.next();
-            Grids_ChunkBooleanArray chunk = getChunk(chunkID);
+            Grids_ChunkBoolean chunk = getChunkToSet(chunkID);
             int cnr = getChunkNRows(chunkID);
             int cnc = getChunkNCols(chunkID);
             for (int row = 0; row < cnr; row++) {
@@ -915,6 +966,14 @@ public class Grids_GridBoolean extends Grids_GridB {
         return new Grids_GridIteratorBoolean(this);
     }
 
+    /**
+     * @return A new cursor for getting and setting cell values around a
+     * position in this. The cursor should be closed after use.
+     */
+    public Grids_GridCursorBoolean cursor() {
+        return new Grids_GridCursorBoolean(this);
+    }
+
     /**
      * @return {@code (Grids_StatsBoolean) stats}
      */
@@ -960,7 +1019,7 @@ public class Grids_GridBoolean extends Grids_GridB {
                         colMax);
                 env.addToNotToClear(this, s);
                 env.checkAndMaybeFreeMemory();
-                Grids_ChunkBooleanArray chunk = getChunk(i, cr, cc);
+                Grids_ChunkBoolean chunk = getChunk(i, cr, cc);
                 for (int ccr = 0; ccr < cnr; ccr++) {
                     long row = gb.getRow(cr, ccr);
                     for (int ccc = 0; ccc < cnc; ccc++) {
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2019 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.grids.d2.grid.b;
+
+import java.io.IOException;
+import uk.ac.leeds.ccg.grids.d2.chunk.Grids_Chunk;
+import uk.ac.leeds.ccg.grids.d2.chunk.b.Grids_ChunkBoolean;
+import uk.ac.leeds.ccg.grids.d2.grid.Grids_GridCursor;
+
+/**
+ * A {@link Grids_GridCursor} for a {@link Grids_GridBoolean}.
+ *
+ * @author Andy Turner
+ * @version 1.0.0
+ */
+public class Grids_GridCursorBoolean extends Grids_GridCursor {
+
+    /**
+     * The grid.
+     */
+    protected final Grids_GridBoolean g;
+
+    /**
+     * The chunk held or {@code null}.
+     */
+    protected Grids_ChunkBoolean chunk;
+
+    /**
+     * @param g What {@link #g} and {@link #grid} are set to.
+     */
+    public Grids_GridCursorBoolean(Grids_GridBoolean g) {
+        super(g);
+        this.g = g;
+    }
+
+    @Override
+    public Grids_GridBoolean getGrid() {
+        return g;
+    }
+
+    @Override
+    protected Grids_ChunkBoolean getChunk() {
+        return chunk;
+    }
+
+    @Override
+    protected void setChunk(Grids_Chunk c) {
+        chunk = (Grids_ChunkBoolean) c;
+    }
+
+    /**
+     * @return The value at the position or {@code null} if the position is not
+     * in the grid.
+     * @throws IOException If encountered.
+     * @throws ClassNotFoundException If encountered.
+     */
+    public Boolean get() throws IOException, ClassNotFoundException, Exception {
+        return get(0L, 0L);
+    }
+
+    /**
+     * @param dr The row offset from the position.
+     * @param dc The column offset from the position.
+     * @return The value at cell row {@code row + dr}, cell column
+     * {@code col + dc} or {@code null} if there is no such cell in the grid.
+     * @throws IOException If encountered.
+     * @throws ClassNotFoundException If encountered.
+     */
+    public Boolean get(long dr, long dc) throws IOException,
+            ClassNotFoundException, Exception {
+        long r = row + dr;
+        long c = col + dc;
+        if (select(r, c)) {
+            return chunk.getCell((int) (r - r0), (int) (c - c0));
+        }
+        return null;
+    }
+
+    /**
+     * Sets the value at the position.
+     *
+     * @param v The value to set.
+     * @return The value at the position before it was set or {@code null} if the
+     * position is not in the grid.
+     * @throws IOException If encountered.
+     * @throws ClassNotFoundException If encountered.
+     */
+    public Boolean set(Boolean v) throws IOException, ClassNotFoundException,
+            Exception {
+        return set(0L, 0L, v);
+    }
+
+    /**
+     * Sets the value at cell row {@code row + dr}, cell column
+     * {@code col + dc} (as {@link Grids_GridBoolean#setCell(Grids_ChunkBoolean, int, int, Boolean)}).
+     *
+     * @param dr The row offset from the position.
+     * @param dc The column offset from the position.
+     * @param v The value to set.
+     * @return The value of the cell before it was set or {@code null} if there is
+     * no such cell in the grid.
+     * @throws IOException If encountered.
+     * @throws ClassNotFoundException If encountered.
+     */
+    public Boolean set(long dr, long dc, Boolean v) throws IOException,
+            ClassNotFoundException, Exception {
+        long r = row + dr;
+        long c = col + dc;
+        if (select(r, c)) {
+            Boolean x = g.setCell(chunk, (int) (r - r0), (int) (c - c0), v);
+            refresh();
+            return x;
+        }
+        return null;
+    }
+}
@@ -116,6 +116,7 @@ public class Grids_GridFactoryBinary extends Grids_GridFactory {
                 store, store.getNextID(), cf, chunkNRows,
                 chunkNCols, nRows, nCols, dimensions, env);
         store.addDir();
+        r.setCodec(codec);
         return r;
     }
 
@@ -178,6 +179,7 @@ public class Grids_GridFactoryBinary extends Grids_GridFactory {
                 store, store.getNextID(), g, cf, chunkNRows,
                 chunkNCols, startRow, startCol, endRow, endCol);
         store.addDir();
+        r.setCodec(codec);
         return r;
     }
 
@@ -208,6 +210,7 @@ public class Grids_GridFactoryBinary extends Grids_GridFactory {
                 gridFile, defaultGridChunkBinaryFactory, startRow, startCol,
                 endRow, endCol);
         store.addDir();
+        r.setCodec(codec);
         return r;
     }
 
@@ -239,6 +242,7 @@ public class Grids_GridFactoryBinary extends Grids_GridFactory {
                 store.getNextID(), gridFile, cf, chunkNRows, chunkNCols,
                 startRow, startCol, endRow, endCol, env);
         store.addDir();
+        r.setCodec(codec);
         return r;
     }
 
@@ -115,6 +115,7 @@ public class Grids_GridFactoryBoolean extends Grids_GridFactory {
                 store, store.getNextID(), cf, chunkNRows,
                 chunkNCols, nRows, nCols, dimensions, env);
         store.addDir();
+        r.setCodec(codec);
         return r;
     }
 
@@ -176,6 +177,7 @@ public class Grids_GridFactoryBoolean extends Grids_GridFactory {
                 store, store.getNextID(), g, cf, chunkNRows,
                 chunkNCols, startRow, startCol, endRow, endCol);
         store.addDir();
+        r.setCodec(codec);
         return r;
     }
 
@@ -236,6 +238,7 @@ public class Grids_GridFactoryBoolean extends Grids_GridFactory {
                 chunkNRows, chunkNCols, startRow, startCol, endRow, endCol,
                 env);
         store.addDir();
+        r.setCodec(codec);
         return r;
     }
 
@@ -252,6 +255,7 @@ public class Grids_GridFactoryBoolean extends Grids_GridFactory {
         Grids_GridBoolean r = new Grids_GridBoolean(env, store,
                 store.getNextID(), gridFile);
         store.addDir();
+        r.setCodec(codec);
         return r;
     }
 
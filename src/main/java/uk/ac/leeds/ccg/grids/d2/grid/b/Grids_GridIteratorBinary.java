@@ -22,6 +22,9 @@ import uk.ac.leeds.ccg.grids.d2.grid.Grids_GridIterator;
 import uk.ac.leeds.ccg.grids.d2.chunk.Grids_Chunk;
 import uk.ac.leeds.ccg.grids.d2.chunk.b.Grids_ChunkBinaryArray;
 import uk.ac.leeds.ccg.grids.d2.chunk.b.Grids_ChunkIteratorBinaryArray;
+import uk.ac.leeds.ccg.grids.d2.chunk.Grids_ChunkIterator;
+import uk.ac.leeds.ccg.grids.d2.chunk.b.Grids_ChunkBinarySinglet;
+import uk.ac.leeds.ccg.grids.d2.chunk.b.Grids_ChunkIteratorBinarySinglet;
 
 /**
  * For iterating through the values in a {@link Grids_GridBinary}. The values
@@ -44,14 +47,13 @@ public class Grids_GridIteratorBinary extends Grids_GridIterator {
     public Grids_GridIteratorBinary(Grids_GridBinary g) throws IOException,
             ClassNotFoundException, Exception {
         super(g);
-        gridIterator = g.getData().keySet().iterator();
+        gridIterator = g.getChunkIDs().iterator();
         if (gridIterator.hasNext()) {
             chunkID = gridIterator.next();
-            chunk = (Grids_ChunkBinaryArray) g.getData()
-                    .get(chunkID);
+            chunk = g.getData().get(chunkID);
             if (chunk == null) {
                 grid.loadChunk(chunkID);
-                chunk = (Grids_ChunkBinaryArray) g.getData()
+                chunk = g.getData()
                         .get(chunkID);
             }
             initChunkIterator();
@@ -63,10 +65,7 @@ public class Grids_GridIteratorBinary extends Grids_GridIterator {
      */
     @Override
     protected final void initChunkIterator() {
-        if (chunk instanceof Grids_ChunkBinaryArray) {
-            chunkIterator = new Grids_ChunkIteratorBinaryArray(
-                    (Grids_ChunkBinaryArray) chunk);
-        }
+        chunkIterator = getChunkIterator(chunk);
     }
 
     /**
@@ -75,10 +74,13 @@ public class Grids_GridIteratorBinary extends Grids_GridIterator {
      * chunk.
      */
     @Override
-    public Grids_ChunkIteratorBinaryArray getChunkIterator(Grids_Chunk chunk) {
+    public Grids_ChunkIterator getChunkIterator(Grids_Chunk chunk) {
         if (chunk instanceof Grids_ChunkBinaryArray) {
             return new Grids_ChunkIteratorBinaryArray(
                     (Grids_ChunkBinaryArray) chunk);
+        } else if (chunk instanceof Grids_ChunkBinarySinglet) {
+            return new Grids_ChunkIteratorBinarySinglet(
+                    (Grids_ChunkBinarySinglet) chunk);
         } else {
             throw new Error("Unrecognised type of chunk "
                     + this.getClass().getName()
@@ -91,7 +93,7 @@ public class Grids_GridIteratorBinary extends Grids_GridIterator {
         return (Grids_GridBinary) grid;
     }
 
-    public Grids_ChunkIteratorBinaryArray getChunkIterator(Grids_2D_ID_int i)
+    public Grids_ChunkIterator getChunkIterator(Grids_2D_ID_int i)
             throws IOException, ClassNotFoundException, Exception {
         return getChunkIterator(getGrid().getChunk(i));
     }
@@ -110,17 +112,27 @@ public class Grids_GridIteratorBinary extends Grids_GridIterator {
                 chunk = grid.getChunk(chunkID);
                 chunkIterator = getChunkIterator(chunk);
                 env.checkAndMaybeFreeMemory(chunkID, env.HOOMET);
-                return getChunkIterator().next();
+                return nextInChunk();
             } else {
                 throw new NoSuchElementException();
             }
         } else {
-            return getChunkIterator().next();
+            return nextInChunk();
         }
     }
 
     @Override
-    public Grids_ChunkIteratorBinaryArray getChunkIterator() {
-        return (Grids_ChunkIteratorBinaryArray) chunkIterator;
+    public Grids_ChunkIterator getChunkIterator() {
+        return chunkIterator;
+    }
+
+    /**
+     * @return The next value from {@link #chunkIterator}.
+     */
+    private boolean nextInChunk() {
+        if (chunkIterator instanceof Grids_ChunkIteratorBinarySinglet) {
+            return ((Grids_ChunkIteratorBinarySinglet) chunkIterator).next();
+        }
+        return ((Grids_ChunkIteratorBinaryArray) chunkIterator).next();
     }
 }
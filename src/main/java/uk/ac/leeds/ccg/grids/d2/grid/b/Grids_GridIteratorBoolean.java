@@ -22,6 +22,9 @@ import uk.ac.leeds.ccg.grids.d2.grid.Grids_GridIterator;
 import uk.ac.leeds.ccg.grids.d2.chunk.Grids_Chunk;
 import uk.ac.leeds.ccg.grids.d2.chunk.b.Grids_ChunkBooleanArray;
 import uk.ac.leeds.ccg.grids.d2.chunk.b.Grids_ChunkIteratorBooleanArray;
+import uk.ac.leeds.ccg.grids.d2.chunk.Grids_ChunkIterator;
+import uk.ac.leeds.ccg.grids.d2.chunk.b.Grids_ChunkBooleanSinglet;
+import uk.ac.leeds.ccg.grids.d2.chunk.b.Grids_ChunkIteratorBooleanSinglet;
 
 /**
  * For iterating through the values in a {@link Grids_GridBoolean}. The values are
@@ -43,14 +46,13 @@ public class Grids_GridIteratorBoolean extends Grids_GridIterator {
     public Grids_GridIteratorBoolean(Grids_GridBoolean g) throws IOException, 
             ClassNotFoundException, Exception {
         super(g);
-        gridIterator = g.getData().keySet().iterator();
+        gridIterator = g.getChunkIDs().iterator();
         if (gridIterator.hasNext()) {
             chunkID = gridIterator.next();
-            chunk = (Grids_ChunkBooleanArray) g.getData()
-                    .get(chunkID);
+            chunk = g.getData().get(chunkID);
             if (chunk == null) {
                 grid.loadChunk(chunkID);
-                chunk = (Grids_ChunkBooleanArray) g.getData()
+                chunk = g.getData()
                         .get(chunkID);
             }
             initChunkIterator();
@@ -62,10 +64,7 @@ public class Grids_GridIteratorBoolean extends Grids_GridIterator {
      */
     @Override
     protected final void initChunkIterator() {
-        if (chunk instanceof Grids_ChunkBooleanArray) {
-            chunkIterator = new Grids_ChunkIteratorBooleanArray(
-                    (Grids_ChunkBooleanArray) chunk);
-        }
+        chunkIterator = getChunkIterator(chunk);
     }
 
     /**
@@ -73,10 +72,13 @@ public class Grids_GridIteratorBoolean extends Grids_GridIterator {
      * @return Grids_AbstractIterator to iterate over values in chunk.
      */
     @Override
-    public Grids_ChunkIteratorBooleanArray getChunkIterator(Grids_Chunk chunk) {
+    public Grids_ChunkIterator getChunkIterator(Grids_Chunk chunk) {
         if (chunk instanceof Grids_ChunkBooleanArray) {
             return new Grids_ChunkIteratorBooleanArray(
                     (Grids_ChunkBooleanArray) chunk);
+        } else if (chunk instanceof Grids_ChunkBooleanSinglet) {
+            return new Grids_ChunkIteratorBooleanSinglet(
+                    (Grids_ChunkBooleanSinglet) chunk);
         } else {
             throw new Error("Unrecognised type of chunk "
                         + this.getClass().getName()
@@ -89,7 +91,7 @@ public class Grids_GridIteratorBoolean extends Grids_GridIterator {
         return (Grids_GridBoolean) grid;
     }
     
-    public Grids_ChunkIteratorBooleanArray getChunkIterator(Grids_2D_ID_int i) 
+    public Grids_ChunkIterator getChunkIterator(Grids_2D_ID_int i) 
             throws IOException, ClassNotFoundException, Exception {
         return getChunkIterator(getGrid().getChunk(i));
     }
@@ -115,13 +117,23 @@ public class Grids_GridIteratorBoolean extends Grids_GridIterator {
     }
 
     private Boolean next0() throws IOException, Exception {
-        boolean r = getChunkIterator().next();
+        Boolean r = nextInChunk();
         env.checkAndMaybeFreeMemory(chunkID, env.HOOMET);
         return r;
     }
     
     @Override
-    public Grids_ChunkIteratorBooleanArray getChunkIterator() {
-        return (Grids_ChunkIteratorBooleanArray) chunkIterator;
+    public Grids_ChunkIterator getChunkIterator() {
+        return chunkIterator;
+    }
+
+    /**
+     * @return The next value from {@link #chunkIterator}.
+     */
+    private Boolean nextInChunk() {
+        if (chunkIterator instanceof Grids_ChunkIteratorBooleanSinglet) {
+            return ((Grids_ChunkIteratorBooleanSinglet) chunkIterator).next();
+        }
+        return ((Grids_ChunkIteratorBooleanArray) chunkIterator).next();
     }
 }
@@ -20,12 +20,14 @@ import java.io.IOException;
 import java.math.BigDecimal;
 import java.nio.file.Files;
 import java.util.HashSet;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import uk.ac.leeds.ccg.generic.io.Generic_IO;
 import uk.ac.leeds.ccg.generic.io.Generic_Path;
 import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
 import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_long;
 import uk.ac.leeds.ccg.grids.d2.grid.Grids_Dimensions;
+import uk.ac.leeds.ccg.grids.d2.chunk.bd.Grids_ChunkFactoryBDMap;
+import uk.ac.leeds.ccg.grids.d2.chunk.bd.Grids_ChunkFactoryBDArray;
 import uk.ac.leeds.ccg.grids.d2.chunk.bd.Grids_ChunkBD;
 import uk.ac.leeds.ccg.grids.d2.chunk.bd.Grids_ChunkFactoryBD;
 import uk.ac.leeds.ccg.grids.d2.chunk.Grids_Chunk;
@@ -34,6 +36,8 @@ import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkInt;
 import uk.ac.leeds.ccg.grids.d2.chunk.bd.Grids_ChunkBDSinglet;
 import uk.ac.leeds.ccg.grids.d2.chunk.bd.Grids_ChunkBDArray;
 import uk.ac.leeds.ccg.grids.d2.chunk.bd.Grids_ChunkBDMap;
+import uk.ac.leeds.ccg.grids.d2.chunk.bd.Grids_ChunkBDScaled;
+import uk.ac.leeds.ccg.grids.d2.chunk.bd.Grids_ChunkFactoryBDScaled;
 import uk.ac.leeds.ccg.grids.d2.grid.Grids_GridNumber;
 import uk.ac.leeds.ccg.grids.d2.grid.Grids_Grid;
 import uk.ac.leeds.ccg.grids.d2.stats.Grids_StatsBD;
@@ -186,6 +190,7 @@ public class Grids_GridBD extends Grids_GridNumber {
         stats = g.stats;
         super.init(g);
         data = g.data;
+        initChunkTable();
         setReferenceInChunks();
         worthSwapping = g.worthSwapping;
         // Set the reference to this in stats
@@ -215,7 +220,7 @@ public class Grids_GridBD extends Grids_GridNumber {
                 Grids_2D_ID_int i = new Grids_2D_ID_int(r, c);
                 //env.checkAndMaybeFreeMemory();
                 Grids_ChunkBD chunk = chunkFactory.create(this, i);
-                data.put(i, chunk);
+                putChunk(i, chunk);
                 if (!(chunk instanceof Grids_ChunkBDSinglet)) {
                     worthSwapping.add(i);
                 }
@@ -289,7 +294,7 @@ public class Grids_GridBD extends Grids_GridNumber {
                                                 Grids_ChunkBD chunk;
                                                 if (!data.containsKey(chunkID)) {
                                                     chunk = cf.create(this, chunkID);
-                                                    data.put(chunkID, chunk);
+                                                    putChunk(chunkID, chunk);
                                                     if (!(chunk instanceof Grids_ChunkBDSinglet)) {
                                                         worthSwapping.add(chunkID);
                                                     }
@@ -370,7 +375,7 @@ public class Grids_GridBD extends Grids_GridNumber {
                                                 Grids_ChunkBD chunk;
                                                 if (!data.containsKey(chunkID)) {
                                                     chunk = cf.create(this, chunkID);
-                                                    data.put(chunkID, chunk);
+                                                    putChunk(chunkID, chunk);
                                                     if (!(chunk instanceof Grids_ChunkBDSinglet)) {
                                                         worthSwapping.add(chunkID);
                                                     }
@@ -454,8 +459,8 @@ public class Grids_GridBD extends Grids_GridNumber {
             name = fs.getBaseDir().getFileName().toString() + fsID;
             initNChunkRows();
             initNChunkCols();
-            data = new TreeMap<>();
-            worthSwapping = new HashSet<>();
+            data = new ConcurrentHashMap<>();
+            worthSwapping = ConcurrentHashMap.newKeySet();
             this.stats = stats;
             this.stats.grid = this;
             String filename = gridFile.getFileName().toString();
@@ -566,8 +571,8 @@ public class Grids_GridBD extends Grids_GridNumber {
         } else {
             // Assume ESRI AsciiFile
             name = fs.getBaseDir().getFileName().toString() + fsID;
-            data = new TreeMap<>();
-            worthSwapping = new HashSet<>();
+            data = new ConcurrentHashMap<>();
+            worthSwapping = ConcurrentHashMap.newKeySet();
             this.stats = stats;
             this.stats.setGrid(this);
             String filename = gridFile.getFileName().toString();
@@ -695,7 +700,7 @@ public class Grids_GridBD extends Grids_GridNumber {
 //            chunk.env = env;
 //            chunk.initGrid(this);
 //            chunk.initChunkID(chunkID);
-//            data.put(chunkID, chunk);
+//            putChunk(chunkID, chunk);
 //            if (!(chunk instanceof Grids_ChunkBDSinglet)) {
 //                worthSwapping.add(chunkID);
 //            }
@@ -714,7 +719,7 @@ public class Grids_GridBD extends Grids_GridNumber {
         env.addToNotToClear(this, i);
         if (!data.containsKey(i)) {
             Grids_ChunkBDSinglet gc = new Grids_ChunkBDSinglet(this, i, value);
-            data.put(i, gc);
+            putChunk(i, gc);
             if (!(gc instanceof Grids_ChunkBDSinglet)) {
                 worthSwapping.add(i);
             }
@@ -729,10 +734,11 @@ public class Grids_GridBD extends Grids_GridNumber {
                 if (value != gc.v) {
                     // Convert chunk to another type
                     chunk = env.getProcessor().gridFactoryBD.defaultGridChunkBDFactory.create(chunk, i);
-                    data.put(i, chunk);
+                    putChunk(i, chunk);
                     if (!(chunk instanceof Grids_ChunkBDSinglet)) {
                         worthSwapping.add(i);
                     }
+                    chunk = getChunkToHold(chunk, value);
                     chunk.initCell(getChunkCellRow(row), getChunkCellCol(col), value);
                 }
             } else {
@@ -755,10 +761,7 @@ public class Grids_GridBD extends Grids_GridNumber {
     public Grids_ChunkBD getChunk(Grids_2D_ID_int i)
             throws IOException, Exception, ClassNotFoundException {
         if (isInGrid(i)) {
-            if (data.get(i) == null) {
-                loadChunk(i);
-            }
-            return (Grids_ChunkBD) data.get(i);
+            return (Grids_ChunkBD) accessChunk(i);
         }
         return null;
     }
@@ -775,10 +778,7 @@ public class Grids_GridBD extends Grids_GridNumber {
     public Grids_ChunkBD getChunk(Grids_2D_ID_int i, int cr, int cc)
             throws IOException, Exception, ClassNotFoundException {
         if (isInGrid(cr, cc)) {
-            if (data.get(i) == null) {
-                loadChunk(i);
-            }
-            return (Grids_ChunkBD) data.get(i);
+            return (Grids_ChunkBD) accessChunk(i);
         }
         return null;
     }
@@ -989,16 +989,20 @@ public class Grids_GridBD extends Grids_GridNumber {
     public BigDecimal setCell(Grids_ChunkBD chunk, int ccr, int ccc, BigDecimal v)
             throws IOException, Exception, ClassNotFoundException {
         BigDecimal r = ndv;
+        chunk = getChunkToHold(chunk, v);
         if (chunk instanceof Grids_ChunkBDArray) {
             r = ((Grids_ChunkBDArray) chunk).setCell(ccr, ccc, v);
         } else if (chunk instanceof Grids_ChunkBDMap) {
             r = ((Grids_ChunkBDMap) chunk).setCell(ccr, ccc, v);
+        } else if (chunk instanceof Grids_ChunkBDScaled) {
+            r = ((Grids_ChunkBDScaled) chunk).setCell(ccr, ccc, v);
         } else {
             Grids_ChunkBDSinglet c = (Grids_ChunkBDSinglet) chunk;
             if (c != null) {
                 if (v.compareTo(c.v) != 0) {
                     // Convert chunk to another type
                     chunk = convertToAnotherTypeOfChunk(chunk, c.getId());
+                    chunk = getChunkToHold(chunk, v);
                     r = chunk.setCell(ccr, ccc, v);
                 } else {
                     r = c.v;
@@ -1007,9 +1011,7 @@ public class Grids_GridBD extends Grids_GridNumber {
         }
         // Update stats
         if (v.compareTo(r) != 0) {
-            if (stats.isUpdated()) {
-                updateStats(v, r);
-            }
+            updateStats(v, r);
         }
         return r;
     }
@@ -1023,13 +1025,127 @@ public class Grids_GridBD extends Grids_GridNumber {
         Grids_ChunkBD r;
         Grids_ChunkFactoryBD f = env.getProcessor().gridFactoryBD.defaultGridChunkBDFactory;
         r = f.create(chunk, chunkID);
-        data.put(chunkID, r);
-        if (!(chunk instanceof Grids_ChunkBDSinglet)) {
+        putChunk(chunkID, r);
+        if (!(r instanceof Grids_ChunkBDSinglet)) {
             worthSwapping.add(chunkID);
         }
         return r;
     }
 
+    /**
+     * @param c The chunk.
+     * @param v The value to be set in {@code c}.
+     * @return {@code c} unless it is a {@link Grids_ChunkBDScaled} that cannot
+     * hold {@code v} in which case a {@link Grids_ChunkBDArray} with the same
+     * values that replaces it.
+     */
+    protected Grids_ChunkBD getChunkToHold(Grids_ChunkBD c, BigDecimal v) {
+        if (c instanceof Grids_ChunkBDScaled
+                && !((Grids_ChunkBDScaled) c).isRepresentable(v)) {
+            Grids_ChunkBD r = new Grids_ChunkFactoryBDArray().create(c,
+                    c.getId());
+            r.setLastAccess(c.getLastAccess());
+            putChunk(c.getId(), r);
+            return r;
+        }
+        return c;
+    }
+
+    /**
+     * Returns a chunk with the same values as {@code c} of whichever of the
+     * singlet, map, scaled and array types uses least memory. A scaled chunk
+     * is used in preference to an array chunk if the values can all be held
+     * in fixed point (see {@link Grids_ChunkBDScaled}). The default value of a
+     * map chunk is the most common value. This is found in two passes over
+     * the values without allocating: the first finds the (at most two) values
+     * that can be in more than a third of the cells using the Misra-Gries
+     * frequent items algorithm, and the second counts these. Other values are
+     * not candidates: a map chunk uses more memory than an array chunk unless
+     * its default value is in more than a third of the cells. Singlet and
+     * mapped chunks are returned as they are.
+     *
+     * @param i The chunk ID.
+     * @param c The chunk with chunk ID {@code i}.
+     * @return A chunk with the same values as {@code c}.
+     */
+    @Override
+    protected Grids_Chunk getCompactChunk(Grids_2D_ID_int i, Grids_Chunk c) {
+        if (!(c instanceof Grids_ChunkBDArray
+                || c instanceof Grids_ChunkBDMap
+                || c instanceof Grids_ChunkBDScaled)) {
+            return c;
+        }
+        Grids_ChunkBD cd = (Grids_ChunkBD) c;
+        int nrows = c.getChunkNRows();
+        int ncols = c.getChunkNCols();
+        BigDecimal a = BigDecimal.ZERO;
+        BigDecimal b = BigDecimal.ZERO;
+        int na = 0;
+        int nb = 0;
+        for (int row = 0; row < nrows; row++) {
+            for (int col = 0; col < ncols; col++) {
+                BigDecimal v = cd.getCell(row, col);
+                if (na > 0 && v.compareTo(a) == 0) {
+                    na++;
+                } else if (nb > 0 && v.compareTo(b) == 0) {
+                    nb++;
+                } else if (na == 0) {
+                    a = v;
+                    na = 1;
+                } else if (nb == 0) {
+                    b = v;
+                    nb = 1;
+                } else {
+                    na--;
+                    nb--;
+                }
+            }
+        }
+        na = 0;
+        nb = 0;
+        for (int row = 0; row < nrows; row++) {
+            for (int col = 0; col < ncols; col++) {
+                BigDecimal v = cd.getCell(row, col);
+                if (v.compareTo(a) == 0) {
+                    na++;
+                } else if (v.compareTo(b) == 0) {
+                    nb++;
+                }
+            }
+        }
+        BigDecimal dv = na >= nb ? a : b;
+        int nc = nrows * ncols;
+        int n = nc - Math.max(na, nb);
+        if (n == 0) {
+            return new Grids_ChunkBDSinglet(this, i, dv);
+        }
+        int s = Grids_ChunkBDScaled.getScale(cd);
+        long max = s < 0 ? Grids_Chunk.BYTES_CHUNK
+                + Grids_Chunk.getArrayFootprint(nrows, ncols,
+                        Grids_Chunk.BYTES_REFERENCE)
+                + (long) nc * Grids_Chunk.BYTES_BIG_DECIMAL
+                : Grids_ChunkBDScaled.getMemoryFootprintEstimate(nc);
+        if (Grids_ChunkBDMap.getMemoryFootprintEstimate(nc, n) < max) {
+            if (c instanceof Grids_ChunkBDMap
+                    && ((Grids_ChunkBDMap) c).defaultValue.compareTo(dv) == 0) {
+                return c;
+            }
+            Grids_ChunkBDMap r = new Grids_ChunkFactoryBDMap().create(cd, i,
+                    dv);
+            return r;
+        }
+        if (s >= 0) {
+            if (c instanceof Grids_ChunkBDScaled) {
+                return c;
+            }
+            return new Grids_ChunkFactoryBDScaled().create(cd, i, s);
+        }
+        if (c instanceof Grids_ChunkBDArray) {
+            return c;
+        }
+        return new Grids_ChunkFactoryBDArray().create(cd, i);
+    }
+
     /**
      * Initialises the v in chunk at row, col.
      *
@@ -1048,12 +1164,14 @@ public class Grids_GridBD extends Grids_GridNumber {
             Grids_ChunkBDSinglet gc = (Grids_ChunkBDSinglet) chunk;
             if (v.compareTo(gc.v) != 0) {
                 chunk = convertToAnotherTypeOfChunk(chunk, i);
+                chunk = getChunkToHold(chunk, v);
                 chunk.initCell(getChunkCellRow(row), getChunkCellCol(col), v);
             } else {
                 return;
             }
         } else {
             if (chunk != null) {
+                chunk = getChunkToHold(chunk, v);
                 chunk.initCell(getChunkCellRow(row), getChunkCellCol(col), v);
             }
         }
@@ -1104,6 +1222,7 @@ public class Grids_GridBD extends Grids_GridNumber {
 //        int chunkCol = getChunkCol(col);
 //        Grids_2D_ID_int chunkID = new Grids_2D_ID_int(chunkRow, chunkCol);
 //        Grids_ChunkBD chunk = getChunk(chunkID);
+        chunk = getChunkToHold(chunk, value);
         chunk.initCell(getChunkCellRow(row), getChunkCellCol(col), value);
     }
 
@@ -1418,6 +1537,168 @@ public class Grids_GridBD extends Grids_GridNumber {
         }
     }
 
+    /**
+     * Adds {@code v} to every cell as in
+     * {@link #addToCell(long, long, BigDecimal)}. The values of
+     * {@link Grids_ChunkBDScaled} chunks are added to in fixed point (see
+     * {@link Grids_ChunkBDScaled#add(BigDecimal)}); other chunks, and scaled
+     * chunks for which the results cannot be held in fixed point, are added
+     * to cell by cell.
+     *
+     * @param v The value to add.
+     * @throws java.io.IOException If encountered.
+     * @throws java.lang.ClassNotFoundException If encountered.
+     */
+    public void add(BigDecimal v) throws IOException, ClassNotFoundException,
+            Exception {
+        if (v.compareTo(ndv) == 0) {
+            return;
+        }
+        boolean scaled = false;
+        for (Grids_2D_ID_int i : getChunkIDs()) {
+            pin(i);
+            try {
+                env.checkAndMaybeFreeMemory();
+                Grids_ChunkBD c = getChunk(i);
+                if (c instanceof Grids_ChunkBDScaled
+                        && ((Grids_ChunkBDScaled) c).add(v)) {
+                    scaled = true;
+                } else {
+                    int cnr = getChunkNRows(i);
+                    int cnc = getChunkNCols(i);
+                    for (int ccr = 0; ccr < cnr; ccr++) {
+                        for (int ccc = 0; ccc < cnc; ccc++) {
+                            BigDecimal v2 = getCell(getChunk(i), ccr, ccc);
+                            setCell(i.getRow(), i.getCol(), ccr, ccc,
+                                    v2.compareTo(ndv) == 0 ? v : v2.add(v));
+                        }
+                    }
+                }
+            } finally {
+                unpin(i);
+            }
+        }
+        if (scaled) {
+            updateStats();
+        }
+    }
+
+    /**
+     * Adds the values of {@code g} to the values of this cell by cell as in
+     * {@link #addToCell(long, long, BigDecimal)} ignoring the no data values
+     * of {@code g}. Where the chunks of both grids are
+     * {@link Grids_ChunkBDScaled} chunks the values are added in fixed point
+     * (see {@link Grids_ChunkBDScaled#add(Grids_ChunkBDScaled)}), otherwise
+     * they are added cell by cell.
+     *
+     * @param g The grid to add. The no data value of {@code g} must be the
+     * same as {@link #ndv}.
+     * @throws Exception If {@code g} does not have the same dimensions and
+     * chunks as this.
+     */
+    public void add(Grids_GridBD g) throws IOException, ClassNotFoundException,
+            Exception {
+        if (!isSameDimensionsAndChunks(g) || g.ndv.compareTo(ndv) != 0) {
+            throw new Exception("Grids do not have the same dimensions, chunks "
+                    + "and no data value.");
+        }
+        boolean scaled = false;
+        for (Grids_2D_ID_int i : getChunkIDs()) {
+            pin(i);
+            g.pin(i);
+            try {
+                env.checkAndMaybeFreeMemory();
+                Grids_ChunkBD c = getChunk(i);
+                Grids_ChunkBD c2 = g.getChunk(i);
+                if (c instanceof Grids_ChunkBDScaled
+                        && c2 instanceof Grids_ChunkBDScaled
+                        && ((Grids_ChunkBDScaled) c).add(
+                                (Grids_ChunkBDScaled) c2)) {
+                    scaled = true;
+                } else {
+                    int cnr = getChunkNRows(i);
+                    int cnc = getChunkNCols(i);
+                    for (int ccr = 0; ccr < cnr; ccr++) {
+                        for (int ccc = 0; ccc < cnc; ccc++) {
+                            BigDecimal v2 = c2.getCell(ccr, ccc);
+                            if (v2.compareTo(ndv) != 0) {
+                                BigDecimal v = getCell(getChunk(i), ccr, ccc);
+                                setCell(i.getRow(), i.getCol(), ccr, ccc,
+                                        v.compareTo(ndv) == 0 ? v2 : v.add(v2));
+                            }
+                        }
+                    }
+                }
+            } finally {
+                g.unpin(i);
+                unpin(i);
+            }
+        }
+        if (scaled) {
+            updateStats();
+        }
+    }
+
+    /**
+     * Multiplies every value other than the no data value by {@code v}. The
+     * values of {@link Grids_ChunkBDScaled} chunks are multiplied in fixed
+     * point (see {@link Grids_ChunkBDScaled#multiply(BigDecimal)}); other
+     * chunks, and scaled chunks for which the results cannot be held in fixed
+     * point, are multiplied cell by cell.
+     *
+     * @param v The value to multiply by.
+     * @throws java.io.IOException If encountered.
+     * @throws java.lang.ClassNotFoundException If encountered.
+     */
+    public void multiply(BigDecimal v) throws IOException,
+            ClassNotFoundException, Exception {
+        boolean scaled = false;
+        for (Grids_2D_ID_int i : getChunkIDs()) {
+            pin(i);
+            try {
+                env.checkAndMaybeFreeMemory();
+                Grids_ChunkBD c = getChunk(i);
+                if (c instanceof Grids_ChunkBDScaled
+                        && ((Grids_ChunkBDScaled) c).multiply(v)) {
+                    scaled = true;
+                } else {
+                    int cnr = getChunkNRows(i);
+                    int cnc = getChunkNCols(i);
+                    for (int ccr = 0; ccr < cnr; ccr++) {
+                        for (int ccc = 0; ccc < cnc; ccc++) {
+                            BigDecimal v2 = getCell(getChunk(i), ccr, ccc);
+                            if (v2.compareTo(ndv) != 0) {
+                                setCell(i.getRow(), i.getCol(), ccr, ccc,
+                                        v2.multiply(v));
+                            }
+                        }
+                    }
+                }
+            } finally {
+                unpin(i);
+            }
+        }
+        if (scaled) {
+            updateStats();
+        }
+    }
+
+    /**
+     * For updating {@link #stats} after chunks have been set or values have
+     * been set directly in chunks.
+     *
+     * @throws java.io.IOException If encountered.
+     * @throws java.lang.ClassNotFoundException If encountered.
+     */
+    public void updateStats() throws IOException, ClassNotFoundException,
+            Exception {
+        if (stats.isUpdated()) {
+            getStats().update();
+        } else {
+            ((Grids_StatsNotUpdatedBD) stats).setUpToDate(false);
+        }
+    }
+
     /**
      * Initialises all cells with v {@code v}.
      *
@@ -1427,8 +1708,8 @@ public class Grids_GridBD extends Grids_GridNumber {
      */
     protected void initCells(BigDecimal v) throws IOException, Exception,
             ClassNotFoundException {
-        Iterator<Grids_2D_ID_int> ite = data.keySet().iterator();
-        int nChunks = data.size();
+        Iterator<Grids_2D_ID_int> ite = getChunkIDs().iterator();
+        int nChunks = getChunkIDs().size();
         int counter = 0;
         while (ite.hasNext()) {
             env.checkAndMaybeFreeMemory();
@@ -1457,6 +1738,14 @@ public class Grids_GridBD extends Grids_GridNumber {
         return new Grids_GridIteratorBD(this);
     }
 
+    /**
+     * @return A new cursor for getting and setting cell values around a
+     * position in this. The cursor should be closed after use.
+     */
+    public Grids_GridCursorBD cursor() {
+        return new Grids_GridCursorBD(this);
+    }
+
     @Override
     public Grids_StatsBD getStats() {
         return (Grids_StatsBD) stats;
@@ -1475,6 +1764,9 @@ public class Grids_GridBD extends Grids_GridNumber {
         if (chunk.getClass() == Grids_ChunkBDMap.class) {
             return ((Grids_ChunkBDMap) c).getCell(cellRow, cellCol);
         }
+        if (chunk.getClass() == Grids_ChunkBDScaled.class) {
+            return ((Grids_ChunkBDScaled) c).getCell(cellRow, cellCol);
+        }
         return c.getGrid().ndv;
     }
 
@@ -165,6 +165,8 @@ public class Grids_GridFactoryBD extends Grids_GridFactory {
                 store.getNextID(), cf, chunkNRows,
                 chunkNCols, nRows, nCols, dimensions, noDataValue, env);
         store.addDir();
+        r.setCodec(codec);
+        r.setAdaptive(adaptive);
         return r;
     }
 
@@ -213,6 +215,8 @@ public class Grids_GridFactoryBD extends Grids_GridFactory {
                 store.getNextID(), g, cf, chunkNRows,
                 chunkNCols, startRow, startCol, endRow, endCol, noDataValue);
         store.addDir();
+        r.setCodec(codec);
+        r.setAdaptive(adaptive);
         return r;
     }
 
@@ -261,6 +265,8 @@ public class Grids_GridFactoryBD extends Grids_GridFactory {
                 store.getNextID(), gridFile, cf, chunkNRows, chunkNCols,
                 startRow, startCol, endRow, endCol, noDataValue, env);
         store.addDir();
+        r.setCodec(codec);
+        r.setAdaptive(adaptive);
         return r;
     }
 
@@ -278,6 +284,8 @@ public class Grids_GridFactoryBD extends Grids_GridFactory {
         Grids_GridBD r = new Grids_GridBD(env, store, store.getNextID(),
                 gridFile, noDataValue);
         store.addDir();
+        r.setCodec(codec);
+        r.setAdaptive(adaptive);
         return r;
     }
 
@@ -17,11 +17,12 @@ package uk.ac.leeds.ccg.grids.d2.grid.bd;
 
 import java.io.IOException;
 import java.math.BigDecimal;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
 import uk.ac.leeds.ccg.grids.d2.chunk.Grids_Chunk;
 import uk.ac.leeds.ccg.grids.d2.chunk.bd.Grids_ChunkIteratorBDArrayOrMap;
 import uk.ac.leeds.ccg.grids.d2.chunk.bd.Grids_ChunkBDMap;
+import uk.ac.leeds.ccg.grids.d2.chunk.bd.Grids_ChunkBDScaled;
 import uk.ac.leeds.ccg.grids.d2.chunk.bd.Grids_ChunkBDArray;
 import uk.ac.leeds.ccg.grids.d2.chunk.Grids_ChunkRowMajorOrderIterator;
 import uk.ac.leeds.ccg.grids.d2.chunk.bd.Grids_ChunkBDSinglet;
@@ -49,8 +50,8 @@ public class Grids_GridIteratorBD extends Grids_GridIterator {
     public Grids_GridIteratorBD(Grids_GridBD g) throws IOException,
             ClassNotFoundException, Exception {
         super(g);
-        TreeMap<Grids_2D_ID_int, Grids_Chunk> m = g.getData();
-        gridIterator = m.keySet().iterator();
+        ConcurrentHashMap<Grids_2D_ID_int, Grids_Chunk> m = g.getData();
+        gridIterator = g.getChunkIDs().iterator();
         if (gridIterator.hasNext()) {
             chunkID = gridIterator.next();
             chunk = m.get(chunkID);
@@ -73,6 +74,9 @@ public class Grids_GridIteratorBD extends Grids_GridIterator {
         } else if (chunk instanceof Grids_ChunkBDMap) {
             chunkIterator = new Grids_ChunkIteratorBDArrayOrMap(
                     (Grids_ChunkBDMap) chunk);
+        } else if (chunk instanceof Grids_ChunkBDScaled) {
+            chunkIterator = new Grids_ChunkIteratorBDArrayOrMap(
+                    (Grids_ChunkBDScaled) chunk);
         } else {
             chunkIterator = new Grids_ChunkIteratorBDSinglet(
                     (Grids_ChunkBDSinglet) chunk);
@@ -94,6 +98,9 @@ public class Grids_GridIteratorBD extends Grids_GridIterator {
         } else if (c instanceof Grids_ChunkBDMap) {
             return new Grids_ChunkIteratorBDArrayOrMap(
                     (Grids_ChunkBDMap) c);
+        } else if (c instanceof Grids_ChunkBDScaled) {
+            return new Grids_ChunkIteratorBDArrayOrMap(
+                    (Grids_ChunkBDScaled) c);
         } else if (c instanceof Grids_ChunkBDSinglet) {
             return new Grids_ChunkIteratorBDSinglet(
                     (Grids_ChunkBDSinglet) c);
@@ -123,10 +130,21 @@ public class Grids_GridIteratorBD extends Grids_GridIterator {
                 chunk = grid.getChunk(chunkID);
                 chunkIterator = getChunkIterator(chunk);
                 env.checkAndMaybeFreeMemory(chunkID, env.HOOMET);
-                return getChunkIterator().next();
+                return next0();
             } else {
                 return null;
             }
+        } else {
+            return next0();
+        }
+    }
+
+    /**
+     * @return The next value from {@link #chunkIterator}.
+     */
+    private BigDecimal next0() {
+        if (chunkIterator instanceof Grids_ChunkIteratorBDSinglet) {
+            return ((Grids_ChunkIteratorBDSinglet) chunkIterator).next();
         } else {
             return getChunkIterator().next();
         }
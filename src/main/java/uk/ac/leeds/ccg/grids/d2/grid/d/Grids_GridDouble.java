@@ -20,12 +20,14 @@ import java.io.IOException;
 import java.math.BigDecimal;
 import java.nio.file.Files;
 import java.util.HashSet;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import uk.ac.leeds.ccg.generic.io.Generic_IO;
 import uk.ac.leeds.ccg.generic.io.Generic_Path;
 import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
 import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_long;
 import uk.ac.leeds.ccg.grids.d2.grid.Grids_Dimensions;
+import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkFactoryDoubleMap;
+import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkFactoryDoubleArray;
 import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkDouble;
 import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkFactoryDouble;
 import uk.ac.leeds.ccg.grids.d2.chunk.Grids_Chunk;
@@ -34,6 +36,9 @@ import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkInt;
 import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkDoubleSinglet;
 import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkDoubleArray;
 import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkDoubleMap;
+import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkDoubleMapped;
+import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkDoubleOffHeap;
+import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkFactoryDoubleMapped;
 import uk.ac.leeds.ccg.grids.d2.grid.Grids_GridNumber;
 import uk.ac.leeds.ccg.grids.d2.grid.Grids_Grid;
 import uk.ac.leeds.ccg.grids.d2.stats.Grids_StatsDouble;
@@ -201,6 +206,7 @@ public class Grids_GridDouble extends Grids_GridNumber {
         stats = g.stats;
         super.init(g);
         data = g.data;
+        initChunkTable();
         setReferenceInChunks();
         worthSwapping = g.worthSwapping;
         // Set the reference to this in stats
@@ -230,7 +236,7 @@ public class Grids_GridDouble extends Grids_GridNumber {
                 Grids_2D_ID_int i = new Grids_2D_ID_int(r, c);
                 //env.checkAndMaybeFreeMemory();
                 Grids_ChunkDouble chunk = chunkFactory.create(this, i);
-                data.put(i, chunk);
+                putChunk(i, chunk);
                 if (!(chunk instanceof Grids_ChunkDoubleSinglet)) {
                     worthSwapping.add(i);
                 }
@@ -306,7 +312,7 @@ public class Grids_GridDouble extends Grids_GridNumber {
                                                 Grids_ChunkDouble chunk;
                                                 if (!data.containsKey(chunkID)) {
                                                     chunk = cf.create(this, chunkID);
-                                                    data.put(chunkID, chunk);
+                                                    putChunk(chunkID, chunk);
                                                     if (!(chunk instanceof Grids_ChunkDoubleSinglet)) {
                                                         worthSwapping.add(chunkID);
                                                     }
@@ -352,6 +358,21 @@ public class Grids_GridDouble extends Grids_GridNumber {
                 }
                 env.env.log("Done chunkRow " + gcr + " out of " + ncr);
             }
+        } else if (!(g instanceof Grids_GridInt)) {
+            initCells((Grids_GridNumber) g, startRow, startCol, endRow, endCol,
+                    (row, col, v) -> {
+                        Grids_2D_ID_int i = new Grids_2D_ID_int(
+                                getChunkRow(row), getChunkCol(col));
+                        Grids_ChunkDouble chunk = (Grids_ChunkDouble) data.get(i);
+                        if (chunk == null) {
+                            chunk = cf.create(this, i);
+                            putChunk(i, chunk);
+                            if (!(chunk instanceof Grids_ChunkDoubleSinglet)) {
+                                worthSwapping.add(i);
+                            }
+                        }
+                        initCell(chunk, i, row, col, Double.isFinite(v) ? v : ndv);
+                    });
         } else {
             Grids_GridInt gi = (Grids_GridInt) g;
             Grids_ChunkInt c;
@@ -392,7 +413,7 @@ public class Grids_GridDouble extends Grids_GridNumber {
                                                 Grids_ChunkDouble chunk;
                                                 if (!data.containsKey(chunkID)) {
                                                     chunk = cf.create(this, chunkID);
-                                                    data.put(chunkID, chunk);
+                                                    putChunk(chunkID, chunk);
                                                     if (!(chunk instanceof Grids_ChunkDoubleSinglet)) {
                                                         worthSwapping.add(chunkID);
                                                     }
@@ -480,8 +501,8 @@ public class Grids_GridDouble extends Grids_GridNumber {
             name = fs.getBaseDir().getFileName().toString() + fsID;
             initNChunkRows();
             initNChunkCols();
-            data = new TreeMap<>();
-            worthSwapping = new HashSet<>();
+            data = new ConcurrentHashMap<>();
+            worthSwapping = ConcurrentHashMap.newKeySet();
             this.stats = stats;
             this.stats.grid = this;
             String filename = gridFile.getFileName().toString();
@@ -592,8 +613,8 @@ public class Grids_GridDouble extends Grids_GridNumber {
         } else {
             // Assume ESRI AsciiFile
             name = fs.getBaseDir().getFileName().toString() + fsID;
-            data = new TreeMap<>();
-            worthSwapping = new HashSet<>();
+            data = new ConcurrentHashMap<>();
+            worthSwapping = ConcurrentHashMap.newKeySet();
             this.stats = stats;
             this.stats.setGrid(this);
             String filename = gridFile.getFileName().toString();
@@ -723,7 +744,7 @@ public class Grids_GridDouble extends Grids_GridNumber {
 //            chunk.env = env;
 //            chunk.initGrid(this);
 //            chunk.initChunkID(chunkID);
-//            data.put(chunkID, chunk);
+//            putChunk(chunkID, chunk);
 //            if (!(chunk instanceof Grids_ChunkDoubleSinglet)) {
 //                worthSwapping.add(chunkID);
 //            }
@@ -742,7 +763,7 @@ public class Grids_GridDouble extends Grids_GridNumber {
         env.addToNotToClear(this, i);
         if (!data.containsKey(i)) {
             Grids_ChunkDoubleSinglet gc = new Grids_ChunkDoubleSinglet(this, i, value);
-            data.put(i, gc);
+            putChunk(i, gc);
             if (!(gc instanceof Grids_ChunkDoubleSinglet)) {
                 worthSwapping.add(i);
             }
@@ -757,7 +778,7 @@ public class Grids_GridDouble extends Grids_GridNumber {
                 if (value != gc.getV()) {
                     // Convert chunk to another type
                     chunk = env.getProcessor().gridFactoryDouble.defaultGridChunkDoubleFactory.create(chunk, i);
-                    data.put(i, chunk);
+                    putChunk(i, chunk);
                     if (!(chunk instanceof Grids_ChunkDoubleSinglet)) {
                         worthSwapping.add(i);
                     }
@@ -773,6 +794,17 @@ public class Grids_GridDouble extends Grids_GridNumber {
         }
     }
 
+    /**
+     * @param i The chunk ID.
+     * @return A chunk backed by {@link #mappedStore}.
+     * @throws IOException If encountered.
+     */
+    @Override
+    protected Grids_ChunkDoubleMapped createMappedChunk(Grids_2D_ID_int i)
+            throws IOException {
+        return new Grids_ChunkFactoryDoubleMapped().create(this, i);
+    }
+
     /**
      * @return Grids_ChunkDouble for chunk ID {@code i}.
      * @param i The chunk ID.
@@ -783,10 +815,7 @@ public class Grids_GridDouble extends Grids_GridNumber {
     public Grids_ChunkDouble getChunk(Grids_2D_ID_int i)
             throws IOException, Exception, ClassNotFoundException {
         if (isInGrid(i)) {
-            if (data.get(i) == null) {
-                loadChunk(i);
-            }
-            return (Grids_ChunkDouble) data.get(i);
+            return (Grids_ChunkDouble) accessChunk(i);
         }
         return null;
     }
@@ -803,10 +832,7 @@ public class Grids_GridDouble extends Grids_GridNumber {
     public Grids_ChunkDouble getChunk(Grids_2D_ID_int i, int cr, int cc)
             throws IOException, Exception, ClassNotFoundException {
         if (isInGrid(cr, cc)) {
-            if (data.get(i) == null) {
-                loadChunk(i);
-            }
-            return (Grids_ChunkDouble) data.get(i);
+            return (Grids_ChunkDouble) accessChunk(i);
         }
         return null;
     }
@@ -1028,6 +1054,10 @@ public class Grids_GridDouble extends Grids_GridNumber {
             r = ((Grids_ChunkDoubleArray) chunk).setCell(ccr, ccc, v);
         } else if (chunk instanceof Grids_ChunkDoubleMap) {
             r = ((Grids_ChunkDoubleMap) chunk).setCell(ccr, ccc, v);
+        } else if (chunk instanceof Grids_ChunkDoubleMapped) {
+            r = ((Grids_ChunkDoubleMapped) chunk).setCell(ccr, ccc, v);
+        } else if (chunk instanceof Grids_ChunkDoubleOffHeap) {
+            r = ((Grids_ChunkDoubleOffHeap) chunk).setCell(ccr, ccc, v);
         } else {
             Grids_ChunkDoubleSinglet c = (Grids_ChunkDoubleSinglet) chunk;
             if (c != null) {
@@ -1041,9 +1071,7 @@ public class Grids_GridDouble extends Grids_GridNumber {
         }
         // Update stats
         if (v != r) {
-            if (stats.isUpdated()) {
-                updateStats(v, r);
-            }
+            updateStats(v, r);
         }
         return r;
     }
@@ -1057,13 +1085,132 @@ public class Grids_GridDouble extends Grids_GridNumber {
         Grids_ChunkDouble r;
         Grids_ChunkFactoryDouble f = env.getProcessor().gridFactoryDouble.defaultGridChunkDoubleFactory;
         r = f.create(chunk, chunkID);
-        data.put(chunkID, r);
-        if (!(chunk instanceof Grids_ChunkDoubleSinglet)) {
+        putChunk(chunkID, r);
+        if (!(r instanceof Grids_ChunkDoubleSinglet)) {
             worthSwapping.add(chunkID);
         }
         return r;
     }
 
+    /**
+     * Returns a chunk with the same values as {@code c} of whichever of the
+     * singlet, map and array types uses least memory. The default value of a
+     * map chunk is the most common value. This is found in two passes over
+     * the values without allocating: the first finds the (at most two) values
+     * that can be in more than a third of the cells using the Misra-Gries
+     * frequent items algorithm, and the second counts these. Other values are
+     * not candidates: a map chunk uses more memory than an array chunk unless
+     * its default value is in more than a third of the cells. Singlet and
+     * mapped chunks are returned as they are.
+     *
+     * @param i The chunk ID.
+     * @param c The chunk with chunk ID {@code i}.
+     * @return A chunk with the same values as {@code c}.
+     */
+    @Override
+    protected Grids_Chunk getCompactChunk(Grids_2D_ID_int i, Grids_Chunk c) {
+        if (!(c instanceof Grids_ChunkDoubleArray
+                || c instanceof Grids_ChunkDoubleMap)) {
+            return c;
+        }
+        Grids_ChunkDouble cd = (Grids_ChunkDouble) c;
+        int nrows = c.getChunkNRows();
+        int ncols = c.getChunkNCols();
+        double a = 0d;
+        double b = 0d;
+        int na = 0;
+        int nb = 0;
+        for (int row = 0; row < nrows; row++) {
+            for (int col = 0; col < ncols; col++) {
+                double v = cd.getCell(row, col);
+                if (na > 0 && v == a) {
+                    na++;
+                } else if (nb > 0 && v == b) {
+                    nb++;
+                } else if (na == 0) {
+                    a = v;
+                    na = 1;
+                } else if (nb == 0) {
+                    b = v;
+                    nb = 1;
+                } else {
+                    na--;
+                    nb--;
+                }
+            }
+        }
+        na = 0;
+        nb = 0;
+        for (int row = 0; row < nrows; row++) {
+            for (int col = 0; col < ncols; col++) {
+                double v = cd.getCell(row, col);
+                if (v == a) {
+                    na++;
+                } else if (v == b) {
+                    nb++;
+                }
+            }
+        }
+        double dv = na >= nb ? a : b;
+        int nc = nrows * ncols;
+        int n = nc - Math.max(na, nb);
+        if (n == 0) {
+            return new Grids_ChunkDoubleSinglet(this, i, dv);
+        }
+        if (Grids_ChunkDoubleMap.getMemoryFootprintEstimate(n) < Grids_Chunk.BYTES_CHUNK
+                + Grids_Chunk.getArrayFootprint(nc, Double.BYTES)) {
+            if (c instanceof Grids_ChunkDoubleMap
+                    && ((Grids_ChunkDoubleMap) c).defaultValue == dv) {
+                return c;
+            }
+            Grids_ChunkDoubleMap r = new Grids_ChunkFactoryDoubleMap().create(cd, i,
+                    dv);
+            r.trimToSize();
+            return r;
+        }
+        if (c instanceof Grids_ChunkDoubleArray) {
+            return c;
+        }
+        return new Grids_ChunkFactoryDoubleArray().create(cd, i);
+    }
+
+    /**
+     * For getting the chunk with chunk ID {@code i} ready for values to be set
+     * in it directly. If the chunk is a singlet it is converted to another
+     * type of chunk. Setting values directly in the chunk does not update
+     * {@link #stats}, so once done {@link #updateStats()} should be called.
+     *
+     * @param i The chunk ID.
+     * @return The chunk with chunk ID {@code i}.
+     * @throws java.io.IOException If encountered.
+     * @throws java.lang.ClassNotFoundException If encountered.
+     */
+    public Grids_ChunkDouble getChunkToSet(Grids_2D_ID_int i)
+            throws IOException, ClassNotFoundException, Exception {
+        Grids_ChunkDouble r = getChunk(i);
+        if (r instanceof Grids_ChunkDoubleSinglet) {
+            r = convertToAnotherTypeOfChunk(r, i);
+        }
+        return r;
+    }
+
+    /**
+     * For updating {@link #stats} after values have been set directly in
+     * chunks. If the stats are kept updated they are recalculated, otherwise
+     * they are marked as not being up to date.
+     *
+     * @throws java.io.IOException If encountered.
+     * @throws java.lang.ClassNotFoundException If encountered.
+     */
+    public void updateStats() throws IOException, ClassNotFoundException,
+            Exception {
+        if (stats.isUpdated()) {
+            getStats().update();
+        } else {
+            ((Grids_GridStatsNotUpdatedDouble) stats).setUpToDate(false);
+        }
+    }
+
     /**
      * Initialises the v in chunk at row, col.
      *
@@ -1461,8 +1608,8 @@ public class Grids_GridDouble extends Grids_GridNumber {
      */
     protected void initCells(double v) throws IOException, Exception,
             ClassNotFoundException {
-        Iterator<Grids_2D_ID_int> ite = data.keySet().iterator();
-        int nChunks = data.size();
+        Iterator<Grids_2D_ID_int> ite = getChunkIDs().iterator();
+        int nChunks = getChunkIDs().size();
         int counter = 0;
         while (ite.hasNext()) {
             env.checkAndMaybeFreeMemory();
@@ -1491,6 +1638,14 @@ public class Grids_GridDouble extends Grids_GridNumber {
         return new Grids_GridIteratorDouble(this);
     }
 
+    /**
+     * @return A new cursor for getting and setting cell values around a
+     * position in this. The cursor should be closed after use.
+     */
+    public Grids_GridCursorDouble cursor() {
+        return new Grids_GridCursorDouble(this);
+    }
+
     @Override
     public Grids_GridStatsDouble getStats() {
         return (Grids_GridStatsDouble) stats;
@@ -166,6 +166,8 @@ public class Grids_GridFactoryDouble extends Grids_GridFactory {
                 store.getNextID(), cf, chunkNRows,
                 chunkNCols, nRows, nCols, dimensions, noDataValue, env);
         store.addDir();
+        r.setCodec(codec);
+        r.setAdaptive(adaptive);
         return r;
     }
 
@@ -214,6 +216,8 @@ public class Grids_GridFactoryDouble extends Grids_GridFactory {
                 store.getNextID(), g, cf, chunkNRows,
                 chunkNCols, startRow, startCol, endRow, endCol, noDataValue);
         store.addDir();
+        r.setCodec(codec);
+        r.setAdaptive(adaptive);
         return r;
     }
 
@@ -262,6 +266,8 @@ public class Grids_GridFactoryDouble extends Grids_GridFactory {
                 store.getNextID(), gridFile, cf, chunkNRows, chunkNCols,
                 startRow, startCol, endRow, endCol, noDataValue, env);
         store.addDir();
+        r.setCodec(codec);
+        r.setAdaptive(adaptive);
         return r;
     }
 
@@ -279,6 +285,8 @@ public class Grids_GridFactoryDouble extends Grids_GridFactory {
         Grids_GridDouble r = new Grids_GridDouble(env, store, store.getNextID(),
                 gridFile, noDataValue);
         store.addDir();
+        r.setCodec(codec);
+        r.setAdaptive(adaptive);
         return r;
     }
 
@@ -16,11 +16,13 @@
 package uk.ac.leeds.ccg.grids.d2.grid.d;
 
 import java.io.IOException;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
 import uk.ac.leeds.ccg.grids.d2.chunk.Grids_Chunk;
 import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkIteratorDoubleArrayOrMap;
 import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkDoubleMap;
+import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkDoubleMapped;
+import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkDoubleOffHeap;
 import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkDoubleArray;
 import uk.ac.leeds.ccg.grids.d2.chunk.Grids_ChunkRowMajorOrderIterator;
 import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkDoubleSinglet;
@@ -48,8 +50,8 @@ public class Grids_GridIteratorDouble extends Grids_GridIterator {
     public Grids_GridIteratorDouble(Grids_GridDouble g) throws IOException,
             ClassNotFoundException, Exception {
         super(g);
-        TreeMap<Grids_2D_ID_int, Grids_Chunk> m = g.getData();
-        gridIterator = m.keySet().iterator();
+        ConcurrentHashMap<Grids_2D_ID_int, Grids_Chunk> m = g.getData();
+        gridIterator = g.getChunkIDs().iterator();
         if (gridIterator.hasNext()) {
             chunkID = gridIterator.next();
             chunk = m.get(chunkID);
@@ -72,6 +74,12 @@ public class Grids_GridIteratorDouble extends Grids_GridIterator {
         } else if (chunk instanceof Grids_ChunkDoubleMap) {
             chunkIterator = new Grids_ChunkIteratorDoubleArrayOrMap(
                     (Grids_ChunkDoubleMap) chunk);
+        } else if (chunk instanceof Grids_ChunkDoubleMapped) {
+            chunkIterator = new Grids_ChunkIteratorDoubleArrayOrMap(
+                    (Grids_ChunkDoubleMapped) chunk);
+        } else if (chunk instanceof Grids_ChunkDoubleOffHeap) {
+            chunkIterator = new Grids_ChunkIteratorDoubleArrayOrMap(
+                    (Grids_ChunkDoubleOffHeap) chunk);
         } else {
             chunkIterator = new Grids_ChunkIteratorDoubleSinglet(
                     (Grids_ChunkDoubleSinglet) chunk);
@@ -93,6 +101,12 @@ public class Grids_GridIteratorDouble extends Grids_GridIterator {
         } else if (c instanceof Grids_ChunkDoubleMap) {
             return new Grids_ChunkIteratorDoubleArrayOrMap(
                     (Grids_ChunkDoubleMap) c);
+        } else if (c instanceof Grids_ChunkDoubleMapped) {
+            return new Grids_ChunkIteratorDoubleArrayOrMap(
+                    (Grids_ChunkDoubleMapped) c);
+        } else if (c instanceof Grids_ChunkDoubleOffHeap) {
+            return new Grids_ChunkIteratorDoubleArrayOrMap(
+                    (Grids_ChunkDoubleOffHeap) c);
         } else if (c instanceof Grids_ChunkDoubleSinglet) {
             return new Grids_ChunkIteratorDoubleSinglet(
                     (Grids_ChunkDoubleSinglet) c);
@@ -132,8 +146,8 @@ public class Grids_GridIteratorDouble extends Grids_GridIterator {
     }
 
     private Double next0() throws IOException, ClassNotFoundException, Exception {
-        if (chunk instanceof Grids_ChunkDoubleSinglet) {
-            return ((Grids_ChunkDoubleSinglet) chunk).getV();
+        if (chunkIterator instanceof Grids_ChunkIteratorDoubleSinglet) {
+            return ((Grids_ChunkIteratorDoubleSinglet) chunkIterator).next();
         } else {
             return getChunkIterator().next();
         }
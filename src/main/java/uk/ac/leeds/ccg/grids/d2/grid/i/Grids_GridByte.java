@@ -0,0 +1,1252 @@
+/*
+ * Copyright 2019 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.grids.d2.grid.i;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import uk.ac.leeds.ccg.generic.io.Generic_IO;
+import uk.ac.leeds.ccg.generic.io.Generic_Path;
+import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
+import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_long;
+import uk.ac.leeds.ccg.grids.d2.grid.Grids_Dimensions;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkByte;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkFactoryByte;
+import uk.ac.leeds.ccg.grids.d2.chunk.Grids_Chunk;
+import uk.ac.leeds.ccg.grids.core.Grids_Environment;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkByteSinglet;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkByteArray;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkByteMap;
+import uk.ac.leeds.ccg.grids.d2.grid.Grids_GridNumber;
+import uk.ac.leeds.ccg.grids.d2.grid.Grids_Grid;
+import uk.ac.leeds.ccg.grids.d2.stats.Grids_StatsByte;
+import uk.ac.leeds.ccg.grids.io.Grids_ESRIAsciiGridImporter;
+import uk.ac.leeds.ccg.grids.io.Grids_ESRIAsciiGridImporter.Header;
+import uk.ac.leeds.ccg.grids.process.Grids_Processor;
+import uk.ac.leeds.ccg.grids.d2.util.Grids_Utilities;
+import java.math.RoundingMode;
+import java.util.Iterator;
+import java.util.Set;
+import uk.ac.leeds.ccg.generic.io.Generic_FileStore;
+import uk.ac.leeds.ccg.grids.d2.grid.stats.Grids_GridStatsByte;
+import uk.ac.leeds.ccg.grids.d2.grid.stats.Grids_GridStatsNotUpdatedByte;
+
+/**
+ * Grids with {@code byte} values.
+ *
+ * @author Andy Turner
+ * @version 1.0.0
+ */
+public class Grids_GridByte extends Grids_GridNumber {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * For storing the NODATA value of the grid, which by default is
+     * Byte.MIN_VALUE. N.B. Care should be taken so that NoDataValue is not a
+     * data value.
+     */
+    protected byte noDataValue = Byte.MIN_VALUE;
+
+    /**
+     * Each cell v equal to {@code ndv} and all chunks of the same type created
+     * via {@code cf}.
+     *
+     * @param stats What {@link #stats} is set to.
+     * @param fs What {@link #fs} is set to.
+     * @param id What {@link #fsID} is set to.
+     * @param cf The factory preferred for creating chunks.
+     * @param chunkNRows The number of rows of cells in any chunk.
+     * @param chunkNCols The number of columns of cells in any chunk.
+     * @param nRows The number of rows of cells.
+     * @param nCols The number of columns of cells.
+     * @param dimensions The cellsize, xmin, ymin, xmax and ymax.
+     * @param ndv The noDataValue.
+     * @param ge The grids environment.
+     * @throws java.io.IOException If encountered.
+     */
+    protected Grids_GridByte(Grids_StatsByte stats, Generic_FileStore fs,
+            long id, Grids_ChunkFactoryByte cf, int chunkNRows,
+            int chunkNCols, long nRows, long nCols, Grids_Dimensions dimensions,
+            byte ndv, Grids_Environment ge) throws IOException, Exception {
+        super(ge, fs, id, BigDecimal.valueOf(ndv));
+        init(stats, cf, chunkNRows, chunkNCols, nRows, nCols, dimensions, ndv);
+    }
+
+    /**
+     * Creates a new Grids_GridByte based on values in grid.
+     *
+     * @param stats What {@link #stats} is set to.
+     * @param fs What {@link #fs} is set to.
+     * @param id What {@link #fsID} is set to.
+     * @param g The grid from which this is to be constructed.
+     * @param cf The factory preferred to construct chunks of this.
+     * @param chunkNRows The number of rows of cells in any chunk.
+     * @param chunkNCols The number of columns of cells in any chunk.
+     * @param startRow The Grid2DSquareCell row which is the bottom most row of
+     * this.
+     * @param startCol The Grid2DSquareCell column which is the left most column
+     * of this.
+     * @param endRow The Grid2DSquareCell row which is the top most row of this.
+     * @param endCol The Grid2DSquareCell column which is the right most column
+     * of this.
+     * @param ndv The noDataValue for this.
+     * @throws java.io.IOException If encountered.
+     */
+    protected Grids_GridByte(Grids_StatsByte stats, Generic_FileStore fs,
+            long id, Grids_Grid g, Grids_ChunkFactoryByte cf,
+            int chunkNRows, int chunkNCols, long startRow, long startCol,
+            long endRow, long endCol, byte ndv) throws IOException,
+            Exception {
+        super(g.env, fs, id, BigDecimal.valueOf(ndv));
+        init(stats, g, cf, chunkNRows, chunkNCols, startRow, startCol,
+                endRow, endCol, ndv);
+    }
+
+    /**
+     * Creates a new Grids_GridByte with values obtained from gridFile.
+     * {@code gridFile} must be a directory containing a cached instance of a
+     * Grids_Number or an ESRI Asciigrid format file with a filename ending in
+     * ".asc" or ".txt".
+     *
+     * @param stats What {@link #stats} is set to.
+     * @param fs What {@link #fs} is set to.
+     * @param id What {@link #fsID} is set to.
+     * @param gridFile Either a directory, or a formatted File with a specific
+     * extension containing the data for this.
+     * @param cf The factory preferred to construct chunks of this.
+     * @param chunkNRows The chunk NRows.
+     * @param chunkNCols The chunk NCols
+     * @param startRow The row of the input that will be the bottom most row of
+     * this.
+     * @param startCol The column of the input that will be the left most column
+     * of this.
+     * @param endRow The row of the input that will be the top most row of this.
+     * @param endCol The column of the input that will be the right most column
+     * of this.
+     * @param ndv The noDataValue for this.
+     * @param ge The grids environment.
+     * @throws java.io.IOException If encountered.
+     */
+    protected Grids_GridByte(Grids_GridStatsByte stats, Generic_FileStore fs,
+            long id, Generic_Path gridFile, Grids_ChunkFactoryByte cf,
+            int chunkNRows, int chunkNCols, long startRow, long startCol,
+            long endRow, long endCol, byte ndv, Grids_Environment ge)
+            throws IOException, Exception {
+        super(ge, fs, id, BigDecimal.valueOf(ndv));
+        init(stats, gridFile, cf, chunkNRows, chunkNCols, startRow, startCol,
+                endRow, endCol, ndv);
+    }
+
+    /**
+     * Creates a new Grids_GridByte with values obtained from gridFile.
+     * {@code gridFile} must be a directory containing a cached instance of a
+     * Grids_Number or an ESRI Asciigrid format file with a filename ending in
+     * ".asc" or ".txt".
+     *
+     * @param ge The grids environment.
+     * @param fs What {@link #fs} is set to.
+     * @param id What {@link #fsID} is set to.
+     * @param gridFile Either a directory, or a formatted File with a specific
+     * @param ndv The noDataValue for this. extension containing the data for
+     * this.
+     * @throws java.io.IOException If encountered.
+     */
+    protected Grids_GridByte(Grids_Environment ge, Generic_FileStore fs,
+            long id, Generic_Path gridFile, byte ndv) throws IOException, Exception {
+        super(ge, fs, id, BigDecimal.valueOf(ndv));
+        init(new Grids_GridStatsNotUpdatedByte(ge), gridFile);
+    }
+
+    @Override
+    public String getFieldsDescription() {
+        return "NoDataValue=" + noDataValue + ", "
+                + super.getFieldsDescription();
+    }
+
+    /**
+     * Initialises this.
+     *
+     * @param g The Grids_GridByte from which the fields of this are set. with
+     * those of g.
+     * @throws java.io.IOException If encountered. *
+     */
+    private void init(Grids_GridByte g) throws IOException {
+        noDataValue = g.noDataValue;
+        stats = g.stats;
+        super.init(g);
+        data = g.data;
+        initChunkTable();
+        setReferenceInChunks();
+        worthSwapping = g.worthSwapping;
+        // Set the reference to this in stats
+        stats.setGrid(this);
+        super.init();
+    }
+
+    @Override
+    protected void init() throws IOException {
+        super.init();
+        if (!stats.isUpdated()) {
+            ((Grids_GridStatsNotUpdatedByte) stats).setUpToDate(false);
+        }
+        stats.grid = this;
+    }
+
+    private void init(Grids_StatsByte stats,
+            Grids_ChunkFactoryByte chunkFactory, int chunkNRows,
+            int chunkNCols, long nRows, long nCols, Grids_Dimensions dimensions,
+            byte noDataValue) throws IOException, Exception {
+        init(stats, chunkNRows, chunkNCols, nRows, nCols, dimensions);
+        for (int r = 0; r < nChunkRows; r++) {
+            for (int c = 0; c < nChunkCols; c++) {
+                env.checkAndMaybeFreeMemory();
+                // Try to load chunk.
+                Grids_2D_ID_int i = new Grids_2D_ID_int(r, c);
+                Grids_ChunkByte chunk = chunkFactory.create(this, i);
+                putChunk(i, chunk);
+                if (!(chunk instanceof Grids_ChunkByteSinglet)) {
+                    worthSwapping.add(i);
+                }
+            }
+            env.env.log("Done chunkRow " + r + " out of " + nChunkRows);
+        }
+        init();
+    }
+
+    /**
+     * Initialises this with values from {@code g}.
+     *
+     * @param stats What {@link #stats} is set to.
+     * @param g The grid from which values are got.
+     * @param cf The factory for creating chunks.
+     * @param chunkNRows The number of rows of cells in any chunk.
+     * @param chunkNCols The number of columns of cells in any chunk.
+     * @param startRow The row of {@code g} that is row 0 of this.
+     * @param startCol The column of {@code g} that is column 0 of this.
+     * @param endRow The last row of {@code g} from which values are got.
+     * @param endCol The last column of {@code g} from which values are got.
+     * @param ndv The no data value for this.
+     */
+    private void init(Grids_StatsByte stats, Grids_Grid g,
+            Grids_ChunkFactoryByte cf, int chunkNRows,
+            int chunkNCols, long startRow, long startCol, long endRow,
+            long endCol, byte ndv) throws IOException, ClassNotFoundException,
+            Exception {
+        env.checkAndMaybeFreeMemory();
+        init(g, stats, chunkNRows, chunkNCols, startRow, startCol, endRow, endCol);
+        initCells((Grids_GridNumber) g, startRow, startCol, endRow, endCol,
+                (row, col, v) -> {
+                    Grids_2D_ID_int i = new Grids_2D_ID_int(getChunkRow(row),
+                            getChunkCol(col));
+                    Grids_ChunkByte chunk = (Grids_ChunkByte) data.get(i);
+                    if (chunk == null) {
+                        chunk = cf.create(this, i);
+                        putChunk(i, chunk);
+                        if (!(chunk instanceof Grids_ChunkByteSinglet)) {
+                            worthSwapping.add(i);
+                        }
+                    }
+                    initCell(chunk, i, row, col, toByte(v, ndv));
+                });
+        init();
+    }
+
+    /**
+     * @param v A value or {@link Double#NaN} for no data.
+     * @param ndv The no data value.
+     * @return {@code v} as a byte or {@code ndv} if {@code v} is no data or
+     * is out of the range of a byte.
+     */
+    private static byte toByte(double v, byte ndv) {
+        if (Double.isNaN(v) || v < Byte.MIN_VALUE || v > Byte.MAX_VALUE) {
+            return ndv;
+        }
+        return (byte) v;
+    }
+
+    private void init(Grids_StatsByte stats, Generic_Path gridFile,
+            Grids_ChunkFactoryByte cf, int chunkNRows,
+            int chunkNCols, long startRow, long startCol, long endRow,
+            long endCol, byte noDataValue) throws IOException,
+            ClassNotFoundException, Exception {
+        env.checkAndMaybeFreeMemory();
+        this.stats = stats;
+        this.stats.setGrid(this);
+        if (Files.isDirectory(gridFile.getPath())) {
+            Grids_GridFactoryByte gf = env.getProcessor().gridFactoryByte;
+            Generic_Path thisFile = new Generic_Path(getPathThisFile(gridFile));
+            Grids_GridByte g = (Grids_GridByte) gf.create(
+                    (Grids_Grid) Generic_IO.readObject(thisFile));
+            Grids_GridByte g2 = gf.create(g, startRow, startCol, endRow,
+                    endCol);
+            init(g2);
+        } else {
+            // Assume ESRI AsciiFile
+            this.chunkNRows = chunkNRows;
+            this.chunkNCols = chunkNCols;
+            nRows = endRow - startRow;
+            nCols = endCol - startCol;
+            initNoDataValue(noDataValue);
+            name = fs.getBaseDir().getFileName().toString() + fsID;
+            initNChunkRows();
+            initNChunkCols();
+            data = new ConcurrentHashMap<>();
+            worthSwapping = ConcurrentHashMap.newKeySet();
+            this.stats = stats;
+            this.stats.grid = this;
+            String filename = gridFile.getFileName().toString();
+            if (filename.endsWith("asc") || filename.endsWith("txt")) {
+                Grids_ESRIAsciiGridImporter eagi
+                        = new Grids_ESRIAsciiGridImporter(env, gridFile);
+                initDimensions(eagi.getHeader(), startRow, startCol);
+                // Read Data into Chunks. This starts with the last row and ends with the first.
+                boolean fast = !stats.isUpdated();
+                initCells(eagi, (row, col, v) -> initCell(row, col,
+                        toByte(v, this.noDataValue), fast));
+            }
+        }
+        init();
+    }
+
+    private void init(Grids_StatsByte stats, Generic_Path gridFile)
+            throws IOException, ClassNotFoundException, Exception {
+        env.checkAndMaybeFreeMemory();
+        this.stats = stats;
+        this.stats.setGrid(this);
+        Grids_Processor gp = env.getProcessor();
+        if (Files.isDirectory(gridFile.getPath())) {
+            Grids_GridFactoryByte gf = gp.gridFactoryByte;
+            Generic_Path thisFile = new Generic_Path(getPathThisFile(gridFile));
+            Grids_GridByte g = (Grids_GridByte) gf.create(
+                    (Grids_Grid) Generic_IO.readObject(thisFile));
+            init(g);
+            this.worthSwapping = g.worthSwapping;
+            this.noDataValue = g.noDataValue;
+            this.dim = g.dim;
+            this.stats = stats;
+            this.stats.grid = this;
+        } else {
+            // Assume ESRI AsciiFile
+            name = fs.getBaseDir().getFileName().toString() + fsID;
+            data = new ConcurrentHashMap<>();
+            worthSwapping = ConcurrentHashMap.newKeySet();
+            this.stats = stats;
+            this.stats.setGrid(this);
+            String filename = gridFile.getFileName().toString();
+            if (filename.endsWith("asc") || filename.endsWith("txt")) {
+                Grids_ESRIAsciiGridImporter eagi
+                        = new Grids_ESRIAsciiGridImporter(env, gridFile);
+                Header header = eagi.getHeader();
+                nCols = header.ncols;
+                nRows = header.nrows;
+                chunkNRows = gp.gridFactoryByte.getChunkNRows();
+                chunkNCols = gp.gridFactoryByte.getChunkNCols();
+                initNChunkRows();
+                initNChunkCols();
+                initDimensions(header, 0, 0);
+                // Read Data into Chunks. This starts with the last row and ends with the first.
+                boolean fast = !stats.isUpdated();
+                initCells(eagi, (row, col, v) -> initCell(row, col,
+                        toByte(v, noDataValue), fast));
+            }
+        }
+        init();
+    }
+
+    /**
+     *
+     * @param row
+     * @param col
+     * @param value
+     * @param fast
+     */
+    private void initCell(long row, long col, byte value, boolean fast)
+            throws IOException, ClassNotFoundException, Exception {
+        Grids_2D_ID_int i = new Grids_2D_ID_int(getChunkRow(row), getChunkCol(col));
+        env.addToNotToClear(this, i);
+        if (!data.containsKey(i)) {
+            Grids_ChunkByteSinglet gc = new Grids_ChunkByteSinglet(this, i, value);
+            putChunk(i, gc);
+            if (!(gc instanceof Grids_ChunkByteSinglet)) {
+                worthSwapping.add(i);
+            }
+        } else {
+            Grids_Chunk c = data.get(i);
+            if (c == null) {
+                loadChunk(i);
+            }
+            Grids_ChunkByte chunk = getChunk(i);
+            if (chunk instanceof Grids_ChunkByteSinglet) {
+                Grids_ChunkByteSinglet gc = (Grids_ChunkByteSinglet) chunk;
+                if (value != gc.getV()) {
+                    // Convert chunk to another type
+                    chunk = env.getProcessor().gridFactoryByte.defaultGridChunkByteFactory.create(chunk, i);
+                    putChunk(i, chunk);
+                    if (!(chunk instanceof Grids_ChunkByteSinglet)) {
+                        worthSwapping.add(i);
+                    }
+                    chunk.initCell(getChunkCellRow(row), getChunkCellCol(col), value);
+                }
+            } else {
+                if (fast) {
+                    initCellFast(chunk, row, col, value);
+                } else {
+                    initCell(chunk, i, row, col, value);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Grids_ChunkByte for chunk ID {@code i}.
+     * @param i The chunk ID.
+     * @throws java.io.IOException If encountered.
+     * @throws java.lang.ClassNotFoundException If encountered.
+     */
+    @Override
+    public Grids_ChunkByte getChunk(Grids_2D_ID_int i)
+            throws IOException, Exception, ClassNotFoundException {
+        if (isInGrid(i)) {
+            return (Grids_ChunkByte) accessChunk(i);
+        }
+        return null;
+    }
+
+    /**
+     * @param i The chunk ID.
+     * @param cr The chunk row.
+     * @param cc The chunk col.
+     * @return The chunk for the given chunkID {@code i}.
+     * @throws java.io.IOException If encountered.
+     * @throws java.lang.ClassNotFoundException If encountered.
+     */
+    @Override
+    public Grids_ChunkByte getChunk(Grids_2D_ID_int i, int cr, int cc)
+            throws IOException, Exception, ClassNotFoundException {
+        if (isInGrid(cr, cc)) {
+            return (Grids_ChunkByte) accessChunk(i);
+        }
+        return null;
+    }
+
+    /**
+     * If newValue and oldValue are the same then stats won't change. A test
+     * might be appropriate in set cell so that this method is not called.
+     *
+     * @param newValue The v replacing oldValue.
+     * @param oldValue The v being replaced.
+     * @throws java.io.IOException If encountered.
+     * @throws java.lang.ClassNotFoundException If encountered.
+     */
+    protected void updateStats(byte newValue, byte oldValue)
+            throws IOException, Exception, ClassNotFoundException {
+        Grids_GridStatsByte dStats = getStats();
+        if (dStats.getClass() == Grids_GridStatsByte.class) {
+            if (newValue != noDataValue) {
+                if (oldValue != noDataValue) {
+                    BigDecimal oldValueBD = new BigDecimal(oldValue);
+                    dStats.setN(dStats.getN() - 1);
+                    dStats.setSum(dStats.getSum().subtract(oldValueBD));
+                    byte min = dStats.getMin(false);
+                    if (oldValue == min) {
+                        dStats.setNMin(dStats.getNMin() - 1);
+                    }
+                    byte max = dStats.getMax(false);
+                    if (oldValue == max) {
+                        dStats.setNMax(dStats.getNMax() - 1);
+                    }
+                }
+                BigDecimal newValueBD = new BigDecimal(newValue);
+                dStats.setN(dStats.getN() + 1);
+                dStats.setSum(dStats.getSum().add(newValueBD));
+                updateStats(newValue);
+                if (dStats.getNMin() < 1) {
+                    // The stats need recalculating
+                    dStats.update();
+                }
+                if (dStats.getNMax() < 1) {
+                    // The stats need recalculating
+                    dStats.update();
+                }
+            }
+        } else {
+            if (newValue != oldValue) {
+                ((Grids_GridStatsNotUpdatedByte) dStats).setUpToDate(false);
+            }
+        }
+    }
+
+    /**
+     * @return ndv.
+     */
+    public final byte getNoDataValue() {
+        return noDataValue;
+    }
+
+    /**
+     * Initialises ndv as noDataValue.
+     *
+     * @param ndv The v ndv is initialised to.
+     */
+    protected final void initNoDataValue(byte ndv) {
+        noDataValue = ndv;
+    }
+
+    /**
+     * @param r The grid cell row index for which the v is returned.
+     * @param c The grid cell column index for which the v is returned
+     * @return The v in the grid at grid cell row index {@code r}, grid cell
+     * column index {@code c} or {@link #noDataValue} if there is no such v.
+     * @throws java.io.IOException If encountered.
+     * @throws java.lang.ClassNotFoundException If encountered.
+     */
+    public byte getCell(long r, long c) throws IOException, Exception,
+            ClassNotFoundException {
+        if (isInGrid(r, c)) {
+            return getCell((Grids_ChunkByte) getChunk(getChunkRow(r),
+                    getChunkCol(c)), getChunkCellRow(r), getChunkCellCol(c));
+        }
+        return noDataValue;
+    }
+
+    /**
+     * For getting the v in chunk at chunk cell row {@code r}, chunk cell col
+     * {@code c}.
+     *
+     * @param chunk The chunk.
+     * @param r The chunk cell row index of the v returned.
+     * @param c The chunk cell column index of the v returned.
+     * @return v in chunk at chunk cell row {@code r}, chunk cell col {@code c}
+     * or {@link #noDataValue} if there is no such v.
+     */
+    public byte getCell(Grids_ChunkByte chunk, int r, int c) {
+        if (chunk.inChunk(r, c)) {
+            return chunk.getCell(r, c);
+        }
+        return noDataValue;
+    }
+
+    /**
+     * @param x The x-coordinate of the point.
+     * @param y The y-coordinate of the point.
+     * @return The v at (x, y) or {@link #noDataValue} if there is no such v.
+     * @throws java.io.IOException If encountered.
+     * @throws java.lang.ClassNotFoundException If encountered.
+     */
+    public final byte getCell(BigDecimal x, BigDecimal y) throws IOException,
+            ClassNotFoundException, Exception {
+        return getCell(getRow(y), getCol(x));
+    }
+
+    /**
+     * @param i The cell ID.
+     * @return The v of the cell with cell ID {@code i} or {@link #noDataValue}
+     * if there is no such cell in the grid.
+     * @throws java.io.IOException If encountered.
+     * @throws java.lang.ClassNotFoundException If encountered.
+     */
+    public final byte getCell(Grids_2D_ID_long i) throws IOException,
+            ClassNotFoundException, Exception {
+        return getCell(i.getRow(), i.getCol());
+    }
+
+    /**
+     * For setting the v at x-coordinate {@code x}, y-coordinate {@code y}.
+     *
+     * @param x The x-coordinate of the point.
+     * @param y The y-coordinate of the point.
+     * @param v The v to set in the cell.
+     * @return The v at x-coordinate {@code x}, y-coordinate {@code y} or
+     * {@link #noDataValue} if there is no such v.
+     * @throws java.io.IOException If encountered.
+     * @throws java.lang.ClassNotFoundException If encountered.
+     */
+    public final byte setCell(BigDecimal x, BigDecimal y, byte v)
+            throws IOException, Exception, ClassNotFoundException, Exception {
+        if (isInGrid(x, y)) {
+            return setCell(getRow(y), getCol(x), v);
+        }
+        return noDataValue;
+    }
+
+    /**
+     * For setting the v at cell row index {@code r}, cell column index
+     * {@code c}.
+     *
+     * @param r The cell row index of the v to set.
+     * @param c The cell column index of the v to set.
+     * @param v The v to set at cell row index {@code r}, cell column index
+     * {@code c}.
+     * @return The v at cell row index {@code r}, cell column index {@code c} or
+     * {@link #noDataValue} if there is no such v.
+     * @throws java.io.IOException If encountered.
+     * @throws java.lang.ClassNotFoundException If encountered.
+     */
+    public byte setCell(long r, long c, byte v)
+            throws IOException, ClassNotFoundException, Exception {
+        if (isInGrid(r, c)) {
+            return setCell((Grids_ChunkByte) getChunk(getChunkRow(r),
+                    getChunkCol(c)), getChunkCellRow(r), getChunkCellCol(c), v);
+        }
+        return noDataValue;
+    }
+
+    /**
+     * For setting the v in chunk ({@code cr}, {@code cc}) at chunk cell row
+     * {@code ccr}, chunk cell column (@code ccc}.
+     *
+     * @param cr The chunk row of the chunk in which the v is set.
+     * @param cc The chunk column of the chunk in which the v is set.
+     * @param ccr The chunk cell row of the v to set.
+     * @param ccc The chunk cell column of the v to set.
+     * @param v The v to set in chunk ({@code cr}, {@code cc}) at chunk cell row
+     * {@code ccr}, chunk cell column (@code ccc}.
+     * @return The v in chunk ({@code cr}, {@code cc}) at chunk cell row
+     * {@code ccr}, chunk cell column (@code ccc}.
+     * @throws java.io.IOException If encountered.
+     * @throws java.lang.ClassNotFoundException If encountered.
+     */
+    public byte setCell(int cr, int cc, int ccr, int ccc, byte v)
+            throws IOException, ClassNotFoundException, Exception {
+        if (isInGrid(cr, cc, ccr, ccc)) {
+            return setCell((Grids_ChunkByte) getChunk(cr, cc), ccr, ccc, v);
+        }
+        return noDataValue;
+    }
+
+    /**
+     * For setting the v in chunk at chunk cell row {@code ccr}, chunk cell
+     * column (@code ccc}.
+     *
+     * @param chunk The chunk in which the v is to be set.
+     * @param ccr The row in chunk of the v to set.
+     * @param ccc The column in chunk of the v to set.
+     * @param v The v to set in chunk at chunk cell row {@code ccr}, chunk cell
+     * column (@code ccc}.
+     * @return The v in chunk at chunk cell row {@code ccr}, chunk cell column
+     * (@code ccc}.
+     * @throws java.io.IOException If encountered.
+     * @throws java.lang.ClassNotFoundException If encountered.
+     */
+    public byte setCell(Grids_ChunkByte chunk, int ccr, int ccc, byte v)
+            throws IOException, Exception, ClassNotFoundException {
+        byte r = noDataValue;
+        if (chunk instanceof Grids_ChunkByteArray) {
+            r = ((Grids_ChunkByteArray) chunk).setCell(ccr, ccc, v);
+        } else if (chunk instanceof Grids_ChunkByteMap) {
+            r = ((Grids_ChunkByteMap) chunk).setCell(ccr, ccc, v);
+        } else {
+            Grids_ChunkByteSinglet c = (Grids_ChunkByteSinglet) chunk;
+            if (c != null) {
+                r = c.getV();
+                if (v != r) {
+                    // Convert chunk to another type
+                    chunk = convertToAnotherTypeOfChunk(chunk, c.getId());
+                    r = chunk.setCell(ccr, ccc, v);
+                }
+            }
+        }
+        // Update stats
+        if (v != r) {
+            updateStats(v, r);
+        }
+        return r;
+    }
+
+    /**
+     * Convert chunk to another type of chunk.
+     */
+    private Grids_ChunkByte convertToAnotherTypeOfChunk(
+            Grids_ChunkByte chunk, Grids_2D_ID_int chunkID)
+            throws IOException, ClassNotFoundException, Exception {
+        Grids_ChunkByte r;
+        Grids_ChunkFactoryByte f = env.getProcessor().gridFactoryByte.defaultGridChunkByteFactory;
+        r = f.create(chunk, chunkID);
+        putChunk(chunkID, r);
+        if (!(r instanceof Grids_ChunkByteSinglet)) {
+            worthSwapping.add(chunkID);
+        }
+        return r;
+    }
+
+    /**
+     * For getting the chunk with chunk ID {@code i} ready for values to be set
+     * in it directly. If the chunk is a singlet it is converted to another
+     * type of chunk. Setting values directly in the chunk does not update
+     * {@link #stats}, so once done {@link #updateStats()} should be called.
+     *
+     * @param i The chunk ID.
+     * @return The chunk with chunk ID {@code i}.
+     * @throws java.io.IOException If encountered.
+     * @throws java.lang.ClassNotFoundException If encountered.
+     */
+    public Grids_ChunkByte getChunkToSet(Grids_2D_ID_int i)
+            throws IOException, ClassNotFoundException, Exception {
+        Grids_ChunkByte r = getChunk(i);
+        if (r instanceof Grids_ChunkByteSinglet) {
+            r = convertToAnotherTypeOfChunk(r, i);
+        }
+        return r;
+    }
+
+    /**
+     * For updating {@link #stats} after values have been set directly in
+     * chunks. If the stats are kept updated they are recalculated, otherwise
+     * they are marked as not being up to date.
+     *
+     * @throws java.io.IOException If encountered.
+     * @throws java.lang.ClassNotFoundException If encountered.
+     */
+    public void updateStats() throws IOException, ClassNotFoundException,
+            Exception {
+        if (stats.isUpdated()) {
+            getStats().update();
+        } else {
+            ((Grids_GridStatsNotUpdatedByte) stats).setUpToDate(false);
+        }
+    }
+
+    /**
+     * Initialises the v in chunk at row, col.
+     *
+     * @param chunk The chunk.
+     * @param i The chunk ID.
+     * @param row The row.
+     * @param col The col.
+     * @param v The v.
+     * @throws java.io.IOException If encountered.
+     * @throws java.lang.ClassNotFoundException If encountered.
+     */
+    protected void initCell(Grids_ChunkByte chunk, Grids_2D_ID_int i,
+            long row, long col, byte v) throws IOException,
+            ClassNotFoundException, Exception {
+        if (chunk instanceof Grids_ChunkByteSinglet) {
+            Grids_ChunkByteSinglet gc = (Grids_ChunkByteSinglet) chunk;
+            if (v != gc.getV()) {
+                chunk = convertToAnotherTypeOfChunk(chunk, i);
+                chunk.initCell(getChunkCellRow(row), getChunkCellCol(col), v);
+            } else {
+                return;
+            }
+        } else {
+            if (chunk != null) {
+                chunk.initCell(getChunkCellRow(row), getChunkCellCol(col), v);
+            }
+        }
+        // Update stats
+        if (v != noDataValue) {
+            if (!(stats instanceof Grids_GridStatsNotUpdatedByte)) {
+                updateStats(v);
+            }
+        }
+    }
+
+    protected void updateStats(byte value) throws IOException, Exception,
+            ClassNotFoundException {
+        Grids_GridStatsByte dStats = getStats();
+        BigDecimal valueBD = new BigDecimal(value);
+        dStats.setN(dStats.getN() + 1);
+        dStats.setSum(dStats.getSum().add(valueBD));
+        byte min = dStats.getMin(false);
+        if (value < min) {
+            dStats.setNMin(1);
+            dStats.setMin(value);
+        } else {
+            if (value == min) {
+                dStats.setNMin(dStats.getNMin() + 1);
+            }
+        }
+        byte max = dStats.getMax(false);
+        if (value > max) {
+            dStats.setNMax(1);
+            dStats.setMax(value);
+        } else {
+            if (value == max) {
+                dStats.setNMax(dStats.getNMax() + 1);
+            }
+        }
+    }
+
+    /**
+     * Initialises the v at row, col and does nothing about stats.
+     *
+     * @param chunk The chunk.
+     * @param row The row.
+     * @param col The column.
+     * @param value The v.
+     */
+    protected void initCellFast(Grids_ChunkByte chunk, long row,
+            long col, byte value) {
+        chunk.initCell(getChunkCellRow(row), getChunkCellCol(col), value);
+    }
+
+    /**
+     * @return int[] of all cell values for cells that's centroids are
+     * intersected by circle with centre at x-coordinate x, y-coordinate y, and
+     * radius distance.
+     * @param x the x-coordinate of the circle centre from which cell values are
+     * returned.
+     * @param y the y-coordinate of the circle centre from which cell values are
+     * returned.
+     * @param distance the radius of the circle for which intersected cell
+     * values are returned.
+     * @param dp The number of decimal places used in distance calculations.
+     * @param rm The {@link RoundingMode} to use when rounding distance
+     * calculations.
+     * @throws Exception If encountered.
+     * @throws IOException If encountered.
+     * @throws ClassNotFoundException If encountered.
+     */
+    protected byte[] getCells(BigDecimal x, BigDecimal y,
+            BigDecimal distance, int dp, RoundingMode rm) throws IOException,
+            Exception, ClassNotFoundException {
+        return getCells(x, y, getRow(y), getCol(x), distance, dp, rm);
+    }
+
+    /**
+     * @return byte[] of all cell values for cells thats centroids are
+     * intersected by circle with centre at x-coordinate x, y-coordinate y, and
+     * radius distance.
+     * @param x The x-coordinate of the circle centre from which cell values are
+     * returned.
+     * @param y The y-coordinate of the circle centre from which cell values are
+     * returned.
+     * @param row The row index at y.
+     * @param col The column index at x.
+     * @param distance The radius of the circle for which intersected cell
+     * values are returned.
+     * @param dp The number of decimal places used in distance calculations.
+     * @param rm The {@link RoundingMode} to use when rounding distance
+     * calculations.
+     * @throws java.io.IOException If encountered.
+     * @throws java.lang.ClassNotFoundException If encountered.
+     */
+    protected byte[] getCells(BigDecimal x, BigDecimal y, long row, long col,
+            BigDecimal distance, int dp, RoundingMode rm) throws IOException,
+            Exception, ClassNotFoundException {
+        byte[] cells;
+        BigDecimal[] dar = distance.divideAndRemainder(getCellsize());
+        int delta = dar[0].intValueExact();
+        if (dar[1].compareTo(BigDecimal.ZERO) == 1) {
+            delta += 1;
+        }
+        cells = new byte[((2 * delta) + 1) * ((2 * delta) + 1)];
+        int count = 0;
+        for (long p = row - delta; p <= row + delta; p++) {
+            BigDecimal thisY = getCellY(row);
+            for (long q = col - delta; q <= col + delta; q++) {
+                BigDecimal thisX = getCellX(col);
+                if (Grids_Utilities.distance(x, y, thisX, thisY, dp, rm)
+                        .compareTo(distance) <= 0) {
+                    cells[count] = getCell(p, q);
+                    count++;
+                }
+            }
+        }
+        // Trim cells
+        System.arraycopy(cells, 0, cells, 0, count);
+        return cells;
+    }
+
+    /**
+     * @return NearestValuesCellIDsAndDistance - The cell IDs of the nearest
+     * cells with data values nearest to a point with position given by:
+     * x-coordinate x, y-coordinate y.
+     * @param x The x-coordinate of the point.
+     * @param y The y-coordinate of the point.
+     * @param dp The number of decimal places used in distance calculations.
+     * @param rm The {@link RoundingMode} to use when rounding distance
+     * calculations.
+     * @throws java.io.IOException If encountered.
+     * @throws java.lang.ClassNotFoundException If encountered.
+     */
+    @Override
+    public NearestValuesCellIDsAndDistance getNearestValuesCellIDsAndDistance(
+            BigDecimal x, BigDecimal y, int dp, RoundingMode rm)
+            throws IOException, Exception, ClassNotFoundException {
+        NearestValuesCellIDsAndDistance r = new NearestValuesCellIDsAndDistance();
+        byte value = getCell(x, y);
+        if (value == noDataValue) {
+            return getNearestValuesCellIDsAndDistance(x, y, getRow(y),
+                    getCol(x), dp, rm);
+        }
+        r.cellIDs = new Grids_2D_ID_long[1];
+        r.cellIDs[0] = getCellID(x, y);
+        r.distance = BigDecimal.ZERO;
+        return r;
+    }
+
+    /**
+     * @return NearestValuesCellIDsAndDistance - The cell IDs of the nearest
+     * cells with data values nearest to cell row index {@code row}, cell column
+     * index {@code col}.
+     * @param row The row index from which the cell IDs of the nearest cells
+     * with data values are returned.
+     * @param col The column index from which the cell IDs of the nearest cells
+     * with data values are returned.
+     * @param dp The number of decimal places used in distance calculations.
+     * @param rm The {@link RoundingMode} to use when rounding distance
+     * calculations.
+     * @throws java.io.IOException If encountered.
+     * @throws java.lang.ClassNotFoundException If encountered.
+     */
+    @Override
+    public NearestValuesCellIDsAndDistance getNearestValuesCellIDsAndDistance(
+            long row, long col, int dp, RoundingMode rm) throws IOException,
+            Exception, ClassNotFoundException {
+        NearestValuesCellIDsAndDistance r = new NearestValuesCellIDsAndDistance();
+        byte value = getCell(row, col);
+        if (value == noDataValue) {
+            return getNearestValuesCellIDsAndDistance(getCellX(col),
+                    getCellY(row), row, col, dp, rm);
+        }
+        r.cellIDs = new Grids_2D_ID_long[1];
+        r.cellIDs[0] = getCellID(row, col);
+        r.distance = BigDecimal.ZERO;
+        return r;
+    }
+
+    /**
+     * @return NearestValuesCellIDsAndDistance - The ccll IDs of the nearest
+     * cells with data values nearest to a point with position given by:
+     * x-coordinate x, y-coordinate y; in cell row index {@code row}, cell
+     * column index {@code col}.
+     * @param x The x-coordinate of the point.
+     * @param y The y-coordinate of the point.
+     * @param row The row index from which the cell IDs of the nearest cells
+     * with data values are returned.
+     * @param col The column index from which the cell IDs of the nearest cells
+     * with data values are returned.
+     * @param dp The number of decimal places used in distance calculations.
+     * @param rm The {@link RoundingMode} to use when rounding distance
+     * calculations.
+     * @throws java.io.IOException If encountered.
+     * @throws java.lang.ClassNotFoundException If encountered.
+     */
+    @Override
+    public NearestValuesCellIDsAndDistance getNearestValuesCellIDsAndDistance(
+            BigDecimal x, BigDecimal y, long row, long col, int dp,
+            RoundingMode rm) throws IOException, Exception,
+            ClassNotFoundException {
+        NearestValuesCellIDsAndDistance r = new NearestValuesCellIDsAndDistance();
+        r.cellIDs = new Grids_2D_ID_long[1];
+        r.cellIDs[0] = getNearestCellID(x, y, row, col);
+        byte nearestCellValue = getCell(row, col);
+        if (nearestCellValue == noDataValue) {
+            // Find a v Seeking outwards from nearestCellID
+            // Initialise visitedSet1
+            HashSet<Grids_2D_ID_long> visitedSet = new HashSet<>();
+            HashSet<Grids_2D_ID_long> visitedSet1 = new HashSet<>();
+            visitedSet.add(r.cellIDs[0]);
+            visitedSet1.add(r.cellIDs[0]);
+            // Initialise toVisitSet1
+            HashSet<Grids_2D_ID_long> toVisitSet1 = new HashSet<>();
+            for (long p = -1; p < 2; p++) {
+                for (long q = -1; q < 2; q++) {
+                    if (!(p == 0 && q == 0)) {
+                        if (isInGrid(row + p, col + q)) {
+                            toVisitSet1.add(getCellID(row + p, col + q));
+                        }
+                    }
+                }
+            }
+            // Seek
+            boolean foundValue = false;
+            byte value;
+            HashSet<Grids_2D_ID_long> values = new HashSet<>();
+            Iterator<Grids_2D_ID_long> iterator;
+            while (!foundValue) {
+                HashSet<Grids_2D_ID_long> visitedSet2 = new HashSet<>();
+                HashSet<Grids_2D_ID_long> toVisitSet2 = new HashSet<>();
+                iterator = toVisitSet1.iterator();
+                while (iterator.hasNext()) {
+                    Grids_2D_ID_long cellID = iterator.next();
+                    visitedSet2.add(cellID);
+                    value = getCell(cellID);
+                    if (value != noDataValue) {
+                        foundValue = true;
+                        values.add(cellID);
+                    } else {
+                        // Add neighbours to toVisitSet2
+                        for (long p = -1; p < 2; p++) {
+                            for (long q = -1; q < 2; q++) {
+                                if (!(p == 0 && q == 0)) {
+                                    long r0 = cellID.getRow() + p;
+                                    long c0 = cellID.getCol() + q;
+                                    if (isInGrid(r0, c0)) {
+                                        toVisitSet2.add(getCellID(r0, c0));
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+                toVisitSet2.removeAll(visitedSet1);
+                toVisitSet2.removeAll(visitedSet2);
+                visitedSet.addAll(visitedSet2);
+                visitedSet1 = visitedSet2;
+                toVisitSet1 = toVisitSet2;
+            }
+            BigDecimal distance;
+            // Go through values and find the closest
+            HashSet<Grids_2D_ID_long> closest = new HashSet<>();
+            iterator = values.iterator();
+            Grids_2D_ID_long cellID = iterator.next();
+            r.distance = Grids_Utilities.distance(x, y,
+                    getCellX(cellID), getCellY(cellID),
+                    dp, rm);
+            while (iterator.hasNext()) {
+                cellID = iterator.next();
+                distance = Grids_Utilities.distance(x, y,
+                        getCellX(cellID), getCellY(cellID),
+                        dp, rm);
+                if (distance.compareTo(r.distance) == -1) {
+                    closest.clear();
+                    closest.add(cellID);
+                } else {
+                    if (distance == r.distance) {
+                        closest.add(cellID);
+                    }
+                }
+                r.distance = r.distance.min(distance);
+            }
+            // Get cellIDs that are within distance of discovered v
+            Grids_2D_ID_long[] cellIDs = getCellIDs(x, y, r.distance, dp, rm);
+            for (Grids_2D_ID_long cellID1 : cellIDs) {
+                if (!visitedSet.contains(cellID1)) {
+                    if (getCell(cellID1) != noDataValue) {
+                        distance = Grids_Utilities.distance(x, y,
+                                getCellX(cellID1),
+                                getCellY(cellID1), dp, rm);
+                        if (distance.compareTo(r.distance) == -1) {
+                            closest.clear();
+                            closest.add(cellID1);
+                        } else {
+                            if (distance == r.distance) {
+                                closest.add(cellID1);
+                            }
+                        }
+                        r.distance = r.distance.min(distance);
+                    }
+                }
+            }
+            // Go through the closest and put into an array
+            r.cellIDs = new Grids_2D_ID_long[closest.size()];
+            iterator = closest.iterator();
+            int counter = 0;
+            while (iterator.hasNext()) {
+                r.cellIDs[counter] = iterator.next();
+                counter++;
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @param x The x-coordinate of a point.
+     * @param y The y-coordinate of a point.
+     * @param v The v to be added to the cell containing the point (x, y).
+     * @throws java.io.IOException If encountered.
+     * @throws java.lang.ClassNotFoundException If encountered.
+     */
+    public void addToCell(BigDecimal x, BigDecimal y, byte v)
+            throws IOException, Exception, ClassNotFoundException {
+        addToCell(getRow(y), getCol(x), v);
+    }
+
+    /**
+     * @param cellID The ID of the cell to add to the v of.
+     * @param v The v to be added to the cell.
+     * @throws java.io.IOException If encountered.
+     * @throws java.lang.ClassNotFoundException If encountered.
+     */
+    public void addToCell(Grids_2D_ID_long cellID, byte v)
+            throws IOException, Exception, ClassNotFoundException {
+        addToCell(cellID.getRow(), cellID.getCol(), v);
+    }
+
+    /**
+     * @param row The row index of the cell.
+     * @param col The column index of the cell.
+     * @param v The v to be added to the cell. NB1. If cell is not contained in
+     * this then then returns ndv. NB2. Adding to ndv is done as if adding to a
+     * cell with v of 0.
+     * @throws java.io.IOException If encountered.
+     * @throws java.lang.ClassNotFoundException If encountered.
+     */
+    public void addToCell(long row, long col, byte v) throws IOException,
+            ClassNotFoundException, Exception {
+        byte currentValue = getCell(row, col);
+        if (currentValue != noDataValue) {
+            if (v != noDataValue) {
+                setCell(row, col, (byte) (currentValue + v));
+            }
+        } else {
+            if (v != noDataValue) {
+                setCell(row, col, v);
+            }
+        }
+    }
+
+    /**
+     * Initialises all cells with v {@code v}.
+     *
+     * @param v The v to initialise all the cells with.
+     * @throws java.io.IOException If encountered.
+     * @throws java.lang.ClassNotFoundException If encountered.
+     */
+    protected void initCells(byte v) throws IOException, Exception,
+            ClassNotFoundException {
+        Iterator<Grids_2D_ID_int> ite = getChunkIDs().iterator();
+        int nChunks = getChunkIDs().size();
+        int counter = 0;
+        while (ite.hasNext()) {
+            env.checkAndMaybeFreeMemory();
+            env.env.log("Initialising Chunk " + counter + " out of " + nChunks);
+            counter++;
+            Grids_2D_ID_int i = ite.next();
+            Grids_ChunkByte chunk = getChunk(i);
+            int cnr = getChunkNRows(i);
+            int cnc = getChunkNCols(i);
+            for (int row = 0; row <= cnr; row++) {
+                for (int col = 0; col <= cnc; col++) {
+                    chunk.initCell(cnr, cnc, v);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return A Grids_GridIteratorByte for iterating over the cell values in
+     * this.
+     * @throws java.io.IOException If encountered.
+     * @throws java.lang.ClassNotFoundException If encountered.
+     */
+    public Grids_GridIteratorByte iterator() throws IOException, Exception,
+            ClassNotFoundException {
+        return new Grids_GridIteratorByte(this);
+    }
+
+    @Override
+    public Grids_GridStatsByte getStats() {
+        return (Grids_GridStatsByte) stats;
+    }
+
+    public void initStatistics(Grids_StatsByte stats) {
+        this.stats = stats;
+    }
+
+    public byte getCell(Grids_Chunk chunk, int chunkRow, int chunkCol,
+            int cellRow, int cellCol) {
+        Grids_ChunkByte c = (Grids_ChunkByte) chunk;
+        if (chunk.getClass() == Grids_ChunkByteArray.class) {
+            return ((Grids_ChunkByteArray) c).getCell(cellRow, cellCol);
+        }
+        if (chunk.getClass() == Grids_ChunkByteMap.class) {
+            return ((Grids_ChunkByteMap) c).getCell(cellRow, cellCol);
+        }
+        return c.getGrid().noDataValue;
+    }
+
+    @Override
+    public BigDecimal getCellBigDecimal(Grids_Chunk chunk, int cr, int cc,
+            int ccr, int ccc) {
+        return BigDecimal.valueOf(getCell(chunk, cr, cc, ccr, ccc));
+    }
+
+    @Override
+    public Number setCell(int cr, int cc, int ccr, int ccc, BigDecimal v)
+            throws IOException, ClassNotFoundException, Exception {
+        if (isInGrid(cr, cc, ccr, ccc)) {
+            return setCell(cr, cc, ccr, ccc, v.byteValue());
+        }
+        return noDataValue;
+    }
+
+    /**
+     * Test if this and {@code g} have the same dimensions, the same number of
+     * rows and columns, and the same values in each cell. The chunks are
+     * allowed to be stored differently as are the statistics. The no data value
+     * may also be different so long as this is distinct from all other values
+     * (currently no check is done on the distinctiveness of no data values).
+     *
+     * @param g The grid to test if it has the same dimensions and values as
+     * this.
+     * @return {code true} if this and {@code g} have the same dimensions, the
+     * same number of rows and columns, and the same values in each cell.
+     * @throws IOException If encountered.
+     * @throws Exception If encountered.
+     */
+    @Override
+    public boolean isSameDimensionsAndValues(Grids_Grid g) throws IOException,
+            Exception {
+        if (!(g instanceof Grids_GridByte)) {
+            return false;
+        }
+        if (!isSameDimensions(g)) {
+            return false;
+        }
+        Grids_GridByte gd = (Grids_GridByte) g;
+        byte gndv = gd.getNoDataValue();
+        for (int cr = 0; cr < this.nChunkRows; cr++) {
+            int cnr = gd.getChunkNRows(cr);
+            for (int cc = 0; cc < this.nChunkCols; cc++) {
+                int cnc = gd.getChunkNCols(cc);
+                Grids_2D_ID_int i = new Grids_2D_ID_int(cr, cc);
+                env.addToNotToClear(gd, i);
+                // Add to not to clear a row of this chunks.
+                long rowMin = gd.getRow(cr, 0);
+                long rowMax = gd.getRow(cr, cnr);
+                long colMin = gd.getCol(cc, 0);
+                long colMax = gd.getCol(cc, cnc);
+                Set<Grids_2D_ID_int> s = getChunkIDs(rowMin, rowMax, colMin,
+                        colMax);
+                env.addToNotToClear(this, s);
+                env.checkAndMaybeFreeMemory();
+                Grids_ChunkByte chunk = (Grids_ChunkByte) g.getChunk(i, cr,
+                        cc);
+                for (int ccr = 0; ccr < cnr; ccr++) {
+                    long row = gd.getRow(cr, ccr);
+                    for (int ccc = 0; ccc < cnc; ccc++) {
+                        long col = gd.getCol(cc, ccc);
+                        byte v = getCell(row, col);
+                        byte gv = chunk.getCell(ccr, ccc);
+                        if (v == noDataValue) {
+                            if (gv != gndv) {
+                                return false;
+                            }
+                        } else {
+                            if (gv == gndv) {
+                                return false;
+                            } else {
+                                if (v != gv) {
+                                    return false;
+                                }
+                            }
+                        }
+
+                    }
+                }
+                env.removeFromNotToClear(gd, i);
+                env.removeFromNotToClear(this, s);
+            }
+        }
+        return true;
+    }
+}
@@ -154,6 +154,8 @@ public class Grids_GridFactoryInt extends Grids_GridFactory {
                 store.getNextID(), cf, chunkNRows,
                 chunkNCols, nRows, nCols, dimensions, noDataValue, env);
         store.addDir();
+        r.setCodec(codec);
+        r.setAdaptive(adaptive);
         return r;
     }
 
@@ -196,6 +198,8 @@ public class Grids_GridFactoryInt extends Grids_GridFactory {
                 store.getNextID(), g, cf, chunkNRows, chunkNCols, startRow,
                 startCol, endRow, endCol, noDataValue);
         store.addDir();
+        r.setCodec(codec);
+        r.setAdaptive(adaptive);
         return r;
     }
 
@@ -239,9 +243,12 @@ public class Grids_GridFactoryInt extends Grids_GridFactory {
             Generic_Path gridFile, Grids_ChunkFactoryInt cf,
             long startRow, long startCol, long endRow, long endCol)
             throws IOException, ClassNotFoundException, Exception {
-        return new Grids_GridInt(getStats(stats), store, store.getNextID(), gridFile, cf,
-                chunkNRows, chunkNCols, startRow, startCol, endRow, endCol,
-                noDataValue, env);
+        Grids_GridInt r = new Grids_GridInt(getStats(stats), store,
+                store.getNextID(), gridFile, cf, chunkNRows, chunkNCols,
+                startRow, startCol, endRow, endCol, noDataValue, env);
+        r.setCodec(codec);
+        r.setAdaptive(adaptive);
+        return r;
     }
 
     /**
@@ -258,6 +265,8 @@ public class Grids_GridFactoryInt extends Grids_GridFactory {
         Grids_GridInt r = new Grids_GridInt(env, store, store.getNextID(),
                 gridFile, noDataValue);
         store.addDir();
+        r.setCodec(codec);
+        r.setAdaptive(adaptive);
         return r;
     }
 
@@ -20,12 +20,14 @@ import java.math.BigDecimal;
 import java.nio.file.Files;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import uk.ac.leeds.ccg.generic.io.Generic_IO;
 import uk.ac.leeds.ccg.generic.io.Generic_Path;
 import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
 import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_long;
 import uk.ac.leeds.ccg.grids.d2.grid.Grids_Dimensions;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkFactoryIntMap;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkFactoryIntArray;
 import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkInt;
 import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkFactoryInt;
 import uk.ac.leeds.ccg.grids.d2.chunk.Grids_Chunk;
@@ -37,6 +39,9 @@ import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkDouble;
 import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkIntSinglet;
 import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkIntArray;
 import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkIntMap;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkIntMapped;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkIntOffHeap;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkFactoryIntMapped;
 import uk.ac.leeds.ccg.grids.d2.stats.Grids_StatsInt;
 import uk.ac.leeds.ccg.grids.d2.stats.Grids_StatsNotUpdatedInt;
 import uk.ac.leeds.ccg.grids.io.Grids_ESRIAsciiGridImporter;
@@ -195,6 +200,7 @@ public class Grids_GridInt extends Grids_GridNumber {
         stats = g.stats;
         super.init(g);
         data = g.data;
+        initChunkTable();
         // Set the reference to this in data chunks
         setReferenceInChunks();
         worthSwapping = g.worthSwapping;
@@ -238,7 +244,7 @@ public class Grids_GridInt extends Grids_GridNumber {
                 // Try to load chunk.
                 Grids_2D_ID_int chunkID = new Grids_2D_ID_int(r, c);
                 Grids_ChunkInt chunk = cf.create(this, chunkID);
-                data.put(chunkID, chunk);
+                putChunk(chunkID, chunk);
                 if (!(chunk instanceof Grids_ChunkIntSinglet)) {
                     worthSwapping.add(chunkID);
                 }
@@ -329,7 +335,7 @@ public class Grids_GridInt extends Grids_GridNumber {
                                                 env.addToNotToClear(this, chunkID);
                                                 if (!data.containsKey(chunkID)) {
                                                     chunk = cf.create(this, chunkID);
-                                                    data.put(chunkID, chunk);
+                                                    putChunk(chunkID, chunk);
                                                     if (!(chunk instanceof Grids_ChunkIntSinglet)) {
                                                         worthSwapping.add(chunkID);
                                                     }
@@ -422,7 +428,7 @@ public class Grids_GridInt extends Grids_GridNumber {
                                                 env.addToNotToClear(this, chunkID);
                                                 if (!data.containsKey(chunkID)) {
                                                     chunk = cf.create(this, chunkID);
-                                                    data.put(chunkID, chunk);
+                                                    putChunk(chunkID, chunk);
                                                     if (!(chunk instanceof Grids_ChunkIntSinglet)) {
                                                         worthSwapping.add(chunkID);
                                                     }
@@ -526,8 +532,8 @@ public class Grids_GridInt extends Grids_GridNumber {
             name = fs.getBaseDir().getFileName().toString() + fsID;
             initNChunkRows();
             initNChunkCols();
-            data = new TreeMap<>();
-            worthSwapping = new HashSet<>();
+            data = new ConcurrentHashMap<>();
+            worthSwapping = ConcurrentHashMap.newKeySet();
             this.stats = stats;
             this.stats.setGrid(this);
             String filename = gridFile.getFileName().toString();
@@ -639,8 +645,8 @@ public class Grids_GridInt extends Grids_GridNumber {
         } else {
             // Assume ESRI AsciiFile
             name = fs.getBaseDir().getFileName().toString() + fsID;
-            data = new TreeMap<>();
-            worthSwapping = new HashSet<>();
+            data = new ConcurrentHashMap<>();
+            worthSwapping = ConcurrentHashMap.newKeySet();
             this.stats = stats;
             this.stats.setGrid(this);
             String filename = gridFile.getFileName().toString();
@@ -769,7 +775,7 @@ public class Grids_GridInt extends Grids_GridNumber {
 //            chunk.env = env;
 //            chunk.initGrid(this);
 //            chunk.initChunkID(chunkID);
-//            data.put(chunkID, chunk);
+//            putChunk(chunkID, chunk);
 //            if (!(chunk instanceof Grids_ChunkIntSinglet)) {
 //                worthSwapping.add(chunkID);
 //            }
@@ -800,7 +806,7 @@ public class Grids_GridInt extends Grids_GridNumber {
         if (!data.containsKey(chunkID)) {
             Grids_ChunkIntSinglet gc = new Grids_ChunkIntSinglet(this, chunkID,
                     value);
-            data.put(chunkID, gc);
+            putChunk(chunkID, gc);
             if (!(gc instanceof Grids_ChunkIntSinglet)) {
                 worthSwapping.add(chunkID);
             }
@@ -818,7 +824,7 @@ public class Grids_GridInt extends Grids_GridNumber {
                     chunk = env.getProcessor().gridFactoryInt.defaultGridChunkIntFactory.create(
                             chunk, chunkID);
                     chunk.initCell(getChunkCellRow(row), getChunkCellCol(col), value);
-                    data.put(chunkID, chunk);
+                    putChunk(chunkID, chunk);
                     if (!(chunk instanceof Grids_ChunkIntSinglet)) {
                         worthSwapping.add(chunkID);
                     }
@@ -833,6 +839,17 @@ public class Grids_GridInt extends Grids_GridNumber {
         }
     }
 
+    /**
+     * @param i The chunk ID.
+     * @return A chunk backed by {@link #mappedStore}.
+     * @throws IOException If encountered.
+     */
+    @Override
+    protected Grids_ChunkIntMapped createMappedChunk(Grids_2D_ID_int i)
+            throws IOException {
+        return new Grids_ChunkFactoryIntMapped().create(this, i);
+    }
+
     /**
      * @return Grids_ChunkInt for chunk ID @code i}.
      * @param i The chunk ID.
@@ -843,10 +860,7 @@ public class Grids_GridInt extends Grids_GridNumber {
     public Grids_ChunkInt getChunk(Grids_2D_ID_int i) throws IOException,
             ClassNotFoundException, Exception {
         if (isInGrid(i)) {
-            if (data.get(i) == null) {
-                loadChunk(i);
-            }
-            return (Grids_ChunkInt) data.get(i);
+            return (Grids_ChunkInt) accessChunk(i);
         }
         return null;
     }
@@ -864,10 +878,7 @@ public class Grids_GridInt extends Grids_GridNumber {
     public Grids_ChunkInt getChunk(Grids_2D_ID_int i, int cr, int cc)
             throws IOException, ClassNotFoundException, Exception {
         if (isInGrid(cr, cc)) {
-            if (data.get(i) == null) {
-                loadChunk(i);
-            }
-            return (Grids_ChunkInt) data.get(i);
+            return (Grids_ChunkInt) accessChunk(i);
         }
         return null;
     }
@@ -1074,6 +1085,10 @@ public class Grids_GridInt extends Grids_GridNumber {
             r = ((Grids_ChunkIntArray) chunk).setCell(ccr, ccc, v);
         } else if (chunk instanceof Grids_ChunkIntMap) {
             r = ((Grids_ChunkIntMap) chunk).setCell(ccr, ccc, v);
+        } else if (chunk instanceof Grids_ChunkIntMapped) {
+            r = ((Grids_ChunkIntMapped) chunk).setCell(ccr, ccc, v);
+        } else if (chunk instanceof Grids_ChunkIntOffHeap) {
+            r = ((Grids_ChunkIntOffHeap) chunk).setCell(ccr, ccc, v);
         } else {
             Grids_ChunkIntSinglet c = (Grids_ChunkIntSinglet) chunk;
             if (c != null) {
@@ -1088,9 +1103,7 @@ public class Grids_GridInt extends Grids_GridNumber {
         }
         // Update stats
         if (v != r) {
-            if (stats.isUpdated()) {
-                updateStats(v, r);
-            }
+            updateStats(v, r);
         }
         return r;
     }
@@ -1102,10 +1115,132 @@ public class Grids_GridInt extends Grids_GridNumber {
             Grids_2D_ID_int i) throws IOException, ClassNotFoundException,
             Exception {
         Grids_ChunkInt r = env.getProcessor().gridFactoryInt.defaultGridChunkIntFactory.create(chunk, i);
-        data.put(i, r);
+        putChunk(i, r);
+        if (!(r instanceof Grids_ChunkIntSinglet)) {
+            worthSwapping.add(i);
+        }
         return r;
     }
 
+    /**
+     * Returns a chunk with the same values as {@code c} of whichever of the
+     * singlet, map and array types uses least memory. The default value of a
+     * map chunk is the most common value. This is found in two passes over
+     * the values without allocating: the first finds the (at most two) values
+     * that can be in more than a third of the cells using the Misra-Gries
+     * frequent items algorithm, and the second counts these. Other values are
+     * not candidates: a map chunk uses more memory than an array chunk unless
+     * its default value is in more than a third of the cells. Singlet and
+     * mapped chunks are returned as they are.
+     *
+     * @param i The chunk ID.
+     * @param c The chunk with chunk ID {@code i}.
+     * @return A chunk with the same values as {@code c}.
+     */
+    @Override
+    protected Grids_Chunk getCompactChunk(Grids_2D_ID_int i, Grids_Chunk c) {
+        if (!(c instanceof Grids_ChunkIntArray
+                || c instanceof Grids_ChunkIntMap)) {
+            return c;
+        }
+        Grids_ChunkInt cd = (Grids_ChunkInt) c;
+        int nrows = c.getChunkNRows();
+        int ncols = c.getChunkNCols();
+        int a = 0;
+        int b = 0;
+        int na = 0;
+        int nb = 0;
+        for (int row = 0; row < nrows; row++) {
+            for (int col = 0; col < ncols; col++) {
+                int v = cd.getCell(row, col);
+                if (na > 0 && v == a) {
+                    na++;
+                } else if (nb > 0 && v == b) {
+                    nb++;
+                } else if (na == 0) {
+                    a = v;
+                    na = 1;
+                } else if (nb == 0) {
+                    b = v;
+                    nb = 1;
+                } else {
+                    na--;
+                    nb--;
+                }
+            }
+        }
+        na = 0;
+        nb = 0;
+        for (int row = 0; row < nrows; row++) {
+            for (int col = 0; col < ncols; col++) {
+                int v = cd.getCell(row, col);
+                if (v == a) {
+                    na++;
+                } else if (v == b) {
+                    nb++;
+                }
+            }
+        }
+        int dv = na >= nb ? a : b;
+        int nc = nrows * ncols;
+        int n = nc - Math.max(na, nb);
+        if (n == 0) {
+            return new Grids_ChunkIntSinglet(this, i, dv);
+        }
+        if (Grids_ChunkIntMap.getMemoryFootprintEstimate(n) < Grids_Chunk.BYTES_CHUNK
+                + Grids_Chunk.getArrayFootprint(nc, Integer.BYTES)) {
+            if (c instanceof Grids_ChunkIntMap
+                    && ((Grids_ChunkIntMap) c).defaultValue == dv) {
+                return c;
+            }
+            Grids_ChunkIntMap r = new Grids_ChunkFactoryIntMap().create(cd, i,
+                    dv);
+            r.trimToSize();
+            return r;
+        }
+        if (c instanceof Grids_ChunkIntArray) {
+            return c;
+        }
+        return new Grids_ChunkFactoryIntArray().create(cd, i);
+    }
+
+    /**
+     * For getting the chunk with chunk ID {@code i} ready for values to be set
+     * in it directly. If the chunk is a singlet it is converted to another
+     * type of chunk. Setting values directly in the chunk does not update
+     * {@link #stats}, so once done {@link #updateStats()} should be called.
+     *
+     * @param i The chunk ID.
+     * @return The chunk with chunk ID {@code i}.
+     * @throws java.io.IOException If encountered.
+     * @throws java.lang.ClassNotFoundException If encountered.
+     */
+    public Grids_ChunkInt getChunkToSet(Grids_2D_ID_int i)
+            throws IOException, ClassNotFoundException, Exception {
+        Grids_ChunkInt r = getChunk(i);
+        if (r instanceof Grids_ChunkIntSinglet) {
+            r = convertToAnotherTypeOfChunk(r, i);
+        }
+        return r;
+    }
+
+    /**
+     * For updating {@link #stats} after values have been set directly in
+     * chunks. If the stats are kept updated they are recalculated, otherwise
+     * they are marked as not being up to date.
+     *
+     * @throws java.io.IOException If encountered.
+     * @throws java.lang.ClassNotFoundException If encountered.
+     */
+    public void updateStats() throws IOException, ClassNotFoundException,
+            Exception {
+        if (stats.isUpdated()) {
+            getStats().update();
+        } else {
+            ((Grids_StatsNotUpdatedInt) stats).setUpToDate(false);
+        }
+    }
+
     /**
      * Initialises the v at row, col.
      *
@@ -1518,8 +1653,8 @@ public class Grids_GridInt extends Grids_GridNumber {
      */
     protected void initCells(int v) throws IOException, Exception,
             ClassNotFoundException {
-        Iterator<Grids_2D_ID_int> ite = data.keySet().iterator();
-        int nChunks = data.size();
+        Iterator<Grids_2D_ID_int> ite = getChunkIDs().iterator();
+        int nChunks = getChunkIDs().size();
         int counter = 0;
         while (ite.hasNext()) {
             env.checkAndMaybeFreeMemory();
@@ -1548,6 +1683,14 @@ public class Grids_GridInt extends Grids_GridNumber {
         return new Grids_GridIteratorInt(this);
     }
 
+    /**
+     * @return A new cursor for getting and setting cell values around a
+     * position in this. The cursor should be closed after use.
+     */
+    public Grids_GridCursorInt cursor() {
+        return new Grids_GridCursorInt(this);
+    }
+
     @Override
     public Grids_StatsInt getStats() {
         return (Grids_StatsInt) stats;
@@ -25,6 +25,8 @@ import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkIntArray;
 import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkIteratorIntArrayOrMap;
 import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkIteratorIntSinglet;
 import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkIntMap;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkIntMapped;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkIntOffHeap;
 
 /**
  * For iterating through the values in a Grids_GridInt. The values are returned
@@ -46,7 +48,7 @@ public class Grids_GridIteratorInt extends Grids_GridIterator {
     public Grids_GridIteratorInt(Grids_GridInt g) throws IOException, Exception,
             ClassNotFoundException {
         super(g);
-        gridIterator = g.getData().keySet().iterator();
+        gridIterator = g.getChunkIDs().iterator();
         if (gridIterator.hasNext()) {
             chunkID = gridIterator.next();
             chunk = (Grids_ChunkInt) g.getData().get(chunkID);
@@ -69,6 +71,12 @@ public class Grids_GridIteratorInt extends Grids_GridIterator {
         } else if (chunk instanceof Grids_ChunkIntMap) {
             chunkIterator = new Grids_ChunkIteratorIntArrayOrMap(
                     (Grids_ChunkIntMap) chunk);
+        } else if (chunk instanceof Grids_ChunkIntMapped) {
+            chunkIterator = new Grids_ChunkIteratorIntArrayOrMap(
+                    (Grids_ChunkIntMapped) chunk);
+        } else if (chunk instanceof Grids_ChunkIntOffHeap) {
+            chunkIterator = new Grids_ChunkIteratorIntArrayOrMap(
+                    (Grids_ChunkIntOffHeap) chunk);
         } else {
             chunkIterator = new Grids_ChunkIteratorIntSinglet(
                     (Grids_ChunkIntSinglet) chunk);
@@ -87,6 +95,12 @@ public class Grids_GridIteratorInt extends Grids_GridIterator {
         } else if (gc instanceof Grids_ChunkIntMap) {
             return new Grids_ChunkIteratorIntArrayOrMap(
                     (Grids_ChunkIntMap) gc);
+        } else if (gc instanceof Grids_ChunkIntMapped) {
+            return new Grids_ChunkIteratorIntArrayOrMap(
+                    (Grids_ChunkIntMapped) gc);
+        } else if (gc instanceof Grids_ChunkIntOffHeap) {
+            return new Grids_ChunkIteratorIntArrayOrMap(
+                    (Grids_ChunkIntOffHeap) gc);
         } else if (gc instanceof Grids_ChunkIntSinglet) {
             return new Grids_ChunkIteratorIntSinglet(
                     (Grids_ChunkIntSinglet) gc);
@@ -115,10 +129,21 @@ public class Grids_GridIteratorInt extends Grids_GridIterator {
                 chunkID = gridIterator.next();
                 chunk = grid.getChunk(chunkID);
                 chunkIterator = getChunkIterator(chunk);
-                return getChunkIterator().next();
+                return next0();
             } else {
                 return null;
             }
+        } else {
+            return next0();
+        }
+    }
+
+    /**
+     * @return The next value from {@link #chunkIterator}.
+     */
+    private Integer next0() {
+        if (chunkIterator instanceof Grids_ChunkIteratorIntSinglet) {
+            return ((Grids_ChunkIteratorIntSinglet) chunkIterator).next();
         } else {
             return getChunkIterator().next();
         }
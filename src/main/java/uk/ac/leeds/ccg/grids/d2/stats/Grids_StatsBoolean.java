@@ -16,11 +16,10 @@
 package uk.ac.leeds.ccg.grids.d2.stats;
 
 import java.io.IOException;
-import java.util.Iterator;
 import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
 import uk.ac.leeds.ccg.grids.core.Grids_Environment;
 import uk.ac.leeds.ccg.grids.d2.grid.b.Grids_GridBoolean;
-import uk.ac.leeds.ccg.grids.d2.grid.b.Grids_GridIteratorBoolean;
+import uk.ac.leeds.ccg.grids.d2.chunk.b.Grids_ChunkBooleanArray;
 
 /**
  * Used by Grids_GridBinary instances to access statistics. This class is to be
@@ -70,13 +69,7 @@ public class Grids_StatsBoolean extends Grids_Stats {
     public void update() throws IOException, Exception, ClassNotFoundException {
         env.checkAndMaybeFreeMemory();
         init();
-        Grids_GridBoolean g = getGrid();
-        Grids_GridIteratorBoolean ite = g.iterator();
-        while (ite.hasNext()) {
-            if (ite.next()) {
-                n ++;
-            }
-        }
+        n = count();
     }
 
     /**
@@ -87,11 +80,24 @@ public class Grids_StatsBoolean extends Grids_Stats {
      */
     @Override
     public long getN() throws IOException, Exception, ClassNotFoundException {
+        return count();
+    }
+
+    /**
+     * Counts by summing the counts of each chunk (see
+     * {@link Grids_ChunkBooleanArray#getN()}) which are calculated from the
+     * packed bits of the chunk a long at a time.
+     *
+     * @return The count.
+     * @throws java.io.IOException If encountered.
+     * @throws java.lang.ClassNotFoundException If encountered.
+     */
+    protected long count() throws IOException, Exception,
+            ClassNotFoundException {
         long r = 0;
         Grids_GridBoolean g = getGrid();
-        Iterator<Grids_2D_ID_int> ite = g.iterator().getGridIterator();
-        while (ite.hasNext()) {
-            r += g.getChunk(ite.next()).getN();
+        for (Grids_2D_ID_int i : g.getChunkIDs()) {
+            r += g.getChunk(i).getN();
             env.checkAndMaybeFreeMemory();
         }
         return r;
@@ -0,0 +1,411 @@
+/*
+ * Copyright 2019 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.grids.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * For encoding the bytes of chunks written in the {@link Grids_ChunkIO} format
+ * before they are written to file, and for counting how well this compresses
+ * and how fast it is. The codecs are:
+ * <ul>
+ * <li>{@link #NONE} - the bytes are written as they are.</li>
+ * <li>{@link #DEFLATE} - the bytes are compressed using {@link Deflater} at
+ * its fastest setting.</li>
+ * <li>{@link #DELTA_DEFLATE} - the values of array chunks are replaced by the
+ * difference between each value and the previous value in row major order,
+ * the bytes of the differences are byte plane shuffled (see
+ * {@link #shuffle(byte[], int, int, boolean)}) and the result is compressed as
+ * for {@link #DEFLATE}. The differences are of the bits of the values taken as
+ * integers, so this is lossless. For smoothly varying surfaces such as
+ * elevations the differences are small, and after shuffling their high order
+ * byte planes are long runs of zero bytes.</li>
+ * </ul>
+ *
+ * The codec used to write a chunk file is recorded in the file, so chunks can
+ * be read whatever codec is set now.
+ *
+ * @author Andy Turner
+ * @version 1.0.0
+ */
+public class Grids_ChunkCodec implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * No encoding.
+     */
+    public static final byte NONE = 0;
+
+    /**
+     * Deflate.
+     */
+    public static final byte DEFLATE = 1;
+
+    /**
+     * Delta, byte plane shuffle and deflate.
+     */
+    public static final byte DELTA_DEFLATE = 2;
+
+    /**
+     * The codec.
+     */
+    protected final byte type;
+
+    /**
+     * A count of the number of chunks encoded.
+     */
+    protected final LongAdder encoded;
+
+    /**
+     * A count of the number of chunks decoded.
+     */
+    protected final LongAdder decoded;
+
+    /**
+     * The total number of bytes encoded.
+     */
+    protected final LongAdder rawBytes;
+
+    /**
+     * The total number of bytes the encoded bytes were encoded to.
+     */
+    protected final LongAdder encodedBytes;
+
+    /**
+     * The total number of bytes decoded to.
+     */
+    protected final LongAdder decodedBytes;
+
+    /**
+     * The total time spent encoding in nanoseconds.
+     */
+    protected final LongAdder encodeNanos;
+
+    /**
+     * The total time spent decoding in nanoseconds.
+     */
+    protected final LongAdder decodeNanos;
+
+    /**
+     * @param type What {@link #type} is set to.
+     */
+    public Grids_ChunkCodec(byte type) {
+        this.type = type;
+        encoded = new LongAdder();
+        decoded = new LongAdder();
+        rawBytes = new LongAdder();
+        encodedBytes = new LongAdder();
+        decodedBytes = new LongAdder();
+        encodeNanos = new LongAdder();
+        decodeNanos = new LongAdder();
+    }
+
+    /**
+     * @return {@link #type}
+     */
+    public byte getType() {
+        return type;
+    }
+
+    /**
+     * Encodes {@code raw} counting the bytes and time taken.
+     *
+     * @param raw The bytes in the {@link Grids_ChunkIO} format.
+     * @param width The number of bytes in each value of an array chunk (see
+     * {@link Grids_ChunkIO#getValueLength(byte)}).
+     * @return The encoded bytes.
+     */
+    public byte[] encode(byte[] raw, int width) {
+        long t = System.nanoTime();
+        byte[] r = encode(type, raw, width);
+        encodeNanos.add(System.nanoTime() - t);
+        encoded.increment();
+        rawBytes.add(raw.length);
+        encodedBytes.add(r.length);
+        return r;
+    }
+
+    /**
+     * Decodes {@code b} counting the bytes and time taken.
+     *
+     * @param type The codec {@code b} was encoded with.
+     * @param b The encoded bytes.
+     * @param length The number of bytes decoded.
+     * @param width The number of bytes in each value of an array chunk.
+     * @return The decoded bytes.
+     * @throws IOException If {@code b} is not valid.
+     */
+    public byte[] decode(byte type, byte[] b, int length, int width)
+            throws IOException {
+        long t = System.nanoTime();
+        byte[] r = decodeBytes(type, b, length, width);
+        decodeNanos.add(System.nanoTime() - t);
+        decoded.increment();
+        decodedBytes.add(length);
+        return r;
+    }
+
+    /**
+     * @return The number of chunks encoded.
+     */
+    public long getEncoded() {
+        return encoded.sum();
+    }
+
+    /**
+     * @return The number of chunks decoded.
+     */
+    public long getDecoded() {
+        return decoded.sum();
+    }
+
+    /**
+     * @return The ratio of the number of bytes encoded to the number of bytes
+     * they were encoded to or {@code 0} if nothing has been encoded.
+     */
+    public double getCompressionRatio() {
+        long e = encodedBytes.sum();
+        if (e == 0L) {
+            return 0d;
+        }
+        return (double) rawBytes.sum() / (double) e;
+    }
+
+    /**
+     * @return The number of megabytes (of uncompressed bytes) encoded per
+     * second or {@code 0} if nothing has been encoded.
+     */
+    public double getEncodeThroughput() {
+        return getThroughput(rawBytes.sum(), encodeNanos.sum());
+    }
+
+    /**
+     * @return The number of megabytes (of uncompressed bytes) decoded per
+     * second or {@code 0} if nothing has been decoded.
+     */
+    public double getDecodeThroughput() {
+        return getThroughput(decodedBytes.sum(), decodeNanos.sum());
+    }
+
+    private static double getThroughput(long bytes, long nanos) {
+        if (nanos == 0L) {
+            return 0d;
+        }
+        return (bytes / 1000000d) / (nanos / 1000000000d);
+    }
+
+    /**
+     * Resets the counts.
+     */
+    public void resetCounts() {
+        encoded.reset();
+        decoded.reset();
+        rawBytes.reset();
+        encodedBytes.reset();
+        decodedBytes.reset();
+        encodeNanos.reset();
+        decodeNanos.reset();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[type=" + type
+                + ", encoded=" + getEncoded()
+                + ", decoded=" + getDecoded()
+                + ", compressionRatio=" + getCompressionRatio()
+                + ", encodeThroughput=" + getEncodeThroughput()
+                + ", decodeThroughput=" + getDecodeThroughput() + "]";
+    }
+
+    /**
+     * @param type The codec.
+     * @param raw The bytes in the {@link Grids_ChunkIO} format.
+     * @param width The number of bytes in each value of an array chunk.
+     * @return The encoded bytes.
+     */
+    public static byte[] encode(byte type, byte[] raw, int width) {
+        switch (type) {
+            case DEFLATE:
+                return deflate(raw);
+            case DELTA_DEFLATE:
+                byte[] b = raw.clone();
+                delta(b, Grids_ChunkIO.HEADER_LENGTH, width, true);
+                return deflate(shuffle(b, Grids_ChunkIO.HEADER_LENGTH, width,
+                        true));
+            default:
+                return raw;
+        }
+    }
+
+    /**
+     * @param type The codec {@code b} was encoded with.
+     * @param b The encoded bytes.
+     * @param length The number of bytes decoded.
+     * @param width The number of bytes in each value of an array chunk.
+     * @return The decoded bytes.
+     * @throws IOException If {@code b} is not valid or {@code type} is not
+     * known.
+     */
+    public static byte[] decodeBytes(byte type, byte[] b, int length,
+            int width) throws IOException {
+        switch (type) {
+            case NONE:
+                return b;
+            case DEFLATE:
+                return inflate(b, length);
+            case DELTA_DEFLATE:
+                byte[] r = shuffle(inflate(b, length),
+                        Grids_ChunkIO.HEADER_LENGTH, width, false);
+                delta(r, Grids_ChunkIO.HEADER_LENGTH, width, false);
+                return r;
+            default:
+                throw new IOException("Unknown chunk codec " + type + ".");
+        }
+    }
+
+    /**
+     * Replaces the little endian values of {@code width} bytes that follow
+     * the first {@code offset} bytes of {@code b} with the difference between
+     * each and the previous value (or reverses this). Any bytes that do not
+     * make up a whole value are left.
+     *
+     * @param b The bytes.
+     * @param offset The number of bytes at the start not to change.
+     * @param width The number of bytes in each value. Unless this is 2, 4 or
+     * 8 nothing is done.
+     * @param forward If {@code true} the differences are taken, otherwise
+     * they are summed.
+     */
+    protected static void delta(byte[] b, int offset, int width,
+            boolean forward) {
+        if (width != 2 && width != 4 && width != 8) {
+            return;
+        }
+        int n = (b.length - offset) / width;
+        long prev = 0L;
+        for (int k = 0; k < n; k++) {
+            int o = offset + k * width;
+            long v = 0L;
+            for (int j = width - 1; j >= 0; j--) {
+                v = (v << 8) | (b[o + j] & 0xFFL);
+            }
+            long w;
+            if (forward) {
+                w = v - prev;
+                prev = v;
+            } else {
+                w = v + prev;
+                prev = w;
+            }
+            for (int j = 0; j < width; j++) {
+                b[o + j] = (byte) (w >>> (8 * j));
+            }
+        }
+    }
+
+    /**
+     * Byte plane shuffles (or unshuffles) the values of {@code width} bytes
+     * that follow the first {@code offset} bytes of {@code b}: the first byte
+     * of each value is put first, then the second byte of each value and so
+     * on. Any bytes that do not make up a whole value are left at the end.
+     *
+     * @param b The bytes.
+     * @param offset The number of bytes at the start not to change.
+     * @param width The number of bytes in each value.
+     * @param forward If {@code true} the bytes are shuffled, otherwise they
+     * are unshuffled.
+     * @return The shuffled (or unshuffled) bytes. This is {@code b} if
+     * {@code width} is less than 2.
+     */
+    public static byte[] shuffle(byte[] b, int offset, int width,
+            boolean forward) {
+        if (width < 2) {
+            return b;
+        }
+        int n = (b.length - offset) / width;
+        byte[] r = b.clone();
+        for (int k = 0; k < n; k++) {
+            for (int j = 0; j < width; j++) {
+                if (forward) {
+                    r[offset + j * n + k] = b[offset + k * width + j];
+                } else {
+                    r[offset + k * width + j] = b[offset + j * n + k];
+                }
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @param b The bytes to compress.
+     * @return The bytes compressed using {@link Deflater} at its fastest
+     * setting.
+     */
+    public static byte[] deflate(byte[] b) {
+        Deflater d = new Deflater(Deflater.BEST_SPEED);
+        try {
+            d.setInput(b);
+            d.finish();
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(
+                    Math.max(64, b.length / 4));
+            byte[] buf = new byte[8192];
+            while (!d.finished()) {
+                int k = d.deflate(buf);
+                bos.write(buf, 0, k);
+            }
+            return bos.toByteArray();
+        } finally {
+            d.end();
+        }
+    }
+
+    /**
+     * @param b The bytes to decompress.
+     * @param length The number of bytes decompressed.
+     * @return The decompressed bytes.
+     * @throws IOException If {@code b} is not valid.
+     */
+    public static byte[] inflate(byte[] b, int length) throws IOException {
+        Inflater inf = new Inflater();
+        try {
+            inf.setInput(b);
+            byte[] r = new byte[length];
+            int o = 0;
+            while (o < length && !inf.finished()) {
+                int k = inf.inflate(r, o, length - o);
+                if (k == 0 && (inf.needsInput() || inf.needsDictionary())) {
+                    break;
+                }
+                o += k;
+            }
+            if (o != length) {
+                throw new IOException("Compressed chunk is truncated.");
+            }
+            return r;
+        } catch (DataFormatException ex) {
+            throw new IOException(ex);
+        } finally {
+            inf.end();
+        }
+    }
+}
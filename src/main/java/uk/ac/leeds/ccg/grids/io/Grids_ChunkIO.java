@@ -0,0 +1,1358 @@
+/*
+ * Copyright 2019 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.grids.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
+import uk.ac.leeds.ccg.grids.d2.chunk.Grids_Chunk;
+import uk.ac.leeds.ccg.grids.d2.chunk.b.Grids_ChunkBinaryArray;
+import uk.ac.leeds.ccg.grids.d2.chunk.b.Grids_ChunkBinarySinglet;
+import uk.ac.leeds.ccg.grids.d2.chunk.b.Grids_ChunkBooleanArray;
+import uk.ac.leeds.ccg.grids.d2.chunk.b.Grids_ChunkBooleanSinglet;
+import uk.ac.leeds.ccg.grids.d2.chunk.bd.Grids_ChunkBD;
+import uk.ac.leeds.ccg.grids.d2.chunk.bd.Grids_ChunkBDArray;
+import uk.ac.leeds.ccg.grids.d2.chunk.bd.Grids_ChunkBDMap;
+import uk.ac.leeds.ccg.grids.d2.chunk.bd.Grids_ChunkBDScaled;
+import uk.ac.leeds.ccg.grids.d2.chunk.bd.Grids_ChunkBDSinglet;
+import uk.ac.leeds.ccg.grids.d2.chunk.bd.Grids_ChunkFactoryBDArray;
+import uk.ac.leeds.ccg.grids.d2.chunk.bd.Grids_ChunkFactoryBDMap;
+import uk.ac.leeds.ccg.grids.d2.chunk.bd.Grids_ChunkFactoryBDScaled;
+import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkDouble;
+import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkDoubleArray;
+import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkDoubleMap;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkFactoryIntOffHeap;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkIntOffHeap;
+import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkFactoryDoubleOffHeap;
+import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkDoubleOffHeap;
+import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkDoubleSinglet;
+import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkFactoryDoubleArray;
+import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkFactoryDoubleMap;
+import uk.ac.leeds.ccg.grids.d2.chunk.f.Grids_ChunkFloat;
+import uk.ac.leeds.ccg.grids.d2.chunk.f.Grids_ChunkFloatArray;
+import uk.ac.leeds.ccg.grids.d2.chunk.f.Grids_ChunkFloatMap;
+import uk.ac.leeds.ccg.grids.d2.chunk.f.Grids_ChunkFloatSinglet;
+import uk.ac.leeds.ccg.grids.d2.chunk.f.Grids_ChunkFactoryFloatArray;
+import uk.ac.leeds.ccg.grids.d2.chunk.f.Grids_ChunkFactoryFloatMap;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkFactoryIntArray;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkFactoryIntMap;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkInt;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkIntArray;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkIntMap;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkIntSinglet;
+import uk.ac.leeds.ccg.grids.d2.grid.Grids_Grid;
+import uk.ac.leeds.ccg.grids.d2.grid.b.Grids_GridBinary;
+import uk.ac.leeds.ccg.grids.d2.grid.b.Grids_GridBoolean;
+import uk.ac.leeds.ccg.grids.d2.grid.bd.Grids_GridBD;
+import uk.ac.leeds.ccg.grids.d2.grid.d.Grids_GridDouble;
+import uk.ac.leeds.ccg.grids.d2.grid.f.Grids_GridFloat;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkByte;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkByteArray;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkByteMap;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkByteSinglet;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkFactoryByteArray;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkFactoryByteMap;
+import uk.ac.leeds.ccg.grids.d2.grid.i.Grids_GridByte;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkShort;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkShortArray;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkShortMap;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkShortSinglet;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkFactoryShortArray;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkFactoryShortMap;
+import uk.ac.leeds.ccg.grids.d2.grid.i.Grids_GridShort;
+import uk.ac.leeds.ccg.grids.d2.grid.i.Grids_GridInt;
+
+/**
+ * For writing and reading chunks to and from file in a compact binary format.
+ * This is an alternative to Java Object Serialization which writes class
+ * descriptors and boxes values and which for large grids dominates the time
+ * spent swapping chunks.
+ *
+ * Each file comprises a fixed length header followed by a payload:
+ * <ul>
+ * <li>Header: {@link #MAGIC} (int); {@link #VERSION} (byte); chunk type
+ * (byte); number of rows (int); number of columns (int).</li>
+ * <li>Payload: for Array and OffHeap chunks the values in row major order;
+ * for Map chunks the default value followed by position and value pairs for
+ * the cells that are not the default value terminated by a negative position;
+ * for Singlet chunks the single value; for Scaled chunks the scale (long)
+ * followed by the unscaled values (long) in row major order.</li>
+ * </ul>
+ * Values are written little endian. Binary values are packed 8 to a byte and
+ * Boolean values (which may be {@code null}) are packed 4 to a byte. A
+ * BigDecimal is written as its scale (int), the length of its unscaled value
+ * (int, -1 for null) and the bytes of its unscaled value.
+ *
+ * Files may instead be encoded using a {@link Grids_ChunkCodec} (see
+ * {@link #write(Grids_Chunk, Path, Grids_ChunkCodec)}). An encoded file
+ * comprises a header followed by the encoded bytes of the format above:
+ * {@link #MAGIC_ENCODED} (int); {@link #VERSION} (byte); codec (byte); value
+ * length (byte); decoded length (int); encoded length (int).
+ *
+ * Files are written and read via a {@link FileChannel} using a direct
+ * {@link ByteBuffer} reused per thread. Files written using Java Object
+ * Serialization do not start with {@link #MAGIC} or {@link #MAGIC_ENCODED}
+ * and so can be distinguished and read as before.
+ *
+ * @author Andy Turner
+ * @version 1.0.0
+ */
+public class Grids_ChunkIO {
+
+    /**
+     * The first 4 bytes of a file in this format ("GRDC").
+     */
+    public static final int MAGIC = 0x47524443;
+
+    /**
+     * The first 4 bytes of an encoded file ("GRDE").
+     */
+    public static final int MAGIC_ENCODED = 0x47524445;
+
+    /**
+     * The current version of the format.
+     */
+    public static final byte VERSION = 1;
+
+    /**
+     * The number of bytes in the header.
+     */
+    public static final int HEADER_LENGTH = 14;
+
+    /**
+     * The number of bytes in the header of an encoded file.
+     */
+    public static final int ENCODED_HEADER_LENGTH = 15;
+
+    /**
+     * Chunk type codes.
+     */
+    public static final byte TYPE_DOUBLE_ARRAY = 1;
+    public static final byte TYPE_DOUBLE_MAP = 2;
+    public static final byte TYPE_DOUBLE_SINGLET = 3;
+    public static final byte TYPE_INT_ARRAY = 4;
+    public static final byte TYPE_INT_MAP = 5;
+    public static final byte TYPE_INT_SINGLET = 6;
+    public static final byte TYPE_BD_ARRAY = 7;
+    public static final byte TYPE_BD_MAP = 8;
+    public static final byte TYPE_BD_SINGLET = 9;
+    public static final byte TYPE_BINARY_ARRAY = 10;
+    public static final byte TYPE_BINARY_SINGLET = 11;
+    public static final byte TYPE_BOOLEAN_ARRAY = 12;
+    public static final byte TYPE_BOOLEAN_SINGLET = 13;
+    public static final byte TYPE_FLOAT_ARRAY = 14;
+    public static final byte TYPE_FLOAT_MAP = 15;
+    public static final byte TYPE_FLOAT_SINGLET = 16;
+    public static final byte TYPE_SHORT_ARRAY = 17;
+    public static final byte TYPE_SHORT_MAP = 18;
+    public static final byte TYPE_SHORT_SINGLET = 19;
+    public static final byte TYPE_BYTE_ARRAY = 20;
+    public static final byte TYPE_BYTE_MAP = 21;
+    public static final byte TYPE_BYTE_SINGLET = 22;
+    public static final byte TYPE_DOUBLE_OFF_HEAP = 23;
+    public static final byte TYPE_INT_OFF_HEAP = 24;
+    public static final byte TYPE_BD_SCALED = 25;
+
+    /**
+     * The capacity of the direct buffers used for writing and reading.
+     */
+    protected static final int BUFFER_CAPACITY = 1 << 16;
+
+    /**
+     * Direct buffers are relatively expensive to allocate so one is kept for
+     * each thread (chunks may be swapped in parallel).
+     */
+    private static final ThreadLocal<ByteBuffer> BUFFER
+            = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(
+                    BUFFER_CAPACITY).order(ByteOrder.LITTLE_ENDIAN));
+
+    private Grids_ChunkIO() {
+    }
+
+    /**
+     * @param type The type code.
+     * @return The number of bytes in each value written for chunks of type
+     * {@code type} if the values are written as an array of fixed length
+     * values straight after the header, otherwise {@code 1}.
+     */
+    public static int getValueLength(byte type) {
+        switch (type) {
+            case TYPE_DOUBLE_ARRAY:
+            case TYPE_DOUBLE_OFF_HEAP:
+            case TYPE_BD_SCALED:
+                return 8;
+            case TYPE_FLOAT_ARRAY:
+            case TYPE_INT_ARRAY:
+            case TYPE_INT_OFF_HEAP:
+                return 4;
+            case TYPE_SHORT_ARRAY:
+                return 2;
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * @param c The chunk.
+     * @return The type code for {@code c} or {@code 0} if {@code c} is not of
+     * a type that can be written in this format.
+     */
+    public static byte getType(Grids_Chunk c) {
+        if (c instanceof Grids_ChunkDoubleArray) {
+            return TYPE_DOUBLE_ARRAY;
+        } else if (c instanceof Grids_ChunkDoubleMap) {
+            return TYPE_DOUBLE_MAP;
+        } else if (c instanceof Grids_ChunkDoubleSinglet) {
+            return TYPE_DOUBLE_SINGLET;
+        } else if (c instanceof Grids_ChunkDoubleOffHeap) {
+            return TYPE_DOUBLE_OFF_HEAP;
+        } else if (c instanceof Grids_ChunkFloatArray) {
+            return TYPE_FLOAT_ARRAY;
+        } else if (c instanceof Grids_ChunkFloatMap) {
+            return TYPE_FLOAT_MAP;
+        } else if (c instanceof Grids_ChunkFloatSinglet) {
+            return TYPE_FLOAT_SINGLET;
+        } else if (c instanceof Grids_ChunkShortArray) {
+            return TYPE_SHORT_ARRAY;
+        } else if (c instanceof Grids_ChunkShortMap) {
+            return TYPE_SHORT_MAP;
+        } else if (c instanceof Grids_ChunkShortSinglet) {
+            return TYPE_SHORT_SINGLET;
+        } else if (c instanceof Grids_ChunkByteArray) {
+            return TYPE_BYTE_ARRAY;
+        } else if (c instanceof Grids_ChunkByteMap) {
+            return TYPE_BYTE_MAP;
+        } else if (c instanceof Grids_ChunkByteSinglet) {
+            return TYPE_BYTE_SINGLET;
+        } else if (c instanceof Grids_ChunkIntArray) {
+            return TYPE_INT_ARRAY;
+        } else if (c instanceof Grids_ChunkIntMap) {
+            return TYPE_INT_MAP;
+        } else if (c instanceof Grids_ChunkIntSinglet) {
+            return TYPE_INT_SINGLET;
+        } else if (c instanceof Grids_ChunkIntOffHeap) {
+            return TYPE_INT_OFF_HEAP;
+        } else if (c instanceof Grids_ChunkBDArray) {
+            return TYPE_BD_ARRAY;
+        } else if (c instanceof Grids_ChunkBDMap) {
+            return TYPE_BD_MAP;
+        } else if (c instanceof Grids_ChunkBDSinglet) {
+            return TYPE_BD_SINGLET;
+        } else if (c instanceof Grids_ChunkBDScaled) {
+            return TYPE_BD_SCALED;
+        } else if (c instanceof Grids_ChunkBinaryArray) {
+            return TYPE_BINARY_ARRAY;
+        } else if (c instanceof Grids_ChunkBinarySinglet) {
+            return TYPE_BINARY_SINGLET;
+        } else if (c instanceof Grids_ChunkBooleanArray) {
+            return TYPE_BOOLEAN_ARRAY;
+        } else if (c instanceof Grids_ChunkBooleanSinglet) {
+            return TYPE_BOOLEAN_SINGLET;
+        }
+        return 0;
+    }
+
+    /**
+     * Writes {@code c} to the file {@code p}.
+     *
+     * @param c The chunk to write.
+     * @param p The path of the file to write to.
+     * @return The number of bytes written or {@code -1} if {@code c} is not of
+     * a type that can be written in this format (in which case nothing is
+     * written).
+     * @throws IOException If encountered.
+     */
+    public static long write(Grids_Chunk c, Path p) throws IOException {
+        if (getType(c) == 0) {
+            return -1L;
+        }
+        try (FileChannel fc = FileChannel.open(p, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            return write(c, fc);
+        }
+    }
+
+    /**
+     * Writes {@code c} to the file {@code p} encoded using {@code codec}.
+     *
+     * @param c The chunk to write.
+     * @param p The path of the file to write to.
+     * @param codec The codec. If this is {@code null} or of type
+     * {@link Grids_ChunkCodec#NONE} then {@code c} is written as for
+     * {@link #write(Grids_Chunk, Path)}.
+     * @return The number of bytes written or {@code -1} if {@code c} is not of
+     * a type that can be written in this format (in which case nothing is
+     * written).
+     * @throws IOException If encountered.
+     */
+    public static long write(Grids_Chunk c, Path p, Grids_ChunkCodec codec)
+            throws IOException {
+        if (codec == null || codec.getType() == Grids_ChunkCodec.NONE) {
+            return write(c, p);
+        }
+        byte[] raw = toBytes(c);
+        if (raw == null) {
+            return -1L;
+        }
+        int width = getValueLength(getType(c));
+        byte[] e = codec.encode(raw, width);
+        try (FileChannel fc = FileChannel.open(p, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            Out o = new Out(fc);
+            ByteBuffer b = o.ensure(ENCODED_HEADER_LENGTH);
+            b.putInt(MAGIC_ENCODED);
+            b.put(VERSION);
+            b.put(codec.getType());
+            b.put((byte) width);
+            b.putInt(raw.length);
+            b.putInt(e.length);
+            o.putBytes(e);
+            o.flush();
+            return o.n;
+        }
+    }
+
+    /**
+     * @param c The chunk to write.
+     * @return The bytes of {@code c} as they would be written to file or
+     * {@code null} if {@code c} is not of a type that can be written in this
+     * format.
+     * @throws IOException If encountered.
+     */
+    public static byte[] toBytes(Grids_Chunk c) throws IOException {
+        if (getType(c) == 0) {
+            return null;
+        }
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        write(c, Channels.newChannel(bos));
+        return bos.toByteArray();
+    }
+
+    /**
+     * Writes {@code c} to {@code ch}. The channel is not closed.
+     *
+     * @param c The chunk to write.
+     * @param ch The channel to write to.
+     * @return The number of bytes written or {@code -1} if {@code c} is not of
+     * a type that can be written in this format (in which case nothing is
+     * written).
+     * @throws IOException If encountered.
+     */
+    public static long write(Grids_Chunk c, WritableByteChannel ch)
+            throws IOException {
+        byte type = getType(c);
+        if (type == 0) {
+            return -1L;
+        }
+        Grids_Grid g = c.getGrid();
+        Grids_2D_ID_int i = c.getId();
+        int nrows = g.getChunkNRows(i);
+        int ncols = g.getChunkNCols(i);
+        {
+            Out o = new Out(ch);
+            ByteBuffer b = o.ensure(HEADER_LENGTH);
+            b.putInt(MAGIC);
+            b.put(VERSION);
+            b.put(type);
+            b.putInt(nrows);
+            b.putInt(ncols);
+            switch (type) {
+                case TYPE_DOUBLE_ARRAY:
+                case TYPE_DOUBLE_OFF_HEAP:
+                    writeDoubleArray(o, (Grids_ChunkDouble) c, nrows, ncols);
+                    break;
+                case TYPE_DOUBLE_MAP:
+                    writeDoubleMap(o, (Grids_ChunkDoubleMap) c, nrows, ncols);
+                    break;
+                case TYPE_DOUBLE_SINGLET:
+                    o.ensure(8).putDouble(((Grids_ChunkDoubleSinglet) c).getV());
+                    break;
+                case TYPE_FLOAT_ARRAY:
+                    writeFloatArray(o, (Grids_ChunkFloat) c, nrows, ncols);
+                    break;
+                case TYPE_FLOAT_MAP:
+                    writeFloatMap(o, (Grids_ChunkFloatMap) c, nrows, ncols);
+                    break;
+                case TYPE_FLOAT_SINGLET:
+                    o.ensure(4).putFloat(((Grids_ChunkFloatSinglet) c).getV());
+                    break;
+                case TYPE_SHORT_ARRAY:
+                    writeShortArray(o, (Grids_ChunkShort) c, nrows, ncols);
+                    break;
+                case TYPE_SHORT_MAP:
+                    writeShortMap(o, (Grids_ChunkShortMap) c, nrows, ncols);
+                    break;
+                case TYPE_SHORT_SINGLET:
+                    o.ensure(2).putShort(((Grids_ChunkShortSinglet) c).getV());
+                    break;
+                case TYPE_BYTE_ARRAY:
+                    writeByteArray(o, (Grids_ChunkByte) c, nrows, ncols);
+                    break;
+                case TYPE_BYTE_MAP:
+                    writeByteMap(o, (Grids_ChunkByteMap) c, nrows, ncols);
+                    break;
+                case TYPE_BYTE_SINGLET:
+                    o.ensure(1).put(((Grids_ChunkByteSinglet) c).getV());
+                    break;
+                case TYPE_INT_ARRAY:
+                case TYPE_INT_OFF_HEAP:
+                    writeIntArray(o, (Grids_ChunkInt) c, nrows, ncols);
+                    break;
+                case TYPE_INT_MAP:
+                    writeIntMap(o, (Grids_ChunkIntMap) c, nrows, ncols);
+                    break;
+                case TYPE_INT_SINGLET:
+                    o.ensure(4).putInt(((Grids_ChunkIntSinglet) c).v);
+                    break;
+                case TYPE_BD_ARRAY:
+                    writeBDArray(o, (Grids_ChunkBD) c, nrows, ncols);
+                    break;
+                case TYPE_BD_MAP:
+                    writeBDMap(o, (Grids_ChunkBDMap) c, nrows, ncols);
+                    break;
+                case TYPE_BD_SINGLET:
+                    o.putBigDecimal(((Grids_ChunkBDSinglet) c).v);
+                    break;
+                case TYPE_BD_SCALED:
+                    writeBDScaled(o, (Grids_ChunkBDScaled) c, nrows, ncols);
+                    break;
+                case TYPE_BINARY_ARRAY:
+                    writeBinaryArray(o, (Grids_ChunkBinaryArray) c, nrows,
+                            ncols);
+                    break;
+                case TYPE_BINARY_SINGLET:
+                    o.ensure(1).put(((Grids_ChunkBinarySinglet) c).v
+                            ? (byte) 1 : (byte) 0);
+                    break;
+                case TYPE_BOOLEAN_ARRAY:
+                    writeBooleanArray(o, (Grids_ChunkBooleanArray) c, nrows,
+                            ncols);
+                    break;
+                default:
+                    o.ensure(1).put(encode(((Grids_ChunkBooleanSinglet) c).v));
+            }
+            o.flush();
+            return o.n;
+        }
+    }
+
+    private static void writeDoubleArray(Out o, Grids_ChunkDouble c,
+            int nrows, int ncols) throws IOException {
+        double[] vs = new double[ncols];
+        for (int row = 0; row < nrows; row++) {
+            c.getRow(row, vs, 0);
+            o.putDoubles(vs);
+        }
+    }
+
+    private static void writeDoubleMap(Out o, Grids_ChunkDoubleMap c,
+            int nrows, int ncols) throws IOException {
+        double dv = c.defaultValue;
+        o.ensure(8).putDouble(dv);
+        int pos = 0;
+        for (int row = 0; row < nrows; row++) {
+            for (int col = 0; col < ncols; col++) {
+                double v = c.getCell(row, col);
+                if (Double.compare(v, dv) != 0) {
+                    o.ensure(12).putInt(pos).putDouble(v);
+                }
+                pos++;
+            }
+        }
+        o.ensure(4).putInt(-1);
+    }
+
+    private static void writeFloatArray(Out o, Grids_ChunkFloat c,
+            int nrows, int ncols) throws IOException {
+        float[] vs = new float[ncols];
+        for (int row = 0; row < nrows; row++) {
+            c.getRow(row, vs, 0);
+            o.putFloats(vs);
+        }
+    }
+
+    private static void writeFloatMap(Out o, Grids_ChunkFloatMap c,
+            int nrows, int ncols) throws IOException {
+        float dv = c.defaultValue;
+        o.ensure(4).putFloat(dv);
+        int pos = 0;
+        for (int row = 0; row < nrows; row++) {
+            for (int col = 0; col < ncols; col++) {
+                float v = c.getCell(row, col);
+                if (Float.compare(v, dv) != 0) {
+                    o.ensure(8).putInt(pos).putFloat(v);
+                }
+                pos++;
+            }
+        }
+        o.ensure(4).putInt(-1);
+    }
+
+    private static void writeShortArray(Out o, Grids_ChunkShort c,
+            int nrows, int ncols) throws IOException {
+        short[] vs = new short[ncols];
+        for (int row = 0; row < nrows; row++) {
+            c.getRow(row, vs, 0);
+            o.putShorts(vs);
+        }
+    }
+
+    private static void writeShortMap(Out o, Grids_ChunkShortMap c,
+            int nrows, int ncols) throws IOException {
+        short dv = c.defaultValue;
+        o.ensure(2).putShort(dv);
+        int pos = 0;
+        for (int row = 0; row < nrows; row++) {
+            for (int col = 0; col < ncols; col++) {
+                short v = c.getCell(row, col);
+                if (v != dv) {
+                    o.ensure(6).putInt(pos).putShort(v);
+                }
+                pos++;
+            }
+        }
+        o.ensure(4).putInt(-1);
+    }
+
+    private static void writeByteArray(Out o, Grids_ChunkByte c,
+            int nrows, int ncols) throws IOException {
+        byte[] vs = new byte[ncols];
+        for (int row = 0; row < nrows; row++) {
+            c.getRow(row, vs, 0);
+            o.putBytes(vs);
+        }
+    }
+
+    private static void writeByteMap(Out o, Grids_ChunkByteMap c,
+            int nrows, int ncols) throws IOException {
+        byte dv = c.defaultValue;
+        o.ensure(1).put(dv);
+        int pos = 0;
+        for (int row = 0; row < nrows; row++) {
+            for (int col = 0; col < ncols; col++) {
+                byte v = c.getCell(row, col);
+                if (v != dv) {
+                    o.ensure(5).putInt(pos).put(v);
+                }
+                pos++;
+            }
+        }
+        o.ensure(4).putInt(-1);
+    }
+
+    private static void writeIntArray(Out o, Grids_ChunkInt c, int nrows,
+            int ncols) throws IOException {
+        int[] vs = new int[ncols];
+        for (int row = 0; row < nrows; row++) {
+            c.getRow(row, vs, 0);
+            o.putInts(vs);
+        }
+    }
+
+    private static void writeIntMap(Out o, Grids_ChunkIntMap c, int nrows,
+            int ncols) throws IOException {
+        int dv = c.defaultValue;
+        o.ensure(4).putInt(dv);
+        int pos = 0;
+        for (int row = 0; row < nrows; row++) {
+            for (int col = 0; col < ncols; col++) {
+                int v = c.getCell(row, col);
+                if (v != dv) {
+                    o.ensure(8).putInt(pos).putInt(v);
+                }
+                pos++;
+            }
+        }
+        o.ensure(4).putInt(-1);
+    }
+
+    private static void writeBDArray(Out o, Grids_ChunkBD c, int nrows,
+            int ncols) throws IOException {
+        for (int row = 0; row < nrows; row++) {
+            for (int col = 0; col < ncols; col++) {
+                o.putBigDecimal(c.getCell(row, col));
+            }
+        }
+    }
+
+    private static void writeBDScaled(Out o, Grids_ChunkBDScaled c,
+            int nrows, int ncols) throws IOException {
+        o.ensure(8).putLong(c.getScale());
+        for (int row = 0; row < nrows; row++) {
+            for (int col = 0; col < ncols; col++) {
+                o.ensure(8).putLong(c.getUnscaled(row, col));
+            }
+        }
+    }
+
+    private static void writeBDMap(Out o, Grids_ChunkBDMap c, int nrows,
+            int ncols) throws IOException {
+        BigDecimal dv = c.defaultValue;
+        o.putBigDecimal(dv);
+        int pos = 0;
+        for (int row = 0; row < nrows; row++) {
+            for (int col = 0; col < ncols; col++) {
+                BigDecimal v = c.getCell(row, col);
+                if (v == null ? dv != null : !v.equals(dv)) {
+                    o.ensure(4).putInt(pos);
+                    o.putBigDecimal(v);
+                }
+                pos++;
+            }
+        }
+        o.ensure(4).putInt(-1);
+    }
+
+    private static void writeBinaryArray(Out o, Grids_ChunkBinaryArray c,
+            int nrows, int ncols) throws IOException {
+        int bits = 0;
+        int n = 0;
+        for (int row = 0; row < nrows; row++) {
+            for (int col = 0; col < ncols; col++) {
+                if (c.getCell(row, col)) {
+                    bits |= 1 << n;
+                }
+                n++;
+                if (n == 8) {
+                    o.ensure(1).put((byte) bits);
+                    bits = 0;
+                    n = 0;
+                }
+            }
+        }
+        if (n > 0) {
+            o.ensure(1).put((byte) bits);
+        }
+    }
+
+    private static void writeBooleanArray(Out o, Grids_ChunkBooleanArray c,
+            int nrows, int ncols) throws IOException {
+        int bits = 0;
+        int n = 0;
+        for (int row = 0; row < nrows; row++) {
+            for (int col = 0; col < ncols; col++) {
+                bits |= encode(c.getCell(row, col)) << (n << 1);
+                n++;
+                if (n == 4) {
+                    o.ensure(1).put((byte) bits);
+                    bits = 0;
+                    n = 0;
+                }
+            }
+        }
+        if (n > 0) {
+            o.ensure(1).put((byte) bits);
+        }
+    }
+
+    /**
+     * @param v The value to encode.
+     * @return 0 for null, 1 for false and 2 for true.
+     */
+    private static byte encode(Boolean v) {
+        if (v == null) {
+            return 0;
+        }
+        return v ? (byte) 2 : (byte) 1;
+    }
+
+    /**
+     * @param b The code to decode.
+     * @return null for 0, false for 1 and true for 2.
+     */
+    private static Boolean decode(int b) {
+        switch (b) {
+            case 1:
+                return Boolean.FALSE;
+            case 2:
+                return Boolean.TRUE;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @param p The path of a chunk file.
+     * @return {@code true} if {@code p} starts with {@link #MAGIC} or
+     * {@link #MAGIC_ENCODED}.
+     * @throws IOException If encountered.
+     */
+    public static boolean isChunkIOFile(Path p) throws IOException {
+        try (In in = new In(FileChannel.open(p, StandardOpenOption.READ))) {
+            if (!in.fill(4)) {
+                return false;
+            }
+            int magic = in.b.getInt();
+            return magic == MAGIC || magic == MAGIC_ENCODED;
+        }
+    }
+
+    /**
+     * Reads a chunk of {@code g} with chunk ID {@code i} from the file
+     * {@code p}.
+     *
+     * @param g The grid the chunk is of.
+     * @param i The chunk ID.
+     * @param p The path of the file to read from.
+     * @return The chunk read or {@code null} if {@code p} was not written in
+     * this format (e.g. it was written using Java Object Serialization).
+     * @throws IOException If encountered, including if the file is of a
+     * version that is not supported or for a chunk of a different type or size
+     * to that expected for {@code g}.
+     */
+    public static Grids_Chunk read(Grids_Grid g, Grids_2D_ID_int i, Path p)
+            throws IOException {
+        try (In in = new In(FileChannel.open(p, StandardOpenOption.READ))) {
+            return read(g, i, in, p);
+        }
+    }
+
+    /**
+     * Reads a chunk of {@code g} with chunk ID {@code i} from {@code b}.
+     *
+     * @param g The grid the chunk is of.
+     * @param i The chunk ID.
+     * @param b The bytes of the chunk as returned from
+     * {@link #toBytes(Grids_Chunk)}.
+     * @return The chunk read or {@code null} if {@code b} was not written in
+     * this format.
+     * @throws IOException If encountered (as for
+     * {@link #read(Grids_Grid, Grids_2D_ID_int, Path)}).
+     */
+    public static Grids_Chunk read(Grids_Grid g, Grids_2D_ID_int i, byte[] b)
+            throws IOException {
+        try (In in = new In(Channels.newChannel(new ByteArrayInputStream(b)))) {
+            return read(g, i, in, "memory");
+        }
+    }
+
+    /**
+     * Reads the rest of an encoded file the magic number of which has been
+     * read from {@code in}. The decoding is counted by the codec of {@code g}
+     * if it has one.
+     *
+     * @param g The grid the chunk is of.
+     * @param i The chunk ID.
+     * @param in The input to read from.
+     * @param p Where {@code in} is from for reporting errors.
+     * @return The chunk read.
+     */
+    private static Grids_Chunk readEncoded(Grids_Grid g, Grids_2D_ID_int i,
+            In in, Object p) throws IOException {
+        ByteBuffer b = in.ensure(ENCODED_HEADER_LENGTH - 4);
+        byte version = b.get();
+        if (version > VERSION || version < 1) {
+            throw new IOException("Unsupported chunk file version " + version
+                    + " in " + p);
+        }
+        byte type = b.get();
+        int width = b.get();
+        int length = b.getInt();
+        byte[] e = new byte[b.getInt()];
+        in.getBytes(e);
+        Grids_ChunkCodec codec = g.getCodec();
+        byte[] raw;
+        if (codec == null) {
+            raw = Grids_ChunkCodec.decodeBytes(type, e, length, width);
+        } else {
+            raw = codec.decode(type, e, length, width);
+        }
+        // The buffer of in is reused by this thread, but in is done with.
+        return read(g, i, raw);
+    }
+
+    /**
+     * @param g The grid the chunk is of.
+     * @param i The chunk ID.
+     * @param in The input to read from.
+     * @param p Where {@code in} is from for reporting errors.
+     * @return The chunk read or {@code null} if {@code in} is not in this
+     * format.
+     */
+    private static Grids_Chunk read(Grids_Grid g, Grids_2D_ID_int i, In in,
+            Object p) throws IOException {
+        {
+            if (!in.fill(4)) {
+                return null;
+            }
+            ByteBuffer b = in.b;
+            int magic = b.getInt();
+            if (magic == MAGIC_ENCODED) {
+                return readEncoded(g, i, in, p);
+            }
+            if (magic != MAGIC) {
+                return null;
+            }
+            b = in.ensure(HEADER_LENGTH - 4);
+            byte version = b.get();
+            if (version > VERSION || version < 1) {
+                throw new IOException("Unsupported chunk file version "
+                        + version + " in " + p);
+            }
+            byte type = b.get();
+            int nrows = b.getInt();
+            int ncols = b.getInt();
+            if (nrows != g.getChunkNRows(i) || ncols != g.getChunkNCols(i)) {
+                throw new IOException("Chunk dimensions " + nrows + " by "
+                        + ncols + " in " + p + " do not match those of chunk "
+                        + i.toString());
+            }
+            Grids_Chunk r;
+            if (g instanceof Grids_GridDouble) {
+                r = readDouble(in, (Grids_GridDouble) g, i, type, nrows, ncols);
+            } else if (g instanceof Grids_GridFloat) {
+                r = readFloat(in, (Grids_GridFloat) g, i, type, nrows, ncols);
+            } else if (g instanceof Grids_GridShort) {
+                r = readShort(in, (Grids_GridShort) g, i, type, nrows, ncols);
+            } else if (g instanceof Grids_GridByte) {
+                r = readByte(in, (Grids_GridByte) g, i, type, nrows, ncols);
+            } else if (g instanceof Grids_GridInt) {
+                r = readInt(in, (Grids_GridInt) g, i, type, nrows, ncols);
+            } else if (g instanceof Grids_GridBD) {
+                r = readBD(in, (Grids_GridBD) g, i, type, nrows, ncols);
+            } else if (g instanceof Grids_GridBinary) {
+                r = readBinary(in, (Grids_GridBinary) g, i, type, nrows,
+                        ncols);
+            } else if (g instanceof Grids_GridBoolean) {
+                r = readBoolean(in, (Grids_GridBoolean) g, i, type, nrows,
+                        ncols);
+            } else {
+                r = null;
+            }
+            if (r == null) {
+                throw new IOException("Chunk type " + type + " in " + p
+                        + " is not supported for " + g.getClass().getName());
+            }
+            r.setCacheUpToDate(true);
+            return r;
+        }
+    }
+
+    private static Grids_Chunk readDouble(In in, Grids_GridDouble g,
+            Grids_2D_ID_int i, byte type, int nrows, int ncols)
+            throws IOException {
+        switch (type) {
+            case TYPE_DOUBLE_ARRAY:
+                Grids_ChunkDoubleArray a = new Grids_ChunkFactoryDoubleArray()
+                        .create(g, i);
+                double[] vs = new double[ncols];
+                for (int row = 0; row < nrows; row++) {
+                    in.getDoubles(vs);
+                    a.setRow(row, vs, 0);
+                }
+                return a;
+            case TYPE_DOUBLE_OFF_HEAP:
+                Grids_ChunkDoubleOffHeap h
+                        = new Grids_ChunkFactoryDoubleOffHeap().create(g, i);
+                double[] hs = new double[ncols];
+                for (int row = 0; row < nrows; row++) {
+                    in.getDoubles(hs);
+                    h.setRow(row, hs, 0);
+                }
+                return h;
+            case TYPE_DOUBLE_MAP:
+                Grids_ChunkDoubleMap m = new Grids_ChunkFactoryDoubleMap()
+                        .create(g, i, in.ensure(8).getDouble());
+                int pos = in.ensure(4).getInt();
+                while (pos >= 0) {
+                    m.initCell(pos / ncols, pos % ncols,
+                            in.ensure(8).getDouble());
+                    pos = in.ensure(4).getInt();
+                }
+                return m;
+            case TYPE_DOUBLE_SINGLET:
+                return new Grids_ChunkDoubleSinglet(g, i,
+                        in.ensure(8).getDouble());
+            default:
+                return null;
+        }
+    }
+
+    private static Grids_Chunk readFloat(In in, Grids_GridFloat g,
+            Grids_2D_ID_int i, byte type, int nrows, int ncols)
+            throws IOException {
+        switch (type) {
+            case TYPE_FLOAT_ARRAY:
+                Grids_ChunkFloatArray a = new Grids_ChunkFactoryFloatArray()
+                        .create(g, i);
+                float[] vs = new float[ncols];
+                for (int row = 0; row < nrows; row++) {
+                    in.getFloats(vs);
+                    a.setRow(row, vs, 0);
+                }
+                return a;
+            case TYPE_FLOAT_MAP:
+                Grids_ChunkFloatMap m = new Grids_ChunkFactoryFloatMap()
+                        .create(g, i, in.ensure(4).getFloat());
+                int pos = in.ensure(4).getInt();
+                while (pos >= 0) {
+                    m.initCell(pos / ncols, pos % ncols,
+                            in.ensure(4).getFloat());
+                    pos = in.ensure(4).getInt();
+                }
+                return m;
+            case TYPE_FLOAT_SINGLET:
+                return new Grids_ChunkFloatSinglet(g, i,
+                        in.ensure(4).getFloat());
+            default:
+                return null;
+        }
+    }
+
+    private static Grids_Chunk readShort(In in, Grids_GridShort g,
+            Grids_2D_ID_int i, byte type, int nrows, int ncols)
+            throws IOException {
+        switch (type) {
+            case TYPE_SHORT_ARRAY:
+                Grids_ChunkShortArray a = new Grids_ChunkFactoryShortArray()
+                        .create(g, i);
+                short[] vs = new short[ncols];
+                for (int row = 0; row < nrows; row++) {
+                    in.getShorts(vs);
+                    a.setRow(row, vs, 0);
+                }
+                return a;
+            case TYPE_SHORT_MAP:
+                Grids_ChunkShortMap m = new Grids_ChunkFactoryShortMap()
+                        .create(g, i, in.ensure(2).getShort());
+                int pos = in.ensure(4).getInt();
+                while (pos >= 0) {
+                    m.initCell(pos / ncols, pos % ncols,
+                            in.ensure(2).getShort());
+                    pos = in.ensure(4).getInt();
+                }
+                return m;
+            case TYPE_SHORT_SINGLET:
+                return new Grids_ChunkShortSinglet(g, i,
+                        in.ensure(2).getShort());
+            default:
+                return null;
+        }
+    }
+
+    private static Grids_Chunk readByte(In in, Grids_GridByte g,
+            Grids_2D_ID_int i, byte type, int nrows, int ncols)
+            throws IOException {
+        switch (type) {
+            case TYPE_BYTE_ARRAY:
+                Grids_ChunkByteArray a = new Grids_ChunkFactoryByteArray()
+                        .create(g, i);
+                byte[] vs = new byte[ncols];
+                for (int row = 0; row < nrows; row++) {
+                    in.getBytes(vs);
+                    a.setRow(row, vs, 0);
+                }
+                return a;
+            case TYPE_BYTE_MAP:
+                Grids_ChunkByteMap m = new Grids_ChunkFactoryByteMap()
+                        .create(g, i, in.ensure(1).get());
+                int pos = in.ensure(4).getInt();
+                while (pos >= 0) {
+                    m.initCell(pos / ncols, pos % ncols,
+                            in.ensure(1).get());
+                    pos = in.ensure(4).getInt();
+                }
+                return m;
+            case TYPE_BYTE_SINGLET:
+                return new Grids_ChunkByteSinglet(g, i,
+                        in.ensure(1).get());
+            default:
+                return null;
+        }
+    }
+
+    private static Grids_Chunk readInt(In in, Grids_GridInt g,
+            Grids_2D_ID_int i, byte type, int nrows, int ncols)
+            throws IOException {
+        switch (type) {
+            case TYPE_INT_ARRAY:
+                Grids_ChunkIntArray a = new Grids_ChunkFactoryIntArray()
+                        .create(g, i);
+                int[] vs = new int[ncols];
+                for (int row = 0; row < nrows; row++) {
+                    in.getInts(vs);
+                    a.setRow(row, vs, 0);
+                }
+                return a;
+            case TYPE_INT_OFF_HEAP:
+                Grids_ChunkIntOffHeap h = new Grids_ChunkFactoryIntOffHeap()
+                        .create(g, i);
+                int[] hs = new int[ncols];
+                for (int row = 0; row < nrows; row++) {
+                    in.getInts(hs);
+                    h.setRow(row, hs, 0);
+                }
+                return h;
+            case TYPE_INT_MAP:
+                Grids_ChunkIntMap m = new Grids_ChunkFactoryIntMap()
+                        .create(g, i, in.ensure(4).getInt());
+                int pos = in.ensure(4).getInt();
+                while (pos >= 0) {
+                    m.initCell(pos / ncols, pos % ncols, in.ensure(4).getInt());
+                    pos = in.ensure(4).getInt();
+                }
+                return m;
+            case TYPE_INT_SINGLET:
+                return new Grids_ChunkIntSinglet(g, i, in.ensure(4).getInt());
+            default:
+                return null;
+        }
+    }
+
+    private static Grids_Chunk readBD(In in, Grids_GridBD g,
+            Grids_2D_ID_int i, byte type, int nrows, int ncols)
+            throws IOException {
+        switch (type) {
+            case TYPE_BD_ARRAY:
+                Grids_ChunkBDArray a = new Grids_ChunkFactoryBDArray()
+                        .create(g, i);
+                for (int row = 0; row < nrows; row++) {
+                    for (int col = 0; col < ncols; col++) {
+                        a.initCell(row, col, in.getBigDecimal());
+                    }
+                }
+                return a;
+            case TYPE_BD_MAP:
+                Grids_ChunkBDMap m = new Grids_ChunkFactoryBDMap()
+                        .create(g, i, in.getBigDecimal());
+                int pos = in.ensure(4).getInt();
+                while (pos >= 0) {
+                    m.initCell(pos / ncols, pos % ncols, in.getBigDecimal());
+                    pos = in.ensure(4).getInt();
+                }
+                return m;
+            case TYPE_BD_SINGLET:
+                return new Grids_ChunkBDSinglet(g, i, in.getBigDecimal());
+            case TYPE_BD_SCALED:
+                Grids_ChunkBDScaled s = new Grids_ChunkFactoryBDScaled(
+                        (int) in.ensure(8).getLong()).create(g, i);
+                for (int row = 0; row < nrows; row++) {
+                    for (int col = 0; col < ncols; col++) {
+                        s.initUnscaled(row, col, in.ensure(8).getLong());
+                    }
+                }
+                return s;
+            default:
+                return null;
+        }
+    }
+
+    private static Grids_Chunk readBinary(In in, Grids_GridBinary g,
+            Grids_2D_ID_int i, byte type, int nrows, int ncols)
+            throws IOException {
+        switch (type) {
+            case TYPE_BINARY_ARRAY:
+                Grids_ChunkBinaryArray a = new Grids_ChunkBinaryArray(g, i);
+                int bits = 0;
+                int n = 8;
+                for (int row = 0; row < nrows; row++) {
+                    for (int col = 0; col < ncols; col++) {
+                        if (n == 8) {
+                            bits = in.ensure(1).get();
+                            n = 0;
+                        }
+                        a.initCell(row, col, ((bits >>> n) & 1) == 1);
+                        n++;
+                    }
+                }
+                return a;
+            case TYPE_BINARY_SINGLET:
+                return new Grids_ChunkBinarySinglet(g, i,
+                        in.ensure(1).get() == 1);
+            default:
+                return null;
+        }
+    }
+
+    private static Grids_Chunk readBoolean(In in, Grids_GridBoolean g,
+            Grids_2D_ID_int i, byte type, int nrows, int ncols)
+            throws IOException {
+        switch (type) {
+            case TYPE_BOOLEAN_ARRAY:
+                Grids_ChunkBooleanArray a = new Grids_ChunkBooleanArray(g, i);
+                int bits = 0;
+                int n = 4;
+                for (int row = 0; row < nrows; row++) {
+                    for (int col = 0; col < ncols; col++) {
+                        if (n == 4) {
+                            bits = in.ensure(1).get();
+                            n = 0;
+                        }
+                        a.initCell(row, col, decode((bits >>> (n << 1)) & 3));
+                        n++;
+                    }
+                }
+                return a;
+            case TYPE_BOOLEAN_SINGLET:
+                return new Grids_ChunkBooleanSinglet(g, i,
+                        decode(in.ensure(1).get()));
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * For buffered writing to a channel.
+     */
+    private static class Out {
+
+        final WritableByteChannel fc;
+
+        final ByteBuffer b;
+
+        /**
+         * The number of bytes written.
+         */
+        long n;
+
+        Out(WritableByteChannel ch) {
+            fc = ch;
+            b = BUFFER.get();
+            b.clear();
+        }
+
+        /**
+         * @param k The number of bytes to be put.
+         * @return The buffer with at least {@code k} bytes remaining.
+         */
+        ByteBuffer ensure(int k) throws IOException {
+            if (b.remaining() < k) {
+                flush();
+            }
+            return b;
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            int off = 0;
+            while (off < bytes.length) {
+                int len = Math.min(b.remaining(), bytes.length - off);
+                b.put(bytes, off, len);
+                off += len;
+                if (off < bytes.length) {
+                    flush();
+                }
+            }
+        }
+
+        void putDoubles(double[] vs) throws IOException {
+            int off = 0;
+            while (off < vs.length) {
+                int len = Math.min(b.remaining() / 8, vs.length - off);
+                if (len == 0) {
+                    flush();
+                } else {
+                    b.asDoubleBuffer().put(vs, off, len);
+                    b.position(b.position() + len * 8);
+                    off += len;
+                }
+            }
+        }
+
+        void putFloats(float[] vs) throws IOException {
+            int off = 0;
+            while (off < vs.length) {
+                int len = Math.min(b.remaining() / 4, vs.length - off);
+                if (len == 0) {
+                    flush();
+                } else {
+                    b.asFloatBuffer().put(vs, off, len);
+                    b.position(b.position() + len * 4);
+                    off += len;
+                }
+            }
+        }
+
+        void putShorts(short[] vs) throws IOException {
+            int off = 0;
+            while (off < vs.length) {
+                int len = Math.min(b.remaining() / 2, vs.length - off);
+                if (len == 0) {
+                    flush();
+                } else {
+                    b.asShortBuffer().put(vs, off, len);
+                    b.position(b.position() + len * 2);
+                    off += len;
+                }
+            }
+        }
+
+        void putInts(int[] vs) throws IOException {
+            int off = 0;
+            while (off < vs.length) {
+                int len = Math.min(b.remaining() / 4, vs.length - off);
+                if (len == 0) {
+                    flush();
+                } else {
+                    b.asIntBuffer().put(vs, off, len);
+                    b.position(b.position() + len * 4);
+                    off += len;
+                }
+            }
+        }
+
+        void putBigDecimal(BigDecimal v) throws IOException {
+            if (v == null) {
+                ensure(8).putInt(0).putInt(-1);
+            } else {
+                byte[] bytes = v.unscaledValue().toByteArray();
+                ensure(8).putInt(v.scale()).putInt(bytes.length);
+                putBytes(bytes);
+            }
+        }
+
+        void flush() throws IOException {
+            b.flip();
+            while (b.hasRemaining()) {
+                n += fc.write(b);
+            }
+            b.clear();
+        }
+    }
+
+    /**
+     * For buffered reading from a channel.
+     */
+    private static class In implements Closeable {
+
+        final ReadableByteChannel fc;
+
+        final ByteBuffer b;
+
+        In(ReadableByteChannel ch) {
+            fc = ch;
+            b = BUFFER.get();
+            b.clear();
+            b.flip();
+        }
+
+        /**
+         * Attempts to have at least {@code k} bytes remaining in {@link #b}.
+         *
+         * @param k The number of bytes wanted.
+         * @return {@code false} if the end of the file is reached first.
+         */
+        boolean fill(int k) throws IOException {
+            if (b.remaining() < k) {
+                b.compact();
+                while (b.position() < k) {
+                    if (fc.read(b) < 0) {
+                        b.flip();
+                        return false;
+                    }
+                }
+                b.flip();
+            }
+            return true;
+        }
+
+        /**
+         * @param k The number of bytes to be got.
+         * @return The buffer with at least {@code k} bytes remaining.
+         */
+        ByteBuffer ensure(int k) throws IOException {
+            if (!fill(k)) {
+                throw new EOFException();
+            }
+            return b;
+        }
+
+        void getBytes(byte[] bytes) throws IOException {
+            int off = 0;
+            while (off < bytes.length) {
+                ensure(1);
+                int len = Math.min(b.remaining(), bytes.length - off);
+                b.get(bytes, off, len);
+                off += len;
+            }
+        }
+
+        void getDoubles(double[] vs) throws IOException {
+            int off = 0;
+            while (off < vs.length) {
+                ensure(8);
+                int len = Math.min(b.remaining() / 8, vs.length - off);
+                b.asDoubleBuffer().get(vs, off, len);
+                b.position(b.position() + len * 8);
+                off += len;
+            }
+        }
+
+        void getFloats(float[] vs) throws IOException {
+            int off = 0;
+            while (off < vs.length) {
+                ensure(4);
+                int len = Math.min(b.remaining() / 4, vs.length - off);
+                b.asFloatBuffer().get(vs, off, len);
+                b.position(b.position() + len * 4);
+                off += len;
+            }
+        }
+
+        void getShorts(short[] vs) throws IOException {
+            int off = 0;
+            while (off < vs.length) {
+                ensure(2);
+                int len = Math.min(b.remaining() / 2, vs.length - off);
+                b.asShortBuffer().get(vs, off, len);
+                b.position(b.position() + len * 2);
+                off += len;
+            }
+        }
+
+        void getInts(int[] vs) throws IOException {
+            int off = 0;
+            while (off < vs.length) {
+                ensure(4);
+                int len = Math.min(b.remaining() / 4, vs.length - off);
+                b.asIntBuffer().get(vs, off, len);
+                b.position(b.position() + len * 4);
+                off += len;
+            }
+        }
+
+        BigDecimal getBigDecimal() throws IOException {
+            ensure(8);
+            int scale = b.getInt();
+            int len = b.getInt();
+            if (len < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[len];
+            getBytes(bytes);
+            return new BigDecimal(new BigInteger(bytes), scale);
+        }
+
+        @Override
+        public void close() throws IOException {
+            fc.close();
+        }
+    }
+}
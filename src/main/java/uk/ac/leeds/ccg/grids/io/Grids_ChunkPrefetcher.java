@@ -0,0 +1,374 @@
+/*
+ * Copyright 2019 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.grids.io;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import uk.ac.leeds.ccg.grids.core.Grids_Environment;
+import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
+import uk.ac.leeds.ccg.grids.d2.chunk.Grids_Chunk;
+import uk.ac.leeds.ccg.grids.d2.grid.Grids_Grid;
+
+/**
+ * For reading chunks from file on a background thread before they are
+ * needed. Chunks read ahead are held here and are only put into a grid when
+ * the grid loads them (see {@link Grids_Grid#loadChunk(Grids_2D_ID_int)}), so
+ * the data of a grid is only ever changed by the threads processing it.
+ *
+ * Two access patterns are understood:
+ * <ul>
+ * <li>Chunk row major. Each time a grid loads a chunk, the next
+ * {@link #depth} chunks in chunk row major order are read ahead. The direction
+ * (forwards or backwards) is that of the previous load, so both ascending
+ * loops and the descending chunk ID order of the grid data are handled. Scans
+ * in cell row major order also load chunks in this order.</li>
+ * <li>Kernel window. {@link #prefetchWindow(Grids_Grid, int, int, long)} reads
+ * ahead the chunks needed to process the next chunk in chunk row major order
+ * with a kernel that extends a given cell distance.</li>
+ * </ul>
+ *
+ * At most {@link #limit} chunks are read ahead and not yet used.
+ *
+ * @author Andy Turner
+ * @version 1.0.0
+ */
+public class Grids_ChunkPrefetcher {
+
+    /**
+     * The environment.
+     */
+    protected final Grids_Environment env;
+
+    /**
+     * The number of chunks to read ahead in chunk row major order.
+     */
+    protected int depth;
+
+    /**
+     * The maximum number of chunks read ahead and not yet used.
+     */
+    protected int limit;
+
+    /**
+     * For reading chunks.
+     */
+    protected final ExecutorService pool;
+
+    /**
+     * A chunk being or having been read ahead.
+     */
+    protected static class Prefetch {
+
+        /**
+         * The version of the chunk when it was read ahead (see
+         * {@link Grids_Grid#getVersion(Grids_2D_ID_int)}).
+         */
+        protected final long version;
+
+        /**
+         * For getting the chunk.
+         */
+        protected final Future<Grids_Chunk> f;
+
+        /**
+         * @param version What {@link #version} is set to.
+         * @param f What {@link #f} is set to.
+         */
+        protected Prefetch(long version, Future<Grids_Chunk> f) {
+            this.version = version;
+            this.f = f;
+        }
+    }
+
+    /**
+     * The chunks being or having been read ahead by grid and chunk ID.
+     */
+    protected final ConcurrentHashMap<Grids_Grid, ConcurrentHashMap<Grids_2D_ID_int, Prefetch>> prefetched;
+
+    /**
+     * The ID of the chunk each grid last loaded.
+     */
+    protected final ConcurrentHashMap<Grids_Grid, Grids_2D_ID_int> last;
+
+    /**
+     * The number of chunks read ahead and not yet used.
+     */
+    protected final AtomicInteger outstanding;
+
+    /**
+     * A count of the number of chunks read ahead.
+     */
+    protected final LongAdder issued;
+
+    /**
+     * A count of the number of chunks read ahead that were used.
+     */
+    protected final LongAdder used;
+
+    /**
+     * @param e What {@link #env} is set to.
+     * @param threads The number of threads to read chunks with.
+     * @param depth What {@link #depth} is set to.
+     * @param limit What {@link #limit} is set to.
+     */
+    public Grids_ChunkPrefetcher(Grids_Environment e, int threads, int depth,
+            int limit) {
+        env = e;
+        this.depth = depth;
+        this.limit = limit;
+        pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "Grids_Prefetch");
+            t.setDaemon(true);
+            return t;
+        });
+        prefetched = new ConcurrentHashMap<>();
+        last = new ConcurrentHashMap<>();
+        outstanding = new AtomicInteger();
+        issued = new LongAdder();
+        used = new LongAdder();
+    }
+
+    /**
+     * @return {@link #depth}
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @param depth What {@link #depth} is set to.
+     */
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    /**
+     * @return {@link #limit}
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @param limit What {@link #limit} is set to.
+     */
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * @return The number of chunks read ahead.
+     */
+    public long getIssued() {
+        return issued.sum();
+    }
+
+    /**
+     * @return The number of chunks read ahead that were used.
+     */
+    public long getUsed() {
+        return used.sum();
+    }
+
+    /**
+     * @return The number of chunks read ahead and not yet used.
+     */
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    /**
+     * Called when grid {@code g} has loaded the chunk with chunk ID {@code i}.
+     * This reads ahead the next {@link #depth} chunks in chunk row major order
+     * in the direction of the previous load.
+     *
+     * @param g The grid.
+     * @param i The chunk ID of the chunk loaded.
+     */
+    public void loaded(Grids_Grid g, Grids_2D_ID_int i) {
+        int ncc = g.getNChunkCols();
+        long n = (long) g.getNChunkRows() * ncc;
+        long index = (long) i.getRow() * ncc + i.getCol();
+        Grids_2D_ID_int l = last.put(g, i);
+        int step = 1;
+        if (l != null && (long) l.getRow() * ncc + l.getCol() > index) {
+            step = -1;
+        }
+        for (int k = 1; k <= depth; k++) {
+            long index2 = index + k * step;
+            if (index2 < 0 || index2 >= n) {
+                break;
+            }
+            prefetch(g, new Grids_2D_ID_int((int) (index2 / ncc),
+                    (int) (index2 % ncc)));
+        }
+    }
+
+    /**
+     * Reads ahead the chunks of grid {@code g} needed to process the chunk
+     * that follows the chunk in chunk row {@code cr}, chunk column {@code cc}
+     * in chunk row major order using a kernel that extends
+     * {@code cellDistance} cells in each direction. Chunks that are loaded are
+     * not read.
+     *
+     * @param g The grid.
+     * @param cr The chunk row of the chunk being processed.
+     * @param cc The chunk column of the chunk being processed.
+     * @param cellDistance The kernel cell distance.
+     */
+    public void prefetchWindow(Grids_Grid g, int cr, int cc,
+            long cellDistance) {
+        int ncr = g.getNChunkRows();
+        int ncc = g.getNChunkCols();
+        int ncr2 = cr;
+        int ncc2 = cc + 1;
+        if (ncc2 == ncc) {
+            ncc2 = 0;
+            ncr2++;
+            if (ncr2 == ncr) {
+                return;
+            }
+        }
+        int wr = (int) Math.min(ncr, (cellDistance + g.getChunkNRows() - 1)
+                / g.getChunkNRows());
+        int wc = (int) Math.min(ncc, (cellDistance + g.getChunkNCols() - 1)
+                / g.getChunkNCols());
+        for (int r = Math.max(0, ncr2 - wr); r <= Math.min(ncr - 1, ncr2 + wr);
+                r++) {
+            for (int c = Math.max(0, ncc2 - wc);
+                    c <= Math.min(ncc - 1, ncc2 + wc); c++) {
+                prefetch(g, new Grids_2D_ID_int(r, c));
+            }
+        }
+    }
+
+    /**
+     * Reads the chunk with chunk ID {@code i} in grid {@code g} on a
+     * background thread unless: it is loaded; it is already being read; it is
+     * waiting to be written; it is held in compressed form; there is no file
+     * for it; or {@link #limit} chunks
+     * have been read ahead and not yet used. The version of the chunk is got
+     * before these are checked, so if the chunk is loaded, changed or written
+     * after they are checked then what is read is discarded when it is taken
+     * (see {@link #take(Grids_Grid, Grids_2D_ID_int)}).
+     *
+     * @param g The grid.
+     * @param i The chunk ID.
+     */
+    public void prefetch(Grids_Grid g, Grids_2D_ID_int i) {
+        long version = g.getVersion(i);
+        if (outstanding.get() >= limit || g.isLoaded(i)
+                || env.isPendingWrite(g, i) || env.isCompressed(g, i)
+                || !g.isChunkFile(i)) {
+            return;
+        }
+        prefetched.computeIfAbsent(g, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(i, k -> {
+                    outstanding.incrementAndGet();
+                    issued.increment();
+                    return new Prefetch(version,
+                            pool.submit(() -> g.readChunk(i)));
+                });
+    }
+
+    /**
+     * If the chunk with chunk ID {@code i} in grid {@code g} has been read
+     * ahead, then it is returned. If reading it has not started it is
+     * cancelled, otherwise this waits for it to be read. If the version of
+     * the chunk has changed since it was read ahead then what was read is
+     * stale and is discarded. This is to be called holding the lock used to
+     * load the chunk, so the version cannot change whilst it is checked.
+     *
+     * @param g The grid.
+     * @param i The chunk ID.
+     * @return The chunk or {@code null} if it was not read ahead, is stale or
+     * could not be read.
+     */
+    public Grids_Chunk take(Grids_Grid g, Grids_2D_ID_int i) {
+        ConcurrentHashMap<Grids_2D_ID_int, Prefetch> m = prefetched.get(g);
+        if (m == null) {
+            return null;
+        }
+        Prefetch p = m.remove(i);
+        if (p == null) {
+            return null;
+        }
+        outstanding.decrementAndGet();
+        Future<Grids_Chunk> f = p.f;
+        if (f.cancel(false) || p.version != g.getVersion(i)) {
+            f.cancel(false);
+            return null;
+        }
+        try {
+            Grids_Chunk r = f.get();
+            if (r != null) {
+                used.increment();
+            }
+            return r;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | CancellationException ex) {
+            env.env.log(ex.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Discards the chunks of grid {@code g} that have been read ahead. This is
+     * to be done if the files of the grid are changed other than by the grid.
+     *
+     * @param g The grid.
+     */
+    public void clear(Grids_Grid g) {
+        ConcurrentHashMap<Grids_2D_ID_int, Prefetch> m = prefetched.remove(g);
+        if (m != null) {
+            m.keySet().forEach(i -> {
+                Prefetch p = m.remove(i);
+                if (p != null) {
+                    p.f.cancel(false);
+                    outstanding.decrementAndGet();
+                }
+            });
+        }
+        last.remove(g);
+    }
+
+    /**
+     * Discards all chunks that have been read ahead so the memory they use
+     * can be reclaimed.
+     *
+     * @return {@code true} if any chunks were discarded.
+     */
+    public boolean clear() {
+        boolean r = outstanding.get() > 0;
+        prefetched.keySet().forEach(g -> clear(g));
+        return r;
+    }
+
+    /**
+     * Discards all chunks that have been read ahead and stops the threads.
+     */
+    public void shutdown() {
+        clear();
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,434 @@
+/*
+ * Copyright 2019 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.grids.io;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.zip.Deflater;
+import uk.ac.leeds.ccg.grids.core.Grids_Environment;
+import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
+import uk.ac.leeds.ccg.grids.d2.chunk.Grids_Chunk;
+import uk.ac.leeds.ccg.grids.d2.grid.Grids_Grid;
+
+/**
+ * For holding swapped chunks in memory in compressed form. This is a tier
+ * between the chunks loaded in grids and those on file: a chunk swapped from a
+ * grid is encoded in the {@link Grids_ChunkIO} format and compressed, and if
+ * it is loaded again it is inflated from here rather than being read from
+ * file.
+ *
+ * The values of array chunks are byte plane shuffled before being compressed:
+ * the first byte of each value is put first, then the second byte of each
+ * value and so on. For smoothly varying data such as elevations the high order
+ * byte planes are then long runs of the same or similar bytes which
+ * {@link Deflater} compresses well, even at its fastest setting.
+ *
+ * Chunks that do not compress by at least {@link #minRatio} are not held. At
+ * most {@link #capacity} compressed bytes are held. When this is exceeded the
+ * chunks held longest are spilled: those that were changed since they were
+ * last written are written to file; the others are dropped as their file is
+ * up to date.
+ *
+ * The memory used here is not accounted in
+ * {@link Grids_Environment#getMemoryUsed()}, it is instead bounded by
+ * {@link #capacity}.
+ *
+ * @author Andy Turner
+ * @version 1.0.0
+ */
+public class Grids_CompressedChunkStore {
+
+    /**
+     * A compressed chunk.
+     */
+    protected static class Entry {
+
+        /**
+         * The grid.
+         */
+        protected final Grids_Grid g;
+
+        /**
+         * The chunk ID.
+         */
+        protected final Grids_2D_ID_int i;
+
+        /**
+         * The compressed bytes.
+         */
+        protected final byte[] b;
+
+        /**
+         * The number of bytes before compression.
+         */
+        protected final int length;
+
+        /**
+         * The number of bytes in each value shuffled.
+         */
+        protected final int width;
+
+        /**
+         * Whether the file for the chunk was up to date when it was stored.
+         */
+        protected final boolean upToDate;
+
+        /**
+         * @param g What {@link #g} is set to.
+         * @param i What {@link #i} is set to.
+         * @param b What {@link #b} is set to.
+         * @param length What {@link #length} is set to.
+         * @param width What {@link #width} is set to.
+         * @param upToDate What {@link #upToDate} is set to.
+         */
+        protected Entry(Grids_Grid g, Grids_2D_ID_int i, byte[] b, int length,
+                int width, boolean upToDate) {
+            this.g = g;
+            this.i = i;
+            this.b = b;
+            this.length = length;
+            this.width = width;
+            this.upToDate = upToDate;
+        }
+    }
+
+    /**
+     * The environment.
+     */
+    protected final Grids_Environment env;
+
+    /**
+     * The maximum number of compressed bytes held.
+     */
+    protected long capacity;
+
+    /**
+     * The minimum ratio of uncompressed to compressed bytes for a chunk to be
+     * held.
+     */
+    protected double minRatio;
+
+    /**
+     * The chunks held by grid and chunk ID in the order they were stored.
+     */
+    protected final LinkedHashMap<Grids_Grid, LinkedHashMap<Grids_2D_ID_int, Entry>> entries;
+
+    /**
+     * The entries in the order they were stored.
+     */
+    protected final LinkedHashMap<Entry, Entry> order;
+
+    /**
+     * The number of compressed bytes held.
+     */
+    protected long size;
+
+    /**
+     * A count of the number of chunks stored.
+     */
+    protected long stored;
+
+    /**
+     * A count of the number of chunks taken.
+     */
+    protected long taken;
+
+    /**
+     * A count of the number of chunks spilled.
+     */
+    protected long spilled;
+
+    /**
+     * A count of the number of chunks not stored as they did not compress
+     * well enough.
+     */
+    protected long rejected;
+
+    /**
+     * The total number of bytes of the chunks stored before compression.
+     */
+    protected long rawBytes;
+
+    /**
+     * The total number of bytes of the chunks stored after compression.
+     */
+    protected long compressedBytes;
+
+    /**
+     * @param e What {@link #env} is set to.
+     * @param capacity What {@link #capacity} is set to.
+     * @param minRatio What {@link #minRatio} is set to.
+     */
+    public Grids_CompressedChunkStore(Grids_Environment e, long capacity,
+            double minRatio) {
+        env = e;
+        this.capacity = capacity;
+        this.minRatio = minRatio;
+        entries = new LinkedHashMap<>();
+        order = new LinkedHashMap<>();
+    }
+
+    /**
+     * @return {@link #capacity}
+     */
+    public synchronized long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Sets {@link #capacity} spilling chunks if necessary.
+     *
+     * @param capacity What {@link #capacity} is set to.
+     * @throws IOException If encountered.
+     */
+    public synchronized void setCapacity(long capacity) throws IOException {
+        this.capacity = capacity;
+        spill(capacity);
+    }
+
+    /**
+     * @return {@link #minRatio}
+     */
+    public synchronized double getMinRatio() {
+        return minRatio;
+    }
+
+    /**
+     * @param minRatio What {@link #minRatio} is set to.
+     */
+    public synchronized void setMinRatio(double minRatio) {
+        this.minRatio = minRatio;
+    }
+
+    /**
+     * @return The number of compressed bytes held.
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * @return The number of chunks held.
+     */
+    public synchronized int getNumberOfChunks() {
+        return order.size();
+    }
+
+    /**
+     * @return The number of chunks stored.
+     */
+    public synchronized long getStored() {
+        return stored;
+    }
+
+    /**
+     * @return The number of chunks taken.
+     */
+    public synchronized long getTaken() {
+        return taken;
+    }
+
+    /**
+     * @return The number of chunks spilled.
+     */
+    public synchronized long getSpilled() {
+        return spilled;
+    }
+
+    /**
+     * @return The number of chunks not stored as they did not compress well
+     * enough.
+     */
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * @return The ratio of the number of bytes of the chunks stored before
+     * compression to the number after or {@code 0} if no chunks have been
+     * stored.
+     */
+    public synchronized double getCompressionRatio() {
+        if (compressedBytes == 0L) {
+            return 0d;
+        }
+        return (double) rawBytes / (double) compressedBytes;
+    }
+
+    /**
+     * Resets the counts.
+     */
+    public synchronized void resetCounts() {
+        stored = 0L;
+        taken = 0L;
+        spilled = 0L;
+        rejected = 0L;
+        rawBytes = 0L;
+        compressedBytes = 0L;
+    }
+
+    /**
+     * @param g The grid.
+     * @param i The chunk ID.
+     * @return {@code true} if the chunk with chunk ID {@code i} in grid
+     * {@code g} is held.
+     */
+    public synchronized boolean contains(Grids_Grid g, Grids_2D_ID_int i) {
+        LinkedHashMap<Grids_2D_ID_int, Entry> m = entries.get(g);
+        return m != null && m.containsKey(i);
+    }
+
+    /**
+     * Compresses and holds {@code c} unless it is not of a type that can be
+     * written in the {@link Grids_ChunkIO} format, it does not compress by at
+     * least {@link #minRatio}, or it is larger than {@link #capacity}.
+     *
+     * @param c The chunk to store.
+     * @return {@code true} if {@code c} is held, in which case it can be
+     * cleared from its grid without being written.
+     * @throws IOException If encountered.
+     */
+    public boolean store(Grids_Chunk c) throws IOException {
+        byte[] raw = Grids_ChunkIO.toBytes(c);
+        if (raw == null) {
+            return false;
+        }
+        int width = Grids_ChunkIO.getValueLength(Grids_ChunkIO.getType(c));
+        byte[] b = Grids_ChunkCodec.deflate(Grids_ChunkCodec.shuffle(raw,
+                Grids_ChunkIO.HEADER_LENGTH, width, true));
+        synchronized (this) {
+            if (b.length * minRatio > raw.length || b.length > capacity) {
+                rejected++;
+                return false;
+            }
+            Grids_Grid g = c.getGrid();
+            Entry e = new Entry(g, c.getId(), b, raw.length, width,
+                    c.isCacheUpToDate());
+            Entry old = entries.computeIfAbsent(g, k -> new LinkedHashMap<>())
+                    .put(e.i, e);
+            if (old != null) {
+                order.remove(old);
+                size -= old.b.length;
+            }
+            order.put(e, e);
+            size += b.length;
+            stored++;
+            rawBytes += raw.length;
+            compressedBytes += b.length;
+            spill(capacity);
+            return true;
+        }
+    }
+
+    /**
+     * If the chunk with chunk ID {@code i} in grid {@code g} is held, then it
+     * is removed, inflated and returned.
+     *
+     * @param g The grid.
+     * @param i The chunk ID.
+     * @return The chunk or {@code null} if it is not held.
+     * @throws IOException If encountered.
+     */
+    public Grids_Chunk take(Grids_Grid g, Grids_2D_ID_int i)
+            throws IOException {
+        Entry e;
+        synchronized (this) {
+            LinkedHashMap<Grids_2D_ID_int, Entry> m = entries.get(g);
+            if (m == null) {
+                return null;
+            }
+            e = m.remove(i);
+            if (e == null) {
+                return null;
+            }
+            if (m.isEmpty()) {
+                entries.remove(g);
+            }
+            order.remove(e);
+            size -= e.b.length;
+            taken++;
+        }
+        return decode(e);
+    }
+
+    /**
+     * Spills all the chunks held.
+     *
+     * @return {@code true} if any chunks were spilled.
+     * @throws IOException If encountered.
+     */
+    public synchronized boolean spill() throws IOException {
+        boolean r = !order.isEmpty();
+        spill(0L);
+        return r;
+    }
+
+    /**
+     * Spills the chunks held longest until at most {@code max} compressed
+     * bytes are held. This holds the lock of this so a chunk being spilled
+     * cannot be taken until it has been written.
+     *
+     * @param max The maximum number of compressed bytes to hold.
+     * @throws IOException If encountered.
+     */
+    protected synchronized void spill(long max) throws IOException {
+        Iterator<Entry> ite = order.keySet().iterator();
+        while (size > max && ite.hasNext()) {
+            Entry e = ite.next();
+            ite.remove();
+            LinkedHashMap<Grids_2D_ID_int, Entry> m = entries.get(e.g);
+            m.remove(e.i);
+            if (m.isEmpty()) {
+                entries.remove(e.g);
+            }
+            size -= e.b.length;
+            spilled++;
+            if (!e.upToDate) {
+                e.g.write(e.i, decode(e));
+            }
+        }
+    }
+
+    /**
+     * Discards the chunks of grid {@code g} without writing them. This is to
+     * be done if the grid is no longer needed.
+     *
+     * @param g The grid.
+     */
+    public synchronized void clear(Grids_Grid g) {
+        LinkedHashMap<Grids_2D_ID_int, Entry> m = entries.remove(g);
+        if (m != null) {
+            m.values().forEach(e -> {
+                order.remove(e);
+                size -= e.b.length;
+            });
+        }
+    }
+
+    /**
+     * @param e The entry.
+     * @return The chunk inflated from {@code e}.
+     * @throws IOException If encountered.
+     */
+    protected Grids_Chunk decode(Entry e) throws IOException {
+        byte[] raw = Grids_ChunkCodec.shuffle(Grids_ChunkCodec.inflate(e.b,
+                e.length), Grids_ChunkIO.HEADER_LENGTH, e.width, false);
+        Grids_Chunk r = Grids_ChunkIO.read(e.g, e.i, raw);
+        r.setCacheUpToDate(e.upToDate);
+        return r;
+    }
+}
@@ -22,6 +22,9 @@ import java.nio.file.Paths;
 import uk.ac.leeds.ccg.grids.d2.grid.Grids_Dimensions;
 import uk.ac.leeds.ccg.grids.d2.grid.Grids_GridNumber;
 import uk.ac.leeds.ccg.grids.d2.grid.d.Grids_GridDouble;
+import uk.ac.leeds.ccg.grids.d2.grid.f.Grids_GridFloat;
+import uk.ac.leeds.ccg.grids.d2.grid.i.Grids_GridByte;
+import uk.ac.leeds.ccg.grids.d2.grid.i.Grids_GridShort;
 import uk.ac.leeds.ccg.grids.d2.grid.i.Grids_GridInt;
 import uk.ac.leeds.ccg.grids.core.Grids_Environment;
 import uk.ac.leeds.ccg.grids.core.Grids_Object;
@@ -80,8 +83,14 @@ public class Grids_ESRIAsciiGridExporter extends Grids_Object {
         String noDataValue = "";
         if (g instanceof Grids_GridDouble) {
             noDataValue = "" + ((Grids_GridDouble) g).getNoDataValue();
+        } else if (g instanceof Grids_GridFloat) {
+            noDataValue = "" + ((Grids_GridFloat) g).getNoDataValue();
         } else if (g instanceof Grids_GridInt) {
             noDataValue = "" + ((Grids_GridInt) g).getNoDataValue();
+        } else if (g instanceof Grids_GridShort) {
+            noDataValue = "" + ((Grids_GridShort) g).getNoDataValue();
+        } else if (g instanceof Grids_GridByte) {
+            noDataValue = "" + ((Grids_GridByte) g).getNoDataValue();
         }
         toAsciiFile(g, file, noDataValue);
     }
@@ -137,6 +146,72 @@ public class Grids_ESRIAsciiGridExporter extends Grids_Object {
                     }
                     pw.println("");
                 }
+            } else if (g instanceof Grids_GridShort) {
+                Grids_GridShort gridShort = (Grids_GridShort) g;
+                short gridNoDataValue = gridShort.getNoDataValue();
+                pw.println("NODATA_Value " + ndv);
+                for (row = nrows_minus_1; row >= 0; row--) {
+                    chunkRow = g.getChunkRow(row);
+                    if (chunkRow0 != chunkRow) {
+                        env.removeFromNotToClear(g, chunkRow0);
+                        env.addToNotToClear(g, chunkRow);
+                        env.checkAndMaybeFreeMemory();
+                        chunkRow0 = chunkRow;
+                    }
+                    for (col = 0; col < ncols; col++) {
+                        short v = gridShort.getCell(row, col);
+                        if (v == gridNoDataValue) {
+                            pw.print(ndv + " ");
+                        } else {
+                            pw.print(v + " ");
+                        }
+                    }
+                    pw.println("");
+                }
+            } else if (g instanceof Grids_GridByte) {
+                Grids_GridByte gridByte = (Grids_GridByte) g;
+                byte gridNoDataValue = gridByte.getNoDataValue();
+                pw.println("NODATA_Value " + ndv);
+                for (row = nrows_minus_1; row >= 0; row--) {
+                    chunkRow = g.getChunkRow(row);
+                    if (chunkRow0 != chunkRow) {
+                        env.removeFromNotToClear(g, chunkRow0);
+                        env.addToNotToClear(g, chunkRow);
+                        env.checkAndMaybeFreeMemory();
+                        chunkRow0 = chunkRow;
+                    }
+                    for (col = 0; col < ncols; col++) {
+                        byte v = gridByte.getCell(row, col);
+                        if (v == gridNoDataValue) {
+                            pw.print(ndv + " ");
+                        } else {
+                            pw.print(v + " ");
+                        }
+                    }
+                    pw.println("");
+                }
+            } else if (g instanceof Grids_GridFloat) {
+                Grids_GridFloat gridFloat = (Grids_GridFloat) g;
+                float gridNoDataValue = gridFloat.getNoDataValue();
+                pw.println("NODATA_Value " + ndv);
+                for (row = nrows_minus_1; row >= 0; row--) {
+                    chunkRow = g.getChunkRow(row);
+                    if (chunkRow0 != chunkRow) {
+                        env.removeFromNotToClear(g, chunkRow0);
+                        env.addToNotToClear(g, chunkRow);
+                        env.checkAndMaybeFreeMemory();
+                        chunkRow0 = chunkRow;
+                    }
+                    for (col = 0; col < ncols; col++) {
+                        float v = gridFloat.getCell(row, col);
+                        if (v == gridNoDataValue || !Float.isFinite(v)) {
+                            pw.print(ndv + " ");
+                        } else {
+                            pw.print(v + " ");
+                        }
+                    }
+                    pw.println("");
+                }
             } else {
                 Grids_GridDouble gridDouble = (Grids_GridDouble) g;
                 double gridNoDataValue = gridDouble.getNoDataValue();
@@ -59,6 +59,16 @@ public class Grids_Files extends Generic_Files {
      */
     protected Generic_Path generatedGridFloatDir;
 
+    /**
+     * Indicates where grids holding {@code short} values are to be stored.
+     */
+    protected Generic_Path generatedGridShortDir;
+
+    /**
+     * Indicates where grids holding {@code byte} values are to be stored.
+     */
+    protected Generic_Path generatedGridByteDir;
+
     /**
      * Indicates where grids holding {@code Boolean} values are to be stored.
      */
@@ -172,6 +182,36 @@ public class Grids_Files extends Generic_Files {
         return generatedGridFloatDir;
     }
 
+    /**
+     * If {@link #generatedGridShortDir} is {@code null} it will be initialised.
+     *
+     * @return {@link #generatedGridShortDir} initialised first if it is
+     * {@code null}.
+     * @throws java.io.IOException If encountered.
+     */
+    public Generic_Path getGeneratedGridShortDir() throws IOException {
+        if (generatedGridShortDir == null) {
+            generatedGridShortDir = new Generic_Path(Paths.get(
+                    getGeneratedDir().toString(), Grids_Strings.s_GridShort));
+        }
+        return generatedGridShortDir;
+    }
+
+    /**
+     * If {@link #generatedGridByteDir} is {@code null} it will be initialised.
+     *
+     * @return {@link #generatedGridByteDir} initialised first if it is
+     * {@code null}.
+     * @throws java.io.IOException If encountered.
+     */
+    public Generic_Path getGeneratedGridByteDir() throws IOException {
+        if (generatedGridByteDir == null) {
+            generatedGridByteDir = new Generic_Path(Paths.get(
+                    getGeneratedDir().toString(), Grids_Strings.s_GridByte));
+        }
+        return generatedGridByteDir;
+    }
+
     /**
      * If {@link #generatedGridBooleanDir} is {@code null} it will be
      * initialised.
@@ -119,8 +119,10 @@ public class Grids_ImageExporter extends Grids_Object implements Serializable {
         Grids_GridDouble r;
         if (g instanceof Grids_GridDouble) {
             r = gp.rescale((Grids_GridDouble) g, null, 0.0d, 255.0d);
-        } else {
+        } else if (g instanceof Grids_GridInt) {
             r = gp.rescale((Grids_GridInt) g, null, 0.0d, 255.0d);
+        } else {
+            r = gp.rescale(g, null, 0.0d, 255.0d);
         }
         g.swapChunks();
         env.env.log("Initialise gridImageArray");
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2019 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.grids.io;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.HashMap;
+import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
+
+/**
+ * A backing store for the chunks of a grid comprising a single file that is
+ * memory mapped in chunk sized regions. The region for the chunk in chunk row
+ * {@code cr} and chunk column {@code cc} starts at byte
+ * {@code (cr * nChunkCols + cc) * chunkNRows * chunkNCols * bytesPerCell}.
+ * Chunks backed by a region read and write cell values directly into the
+ * mapped buffer, so the operating system page cache does the swapping and the
+ * values are not held on the heap.
+ *
+ * A region is held from when it is mapped until the chunk backed by it is
+ * freed (see {@link #unmap(Grids_2D_ID_int)}), so the regions held are bounded
+ * by the chunks loaded. The values stay in the file so a chunk can be cleared
+ * from memory and then recreated cheaply by mapping its region again. Which
+ * regions have been initialised is recorded so that a store can be reopened
+ * after the grid it is for has been deserialised.
+ *
+ * @author Andy Turner
+ * @version 1.0.0
+ */
+public class Grids_MappedChunkStore implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The name of the file in the grid directory.
+     */
+    public static final String FILENAME = "chunks.mapped";
+
+    /**
+     * The number of bytes used to store each cell value.
+     */
+    protected final int bytesPerCell;
+
+    /**
+     * The number of chunk columns in the grid.
+     */
+    protected final int nChunkCols;
+
+    /**
+     * The number of bytes in each region.
+     */
+    protected final long regionSize;
+
+    /**
+     * Identifies which regions have been initialised. The bit index for the
+     * chunk in chunk row {@code cr} and chunk column {@code cc} is
+     * {@code cr * nChunkCols + cc}.
+     */
+    protected final BitSet initialised;
+
+    /**
+     * The file channel.
+     */
+    protected transient FileChannel fc;
+
+    /**
+     * For storing the mapped regions of the chunks that are loaded.
+     */
+    protected transient HashMap<Grids_2D_ID_int, MappedByteBuffer> regions;
+
+    /**
+     * @param bytesPerCell What {@link #bytesPerCell} is set to.
+     * @param chunkNRows The (maximum) number of rows in a chunk.
+     * @param chunkNCols The (maximum) number of columns in a chunk.
+     * @param nChunkCols What {@link #nChunkCols} is set to.
+     * @throws IllegalArgumentException If a region would be larger than can
+     * be mapped.
+     */
+    public Grids_MappedChunkStore(int bytesPerCell, int chunkNRows,
+            int chunkNCols, int nChunkCols) {
+        this.bytesPerCell = bytesPerCell;
+        this.nChunkCols = nChunkCols;
+        regionSize = (long) chunkNRows * (long) chunkNCols * bytesPerCell;
+        if (regionSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Chunks of " + chunkNRows
+                    + " rows and " + chunkNCols + " columns are too big to "
+                    + "map.");
+        }
+        initialised = new BitSet();
+    }
+
+    /**
+     * Opens the file {@code f} for reading and writing creating it if it does
+     * not already exist. This is to be called before mapping regions and after
+     * deserialisation.
+     *
+     * @param f The file.
+     * @throws IOException If encountered.
+     */
+    public synchronized void open(Path f) throws IOException {
+        if (fc == null || !fc.isOpen()) {
+            fc = FileChannel.open(f, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            regions = new HashMap<>();
+        }
+    }
+
+    /**
+     * @return {@code true} if the file is open.
+     */
+    public boolean isOpen() {
+        return fc != null && fc.isOpen();
+    }
+
+    /**
+     * @return {@link #bytesPerCell}
+     */
+    public int getBytesPerCell() {
+        return bytesPerCell;
+    }
+
+    /**
+     * @param i The chunk ID.
+     * @return The index of the region for chunk {@code i}.
+     */
+    protected long getIndex(Grids_2D_ID_int i) {
+        return (long) i.getRow() * nChunkCols + i.getCol();
+    }
+
+    /**
+     * @param i The chunk ID.
+     * @return The bit index in {@link #initialised} for chunk {@code i}.
+     * @throws ArithmeticException If the grid has more chunks than can be
+     * indexed.
+     */
+    protected int getBitIndex(Grids_2D_ID_int i) {
+        return Math.toIntExact(getIndex(i));
+    }
+
+    /**
+     * @param i The chunk ID.
+     * @return {@code true} if the region for chunk {@code i} has been
+     * initialised.
+     */
+    public synchronized boolean isInitialised(Grids_2D_ID_int i) {
+        return initialised.get(getBitIndex(i));
+    }
+
+    /**
+     * Marks the region for chunk {@code i} as initialised.
+     *
+     * @param i The chunk ID.
+     */
+    public synchronized void setInitialised(Grids_2D_ID_int i) {
+        initialised.set(getBitIndex(i));
+    }
+
+    /**
+     * Maps the region for chunk {@code i} if it is not already mapped. The
+     * buffer returned is in native byte order.
+     *
+     * @param i The chunk ID.
+     * @return The mapped region for chunk {@code i}.
+     * @throws IOException If encountered.
+     */
+    public synchronized MappedByteBuffer map(Grids_2D_ID_int i)
+            throws IOException {
+        MappedByteBuffer r = regions.get(i);
+        if (r == null) {
+            r = fc.map(FileChannel.MapMode.READ_WRITE,
+                    getIndex(i) * regionSize, regionSize);
+            r.order(ByteOrder.nativeOrder());
+            regions.put(i, r);
+        }
+        return r;
+    }
+
+    /**
+     * Forces any changes made to the region for chunk {@code i} to be written
+     * to the file and stops holding the region. The buffer is unmapped once
+     * it is garbage collected.
+     *
+     * @param i The chunk ID.
+     */
+    public synchronized void unmap(Grids_2D_ID_int i) {
+        if (regions != null) {
+            MappedByteBuffer b = regions.remove(i);
+            if (b != null) {
+                b.force();
+            }
+        }
+    }
+
+    /**
+     * @return The number of regions held.
+     */
+    public synchronized int getNumberOfRegions() {
+        return regions == null ? 0 : regions.size();
+    }
+
+    /**
+     * Forces any changes made to mapped regions to be written to the file.
+     */
+    public synchronized void force() {
+        if (regions != null) {
+            regions.values().forEach(b -> b.force());
+        }
+    }
+
+    /**
+     * Forces changes to be written and closes the file. Regions remain mapped
+     * until their buffers are garbage collected.
+     *
+     * @throws IOException If encountered.
+     */
+    public synchronized void close() throws IOException {
+        force();
+        regions = null;
+        if (fc != null) {
+            fc.close();
+        }
+    }
+}
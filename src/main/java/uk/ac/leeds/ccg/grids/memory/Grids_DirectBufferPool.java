@@ -0,0 +1,155 @@
+/*
+ * Copyright 2019 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.grids.memory;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+
+/**
+ * For allocating and freeing the direct buffers in which off heap chunks hold
+ * their values. Direct buffers are outside the heap, so they add nothing to
+ * the work of the garbage collector, but the memory of one that is no longer
+ * referenced is only returned once the garbage collector has found the buffer
+ * unreachable. Freeing a buffer explicitly instead returns it here to be
+ * reused for the next chunk of the same size, so when chunks are swapped the
+ * memory their values used is reused straight away. At most
+ * {@link #capacity} bytes of free buffers are kept, any more are left for the
+ * garbage collector.
+ *
+ * Buffers are in the native byte order.
+ *
+ * @author Andy Turner
+ * @version 1.0.0
+ */
+public class Grids_DirectBufferPool {
+
+    /**
+     * The free buffers by capacity.
+     */
+    protected final HashMap<Integer, ArrayDeque<ByteBuffer>> free;
+
+    /**
+     * The maximum number of bytes of free buffers to keep.
+     */
+    protected long capacity;
+
+    /**
+     * The number of bytes of free buffers kept.
+     */
+    protected long size;
+
+    /**
+     * A count of the number of buffers allocated.
+     */
+    protected long allocated;
+
+    /**
+     * A count of the number of buffers reused.
+     */
+    protected long reused;
+
+    /**
+     * @param capacity What {@link #capacity} is set to.
+     */
+    public Grids_DirectBufferPool(long capacity) {
+        this.capacity = capacity;
+        free = new HashMap<>();
+    }
+
+    /**
+     * @param n The number of bytes.
+     * @return A direct buffer of capacity {@code n} in the native byte order
+     * with position {@code 0} and limit {@code n}. This is a free buffer if
+     * there is one of this capacity, otherwise a new one. The values in a
+     * reused buffer are whatever they were when it was freed.
+     */
+    public synchronized ByteBuffer allocate(int n) {
+        ArrayDeque<ByteBuffer> q = free.get(n);
+        if (q != null && !q.isEmpty()) {
+            ByteBuffer r = q.pop();
+            size -= n;
+            reused++;
+            r.clear();
+            return r;
+        }
+        allocated++;
+        return ByteBuffer.allocateDirect(n).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Returns {@code b} to be reused unless that would exceed
+     * {@link #capacity}. {@code b} must not be used after this.
+     *
+     * @param b The buffer to free.
+     */
+    public synchronized void free(ByteBuffer b) {
+        int n = b.capacity();
+        if (size + n <= capacity) {
+            free.computeIfAbsent(n, k -> new ArrayDeque<>()).push(b);
+            size += n;
+        }
+    }
+
+    /**
+     * @return {@link #capacity}
+     */
+    public synchronized long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Sets {@link #capacity} dropping free buffers if necessary.
+     *
+     * @param capacity What {@link #capacity} is set to.
+     */
+    public synchronized void setCapacity(long capacity) {
+        this.capacity = capacity;
+        if (size > capacity) {
+            clear();
+        }
+    }
+
+    /**
+     * @return The number of bytes of free buffers kept.
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * @return The number of buffers allocated.
+     */
+    public synchronized long getAllocated() {
+        return allocated;
+    }
+
+    /**
+     * @return The number of buffers reused.
+     */
+    public synchronized long getReused() {
+        return reused;
+    }
+
+    /**
+     * Drops all the free buffers.
+     */
+    public synchronized void clear() {
+        free.clear();
+        size = 0L;
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2019 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.grids.memory;
+
+import java.util.LinkedHashSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import uk.ac.leeds.ccg.grids.d2.chunk.Grids_Chunk;
+
+/**
+ * For deciding which chunk to swap out of the fast access memory when memory
+ * is needed. Chunk accesses are recorded on the chunks by calling
+ * {@link #hit(Grids_Chunk)} each time a chunk that is loaded is got and
+ * {@link #miss(Grids_Chunk)} each time a chunk is loaded. The time recorded is
+ * logical and coarse: a counter that advances only when a chunk is loaded or
+ * evicted. So a hit reads the counter and at most writes to the chunk, and
+ * chunks accessed between two loads share a time. This makes orderings by
+ * time approximate, which is enough for choosing what to swap, and keeps the
+ * counter from being contended when many threads get cells.
+ *
+ * The chunks that are loaded are kept in {@link #chunks} which grids update
+ * with {@link #added(Grids_Chunk)} and {@link #removed(Grids_Chunk)} as chunks
+ * are put into and cleared from them. Subclasses keep this in the order they
+ * select from, so selecting a chunk to swap does not involve copying or
+ * sorting the chunks.
+ *
+ * Counts of hits, misses and evictions are kept to help tune chunk sizes.
+ *
+ * @author Andy Turner
+ * @version 1.0.0
+ */
+public abstract class Grids_EvictionPolicy {
+
+    /**
+     * The logical clock.
+     */
+    protected final AtomicLong time;
+
+    /**
+     * The chunks that are loaded in the order subclasses select from. Access
+     * to this is synchronized on this policy.
+     */
+    protected final LinkedHashSet<Grids_Chunk> chunks;
+
+    /**
+     * A count of the number of times a chunk was got that was loaded.
+     */
+    protected final LongAdder hits;
+
+    /**
+     * A count of the number of times a chunk was loaded.
+     */
+    protected final LongAdder misses;
+
+    /**
+     * A count of the number of chunks swapped or otherwise cleared from the
+     * fast access memory.
+     */
+    protected final LongAdder evictions;
+
+    protected Grids_EvictionPolicy() {
+        // Chunks start with a last access time of 0 which must be older.
+        time = new AtomicLong(1L);
+        chunks = new LinkedHashSet<>();
+        hits = new LongAdder();
+        misses = new LongAdder();
+        evictions = new LongAdder();
+    }
+
+    /**
+     * For recording an access to a chunk that was loaded.
+     *
+     * @param c The chunk.
+     */
+    public void hit(Grids_Chunk c) {
+        hits.increment();
+        access(c);
+    }
+
+    /**
+     * For recording that chunk {@code c} has just been loaded.
+     *
+     * @param c The chunk.
+     */
+    public void miss(Grids_Chunk c) {
+        misses.increment();
+        time.incrementAndGet();
+        access(c);
+    }
+
+    /**
+     * For recording that a chunk has been cleared from the fast access memory.
+     */
+    public void evicted() {
+        evictions.increment();
+        time.incrementAndGet();
+    }
+
+    /**
+     * For recording that {@code c} has been put into a grid.
+     *
+     * @param c The chunk.
+     */
+    public synchronized void added(Grids_Chunk c) {
+        chunks.add(c);
+    }
+
+    /**
+     * For recording that {@code c} has been cleared from or replaced in a
+     * grid.
+     *
+     * @param c The chunk.
+     */
+    public synchronized void removed(Grids_Chunk c) {
+        chunks.remove(c);
+    }
+
+    /**
+     * Records an access to {@code c}.
+     *
+     * @param c The chunk.
+     */
+    protected void access(Grids_Chunk c) {
+        long t = time.get();
+        if (c.getLastAccess() != t) {
+            c.setLastAccess(t);
+            moved(c);
+        }
+        c.setReferenced(true);
+    }
+
+    /**
+     * Called when the last access time of {@code c} has changed. This is at
+     * most once for each chunk between advances of {@link #time}. By default
+     * this does nothing.
+     *
+     * @param c The chunk.
+     */
+    protected void moved(Grids_Chunk c) {
+    }
+
+    /**
+     * @return The current logical time.
+     */
+    public long getTime() {
+        return time.get();
+    }
+
+    /**
+     * @return The number of times a chunk was got that was loaded.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return The number of times a chunk was loaded.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return The number of chunks cleared from the fast access memory.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return The proportion of chunk accesses that were hits or {@code 0} if
+     * there have been no accesses.
+     */
+    public double getHitRatio() {
+        long h = getHits();
+        long n = h + getMisses();
+        return n == 0 ? 0d : h / (double) n;
+    }
+
+    /**
+     * Resets the hit, miss and eviction counts to zero.
+     */
+    public void resetCounts() {
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    /**
+     * @return The number of chunks in {@link #chunks}.
+     */
+    public synchronized int size() {
+        return chunks.size();
+    }
+
+    /**
+     * Selects the chunk to swap from those in {@link #chunks}.
+     *
+     * @param candidate For testing whether a chunk may be swapped. Grids test
+     * that the chunk is loaded, not of a singlet type and not pinned.
+     * @return The chunk to swap or {@code null} if no chunk in {@link #chunks}
+     * is a candidate.
+     */
+    public abstract Grids_Chunk select(Predicate<Grids_Chunk> candidate);
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(hits=" + getHits() + ", misses="
+                + getMisses() + ", evictions=" + getEvictions() + ")";
+    }
+}
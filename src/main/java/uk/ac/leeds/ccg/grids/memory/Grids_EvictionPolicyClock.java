@@ -0,0 +1,65 @@
+/*
+ * Copyright 2019 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.grids.memory;
+
+import java.util.Iterator;
+import java.util.function.Predicate;
+import uk.ac.leeds.ccg.grids.d2.chunk.Grids_Chunk;
+
+/**
+ * A CLOCK (second chance) eviction policy. {@link #chunks} is the ring and
+ * the hand points at its first chunk: moving the hand past a chunk moves that
+ * chunk to the end, so the hand stays where it last stopped as chunks are
+ * added (just behind it) and removed. A candidate that has been referenced
+ * since the hand last passed has its reference bit cleared and is passed
+ * over; the first candidate found that has not been referenced is selected.
+ * This approximates least recently used and a hit only sets the reference
+ * bit.
+ *
+ * @author Andy Turner
+ * @version 1.0.0
+ */
+public class Grids_EvictionPolicyClock extends Grids_EvictionPolicy {
+
+    public Grids_EvictionPolicyClock() {
+        super();
+    }
+
+    @Override
+    public synchronized Grids_Chunk select(Predicate<Grids_Chunk> candidate) {
+        // At most two sweeps are needed as the first clears all bits.
+        int n = 2 * chunks.size();
+        Grids_Chunk r = null;
+        for (int k = 0; k < n; k++) {
+            Iterator<Grids_Chunk> ite = chunks.iterator();
+            Grids_Chunk c = ite.next();
+            ite.remove();
+            chunks.add(c);
+            if (candidate.test(c)) {
+                if (c.isReferenced()) {
+                    c.setReferenced(false);
+                    if (r == null) {
+                        r = c;
+                    }
+                } else {
+                    return c;
+                }
+            }
+        }
+        // Referenced again during the sweep (by other threads).
+        return r;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2019 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.grids.memory;
+
+import java.util.function.Predicate;
+import uk.ac.leeds.ccg.grids.d2.chunk.Grids_Chunk;
+
+/**
+ * A least recently used eviction policy. The chunk selected for swapping is
+ * the one that was accessed longest ago. {@link #chunks} is kept in access
+ * order by moving a chunk to the end when its last access time changes, so
+ * the first candidate in it is selected. As times are coarse, chunks accessed
+ * between the same two loads or evictions are ordered by their first access
+ * in that interval.
+ *
+ * @author Andy Turner
+ * @version 1.0.0
+ */
+public class Grids_EvictionPolicyLRU extends Grids_EvictionPolicy {
+
+    public Grids_EvictionPolicyLRU() {
+        super();
+    }
+
+    @Override
+    protected synchronized void moved(Grids_Chunk c) {
+        if (chunks.remove(c)) {
+            chunks.add(c);
+        }
+    }
+
+    @Override
+    public synchronized Grids_Chunk select(Predicate<Grids_Chunk> candidate) {
+        for (Grids_Chunk c : chunks) {
+            if (candidate.test(c)) {
+                return c;
+            }
+        }
+        return null;
+    }
+}
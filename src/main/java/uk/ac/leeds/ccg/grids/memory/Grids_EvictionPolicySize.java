@@ -0,0 +1,87 @@
+/*
+ * Copyright 2019 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.grids.memory;
+
+import java.util.function.Predicate;
+import uk.ac.leeds.ccg.grids.d2.chunk.Grids_Chunk;
+
+/**
+ * A size aware eviction policy. Each candidate is scored by multiplying its
+ * size by the logical time since it was last accessed and the chunk with the
+ * highest score is selected. So of two chunks accessed equally long ago the
+ * larger is swapped first, and a small chunk is only swapped ahead of a large
+ * one if it has not been accessed for proportionately longer. This frees more
+ * memory per swap than least recently used when chunks vary in size, such as
+ * the chunks in the final row and column of a grid.
+ *
+ * Rather than scoring all chunks, the first {@link #sample} candidates in
+ * least recently used order are scored. This bounds the cost of a selection
+ * and as the oldest chunks have the most to gain from the time factor it
+ * rarely changes the choice.
+ *
+ * @author Andy Turner
+ * @version 1.0.0
+ */
+public class Grids_EvictionPolicySize extends Grids_EvictionPolicyLRU {
+
+    /**
+     * The number of candidates scored in each selection.
+     */
+    protected final int sample;
+
+    public Grids_EvictionPolicySize() {
+        this(32);
+    }
+
+    /**
+     * @param sample What {@link #sample} is set to.
+     */
+    public Grids_EvictionPolicySize(int sample) {
+        super();
+        this.sample = sample;
+    }
+
+    /**
+     * @param c The chunk.
+     * @return The size of {@code c} used in scoring. This is the estimate of
+     * the number of bytes of fast access memory {@code c} uses.
+     */
+    protected long getSize(Grids_Chunk c) {
+        return c.getMemoryFootprint();
+    }
+
+    @Override
+    public synchronized Grids_Chunk select(Predicate<Grids_Chunk> candidate) {
+        long now = time.get();
+        Grids_Chunk r = null;
+        double max = -1d;
+        int n = 0;
+        for (Grids_Chunk c : chunks) {
+            if (candidate.test(c)) {
+                double score = (double) getSize(c)
+                        * (now - c.getLastAccess() + 1L);
+                if (score > max) {
+                    max = score;
+                    r = c;
+                }
+                if (++n == sample) {
+                    break;
+                }
+            }
+        }
+        return r;
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2019 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.grids.process;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import uk.ac.leeds.ccg.grids.core.Grids_Environment;
+import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
+import uk.ac.leeds.ccg.grids.d2.grid.Grids_Grid;
+
+/**
+ * For processing the chunks of grids in parallel. Work is scheduled per chunk
+ * ID on a {@link ForkJoinPool}: the chunk IDs are split in half recursively
+ * until each task is for a single chunk, so idle threads steal the remaining
+ * halves of busy ones.
+ *
+ * Whilst a chunk is processed the chunks with the same chunk ID in each of the
+ * grids involved are pinned (see {@link Grids_Grid#pin(Grids_2D_ID_int)}) so
+ * the memory manager does not swap them. Checks on memory are made by one
+ * thread at a time before each chunk is processed.
+ *
+ * The grids processed together are expected to have the same chunk structure
+ * (see {@link Grids_Grid#isSameDimensionsAndChunks(Grids_Grid)}).
+ *
+ * @author Andy Turner
+ * @version 1.0.0
+ */
+public class Grids_ChunkExecutor {
+
+    /**
+     * For processing a chunk.
+     */
+    @FunctionalInterface
+    public interface ChunkTask {
+
+        /**
+         * @param i The chunk ID of the chunk to process.
+         * @throws Exception If encountered.
+         */
+        void run(Grids_2D_ID_int i) throws Exception;
+    }
+
+    /**
+     * The environment.
+     */
+    protected final Grids_Environment env;
+
+    /**
+     * The number of threads to process chunks with.
+     */
+    protected final int parallelism;
+
+    /**
+     * For processing chunks. This is {@code null} if {@link #parallelism} is
+     * {@code 1} in which case chunks are processed by the calling thread.
+     */
+    protected final ForkJoinPool pool;
+
+    /**
+     * For serialising checks on memory.
+     */
+    private final Object memoryLock = new Object();
+
+    /**
+     * @param e What {@link #env} is set to.
+     * @param parallelism What {@link #parallelism} is set to.
+     */
+    public Grids_ChunkExecutor(Grids_Environment e, int parallelism) {
+        env = e;
+        this.parallelism = Math.max(1, parallelism);
+        if (this.parallelism > 1) {
+            pool = new ForkJoinPool(this.parallelism);
+        } else {
+            pool = null;
+        }
+    }
+
+    /**
+     * @return {@link #parallelism}
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Runs {@code t} for each chunk ID of {@code grids[0]}. Each call is made
+     * with the chunk with that chunk ID pinned in each of {@code grids}.
+     *
+     * @param t The task to run.
+     * @param grids The grids to pin chunks in. These should all have the same
+     * chunk structure.
+     * @throws Exception The first exception thrown by {@code t}.
+     */
+    public void forEachChunk(ChunkTask t, Grids_Grid... grids)
+            throws Exception {
+        List<Grids_2D_ID_int> ids = new ArrayList<>(grids[0].getChunkIDs());
+        AtomicReference<Exception> e = new AtomicReference<>();
+        if (pool == null) {
+            for (Grids_2D_ID_int i : ids) {
+                run(t, i, grids);
+            }
+        } else {
+            pool.invoke(new Task(ids, 0, ids.size(), t, grids, e));
+            if (e.get() != null) {
+                throw e.get();
+            }
+        }
+    }
+
+    /**
+     * Pins the chunk with chunk ID {@code i} in each of {@code grids}, checks
+     * memory and runs {@code t}.
+     *
+     * @param t The task to run.
+     * @param i The chunk ID.
+     * @param grids The grids.
+     * @throws Exception If encountered.
+     */
+    protected void run(ChunkTask t, Grids_2D_ID_int i, Grids_Grid[] grids)
+            throws Exception {
+        for (Grids_Grid g : grids) {
+            g.pin(i);
+        }
+        try {
+            synchronized (memoryLock) {
+                env.checkAndMaybeFreeMemory();
+            }
+            t.run(i);
+        } finally {
+            for (Grids_Grid g : grids) {
+                g.unpin(i);
+            }
+        }
+    }
+
+    /**
+     * Stops the threads.
+     */
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * For running a task on a range of chunk IDs.
+     */
+    private class Task extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Grids_2D_ID_int> ids;
+        private final int lo;
+        private final int hi;
+        private final ChunkTask t;
+        private final Grids_Grid[] grids;
+        private final AtomicReference<Exception> e;
+
+        Task(List<Grids_2D_ID_int> ids, int lo, int hi, ChunkTask t,
+                Grids_Grid[] grids, AtomicReference<Exception> e) {
+            this.ids = ids;
+            this.lo = lo;
+            this.hi = hi;
+            this.t = t;
+            this.grids = grids;
+            this.e = e;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Task(ids, lo, mid, t, grids, e),
+                        new Task(ids, mid, hi, t, grids, e));
+            } else if (hi > lo && e.get() == null) {
+                try {
+                    run(t, ids.get(lo), grids);
+                } catch (Exception ex) {
+                    e.compareAndSet(null, ex);
+                }
+            }
+        }
+    }
+}
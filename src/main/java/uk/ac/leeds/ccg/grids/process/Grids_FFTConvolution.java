@@ -0,0 +1,396 @@
+/*
+ * Copyright 2019 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.grids.process;
+
+import java.util.Arrays;
+
+/**
+ * For calculating weighted sums of the values around each cell of a chunk
+ * using fast Fourier transforms (FFTs). The weighted sum for the cell at row
+ * {@code r}, column {@code c} is the sum over {@code p} and {@code q} from
+ * {@code -kd} to {@code kd} of {@code w[p + kd][q + kd]} times the value of
+ * the cell at row {@code r + p}, column {@code c + q}, where {@code w} are the
+ * kernel weights and {@code kd} is the kernel distance in cells.
+ *
+ * The values are those of a chunk and the halo of cells around it in a
+ * {@link Grids_StencilBuffer} layout, so a grid is convolved a tile (chunk)
+ * at a time using the overlap-save method: each tile with its halo is
+ * transformed, multiplied by the transform of the kernel and transformed
+ * back, and the weighted sums for the cells of the chunk are kept. The
+ * transforms are of the next power of 2 rows and columns at least the size
+ * of the tile with its halo, so the sums for the cells of the chunk are not
+ * affected by the wrapping around of the circular convolution. Two arrays of
+ * values are convolved at once as the real and imaginary parts of a complex
+ * array.
+ *
+ * For a kernel with {@code n} weights the cost of direct summation is in the
+ * order of {@code n} operations per cell whereas the cost of this is in the
+ * order of the log of the number of cells in a tile, so this is cheaper for
+ * all but small kernels (see
+ * {@link #isCheaper(int, int, int, int)}). The sums differ from those of
+ * direct summation by rounding error which is no more than about
+ * {@link #TOLERANCE} times the sum of the absolute values of the products
+ * summed.
+ *
+ * @author Andy Turner
+ * @version 1.0.0
+ */
+public class Grids_FFTConvolution {
+
+    /**
+     * The relative tolerance of the results compared with those of direct
+     * summation.
+     */
+    public static final double TOLERANCE = 1E-9;
+
+    /**
+     * The number of rows and columns of cells around a chunk.
+     */
+    protected final int halo;
+
+    /**
+     * The number of rows in a buffer.
+     */
+    protected final int bufferNRows;
+
+    /**
+     * The number of values in a row of a buffer.
+     */
+    protected final int stride;
+
+    /**
+     * The number of rows of the transforms.
+     */
+    protected final int nRows;
+
+    /**
+     * The number of columns of the transforms.
+     */
+    protected final int nCols;
+
+    /**
+     * For transforming columns.
+     */
+    protected final Transform colTransform;
+
+    /**
+     * For transforming rows.
+     */
+    protected final Transform rowTransform;
+
+    /**
+     * The real part of the transform of the kernel divided by the number of
+     * values in the transform.
+     */
+    protected final double[] kRe;
+
+    /**
+     * The imaginary part of the transform of the kernel divided by the number
+     * of values in the transform.
+     */
+    protected final double[] kIm;
+
+    /**
+     * @param w The kernel weights. This is a square array with an odd number
+     * of rows. Cells not in the kernel should have a weight of {@code 0}.
+     * @param chunkNRows The maximum number of rows in a chunk.
+     * @param chunkNCols The maximum number of columns in a chunk.
+     * @param halo What {@link #halo} is set to. This must be at least the
+     * kernel distance in cells.
+     */
+    public Grids_FFTConvolution(double[][] w, int chunkNRows, int chunkNCols,
+            int halo) {
+        int kd = (w.length - 1) / 2;
+        if (kd > halo) {
+            throw new IllegalArgumentException("halo < kernel distance");
+        }
+        this.halo = halo;
+        bufferNRows = chunkNRows + 2 * halo;
+        stride = Grids_StencilBuffer.getStride(chunkNCols, halo);
+        nRows = getSize(bufferNRows);
+        nCols = getSize(stride);
+        colTransform = new Transform(nRows);
+        rowTransform = new Transform(nCols);
+        kRe = new double[nRows * nCols];
+        kIm = new double[nRows * nCols];
+        // Reflect the kernel so the convolution gives the weighted sums.
+        double n = (double) nRows * nCols;
+        for (int p = -kd; p <= kd; p++) {
+            int row = (-p) & (nRows - 1);
+            for (int q = -kd; q <= kd; q++) {
+                int col = (-q) & (nCols - 1);
+                kRe[row * nCols + col] = w[p + kd][q + kd] / n;
+            }
+        }
+        Workspace ws = new Workspace();
+        for (int row = 0; row < nRows; row++) {
+            rowTransform.apply(kRe, kIm, row * nCols, false);
+        }
+        transformCols(kRe, kIm, ws, false);
+    }
+
+    /**
+     * @param n The number of values.
+     * @return The smallest power of 2 that is at least {@code n}.
+     */
+    private static int getSize(int n) {
+        return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    /**
+     * Estimates whether weighted sums are cheaper to calculate with this
+     * than by direct summation. A complex FFT of {@code n} values is taken to
+     * cost {@code 5 n log2(n)} operations and so transforming a tile and
+     * transforming it back costs about that for each row and column,
+     * whereas direct summation costs {@code 2} operations for each weight
+     * for each cell. Two arrays of values are convolved at once.
+     *
+     * @param chunkNRows The maximum number of rows in a chunk.
+     * @param chunkNCols The maximum number of columns in a chunk.
+     * @param halo The number of rows and columns of cells around a chunk.
+     * @param nWeights The number of weights in the kernel.
+     * @return {@code true} if convolving with FFTs is estimated to be cheaper
+     * than direct summation.
+     */
+    public static boolean isCheaper(int chunkNRows, int chunkNCols, int halo,
+            int nWeights) {
+        int br = chunkNRows + 2 * halo;
+        double nr = getSize(br);
+        double nc = getSize(Grids_StencilBuffer.getStride(chunkNCols, halo));
+        double log2nr = Math.log(nr) / Math.log(2.0d);
+        double log2nc = Math.log(nc) / Math.log(2.0d);
+        double fft = 5.0d * (br + chunkNRows) * nc * log2nc
+                + 10.0d * nc * nr * log2nr + 6.0d * nr * nc;
+        double direct = 2.0d * 2.0d * nWeights * chunkNRows * chunkNCols;
+        return fft < direct;
+    }
+
+    /**
+     * @return The number of values in an array of a buffer.
+     */
+    public int getBufferLength() {
+        return bufferNRows * stride;
+    }
+
+    /**
+     * Calculates the weighted sums of {@code a} and {@code b} for the cells of
+     * a chunk. The values are in the layout of a {@link Grids_StencilBuffer}
+     * (see {@link Grids_StencilBuffer#index(int, int)}) and there must be no
+     * {@link Double#NaN} values: values of cells with no data and cells
+     * outside the grid should be {@code 0}. The results are set in
+     * {@code ra} and {@code rb} at the same positions for the cells of the
+     * chunk; other values are not changed.
+     *
+     * @param a The values to convolve.
+     * @param b The other values to convolve, or {@code null}.
+     * @param ra For returning the weighted sums of {@code a}. This may be
+     * {@code a}.
+     * @param rb For returning the weighted sums of {@code b}. This may be
+     * {@code b} or {@code null} if {@code b} is {@code null}.
+     * @param ws The workspace. Each thread should use its own.
+     */
+    public void convolve(double[] a, double[] b, double[] ra, double[] rb,
+            Workspace ws) {
+        double[] re = ws.re;
+        double[] im = ws.im;
+        Arrays.fill(re, 0.0d);
+        Arrays.fill(im, 0.0d);
+        for (int row = 0; row < bufferNRows; row++) {
+            System.arraycopy(a, row * stride, re, row * nCols, stride);
+            if (b != null) {
+                System.arraycopy(b, row * stride, im, row * nCols, stride);
+            }
+            rowTransform.apply(re, im, row * nCols, false);
+        }
+        // The other rows are all 0 and so are their transforms.
+        transformCols(re, im, ws, false);
+        for (int k = 0; k < re.length; k++) {
+            double x = re[k];
+            double y = im[k];
+            re[k] = x * kRe[k] - y * kIm[k];
+            im[k] = x * kIm[k] + y * kRe[k];
+        }
+        transformCols(re, im, ws, true);
+        // Only the rows of the chunk are needed.
+        for (int row = halo; row < bufferNRows - halo; row++) {
+            rowTransform.apply(re, im, row * nCols, true);
+            System.arraycopy(re, row * nCols + halo, ra, row * stride + halo,
+                    stride - 2 * halo);
+            if (rb != null) {
+                System.arraycopy(im, row * nCols + halo, rb,
+                        row * stride + halo, stride - 2 * halo);
+            }
+        }
+    }
+
+    /**
+     * Transforms each column of {@code re} and {@code im}.
+     *
+     * @param re The real parts.
+     * @param im The imaginary parts.
+     * @param ws The workspace.
+     * @param inverse If {@code true} then the inverse transform (without
+     * scaling) is applied.
+     */
+    private void transformCols(double[] re, double[] im, Workspace ws,
+            boolean inverse) {
+        double[] cre = ws.colRe;
+        double[] cim = ws.colIm;
+        for (int col = 0; col < nCols; col++) {
+            for (int row = 0, k = col; row < nRows; row++, k += nCols) {
+                cre[row] = re[k];
+                cim[row] = im[k];
+            }
+            colTransform.apply(cre, cim, 0, inverse);
+            for (int row = 0, k = col; row < nRows; row++, k += nCols) {
+                re[k] = cre[row];
+                im[k] = cim[row];
+            }
+        }
+    }
+
+    /**
+     * @return A new workspace.
+     */
+    public Workspace getWorkspace() {
+        return new Workspace();
+    }
+
+    /**
+     * The arrays for the workings of {@link #convolve}.
+     */
+    public class Workspace {
+
+        /**
+         * The real parts of a transform.
+         */
+        protected final double[] re;
+
+        /**
+         * The imaginary parts of a transform.
+         */
+        protected final double[] im;
+
+        /**
+         * The real parts of a column.
+         */
+        protected final double[] colRe;
+
+        /**
+         * The imaginary parts of a column.
+         */
+        protected final double[] colIm;
+
+        /**
+         * Creates a new workspace.
+         */
+        protected Workspace() {
+            re = new double[nRows * nCols];
+            im = new double[nRows * nCols];
+            colRe = new double[nRows];
+            colIm = new double[nRows];
+        }
+    }
+
+    /**
+     * An in place iterative radix 2 complex FFT of {@link #n} values.
+     */
+    protected static class Transform {
+
+        /**
+         * The number of values. This is a power of 2.
+         */
+        protected final int n;
+
+        /**
+         * The cosines of the angles {@code 2 * PI * k / n}.
+         */
+        protected final double[] cos;
+
+        /**
+         * The sines of the angles {@code 2 * PI * k / n}.
+         */
+        protected final double[] sin;
+
+        /**
+         * The bit reversed indexes.
+         */
+        protected final int[] rev;
+
+        /**
+         * @param n What {@link #n} is set to.
+         */
+        protected Transform(int n) {
+            this.n = n;
+            cos = new double[n / 2];
+            sin = new double[n / 2];
+            for (int k = 0; k < n / 2; k++) {
+                double a = 2.0d * Math.PI * k / n;
+                cos[k] = Math.cos(a);
+                sin[k] = Math.sin(a);
+            }
+            rev = new int[n];
+            int bits = Integer.numberOfTrailingZeros(n);
+            for (int k = 1; k < n; k++) {
+                rev[k] = Integer.reverse(k) >>> (32 - bits);
+            }
+        }
+
+        /**
+         * Transforms the {@link #n} values from {@code off} in {@code re} and
+         * {@code im}.
+         *
+         * @param re The real parts.
+         * @param im The imaginary parts.
+         * @param off The position of the first value.
+         * @param inverse If {@code true} then the inverse transform (without
+         * scaling) is applied.
+         */
+        protected void apply(double[] re, double[] im, int off,
+                boolean inverse) {
+            for (int k = 0; k < n; k++) {
+                int j = rev[k];
+                if (k < j) {
+                    double t = re[off + k];
+                    re[off + k] = re[off + j];
+                    re[off + j] = t;
+                    t = im[off + k];
+                    im[off + k] = im[off + j];
+                    im[off + j] = t;
+                }
+            }
+            double sign = inverse ? 1.0d : -1.0d;
+            for (int len = 2; len <= n; len <<= 1) {
+                int half = len >> 1;
+                int step = n / len;
+                for (int i = off; i < off + n; i += len) {
+                    for (int k = 0; k < half; k++) {
+                        double wr = cos[k * step];
+                        double wi = sign * sin[k * step];
+                        int x = i + k;
+                        int y = x + half;
+                        double tr = re[y] * wr - im[y] * wi;
+                        double ti = re[y] * wi + im[y] * wr;
+                        re[y] = re[x] - tr;
+                        im[y] = im[x] - ti;
+                        re[x] += tr;
+                        im[x] += ti;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -23,6 +23,8 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.LongBinaryOperator;
 import uk.ac.leeds.ccg.generic.io.Generic_Path;
 import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
 import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_long;
@@ -30,18 +32,46 @@ import uk.ac.leeds.ccg.grids.d2.grid.Grids_Dimensions;
 import uk.ac.leeds.ccg.grids.d2.grid.d.Grids_GridDouble;
 import uk.ac.leeds.ccg.grids.d2.grid.Grids_GridNumber;
 import uk.ac.leeds.ccg.grids.d2.grid.d.Grids_GridFactoryDouble;
+import uk.ac.leeds.ccg.grids.d2.grid.f.Grids_GridFactoryFloat;
+import uk.ac.leeds.ccg.grids.d2.grid.f.Grids_GridFloat;
+import uk.ac.leeds.ccg.grids.d2.chunk.f.Grids_ChunkFloat;
+import uk.ac.leeds.ccg.grids.d2.chunk.f.Grids_ChunkFactoryFloatArray;
+import uk.ac.leeds.ccg.grids.d2.chunk.f.Grids_ChunkFactoryFloatSinglet;
+import uk.ac.leeds.ccg.grids.d2.chunk.Grids_ChunkNumber;
 import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkDouble;
 import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkFactoryDoubleArray;
 import uk.ac.leeds.ccg.grids.d2.grid.i.Grids_GridInt;
 import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkInt;
 import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkFactoryIntArray;
 import uk.ac.leeds.ccg.grids.d2.grid.i.Grids_GridFactoryInt;
+import uk.ac.leeds.ccg.grids.d2.grid.i.Grids_GridByte;
+import uk.ac.leeds.ccg.grids.d2.grid.i.Grids_GridFactoryByte;
+import uk.ac.leeds.ccg.grids.d2.grid.i.Grids_GridFactoryShort;
+import uk.ac.leeds.ccg.grids.d2.grid.i.Grids_GridShort;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkByte;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkFactoryByteArray;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkFactoryByteSinglet;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkFactoryShortArray;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkFactoryShortSinglet;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkShort;
 import uk.ac.leeds.ccg.grids.core.Grids_Environment;
 import uk.ac.leeds.ccg.grids.core.Grids_Object;
 import uk.ac.leeds.ccg.grids.d2.grid.b.Grids_GridFactoryBoolean;
 import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkFactoryDoubleSinglet;
 import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkFactoryIntSinglet;
 import uk.ac.leeds.ccg.grids.d2.grid.b.Grids_GridFactoryBinary;
+import uk.ac.leeds.ccg.grids.d2.grid.b.Grids_GridBinary;
+import uk.ac.leeds.ccg.grids.d2.grid.b.Grids_GridBoolean;
+import uk.ac.leeds.ccg.grids.d2.chunk.b.Grids_ChunkBinary;
+import uk.ac.leeds.ccg.grids.d2.chunk.b.Grids_ChunkBinaryArray;
+import uk.ac.leeds.ccg.grids.d2.chunk.b.Grids_ChunkBinarySinglet;
+import uk.ac.leeds.ccg.grids.d2.chunk.b.Grids_ChunkBoolean;
+import uk.ac.leeds.ccg.grids.d2.chunk.b.Grids_ChunkBooleanArray;
+import uk.ac.leeds.ccg.grids.d2.chunk.b.Grids_ChunkBooleanSinglet;
+import uk.ac.leeds.ccg.grids.d2.chunk.b.Grids_ChunkFactoryBinarySinglet;
+import uk.ac.leeds.ccg.grids.d2.chunk.b.Grids_ChunkFactoryBooleanSinglet;
+import uk.ac.leeds.ccg.grids.d2.stats.Grids_StatsNotUpdatedBinary;
+import uk.ac.leeds.ccg.grids.d2.stats.Grids_StatsNotUpdatedBoolean;
 import uk.ac.leeds.ccg.grids.d2.stats.Grids_StatsNumber;
 import uk.ac.leeds.ccg.grids.io.Grids_ESRIAsciiGridExporter;
 import uk.ac.leeds.ccg.grids.io.Grids_Files;
@@ -52,6 +82,8 @@ import uk.ac.leeds.ccg.grids.d2.chunk.b.Grids_ChunkFactoryBooleanArray;
 import uk.ac.leeds.ccg.grids.d2.chunk.bd.Grids_ChunkFactoryBDArray;
 import uk.ac.leeds.ccg.grids.d2.chunk.bd.Grids_ChunkFactoryBDSinglet;
 import uk.ac.leeds.ccg.grids.d2.grid.bd.Grids_GridFactoryBD;
+import uk.ac.leeds.ccg.grids.d2.chunk.bd.Grids_ChunkBD;
+import uk.ac.leeds.ccg.grids.d2.grid.bd.Grids_GridBD;
 
 /**
  * General methods for processing individual or multiple grids.
@@ -83,11 +115,26 @@ public class Grids_Processor extends Grids_Object {
      */
     public Grids_GridFactoryBinary gridFactoryBinary;
 
+    /**
+     * Grids_GridFactoryByte
+     */
+    public Grids_GridFactoryByte gridFactoryByte;
+
+    /**
+     * Grids_GridFactoryShort
+     */
+    public Grids_GridFactoryShort gridFactoryShort;
+
     /**
      * Grids_GridFactoryInt
      */
     public Grids_GridFactoryInt gridFactoryInt;
 
+    /**
+     * Grids_GridFactoryFloat
+     */
+    public Grids_GridFactoryFloat gridFactoryFloat;
+
     /**
      * Grids_GridFactoryDouble
      */
@@ -98,6 +145,19 @@ public class Grids_Processor extends Grids_Object {
      */
     public Grids_GridFactoryBD gridFactoryBD;
 
+    /**
+     * For processing chunks in parallel. This is initialised by
+     * {@link #getChunkExecutor()}.
+     */
+    protected transient Grids_ChunkExecutor chunkExecutor;
+
+    /**
+     * If {@code true} then arithmetic is done using {@link BigDecimal} for
+     * all types of grid. Otherwise {@code double} arithmetic is used unless a
+     * grid is a {@link Grids_GridBD}. The default is {@code false}.
+     */
+    protected boolean exact;
+
     /**
      * @param e The grids environment.
      * @throws java.lang.Exception If encountered.
@@ -129,6 +189,20 @@ public class Grids_Processor extends Grids_Object {
         fs = Generic_FileStore.getFileStore(dir);
         gridFactoryBinary = new Grids_GridFactoryBinary(env, fs,
                 new Grids_ChunkFactoryBinaryArray(), chunkNRows, chunkNCols);
+        // Byte
+        dir = Paths.get(files.getGeneratedGridByteDir().toString());
+        fs = Generic_FileStore.getFileStore(dir);
+        gridFactoryByte = new Grids_GridFactoryByte(env, fs,
+                new Grids_ChunkFactoryByteSinglet(Byte.MIN_VALUE),
+                new Grids_ChunkFactoryByteArray(),
+                chunkNRows, chunkNCols);
+        // Short
+        dir = Paths.get(files.getGeneratedGridShortDir().toString());
+        fs = Generic_FileStore.getFileStore(dir);
+        gridFactoryShort = new Grids_GridFactoryShort(env, fs,
+                new Grids_ChunkFactoryShortSinglet(Short.MIN_VALUE),
+                new Grids_ChunkFactoryShortArray(),
+                chunkNRows, chunkNCols);
         // Int
         dir = Paths.get(files.getGeneratedGridIntDir().toString());
         fs = Generic_FileStore.getFileStore(dir);
@@ -136,6 +210,13 @@ public class Grids_Processor extends Grids_Object {
                 new Grids_ChunkFactoryIntSinglet(Integer.MIN_VALUE),
                 new Grids_ChunkFactoryIntArray(),
                 chunkNRows, chunkNCols);
+        // Float
+        dir = Paths.get(files.getGeneratedGridFloatDir().toString());
+        fs = Generic_FileStore.getFileStore(dir);
+        gridFactoryFloat = new Grids_GridFactoryFloat(env, fs,
+                new Grids_ChunkFactoryFloatSinglet(-Float.MAX_VALUE),
+                new Grids_ChunkFactoryFloatArray(),
+                chunkNRows, chunkNCols);
         // Double
         dir = Paths.get(files.getGeneratedGridDoubleDir().toString());
         fs = Generic_FileStore.getFileStore(dir);
@@ -170,6 +251,264 @@ public class Grids_Processor extends Grids_Object {
         return startTime;
     }
 
+    /**
+     * If {@link #chunkExecutor} is {@code null} it is initialised to use as
+     * many threads as there are available processors.
+     *
+     * @return {@link #chunkExecutor}
+     */
+    public synchronized Grids_ChunkExecutor getChunkExecutor() {
+        if (chunkExecutor == null) {
+            chunkExecutor = new Grids_ChunkExecutor(env,
+                    Runtime.getRuntime().availableProcessors());
+        }
+        return chunkExecutor;
+    }
+
+    /**
+     * Initialises {@link #chunkExecutor} to use {@code n} threads. If
+     * {@code n} is {@code 1} then chunks are processed one at a time by the
+     * calling thread.
+     *
+     * @param n The number of threads.
+     */
+    public synchronized void setParallelism(int n) {
+        if (chunkExecutor != null) {
+            chunkExecutor.shutdown();
+        }
+        chunkExecutor = new Grids_ChunkExecutor(env, n);
+    }
+
+    /**
+     * @param g The grid.
+     * @return {@code true} if {@code g} is a {@link Grids_GridDouble}, a
+     * {@link Grids_GridFloat}, a {@link Grids_GridInt}, a
+     * {@link Grids_GridShort} or a {@link Grids_GridByte} and so can be
+     * processed a chunk at a time in parallel.
+     */
+    protected static boolean isPrimitiveType(Grids_GridNumber g) {
+        return g instanceof Grids_GridDouble || g instanceof Grids_GridFloat
+                || g instanceof Grids_GridInt || g instanceof Grids_GridShort
+                || g instanceof Grids_GridByte;
+    }
+
+    /**
+     * @return {@link #exact}
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * @param exact What {@link #exact} is set to.
+     */
+    public void setExact(boolean exact) {
+        this.exact = exact;
+    }
+
+    /**
+     * @param gs The grids.
+     * @return {@code true} if {@link #exact} is {@code false} and each of
+     * {@code gs} is of a primitive type (see {@link #isPrimitiveType}), in
+     * which case {@code double} arithmetic is used in processing them.
+     */
+    protected boolean isPrimitive(Grids_GridNumber... gs) {
+        if (exact) {
+            return false;
+        }
+        for (Grids_GridNumber g : gs) {
+            if (!isPrimitiveType(g)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param g A grid of a primitive type (see {@link #isPrimitiveType}).
+     * @param row The cell row.
+     * @param col The cell column.
+     * @return The value of {@code g} at cell row {@code row}, cell column
+     * {@code col} as a double.
+     * @throws Exception If encountered.
+     */
+    protected static double getCell(Grids_GridNumber g, long row, long col)
+            throws Exception {
+        if (g instanceof Grids_GridDouble) {
+            return ((Grids_GridDouble) g).getCell(row, col);
+        } else if (g instanceof Grids_GridFloat) {
+            return ((Grids_GridFloat) g).getCell(row, col);
+        } else if (g instanceof Grids_GridShort) {
+            return ((Grids_GridShort) g).getCell(row, col);
+        } else if (g instanceof Grids_GridByte) {
+            return ((Grids_GridByte) g).getCell(row, col);
+        }
+        return ((Grids_GridInt) g).getCell(row, col);
+    }
+
+    /**
+     * Sets the value of {@code g} at cell row {@code row}, cell column
+     * {@code col} to {@code v} cast to the type of the values of {@code g}.
+     *
+     * @param g A grid of a primitive type (see {@link #isPrimitiveType}).
+     * @param row The cell row.
+     * @param col The cell column.
+     * @param v The value.
+     * @throws Exception If encountered.
+     */
+    protected static void setCell(Grids_GridNumber g, long row, long col,
+            double v) throws Exception {
+        if (g instanceof Grids_GridDouble) {
+            ((Grids_GridDouble) g).setCell(row, col, v);
+        } else if (g instanceof Grids_GridFloat) {
+            ((Grids_GridFloat) g).setCell(row, col, (float) v);
+        } else if (g instanceof Grids_GridShort) {
+            ((Grids_GridShort) g).setCell(row, col, (short) v);
+        } else if (g instanceof Grids_GridByte) {
+            ((Grids_GridByte) g).setCell(row, col, (byte) v);
+        } else {
+            ((Grids_GridInt) g).setCell(row, col, (int) v);
+        }
+    }
+
+    /**
+     * @param g A grid of a primitive type (see {@link #isPrimitiveType}).
+     * @param i The chunk ID.
+     * @return The chunk of {@code g} with chunk ID {@code i} ready for values
+     * to be set in it.
+     * @throws Exception If encountered.
+     */
+    protected static Grids_ChunkNumber getChunkToSet(Grids_GridNumber g,
+            Grids_2D_ID_int i) throws Exception {
+        if (g instanceof Grids_GridDouble) {
+            return ((Grids_GridDouble) g).getChunkToSet(i);
+        } else if (g instanceof Grids_GridFloat) {
+            return ((Grids_GridFloat) g).getChunkToSet(i);
+        } else if (g instanceof Grids_GridShort) {
+            return ((Grids_GridShort) g).getChunkToSet(i);
+        } else if (g instanceof Grids_GridByte) {
+            return ((Grids_GridByte) g).getChunkToSet(i);
+        }
+        return ((Grids_GridInt) g).getChunkToSet(i);
+    }
+
+    /**
+     * @param c A chunk of a grid of a primitive type.
+     * @param ccr The chunk cell row.
+     * @param ccc The chunk cell column.
+     * @return The value in {@code c} at chunk cell row {@code ccr}, chunk cell
+     * column {@code ccc} as a double.
+     */
+    protected static double getCell(Grids_ChunkNumber c, int ccr, int ccc) {
+        if (c instanceof Grids_ChunkDouble) {
+            return ((Grids_ChunkDouble) c).getCell(ccr, ccc);
+        } else if (c instanceof Grids_ChunkFloat) {
+            return ((Grids_ChunkFloat) c).getCell(ccr, ccc);
+        } else if (c instanceof Grids_ChunkShort) {
+            return ((Grids_ChunkShort) c).getCell(ccr, ccc);
+        } else if (c instanceof Grids_ChunkByte) {
+            return ((Grids_ChunkByte) c).getCell(ccr, ccc);
+        }
+        return ((Grids_ChunkInt) c).getCell(ccr, ccc);
+    }
+
+    /**
+     * Sets the value in {@code c} at chunk cell row {@code ccr}, chunk cell
+     * column {@code ccc} to {@code v} cast to the type of the values of
+     * {@code c}.
+     *
+     * @param c A chunk of a grid of a primitive type.
+     * @param ccr The chunk cell row.
+     * @param ccc The chunk cell column.
+     * @param v The value.
+     * @throws Exception If encountered.
+     */
+    protected static void setCell(Grids_ChunkNumber c, int ccr, int ccc,
+            double v) throws Exception {
+        if (c instanceof Grids_ChunkDouble) {
+            ((Grids_ChunkDouble) c).setCell(ccr, ccc, v);
+        } else if (c instanceof Grids_ChunkFloat) {
+            ((Grids_ChunkFloat) c).setCell(ccr, ccc, (float) v);
+        } else if (c instanceof Grids_ChunkShort) {
+            ((Grids_ChunkShort) c).setCell(ccr, ccc, (short) v);
+        } else if (c instanceof Grids_ChunkByte) {
+            ((Grids_ChunkByte) c).setCell(ccr, ccc, (byte) v);
+        } else {
+            ((Grids_ChunkInt) c).setCell(ccr, ccc, (int) v);
+        }
+    }
+
+    /**
+     * Sets the value in {@code c} at chunk cell row {@code ccr}, chunk cell
+     * column {@code ccc} to {@code v} converted as by
+     * {@link Grids_GridNumber#setCell(int, int, int, int, BigDecimal)}.
+     *
+     * @param c A chunk of a grid of a primitive type.
+     * @param ccr The chunk cell row.
+     * @param ccc The chunk cell column.
+     * @param v The value.
+     * @throws Exception If encountered.
+     */
+    protected static void setCell(Grids_ChunkNumber c, int ccr, int ccc,
+            BigDecimal v) throws Exception {
+        if (c instanceof Grids_ChunkDouble) {
+            ((Grids_ChunkDouble) c).setCell(ccr, ccc, v.doubleValue());
+        } else if (c instanceof Grids_ChunkFloat) {
+            ((Grids_ChunkFloat) c).setCell(ccr, ccc, v.floatValue());
+        } else if (c instanceof Grids_ChunkShort) {
+            ((Grids_ChunkShort) c).setCell(ccr, ccc, v.shortValue());
+        } else if (c instanceof Grids_ChunkByte) {
+            ((Grids_ChunkByte) c).setCell(ccr, ccc, v.byteValue());
+        } else {
+            ((Grids_ChunkInt) c).setCell(ccr, ccc, v.intValue());
+        }
+    }
+
+    /**
+     * Updates the stats of {@code g} after values have been set directly in
+     * its chunks.
+     *
+     * @param g A grid of a primitive type (see {@link #isPrimitiveType}).
+     * @throws Exception If encountered.
+     */
+    protected static void updateStats(Grids_GridNumber g) throws Exception {
+        if (g instanceof Grids_GridDouble) {
+            ((Grids_GridDouble) g).updateStats();
+        } else if (g instanceof Grids_GridFloat) {
+            ((Grids_GridFloat) g).updateStats();
+        } else if (g instanceof Grids_GridShort) {
+            ((Grids_GridShort) g).updateStats();
+        } else if (g instanceof Grids_GridByte) {
+            ((Grids_GridByte) g).updateStats();
+        } else {
+            ((Grids_GridInt) g).updateStats();
+        }
+    }
+
+    /**
+     * @param f The factory to create the grid with.
+     * @param g The grid.
+     * @return A new grid with the same dimensions and chunks as {@code g}
+     * (see {@link Grids_GridNumber#isSameDimensionsAndChunks}) and the no data
+     * value of {@code f}.
+     * @throws Exception If encountered.
+     */
+    protected Grids_GridDouble createAligned(Grids_GridFactoryDouble f,
+            Grids_GridNumber g) throws Exception {
+        synchronized (f) {
+            int cnr = f.getChunkNRows();
+            int cnc = f.getChunkNCols();
+            f.setChunkNRows(g.getChunkNRows());
+            f.setChunkNCols(g.getChunkNCols());
+            try {
+                return f.create(g.getNRows(), g.getNCols(), g.getDimensions());
+            } finally {
+                f.setChunkNRows(cnr);
+                f.setChunkNCols(cnc);
+            }
+        }
+    }
+
     /**
      * Modifies grid by setting to grid.noDataValue those cells coincident with
      * mask.noDataValue cells. Warning!!! The grid and mask are assumed to be
@@ -185,7 +524,28 @@ public class Grids_Processor extends Grids_Object {
     public void mask(Grids_GridNumber g, Grids_GridNumber mask)
             throws IOException, ClassNotFoundException, Exception {
         env.checkAndMaybeFreeMemory();
-        if (g instanceof Grids_GridInt) {
+        if (g.isSameDimensionsAndChunks(mask) && isPrimitiveType(g)
+                && isPrimitiveType(mask)) {
+            double ndv = g.ndv.doubleValue();
+            double mndv = mask.ndv.doubleValue();
+            getChunkExecutor().forEachChunk(i -> {
+                Grids_ChunkNumber mc = (Grids_ChunkNumber) mask.getChunk(i);
+                Grids_ChunkNumber c = null;
+                int cnr = g.getChunkNRows(i);
+                int cnc = g.getChunkNCols(i);
+                for (int ccr = 0; ccr < cnr; ccr++) {
+                    for (int ccc = 0; ccc < cnc; ccc++) {
+                        if (getCell(mc, ccr, ccc) == mndv) {
+                            if (c == null) {
+                                c = getChunkToSet(g, i);
+                            }
+                            setCell(c, ccr, ccc, ndv);
+                        }
+                    }
+                }
+            }, g, mask);
+            updateStats(g);
+        } else if (g instanceof Grids_GridInt) {
             Grids_GridInt grid = (Grids_GridInt) g;
             int noDataValue = grid.getNoDataValue();
             if (mask instanceof Grids_GridInt) {
@@ -321,54 +681,79 @@ public class Grids_Processor extends Grids_Object {
     public void mask(Grids_GridNumber g, BigDecimal min, BigDecimal max)
             throws IOException, ClassNotFoundException, Exception {
         env.checkAndMaybeFreeMemory();
-        if (g.getClass() == Grids_GridInt.class) {
-            Grids_GridInt gi = (Grids_GridInt) g;
-            int ndv = gi.getNoDataValue();
-            Iterator<Grids_2D_ID_int> ite = gi.iterator().getGridIterator();
-            while (ite.hasNext()) {
-                Grids_ChunkInt chunk = gi.getChunk(ite.next());
-                Grids_2D_ID_int i = chunk.getId();
-                int cr = i.getRow();
-                int cc = i.getCol();
-                env.addToNotToClear(g, i);
-                env.checkAndMaybeFreeMemory();
-                int cnr = gi.getChunkNRows(i);
-                int cnc = gi.getChunkNCols(i);
+        if (isPrimitive(g)) {
+            double ndv = g.ndv.doubleValue();
+            double minD = min.doubleValue();
+            double maxD = max.doubleValue();
+            getChunkExecutor().forEachChunk(i -> {
+                Grids_ChunkNumber c = (Grids_ChunkNumber) g.getChunk(i);
+                boolean set = false;
+                int cnr = g.getChunkNRows(i);
+                int cnc = g.getChunkNCols(i);
                 for (int ccr = 0; ccr < cnr; ccr++) {
                     for (int ccc = 0; ccc < cnc; ccc++) {
-                        BigDecimal v = gi.getCellBigDecimal(chunk, cr, cc, ccr,
-                                ccc);
-                        if (v.compareTo(min) != -1 && v.compareTo(max) != 1) {
-                            gi.setCell(chunk, ccr, ccc, ndv);
+                        double v = getCell(c, ccr, ccc);
+                        if (v >= minD && v <= maxD) {
+                            if (!set) {
+                                c = getChunkToSet(g, i);
+                                set = true;
+                            }
+                            setCell(c, ccr, ccc, ndv);
                         }
                     }
                 }
-                env.removeFromNotToClear(g, i);
-            }
-        } else {
-            // ( grid.getClass() == Grids_GridDouble.class )
-            Grids_GridDouble gd = (Grids_GridDouble) g;
-            double ndv = gd.getNoDataValue();
-            Iterator<Grids_2D_ID_int> ite = gd.iterator().getGridIterator();
-            while (ite.hasNext()) {
-                Grids_ChunkDouble chunk = gd.getChunk(ite.next());
-                Grids_2D_ID_int i = chunk.getId();
-                int cr = i.getRow();
-                int cc = i.getCol();
-                env.addToNotToClear(g, i);
-                env.checkAndMaybeFreeMemory();
+            }, g);
+            updateStats(g);
+        } else if (isPrimitiveType(g)) {
+            double ndv = g.ndv.doubleValue();
+            getChunkExecutor().forEachChunk(i -> {
+                Grids_ChunkNumber c = (Grids_ChunkNumber) g.getChunk(i);
+                boolean set = false;
                 int cnr = g.getChunkNRows(i);
                 int cnc = g.getChunkNCols(i);
                 for (int ccr = 0; ccr < cnr; ccr++) {
                     for (int ccc = 0; ccc < cnc; ccc++) {
-                        BigDecimal v = gd.getCellBigDecimal(chunk, cr, cc, ccr,
-                                ccc);
+                        BigDecimal v = c.getCellBigDecimal(ccr, ccc);
                         if (v.compareTo(min) != -1 && v.compareTo(max) != 1) {
-                            gd.setCell(chunk, ccr, ccc, ndv);
+                            if (!set) {
+                                c = getChunkToSet(g, i);
+                                set = true;
+                            }
+                            setCell(c, ccr, ccc, ndv);
+                        }
+                    }
+                }
+            }, g);
+            updateStats(g);
+        } else {
+            /**
+             * Values are compared exactly. The chunks are processed in turn
+             * as setting cells updates the statistics of the grid.
+             */
+            Grids_GridBD gbd = (Grids_GridBD) g;
+            BigDecimal ndv = gbd.getNoDataValue();
+            int ncr = g.getNChunkRows();
+            int ncc = g.getNChunkCols();
+            for (int cr = 0; cr < ncr; cr++) {
+                for (int cc = 0; cc < ncc; cc++) {
+                    Grids_2D_ID_int i = new Grids_2D_ID_int(cr, cc);
+                    env.addToNotToClear(g, i);
+                    env.checkAndMaybeFreeMemory();
+                    Grids_ChunkBD c = gbd.getChunk(i);
+                    int cnr = g.getChunkNRows(i);
+                    int cnc = g.getChunkNCols(i);
+                    for (int ccr = 0; ccr < cnr; ccr++) {
+                        for (int ccc = 0; ccc < cnc; ccc++) {
+                            BigDecimal v = gbd.getCell(c, ccr, ccc);
+                            if (v.compareTo(ndv) != 0
+                                    && v.compareTo(min) != -1
+                                    && v.compareTo(max) != 1) {
+                                gbd.setCell(cr, cc, ccr, ccc, ndv);
+                            }
                         }
                     }
+                    env.removeFromNotToClear(g, i);
                 }
-                env.removeFromNotToClear(g, i);
             }
         }
         //grid.setName( grid.getName() + "_mask" );
@@ -390,6 +775,11 @@ public class Grids_Processor extends Grids_Object {
             double max) throws IOException, ClassNotFoundException, Exception {
         if (g instanceof Grids_GridDouble) {
             return rescale((Grids_GridDouble) g, null, 0.0d, 255.0d);
+        } else if (g instanceof Grids_GridFloat) {
+            return rescale((Grids_GridFloat) g, null, 0.0d, 255.0d);
+        } else if (g instanceof Grids_GridShort
+                || g instanceof Grids_GridByte) {
+            return rescale(toInt(g), null, 0.0d, 255.0d);
         } else {
             return rescale((Grids_GridInt) g, null, 0.0d, 255.0d);
         }
@@ -417,9 +807,6 @@ public class Grids_Processor extends Grids_Object {
     protected Grids_GridDouble rescale(Grids_GridDouble g, String type, double min,
             double max) throws IOException, ClassNotFoundException, Exception {
         env.checkAndMaybeFreeMemory();
-        int ncc = g.getNChunkCols();
-        int ncr = g.getNChunkCols();
-        double ndv = g.getNoDataValue();
         double range = max - min;
         Grids_StatsNumber stats = g.getStats();
         double minGrid = stats.getMin(true).doubleValue();
@@ -429,99 +816,20 @@ public class Grids_Processor extends Grids_Object {
                 g.getNCols() - 1);
         env.env.log("Initialised rescaled grid.");
         r.setName(g.getName());
-        System.out.println(r.toString());
         /**
          * If range of either input or output range is zero return min for all
          * non noDataValues.
          */
         if (rangeGrid == 0.0d || range == 0.0d) {
-            /**
-             * Better to go through chunks rather than rows. Though it does
-             * assume that the chunk structure of the grid and outputGrid are
-             * the same.
-             */
-            for (int cr = 0; cr < ncr; cr++) {
-                env.env.log("chunk row " + cr);
-                for (int cc = 0; cc < ncc; cc++) {
-                    Grids_2D_ID_int i = new Grids_2D_ID_int(cr, cc);
-                    env.addToNotToClear(g, i);
-                    env.addToNotToClear(r, i);
-                    env.checkAndMaybeFreeMemory();
-                    int cnc = g.getChunkNCols(cc);
-                    int cnr = g.getChunkNRows(cr);
-                    Grids_ChunkDouble gc = g.getChunk(i);
-                    Grids_ChunkDouble ogc = r.getChunk(i);
-                    for (int ccr = 0; ccr < cnr; ccr++) {
-                        for (int ccc = 0; ccc < cnc; ccc++) {
-                            double v = gc.getCell(ccr, ccc);
-                            if (v != ndv) {
-                                r.setCell(ogc, ccr, ccc, min);
-                            }
-                        }
-                    }
-                    env.removeFromNotToClear(g, i);
-                    env.removeFromNotToClear(r, i);
-                    env.checkAndMaybeFreeMemory();
-                }
-            }
+            rescale(g, r, v -> min);
         } else {
             if (type == null) {
-                /**
-                 * Better to go through chunks rather than rows. Though it does
-                 * assume that the structure of the grid and outputGrid are the
-                 * same.
-                 */
-                for (int cr = 0; cr < ncr; cr++) {
-                    env.env.log("chunk row " + cr);
-                    for (int cc = 0; cc < ncc; cc++) {
-                        Grids_2D_ID_int i = new Grids_2D_ID_int(cr, cc);
-                        env.addToNotToClear(g, i);
-                        env.addToNotToClear(r, i);
-                        env.checkAndMaybeFreeMemory();
-                        int cnc = g.getChunkNCols(cc);
-                        int cnr = g.getChunkNRows(cr);
-                        Grids_ChunkDouble gc = g.getChunk(i);
-                        Grids_ChunkDouble ogc = r.getChunk(i);
-                        for (int ccr = 0; ccr < cnr; ccr++) {
-                            for (int ccc = 0; ccc < cnc; ccc++) {
-                                double v = gc.getCell(ccr, ccc);
-                                if (v != ndv) {
-                                    v = (((v - minGrid) / rangeGrid)
-                                            * range) + min;
-                                    r.setCell(ogc, ccr, ccc, v);
-                                }
-                            }
-                        }
-                        env.removeFromNotToClear(g, i);
-                        env.removeFromNotToClear(r, i);
-                        env.checkAndMaybeFreeMemory();
-                    }
-                }
+                rescale(g, r, v -> (((v - minGrid) / rangeGrid) * range) + min);
                 r.setName(g.getName() + "_linearRescale");
                 env.checkAndMaybeFreeMemory();
             } else if (type.equalsIgnoreCase("log")) {
                 r = rescale(r, null, 1.0d, 1000000.0d);
-                for (int cr = 0; cr < ncr; cr++) {
-                    env.env.log("chunk row " + cr);
-                    for (int cc = 0; cc < ncc; cc++) {
-                        Grids_2D_ID_int i = new Grids_2D_ID_int(cr, cc);
-                        env.addToNotToClear(g, i);
-                        env.addToNotToClear(r, i);
-                        env.checkAndMaybeFreeMemory();
-                        int cnc = g.getChunkNCols(cc);
-                        int cnr = g.getChunkNRows(cr);
-                        Grids_ChunkDouble gc = g.getChunk(i);
-                        Grids_ChunkDouble ogc = r.getChunk(i);
-                        for (int ccr = 0; ccr < cnr; ccr++) {
-                            for (int ccc = 0; ccc < cnc; ccc++) {
-                                double v = gc.getCell(ccr, ccc);
-                                if (v != ndv) {
-                                    r.setCell(ogc, ccr, ccc, Math.log(v));
-                                }
-                            }
-                        }
-                    }
-                }
+                rescale(g, r, Math::log);
                 r = rescale(r, null, min, max);
                 //grid.setName( grid.getName() + "_logRescale" );
                 env.checkAndMaybeFreeMemory();
@@ -554,9 +862,6 @@ public class Grids_Processor extends Grids_Object {
     protected Grids_GridDouble rescale(Grids_GridInt g, String type, double min,
             double max) throws IOException, ClassNotFoundException, Exception {
         env.checkAndMaybeFreeMemory();
-        int ncc = g.getNChunkCols();
-        int ncr = g.getNChunkCols();
-        int ndv = g.getNoDataValue();
         double range = max - min;
         Grids_StatsNumber stats = g.getStats();
         double minGrid = stats.getMin(true).doubleValue();
@@ -564,105 +869,145 @@ public class Grids_Processor extends Grids_Object {
         double rangeGrid = maxGrid - minGrid;
         Grids_GridDouble r = gridFactoryDouble.create(g, 0, 0, g.getNRows() - 1,
                 g.getNCols() - 1);
+        env.env.log("Initialised rescaled grid.");
         r.setName(g.getName());
-        System.out.println(r.toString());
         /**
          * If range of either input or output range is zero return min for all
          * non noDataValues.
          */
         if (rangeGrid == 0.0d || range == 0.0d) {
-            /**
-             * Better to go through chunks rather than rows. Though it does
-             * assume that the chunk structure of the grid and outputGrid are
-             * the same.
-             */
+            rescale(g, r, v -> min);
+        } else {
+            if (type == null) {
+                rescale(g, r, v -> (((v - minGrid) / rangeGrid) * range) + min);
+                r.setName(g.getName() + "_linearRescale");
+                env.checkAndMaybeFreeMemory();
+            } else if (type.equalsIgnoreCase("log")) {
+                r = rescale(r, null, 1.0d, 1000000.0d);
+                rescale(g, r, Math::log);
+                r = rescale(r, null, min, max);
+                //grid.setName( grid.getName() + "_logRescale" );
+                env.checkAndMaybeFreeMemory();
+            } else {
+                throw new Exception("Type " + type + "not recognised.");
+            }
+        }
+        return r;
+    }
+
+    /**
+     * For rescaling the {@code float} type grid {@code g}. The type of rescaling
+     * is determined by {@code type}. If {@code type == null} the a linear
+     * rescaling is done. If {@code type = "log"} a log rescaling is done. For
+     * any other value of type this will throw an exception.
+     *
+     * There are other rescaling implementation that might be useful that are
+     * not currently implemented.
+     *
+     * @param g The grid for rescaling.
+     * @param type If {@code null} then a linear rescale is done. If
+     * {@code "log"}, then a log rescale is done.
+     *
+     * @param min The minimum value in the rescaled range.
+     * @param max The maximum value in the rescaled range.
+     * @return A grid which are the rescaled values of {@code g}.
+     * @throws java.io.IOException If encountered.
+     * @throws java.lang.ClassNotFoundException If encountered.
+     */
+    protected Grids_GridDouble rescale(Grids_GridFloat g, String type, double min,
+            double max) throws IOException, ClassNotFoundException, Exception {
+        env.checkAndMaybeFreeMemory();
+        double range = max - min;
+        Grids_StatsNumber stats = g.getStats();
+        double minGrid = stats.getMin(true).doubleValue();
+        double maxGrid = stats.getMax(true).doubleValue();
+        double rangeGrid = maxGrid - minGrid;
+        Grids_GridDouble r = gridFactoryDouble.create(g, 0, 0, g.getNRows() - 1,
+                g.getNCols() - 1);
+        env.env.log("Initialised rescaled grid.");
+        r.setName(g.getName());
+        /**
+         * If range of either input or output range is zero return min for all
+         * non noDataValues.
+         */
+        if (rangeGrid == 0.0d || range == 0.0d) {
+            rescale(g, r, v -> min);
+        } else {
+            if (type == null) {
+                rescale(g, r, v -> (((v - minGrid) / rangeGrid) * range) + min);
+                r.setName(g.getName() + "_linearRescale");
+                env.checkAndMaybeFreeMemory();
+            } else if (type.equalsIgnoreCase("log")) {
+                r = rescale(r, null, 1.0d, 1000000.0d);
+                rescale(g, r, Math::log);
+                r = rescale(r, null, min, max);
+                //grid.setName( grid.getName() + "_logRescale" );
+                env.checkAndMaybeFreeMemory();
+            } else {
+                throw new Exception("Type " + type + "not recognised.");
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Sets each cell of {@code r} to {@code f} applied to the value of the
+     * same cell of {@code g} unless the value is the noDataValue of {@code g}.
+     * If {@code g} and {@code r} have the same chunks then this is done a chunk
+     * at a time in parallel, otherwise it is done a cell at a time.
+     *
+     * @param g The grid of values. This is a {@link Grids_GridDouble} or a
+     * {@link Grids_GridInt}.
+     * @param r The grid to set values in.
+     * @param f The function to apply.
+     * @throws java.io.IOException If encountered.
+     * @throws java.lang.ClassNotFoundException If encountered.
+     */
+    protected void rescale(Grids_GridNumber g, Grids_GridDouble r,
+            DoubleUnaryOperator f) throws IOException, ClassNotFoundException,
+            Exception {
+        double ndv = g.ndv.doubleValue();
+        if (g.isSameDimensionsAndChunks(r)) {
+            getChunkExecutor().forEachChunk(i -> {
+                Grids_ChunkNumber gc = (Grids_ChunkNumber) g.getChunk(i);
+                Grids_ChunkDouble rc = r.getChunkToSet(i);
+                int cnr = g.getChunkNRows(i);
+                int cnc = g.getChunkNCols(i);
+                for (int ccr = 0; ccr < cnr; ccr++) {
+                    for (int ccc = 0; ccc < cnc; ccc++) {
+                        double v = getCell(gc, ccr, ccc);
+                        if (v != ndv) {
+                            rc.setCell(ccr, ccc, f.applyAsDouble(v));
+                        }
+                    }
+                }
+            }, g, r);
+            r.updateStats();
+        } else {
+            int ncr = g.getNChunkRows();
+            int ncc = g.getNChunkCols();
             for (int cr = 0; cr < ncr; cr++) {
                 for (int cc = 0; cc < ncc; cc++) {
                     Grids_2D_ID_int i = new Grids_2D_ID_int(cr, cc);
                     env.addToNotToClear(g, i);
-                    env.addToNotToClear(r, i);
                     env.checkAndMaybeFreeMemory();
-                    int cnc = g.getChunkNCols(cc);
+                    Grids_ChunkNumber gc = (Grids_ChunkNumber) g.getChunk(i);
                     int cnr = g.getChunkNRows(cr);
-                    Grids_ChunkInt gc = g.getChunk(i);
-                    Grids_ChunkDouble ogc = r.getChunk(i);
+                    int cnc = g.getChunkNCols(cc);
                     for (int ccr = 0; ccr < cnr; ccr++) {
                         for (int ccc = 0; ccc < cnc; ccc++) {
-                            double v = gc.getCell(ccr, ccc);
+                            double v = getCell(gc, ccr, ccc);
                             if (v != ndv) {
-                                r.setCell(ogc, ccr, ccc, min);
+                                r.setCell(g.getRow(cr, ccr), g.getCol(cc, ccc),
+                                        f.applyAsDouble(v));
                             }
                         }
                     }
                     env.removeFromNotToClear(g, i);
-                    env.removeFromNotToClear(r, i);
-                    env.checkAndMaybeFreeMemory();
                 }
             }
-        } else {
-            if (type == null) {
-                /**
-                 * Better to go through chunks rather than rows. Though it does
-                 * assume that the structure of the grid and outputGrid are the
-                 * same.
-                 */
-                for (int cr = 0; cr < ncr; cr++) {
-                    for (int cc = 0; cc < ncc; cc++) {
-                        Grids_2D_ID_int i = new Grids_2D_ID_int(cr, cc);
-                        env.addToNotToClear(g, i);
-                        env.addToNotToClear(r, i);
-                        env.checkAndMaybeFreeMemory();
-                        int cnc = g.getChunkNCols(cc);
-                        int cnr = g.getChunkNRows(cr);
-                        Grids_ChunkInt gc = g.getChunk(i);
-                        Grids_ChunkDouble ogc = r.getChunk(i);
-                        for (int ccr = 0; ccr < cnr; ccr++) {
-                            for (int ccc = 0; ccc < cnc; ccc++) {
-                                double v = gc.getCell(ccr, ccc);
-                                if (v != ndv) {
-                                    v = (((v - minGrid) / rangeGrid)
-                                            * range) + min;
-                                    r.setCell(ogc, ccr, ccc, v);
-                                }
-                            }
-                        }
-                        env.removeFromNotToClear(g, i);
-                        env.removeFromNotToClear(r, i);
-                        env.checkAndMaybeFreeMemory();
-                    }
-                }
-                r.setName(g.getName() + "_linearRescale");
-                env.checkAndMaybeFreeMemory();
-            } else if (type.equalsIgnoreCase("log")) {
-                r = rescale(r, null, 1.0d, 1000000.0d);
-                for (int cr = 0; cr < ncr; cr++) {
-                    for (int cc = 0; cc < ncc; cc++) {
-                        Grids_2D_ID_int i = new Grids_2D_ID_int(cr, cc);
-                        env.addToNotToClear(g, i);
-                        env.addToNotToClear(r, i);
-                        env.checkAndMaybeFreeMemory();
-                        int cnc = g.getChunkNCols(cc);
-                        int cnr = g.getChunkNRows(cr);
-                        Grids_ChunkInt gc = g.getChunk(i);
-                        Grids_ChunkDouble ogc = r.getChunk(i);
-                        for (int ccr = 0; ccr < cnr; ccr++) {
-                            for (int ccc = 0; ccc < cnc; ccc++) {
-                                double v = gc.getCell(ccr, ccc);
-                                if (v != ndv) {
-                                    r.setCell(ogc, ccr, ccc, Math.log(v));
-                                }
-                            }
-                        }
-                    }
-                }
-                r = rescale(r, null, min, max);
-                //grid.setName( grid.getName() + "_logRescale" );
-                env.checkAndMaybeFreeMemory();
-            } else {
-                throw new Exception("Type " + type + "not recognised.");
-            }
         }
-        return r;
+        env.checkAndMaybeFreeMemory();
     }
 
     /**
@@ -743,6 +1088,51 @@ public class Grids_Processor extends Grids_Object {
     public void addToGrid(Grids_GridNumber g, BigDecimal v) throws IOException,
             ClassNotFoundException, Exception {
         env.checkAndMaybeFreeMemory();
+        if (isPrimitive(g)) {
+            if (v.compareTo(g.ndv) != 0) {
+                double ndv = g.ndv.doubleValue();
+                double vd = v.doubleValue();
+                getChunkExecutor().forEachChunk(i -> {
+                    Grids_ChunkNumber c = getChunkToSet(g, i);
+                    int cnr = g.getChunkNRows(i);
+                    int cnc = g.getChunkNCols(i);
+                    for (int ccr = 0; ccr < cnr; ccr++) {
+                        for (int ccc = 0; ccc < cnc; ccc++) {
+                            double v2 = getCell(c, ccr, ccc);
+                            if (v2 == ndv) {
+                                setCell(c, ccr, ccc, vd);
+                            } else {
+                                setCell(c, ccr, ccc, v2 + vd);
+                            }
+                        }
+                    }
+                }, g);
+                updateStats(g);
+            }
+            env.checkAndMaybeFreeMemory();
+            return;
+        } else if (isPrimitiveType(g)) {
+            if (v.compareTo(g.ndv) != 0) {
+                getChunkExecutor().forEachChunk(i -> {
+                    Grids_ChunkNumber c = getChunkToSet(g, i);
+                    int cnr = g.getChunkNRows(i);
+                    int cnc = g.getChunkNCols(i);
+                    for (int ccr = 0; ccr < cnr; ccr++) {
+                        for (int ccc = 0; ccc < cnc; ccc++) {
+                            BigDecimal v2 = c.getCellBigDecimal(ccr, ccc);
+                            if (v2.compareTo(g.ndv) == 0) {
+                                setCell(c, ccr, ccc, v);
+                            } else {
+                                setCell(c, ccr, ccc, v.add(v2));
+                            }
+                        }
+                    }
+                }, g);
+                updateStats(g);
+            }
+            env.checkAndMaybeFreeMemory();
+            return;
+        }
         int ncr = g.getNChunkRows();
         int ncc = g.getNChunkCols();
         for (int cr = 0; cr < ncr; cr++) {
@@ -863,7 +1253,7 @@ public class Grids_Processor extends Grids_Object {
         long ncols = g.getNCols();
         BigDecimal noDataValue = getNoDataValueBigDecimal(g);
         Grids_Dimensions gD = g.getDimensions();
-        BigDecimal g2NoDataValue = getNoDataValueBigDecimal(g);
+        BigDecimal g2NoDataValue = getNoDataValueBigDecimal(g2);
         Grids_Dimensions g2D = g2.getDimensions();
         Grids_GridFactoryDouble gf = this.gridFactoryDouble;
         // If the region to be added is outside g then return.
@@ -886,6 +1276,36 @@ public class Grids_Processor extends Grids_Object {
                     && ((g2D.getYMin().remainder(gC)).compareTo(
                             (gD.getYMin().remainder(gC))) == 0)) {
                 //println( "grids Align!" );
+                if (isPrimitive(g, g2)) {
+                    /**
+                     * The row and column offsets between g2 and g are
+                     * constant, so cells are added using double arithmetic.
+                     */
+                    long dr = g.getRow(g2.getCellY(startRow)) - startRow;
+                    long dcol = g.getCol(g2.getCellX(startCol)) - startCol;
+                    double ndv = noDataValue.doubleValue();
+                    double ndv2 = g2NoDataValue.doubleValue();
+                    double wd = w.doubleValue();
+                    for (long row = startRow; row <= endRow; row++) {
+                        env.checkAndMaybeFreeMemory();
+                        long gRow = row + dr;
+                        for (long col = startCol; col <= endCol; col++) {
+                            long gCol = col + dcol;
+                            if (g.isInGrid(gRow, gCol)) {
+                                double v = getCell(g2, row, col);
+                                if (v != ndv2 && v != 0d) {
+                                    double v1 = getCell(g, gRow, gCol);
+                                    if (v1 == ndv) {
+                                        setCell(g, gRow, gCol, v * wd);
+                                    } else {
+                                        setCell(g, gRow, gCol, v1 + v * wd);
+                                    }
+                                }
+                            }
+                        }
+                    }
+                    return;
+                }
                 // TODO: Control precision using xBigDecimal and yBigDecimal
                 // rather than using x and y.
                 for (long row = startRow; row <= endRow; row++) {
@@ -1090,7 +1510,70 @@ public class Grids_Processor extends Grids_Object {
         int ncc = g0.getNChunkCols();
         if (g0.isCoincident(g1)) {
             if (g0.isSameDimensionsAndChunks(g1)) {
-                if (g0.isSameDimensionsAndChunks(r)) {
+                if (g0.isSameDimensionsAndChunks(r) && isPrimitive(g0, g1, r)) {
+                    /**
+                     * Grids are coincident and have the same chunks, so they
+                     * are processed a chunk at a time in parallel.
+                     */
+                    Grids_GridNumber r0 = r;
+                    double ndv0d = ndv0.doubleValue();
+                    double ndv1d = ndv1.doubleValue();
+                    getChunkExecutor().forEachChunk(i -> {
+                        Grids_ChunkNumber c0 = (Grids_ChunkNumber) g0.getChunk(i);
+                        Grids_ChunkNumber c1 = (Grids_ChunkNumber) g1.getChunk(i);
+                        Grids_ChunkNumber rc = null;
+                        int cnr = g0.getChunkNRows(i);
+                        int cnc = g0.getChunkNCols(i);
+                        for (int ccr = 0; ccr < cnr; ccr++) {
+                            for (int ccc = 0; ccc < cnc; ccc++) {
+                                double v0 = getCell(c0, ccr, ccc);
+                                if (v0 != ndv0d) {
+                                    if (rc == null) {
+                                        rc = getChunkToSet(r0, i);
+                                    }
+                                    double v1 = getCell(c1, ccr, ccc);
+                                    if (v1 == ndv1d) {
+                                        setCell(rc, ccr, ccc, ndv0d);
+                                    } else {
+                                        setCell(rc, ccr, ccc, v0 * v1);
+                                    }
+                                }
+                            }
+                        }
+                    }, g0, g1, r);
+                    updateStats(r);
+                } else if (g0.isSameDimensionsAndChunks(r)
+                        && isPrimitiveType(r)) {
+                    /**
+                     * As above, but using BigDecimal arithmetic.
+                     */
+                    Grids_GridNumber r0 = r;
+                    getChunkExecutor().forEachChunk(i -> {
+                        Grids_ChunkNumber c0 = (Grids_ChunkNumber) g0.getChunk(i);
+                        Grids_ChunkNumber c1 = (Grids_ChunkNumber) g1.getChunk(i);
+                        Grids_ChunkNumber rc = null;
+                        int cnr = g0.getChunkNRows(i);
+                        int cnc = g0.getChunkNCols(i);
+                        for (int ccr = 0; ccr < cnr; ccr++) {
+                            for (int ccc = 0; ccc < cnc; ccc++) {
+                                BigDecimal v0 = c0.getCellBigDecimal(ccr, ccc);
+                                if (v0.compareTo(ndv0) != 0) {
+                                    if (rc == null) {
+                                        rc = getChunkToSet(r0, i);
+                                    }
+                                    BigDecimal v1 = c1.getCellBigDecimal(ccr,
+                                            ccc);
+                                    if (v1.compareTo(ndv1) == 0) {
+                                        setCell(rc, ccr, ccc, ndv0);
+                                    } else {
+                                        setCell(rc, ccr, ccc, v0.multiply(v1));
+                                    }
+                                }
+                            }
+                        }
+                    }, g0, g1, r);
+                    updateStats(r);
+                } else if (g0.isSameDimensionsAndChunks(r)) {
                     /**
                      * Grids are coincident and have the same chunks.
                      */
@@ -1326,6 +1809,145 @@ public class Grids_Processor extends Grids_Object {
         }
     }
 
+    /**
+     * Converts {@code g} into a {@link Grids_GridByte} with the same
+     * dimensions and chunks. This is intended for categorical grids with
+     * values in the range of a byte which are then stored in a quarter of the
+     * memory of a {@link Grids_GridInt}. Values of {@code g} outside the range
+     * of a byte are set to the noDataValue of the result.
+     *
+     * @param g The grid to convert.
+     * @return A new grid.
+     * @throws java.lang.Exception If encountered.
+     */
+    public Grids_GridByte toByte(Grids_GridNumber g) throws IOException,
+            Exception {
+        env.checkAndMaybeFreeMemory();
+        Grids_GridByte r;
+        synchronized (gridFactoryByte) {
+            int cnr = gridFactoryByte.getChunkNRows();
+            int cnc = gridFactoryByte.getChunkNCols();
+            gridFactoryByte.setChunkNRows(g.getChunkNRows());
+            gridFactoryByte.setChunkNCols(g.getChunkNCols());
+            r = gridFactoryByte.create(g.getNRows(), g.getNCols(),
+                    g.getDimensions());
+            gridFactoryByte.setChunkNRows(cnr);
+            gridFactoryByte.setChunkNCols(cnc);
+        }
+        convert(g, r, Byte.MIN_VALUE, Byte.MAX_VALUE);
+        return r;
+    }
+
+    /**
+     * Converts {@code g} into a {@link Grids_GridShort} with the same
+     * dimensions and chunks. This is intended for categorical grids with
+     * values in the range of a short which are then stored in half the memory
+     * of a {@link Grids_GridInt}. Values of {@code g} outside the range of a
+     * short are set to the noDataValue of the result.
+     *
+     * @param g The grid to convert.
+     * @return A new grid.
+     * @throws java.lang.Exception If encountered.
+     */
+    public Grids_GridShort toShort(Grids_GridNumber g) throws IOException,
+            Exception {
+        env.checkAndMaybeFreeMemory();
+        Grids_GridShort r;
+        synchronized (gridFactoryShort) {
+            int cnr = gridFactoryShort.getChunkNRows();
+            int cnc = gridFactoryShort.getChunkNCols();
+            gridFactoryShort.setChunkNRows(g.getChunkNRows());
+            gridFactoryShort.setChunkNCols(g.getChunkNCols());
+            r = gridFactoryShort.create(g.getNRows(), g.getNCols(),
+                    g.getDimensions());
+            gridFactoryShort.setChunkNRows(cnr);
+            gridFactoryShort.setChunkNCols(cnc);
+        }
+        convert(g, r, Short.MIN_VALUE, Short.MAX_VALUE);
+        return r;
+    }
+
+    /**
+     * Converts {@code g} into a {@link Grids_GridInt} with the same dimensions
+     * and chunks. Values of {@code g} outside the range of an int are set to
+     * the noDataValue of the result.
+     *
+     * @param g The grid to convert.
+     * @return A new grid.
+     * @throws java.lang.Exception If encountered.
+     */
+    public Grids_GridInt toInt(Grids_GridNumber g) throws IOException,
+            Exception {
+        env.checkAndMaybeFreeMemory();
+        Grids_GridInt r;
+        synchronized (gridFactoryInt) {
+            int cnr = gridFactoryInt.getChunkNRows();
+            int cnc = gridFactoryInt.getChunkNCols();
+            gridFactoryInt.setChunkNRows(g.getChunkNRows());
+            gridFactoryInt.setChunkNCols(g.getChunkNCols());
+            r = gridFactoryInt.create(g.getNRows(), g.getNCols(),
+                    g.getDimensions());
+            gridFactoryInt.setChunkNRows(cnr);
+            gridFactoryInt.setChunkNCols(cnc);
+        }
+        convert(g, r, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        return r;
+    }
+
+    /**
+     * Sets the values of {@code r} from those of {@code g}. Cells of
+     * {@code g} that are noDataValues or that have values less than
+     * {@code min} or greater than {@code max} are left as the noDataValue of
+     * {@code r}. Values are truncated towards zero.
+     *
+     * @param g The grid to convert.
+     * @param r A grid of a primitive type (see {@link #isPrimitiveType}) with
+     * the same dimensions and chunks as {@code g} and all values initially
+     * noDataValues.
+     * @param min The minimum value that can be stored in {@code r}.
+     * @param max The maximum value that can be stored in {@code r}.
+     * @throws java.lang.Exception If encountered.
+     */
+    protected void convert(Grids_GridNumber g, Grids_GridNumber r, double min,
+            double max) throws IOException, Exception {
+        if (isPrimitiveType(g)) {
+            double ndv = g.ndv.doubleValue();
+            getChunkExecutor().forEachChunk(i -> {
+                Grids_ChunkNumber c = (Grids_ChunkNumber) g.getChunk(i);
+                Grids_ChunkNumber rc = null;
+                int cnr = g.getChunkNRows(i);
+                int cnc = g.getChunkNCols(i);
+                for (int ccr = 0; ccr < cnr; ccr++) {
+                    for (int ccc = 0; ccc < cnc; ccc++) {
+                        double v = getCell(c, ccr, ccc);
+                        if (v != ndv && v >= min && v <= max) {
+                            if (rc == null) {
+                                rc = getChunkToSet(r, i);
+                            }
+                            setCell(rc, ccr, ccc, v);
+                        }
+                    }
+                }
+            }, g, r);
+        } else {
+            BigDecimal ndv = g.ndv;
+            long nRows = g.getNRows();
+            long nCols = g.getNCols();
+            for (long row = 0L; row < nRows; row++) {
+                for (long col = 0L; col < nCols; col++) {
+                    BigDecimal v = g.getCellBigDecimal(row, col);
+                    if (v.compareTo(ndv) != 0) {
+                        double d = v.doubleValue();
+                        if (d >= min && d <= max) {
+                            setCell(r, row, col, d);
+                        }
+                    }
+                }
+            }
+        }
+        updateStats(r);
+    }
+
     /**
      * Divide g0 by g1 and return a new grid. It is assumed that the dimensions
      * are all the same;
@@ -1344,6 +1966,32 @@ public class Grids_Processor extends Grids_Object {
         r = gridFactoryDouble.create(g0, 0L, 0L, nRows - 1, nCols - 1);
         double noDataValue0 = g0.getNoDataValue();
         double noDataValue1 = g1.getNoDataValue();
+        if (g0.isSameDimensionsAndChunks(g1)
+                && g0.isSameDimensionsAndChunks(r)) {
+            Grids_GridDouble r0 = r;
+            getChunkExecutor().forEachChunk(i -> {
+                Grids_ChunkDouble c0 = g0.getChunk(i);
+                Grids_ChunkDouble c1 = g1.getChunk(i);
+                Grids_ChunkDouble rc = null;
+                int cnr = g0.getChunkNRows(i);
+                int cnc = g0.getChunkNCols(i);
+                for (int ccr = 0; ccr < cnr; ccr++) {
+                    for (int ccc = 0; ccc < cnc; ccc++) {
+                        double v0 = c0.getCell(ccr, ccc);
+                        double v1 = c1.getCell(ccr, ccc);
+                        if (v0 != noDataValue0 && v1 != noDataValue1
+                                && v1 != 0) {
+                            if (rc == null) {
+                                rc = r0.getChunkToSet(i);
+                            }
+                            rc.setCell(ccr, ccc, v0 / v1);
+                        }
+                    }
+                }
+            }, g0, g1, r);
+            r.updateStats();
+            return r;
+        }
         for (long row = 0L; row < nRows; row++) {
             for (long col = 0L; col < nCols; col++) {
                 double v0 = g0.getCell(row, col);
@@ -1360,6 +2008,272 @@ public class Grids_Processor extends Grids_Object {
         return r;
     }
 
+    /**
+     * @param g0 A grid.
+     * @param g1 A grid.
+     * @return A new grid with the values of {@code g0} AND {@code g1}.
+     * @throws java.lang.Exception If encountered.
+     */
+    public Grids_GridBinary and(Grids_GridBinary g0, Grids_GridBinary g1)
+            throws IOException, Exception {
+        return combine(g0, g1, (a, b) -> a & b);
+    }
+
+    /**
+     * @param g0 A grid.
+     * @param g1 A grid.
+     * @return A new grid with the values of {@code g0} OR {@code g1}.
+     * @throws java.lang.Exception If encountered.
+     */
+    public Grids_GridBinary or(Grids_GridBinary g0, Grids_GridBinary g1)
+            throws IOException, Exception {
+        return combine(g0, g1, (a, b) -> a | b);
+    }
+
+    /**
+     * @param g0 A grid.
+     * @param g1 A grid.
+     * @return A new grid with the values of {@code g0} XOR {@code g1}.
+     * @throws java.lang.Exception If encountered.
+     */
+    public Grids_GridBinary xor(Grids_GridBinary g0, Grids_GridBinary g1)
+            throws IOException, Exception {
+        return combine(g0, g1, (a, b) -> a ^ b);
+    }
+
+    /**
+     * @param g0 A grid.
+     * @param g1 A grid.
+     * @return A new grid with the values of {@code g0} AND NOT {@code g1}.
+     * @throws java.lang.Exception If encountered.
+     */
+    public Grids_GridBinary andNot(Grids_GridBinary g0, Grids_GridBinary g1)
+            throws IOException, Exception {
+        return combine(g0, g1, (a, b) -> a & ~b);
+    }
+
+    /**
+     * @param g A grid.
+     * @return A new grid with the values of NOT {@code g}.
+     * @throws java.lang.Exception If encountered.
+     */
+    public Grids_GridBinary not(Grids_GridBinary g) throws IOException,
+            Exception {
+        return combine(g, g, (a, b) -> ~a);
+    }
+
+    /**
+     * @param g0 A grid.
+     * @param g1 A grid.
+     * @return A new grid with the values of {@code g0} AND {@code g1}, or
+     * {@code null} where either is {@code null}.
+     * @throws java.lang.Exception If encountered.
+     */
+    public Grids_GridBoolean and(Grids_GridBoolean g0, Grids_GridBoolean g1)
+            throws IOException, Exception {
+        return combine(g0, g1, (a, b) -> a & b);
+    }
+
+    /**
+     * @param g0 A grid.
+     * @param g1 A grid.
+     * @return A new grid with the values of {@code g0} OR {@code g1}, or
+     * {@code null} where either is {@code null}.
+     * @throws java.lang.Exception If encountered.
+     */
+    public Grids_GridBoolean or(Grids_GridBoolean g0, Grids_GridBoolean g1)
+            throws IOException, Exception {
+        return combine(g0, g1, (a, b) -> a | b);
+    }
+
+    /**
+     * @param g0 A grid.
+     * @param g1 A grid.
+     * @return A new grid with the values of {@code g0} XOR {@code g1}, or
+     * {@code null} where either is {@code null}.
+     * @throws java.lang.Exception If encountered.
+     */
+    public Grids_GridBoolean xor(Grids_GridBoolean g0, Grids_GridBoolean g1)
+            throws IOException, Exception {
+        return combine(g0, g1, (a, b) -> a ^ b);
+    }
+
+    /**
+     * @param g0 A grid.
+     * @param g1 A grid.
+     * @return A new grid with the values of {@code g0} AND NOT {@code g1}, or
+     * {@code null} where either is {@code null}.
+     * @throws java.lang.Exception If encountered.
+     */
+    public Grids_GridBoolean andNot(Grids_GridBoolean g0, Grids_GridBoolean g1)
+            throws IOException, Exception {
+        return combine(g0, g1, (a, b) -> a & ~b);
+    }
+
+    /**
+     * @param g A grid.
+     * @return A new grid with the values of NOT {@code g}, or {@code null}
+     * where {@code g} is {@code null}.
+     * @throws java.lang.Exception If encountered.
+     */
+    public Grids_GridBoolean not(Grids_GridBoolean g) throws IOException,
+            Exception {
+        return combine(g, g, (a, b) -> ~a);
+    }
+
+    /**
+     * For combining the values of two grids with a bitwise operator. Each
+     * value of the result is the lowest bit of {@code op} applied to longs
+     * with all bits set to the corresponding values of {@code g0} and
+     * {@code g1}. If {@code g0} and {@code g1} have the same dimensions and
+     * chunks then they are combined a chunk at a time (in parallel, see
+     * {@link #getChunkExecutor()}) 64 cells at a time (see
+     * {@link Grids_ChunkBinaryArray#setWords}). Where a singlet chunk decides
+     * the result on its own, the other chunk is not got and the result chunk
+     * is a singlet. Otherwise values of {@code g1} are got at the centroids of
+     * the cells of {@code g0}.
+     *
+     * @param g0 The first grid.
+     * @param g1 The second grid.
+     * @param op The operator.
+     * @return A new grid with the same dimensions and chunks as {@code g0}.
+     * @throws java.lang.Exception If encountered.
+     */
+    protected Grids_GridBinary combine(Grids_GridBinary g0,
+            Grids_GridBinary g1, LongBinaryOperator op) throws IOException,
+            Exception {
+        env.checkAndMaybeFreeMemory();
+        Grids_GridBinary r;
+        synchronized (gridFactoryBinary) {
+            int cnr = gridFactoryBinary.getChunkNRows();
+            int cnc = gridFactoryBinary.getChunkNCols();
+            gridFactoryBinary.setChunkNRows(g0.getChunkNRows());
+            gridFactoryBinary.setChunkNCols(g0.getChunkNCols());
+            r = gridFactoryBinary.create(new Grids_StatsNotUpdatedBinary(env),
+                    new Grids_ChunkFactoryBinarySinglet(false), g0.getNRows(),
+                    g0.getNCols(), g0.getDimensions());
+            gridFactoryBinary.setChunkNRows(cnr);
+            gridFactoryBinary.setChunkNCols(cnc);
+        }
+        if (g0.isSameDimensionsAndChunks(g1)) {
+            Grids_GridBinary r0 = r;
+            getChunkExecutor().forEachChunk(i -> {
+                Grids_ChunkBinary c0 = g0.getChunk(i);
+                long k0 = Grids_ChunkBinaryArray.getWord(c0);
+                boolean s0 = c0 instanceof Grids_ChunkBinarySinglet;
+                if (s0 && op.applyAsLong(k0, 0L) == op.applyAsLong(k0, -1L)) {
+                    r0.setChunk(i, new Grids_ChunkBinarySinglet(r0, i,
+                            (op.applyAsLong(k0, 0L) & 1L) != 0L));
+                    return;
+                }
+                Grids_ChunkBinary c1 = g1.getChunk(i);
+                long k1 = Grids_ChunkBinaryArray.getWord(c1);
+                if (c1 instanceof Grids_ChunkBinarySinglet) {
+                    long v = op.applyAsLong(0L, k1);
+                    if (s0 || v == op.applyAsLong(-1L, k1)) {
+                        r0.setChunk(i, new Grids_ChunkBinarySinglet(r0, i,
+                                (op.applyAsLong(k0, k1) & 1L) != 0L));
+                        return;
+                    }
+                }
+                Grids_ChunkBinaryArray rc = new Grids_ChunkBinaryArray(r0, i);
+                rc.setWords(op, c0, c1);
+                r0.setChunk(i, rc);
+            }, g0, g1, r);
+        } else {
+            long nRows = g0.getNRows();
+            long nCols = g0.getNCols();
+            for (long row = 0L; row < nRows; row++) {
+                BigDecimal y = g0.getCellY(row);
+                for (long col = 0L; col < nCols; col++) {
+                    long w0 = g0.getCell(row, col) ? -1L : 0L;
+                    long w1 = g1.getCell(g0.getCellX(col), y) ? -1L : 0L;
+                    if ((op.applyAsLong(w0, w1) & 1L) != 0L) {
+                        r.setCell(row, col, true);
+                    }
+                }
+            }
+        }
+        r.updateStats();
+        return r;
+    }
+
+    /**
+     * For combining the values of two grids with a bitwise operator. This is
+     * as {@link #combine(Grids_GridBinary, Grids_GridBinary,
+     * LongBinaryOperator)} except that a value of the result is {@code null}
+     * where either value combined is {@code null} (see
+     * {@link Grids_ChunkBooleanArray#setWords}).
+     *
+     * @param g0 The first grid.
+     * @param g1 The second grid.
+     * @param op The operator.
+     * @return A new grid with the same dimensions and chunks as {@code g0}.
+     * @throws java.lang.Exception If encountered.
+     */
+    protected Grids_GridBoolean combine(Grids_GridBoolean g0,
+            Grids_GridBoolean g1, LongBinaryOperator op) throws IOException,
+            Exception {
+        env.checkAndMaybeFreeMemory();
+        Grids_GridBoolean r;
+        synchronized (gridFactoryBoolean) {
+            int cnr = gridFactoryBoolean.getChunkNRows();
+            int cnc = gridFactoryBoolean.getChunkNCols();
+            gridFactoryBoolean.setChunkNRows(g0.getChunkNRows());
+            gridFactoryBoolean.setChunkNCols(g0.getChunkNCols());
+            r = gridFactoryBoolean.create(new Grids_StatsNotUpdatedBoolean(env),
+                    new Grids_ChunkFactoryBooleanSinglet(null), g0.getNRows(),
+                    g0.getNCols(), g0.getDimensions());
+            gridFactoryBoolean.setChunkNRows(cnr);
+            gridFactoryBoolean.setChunkNCols(cnc);
+        }
+        if (g0.isSameDimensionsAndChunks(g1)) {
+            Grids_GridBoolean r0 = r;
+            getChunkExecutor().forEachChunk(i -> {
+                Grids_ChunkBoolean c0 = g0.getChunk(i);
+                if (c0 instanceof Grids_ChunkBooleanSinglet
+                        && ((Grids_ChunkBooleanSinglet) c0).v == null) {
+                    return;
+                }
+                Grids_ChunkBoolean c1 = g1.getChunk(i);
+                if (c1 instanceof Grids_ChunkBooleanSinglet) {
+                    Boolean v1 = ((Grids_ChunkBooleanSinglet) c1).v;
+                    if (v1 == null) {
+                        return;
+                    }
+                    if (c0 instanceof Grids_ChunkBooleanSinglet) {
+                        long w0 = ((Grids_ChunkBooleanSinglet) c0).v ? -1L : 0L;
+                        long w1 = v1 ? -1L : 0L;
+                        r0.setChunk(i, new Grids_ChunkBooleanSinglet(r0, i,
+                                (op.applyAsLong(w0, w1) & 1L) != 0L));
+                        return;
+                    }
+                }
+                Grids_ChunkBooleanArray rc = new Grids_ChunkBooleanArray(r0, i);
+                rc.setWords(op, c0, c1);
+                r0.setChunk(i, rc);
+            }, g0, g1, r);
+        } else {
+            long nRows = g0.getNRows();
+            long nCols = g0.getNCols();
+            for (long row = 0L; row < nRows; row++) {
+                BigDecimal y = g0.getCellY(row);
+                for (long col = 0L; col < nCols; col++) {
+                    Boolean v0 = g0.getCell(row, col);
+                    if (v0 != null) {
+                        Boolean v1 = g1.getCell(g0.getCellX(col), y);
+                        if (v1 != null) {
+                            r.setCell(row, col, (op.applyAsLong(v0 ? -1L : 0L,
+                                    v1 ? -1L : 0L) & 1L) != 0L);
+                        }
+                    }
+                }
+            }
+        }
+        r.updateStats();
+        return r;
+    }
+
     /**
      * For creating an aggregated Grids_GridDouble at a lower level of
      * resolution than the grid {@code g}. The result values are either the sum,
@@ -18,20 +18,19 @@ package uk.ac.leeds.ccg.grids.process;
 import java.io.IOException;
 import java.util.HashSet;
 import java.util.Iterator;
-import uk.ac.leeds.ccg.generic.io.Generic_Path;
-import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_long;
 import uk.ac.leeds.ccg.grids.d2.grid.Grids_Dimensions;
 import uk.ac.leeds.ccg.grids.d2.grid.Grids_GridNumber;
-import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkDouble;
+import uk.ac.leeds.ccg.grids.d2.grid.i.Grids_GridCursorInt;
 import uk.ac.leeds.ccg.grids.d2.grid.i.Grids_GridInt;
+import uk.ac.leeds.ccg.grids.d2.grid.d.Grids_GridCursorDouble;
 import uk.ac.leeds.ccg.grids.d2.grid.d.Grids_GridDouble;
 import uk.ac.leeds.ccg.grids.d2.grid.d.Grids_GridFactoryDouble;
-import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkInt;
 import uk.ac.leeds.ccg.grids.d2.grid.i.Grids_GridFactoryInt;
 import uk.ac.leeds.ccg.grids.core.Grids_Environment;
-import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkDoubleSinglet;
-import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkIntSinglet;
 import uk.ac.leeds.ccg.grids.d2.util.Grids_Kernel;
 import uk.ac.leeds.ccg.grids.d2.util.Grids_Utilities;
 import java.math.BigDecimal;
@@ -129,83 +128,43 @@ public class Grids_ProcessorDEM extends Grids_Processor {
             String methodName = "getSlopeAspect(" + g.getClass().getName()
                     + ",double,double,double,boolean)";
             System.out.println(methodName);
-            Grids_ChunkDouble cd;
-            Grids_GridDouble gd;
-            Grids_ChunkInt ci;
-            Grids_GridInt gridInt;
             int slopeAndAspectSize = 10;
             Grids_GridDouble[] slopeAndAspect = new Grids_GridDouble[slopeAndAspectSize];
             boolean shortName = true; // Filenames that are too long are problematic!
             // Initialisation
-            long ncols = g.getNCols();
-            long nrows = g.getNRows();
-            Grids_Dimensions dimensions = g.getDimensions();
             double cellsize = g.getCellsize().doubleValue();
-            long cellDistance = g.getCellDistance(distance).longValueExact();
-            double diffX;
-            double diffY;
-            double diffHeight;
-            double angle;
-            double sinAngle;
-            double cosAngle;
-            double slope;
-            double aspect;
-            double[][] weights;
-            weights = Grids_Kernel.getNormalDistributionKernelWeights(
+            int cellDistance = g.getCellDistance(distance).intValueExact();
+            double[][] weights = Grids_Kernel.getNormalDistributionKernelWeights(
                     cellsize, distance.doubleValue());
-            double weight;
-            long row;
-            long col;
-            long p;
-            long q;
-            int cellRow;
-            int cellCol;
-            int cri;
-            int cci;
-            int chunkRows = g.getNChunkRows();
-            int chunkCols = g.getNChunkCols();
-            int chunkNrows;
-            int chunkNcols;
-            double d;
-            double double1;
-            double double3;
-            double PI = Math.PI;
-            double slopeFactor = 100.0d;
-            double weightSum = 0.0d;
+            // The offsets (row p, column q) of the cells within distance,
+            // their weights and their distances.
+            int n = 0;
+            int[] ps = new int[(2 * cellDistance + 1) * (2 * cellDistance + 1)];
+            int[] qs = new int[ps.length];
+            double[] ws = new double[ps.length];
+            double[] ds = new double[ps.length];
             double distanceSum = 0.0d;
-            double numberObservations = 0.0d;
-            double averageDistance;
-            long long0;
-            int int0;
-            int int1;
-            for (p = -cellDistance; p <= cellDistance; p++) {
+            for (int p = -cellDistance; p <= cellDistance; p++) {
                 BigDecimal thisY = BigDecimal.valueOf(p * cellsize);
-                for (q = -cellDistance; q <= cellDistance; q++) {
+                for (int q = -cellDistance; q <= cellDistance; q++) {
                     if (!(p == 0 && q == 0)) {
-                        long0 = p + cellDistance;
-                        int0 = (int) long0;
-                        long0 = q + cellDistance;
-                        int1 = (int) (long0);
                         BigDecimal thisX = BigDecimal.valueOf(q * cellsize);
                         BigDecimal thisDistance = Grids_Utilities.distance(BigDecimal.ZERO,
                                 BigDecimal.ZERO, thisX, thisY, dp, rm);
                         if (thisDistance.compareTo(distance) != 1) {
-                            weight = weights[int0][int1];
-                            weightSum += weight;
-                            distanceSum += thisDistance.doubleValue();
-                            numberObservations++;
+                            ps[n] = p;
+                            qs[n] = q;
+                            ws[n] = weights[p + cellDistance][q + cellDistance];
+                            ds[n] = thisDistance.doubleValue();
+                            distanceSum += ds[n];
+                            n++;
                         }
                     }
                 }
             }
-            averageDistance = distanceSum / numberObservations;
+            double averageDistance = distanceSum / n;
             String gName = g.getName();
             String filename;
-            Generic_Path dir;
-            int noDataValueInt;
-            int heightInt;
-            int thisHeightInt;
-            Object[] newResult = new Object[2];
             System.out.println("Initialising slopeAndAspect[0]");
             if (shortName) {
                 filename = "slope_" + averageDistance;
@@ -215,8 +174,7 @@ public class Grids_ProcessorDEM extends Grids_Processor {
                         + "weightIntersect(" + weightIntersect + "),"
                         + "weightFactor(" + weightFactor + ")]";
             }
-            slopeAndAspect[0] = gridFactoryDouble.create(nrows, ncols,
-                    dimensions);
+            slopeAndAspect[0] = createAligned(gridFactoryDouble, g);
             slopeAndAspect[0].setName(filename);
             System.out.println(slopeAndAspect[0].toString());
             System.out.println("Initialising slopeAndAspect[1]");
@@ -228,8 +186,7 @@ public class Grids_ProcessorDEM extends Grids_Processor {
                         + "weightIntersect(" + weightIntersect + "),"
                         + "weightFactor(" + weightFactor + ")]";
             }
-            slopeAndAspect[1] = gridFactoryDouble.create(
-                    nrows, ncols, dimensions);
+            slopeAndAspect[1] = createAligned(gridFactoryDouble, g);
             slopeAndAspect[1].setName(filename);
             env.getGrids().add(slopeAndAspect[1]);
             System.out.println("Initialising slopeAndAspect[2]");
@@ -241,7 +198,7 @@ public class Grids_ProcessorDEM extends Grids_Processor {
                         + "weightIntersect(" + weightIntersect + "),"
                         + "weightFactor(" + weightFactor + ")]";
             }
-            slopeAndAspect[2] = gridFactoryDouble.create(nrows, ncols, dimensions);
+            slopeAndAspect[2] = createAligned(gridFactoryDouble, g);
             slopeAndAspect[2].setName(filename);
             System.out.println(slopeAndAspect[2].toString());
             System.out.println("Initialising slopeAndAspect[3]");
@@ -253,8 +210,7 @@ public class Grids_ProcessorDEM extends Grids_Processor {
                         + "weightIntersect(" + weightIntersect + "),"
                         + "weightFactor(" + weightFactor + ")]";
             }
-            slopeAndAspect[3] = gridFactoryDouble.create(
-                    nrows, ncols, dimensions);
+            slopeAndAspect[3] = createAligned(gridFactoryDouble, g);
             slopeAndAspect[3].setName(filename);
             System.out.println(slopeAndAspect[3].toString());
             System.out.println("Initialising slopeAndAspect[4]");
@@ -266,8 +222,7 @@ public class Grids_ProcessorDEM extends Grids_Processor {
                         + "weightIntersect(" + weightIntersect + "),"
                         + "weightFactor(" + weightFactor + ")]";
             }
-            slopeAndAspect[4] = gridFactoryDouble.create(
-                    nrows, ncols, dimensions);
+            slopeAndAspect[4] = createAligned(gridFactoryDouble, g);
             slopeAndAspect[4].setName(filename);
             System.out.println(slopeAndAspect[4].toString());
             System.out.println("Initialising slopeAndAspect[5]");
@@ -279,8 +234,7 @@ public class Grids_ProcessorDEM extends Grids_Processor {
                         + "weightIntersect(" + weightIntersect + "),"
                         + "weightFactor(" + weightFactor + ")]";
             }
-            slopeAndAspect[5] = gridFactoryDouble.create(
-                    nrows, ncols, dimensions);
+            slopeAndAspect[5] = createAligned(gridFactoryDouble, g);
             slopeAndAspect[5].setName(filename);
             System.out.println(slopeAndAspect[5].toString());
             System.out.println("Initialising slopeAndAspect[6]");
@@ -292,7 +246,7 @@ public class Grids_ProcessorDEM extends Grids_Processor {
                         + "weightIntersect(" + weightIntersect + "),"
                         + "weightFactor(" + weightFactor + ")]";
             }
-            slopeAndAspect[6] = gridFactoryDouble.create(nrows, ncols, dimensions);
+            slopeAndAspect[6] = createAligned(gridFactoryDouble, g);
             slopeAndAspect[6].setName(filename);
             System.out.println(slopeAndAspect[6].toString());
             System.out.println("Initialising slopeAndAspect[7]");
@@ -304,8 +258,7 @@ public class Grids_ProcessorDEM extends Grids_Processor {
                         + "weightIntersect(" + weightIntersect + "),"
                         + "weightFactor(" + weightFactor + ")]";
             }
-            slopeAndAspect[7] = gridFactoryDouble.create(
-                    nrows, ncols, dimensions);
+            slopeAndAspect[7] = createAligned(gridFactoryDouble, g);
             slopeAndAspect[7].setName(filename);
             System.out.println(slopeAndAspect[7].toString());
             System.out.println("Initialising slopeAndAspect[8]");
@@ -317,8 +270,7 @@ public class Grids_ProcessorDEM extends Grids_Processor {
                         + "weightIntersect(" + weightIntersect + "),"
                         + "weightFactor(" + weightFactor + ")]";
             }
-            slopeAndAspect[8] = (Grids_GridDouble) gridFactoryDouble.create(
-                    nrows, ncols, dimensions);
+            slopeAndAspect[8] = createAligned(gridFactoryDouble, g);
             slopeAndAspect[8].setName(filename);
             System.out.println(slopeAndAspect[8].toString());
             System.out.println("Initialising slopeAndAspect[9]");
@@ -330,219 +282,53 @@ public class Grids_ProcessorDEM extends Grids_Processor {
                         + "weightIntersect(" + weightIntersect + "),"
                         + "weightFactor(" + weightFactor + ")]";
             }
-            slopeAndAspect[9] = (Grids_GridDouble) gridFactoryDouble.create(
-                    nrows, ncols, dimensions);
+            slopeAndAspect[9] = createAligned(gridFactoryDouble, g);
             slopeAndAspect[9].setName(filename);
             System.out.println("Initialised Results");
             System.out.println(g.toString());
-            Grids_2D_ID_int chunkID;
-            if (g.getClass() == Grids_GridDouble.class) {
-                gd = (Grids_GridDouble) g;
-                double noDataValue = gd.getNoDataValue();
-                double h;
-                double h2;
-                for (cri = 0; cri < chunkRows; cri++) {
-                    for (cci = 0; cci < chunkCols; cci++) {
-                        cd = (Grids_ChunkDouble) gd.getChunk(cri, cci);
-                        chunkID = cd.getId();
-                        env.addToNotToClear(g, chunkID);
-                        env.checkAndMaybeFreeMemory();
-                        chunkNrows = g.getChunkNRows(cri);
-                        chunkNcols = g.getChunkNCols(cci);
-                        for (cellRow = 0; cellRow < chunkNrows; cellRow++) {
-                            row = g.getRow(cri, cellRow);
-                            double y = g.getCellY(row).doubleValue();
-                            for (cellCol = 0; cellCol < chunkNcols; cellCol++) {
-                                col = g.getCol(cci, cellCol);
-                                double x = g.getCellX(col).doubleValue();
-                                h = cd.getCell(cellRow, cellCol);
-                                if (h != noDataValue) {
-                                    diffX = 0.0d;
-                                    diffY = 0.0d;
-                                    slope = 0.0d;
-                                    weightSum = 0.0d;
-                                    distanceSum = 0.0d;
-                                    numberObservations = 0.0d;
-                                    for (p = -cellDistance; p <= cellDistance; p++) {
-                                        long0 = row + p;
-                                        BigDecimal thisY = g.getCellY(long0);
-                                        for (q = -cellDistance; q <= cellDistance; q++) {
-                                            if (!(p == 0 && q == 0)) {
-                                                BigDecimal thisX = BigDecimal.valueOf(q * cellsize);
-                                                BigDecimal thisDistance = Grids_Utilities.distance(BigDecimal.ZERO,
-                                                        BigDecimal.ZERO, thisX, thisY, dp, rm);
-                                                if (thisDistance.compareTo(distance) != 1) {
-                                                    h2 = gd.getCell(thisX, thisY);
-                                                    if (h2 != noDataValue) {
-                                                        long0 = p + cellDistance;
-                                                        int0 = (int) long0;
-                                                        long0 = q + cellDistance;
-                                                        int1 = (int) (long0);
-                                                        weight = weights[int0][int1];
-                                                        weightSum += weight;
-                                                        distanceSum += thisDistance.doubleValue();
-                                                        numberObservations++;
-                                                        d = h - h2;
-                                                        diffHeight = d * weight;
-                                                        d = x - thisX.doubleValue();
-                                                        diffX += d * diffHeight;
-                                                        d = y - thisY.doubleValue();
-                                                        diffY += d * diffHeight;
-                                                        slope += diffHeight;
-                                                    }
-                                                }
-                                            }
-                                        }
-                                    }
-                                    if (numberObservations > 0) {
-                                        averageDistance = (distanceSum / numberObservations);
-                                        d = weightSum * averageDistance;
-                                        slope /= d;
-                                        slope *= slopeFactor;
-                                        slopeAndAspect[0].setCell(row, col, slope);
-                                        d = x + diffX;
-                                        double1 = y + diffY;
-                                        angle = Grids_Utilities.angle(x, y, d, double1);
-                                        slopeAndAspect[1].setCell(row, col, angle);
-                                        sinAngle = Math.sin(angle);
-                                        slopeAndAspect[2].setCell(row, col, sinAngle);
-                                        double3 = angle + (PI / 8.0d);
-                                        sinAngle = Math.sin(double3);
-                                        slopeAndAspect[3].setCell(row, col, sinAngle);
-                                        double3 = angle + (PI / 4.0d);
-                                        sinAngle = Math.sin(double3);
-                                        slopeAndAspect[4].setCell(row, col, sinAngle);
-                                        double3 = angle + (PI * 3.0d / 8.0d);
-                                        sinAngle = Math.sin(double3);
-                                        slopeAndAspect[5].setCell(row, col, sinAngle);
-                                        double3 = angle + (PI / 2.0d);
-                                        sinAngle = Math.sin(double3);
-                                        slopeAndAspect[6].setCell(row, col, sinAngle);
-                                        double3 = angle + (PI * 5.0d / 8.0d);
-                                        sinAngle = Math.sin(double3);
-                                        slopeAndAspect[7].setCell(row, col, sinAngle);
-                                        double3 = angle + (PI * 6.0d / 8.0d);
-                                        sinAngle = Math.sin(double3);
-                                        slopeAndAspect[8].setCell(row, col, sinAngle);
-                                        double3 = angle + (PI * 7.0d / 8.0d);
-                                        sinAngle = Math.sin(double3);
-                                        slopeAndAspect[9].setCell(row, col, sinAngle);
-                                    }
-                                }
-                            }
-                        }
-                        env.removeFromNotToClear(g, chunkID);
-                        System.out.println("Done Chunk (" + cri + ", " + cci + ")");
+            int nOffsets = n;
+            double slopeFactor = 100.0d;
+            // The offsets in the stencil buffer of the cells within distance.
+            int stride = Grids_StencilBuffer.getStride(g.getChunkNCols(),
+                    cellDistance);
+            int[] offsets = new int[nOffsets];
+            for (int k = 0; k < nOffsets; k++) {
+                offsets[k] = ps[k] * stride + qs[k];
+            }
+            new Grids_Stencil(this).run(g, cellDistance, (b, r, c, out) -> {
+                double[] data = b.getData(0);
+                int pos = b.index(r, c);
+                double h = data[pos];
+                double diffX = 0.0d;
+                double diffY = 0.0d;
+                double slope = 0.0d;
+                double weightSum = 0.0d;
+                double dSum = 0.0d;
+                int nObs = 0;
+                for (int k = 0; k < nOffsets; k++) {
+                    double h2 = data[pos + offsets[k]];
+                    if (!Double.isNaN(h2)) {
+                        double weight = ws[k];
+                        weightSum += weight;
+                        dSum += ds[k];
+                        nObs++;
+                        double diffHeight = (h - h2) * weight;
+                        diffX -= qs[k] * cellsize * diffHeight;
+                        diffY -= ps[k] * cellsize * diffHeight;
+                        slope += diffHeight;
                     }
                 }
-            } else {
-                // (g.getClass() == Grids_GridInt.class)
-                gridInt = (Grids_GridInt) g;
-                noDataValueInt = gridInt.getNoDataValue();
-//                Grids_GridIntIterator ite;
-//                ite = gridInt.iterator();
-//                Grids_AbstractGridChunkNumberRowMajorOrderIterator chunkIte;
-//                while (ite.hasNext()) {
-//                    chunkIte = ite.getChunkIterator();
-//                    chunkIte.
-//                }
-                for (cri = 0; cri < chunkRows; cri++) {
-                    chunkNrows = g.getChunkNRows(cri);
-                    for (cci = 0; cci < chunkCols; cci++) {
-                        chunkNcols = g.getChunkNCols(cci);
-                        ci = (Grids_ChunkInt) gridInt.getChunk(cri, cci);
-                        chunkID = ci.getId();
-                        env.addToNotToClear(g, chunkID);
-                        env.checkAndMaybeFreeMemory();
-                        for (cellRow = 0; cellRow < chunkNrows; cellRow++) {
-                            row = g.getRow(cri, cellRow);
-                            BigDecimal y = g.getCellY(row);
-                            for (cellCol = 0; cellCol < chunkNcols; cellCol++) {
-                                env.checkAndMaybeFreeMemory();
-                                col = g.getCol(cci, cellCol);
-                                BigDecimal x = g.getCellX(col);
-                                heightInt = ci.getCell(cellRow, cellCol);
-                                if (heightInt != noDataValueInt) {
-                                    diffX = 0.0d;
-                                    diffY = 0.0d;
-                                    slope = 0.0d;
-                                    weightSum = 0.0d;
-                                    distanceSum = 0.0d;
-                                    numberObservations = 0.0d;
-                                    for (p = -cellDistance; p <= cellDistance; p++) {
-                                        long0 = row + p;
-                                        BigDecimal thisY = g.getCellY(long0);
-                                        for (q = -cellDistance; q <= cellDistance; q++) {
-                                            if (!(p == 0 && q == 0)) {
-                                                long0 = col + q;
-                                                BigDecimal thisX = g.getCellX(long0);
-                                                BigDecimal thisDistance = Grids_Utilities.distance(x, y, thisX, thisY, dp, rm);
-                                                if (thisDistance.compareTo(distance) != 1) {
-                                                    thisHeightInt = gridInt.getCell(
-                                                            thisX, thisY);
-                                                    if (thisHeightInt != noDataValueInt) {
-                                                        long0 = p + cellDistance;
-                                                        int0 = (int) long0;
-                                                        long0 = q + cellDistance;
-                                                        int1 = (int) (long0);
-                                                        weight = weights[int0][int1];
-                                                        weightSum += weight;
-                                                        distanceSum += thisDistance.doubleValue();
-                                                        numberObservations++;
-                                                        d = (double) heightInt - thisHeightInt;
-                                                        diffHeight = d * weight;
-                                                        d = x.subtract(thisX).doubleValue();
-                                                        diffX += d * diffHeight;
-                                                        d = y.subtract(thisY).doubleValue();
-                                                        diffY += d * diffHeight;
-                                                        slope += diffHeight;
-                                                    }
-                                                }
-                                            }
-                                        }
-                                    }
-                                    if (numberObservations > 0) {
-                                        averageDistance = (distanceSum / numberObservations);
-                                        d = weightSum * averageDistance;
-                                        slope /= d;
-                                        slope *= slopeFactor;
-                                        slopeAndAspect[0].setCell(row, col, slope);
-                                        d = x.doubleValue() + diffX;
-                                        double1 = y.doubleValue() + diffY;
-                                        angle = Grids_Utilities.angle(x.doubleValue(), y.doubleValue(), d, double1);
-                                        slopeAndAspect[1].setCell(row, col, angle);
-                                        sinAngle = Math.sin(angle);
-                                        slopeAndAspect[2].setCell(row, col, sinAngle);
-                                        double3 = angle + (PI / 8.0d);
-                                        sinAngle = Math.sin(double3);
-                                        slopeAndAspect[3].setCell(row, col, sinAngle);
-                                        double3 = angle + (PI / 4.0d);
-                                        sinAngle = Math.sin(double3);
-                                        slopeAndAspect[4].setCell(row, col, sinAngle);
-                                        double3 = angle + (PI * 3.0d / 8.0d);
-                                        sinAngle = Math.sin(double3);
-                                        slopeAndAspect[5].setCell(row, col, sinAngle);
-                                        double3 = angle + (PI / 2.0d);
-                                        sinAngle = Math.sin(double3);
-                                        slopeAndAspect[6].setCell(row, col, sinAngle);
-                                        double3 = angle + (PI * 5.0d / 8.0d);
-                                        sinAngle = Math.sin(double3);
-                                        slopeAndAspect[7].setCell(row, col, sinAngle);
-                                        double3 = angle + (PI * 6.0d / 8.0d);
-                                        sinAngle = Math.sin(double3);
-                                        slopeAndAspect[8].setCell(row, col, sinAngle);
-                                        double3 = angle + (PI * 7.0d / 8.0d);
-                                        sinAngle = Math.sin(double3);
-                                        slopeAndAspect[9].setCell(row, col, sinAngle);
-                                    }
-                                }
-                            }
-                        }
-                        env.removeFromNotToClear(g, chunkID);
-                        System.out.println("Done Chunk (" + cri + ", " + cci + ")");
+                if (nObs > 0) {
+                    slope /= weightSum * (dSum / nObs);
+                    out[0] = slope * slopeFactor;
+                    double angle = Grids_Utilities.angle(0.0d, 0.0d, diffX,
+                            diffY);
+                    out[1] = angle;
+                    for (int k = 0; k < 8; k++) {
+                        out[2 + k] = Math.sin(angle + (Math.PI * k / 8.0d));
                     }
                 }
-            }
+            }, slopeAndAspect);
             return slopeAndAspect;
         } catch (OutOfMemoryError e) {
             if (hoome) {
@@ -1405,49 +1191,50 @@ public class Grids_ProcessorDEM extends Grids_Processor {
             Grids_GridInt gi = (Grids_GridInt) g;
             int ndv = gi.getNoDataValue();
             int[] h = new int[9];
-            while (ite1.hasNext()) {
-                cellID = ite1.next();
-                if (!visited1.contains(cellID)) {
-                    row = cellID.getRow();
-                    col = cellID.getCol();
-                    // Examine neighbourhood
-                    for (a = -1; a < 2; a++) {
-                        for (b = -1; b < 2; b++) {
-                            visited1.add(gi.getCellID(row + a, col + b));
-                            h[0] = gi.getCell(row + a, col + b);
-                            if (h[0] != ndv) {
-                                k = 0;
-                                for (p = -1; p < 2; p++) {
-                                    for (q = -1; q < 2; q++) {
-                                        if (!(p == 0 && q == 0)) {
-                                            k++;
-                                            h[k] = gi.getCell(
-                                                    row + a + p,
-                                                    col + b + q);
+            try (Grids_GridCursorInt c = gi.cursor()) {
+                while (ite1.hasNext()) {
+                    cellID = ite1.next();
+                    if (!visited1.contains(cellID)) {
+                        row = cellID.getRow();
+                        col = cellID.getCol();
+                        // Examine neighbourhood
+                        for (a = -1; a < 2; a++) {
+                            for (b = -1; b < 2; b++) {
+                                visited1.add(gi.getCellID(row + a, col + b));
+                                c.moveTo(row + a, col + b);
+                                h[0] = c.get();
+                                if (h[0] != ndv) {
+                                    k = 0;
+                                    for (p = -1; p < 2; p++) {
+                                        for (q = -1; q < 2; q++) {
+                                            if (!(p == 0 && q == 0)) {
+                                                k++;
+                                                h[k] = c.get(p, q);
+                                            }
                                         }
                                     }
-                                }
-                                if (treatNoDataValueAsOutflow) {
-                                    if ((h[1] >= h[0])
-                                            && (h[2] >= h[0])
-                                            && (h[3] >= h[0])
-                                            && (h[4] >= h[0])
-                                            && (h[5] >= h[0])
-                                            && (h[6] >= h[0])
-                                            && (h[7] >= h[0])
-                                            && (h[8] >= h[0])) {
-                                        r.add(g.getCellID(row + a, col + b));
-                                    }
-                                } else {
-                                    if ((h[1] >= h[0] || h[1] == ndv)
-                                            && (h[2] >= h[0] || h[2] == ndv)
-                                            && (h[3] >= h[0] || h[3] == ndv)
-                                            && (h[4] >= h[0] || h[4] == ndv)
-                                            && (h[5] >= h[0] || h[5] == ndv)
-                                            && (h[6] >= h[0] || h[6] == ndv)
-                                            && (h[7] >= h[0] || h[7] == ndv)
-                                            && (h[8] >= h[0] || h[8] == ndv)) {
-                                        r.add(gi.getCellID(row + a, col + b));
+                                    if (treatNoDataValueAsOutflow) {
+                                        if ((h[1] >= h[0])
+                                                && (h[2] >= h[0])
+                                                && (h[3] >= h[0])
+                                                && (h[4] >= h[0])
+                                                && (h[5] >= h[0])
+                                                && (h[6] >= h[0])
+                                                && (h[7] >= h[0])
+                                                && (h[8] >= h[0])) {
+                                            r.add(g.getCellID(row + a, col + b));
+                                        }
+                                    } else {
+                                        if ((h[1] >= h[0] || h[1] == ndv)
+                                                && (h[2] >= h[0] || h[2] == ndv)
+                                                && (h[3] >= h[0] || h[3] == ndv)
+                                                && (h[4] >= h[0] || h[4] == ndv)
+                                                && (h[5] >= h[0] || h[5] == ndv)
+                                                && (h[6] >= h[0] || h[6] == ndv)
+                                                && (h[7] >= h[0] || h[7] == ndv)
+                                                && (h[8] >= h[0] || h[8] == ndv)) {
+                                            r.add(gi.getCellID(row + a, col + b));
+                                        }
                                     }
                                 }
                             }
@@ -1460,49 +1247,50 @@ public class Grids_ProcessorDEM extends Grids_Processor {
             Grids_GridDouble gd = (Grids_GridDouble) g;
             double ndv = gd.getNoDataValue();
             double[] h = new double[9];
-            while (ite1.hasNext()) {
-                cellID = ite1.next();
-                if (!visited1.contains(cellID)) {
-                    row = cellID.getRow();
-                    col = cellID.getCol();
-                    // Examine neighbourhood
-                    for (a = -1; a < 2; a++) {
-                        for (b = -1; b < 2; b++) {
-                            visited1.add(gd.getCellID(row + a, col + b));
-                            h[0] = gd.getCell(row + a, col + b);
-                            if (h[0] != ndv) {
-                                k = 0;
-                                for (p = -1; p < 2; p++) {
-                                    for (q = -1; q < 2; q++) {
-                                        if (!(p == 0 && q == 0)) {
-                                            k++;
-                                            h[k] = gd.getCell(
-                                                    row + a + p,
-                                                    col + b + q);
+            try (Grids_GridCursorDouble c = gd.cursor()) {
+                while (ite1.hasNext()) {
+                    cellID = ite1.next();
+                    if (!visited1.contains(cellID)) {
+                        row = cellID.getRow();
+                        col = cellID.getCol();
+                        // Examine neighbourhood
+                        for (a = -1; a < 2; a++) {
+                            for (b = -1; b < 2; b++) {
+                                visited1.add(gd.getCellID(row + a, col + b));
+                                c.moveTo(row + a, col + b);
+                                h[0] = c.get();
+                                if (h[0] != ndv) {
+                                    k = 0;
+                                    for (p = -1; p < 2; p++) {
+                                        for (q = -1; q < 2; q++) {
+                                            if (!(p == 0 && q == 0)) {
+                                                k++;
+                                                h[k] = c.get(p, q);
+                                            }
                                         }
                                     }
-                                }
-                                if (treatNoDataValueAsOutflow) {
-                                    if ((h[1] >= h[0])
-                                            && (h[2] >= h[0])
-                                            && (h[3] >= h[0])
-                                            && (h[4] >= h[0])
-                                            && (h[5] >= h[0])
-                                            && (h[6] >= h[0])
-                                            && (h[7] >= h[0])
-                                            && (h[8] >= h[0])) {
-                                        r.add(g.getCellID(row + a, col + b));
-                                    }
-                                } else {
-                                    if ((h[1] >= h[0] || h[1] == ndv)
-                                            && (h[2] >= h[0] || h[2] == ndv)
-                                            && (h[3] >= h[0] || h[3] == ndv)
-                                            && (h[4] >= h[0] || h[4] == ndv)
-                                            && (h[5] >= h[0] || h[5] == ndv)
-                                            && (h[6] >= h[0] || h[6] == ndv)
-                                            && (h[7] >= h[0] || h[7] == ndv)
-                                            && (h[8] >= h[0] || h[8] == ndv)) {
-                                        r.add(gd.getCellID(row + a, col + b));
+                                    if (treatNoDataValueAsOutflow) {
+                                        if ((h[1] >= h[0])
+                                                && (h[2] >= h[0])
+                                                && (h[3] >= h[0])
+                                                && (h[4] >= h[0])
+                                                && (h[5] >= h[0])
+                                                && (h[6] >= h[0])
+                                                && (h[7] >= h[0])
+                                                && (h[8] >= h[0])) {
+                                            r.add(g.getCellID(row + a, col + b));
+                                        }
+                                    } else {
+                                        if ((h[1] >= h[0] || h[1] == ndv)
+                                                && (h[2] >= h[0] || h[2] == ndv)
+                                                && (h[3] >= h[0] || h[3] == ndv)
+                                                && (h[4] >= h[0] || h[4] == ndv)
+                                                && (h[5] >= h[0] || h[5] == ndv)
+                                                && (h[6] >= h[0] || h[6] == ndv)
+                                                && (h[7] >= h[0] || h[7] == ndv)
+                                                && (h[8] >= h[0] || h[8] == ndv)) {
+                                            r.add(gd.getCellID(row + a, col + b));
+                                        }
                                     }
                                 }
                             }
@@ -1534,77 +1322,83 @@ public class Grids_ProcessorDEM extends Grids_Processor {
             Grids_GridInt gi = (Grids_GridInt) g;
             int ndv = gi.getNoDataValue();
             int[] h = new int[9];
-            while (ite1.hasNext()) {
-                cellID = ite1.next();
-                row = cellID.getRow();
-                col = cellID.getCol();
-                h[0] = gi.getCell(row, col);
-                if (h[0] != ndv) {
-                    //noDataCount = 0;
-                    k = 0;
-                    for (p = -1; p < 2; p++) {
-                        for (q = -1; q < 2; q++) {
-                            if (!(p == 0 && q == 0)) {
-                                k++;
-                                h[k] = gi.getCell(row + p, col + q);
-                                //if (heights[k] == noDataValue) {
-                                //    noDataCount ++;
-                                //}
+            try (Grids_GridCursorInt c = gi.cursor()) {
+                while (ite1.hasNext()) {
+                    cellID = ite1.next();
+                    row = cellID.getRow();
+                    col = cellID.getCol();
+                    c.moveTo(row, col);
+                    h[0] = c.get();
+                    if (h[0] != ndv) {
+                        //noDataCount = 0;
+                        k = 0;
+                        for (p = -1; p < 2; p++) {
+                            for (q = -1; q < 2; q++) {
+                                if (!(p == 0 && q == 0)) {
+                                    k++;
+                                    h[k] = c.get(p, q);
+                                    //if (heights[k] == noDataValue) {
+                                    //    noDataCount ++;
+                                    //}
+                                }
                             }
                         }
+                        // This deals with single isolated cells surrounded by noDataValues
+                        //if (noDataCount < 8) {
+                        if ((h[1] >= h[0] || h[1] == ndv)
+                                && (h[2] >= h[0] || h[2] == ndv)
+                                && (h[3] >= h[0] || h[3] == ndv)
+                                && (h[4] >= h[0] || h[4] == ndv)
+                                && (h[5] >= h[0] || h[5] == ndv)
+                                && (h[6] >= h[0] || h[6] == ndv)
+                                && (h[7] >= h[0] || h[7] == ndv)
+                                && (h[8] >= h[0] || h[8] == ndv)) {
+                            r.add(cellID);
+                        }
+                        //}
                     }
-                    // This deals with single isolated cells surrounded by noDataValues
-                    //if (noDataCount < 8) {
-                    if ((h[1] >= h[0] || h[1] == ndv)
-                            && (h[2] >= h[0] || h[2] == ndv)
-                            && (h[3] >= h[0] || h[3] == ndv)
-                            && (h[4] >= h[0] || h[4] == ndv)
-                            && (h[5] >= h[0] || h[5] == ndv)
-                            && (h[6] >= h[0] || h[6] == ndv)
-                            && (h[7] >= h[0] || h[7] == ndv)
-                            && (h[8] >= h[0] || h[8] == ndv)) {
-                        r.add(cellID);
-                    }
-                    //}
                 }
             }
         } else { // (_Grid2DSquareCell.getClass() == Grids_GridDouble.class)
             Grids_GridDouble gd = (Grids_GridDouble) g;
             double ndv = gd.getNoDataValue();
             double[] h = new double[9];
-            while (ite1.hasNext()) {
-                cellID = ite1.next();
-                row = cellID.getRow();
-                col = cellID.getCol();
-                h[0] = gd.getCell(row, col);
-                if (h[0] != ndv) {
-                    //noDataCount = 0;
-                    k = 0;
-                    for (p = -1; p < 2; p++) {
-                        for (q = -1; q < 2; q++) {
-                            if (!(p == 0 && q == 0)) {
-                                k++;
-                                h[k] = gd.getCell(row + p, col + q);
-                                //if (heights[k] == noDataValue) {
-                                //    noDataCount ++;
-                                //}
+            try (Grids_GridCursorDouble c = gd.cursor()) {
+                while (ite1.hasNext()) {
+                    cellID = ite1.next();
+                    row = cellID.getRow();
+                    col = cellID.getCol();
+                    c.moveTo(row, col);
+                    h[0] = c.get();
+                    if (h[0] != ndv) {
+                        //noDataCount = 0;
+                        k = 0;
+                        for (p = -1; p < 2; p++) {
+                            for (q = -1; q < 2; q++) {
+                                if (!(p == 0 && q == 0)) {
+                                    k++;
+                                    h[k] = c.get(p, q);
+                                    //if (heights[k] == noDataValue) {
+                                    //    noDataCount ++;
+                                    //}
 
+                                }
                             }
                         }
-                    }
-                    // This deals with single isolated cells surrounded by noDataValues
-                    //if (noDataCount < 8) {
-                    if ((h[1] >= h[0] || h[1] == ndv)
-                            && (h[2] >= h[0] || h[2] == ndv)
-                            && (h[3] >= h[0] || h[3] == ndv)
-                            && (h[4] >= h[0] || h[4] == ndv)
-                            && (h[5] >= h[0] || h[5] == ndv)
-                            && (h[6] >= h[0] || h[6] == ndv)
-                            && (h[7] >= h[0] || h[7] == ndv)
-                            && (h[8] >= h[0] || h[8] == ndv)) {
-                        r.add(cellID);
+                        // This deals with single isolated cells surrounded by noDataValues
+                        //if (noDataCount < 8) {
+                        if ((h[1] >= h[0] || h[1] == ndv)
+                                && (h[2] >= h[0] || h[2] == ndv)
+                                && (h[3] >= h[0] || h[3] == ndv)
+                                && (h[4] >= h[0] || h[4] == ndv)
+                                && (h[5] >= h[0] || h[5] == ndv)
+                                && (h[6] >= h[0] || h[6] == ndv)
+                                && (h[7] >= h[0] || h[7] == ndv)
+                                && (h[8] >= h[0] || h[8] == ndv)) {
+                            r.add(cellID);
 
-                    } //}
+                        } //}
+                    }
                 }
             }
         }
@@ -1776,8 +1570,6 @@ public class Grids_ProcessorDEM extends Grids_Processor {
                     + "gridIntFactory.getChunkNrows()))");
         }
         Grids_GridNumber[] metrics1 = new Grids_GridNumber[65];
-        long ncols = g.getNCols();
-        long nrows = g.getNRows();
         Grids_Dimensions dimensions = g.getDimensions();
         boolean isInitialised = false;
         String[] metrics1Names = getMetrics1Names();
@@ -1785,7 +1577,7 @@ public class Grids_ProcessorDEM extends Grids_Processor {
             env.checkAndMaybeFreeMemory();
             do {
                 try {
-                    metrics1[i] = gdf.create(nrows, ncols, dimensions);
+                    metrics1[i] = createAligned(gdf, g);
                     if (swapInitialisedFiles) {
                         metrics1[i].cache();
                     }
@@ -2027,8 +1819,9 @@ public class Grids_ProcessorDEM extends Grids_Processor {
      * @param distance The distance within which metrics will be calculated.
      * @param wi The weight intersect kernel parameter (weight at the centre).
      * @param wf The weight factor kernel parameter (distance decay).
-     * @param swapProcessedChunks If {@code true}, then preemptive swapping is
-     * done for memory management.
+     * @param swapProcessedChunks Retained for compatibility. Chunks are
+     * processed using a {@link Grids_Stencil} and the chunks of the results are
+     * only pinned whilst being set, so they can be swapped as needed.
      * @return metrics 1.
      * @throws java.io.IOException If encountered.
      * @throws java.lang.ClassNotFoundException If encountered.
@@ -2046,178 +1839,24 @@ public class Grids_ProcessorDEM extends Grids_Processor {
         String underScore = "_";
         double cellsize = dim.getCellsize().doubleValue();
         int cellDistance = (int) Math.ceil(distance / cellsize);
-        BigDecimal[] heights = new BigDecimal[4];
-        heights[0] = BigDecimal.ZERO;
-        heights[1] = BigDecimal.ZERO;
-        heights[2] = BigDecimal.ZERO;
-        heights[3] = BigDecimal.ZERO;
-        BigDecimal[] diff = new BigDecimal[4];
-        diff[0] = BigDecimal.ZERO;
-        diff[1] = BigDecimal.ZERO;
-        diff[2] = BigDecimal.ZERO;
-        diff[3] = BigDecimal.ZERO;
-        BigDecimal[] dummyDiff = new BigDecimal[4];
-        dummyDiff[0] = BigDecimal.ZERO;
-        dummyDiff[1] = BigDecimal.ZERO;
-        dummyDiff[2] = BigDecimal.ZERO;
-        dummyDiff[3] = BigDecimal.ZERO;
-        double[][] weights;
-        weights = Grids_Kernel.getNormalDistributionKernelWeights(
+        double[][] weights = Grids_Kernel.getNormalDistributionKernelWeights(
                 g.getCellsize().doubleValue(), distance);
-        double[] metrics1ForCell = new double[metrics1.length];
-        for (int i = 0; i < metrics1.length; i++) {
-            metrics1ForCell[i] = 0.0d;
-        }
-        Grids_2D_ID_int chunkID;
-        int nChunkRows = g.getNChunkRows();
-        int nChunkCols = g.getNChunkCols();
-        int chunkNRows;
-        int chunkNCols;
-        int chunkRow;
-        int chunkCol;
-        int cellRow;
-        int cellCol;
         int i;
         String[] names = getMetrics1Names();
-        int normalChunkNRows = g.getChunkNRows(0);
-        int normalChunkNCols = g.getChunkNCols(0);
-        BigDecimal ndv = g.ndv;
-
-        if (g.getClass() == Grids_GridDouble.class) {
-            Grids_GridDouble gd = (Grids_GridDouble) g;
-            double ndvd = gd.getNoDataValue();
-            for (chunkRow = 0; chunkRow < nChunkRows; chunkRow++) {
-                System.out.println("chunkRow(" + chunkRow + ")");
-                chunkNRows = g.getChunkNRows(chunkRow);
-                for (chunkCol = 0; chunkCol < nChunkCols; chunkCol++) {
-                    System.out.println("chunkCol(" + chunkCol + ")");
-                    chunkID = new Grids_2D_ID_int(chunkRow, chunkCol);
-                    env.initNotToClear();
-                    env.addToNotToClear(g, chunkID, chunkRow, chunkCol,
-                            normalChunkNRows, normalChunkNCols, cellDistance);
-                    //ge.addToNotToClear(g, chunkID);
-                    env.addToNotToClear(metrics1, chunkID);
-                    env.checkAndMaybeFreeMemory();
-                    Grids_ChunkDouble gcd = (Grids_ChunkDouble) gd.getChunk(
-                            chunkRow, chunkCol);
-                    boolean doLoop = true;
-                    if (gcd instanceof Grids_ChunkDoubleSinglet) {
-                        if (((Grids_ChunkDoubleSinglet) gcd).getV() == ndvd) {
-                            doLoop = false;
-                        }
-                    }
-                    if (doLoop) {
-                        chunkNCols = g.getChunkNCols(chunkCol);
-                        for (cellRow = 0; cellRow < chunkNRows; cellRow++) {
-                            long row = g.getRow(chunkRow, cellRow);
-                            BigDecimal y = g.getCellY(row);
-                            for (cellCol = 0; cellCol < chunkNCols; cellCol++) {
-                                long col = g.getCol(chunkCol, cellCol);
-                                BigDecimal x = gd.getCellX(col);
-                                //height = _Grid2DSquareCellDouble.getCell(cellRowIndex, cellColIndex, hoome);
-                                BigDecimal cellHeight = gcd.getCellBigDecimal(
-                                        cellRow, cellCol);
-                                if (cellHeight.compareTo(ndv) != 0) {
-                                    env.checkAndMaybeFreeMemory();
-                                    metrics1Calculate_All(gd, ndv, row,
-                                            col, x, y, cellHeight, cellDistance,
-                                            weights, metrics1ForCell, heights,
-                                            diff, dummyDiff);
-                                    for (i = 0; i < metrics1.length; i++) {
-                                        if (metrics1[i] instanceof Grids_GridInt) {
-                                            ((Grids_GridInt) metrics1[i]).setCell(
-                                                    row, col,
-                                                    (int) metrics1ForCell[i]);
-                                        } else {
-                                            ((Grids_GridDouble) metrics1[i]).setCell(
-                                                    row, col,
-                                                    metrics1ForCell[i]);
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
-                    env.env.log("Done Chunk (" + chunkRow + ", " + chunkCol + ")");
-
-                    env.env.log("swapProcessedChunks");
-                    env.initNotToClear();
-                    
-                    if (swapProcessedChunks) {
-                        for (i = 0; i < metrics1.length; i++) {
-                            env.checkAndMaybeFreeMemory();
-                            metrics1[i].swap(chunkID, true, env.HOOME);
-                        }
-                    }
-                }
-            }
-        } else {
-            // (g.getClass() == Grids_GridInt.class)
-            Grids_GridInt gridInt = (Grids_GridInt) g;
-            int noDataValue = gridInt.getNoDataValue();
-            int ndvd = gridInt.getNoDataValue();
-            Grids_ChunkInt gridChunkInt;
-            for (chunkRow = 0; chunkRow < nChunkRows; chunkRow++) {
-                chunkNRows = g.getChunkNRows(chunkRow);
-                System.out.println("chunkRow(" + chunkRow + ")");
-                for (chunkCol = 0; chunkCol < nChunkCols; chunkCol++) {
-                    System.out.println("chunkColIndex(" + chunkCol + ")");
-                    chunkID = new Grids_2D_ID_int(chunkRow, chunkCol);
-                    env.initNotToClear();
-                    env.addToNotToClear(g, chunkID, chunkRow, chunkCol,
-                            normalChunkNRows, normalChunkNCols, cellDistance);
-                    //ge.addToNotToClear(g, chunkID);
-                    env.addToNotToClear(metrics1, chunkID);
-                    env.checkAndMaybeFreeMemory();
-                    gridChunkInt = (Grids_ChunkInt) gridInt.getChunk(
-                            chunkRow, chunkCol);
-                    boolean doLoop = true;
-                    if (gridChunkInt instanceof Grids_ChunkIntSinglet) {
-                        if (((Grids_ChunkIntSinglet) gridChunkInt).v == noDataValue) {
-                            doLoop = false;
-                        }
-                    }
-                    if (doLoop) {
-                        chunkNCols = g.getChunkNCols(chunkCol);
-                        for (cellRow = 0; cellRow < chunkNRows; cellRow++) {
-                            long row = g.getRow(chunkRow, cellRow);
-                            BigDecimal y = g.getCellY(row);
-                            for (cellCol = 0; cellCol < chunkNCols; cellCol++) {
-                                long col = g.getCol(chunkCol, cellCol);
-                                BigDecimal x = gridInt.getCellX(cellCol);
-                                BigDecimal cellHeight = gridChunkInt.getCellBigDecimal(cellRow, cellCol);
-                                if (cellHeight.compareTo(ndv) != 0) {
-                                    env.checkAndMaybeFreeMemory();
-                                    metrics1Calculate_All(gridInt, ndv, row,
-                                            col, x, y, cellHeight, cellDistance,
-                                            weights, metrics1ForCell, heights,
-                                            diff, dummyDiff);
-                                    for (i = 0; i < metrics1.length; i++) {
-                                        if (metrics1[i] instanceof Grids_GridInt) {
-                                            ((Grids_GridInt) metrics1[i]).setCell(
-                                                    row, col,
-                                                    (int) metrics1ForCell[i]);
-                                        } else {
-                                            ((Grids_GridDouble) metrics1[i]).setCell(
-                                                    row, col,
-                                                    metrics1ForCell[i]);
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
-                    System.out.println(
-                            "Done Chunk (" + chunkRow + ", " + chunkCol + ")");
-                    if (swapProcessedChunks) {
-                        for (i = 0; i < metrics1.length; i++) {
-                            env.checkAndMaybeFreeMemory();
-                            metrics1[i].swap(chunkID, true, env.HOOME);
-                        }
-                    }
-                }
-            }
-        }
+        int stride = Grids_StencilBuffer.getStride(g.getChunkNCols(),
+                cellDistance);
+        int nm = metrics1.length;
+        new Grids_Stencil(this).run(g, cellDistance, () -> {
+            double[] m = new double[nm];
+            double[] h = new double[4];
+            double[] d = new double[4];
+            double[] dd = new double[4];
+            return (b, r, c, out) -> {
+                metrics1Calculate_All(b.getData(0), b.index(r, c), stride,
+                        cellDistance, weights, m, h, d, dd);
+                System.arraycopy(m, 0, out, 0, nm);
+            };
+        }, metrics1);
         for (i = 0; i < names.length; i++) {
             name = names[i] + underScore + distance;
             metrics1[i].setName(name);
@@ -2375,60 +2014,50 @@ public class Grids_ProcessorDEM extends Grids_Processor {
      * <li>[64] = w_llll [sum of distance weights];</li></ul>
      * </ul>
      *
-     * @param g The Grids_GridDouble being processed.
-     * @param row The row index of the cell being classified.
-     * @param col The column index of the cell being classified.
-     * @param distance The distance within which metrics1 will be calculated.
+     * @param data The values of the grid being processed held in a
+     * {@link Grids_StencilBuffer}.
+     * @param pos The position in {@code data} of the cell being classified.
+     * @param stride The stride of {@code data}.
+     * @param cellDistance The distance in cells within which metrics1 will be
+     * calculated.
      * @param w An array of kernel weights for weighting metrics1.
+     * @param m For returning the metrics.
+     * @param h For workings.
+     * @param d For workings.
+     * @param dd For workings.
      */
-    private void metrics1Calculate_All(Grids_GridNumber g,
-            BigDecimal noDataValue, long row, long col, BigDecimal cellX,
-            BigDecimal cellY, BigDecimal cellHeight, int cellDistance,
-            double[][] w, double[] m, BigDecimal[] h, BigDecimal[] d,
-            BigDecimal[] dd) throws IOException, ClassNotFoundException,
-            Exception {
+    private void metrics1Calculate_All(double[] data, int pos, int stride,
+            int cellDistance, double[][] w, double[] m, double[] h, double[] d,
+            double[] dd) {
         for (int i = 0; i < m.length; i++) {
             m[i] = 0.0d;
         }
+        double cellHeight = data[pos];
         double weight;
         double upCount;
         double downCount;
         double upness;
         double downness;
         double averageDiff;
-        //double averageHeight;
         double noDataCount;
-        //double sumWeight;
         int p;
         int q;
         for (p = 0; p <= cellDistance; p++) {
-            BigDecimal y = g.getCellY(row + p);
-            BigDecimal yDiff = y.subtract(cellY);
             for (q = 1; q <= cellDistance; q++) {
                 noDataCount = 0.0d;
-                BigDecimal x = g.getCellX(col + q);
                 weight = w[p][q];
                 if (weight > 0) {
-                    BigDecimal xDiff = x.subtract(cellX);
-                    h[0] = g.getCellBigDecimal(x, y);
-                    if (h[0] == noDataValue) {
-                        h[0] = cellHeight;
-                        noDataCount += 1.0d;
-                    }
-                    h[1] = g.getCellBigDecimal(cellX.add(yDiff), cellY.subtract(xDiff));
-                    if (h[1] == noDataValue) {
-                        h[1] = cellHeight;
-                        noDataCount += 1.0d;
-                    }
-                    h[2] = g.getCellBigDecimal(cellX.subtract(xDiff), cellY.subtract(yDiff));
-                    if (h[2] == noDataValue) {
-                        h[2] = cellHeight;
-                        noDataCount += 1.0d;
-                    }
-                    h[3] = g.getCellBigDecimal(cellX.subtract(yDiff), cellY.add(xDiff));
-                    if (h[3] == noDataValue) {
-                        h[3] = cellHeight;
-                        noDataCount += 1.0d;
+                    // The cells p rows and q columns away rotated by 0, 90,
+                    // 180 and 270 degrees about the cell.
+                    h[0] = data[pos + p * stride + q];
+                    h[1] = data[pos - q * stride + p];
+                    h[2] = data[pos - p * stride - q];
+                    h[3] = data[pos + q * stride - p];
+                    for (int r = 0; r < 4; r++) {
+                        if (Double.isNaN(h[r])) {
+                            h[r] = cellHeight;
+                            noDataCount += 1.0d;
+                        }
                     }
                     m[0] += noDataCount;
                     if (noDataCount < 4.0d) {
@@ -2445,21 +2074,21 @@ public class Grids_ProcessorDEM extends Grids_Processor {
                         downness = 0.0d;
                         for (int r = 0; r < 4; r++) {
                             //averageHeight += heights[r];
-                            d[r] = h[r].subtract(cellHeight);
-                            averageDiff += d[r].doubleValue();
-                            if (d[r].compareTo(BigDecimal.ZERO) == 1) {
-                                downness += d[r].doubleValue();
+                            d[r] = h[r] - cellHeight;
+                            averageDiff += d[r];
+                            if (d[r] > 0.0d) {
+                                downness += d[r];
                                 downCount += 1.0d;
                             } else {
-                                if (d[r].compareTo(BigDecimal.ZERO) == -1) {
-                                    upness += d[r].doubleValue();
+                                if (d[r] < 0.0d) {
+                                    upness += d[r];
                                     upCount += 1.0d;
 
                                 } else {
                                     m[1] += weight; // flatness
                                 }
                             }
-                            m[2] += weight * Math.abs(d[r].doubleValue()); // roughness
+                            m[2] += weight * Math.abs(d[r]); // roughness
                         }
                         //averageHeight /= (4.0d - noDataCount);
                         averageDiff /= (4.0d - noDataCount);
@@ -2474,10 +2103,8 @@ public class Grids_ProcessorDEM extends Grids_Processor {
                         // Slopyness and levelness similar to slope in getSlopeAspect
                         // slopyness
                         m[3] += weight * Math.sqrt(
-                                ((d[0].subtract(d[2])).multiply((d[0]
-                                        .subtract(d[2])))).add(((d[1]
-                                        .subtract(d[3])).multiply(
-                                        (d[1].subtract(d[3]))))).doubleValue());
+                                (d[0] - d[2]) * (d[0] - d[2])
+                                + (d[1] - d[3]) * (d[1] - d[3]));
                         //levelness
                         m[4] += weight * averageDiff;
                         //levelness += weight * Math.abs(averageHeight - cellsize);
@@ -2494,25 +2121,15 @@ public class Grids_ProcessorDEM extends Grids_Processor {
     /**
      *
      * @param m The array of metrics to be processed.
-     * @param dbd The array of differences of cell values.
-     * @param ddbd The dummy array of differences of cell values.
+     * @param d The array of differences of cell values.
+     * @param dd The dummy array of differences of cell values.
      * @param w The weight to be applied to weighted metrics.
      * @param ad The average difference in height for diff (N.B This is passed
      * in rather than calculated here because of cell values that were
      * noDataValue in the grid for which metrics1 are being processed.
      */
-    private void metrics1Calculate_Complex(double[] m, BigDecimal[] dbd,
-            BigDecimal[] ddbd, double w, double ad) {
-
-        // Hack
-        int l = dbd.length;
-        double[] d = new double[l];
-        double[] dd = new double[l];
-        for (int i = 0; i < l; i++) {
-            d[i] = dbd[i].doubleValue();
-            dd[i] = ddbd[i].doubleValue();
-        }
-
+    private void metrics1Calculate_Complex(double[] m, double[] d,
+            double[] dd, double w, double ad) {
         int caseSwitch = metrics1Calculate_CaseSwitch(d);
         // 81 cases
         // Each orthoganal equidistant cell is either heigher, lower, or
@@ -3731,68 +3348,57 @@ public class Grids_ProcessorDEM extends Grids_Processor {
             Grids_GridFactoryDouble gf) throws IOException,
             ClassNotFoundException, Exception {
         env.checkAndMaybeFreeMemory();
-        long nrows = g.getNRows();
-        long ncols = g.getNCols();
-        double noDataValue = g.getNoDataValue();
-        Grids_GridDouble r = gf.create(nrows, ncols, g.getDimensions());
-        long row;
-        long col;
-        int k;
-        int flowDirection;
-        double[] z = new double[9];
-        double minz;
-        int minzCount;
-        int minzCountNoDataValue;
-        long p;
-        long q;
-        for (row = 0; row < nrows; row++) {
-            for (col = 0; col < ncols; col++) {
-                z[0] = g.getCell(row, col);
-                if (z[0] != noDataValue) {
-                    minz = Double.MAX_VALUE;
-                    minzCount = 0;
-                    minzCountNoDataValue = 0;
-                    flowDirection = 0;
-                    k = 0;
-                    for (p = -1; p < 2; p++) {
-                        for (q = -1; q < 2; q++) {
-                            if (!(p == 0 && q == 0)) {
-                                k++;
-                                z[k] = g.getCell(row + p, col + q);
-                                if (z[k] != noDataValue) {
-                                    if (z[k] <= minz && z[k] < z[0]) {
-                                        if (z[k] == minz) {
-                                            minzCount++;
-                                        } else {
-                                            minz = z[k];
-                                            minzCount = 1;
-                                            flowDirection = k;
-                                        }
+        Grids_GridDouble r = createAligned(gf, g);
+        int stride = Grids_StencilBuffer.getStride(g.getChunkNCols(), 1);
+        new Grids_Stencil(this).run(g, 1, () -> {
+            double[] z = new double[9];
+            return (b, row, col, out) -> {
+                double[] data = b.getData(0);
+                int pos = b.index(row, col);
+                z[0] = data[pos];
+                double minz = Double.MAX_VALUE;
+                int minzCount = 0;
+                int minzCountNoDataValue = 0;
+                int flowDirection = 0;
+                int k = 0;
+                for (int p = -1; p < 2; p++) {
+                    for (int q = -1; q < 2; q++) {
+                        if (!(p == 0 && q == 0)) {
+                            k++;
+                            z[k] = data[pos + p * stride + q];
+                            if (!Double.isNaN(z[k])) {
+                                if (z[k] <= minz && z[k] < z[0]) {
+                                    if (z[k] == minz) {
+                                        minzCount++;
+                                    } else {
+                                        minz = z[k];
+                                        minzCount = 1;
+                                        flowDirection = k;
                                     }
-                                } else {
-                                    minzCountNoDataValue++;
                                 }
+                            } else {
+                                minzCountNoDataValue++;
                             }
                         }
                     }
-                    // If more than one flowDirection randomly assign one
-                    if (minzCount + minzCountNoDataValue > 1) {
-                        int[] min = new int[minzCount + minzCountNoDataValue];
-                        int minID = 0;
-                        double random = Math.random();
-                        for (int k2 = 1; k2 < z.length; k2++) {
-                            if (z[k2] == minz || z[k2] == noDataValue) {
-                                min[minID] = k2;
-                                minID++;
-                            }
+                }
+                // If more than one flowDirection randomly assign one
+                if (minzCount + minzCountNoDataValue > 1) {
+                    int[] min = new int[minzCount + minzCountNoDataValue];
+                    int minID = 0;
+                    double random = ThreadLocalRandom.current().nextDouble();
+                    for (int k2 = 1; k2 < z.length; k2++) {
+                        if (z[k2] == minz || Double.isNaN(z[k2])) {
+                            min[minID] = k2;
+                            minID++;
                         }
-                        flowDirection = min[(int) Math.floor(random
-                                * (minzCount + minzCountNoDataValue))];
                     }
-                    r.setCell(row, col, (double) flowDirection);
+                    flowDirection = min[(int) Math.floor(random
+                            * (minzCount + minzCountNoDataValue))];
                 }
-            }
-        }
+                out[0] = flowDirection;
+            };
+        }, r);
         return r;
     }
 
@@ -3812,49 +3418,24 @@ public class Grids_ProcessorDEM extends Grids_Processor {
     public HashSet<Grids_2D_ID_long> getPeakGridCells(Grids_GridDouble g)
             throws IOException, ClassNotFoundException, Exception {
         env.checkAndMaybeFreeMemory();
-        HashSet<Grids_2D_ID_long> r = new HashSet<>();
-        double ndv = g.getNoDataValue();
-        double[] h = new double[9];
-        int k;
-        int nChunkRows = g.getNChunkRows();
-        int nChunkCols = g.getNChunkCols();
-        for (int cr = 0; cr < nChunkRows; cr++) {
-            for (int cc = 0; cc < nChunkCols; cc++) {
-                Grids_2D_ID_int cid = new Grids_2D_ID_int(cr, cc);
-                Grids_ChunkDouble c = g.getChunk(cid, cr, cc);
-                int chunkNRows = g.getChunkNRows(cr);
-                int chunkNCols = g.getChunkNCols(cc);
-                for (int row = 0; row < chunkNRows; row++) {
-                    for (int col = 0; col < chunkNCols; col++) {
-                        h[0] = c.getCell(row, col);
-                        if (h[0] != ndv) {
-                            k = 0;
-                            for (int p = -1; p < 2; p++) {
-                                for (int q = -1; q < 2; q++) {
-                                    if (!(p == 0 && q == 0)) {
-                                        k++;
-                                        //g.getCellRow(longnrows)
-                                        h[k] = g.getCell(row + p, col + q);
-                                    }
-                                }
-                            }
-                            // This deals with single isolated cells surrounded by noDataValues
-                            if ((h[1] <= h[0] || h[1] == ndv)
-                                    && (h[2] <= h[0] || h[2] == ndv)
-                                    && (h[3] <= h[0] || h[3] == ndv)
-                                    && (h[4] <= h[0] || h[4] == ndv)
-                                    && (h[5] <= h[0] || h[5] == ndv)
-                                    && (h[6] <= h[0] || h[6] == ndv)
-                                    && (h[7] <= h[0] || h[7] == ndv)
-                                    && (h[8] <= h[0] || h[8] == ndv)) {
-                                r.add(g.getCellID(row, col));
-                            }
-                        }
+        Set<Grids_2D_ID_long> peaks = ConcurrentHashMap.newKeySet();
+        int stride = Grids_StencilBuffer.getStride(g.getChunkNCols(), 1);
+        new Grids_Stencil(this).run(g, 1, (b, row, col, out) -> {
+            double[] data = b.getData(0);
+            int pos = b.index(row, col);
+            double h = data[pos];
+            for (int p = -1; p < 2; p++) {
+                for (int q = -1; q < 2; q++) {
+                    double h2 = data[pos + p * stride + q];
+                    // This deals with single isolated cells surrounded by noDataValues
+                    if (h2 > h) {
+                        return;
                     }
                 }
             }
-        }
-        return r;
+            peaks.add(g.getCellID(b.getRow(row), b.getCol(col)));
+        });
+        return new HashSet<>(peaks);
     }
 
 //    /**
@@ -18,7 +18,11 @@ package uk.ac.leeds.ccg.grids.process;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.IntStream;
+import uk.ac.leeds.ccg.grids.d2.chunk.Grids_ChunkNumber;
 import uk.ac.leeds.ccg.generic.io.Generic_Path;
 import uk.ac.leeds.ccg.grids.d2.grid.Grids_Dimensions;
 import uk.ac.leeds.ccg.grids.d2.grid.Grids_GridNumber;
@@ -41,13 +45,54 @@ public class Grids_ProcessorGWS extends Grids_Processor {
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * If {@code null} then weighted sums are got by FFT convolution when that
+     * is estimated to be cheaper (see {@link #regionUnivariateStatistics}).
+     * If {@link Boolean#TRUE} then FFT convolution is used whenever no weight
+     * is negative, and if {@link Boolean#FALSE} then direct summation is
+     * always used. The default is {@code null}.
+     */
+    protected Boolean useFFT;
+
     public Grids_ProcessorGWS(Grids_Environment e) throws IOException,
             ClassNotFoundException, Exception {
         super(e);
     }
 
     /**
-     * For getting region uni-variate statistics.
+     * @return {@link #useFFT}
+     */
+    public Boolean getUseFFT() {
+        return useFFT;
+    }
+
+    /**
+     * The results got with FFT convolution differ from those got by direct
+     * summation only by rounding error: each weighted sum differs by no more
+     * than about {@link Grids_FFTConvolution#TOLERANCE} times the sum of the
+     * absolute values of the products summed.
+     *
+     * @param useFFT What {@link #useFFT} is set to.
+     */
+    public void setUseFFT(Boolean useFFT) {
+        this.useFFT = useFFT;
+    }
+
+    /**
+     * For getting region uni-variate statistics. The unweighted statistics
+     * (Sum, Mean, Prop, Var, Skew, CVar and CSkew) are calculated using
+     * summed area tables (see {@link #regionBoxStatistics}) and the weighted
+     * statistics are calculated using a {@link Grids_Stencil}, so the result
+     * grids have the same chunks as {@code grid}. The SumWeight grid is only
+     * returned if weighted statistics are. If the kernel weights are not
+     * negative and the kernel is large enough that it is estimated to be
+     * cheaper (see {@link Grids_FFTConvolution#isCheaper(int, int, int, int)}),
+     * the weighted sums are got using a {@link Grids_FFTConvolution} rather
+     * than by direct summation, and then they differ only by rounding error:
+     * each weighted sum differs by no more than about
+     * {@link Grids_FFTConvolution#TOLERANCE} times the sum of the absolute
+     * values of the products summed. Which is used can be set with
+     * {@link #setUseFFT(Boolean)}.
      *
      * @param grid The grid to be processed
      * @param statistics A list of the statistics to generate.
@@ -77,23 +122,9 @@ public class Grids_ProcessorGWS extends Grids_Processor {
             Grids_GridFactoryDouble gf, int dp, RoundingMode rm) throws
             IOException, ClassNotFoundException, Exception {
         List<Grids_GridNumber> r = new ArrayList<>();
-        long ncols = grid.getNCols();
-        long nrows = grid.getNRows();
-        Grids_Dimensions dimensions = grid.getDimensions();
         BigDecimal ndv = grid.ndv;
         double ndvd = grid.getNoDataValue();
         int cellDistance = grid.getCellDistance(distance).intValue();
-        // @HACK If cellDistance is so great that data for a single kernel is
-        // unlikely to fit in memory
-        if (cellDistance > 1024) {
-            return regionUnivariateStatisticsSlow(
-                    grid,
-                    statistics,
-                    distance,
-                    weightIntersect,
-                    weightFactor,
-                    gf, dp, rm);
-        }
 
         boolean doSum = false;
         boolean doWSum = false;
@@ -235,337 +266,311 @@ public class Grids_ProcessorGWS extends Grids_Processor {
         //Grid2DSquareCellDouble weightedZscoreGrid = null;
         gf.setNoDataValue(ndvd);
 
-        // First order stats ( Mean WMean Sum WSum  Density WDensity )
-        if (doSum || doWSum || doNWSum || doWSumN || doMean || doWMean1
-                || doWMean2 || doNWMean || doWMeanN) {
-            sumWeightGrid = gf.create(nrows, ncols, dimensions);
+        // The unweighted statistics are of all the values in the square of
+        // cells within cellDistance rows and columns, so they are got from
+        // summed area tables. The weighted statistics are got using a stencil.
+        boolean doBox = doSum || doMean || doProp || doVar || doSkew || doCVar
+                || doCSkew;
+        boolean doWeighted = doWSum || doNWSum || doWSumN || doWMean1
+                || doWMean2 || doNWMean || doWMeanN;
+        boolean doSecondOrder = doWProp || doWVar || doWSkew || doWCVar
+                || doWCSkew;
+        // @HACK If cellDistance is so great that data for a single kernel is
+        // unlikely to fit in memory
+        if (cellDistance > 1024 && (doWeighted || doSecondOrder)) {
+            return regionUnivariateStatisticsSlow(
+                    grid,
+                    statistics,
+                    distance,
+                    weightIntersect,
+                    weightFactor,
+                    gf, dp, rm);
+        }
+        BigDecimal[] kernelParameters = Grids_Kernel.getKernelParameters(grid,
+                cellDistance, distance, weightIntersect, weightFactor, dp, rm);
+        double totalSumWeight = kernelParameters[0].doubleValue();
+        double totalCells = kernelParameters[1].doubleValue();
+        BigDecimal[][] kernel = Grids_Kernel.getKernelWeights(grid,
+                distance, weightIntersect, weightFactor, dp, rm);
+        // The offsets in a stencil buffer and the weights of the cells of the
+        // kernel.
+        int stride = Grids_StencilBuffer.getStride(grid.getChunkNCols(),
+                cellDistance);
+        int[] offsets = new int[kernel.length * kernel.length];
+        double[] weights = new double[offsets.length];
+        int nOffsets = getOffsets(kernel, ndv, stride, offsets, weights);
+        Grids_Stencil stencil = new Grids_Stencil(this);
+        // Weighted sums are got by FFT convolution if that is estimated to be
+        // cheaper and no weight is negative, so that a sum of weights that is
+        // not 0 is at least the smallest positive weight. FFT sums of weights
+        // less than half that are taken to be 0.
+        double minWeight = getMinPositiveWeight(weights, nOffsets);
+        double minSumWeight = minWeight / 2.0d;
+        int cnr = grid.getChunkNRows();
+        int cnc = grid.getChunkNCols();
+        boolean fft = minWeight > Grids_FFTConvolution.TOLERANCE
+                * Arrays.stream(weights, 0, nOffsets).sum()
+                && (useFFT == null ? Grids_FFTConvolution.isCheaper(cnr, cnc,
+                        cellDistance, nOffsets) : useFFT);
+        Grids_FFTConvolution conv = fft ? new Grids_FFTConvolution(
+                getWeights(kernel, ndv), cnr, cnc, cellDistance) : null;
+
+        // Unweighted stats ( Sum Mean Prop Var Skew CVar CSkew )
+        if (doBox) {
             if (doSum) {
-                sumGrid = gf.create(nrows, ncols, dimensions);
+                sumGrid = createAligned(gf, grid);
+            }
+            if (doMean) {
+                meanGrid = createAligned(gf, grid);
             }
+            if (doProp) {
+                propGrid = createAligned(gf, grid);
+            }
+            if (doVar) {
+                varGrid = createAligned(gf, grid);
+            }
+            if (doSkew) {
+                skewGrid = createAligned(gf, grid);
+            }
+            if (doCVar) {
+                cVarGrid = createAligned(gf, grid);
+            }
+            if (doCSkew) {
+                cSkewGrid = createAligned(gf, grid);
+            }
+            int order = (doSkew || doCSkew) ? 3 : (doVar || doCVar) ? 2 : 1;
+            regionBoxStatistics(grid, cellDistance, order, totalCells,
+                    new Grids_GridDouble[]{sumGrid, meanGrid, propGrid, varGrid,
+                        skewGrid, cVarGrid, cSkewGrid});
+        }
+
+        // First order stats ( WMean WSum  Density WDensity )
+        if (doWeighted || doSecondOrder) {
+            sumWeightGrid = createAligned(gf, grid);
             if (doWSum) {
-                wSumGrid = gf.create(nrows, ncols, dimensions);
+                wSumGrid = createAligned(gf, grid);
             }
             if (doNWSum) {
-                nWSumGrid = gf.create(nrows, ncols, dimensions);
+                nWSumGrid = createAligned(gf, grid);
             }
             if (doWSumN) {
-                wSumNGrid = gf.create(nrows, ncols, dimensions);
-            }
-            if (doMean) {
-                meanGrid = gf.create(nrows, ncols, dimensions);
+                wSumNGrid = createAligned(gf, grid);
             }
-            if (doWMean1) {
-                wMean1Grid = gf.create(nrows, ncols, dimensions);
+            // wMean1Grid is needed for the second order statistics.
+            if (doWMean1 || doSecondOrder) {
+                wMean1Grid = createAligned(gf, grid);
             }
             if (doWMean2) {
-                wMean2Grid = gf.create(nrows, ncols, dimensions);
+                wMean2Grid = createAligned(gf, grid);
             }
             if (doNWMean) {
-                nWMeanGrid = gf.create(nrows, ncols, dimensions);
+                nWMeanGrid = createAligned(gf, grid);
             }
             if (doWMeanN) {
-                wMeanNGrid = gf.create(nrows, ncols, dimensions);
-            }
-            BigDecimal[] kernelParameters = Grids_Kernel.getKernelParameters(grid,
-                    cellDistance, distance, weightIntersect, weightFactor, dp, rm);
-            BigDecimal totalSumWeight = kernelParameters[0];
-            BigDecimal totalCells = kernelParameters[1];
-            long row;
-            long col;
-            int p;
-            int q;
-            BigDecimal[][] kernel = Grids_Kernel.getKernelWeights(grid,
-                    distance, weightIntersect, weightFactor, dp, rm);
-            double[][] data = getRowProcessInitialData(grid, cellDistance, 0);
-            for (row = 0; row < nrows; row++) {
-//                //debug
-//                System.out.println("row " + row);
-                for (col = 0; col < ncols; col++) {
-//                    //debug
-//                    if (row == 21) {
-//                        System.out.println("col " + col);
-//                    }
-                    if (!(row == 0 && col == 0)) {
-                        data = getRowProcessData(grid, data, cellDistance, row,
-                                col);
-                    }
-                    BigDecimal sumCells = BigDecimal.ZERO;
-                    BigDecimal sumWeight = BigDecimal.ZERO;
-                    BigDecimal sum = BigDecimal.ZERO;
-                    BigDecimal wSum = BigDecimal.ZERO;
-                    BigDecimal nWSum = BigDecimal.ZERO;
-                    BigDecimal wSumN = BigDecimal.ZERO;
-                    BigDecimal wMean = BigDecimal.ZERO;
-                    BigDecimal nWMean = BigDecimal.ZERO;
-                    //wMeanN = 0.0d;
-                    // Error thrown from here!
-                    // GC overhead limit exceeded
-                    // java.lang.OutOfMemoryError: GC overhead limit exceeded
-                    // There is probably a better doing way?
-                    BigDecimal cellX = grid.getCellX(col);
-                    BigDecimal cellY = grid.getCellY(row);
-                    // Calculate sumWeights and non-weighted stats
-                    for (p = 0; p <= cellDistance * 2; p++) {
-                        for (q = 0; q <= cellDistance * 2; q++) {
-                            double v = data[p][q];
-                            BigDecimal weight = kernel[p][q];
-                            if ((weight.compareTo(ndv) != 0) && v != ndvd) {
-                                sumWeight = sumWeight.add(weight);
-                                sumCells = sumCells.add(BigDecimal.ONE);
-                                sum = sum.add(BigDecimal.valueOf(v));
-                            }
-                        }
-                    }
-                    // Calculate weighted stats and store results
-                    if ((sumCells.compareTo(BigDecimal.ZERO) == 1)
-                            && (sumWeight.compareTo(BigDecimal.ZERO) == 1)) {
-                        for (p = 0; p <= cellDistance * 2; p++) {
-                            for (q = 0; q <= cellDistance * 2; q++) {
-                                double v = data[p][q];
-                                BigDecimal weight = kernel[p][q];
-                                if ((weight.compareTo(ndv) != 0) && v != ndvd) {
-                                    BigDecimal vbd = BigDecimal.valueOf(v);
-                                    sumWeight = sumWeight.add(weight);
-                                    sumCells = sumCells.add(BigDecimal.ONE);
-                                    sum = sum.add(vbd);
-                                    nWSum = nWSum.add(vbd.multiply(
-                                            Math_BigDecimal
-                                                    .divideRoundIfNecessary(
-                                                            sumWeight, totalSumWeight, dp, rm)).multiply(weight));
-                                    wSum = wSum.add(vbd.multiply(weight));
-                                    wMean = wMean.add(Math_BigDecimal
-                                            .divideRoundIfNecessary(vbd,
-                                                    sumWeight, dp, rm).multiply(weight));
+                wMeanNGrid = createAligned(gf, grid);
+            }
+            Grids_GridDouble[] stats = new Grids_GridDouble[]{sumWeightGrid,
+                wSumGrid, nWSumGrid, wSumNGrid, wMean1Grid, wMean2Grid,
+                nWMeanGrid, wMeanNGrid};
+            Grids_GridDouble[] outs = getNonNull(stats);
+            int[] is = getNonNullIndexes(stats);
+            if (fft) {
+                int n = conv.getBufferLength();
+                stencil.runChunks(new Grids_GridNumber[]{grid}, cellDistance,
+                        false, () -> {
+                    double[] a = new double[n];
+                    double[] m = new double[n];
+                    double[] v = new double[stats.length];
+                    Grids_FFTConvolution.Workspace ws = conv.getWorkspace();
+                    return (b, out) -> {
+                        double[] data = b.getData(0);
+                        // Values are shifted to reduce rounding error.
+                        double shift = Double.NaN;
+                        for (int k = 0; k < n; k++) {
+                            double x = data[k];
+                            if (Double.isNaN(x)) {
+                                a[k] = 0.0d;
+                                m[k] = 0.0d;
+                            } else {
+                                if (Double.isNaN(shift)) {
+                                    shift = x;
                                 }
+                                a[k] = x - shift;
+                                m[k] = 1.0d;
                             }
                         }
-                        sumWeightGrid.setCell(row, col,
-                                sumWeight.doubleValue() / totalSumWeight.doubleValue());
-                        //if ( doSum ) { sumGrid.setCell( row, col, sum ); }
-                        if (doSum) {
-                            sumGrid.setCell(row, col,
-                                    sum.multiply(sumCells).doubleValue() / totalCells.doubleValue());
-                        }
-                        if (doWSum) {
-                            wSumGrid.setCell(row, col, wSum.doubleValue());
-                        }
-                        if (doNWSum) {
-                            nWSumGrid.setCell(row, col, nWSum.doubleValue());
-                        }
-                        if (doWSumN) {
-                            wSumNGrid.setCell(row, col,
-                                    wSum.multiply(sumWeight).doubleValue() / totalSumWeight.doubleValue());
-                        }
-                        if (doMean) {
-                            meanGrid.setCell(row, col, sum.doubleValue() / sumCells.doubleValue());
+                        if (Double.isNaN(shift)) {
+                            return;
                         }
-                        if (doWMean1) {
-                            wMean1Grid.setCell(row, col, wSum.doubleValue() / sumWeight.doubleValue());
-                        }
-                        if (doWMean2) {
-                            wMean2Grid.setCell(row, col, wMean.doubleValue());
+                        conv.convolve(a, m, a, m, ws);
+                        for (int row = 0; row < b.getNRows(); row++) {
+                            for (int col = 0; col < b.getNCols(); col++) {
+                                int pos = b.index(row, col);
+                                double sumWeight = m[pos];
+                                if (sumWeight > minSumWeight) {
+                                    firstOrder(a[pos] + shift * sumWeight,
+                                            sumWeight, totalSumWeight, v);
+                                    for (int o = 0; o < is.length; o++) {
+                                        out[o][pos] = v[is[o]];
+                                    }
+                                }
+                            }
                         }
-                        if (doNWMean) {
-                            nWMeanGrid.setCell(row, col, nWSum.doubleValue() / sumWeight.doubleValue());
+                    };
+                }, outs);
+            } else {
+                stencil.run(new Grids_GridNumber[]{grid}, cellDistance, false,
+                        () -> {
+                    double[] v = new double[stats.length];
+                    return (b, row, col, out) -> {
+                        double[] data = b.getData(0);
+                        int pos = b.index(row, col);
+                        double sumCells = 0.0d;
+                        double sumWeight = 0.0d;
+                        // Calculate sumWeights
+                        for (int k = 0; k < nOffsets; k++) {
+                            if (!Double.isNaN(data[pos + offsets[k]])) {
+                                sumWeight += weights[k];
+                                sumCells += 1.0d;
+                            }
                         }
-                        if (doWMeanN) {
-                            wMeanNGrid.setCell(row, col,
-                                    (wMean.multiply(sumWeight)).doubleValue() / totalSumWeight.doubleValue());
+                        // Calculate weighted stats and store results
+                        if (sumCells > 0.0d && sumWeight > 0.0d) {
+                            double wSum = 0.0d;
+                            double nWSum = 0.0d;
+                            double wMean = 0.0d;
+                            double nw = sumWeight / totalSumWeight;
+                            for (int k = 0; k < nOffsets; k++) {
+                                double x = data[pos + offsets[k]];
+                                if (!Double.isNaN(x)) {
+                                    nWSum += x * nw * weights[k];
+                                    wSum += x * weights[k];
+                                    wMean += (x / sumWeight) * weights[k];
+                                }
+                            }
+                            v[0] = sumWeight / totalSumWeight;
+                            v[1] = wSum;
+                            v[2] = nWSum;
+                            v[3] = wSum * sumWeight / totalSumWeight;
+                            v[4] = wSum / sumWeight;
+                            v[5] = wMean;
+                            v[6] = nWSum / sumWeight;
+                            v[7] = wMean * sumWeight / totalSumWeight;
+                            for (int o = 0; o < is.length; o++) {
+                                out[o] = v[is[o]];
+                            }
                         }
-
-                    }
-                }
+                    };
+                }, outs);
             }
         }
 
         // Second order statistics ( coefficient of variation, skewness, kurtosis, zscore)
-        if (doProp || doWProp || doVar || doWVar || doSkew || doWSkew || doWCVar || doCSkew || doWCSkew) {
-            Generic_Path dir;
-            if (doProp) {
-                propGrid = (Grids_GridDouble) gf.create(nrows, ncols, dimensions);
-            }
+        if (doSecondOrder) {
             if (doWProp) {
-                wPropGrid = (Grids_GridDouble) gf.create(nrows, ncols, dimensions);
-            }
-            if (doVar) {
-                varGrid = (Grids_GridDouble) gf.create(nrows, ncols, dimensions);
+                wPropGrid = createAligned(gf, grid);
             }
             if (doWVar) {
-                wVarGrid = (Grids_GridDouble) gf.create(nrows, ncols, dimensions);
-            }
-            if (doSkew) {
-                skewGrid = (Grids_GridDouble) gf.create(nrows, ncols, dimensions);
+                wVarGrid = createAligned(gf, grid);
             }
             if (doWSkew) {
-                wSkewGrid = (Grids_GridDouble) gf.create(nrows, ncols, dimensions);
-            }
-            if (doCVar) {
-                cVarGrid = (Grids_GridDouble) gf.create(nrows, ncols, dimensions);
+                wSkewGrid = createAligned(gf, grid);
             }
             if (doWCVar) {
-                wCVarGrid = (Grids_GridDouble) gf.create(nrows, ncols, dimensions);
-            }
-            if (doCSkew) {
-                cSkewGrid = (Grids_GridDouble) gf.create(nrows, ncols, dimensions);
+                wCVarGrid = createAligned(gf, grid);
             }
             if (doWCSkew) {
-                wCSkewGrid = (Grids_GridDouble) gf.create(nrows, ncols, dimensions);
-            }
-            BigDecimal[] kernelParameters = Grids_Kernel.getKernelParameters(grid,
-                    cellDistance, distance, weightIntersect, weightFactor, dp, rm);
-            BigDecimal totalSumWeight = kernelParameters[0];
-            BigDecimal totalCells = kernelParameters[1];
-            double numerator;
-            double denominator;
-            long row;
-            long col;
-            int p;
-            int q;
-            BigDecimal[][] kernel = Grids_Kernel.getKernelWeights(grid, distance, weightIntersect, weightFactor, dp, rm);
-            double[][] data = getRowProcessInitialData(grid, cellDistance, 0);
-            //double[][] meanData = getRowProcessInitialData( meanGrid, cellDistance, 0 );
-            double[][] wMeanData = getRowProcessInitialData(wMean1Grid, cellDistance, 0);
-            for (row = 0; row < nrows; row++) {
-                for (col = 0; col < ncols; col++) {
-                    if (row != 0 && col != 0) {
-                        data = getRowProcessData(
-                                grid, data, cellDistance, row, col);
-                        wMeanData = getRowProcessData(
-                                wMean1Grid, wMeanData, cellDistance, row, col);
-                        //meanData = getRowProcessData( meanGrid, meanData, cellDistance, row, col );
-                    }
-                    //sDMean = 0.0d;
-                    //sDMeanPow2 = 0.0d;
-                    //sDMeanPow3 = 0.0d;
-                    //sDMeanPow4 = 0.0d;
-                    //sumCells = 0.0d;
-                    BigDecimal sDWMean = BigDecimal.ZERO;
-                    BigDecimal sDWMeanPow2 = BigDecimal.ZERO;
-                    BigDecimal sDWMeanPow3 = BigDecimal.ZERO;
-                    BigDecimal sDWMeanPow4 = BigDecimal.ZERO;
-                    BigDecimal sumWeight = BigDecimal.ZERO;
-                    BigDecimal cellX = grid.getCellX(col);
-                    BigDecimal cellY = grid.getCellY(row);
-                    // Take moments
-                    for (p = 0; p <= cellDistance * 2; p++) {
-                        for (q = 0; q <= cellDistance * 2; q++) {
-                            double v = data[p][q];
-                            BigDecimal wMean = BigDecimal.valueOf(wMeanData[p][q]);
-                            BigDecimal weight = kernel[p][q];
-                            if (v != ndvd && (weight.compareTo(ndv) != 0)) {
-                                BigDecimal vbd = BigDecimal.valueOf(v);
-                                sumWeight = sumWeight.add(weight);
-                                sDWMean = sDWMean.add((vbd.subtract(wMean)).multiply(weight));
-                                sDWMeanPow2 = sDWMeanPow2.add((vbd.subtract(wMean)).pow(2).multiply(weight));
-                                sDWMeanPow3 = sDWMeanPow3.add((vbd.subtract(wMean)).pow(3).multiply(weight));
-                                sDWMeanPow4 = sDWMeanPow4.add((vbd.subtract(wMean)).pow(4).multiply(weight));
-                                //sumCells += 1.0d;
-                                //if ( doMean ) {
-                                //    sDMean += ( value - mean );
-                                //    sDMeanPow2 += Math.pow( ( value - mean ), 2.0d );
-                                //    sDMeanPow3 += Math.pow( ( value - mean ), 3.0d );
-                                //    sDMeanPow4 += Math.pow( ( value - mean ), 4.0d );
-                                //}
+                wCSkewGrid = createAligned(gf, grid);
+            }
+            Grids_GridDouble[] stats = new Grids_GridDouble[]{wPropGrid,
+                wVarGrid, wSkewGrid, wCVarGrid, wCSkewGrid};
+            Grids_GridDouble[] outs = getNonNull(stats);
+            int[] is = getNonNullIndexes(stats);
+            // Layer 1 is the weighted mean of the values around each cell.
+            Grids_GridNumber[] gs = new Grids_GridNumber[]{grid, wMean1Grid};
+            if (fft) {
+                int n = conv.getBufferLength();
+                stencil.runChunks(gs, cellDistance, false, () -> {
+                    double[] d1 = new double[n];
+                    double[] d2 = new double[n];
+                    double[] d3 = new double[n];
+                    double[] m = new double[n];
+                    double[] v = new double[stats.length];
+                    Grids_FFTConvolution.Workspace ws = conv.getWorkspace();
+                    return (b, out) -> {
+                        double[] data = b.getData(0);
+                        double[] wMeanData = b.getData(1);
+                        boolean any = false;
+                        for (int k = 0; k < n; k++) {
+                            double x = data[k];
+                            double wMean = wMeanData[k];
+                            if (!Double.isNaN(x) && !Double.isNaN(wMean)) {
+                                double d = x - wMean;
+                                d1[k] = d;
+                                d2[k] = d * d;
+                                d3[k] = d * d * d;
+                                m[k] = 1.0d;
+                                any = true;
+                            } else {
+                                d1[k] = 0.0d;
+                                d2[k] = 0.0d;
+                                d3[k] = 0.0d;
+                                m[k] = 0.0d;
                             }
                         }
-                    }
-                    //if ( sumCells > 0.0d && sumWeight > 0.0d ) {
-                    if (sumWeight.compareTo(BigDecimal.ZERO) == 1) {
-                        //if ( doProp ) {
-                        //    propGrid.setCell( row, col, ( sDMean / sumCells ) );
-                        //}
-                        if (doWProp) {
-                            wPropGrid.setCell(row, col, sDWMean.doubleValue() / sumWeight.doubleValue());
+                        if (!any) {
+                            return;
                         }
-                        //if ( doVar ) {
-                        //    varGrid.setCell( row, col, ( sDMeanPow2 / sumCells ) );
-                        //}
-                        if (doWVar) {
-                            wVarGrid.setCell(row, col, sDWMeanPow2.doubleValue() / sumWeight.doubleValue());
-                        }
-                        //if ( doSkew ) {
-                        //    // Need to control for Math.pow as it does not do roots of negative numbers at all well!
-                        //    numerator = sDMeanPow3 / sumCells;
-                        //    if ( numerator > 0.0d ) {
-                        //        skewGrid.setCell(row, col, ( Math.pow( numerator, 1.0d / 3.0d ) ) );
-                        //    }
-                        //    if ( numerator == 0.0d ) {
-                        //        skewGrid.setCell( row, col, numerator );
-                        //    }
-                        //    if ( numerator < 0.0d ) {
-                        //        skewGrid.setCell( row, col, -1.0d * ( Math.pow( Math.abs( numerator ), 1.0d / 3.0d ) ) );
-                        //    }
-                        //}
-                        if (doWSkew) {
-                            // Need to control for Math.pow as it does not do roots of negative numbers at all well!
-                            numerator = sDWMeanPow3.doubleValue() / sumWeight.doubleValue();
-                            if (numerator > 0.0d) {
-                                wSkewGrid.setCell(row, col,
-                                        (Math.pow(numerator, 1.0d / 3.0d)));
-                            }
-                            if (numerator == 0.0d) {
-                                wSkewGrid.setCell(row, col, numerator);
-                            }
-                            if (numerator < 0.0d) {
-                                wSkewGrid.setCell(row, col,
-                                        -1.0d * (Math.pow(Math.abs(numerator), 1.0d / 3.0d)));
+                        conv.convolve(d1, d2, d1, d2, ws);
+                        conv.convolve(d3, m, d3, m, ws);
+                        for (int row = 0; row < b.getNRows(); row++) {
+                            for (int col = 0; col < b.getNCols(); col++) {
+                                int pos = b.index(row, col);
+                                double sumWeight = m[pos];
+                                if (sumWeight > minSumWeight) {
+                                    secondOrder(d1[pos], d2[pos], d3[pos],
+                                            sumWeight, v);
+                                    for (int o = 0; o < is.length; o++) {
+                                        out[o][pos] = v[is[o]];
+                                    }
+                                }
                             }
                         }
-                        //if ( doCVar ) {
-                        //    denominator = varGrid.getCell( row, col );
-                        //    if ( denominator > 0.0d && denominator != noDataValue) {
-                        //        numerator = propGrid.getCell( row, col );
-                        //        if ( numerator != noDataValue ) {
-                        //            cVarGrid.setCell( row, col, ( numerator / denominator ) );
-                        //        }
-                        //    }
-                        //}
-                        if (doWCVar) {
-                            denominator = wVarGrid.getCell(row, col);
-                            if (denominator > 0.0d && denominator != ndvd) {
-                                numerator = wPropGrid.getCell(row, col);
-                                if (numerator != ndvd) {
-                                    wCVarGrid.setCell(row, col,
-                                            (numerator / denominator));
-                                }
+                    };
+                }, outs);
+            } else {
+                stencil.run(gs, cellDistance, false, () -> {
+                    double[] v = new double[stats.length];
+                    return (b, row, col, out) -> {
+                        double[] data = b.getData(0);
+                        double[] wMeanData = b.getData(1);
+                        int pos = b.index(row, col);
+                        double sDWMean = 0.0d;
+                        double sDWMeanPow2 = 0.0d;
+                        double sDWMeanPow3 = 0.0d;
+                        double sumWeight = 0.0d;
+                        // Take moments
+                        for (int k = 0; k < nOffsets; k++) {
+                            double x = data[pos + offsets[k]];
+                            double wMean = wMeanData[pos + offsets[k]];
+                            if (!Double.isNaN(x) && !Double.isNaN(wMean)) {
+                                double d = x - wMean;
+                                double wd = d * weights[k];
+                                sumWeight += weights[k];
+                                sDWMean += wd;
+                                sDWMeanPow2 += d * wd;
+                                sDWMeanPow3 += d * d * wd;
                             }
                         }
-                        //if ( doCSkew ) {
-                        //    // Need to control for Math.pow as it does not do roots of negative numbers at all well!
-                        //    denominator = varGrid.getCell( row, col );
-                        //    if ( denominator > 0.0d && denominator != noDataValue ) {
-                        //        numerator = sDMeanPow3 / sumCells;
-                        //        if ( numerator > 0.0d ) {
-                        //            cSkewGrid.setCell( row, col, ( Math.pow( numerator, 1.0d / 3.0d ) ) / denominator );
-                        //        }
-                        //        if ( numerator == 0.0d ) {
-                        //            cSkewGrid.setCell( row, col, numerator );
-                        //        }
-                        //        if ( numerator < 0.0d ) {
-                        //            cSkewGrid.setCell( row, col, ( -1.0d * ( Math.pow( Math.abs( numerator ), 1.0d / 3.0d ) ) ) / denominator );
-                        //        }
-                        //    }
-                        //}
-                        if (doWCSkew) {
-                            // Need to control for Math.pow as it does not do roots of negative numbers at all well!
-                            denominator = wVarGrid.getCell(row, col);
-                            if (denominator > 0.0d && denominator != ndvd) {
-                                numerator = sDWMeanPow3.doubleValue() / sumWeight.doubleValue();
-                                if (numerator > 0.0d) {
-                                    wCSkewGrid.setCell(row, col,
-                                            (Math.pow(numerator, 1.0d / 3.0d)) / denominator);
-                                }
-                                if (numerator == 0.0d) {
-                                    wCSkewGrid.setCell(row, col, numerator);
-                                }
-                                if (numerator < 0.0d) {
-                                    wCSkewGrid.setCell(row, col,
-                                            (-1.0d * (Math.pow(Math.abs(numerator), 1.0d / 3.0d))) / denominator);
-                                }
+                        if (sumWeight > 0.0d) {
+                            secondOrder(sDWMean, sDWMeanPow2, sDWMeanPow3,
+                                    sumWeight, v);
+                            for (int o = 0; o < is.length; o++) {
+                                out[o] = v[is[o]];
                             }
                         }
-                    }
-                }
+                    };
+                }, outs);
             }
         }
 
@@ -597,8 +602,10 @@ public class Grids_ProcessorGWS extends Grids_Processor {
          * weightedZscoreGrid = meanWeightedZscoreGrid[ 0 ]; zscoreGrid =
          * meanZscoreGrid[ 0 ]; }
          */
-        sumWeightGrid.setName("SumWeight_" + grid.getName());
-        r.add(sumWeightGrid);
+        if (sumWeightGrid != null) {
+            sumWeightGrid.setName("SumWeight_" + grid.getName());
+            r.add(sumWeightGrid);
+        }
 
         if (doSum) {
             sumGrid.setName("Sum_" + grid.getName());
@@ -682,6 +689,236 @@ public class Grids_ProcessorGWS extends Grids_Processor {
         return r;
     }
 
+    /**
+     * Calculates unweighted statistics of the values in the square of cells
+     * within {@code cd} rows and columns of each cell using a
+     * {@link Grids_SummedAreaTable}, so each costs the same whatever
+     * {@code cd} is. Statistics are set for each cell where there are values
+     * in the square. The statistics are:
+     * <ul>
+     * <li>[0] Sum - the sum multiplied by the number of values and divided by
+     * {@code totalCells};</li>
+     * <li>[1] Mean;</li>
+     * <li>[2] Prop - the proportion of cells in the square with values;</li>
+     * <li>[3] Var - the (population) variance;</li>
+     * <li>[4] Skew - the cube root of the third central moment;</li>
+     * <li>[5] CVar - the standard deviation divided by the mean;</li>
+     * <li>[6] CSkew - Skew divided by Var.</li>
+     * </ul>
+     *
+     * @param g The grid.
+     * @param cd The cell distance.
+     * @param order The highest power of values to sum: {@code 3} if Skew or
+     * CSkew are wanted, otherwise {@code 2} if Var or CVar are wanted,
+     * otherwise {@code 1}.
+     * @param totalCells For the Sum statistic.
+     * @param stats The grids for the statistics, any of which may be
+     * {@code null}. The grids must have the same dimensions and chunks as
+     * {@code g}.
+     * @throws Exception If encountered.
+     */
+    protected void regionBoxStatistics(Grids_GridDouble g, int cd, int order,
+            double totalCells, Grids_GridDouble[] stats) throws Exception {
+        Grids_SummedAreaTable sat = new Grids_SummedAreaTable(this, g, order);
+        double shift = sat.getShift();
+        double nCells = (2.0d * cd + 1.0d) * (2.0d * cd + 1.0d);
+        Grids_GridDouble[] outs = getNonNull(stats);
+        int[] is = getNonNullIndexes(stats);
+        getChunkExecutor().forEachChunk(i -> {
+            int cr = i.getRow();
+            int cc = i.getCol();
+            int nr = g.getChunkNRows(cr);
+            int nc = g.getChunkNCols(cc);
+            long r0 = g.getRow(cr, 0);
+            long c0 = g.getCol(cc, 0);
+            double[] sums = new double[order + 1];
+            double[] v = new double[stats.length];
+            Grids_ChunkNumber[] cs = new Grids_ChunkNumber[outs.length];
+            for (int o = 0; o < outs.length; o++) {
+                cs[o] = getChunkToSet(outs[o], i);
+            }
+            try (Grids_SummedAreaTable.Reader sr = sat.getReader()) {
+                for (int r = 0; r < nr; r++) {
+                    long row = r0 + r;
+                    for (int c = 0; c < nc; c++) {
+                        long col = c0 + c;
+                        sr.getSums(row - cd, col - cd, row + cd, col + cd,
+                                sums);
+                        double n = sums[0];
+                        if (n > 0.0d) {
+                            // The mean, variance and third central moment of
+                            // the shifted values.
+                            double m = sums[1] / n;
+                            double var = 0.0d;
+                            double m3 = 0.0d;
+                            if (order > 1) {
+                                var = Math.max(0.0d, sums[2] / n - m * m);
+                            }
+                            if (order > 2) {
+                                m3 = sums[3] / n - 3.0d * m * sums[2] / n
+                                        + 2.0d * m * m * m;
+                            }
+                            double mean = shift + m;
+                            // Math.cbrt deals with roots of negative numbers.
+                            double skew = Math.cbrt(m3);
+                            v[0] = (shift * n + sums[1]) * n / totalCells;
+                            v[1] = mean;
+                            v[2] = n / nCells;
+                            v[3] = var;
+                            v[4] = skew;
+                            v[5] = mean != 0.0d ? Math.sqrt(var) / mean
+                                    : Double.NaN;
+                            v[6] = var > 0.0d ? skew / var : Double.NaN;
+                            for (int o = 0; o < is.length; o++) {
+                                if (!Double.isNaN(v[is[o]])) {
+                                    setCell(cs[o], r, c, v[is[o]]);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }, outs);
+        for (Grids_GridDouble o : outs) {
+            o.updateStats();
+        }
+    }
+
+    /**
+     * Calculates the offsets in a {@link Grids_StencilBuffer} and the weights
+     * of the cells of a kernel that do not have the weight {@code ndv}.
+     *
+     * @param kernel The kernel weights.
+     * @param ndv The no data value.
+     * @param stride The stride of the buffer.
+     * @param offsets For returning the offsets.
+     * @param weights For returning the weights.
+     * @return The number of offsets.
+     */
+    protected static int getOffsets(BigDecimal[][] kernel, BigDecimal ndv,
+            int stride, int[] offsets, double[] weights) {
+        int kd = (kernel.length - 1) / 2;
+        int n = 0;
+        for (int p = -kd; p <= kd; p++) {
+            for (int q = -kd; q <= kd; q++) {
+                BigDecimal w = kernel[p + kd][q + kd];
+                if (w.compareTo(ndv) != 0) {
+                    offsets[n] = p * stride + q;
+                    weights[n] = w.doubleValue();
+                    n++;
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Calculates the first order weighted statistics from the weighted sum of
+     * values and the sum of weights of the cells with data around a cell.
+     * These are as calculated by direct summation, as the normalised weight
+     * {@code sumWeight / totalSumWeight} is the same for each cell summed.
+     *
+     * @param wSum The weighted sum of values.
+     * @param sumWeight The sum of weights.
+     * @param totalSumWeight The sum of all the weights of the kernel.
+     * @param v For returning the statistics {SumWeight, WSum, NWSum, WSumN,
+     * WMean1, WMean2, NWMean, WMeanN}.
+     */
+    private static void firstOrder(double wSum, double sumWeight,
+            double totalSumWeight, double[] v) {
+        double nWSum = wSum * sumWeight / totalSumWeight;
+        double wMean = wSum / sumWeight;
+        v[0] = sumWeight / totalSumWeight;
+        v[1] = wSum;
+        v[2] = nWSum;
+        v[3] = nWSum;
+        v[4] = wMean;
+        v[5] = wMean;
+        v[6] = wSum / totalSumWeight;
+        v[7] = wSum / totalSumWeight;
+    }
+
+    /**
+     * Calculates the second order weighted statistics from the weighted sums
+     * of the differences of values from the weighted means around them.
+     *
+     * @param sDWMean The weighted sum of differences.
+     * @param sDWMeanPow2 The weighted sum of squared differences.
+     * @param sDWMeanPow3 The weighted sum of cubed differences.
+     * @param sumWeight The sum of weights.
+     * @param v For returning the statistics {WProp, WVar, WSkew, WCVar,
+     * WCSkew}.
+     */
+    private static void secondOrder(double sDWMean, double sDWMeanPow2,
+            double sDWMeanPow3, double sumWeight, double[] v) {
+        double wVar = sDWMeanPow2 / sumWeight;
+        // Math.cbrt deals with roots of negative numbers.
+        double wSkew = Math.cbrt(sDWMeanPow3 / sumWeight);
+        v[0] = sDWMean / sumWeight;
+        v[1] = wVar;
+        v[2] = wSkew;
+        v[3] = wVar > 0.0d ? v[0] / wVar : Double.NaN;
+        v[4] = wVar > 0.0d ? wSkew / wVar : Double.NaN;
+    }
+
+    /**
+     * @param kernel The kernel weights.
+     * @param ndv The no data value.
+     * @return The kernel weights with {@code 0} for those that are
+     * {@code ndv}.
+     */
+    protected static double[][] getWeights(BigDecimal[][] kernel,
+            BigDecimal ndv) {
+        double[][] r = new double[kernel.length][kernel.length];
+        for (int p = 0; p < kernel.length; p++) {
+            for (int q = 0; q < kernel.length; q++) {
+                BigDecimal w = kernel[p][q];
+                if (w.compareTo(ndv) != 0) {
+                    r[p][q] = w.doubleValue();
+                }
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @param weights The weights.
+     * @param n The number of weights.
+     * @return The smallest of the first {@code n} weights that is greater
+     * than {@code 0} or {@link Double#NaN} if any weight is negative or none
+     * is positive.
+     */
+    protected static double getMinPositiveWeight(double[] weights, int n) {
+        double r = Double.POSITIVE_INFINITY;
+        for (int k = 0; k < n; k++) {
+            if (weights[k] < 0.0d) {
+                return Double.NaN;
+            } else if (weights[k] > 0.0d) {
+                r = Math.min(r, weights[k]);
+            }
+        }
+        return r == Double.POSITIVE_INFINITY ? Double.NaN : r;
+    }
+
+    /**
+     * @param gs The grids.
+     * @return The grids in {@code gs} that are not {@code null}.
+     */
+    private static Grids_GridDouble[] getNonNull(Grids_GridDouble[] gs) {
+        return Arrays.stream(gs).filter(Objects::nonNull)
+                .toArray(Grids_GridDouble[]::new);
+    }
+
+    /**
+     * @param gs The grids.
+     * @return The indexes of the grids in {@code gs} that are not
+     * {@code null}.
+     */
+    private static int[] getNonNullIndexes(Grids_GridDouble[] gs) {
+        return IntStream.range(0, gs.length).filter(i -> gs[i] != null)
+                .toArray();
+    }
+
     /**
      * Get region uni-variate statistics.
      *
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2019 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.grids.process;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+import uk.ac.leeds.ccg.grids.d2.chunk.Grids_ChunkNumber;
+import uk.ac.leeds.ccg.grids.d2.grid.Grids_Grid;
+import uk.ac.leeds.ccg.grids.d2.grid.Grids_GridNumber;
+
+/**
+ * For neighbourhood (focal) operations. A {@link Kernel} is applied to each
+ * cell of a grid to calculate values for the same cell in one or more output
+ * grids from the values of the cells within {@code halo} rows and columns of
+ * it.
+ *
+ * The grid is processed a chunk at a time in parallel (see
+ * {@link Grids_Processor#getChunkExecutor()}). Each thread fills a
+ * {@link Grids_StencilBuffer} with the values of the chunk and the halo of
+ * cells around it and then applies its kernel to each cell of the chunk. So
+ * values are got from chunks a chunk at a time rather than a cell at a time,
+ * and besides the chunks being processed at most the chunks around one of
+ * them in each thread are pinned and so held in memory. Results are set
+ * directly in the chunks of the output grids with the same chunk ID, which
+ * must have the same dimensions and chunks as the grid processed (see
+ * {@link Grids_Grid#isSameDimensionsAndChunks(Grids_Grid)}) and be of a
+ * primitive type (see {@link Grids_Processor#isPrimitiveType}). A
+ * {@link ChunkKernel} can instead be applied to calculate values for all the
+ * cells of a chunk at once (see {@link #runChunks}).
+ *
+ * @author Andy Turner
+ * @version 1.0.0
+ */
+public class Grids_Stencil {
+
+    /**
+     * For calculating values for a cell from the values around it.
+     */
+    @FunctionalInterface
+    public interface Kernel {
+
+        /**
+         * Calculates values for the cell at row {@code r}, column {@code c}
+         * of the chunk in {@code b}. The values are set in {@code out}: one
+         * for each output grid. A value left as {@link Double#NaN} is not set,
+         * so the output cell keeps its no data value.
+         *
+         * @param b The buffer.
+         * @param r The row relative to the origin of the chunk.
+         * @param c The column relative to the origin of the chunk.
+         * @param out The values to set which are all {@link Double#NaN} when
+         * this is called.
+         * @throws Exception If encountered.
+         */
+        void apply(Grids_StencilBuffer b, int r, int c, double[] out)
+                throws Exception;
+    }
+
+    /**
+     * For calculating values for all the cells of a chunk at once, such as
+     * with a {@link Grids_FFTConvolution}.
+     */
+    @FunctionalInterface
+    public interface ChunkKernel {
+
+        /**
+         * Calculates values for the cells of the chunk in {@code b}. The value
+         * for output grid {@code o} of the cell at row {@code r}, column
+         * {@code c} of the chunk is set in {@code out[o][b.index(r, c)]}. A
+         * value left as {@link Double#NaN} is not set, so the output cell
+         * keeps its no data value.
+         *
+         * @param b The buffer.
+         * @param out The values to set which are all {@link Double#NaN} when
+         * this is called.
+         * @throws Exception If encountered.
+         */
+        void apply(Grids_StencilBuffer b, double[][] out) throws Exception;
+    }
+
+    /**
+     * The processor.
+     */
+    protected final Grids_Processor p;
+
+    /**
+     * @param p What {@link #p} is set to.
+     */
+    public Grids_Stencil(Grids_Processor p) {
+        this.p = p;
+    }
+
+    /**
+     * Applies {@code k} to each cell of {@code g} that does not have the no
+     * data value. {@code k} is shared by the threads processing chunks, so it
+     * must not have state that changes.
+     *
+     * @param g The grid to process.
+     * @param halo The number of rows and columns around a cell that
+     * {@code k} gets values from.
+     * @param k The kernel.
+     * @param outs The grids to set values in.
+     * @throws Exception If encountered.
+     */
+    public void run(Grids_GridNumber g, int halo, Kernel k,
+            Grids_GridNumber... outs) throws Exception {
+        run(new Grids_GridNumber[]{g}, halo, true, () -> k, outs);
+    }
+
+    /**
+     * Applies a kernel to each cell of {@code g} that does not have the no
+     * data value. Each thread gets its own kernel from {@code ks}, so kernels
+     * can have state such as arrays for workings.
+     *
+     * @param g The grid to process.
+     * @param halo The number of rows and columns around a cell that a kernel
+     * gets values from.
+     * @param ks For creating kernels.
+     * @param outs The grids to set values in.
+     * @throws Exception If encountered.
+     */
+    public void run(Grids_GridNumber g, int halo,
+            Supplier<? extends Kernel> ks, Grids_GridNumber... outs)
+            throws Exception {
+        run(new Grids_GridNumber[]{g}, halo, true, ks, outs);
+    }
+
+    /**
+     * Applies a kernel to the cells of {@code gs[0]}. The values of
+     * {@code gs[1]}, {@code gs[2]} and so on are also in the buffer, as layers
+     * {@code 1}, {@code 2} and so on (see
+     * {@link Grids_StencilBuffer#get(int, int, int)}).
+     *
+     * @param gs The grids to process. These must all have the same dimensions
+     * and chunks.
+     * @param halo The number of rows and columns around a cell that a kernel
+     * gets values from.
+     * @param skip If {@code true} then the kernel is only applied to cells of
+     * {@code gs[0]} that do not have the no data value, otherwise it is
+     * applied to all cells.
+     * @param ks For creating kernels. Each thread gets its own kernel.
+     * @param outs The grids to set values in.
+     * @throws Exception If encountered.
+     */
+    public void run(Grids_GridNumber[] gs, int halo, boolean skip,
+            Supplier<? extends Kernel> ks, Grids_GridNumber... outs)
+            throws Exception {
+        Grids_GridNumber g = gs[0];
+        check(gs, halo, outs);
+        int cnr = g.getChunkNRows();
+        int cnc = g.getChunkNCols();
+        ThreadLocal<Grids_StencilBuffer> buffers = ThreadLocal.withInitial(
+                () -> new Grids_StencilBuffer(cnr, cnc, halo, gs.length));
+        ThreadLocal<Kernel> kernels = ThreadLocal.withInitial(ks);
+        p.getChunkExecutor().forEachChunk(i -> {
+            Grids_StencilBuffer b = buffers.get();
+            if (!b.fill(gs, i, skip)) {
+                return;
+            }
+            Kernel k = kernels.get();
+            double[] out = new double[outs.length];
+            Grids_ChunkNumber[] cs = new Grids_ChunkNumber[outs.length];
+            int nr = b.getNRows();
+            int nc = b.getNCols();
+            double[] d = b.getData(0);
+            for (int r = 0; r < nr; r++) {
+                int pos = b.index(r, 0);
+                for (int c = 0; c < nc; c++) {
+                    if (!skip || !Double.isNaN(d[pos + c])) {
+                        Arrays.fill(out, Double.NaN);
+                        k.apply(b, r, c, out);
+                        for (int o = 0; o < out.length; o++) {
+                            if (!Double.isNaN(out[o])) {
+                                if (cs[o] == null) {
+                                    cs[o] = Grids_Processor.getChunkToSet(
+                                            outs[o], i);
+                                }
+                                Grids_Processor.setCell(cs[o], r, c, out[o]);
+                            }
+                        }
+                    }
+                }
+            }
+        }, getPins(gs, outs));
+        for (Grids_GridNumber o : outs) {
+            Grids_Processor.updateStats(o);
+        }
+    }
+
+    /**
+     * Applies a chunk kernel to the chunks of {@code gs[0]}. This is as
+     * {@link #run(Grids_GridNumber[], int, boolean, Supplier, Grids_GridNumber...)}
+     * except that each kernel calculates the values for all the cells of a
+     * chunk at once.
+     *
+     * @param gs The grids to process. These must all have the same dimensions
+     * and chunks.
+     * @param halo The number of rows and columns around a cell that a kernel
+     * gets values from.
+     * @param skip If {@code true} then chunks of {@code gs[0]} with only no
+     * data values are not processed.
+     * @param ks For creating chunk kernels. Each thread gets its own kernel.
+     * @param outs The grids to set values in.
+     * @throws Exception If encountered.
+     */
+    public void runChunks(Grids_GridNumber[] gs, int halo, boolean skip,
+            Supplier<? extends ChunkKernel> ks, Grids_GridNumber... outs)
+            throws Exception {
+        Grids_GridNumber g = gs[0];
+        check(gs, halo, outs);
+        int cnr = g.getChunkNRows();
+        int cnc = g.getChunkNCols();
+        ThreadLocal<Grids_StencilBuffer> buffers = ThreadLocal.withInitial(
+                () -> new Grids_StencilBuffer(cnr, cnc, halo, gs.length));
+        ThreadLocal<ChunkKernel> kernels = ThreadLocal.withInitial(ks);
+        ThreadLocal<double[][]> results = ThreadLocal.withInitial(
+                () -> new double[outs.length][(cnr + 2 * halo)
+                * Grids_StencilBuffer.getStride(cnc, halo)]);
+        p.getChunkExecutor().forEachChunk(i -> {
+            Grids_StencilBuffer b = buffers.get();
+            if (!b.fill(gs, i, skip)) {
+                return;
+            }
+            double[][] out = results.get();
+            for (double[] o : out) {
+                Arrays.fill(o, Double.NaN);
+            }
+            kernels.get().apply(b, out);
+            int nr = b.getNRows();
+            int nc = b.getNCols();
+            for (int o = 0; o < out.length; o++) {
+                Grids_ChunkNumber c = null;
+                for (int row = 0; row < nr; row++) {
+                    int pos = b.index(row, 0);
+                    for (int col = 0; col < nc; col++) {
+                        double v = out[o][pos + col];
+                        if (!Double.isNaN(v)) {
+                            if (c == null) {
+                                c = Grids_Processor.getChunkToSet(outs[o], i);
+                            }
+                            Grids_Processor.setCell(c, row, col, v);
+                        }
+                    }
+                }
+            }
+        }, getPins(gs, outs));
+        for (Grids_GridNumber o : outs) {
+            Grids_Processor.updateStats(o);
+        }
+    }
+
+    /**
+     * Checks the arguments of a run.
+     *
+     * @param gs The grids to process.
+     * @param halo The halo.
+     * @param outs The grids to set values in.
+     */
+    private static void check(Grids_GridNumber[] gs, int halo,
+            Grids_GridNumber[] outs) {
+        Grids_GridNumber g = gs[0];
+        if (halo < 0) {
+            throw new IllegalArgumentException("halo < 0");
+        }
+        for (Grids_GridNumber o : gs) {
+            if (!g.isSameDimensionsAndChunks(o)) {
+                throw new IllegalArgumentException(o.getName()
+                        + " does not have the same dimensions and chunks as "
+                        + g.getName());
+            }
+        }
+        for (Grids_GridNumber o : outs) {
+            if (!g.isSameDimensionsAndChunks(o)
+                    || !Grids_Processor.isPrimitiveType(o)) {
+                throw new IllegalArgumentException(o.getName()
+                        + " is not of a primitive type with the same "
+                        + "dimensions and chunks as " + g.getName());
+            }
+        }
+    }
+
+    /**
+     * @param gs The grids to process.
+     * @param outs The grids to set values in.
+     * @return The grids with the chunks to pin whilst a chunk is processed.
+     */
+    private static Grids_Grid[] getPins(Grids_GridNumber[] gs,
+            Grids_GridNumber[] outs) {
+        Grids_Grid[] pins = new Grids_Grid[gs.length + outs.length];
+        System.arraycopy(gs, 0, pins, 0, gs.length);
+        System.arraycopy(outs, 0, pins, gs.length, outs.length);
+        return pins;
+    }
+}
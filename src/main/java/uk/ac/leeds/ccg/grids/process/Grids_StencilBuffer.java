@@ -0,0 +1,320 @@
+/*
+ * Copyright 2019 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.grids.process;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import uk.ac.leeds.ccg.grids.core.Grids_Environment;
+import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
+import uk.ac.leeds.ccg.grids.d2.chunk.Grids_ChunkNumber;
+import uk.ac.leeds.ccg.grids.d2.grid.Grids_GridNumber;
+import uk.ac.leeds.ccg.grids.io.Grids_ChunkPrefetcher;
+
+/**
+ * Holds the values of a chunk of one or more grids together with a halo of
+ * the values of cells around the chunk, each grid (layer) in one contiguous
+ * {@code double} array in row major order. Cells with the no data value and
+ * cells outside the grid are held as {@link Double#NaN}, so they need no
+ * special handling at the edges of a grid or chunk.
+ *
+ * Cells are indexed relative to the origin of the chunk: {@code get(0, 0)} is
+ * the value of the first cell of the chunk and {@code get(-1, -1)} is the
+ * value of the cell diagonally before it. Rows and columns from
+ * {@code -halo} to {@code n + halo - 1} can be got where {@code n} is the
+ * number of rows or columns of the chunk. The position of a cell in the array
+ * of a layer is given by {@link #index(int, int)}, so a kernel can work out
+ * the positions of its neighbours once as offsets of {@link #getStride()}.
+ *
+ * A buffer is for use by one thread and is reused for each chunk it is
+ * filled with, so it only allocates when it is created.
+ *
+ * @author Andy Turner
+ * @version 1.0.0
+ */
+public class Grids_StencilBuffer {
+
+    /**
+     * The number of rows and columns of cells around the chunk.
+     */
+    protected final int halo;
+
+    /**
+     * The number of values in a row of a layer.
+     */
+    protected final int stride;
+
+    /**
+     * The values of each layer.
+     */
+    protected final double[][] data;
+
+    /**
+     * The number of rows in the chunk.
+     */
+    protected int nRows;
+
+    /**
+     * The number of columns in the chunk.
+     */
+    protected int nCols;
+
+    /**
+     * The cell row index of the first row of the chunk.
+     */
+    protected long row0;
+
+    /**
+     * The cell column index of the first column of the chunk.
+     */
+    protected long col0;
+
+    /**
+     * @param chunkNRows The maximum number of rows in a chunk.
+     * @param chunkNCols The maximum number of columns in a chunk.
+     * @param halo What {@link #halo} is set to.
+     * @param layers The number of grids to hold values of.
+     */
+    public Grids_StencilBuffer(int chunkNRows, int chunkNCols, int halo,
+            int layers) {
+        this.halo = halo;
+        stride = getStride(chunkNCols, halo);
+        data = new double[layers][(chunkNRows + 2 * halo) * stride];
+    }
+
+    /**
+     * @param chunkNCols The maximum number of columns in a chunk.
+     * @param halo The halo.
+     * @return The stride of a buffer for chunks with at most
+     * {@code chunkNCols} columns and halo {@code halo}, so the offset of the
+     * cell {@code dr} rows and {@code dc} columns from a cell is
+     * {@code dr * stride + dc}.
+     */
+    public static int getStride(int chunkNCols, int halo) {
+        return chunkNCols + 2 * halo;
+    }
+
+    /**
+     * @return {@link #halo}
+     */
+    public int getHalo() {
+        return halo;
+    }
+
+    /**
+     * @return {@link #stride}
+     */
+    public int getStride() {
+        return stride;
+    }
+
+    /**
+     * @return {@link #nRows}
+     */
+    public int getNRows() {
+        return nRows;
+    }
+
+    /**
+     * @return {@link #nCols}
+     */
+    public int getNCols() {
+        return nCols;
+    }
+
+    /**
+     * @param r The row relative to the origin of the chunk.
+     * @return The cell row index of row {@code r}.
+     */
+    public long getRow(int r) {
+        return row0 + r;
+    }
+
+    /**
+     * @param c The column relative to the origin of the chunk.
+     * @return The cell column index of column {@code c}.
+     */
+    public long getCol(int c) {
+        return col0 + c;
+    }
+
+    /**
+     * @param layer The layer.
+     * @return The values of layer {@code layer}.
+     */
+    public double[] getData(int layer) {
+        return data[layer];
+    }
+
+    /**
+     * @param r The row relative to the origin of the chunk.
+     * @param c The column relative to the origin of the chunk.
+     * @return The position of the value at row {@code r}, column {@code c} in
+     * the array of a layer.
+     */
+    public int index(int r, int c) {
+        return (r + halo) * stride + c + halo;
+    }
+
+    /**
+     * @param r The row relative to the origin of the chunk.
+     * @param c The column relative to the origin of the chunk.
+     * @return The value of the first layer at row {@code r}, column {@code c}
+     * or {@link Double#NaN}.
+     */
+    public double get(int r, int c) {
+        return data[0][(r + halo) * stride + c + halo];
+    }
+
+    /**
+     * @param layer The layer.
+     * @param r The row relative to the origin of the chunk.
+     * @param c The column relative to the origin of the chunk.
+     * @return The value of layer {@code layer} at row {@code r}, column
+     * {@code c} or {@link Double#NaN}.
+     */
+    public double get(int layer, int r, int c) {
+        return data[layer][(r + halo) * stride + c + halo];
+    }
+
+    /**
+     * Fills this with the values of the chunks with chunk ID {@code i} of
+     * {@code gs} and the values of the cells of {@code gs} around them. The
+     * chunks with chunk ID {@code i} are expected to be pinned. Other chunks
+     * are pinned whilst values are copied from them. The grids are expected
+     * to have the same chunk structure. If the environment reads chunks ahead
+     * (see {@link Grids_Environment#getPrefetcher()}), then the chunks needed
+     * to fill this for the next chunk in chunk row major order are read
+     * ahead whilst this chunk is processed.
+     *
+     * @param gs The grids. The first is layer {@code 0}, the second layer
+     * {@code 1} and so on.
+     * @param i The chunk ID.
+     * @param skip If {@code true} and all the values of the chunk of
+     * {@code gs[0]} are no data values then the values around the chunk are
+     * not got.
+     * @return {@code false} if {@code skip} is {@code true} and all the values
+     * of the chunk of {@code gs[0]} are no data values.
+     * @throws Exception If encountered.
+     */
+    public boolean fill(Grids_GridNumber[] gs, Grids_2D_ID_int i, boolean skip)
+            throws Exception {
+        Grids_GridNumber g = gs[0];
+        int cr = i.getRow();
+        int cc = i.getCol();
+        nRows = g.getChunkNRows(cr);
+        nCols = g.getChunkNCols(cc);
+        row0 = g.getRow(cr, 0);
+        col0 = g.getCol(cc, 0);
+        for (double[] d : data) {
+            Arrays.fill(d, Double.NaN);
+        }
+        boolean r = false;
+        for (int k = 0; k < gs.length; k++) {
+            boolean any = copy(gs[k], k, i,
+                    (Grids_ChunkNumber) gs[k].getChunk(i));
+            if (k == 0) {
+                r = any;
+            }
+        }
+        if (skip && !r) {
+            return false;
+        }
+        Grids_ChunkPrefetcher pf = g.env.getPrefetcher();
+        if (pf != null) {
+            for (Grids_GridNumber gk : gs) {
+                pf.prefetchWindow(gk, cr, cc, halo);
+            }
+        }
+        if (halo > 0) {
+            int cnr = g.getChunkNRows();
+            int cnc = g.getChunkNCols();
+            int cr0 = Math.max(0, cr - (halo + cnr - 1) / cnr);
+            int cr1 = Math.min(g.getNChunkRows() - 1, cr + (halo + cnr - 1) / cnr);
+            int cc0 = Math.max(0, cc - (halo + cnc - 1) / cnc);
+            int cc1 = Math.min(g.getNChunkCols() - 1, cc + (halo + cnc - 1) / cnc);
+            for (int ncr = cr0; ncr <= cr1; ncr++) {
+                for (int ncc = cc0; ncc <= cc1; ncc++) {
+                    if (ncr != cr || ncc != cc) {
+                        Grids_2D_ID_int ni = new Grids_2D_ID_int(ncr, ncc);
+                        for (int k = 0; k < gs.length; k++) {
+                            gs[k].pin(ni);
+                            try {
+                                copy(gs[k], k, ni,
+                                        (Grids_ChunkNumber) gs[k].getChunk(ni));
+                            } finally {
+                                gs[k].unpin(ni);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies the values of {@code c} that are in this into layer
+     * {@code layer}.
+     *
+     * @param g The grid.
+     * @param layer The layer.
+     * @param i The chunk ID of {@code c}.
+     * @param c The chunk.
+     * @return {@code true} if any value copied is not a no data value.
+     */
+    private boolean copy(Grids_GridNumber g, int layer, Grids_2D_ID_int i,
+            Grids_ChunkNumber c) {
+        int cr = i.getRow();
+        int cc = i.getCol();
+        long r0 = g.getRow(cr, 0);
+        long c0 = g.getCol(cc, 0);
+        // The rows and columns of c that are in this.
+        int ccr0 = (int) Math.max(0L, row0 - halo - r0);
+        int ccr1 = (int) Math.min(g.getChunkNRows(cr), row0 + nRows + halo - r0);
+        int ccc0 = (int) Math.max(0L, col0 - halo - c0);
+        int ccc1 = (int) Math.min(g.getChunkNCols(cc), col0 + nCols + halo - c0);
+        double[] d = data[layer];
+        boolean r = false;
+        if (Grids_Processor.isPrimitiveType(g)) {
+            double ndv = g.ndv.doubleValue();
+            for (int ccr = ccr0; ccr < ccr1; ccr++) {
+                int p = index((int) (r0 + ccr - row0), (int) (c0 + ccc0 - col0));
+                for (int ccc = ccc0; ccc < ccc1; ccc++) {
+                    double v = Grids_Processor.getCell(c, ccr, ccc);
+                    if (v != ndv) {
+                        d[p] = v;
+                        r = true;
+                    }
+                    p++;
+                }
+            }
+        } else {
+            BigDecimal ndv = g.ndv;
+            for (int ccr = ccr0; ccr < ccr1; ccr++) {
+                int p = index((int) (r0 + ccr - row0), (int) (c0 + ccc0 - col0));
+                for (int ccc = ccc0; ccc < ccc1; ccc++) {
+                    BigDecimal v = c.getCellBigDecimal(ccr, ccc);
+                    if (v.compareTo(ndv) != 0) {
+                        d[p] = v.doubleValue();
+                        r = true;
+                    }
+                    p++;
+                }
+            }
+        }
+        return r;
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright 2019 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.grids.process;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
+import uk.ac.leeds.ccg.grids.d2.chunk.Grids_ChunkNumber;
+import uk.ac.leeds.ccg.grids.d2.grid.Grids_GridNumber;
+import uk.ac.leeds.ccg.grids.d2.grid.d.Grids_GridCursorDouble;
+import uk.ac.leeds.ccg.grids.d2.grid.d.Grids_GridDouble;
+
+/**
+ * Summed area tables (integral images) of a grid for getting the number of
+ * cells with data and the sums of the first {@link #order} powers of their
+ * values in any rectangular window of the grid in constant time.
+ *
+ * Table {@code 0} counts cells that do not have the no data value and table
+ * {@code k} sums the {@code k}th power of their values less {@link #shift}.
+ * The value of a table at cell row {@code r}, cell column {@code c} is the
+ * total for the cells in rows {@code 0} to {@code r} and columns {@code 0} to
+ * {@code c}, so the total for a window is got from the values at its four
+ * corners. Values are shifted (by the first value with data) to reduce the
+ * loss of precision in taking differences of large sums.
+ *
+ * The tables are grids with the same dimensions and chunks as the grid, so
+ * they are held in memory and swapped in the same way as other grids. They
+ * are built in one pass over the chunks of the grid, holding no more than a
+ * row and a column of a chunk of each table besides the chunks themselves.
+ *
+ * @author Andy Turner
+ * @version 1.0.0
+ */
+public class Grids_SummedAreaTable {
+
+    /**
+     * The grid.
+     */
+    protected final Grids_GridNumber g;
+
+    /**
+     * The highest power of values summed.
+     */
+    protected final int order;
+
+    /**
+     * The tables.
+     */
+    protected final Grids_GridDouble[] tables;
+
+    /**
+     * The value subtracted from values before they are summed.
+     */
+    protected double shift;
+
+    /**
+     * Creates and builds summed area tables for {@code g}.
+     *
+     * @param p The processor used to create the tables.
+     * @param g What {@link #g} is set to.
+     * @param order What {@link #order} is set to.
+     * @throws Exception If encountered.
+     */
+    public Grids_SummedAreaTable(Grids_Processor p, Grids_GridNumber g,
+            int order) throws Exception {
+        if (order < 1) {
+            throw new IllegalArgumentException("order < 1");
+        }
+        this.g = g;
+        this.order = order;
+        tables = new Grids_GridDouble[order + 1];
+        for (int k = 0; k <= order; k++) {
+            tables[k] = p.createAligned(p.gridFactoryDouble, g);
+        }
+        build();
+    }
+
+    /**
+     * @return {@link #order}
+     */
+    public int getOrder() {
+        return order;
+    }
+
+    /**
+     * @return {@link #shift}
+     */
+    public double getShift() {
+        return shift;
+    }
+
+    /**
+     * Builds the tables a chunk at a time in row major order. For each chunk
+     * the row of the tables above the chunk is got, and the totals of the rows
+     * of the chunk to the left of it are carried along.
+     *
+     * @throws Exception If encountered.
+     */
+    private void build() throws Exception {
+        int n = order + 1;
+        int cnr = g.getChunkNRows();
+        int cnc = g.getChunkNCols();
+        // The totals of each row so far in the chunk row.
+        double[][] left = new double[n][cnr];
+        // The values of the tables in the row above.
+        double[][] above = new double[n][cnc];
+        double[] x = new double[n];
+        boolean shifted = false;
+        boolean primitive = Grids_Processor.isPrimitiveType(g);
+        double ndv = g.ndv.doubleValue();
+        Grids_GridCursorDouble[] cs = new Grids_GridCursorDouble[n];
+        for (int k = 0; k < n; k++) {
+            cs[k] = new Grids_GridCursorDouble(tables[k]);
+        }
+        try {
+            int ncr = g.getNChunkRows();
+            int ncc = g.getNChunkCols();
+            for (int cr = 0; cr < ncr; cr++) {
+                int nr = g.getChunkNRows(cr);
+                long r0 = g.getRow(cr, 0);
+                for (double[] l : left) {
+                    Arrays.fill(l, 0.0d);
+                }
+                for (int cc = 0; cc < ncc; cc++) {
+                    int nc = g.getChunkNCols(cc);
+                    long c0 = g.getCol(cc, 0);
+                    for (int k = 0; k < n; k++) {
+                        cs[k].moveTo(r0 - 1, c0);
+                        for (int c = 0; c < nc; c++) {
+                            above[k][c] = r0 == 0 ? 0.0d : cs[k].get(0, c);
+                        }
+                    }
+                    Grids_2D_ID_int i = new Grids_2D_ID_int(cr, cc);
+                    g.pin(i);
+                    try {
+                        Grids_ChunkNumber chunk
+                                = (Grids_ChunkNumber) g.getChunk(i);
+                        for (int r = 0; r < nr; r++) {
+                            for (int k = 0; k < n; k++) {
+                                cs[k].moveTo(r0 + r, c0);
+                            }
+                            for (int c = 0; c < nc; c++) {
+                                double v;
+                                boolean data;
+                                if (primitive) {
+                                    v = Grids_Processor.getCell(chunk, r, c);
+                                    data = v != ndv;
+                                } else {
+                                    BigDecimal bd = chunk.getCellBigDecimal(r, c);
+                                    data = bd.compareTo(g.ndv) != 0;
+                                    v = bd.doubleValue();
+                                }
+                                if (data) {
+                                    if (!shifted) {
+                                        shift = v;
+                                        shifted = true;
+                                    }
+                                    double y = v - shift;
+                                    x[0] = 1.0d;
+                                    for (int k = 1; k < n; k++) {
+                                        x[k] = x[k - 1] * y;
+                                    }
+                                    for (int k = 0; k < n; k++) {
+                                        left[k][r] += x[k];
+                                    }
+                                }
+                                for (int k = 0; k < n; k++) {
+                                    above[k][c] += left[k][r];
+                                    cs[k].set(0, c, above[k][c]);
+                                }
+                            }
+                        }
+                    } finally {
+                        g.unpin(i);
+                    }
+                }
+            }
+        } finally {
+            for (Grids_GridCursorDouble c : cs) {
+                c.close();
+            }
+        }
+    }
+
+    /**
+     * @return A new reader. Each thread getting sums should use its own.
+     */
+    public Reader getReader() {
+        return new Reader();
+    }
+
+    /**
+     * For getting the totals of windows. This holds a cursor for each corner
+     * of a window in each table, so as windows move along a row the corners
+     * mostly stay in the chunks held. A reader is for use by one thread and
+     * must be closed to unpin the chunks it holds.
+     */
+    public class Reader implements AutoCloseable {
+
+        /**
+         * The cursors for each corner (top left, top right, bottom left,
+         * bottom right) of each table.
+         */
+        protected final Grids_GridCursorDouble[][] cs;
+
+        /**
+         * Creates a new reader.
+         */
+        protected Reader() {
+            cs = new Grids_GridCursorDouble[tables.length][4];
+            for (int k = 0; k < tables.length; k++) {
+                for (int j = 0; j < 4; j++) {
+                    cs[k][j] = new Grids_GridCursorDouble(tables[k]);
+                }
+            }
+        }
+
+        /**
+         * Gets the count of cells with data and the sums of the powers of
+         * their values less {@link #shift} in the window from cell row
+         * {@code row0} to {@code row1} and cell column {@code col0} to
+         * {@code col1} inclusive. Parts of the window outside the grid are
+         * ignored.
+         *
+         * @param row0 The first row of the window.
+         * @param col0 The first column of the window.
+         * @param row1 The last row of the window.
+         * @param col1 The last column of the window.
+         * @param r For returning the count in {@code r[0]} and the sum of the
+         * {@code k}th powers in {@code r[k]}. It must have length at least
+         * {@link #order} + 1.
+         * @return {@code r}
+         * @throws Exception If encountered.
+         */
+        public double[] getSums(long row0, long col0, long row1, long col1,
+                double[] r) throws Exception {
+            long rt = Math.max(row0, 0L) - 1L;
+            long cl = Math.max(col0, 0L) - 1L;
+            long rb = Math.min(row1, g.getNRows() - 1L);
+            long cr = Math.min(col1, g.getNCols() - 1L);
+            if (rt >= rb || cl >= cr) {
+                for (int k = 0; k < tables.length; k++) {
+                    r[k] = 0.0d;
+                }
+                return r;
+            }
+            for (int k = 0; k < tables.length; k++) {
+                double s = get(cs[k][3], rb, cr);
+                if (rt >= 0L) {
+                    s -= get(cs[k][1], rt, cr);
+                    if (cl >= 0L) {
+                        s += get(cs[k][0], rt, cl);
+                    }
+                }
+                if (cl >= 0L) {
+                    s -= get(cs[k][2], rb, cl);
+                }
+                r[k] = s;
+            }
+            return r;
+        }
+
+        private double get(Grids_GridCursorDouble c, long row, long col)
+                throws Exception {
+            c.moveTo(row, col);
+            return c.get();
+        }
+
+        @Override
+        public void close() {
+            for (Grids_GridCursorDouble[] ccs : cs) {
+                for (Grids_GridCursorDouble c : ccs) {
+                    c.close();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2020 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.grids.d2.grid;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import uk.ac.leeds.ccg.generic.core.Generic_Environment;
+import uk.ac.leeds.ccg.generic.io.Generic_Defaults;
+import uk.ac.leeds.ccg.generic.io.Generic_Path;
+import uk.ac.leeds.ccg.grids.core.Grids_Environment;
+import uk.ac.leeds.ccg.grids.core.Grids_Strings;
+import uk.ac.leeds.ccg.grids.d2.grid.d.Grids_GridDouble;
+import uk.ac.leeds.ccg.grids.d2.grid.d.Grids_GridFactoryDouble;
+import uk.ac.leeds.ccg.grids.process.Grids_Processor;
+
+/**
+ * A benchmark comparing the throughput of
+ * {@link Grids_GridDouble#getCell(long, long)} for cells got in row major
+ * order and in a random order with chunks got from the chunk table of the
+ * grid (see {@link Grids_Grid#setChunkTableEnabled(boolean)}) and from the
+ * chunk map. This is not run as part of the tests. Run it with optional
+ * arguments for the number of rows and columns of the grid (default 2048) and
+ * the number of rows and columns of its chunks (default 64) e.g.:
+ * {@code java uk.ac.leeds.ccg.grids.d2.grid.Grids_GetCellBenchmark 2048 32}
+ *
+ * @author Andy Turner
+ * @version 1.0.0
+ */
+public class Grids_GetCellBenchmark {
+
+    /**
+     * The number of times each pass over the cells is repeated.
+     */
+    static final int REPEATS = 10;
+
+    public static void main(String[] args) throws Exception {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 2048;
+        int cn = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        Path dataDir = Paths.get(System.getProperty("user.home"),
+                Grids_Strings.s_data);
+        Generic_Environment env = new Generic_Environment(new Generic_Defaults(
+                Paths.get(dataDir.toString(), Grids_Strings.s_generic)));
+        Grids_Environment ge = new Grids_Environment(env,
+                new Generic_Path(dataDir));
+        Grids_Processor gp = new Grids_Processor(ge);
+        Grids_GridFactoryDouble gfd = gp.gridFactoryDouble;
+        gfd.setChunkNRows(cn);
+        gfd.setChunkNCols(cn);
+        Grids_GridDouble g = (Grids_GridDouble) gfd.create(n, n);
+        for (int r = 0; r < n; r++) {
+            for (int c = 0; c < n; c++) {
+                g.setCell(r, c, r + c);
+            }
+        }
+        // Cell indexes in random order.
+        int[] rows = new int[n * n];
+        int[] cols = new int[n * n];
+        Random rand = new Random(0);
+        for (int k = 0; k < rows.length; k++) {
+            rows[k] = rand.nextInt(n);
+            cols[k] = rand.nextInt(n);
+        }
+        System.out.println("Grid " + n + "x" + n + " chunks " + cn + "x" + cn);
+        for (boolean b : new boolean[]{true, false, true, false}) {
+            g.setChunkTableEnabled(b);
+            // The first two passes are a warm up.
+            long t0 = System.nanoTime();
+            double s = 0d;
+            for (int k = 0; k < REPEATS; k++) {
+                for (int r = 0; r < n; r++) {
+                    for (int c = 0; c < n; c++) {
+                        s += g.getCell(r, c);
+                    }
+                }
+            }
+            long t1 = System.nanoTime();
+            for (int k = 0; k < REPEATS; k++) {
+                for (int p = 0; p < rows.length; p++) {
+                    s += g.getCell(rows[p], cols[p]);
+                }
+            }
+            long t2 = System.nanoTime();
+            System.out.println((b ? "Chunk table" : "Chunk map  ")
+                    + ": sequential=" + rate(t1 - t0, n) + " random="
+                    + rate(t2 - t1, n) + " million cells/s (" + s + ")");
+        }
+    }
+
+    static String rate(long nanos, int n) {
+        return String.format("%.1f", (double) n * n * REPEATS * 1000d / nanos);
+    }
+}
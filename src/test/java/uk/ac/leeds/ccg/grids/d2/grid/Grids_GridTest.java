@@ -16,8 +16,12 @@
 package uk.ac.leeds.ccg.grids.d2.grid;
 
 import java.math.BigDecimal;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.hamcrest.Matchers;
 import static org.hamcrest.MatcherAssert.assertThat;
 import org.junit.jupiter.api.AfterEach;
@@ -33,9 +37,45 @@ import uk.ac.leeds.ccg.grids.core.Grids_Environment;
 import uk.ac.leeds.ccg.grids.core.Grids_Strings;
 import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
 import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_long;
+import uk.ac.leeds.ccg.grids.d2.chunk.bd.Grids_ChunkBDArray;
+import uk.ac.leeds.ccg.grids.d2.chunk.bd.Grids_ChunkBDScaled;
+import uk.ac.leeds.ccg.grids.d2.chunk.bd.Grids_ChunkFactoryBD;
+import uk.ac.leeds.ccg.grids.d2.chunk.bd.Grids_ChunkFactoryBDScaled;
+import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkDoubleArray;
+import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkDoubleMap;
+import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkDoubleMapped;
+import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkDoubleOffHeap;
+import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkDoubleSinglet;
+import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkFactoryDouble;
+import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkFactoryDoubleArray;
+import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkFactoryDoubleMapped;
+import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkFactoryDoubleOffHeap;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkFactoryInt;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkFactoryIntArray;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkIntArray;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkFactoryIntMapped;
+import uk.ac.leeds.ccg.grids.d2.grid.bd.Grids_GridBD;
+import uk.ac.leeds.ccg.grids.d2.grid.bd.Grids_GridFactoryBD;
+import uk.ac.leeds.ccg.grids.d2.grid.d.Grids_GridCursorDouble;
 import uk.ac.leeds.ccg.grids.d2.grid.d.Grids_GridDouble;
+import uk.ac.leeds.ccg.grids.io.Grids_ChunkPrefetcher;
+import uk.ac.leeds.ccg.grids.memory.Grids_DirectBufferPool;
 import uk.ac.leeds.ccg.grids.d2.grid.d.Grids_GridFactoryDouble;
+import uk.ac.leeds.ccg.grids.d2.grid.d.Grids_GridIteratorDouble;
+import uk.ac.leeds.ccg.grids.d2.grid.f.Grids_GridFactoryFloat;
+import uk.ac.leeds.ccg.grids.d2.grid.f.Grids_GridFloat;
 import uk.ac.leeds.ccg.grids.d2.grid.i.Grids_GridFactoryInt;
+import uk.ac.leeds.ccg.grids.d2.grid.i.Grids_GridCursorInt;
+import uk.ac.leeds.ccg.grids.d2.grid.i.Grids_GridInt;
+import uk.ac.leeds.ccg.grids.d2.grid.i.Grids_GridIteratorInt;
+import uk.ac.leeds.ccg.grids.d2.grid.i.Grids_GridByte;
+import uk.ac.leeds.ccg.grids.d2.grid.i.Grids_GridFactoryByte;
+import uk.ac.leeds.ccg.grids.d2.grid.i.Grids_GridFactoryShort;
+import uk.ac.leeds.ccg.grids.d2.grid.i.Grids_GridShort;
+import uk.ac.leeds.ccg.grids.d2.grid.stats.Grids_GridStatsByte;
+import uk.ac.leeds.ccg.grids.d2.grid.stats.Grids_GridStatsFloat;
+import uk.ac.leeds.ccg.grids.d2.grid.stats.Grids_GridStatsShort;
+import uk.ac.leeds.ccg.grids.io.Grids_MappedChunkStore;
 import uk.ac.leeds.ccg.grids.process.Grids_Processor;
 
 /**
@@ -1372,4 +1412,865 @@ public class Grids_GridTest {
             assertThat(expResult[i], Matchers.comparesEqualTo(result[i]));
         }
     }
+
+    /**
+     * Test of chunks backed by a memory mapped file.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testMappedChunks() throws Exception {
+        System.out.println("mappedChunks");
+        // Chunks are converted using the factories of the environment processor.
+        Grids_GridFactoryDouble gfd = ge.getProcessor().gridFactoryDouble;
+        Grids_ChunkFactoryDouble dcf = gfd.defaultGridChunkDoubleFactory;
+        gfd.setDefaultChunkFactory(new Grids_ChunkFactoryDoubleMapped());
+        Grids_GridDouble g = (Grids_GridDouble) gfd.create(10, 10);
+        for (int r = 0; r < 10; r++) {
+            for (int c = 0; c < 10; c += 3) {
+                g.setCell(r, c, r + c * 0.5d);
+            }
+        }
+        Grids_2D_ID_int i = new Grids_2D_ID_int(0, 0);
+        assertTrue(g.getChunk(i) instanceof Grids_ChunkDoubleMapped);
+        // A region is held only while its chunk is loaded.
+        Grids_MappedChunkStore s = g.getMappedStore(
+                Grids_ChunkDoubleMapped.BYTES);
+        int n = s.getNumberOfRegions();
+        assertTrue(n > 0);
+        assertTrue(g.swapChunk(i));
+        assertFalse(g.isLoaded(i));
+        assertEquals(n - 1, s.getNumberOfRegions());
+        assertEquals(4.5d, g.getCell(3, 3));
+        assertEquals(g.getNoDataValue(), g.getCell(3, 4));
+        assertTrue(g.getChunk(i) instanceof Grids_ChunkDoubleMapped);
+        assertEquals(n, s.getNumberOfRegions());
+        g.swapChunks();
+        assertEquals(0, s.getNumberOfRegions());
+        assertEquals(4.5d, g.getCell(3, 3));
+        gfd.setDefaultChunkFactory(dcf);
+        // Int
+        Grids_GridFactoryInt gfi = ge.getProcessor().gridFactoryInt;
+        Grids_ChunkFactoryInt icf = gfi.defaultGridChunkIntFactory;
+        gfi.setDefaultChunkFactory(new Grids_ChunkFactoryIntMapped());
+        Grids_GridInt gi = (Grids_GridInt) gfi.create(10, 10);
+        gi.setCell(2, 7, 9);
+        gfi.setDefaultChunkFactory(icf);
+        assertTrue(gi.swapChunk(i));
+        assertEquals(9, gi.getCell(2, 7));
+        assertEquals(gi.getNoDataValue(), gi.getCell(2, 6));
+    }
+
+    /**
+     * Test of swapping chunks with write-behind.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testWriteBehind() throws Exception {
+        System.out.println("writeBehind");
+        ge.setWriteBehind(2, 2);
+        assertTrue(ge.isWriteBehind());
+        Grids_GridFactoryDouble gfd = gp.gridFactoryDouble;
+        gfd.setChunkNRows(2);
+        gfd.setChunkNCols(2);
+        Grids_GridDouble g = (Grids_GridDouble) gfd.create(6, 6);
+        for (int r = 0; r < 6; r++) {
+            for (int c = 0; c < 6; c++) {
+                g.setCell(r, c, r * 6 + c);
+            }
+        }
+        Grids_2D_ID_int i = new Grids_2D_ID_int(0, 0);
+        assertTrue(g.swapChunk(i));
+        assertFalse(g.isLoaded(i));
+        // Either taken back from the pending writes or loaded from file.
+        assertEquals(7d, g.getCell(1, 1));
+        g.setCell(1, 1, -7d);
+        // A chunk handed to be written is released from the memory used.
+        long used = ge.getMemoryUsed();
+        assertTrue(g.swapChunk(i));
+        assertTrue(ge.getMemoryUsed() < used);
+        used = ge.getMemoryUsed();
+        ge.awaitWrites();
+        assertEquals(used, ge.getMemoryUsed());
+        g.swapChunks();
+        ge.awaitWrites();
+        assertEquals(0, ge.getNumberOfPendingWrites());
+        assertTrue(Files.exists(Paths.get(g.getDirectory().toString(),
+                "0_0")));
+        assertFalse(g.isLoaded(i));
+        assertEquals(-7d, g.getCell(1, 1));
+        for (int r = 0; r < 6; r++) {
+            for (int c = 0; c < 6; c++) {
+                if (r != 1 || c != 1) {
+                    assertEquals(r * 6 + c, g.getCell(r, c));
+                }
+            }
+        }
+        ge.setWriteBehind(0, 1);
+        assertFalse(ge.isWriteBehind());
+        assertTrue(g.swapChunk(i));
+        assertEquals(0, ge.getNumberOfPendingWrites());
+        assertEquals(-7d, g.getCell(1, 1));
+    }
+
+    /**
+     * Test of chunks with values held outside the heap.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testOffHeapChunks() throws Exception {
+        System.out.println("offHeapChunks");
+        Grids_GridFactoryDouble gfd = ge.getProcessor().gridFactoryDouble;
+        Grids_ChunkFactoryDouble dcf = gfd.defaultGridChunkDoubleFactory;
+        gfd.setDefaultChunkFactory(new Grids_ChunkFactoryDoubleOffHeap());
+        gfd.setChunkNRows(8);
+        gfd.setChunkNCols(8);
+        Grids_GridDouble g = (Grids_GridDouble) gfd.create(10, 10);
+        long used = ge.getOffHeapMemoryUsed();
+        for (int r = 0; r < 10; r++) {
+            for (int c = 0; c < 10; c++) {
+                g.setCell(r, c, r * 10 + c);
+            }
+        }
+        Grids_2D_ID_int i = new Grids_2D_ID_int(0, 0);
+        assertTrue(g.getChunk(i) instanceof Grids_ChunkDoubleOffHeap);
+        assertEquals(used + 800, ge.getOffHeapMemoryUsed());
+        Grids_DirectBufferPool pool = ge.getDirectBufferPool();
+        long reused = pool.getReused();
+        assertTrue(g.swapChunk(i));
+        assertEquals(used + 800 - 8 * 8 * 8, ge.getOffHeapMemoryUsed());
+        // The buffer is freed once the chunk is written.
+        ge.awaitWrites();
+        assertEquals(8 * 8 * 8, pool.getSize());
+        assertEquals(37d, g.getCell(3, 7));
+        assertTrue(g.getChunk(i) instanceof Grids_ChunkDoubleOffHeap);
+        assertEquals(reused + 1, pool.getReused());
+        assertEquals(used + 800, ge.getOffHeapMemoryUsed());
+        // Memory is low once the off heap budget is exceeded.
+        long budget = ge.getOffHeapBudget();
+        ge.setOffHeapBudget(ge.getOffHeapMemoryUsed() - 1);
+        assertTrue(ge.getOffHeapMemoryUsed() <= ge.getOffHeapBudget());
+        ge.setOffHeapBudget(budget);
+        for (int r = 0; r < 10; r++) {
+            for (int c = 0; c < 10; c++) {
+                assertEquals(r * 10 + c, g.getCell(r, c));
+            }
+        }
+        gfd.setDefaultChunkFactory(dcf);
+    }
+
+    /**
+     * Test that iterators and statistics include every cell of every chunk,
+     * including the first cell of each chunk, the chunks that are not full
+     * and the first chunk iterated over.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testIteratorAndN() throws Exception {
+        System.out.println("iteratorAndN");
+        Grids_GridFactoryDouble gfd = gp.gridFactoryDouble;
+        gfd.setChunkNRows(3);
+        gfd.setChunkNCols(4);
+        Grids_GridDouble gd = (Grids_GridDouble) gfd.create(7, 9);
+        // A grid that has only no data values.
+        long n = 0;
+        Grids_GridIteratorDouble ited = gd.iterator();
+        while (ited.hasNext()) {
+            assertEquals(gd.getNoDataValue(), ited.next());
+            n++;
+        }
+        assertEquals(63L, n);
+        assertEquals(0L, gd.getStats().getN());
+        double sum = 0d;
+        for (int r = 0; r < 7; r++) {
+            for (int c = 0; c < 9; c++) {
+                gd.setCell(r, c, r * 9 + c + 1);
+                sum += r * 9 + c + 1;
+            }
+        }
+        n = 0;
+        double sumIterated = 0d;
+        ited = gd.iterator();
+        while (ited.hasNext()) {
+            sumIterated += ited.next();
+            n++;
+        }
+        assertEquals(63L, n);
+        assertEquals(sum, sumIterated);
+        n = 0;
+        Iterator<Grids_2D_ID_int> ite = gd.iterator().getGridIterator();
+        while (ite.hasNext()) {
+            n += gd.getChunk(ite.next()).getN();
+        }
+        assertEquals(63L, n);
+        assertEquals(63L, gd.getStats().getN());
+        assertEquals(0, BigDecimal.valueOf(sum).compareTo(
+                gd.getStats().getSum()));
+        Grids_GridFactoryInt gfi = gp.gridFactoryInt;
+        gfi.setChunkNRows(3);
+        gfi.setChunkNCols(4);
+        Grids_GridInt gi = (Grids_GridInt) gfi.create(7, 9);
+        long sumi = 0;
+        for (int r = 0; r < 7; r++) {
+            for (int c = 0; c < 9; c++) {
+                if (r != 6 || c != 8) {
+                    gi.setCell(r, c, r * 9 + c + 1);
+                    sumi += r * 9 + c + 1;
+                }
+            }
+        }
+        n = 0;
+        long sumIteratedi = 0;
+        Grids_GridIteratorInt itei = gi.iterator();
+        while (itei.hasNext()) {
+            int v = itei.next();
+            if (v != gi.getNoDataValue()) {
+                sumIteratedi += v;
+                n++;
+            }
+        }
+        assertEquals(62L, n);
+        assertEquals(sumi, sumIteratedi);
+        assertEquals(62L, gi.getStats().getN());
+        assertEquals(0, BigDecimal.valueOf(sumi).compareTo(
+                gi.getStats().getSum()));
+    }
+
+    /**
+     * Test of getMin and getMax for array chunks in which the first cell is
+     * no data.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testArrayChunkMinMax() throws Exception {
+        System.out.println("arrayChunkMinMax");
+        Grids_GridFactoryDouble gfd = gp.gridFactoryDouble;
+        Grids_ChunkFactoryDouble dcf = gfd.defaultGridChunkDoubleFactory;
+        gfd.setDefaultChunkFactory(new Grids_ChunkFactoryDoubleArray());
+        gfd.setChunkNRows(2);
+        gfd.setChunkNCols(2);
+        Grids_GridDouble g = (Grids_GridDouble) gfd.create(2, 2);
+        Grids_2D_ID_int i = new Grids_2D_ID_int(0, 0);
+        //g.setCell(0, 0, g.getNoDataValue());
+        g.setCell(0, 1, 3d);
+        g.setCell(1, 0, 7d);
+        g.setCell(1, 1, 2d);
+        Grids_ChunkDoubleArray c = (Grids_ChunkDoubleArray) g.getChunk(i);
+        assertEquals(2d, c.getMin(true).doubleValue());
+        assertEquals(7d, c.getMax(true).doubleValue());
+        double ndv = g.getNoDataValue();
+        c.setCell(0, 1, ndv);
+        c.setCell(1, 0, ndv);
+        c.setCell(1, 1, ndv);
+        assertNull(c.getMin(true));
+        assertNull(c.getMax(true));
+        gfd.setDefaultChunkFactory(dcf);
+        Grids_GridFactoryInt gfi = gp.gridFactoryInt;
+        Grids_ChunkFactoryInt icf = gfi.defaultGridChunkIntFactory;
+        gfi.setDefaultChunkFactory(new Grids_ChunkFactoryIntArray());
+        gfi.setChunkNRows(2);
+        gfi.setChunkNCols(2);
+        Grids_GridInt gi = (Grids_GridInt) gfi.create(2, 2);
+        //gi.setCell(0, 0, gi.getNoDataValue());
+        gi.setCell(0, 1, -3);
+        gi.setCell(1, 0, 7);
+        gi.setCell(1, 1, 2);
+        Grids_ChunkIntArray ci = (Grids_ChunkIntArray) gi.getChunk(i);
+        assertEquals(-3, ci.getMin(true).intValue());
+        assertEquals(7, ci.getMax(true).intValue());
+        gfi.setDefaultChunkFactory(icf);
+    }
+
+    /**
+     * Test of getting and setting cells, stats and conversions for a
+     * {@link Grids_GridShort}.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testShortGrid() throws Exception {
+        System.out.println("shortGrid");
+        Grids_GridFactoryShort gfs = gp.gridFactoryShort;
+        gfs.setChunkNRows(3);
+        gfs.setChunkNCols(4);
+        Grids_GridShort g = (Grids_GridShort) gfs.create(7, 9);
+        short ndv = g.getNoDataValue();
+        assertEquals(Short.MIN_VALUE, ndv);
+        assertEquals(ndv, g.getCell(6, 8));
+        // Cells not in the grid are no data and can not be set.
+        assertEquals(ndv, g.getCell(7, 0));
+        assertEquals(ndv, g.setCell(7, 0, (short) 1));
+        long n = 0;
+        long sum = 0;
+        for (int r = 0; r < 7; r++) {
+            for (int c = 0; c < 9; c++) {
+                short v = (short) (r * 1000 - c);
+                assertEquals(ndv, g.setCell(r, c, v));
+                n++;
+                sum += v;
+            }
+        }
+        assertEquals(2995, g.setCell(3, 5, ndv));
+        n--;
+        sum -= 2995;
+        assertEquals(ndv, g.getCell(3, 5));
+        assertEquals(-8, g.getCell(0, 8));
+        assertEquals(6000, g.getCell(6, 0));
+        Grids_GridStatsShort s = g.getStats();
+        assertEquals(n, s.getN());
+        assertEquals(0, BigDecimal.valueOf(sum).compareTo(s.getSum()));
+        assertEquals(-8, s.getMin(true).shortValue());
+        assertEquals(6000, s.getMax(true).shortValue());
+        Object[] q = s.getQuantileClassMap(3);
+        assertEquals(3, ((Map<?, ?>) q[2]).size());
+        // Conversions.
+        Grids_GridInt gi = gp.toInt(g);
+        assertEquals(gi.getNoDataValue(), gi.getCell(3, 5));
+        Grids_GridShort g2 = (Grids_GridShort) gfs.create(gi);
+        Grids_GridByte gb = gp.toByte(g);
+        Grids_GridShort g3 = (Grids_GridShort) gfs.create(gb);
+        for (int r = 0; r < 7; r++) {
+            for (int c = 0; c < 9; c++) {
+                short v = g.getCell(r, c);
+                assertEquals(v, g2.getCell(r, c));
+                assertEquals(gb.getCell(r, c) == gb.getNoDataValue() ? ndv
+                        : gb.getCell(r, c), g3.getCell(r, c));
+                if (v == ndv) {
+                    assertEquals(gi.getNoDataValue(), gi.getCell(r, c));
+                } else {
+                    assertEquals(v, gi.getCell(r, c));
+                }
+                if (v >= Byte.MIN_VALUE && v <= Byte.MAX_VALUE) {
+                    assertEquals(v, gb.getCell(r, c));
+                } else {
+                    assertEquals(gb.getNoDataValue(), gb.getCell(r, c));
+                }
+            }
+        }
+    }
+
+    /**
+     * Test of getting and setting cells, stats and conversions for a
+     * {@link Grids_GridByte}.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testByteGrid() throws Exception {
+        System.out.println("byteGrid");
+        Grids_GridFactoryByte gfb = gp.gridFactoryByte;
+        gfb.setChunkNRows(3);
+        gfb.setChunkNCols(4);
+        Grids_GridByte g = (Grids_GridByte) gfb.create(7, 9);
+        byte ndv = g.getNoDataValue();
+        assertEquals(Byte.MIN_VALUE, ndv);
+        assertEquals(ndv, g.getCell(6, 8));
+        // Cells not in the grid are no data and can not be set.
+        assertEquals(ndv, g.getCell(0, 9));
+        assertEquals(ndv, g.setCell(0, 9, (byte) 1));
+        long n = 0;
+        long sum = 0;
+        for (int r = 0; r < 7; r++) {
+            for (int c = 0; c < 9; c++) {
+                byte v = (byte) (r * 10 - c);
+                assertEquals(ndv, g.setCell(r, c, v));
+                n++;
+                sum += v;
+            }
+        }
+        assertEquals(35, g.setCell(4, 5, ndv));
+        n--;
+        sum -= 35;
+        assertEquals(ndv, g.getCell(4, 5));
+        assertEquals(-8, g.getCell(0, 8));
+        assertEquals(60, g.getCell(6, 0));
+        Grids_GridStatsByte s = g.getStats();
+        assertEquals(n, s.getN());
+        assertEquals(0, BigDecimal.valueOf(sum).compareTo(s.getSum()));
+        assertEquals(-8, s.getMin(true).byteValue());
+        assertEquals(60, s.getMax(true).byteValue());
+        Object[] q = s.getQuantileClassMap(3);
+        assertEquals(3, ((Map<?, ?>) q[2]).size());
+        // Conversions.
+        Grids_GridShort gs = gp.toShort(g);
+        Grids_GridInt gi = gp.toInt(g);
+        gi.setCell(0, 0, 300);
+        Grids_GridByte g2 = (Grids_GridByte) gfb.create(gi);
+        // 300 is out of the range of a byte.
+        assertEquals(ndv, g2.getCell(0, 0));
+        Grids_GridByte g3 = (Grids_GridByte) gfb.create(gs);
+        for (int r = 0; r < 7; r++) {
+            for (int c = 0; c < 9; c++) {
+                if (r == 0 && c == 0) {
+                    continue;
+                }
+                byte v = g.getCell(r, c);
+                assertEquals(v, g2.getCell(r, c));
+                assertEquals(v, g3.getCell(r, c));
+                if (v == ndv) {
+                    assertEquals(gs.getNoDataValue(), gs.getCell(r, c));
+                    assertEquals(gi.getNoDataValue(), gi.getCell(r, c));
+                } else {
+                    assertEquals(v, gs.getCell(r, c));
+                    assertEquals(v, gi.getCell(r, c));
+                }
+            }
+        }
+    }
+
+    /**
+     * Test of getting and setting cells, stats and conversions for a
+     * {@link Grids_GridFloat}.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testFloatGrid() throws Exception {
+        System.out.println("floatGrid");
+        Grids_GridFactoryFloat gff = gp.gridFactoryFloat;
+        gff.setChunkNRows(3);
+        gff.setChunkNCols(4);
+        Grids_GridFloat g = (Grids_GridFloat) gff.create(7, 9);
+        float ndv = g.getNoDataValue();
+        assertEquals(-Float.MAX_VALUE, ndv);
+        assertEquals(ndv, g.getCell(6, 8));
+        // Cells not in the grid are no data and can not be set.
+        assertEquals(ndv, g.getCell(-1, 0));
+        assertEquals(ndv, g.setCell(-1, 0, 1f));
+        long n = 0;
+        BigDecimal sum = BigDecimal.ZERO;
+        for (int r = 0; r < 7; r++) {
+            for (int c = 0; c < 9; c++) {
+                // These values are exact in binary.
+                float v = r * 1.5f - c * 0.25f;
+                assertEquals(ndv, g.setCell(r, c, v));
+                n++;
+                sum = sum.add(new BigDecimal(v));
+            }
+        }
+        assertEquals(3.75f, g.setCell(3, 3, ndv));
+        n--;
+        sum = sum.subtract(new BigDecimal(3.75f));
+        assertEquals(ndv, g.getCell(3, 3));
+        assertEquals(-2f, g.getCell(0, 8));
+        assertEquals(9f, g.getCell(6, 0));
+        Grids_GridStatsFloat s = g.getStats();
+        assertEquals(n, s.getN());
+        assertEquals(0, sum.compareTo(s.getSum()));
+        assertEquals(-2f, s.getMin(true).floatValue());
+        assertEquals(9f, s.getMax(true).floatValue());
+        Object[] q = s.getQuantileClassMap(3);
+        assertEquals(3, ((Map<?, ?>) q[2]).size());
+        // Conversions.
+        Grids_GridFactoryDouble gfd = gp.gridFactoryDouble;
+        gfd.setChunkNRows(3);
+        gfd.setChunkNCols(4);
+        Grids_GridDouble gd = (Grids_GridDouble) gfd.create(g);
+        assertEquals(gd.getNoDataValue(), gd.getCell(3, 3));
+        gd.setCell(0, 0, 1E40d);
+        Grids_GridFloat g2 = (Grids_GridFloat) gff.create(gd);
+        // 1E40 is out of the range of a float.
+        assertEquals(ndv, g2.getCell(0, 0));
+        Grids_GridFloat g3 = (Grids_GridFloat) gff.create(g, 1, 2, 6, 8);
+        assertEquals(6, g3.getNRows());
+        assertEquals(7, g3.getNCols());
+        for (int r = 0; r < 7; r++) {
+            for (int c = 0; c < 9; c++) {
+                if (r == 0 && c == 0) {
+                    continue;
+                }
+                float v = g.getCell(r, c);
+                assertEquals(v, g2.getCell(r, c));
+                if (r > 0 && c > 1) {
+                    assertEquals(v, g3.getCell(r - 1, c - 2));
+                }
+                if (v != ndv) {
+                    assertEquals(v, gd.getCell(r, c));
+                }
+            }
+        }
+        // Import from an ESRI ASCII grid, the first line of which is the top row.
+        Path asc = Files.createTempFile("float", ".asc");
+        Files.write(asc, ("ncols 3\nnrows 2\nxllcorner 0\nyllcorner 0\n"
+                + "cellsize 1\nNODATA_value -9999\n1.5 -9999 3\n4 5.25 6\n")
+                .getBytes());
+        Grids_GridFloat g4 = (Grids_GridFloat) gff.create(new Generic_Path(asc));
+        Files.delete(asc);
+        assertEquals(2, g4.getNRows());
+        assertEquals(3, g4.getNCols());
+        assertEquals(1.5f, g4.getCell(1, 0));
+        assertEquals(g4.getNoDataValue(), g4.getCell(1, 1));
+        assertEquals(5.25f, g4.getCell(0, 1));
+        assertEquals(5L, g4.getStats().getN());
+    }
+
+    /**
+     * Test of compacting chunks.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testCompact() throws Exception {
+        System.out.println("compact");
+        Grids_GridFactoryDouble gfd = gp.gridFactoryDouble;
+        gfd.setChunkNRows(16);
+        gfd.setChunkNCols(16);
+        Grids_GridDouble g = (Grids_GridDouble) gfd.create(32, 32);
+        double ndv = g.getNoDataValue();
+        for (int r = 0; r < 16; r++) {
+            for (int c = 0; c < 16; c++) {
+                g.setCell(r, c, 5d);
+                g.setCell(r + 16, c, r * 16 + c);
+            }
+        }
+        g.setCell(0, 16, 1d);
+        g.setCell(0, 17, 2d);
+        g.setCell(15, 31, 1d);
+        Grids_2D_ID_int i00 = new Grids_2D_ID_int(0, 0);
+        Grids_2D_ID_int i01 = new Grids_2D_ID_int(0, 1);
+        Grids_2D_ID_int i10 = new Grids_2D_ID_int(1, 0);
+        long m = g.getChunk(i01).getMemoryFootprint();
+        assertEquals(2, g.compact());
+        assertTrue(g.getChunk(i00) instanceof Grids_ChunkDoubleSinglet);
+        assertTrue(g.getChunk(i01) instanceof Grids_ChunkDoubleMap);
+        assertTrue(g.getChunk(i10) instanceof Grids_ChunkDoubleArray);
+        assertTrue(g.getChunk(i01).getMemoryFootprint() < m);
+        assertEquals(0, g.compact());
+        assertEquals(5d, g.getCell(15, 15));
+        assertEquals(2d, g.getCell(0, 17));
+        assertEquals(ndv, g.getCell(1, 17));
+        assertEquals(255d, g.getCell(31, 15));
+        // Pinned chunks are not compacted.
+        g.pin(i01);
+        for (int c = 16; c < 32; c++) {
+            g.setCell(1, c, c);
+        }
+        assertFalse(g.compact(i01));
+        g.unpin(i01);
+        // Swapped chunks are compacted if the grid is adaptive.
+        g.setAdaptive(true);
+        for (int r = 0; r < 16; r++) {
+            for (int c = 0; c < 16; c++) {
+                g.setCell(r + 16, c, 7d);
+            }
+        }
+        assertTrue(g.swapChunk(i10));
+        assertTrue(g.getChunk(i10) instanceof Grids_ChunkDoubleSinglet);
+        assertEquals(7d, g.getCell(20, 3));
+        assertEquals(17d, g.getCell(1, 17));
+    }
+
+    /**
+     * Test of BigDecimal chunks held in fixed point.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testScaledBD() throws Exception {
+        System.out.println("scaledBD");
+        Grids_GridFactoryBD gf = ge.getProcessor().gridFactoryBD;
+        Grids_ChunkFactoryBD dcf = gf.defaultGridChunkBDFactory;
+        gf.setDefaultChunkFactory(new Grids_ChunkFactoryBDScaled());
+        gf.setChunkNRows(4);
+        gf.setChunkNCols(4);
+        Grids_GridBD g = (Grids_GridBD) gf.create(8, 8);
+        Grids_GridBD g2 = (Grids_GridBD) gf.create(8, 8);
+        BigDecimal ndv = g.getNoDataValue();
+        for (int r = 0; r < 8; r++) {
+            for (int c = 0; c < 8; c++) {
+                g.setCell(r, c, BigDecimal.valueOf(r * 8 + c));
+                g2.setCell(r, c, new BigDecimal("0.25"));
+            }
+        }
+        g.setCell(0, 1, ndv);
+        g.setCell(0, 2, new BigDecimal("1.125"));
+        Grids_2D_ID_int i = new Grids_2D_ID_int(0, 0);
+        assertTrue(g.getChunk(i) instanceof Grids_ChunkBDScaled);
+        assertEquals(3, ((Grids_ChunkBDScaled) g.getChunk(i)).getScale());
+        assertEquals(0, new BigDecimal("1.125").compareTo(g.getCell(0, 2)));
+        assertEquals(0, ndv.compareTo(g.getCell(0, 1)));
+        assertEquals(0, new BigDecimal("9").compareTo(g.getCell(1, 1)));
+        // Arithmetic in fixed point.
+        g.add(g2);
+        g.multiply(new BigDecimal("2"));
+        g.add(BigDecimal.ONE);
+        assertTrue(g.getChunk(i) instanceof Grids_ChunkBDScaled);
+        assertEquals(0, new BigDecimal("19.5").compareTo(g.getCell(1, 1)));
+        assertEquals(0, new BigDecimal("1.5").compareTo(g.getCell(0, 1)));
+        assertEquals(0, new BigDecimal("3.75").compareTo(g.getCell(0, 2)));
+        // Values that cannot be held in fixed point.
+        BigDecimal v = new BigDecimal("1E-30");
+        g.setCell(5, 5, v);
+        Grids_2D_ID_int i11 = new Grids_2D_ID_int(1, 1);
+        assertTrue(g.getChunk(i11) instanceof Grids_ChunkBDArray);
+        assertEquals(0, v.compareTo(g.getCell(5, 5)));
+        // Swapped chunks are read back in fixed point.
+        assertTrue(g.swapChunk(i));
+        assertTrue(g.getChunk(i) instanceof Grids_ChunkBDScaled);
+        assertEquals(0, new BigDecimal("19.5").compareTo(g.getCell(1, 1)));
+        // Compacted chunks are held in fixed point where they can be.
+        g.setCell(5, 5, BigDecimal.TEN);
+        g.compact(i11);
+        assertTrue(g.getChunk(i11) instanceof Grids_ChunkBDScaled);
+        assertEquals(0, BigDecimal.TEN.compareTo(g.getCell(5, 5)));
+        gf.setDefaultChunkFactory(dcf);
+    }
+
+    /**
+     * Test of reading chunks ahead.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testPrefetch() throws Exception {
+        System.out.println("prefetch");
+        Grids_GridFactoryDouble gfd = gp.gridFactoryDouble;
+        gfd.setChunkNRows(2);
+        gfd.setChunkNCols(2);
+        Grids_GridDouble g = (Grids_GridDouble) gfd.create(8, 8);
+        for (int r = 0; r < 8; r++) {
+            for (int c = 0; c < 8; c++) {
+                g.setCell(r, c, r * 8 + c);
+            }
+        }
+        g.swapChunks();
+        ge.awaitWrites();
+        ge.setPrefetch(1, 2, 8);
+        Grids_ChunkPrefetcher p = ge.getPrefetcher();
+        assertEquals(4d * 8 + 5, g.getCell(4, 5));
+        // Chunks (2, 3) and (3, 0) are read ahead.
+        assertEquals(2L, p.getIssued());
+        for (int r = 0; r < 8; r++) {
+            for (int c = 0; c < 8; c++) {
+                assertEquals(r * 8 + c, g.getCell(r, c));
+            }
+        }
+        assertTrue(p.getOutstanding() <= p.getLimit());
+        p.clear();
+        assertEquals(0, p.getOutstanding());
+        g.swapChunks();
+        ge.awaitWrites();
+        long issued = p.getIssued();
+        // The window for chunk (0, 1) is chunk rows 0 to 1 and columns 0 to 2.
+        p.prefetchWindow(g, 0, 0, 2);
+        assertEquals(issued + 6, p.getIssued());
+        assertEquals(17d, g.getCell(2, 1));
+        // A chunk read ahead which is then loaded another way, changed and
+        // swapped is stale and is not used.
+        ge.setPrefetch(1, 0, 8);
+        p = ge.getPrefetcher();
+        g.swapChunks();
+        ge.awaitWrites();
+        Grids_2D_ID_int i = new Grids_2D_ID_int(1, 1);
+        p.prefetch(g, i);
+        assertEquals(1, p.getOutstanding());
+        g.putChunk(i, g.readChunk(i));
+        g.setCell(2, 2, -1d);
+        assertTrue(g.swapChunk(i));
+        ge.awaitWrites();
+        assertEquals(-1d, g.getCell(2, 2));
+        assertEquals(0, p.getOutstanding());
+        ge.setPrefetch(0, 0, 0);
+        assertNull(ge.getPrefetcher());
+        assertEquals(63d, g.getCell(7, 7));
+    }
+
+    /**
+     * Test that pinned chunks are not swapped and that several threads can
+     * set cells in different chunks of a grid while chunks are swapped.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testConcurrentChunkAccess() throws Exception {
+        System.out.println("concurrentChunkAccess");
+        Grids_GridFactoryDouble gfd = gp.gridFactoryDouble;
+        gfd.setChunkNRows(2);
+        gfd.setChunkNCols(2);
+        Grids_GridDouble g = (Grids_GridDouble) gfd.create(8, 8);
+        Grids_2D_ID_int i = new Grids_2D_ID_int(1, 1);
+        g.setCell(2, 2, 1d);
+        g.pin(i);
+        g.pin(i);
+        assertFalse(g.swapChunk(i));
+        // Clearing not to clear marks does not release pins.
+        ge.addToNotToClear(g, i);
+        ge.removeFromNotToClear(g, i);
+        ge.removeFromNotToClear(g);
+        ge.initNotToClear();
+        assertTrue(g.isPinned(i));
+        assertFalse(g.swapChunk(i));
+        g.unpin(i);
+        assertTrue(g.isPinned(i));
+        g.swapChunks();
+        assertTrue(g.isLoaded(i));
+        g.unpin(i);
+        assertFalse(g.isPinned(i));
+        assertTrue(g.swapChunk(i));
+        assertFalse(g.isLoaded(i));
+        int n = 4;
+        Thread[] ts = new Thread[n];
+        Exception[] es = new Exception[n + 1];
+        AtomicBoolean done = new AtomicBoolean();
+        Thread swapper = new Thread(() -> {
+            try {
+                while (!done.get()) {
+                    g.swapChunks();
+                }
+            } catch (Exception ex) {
+                es[n] = ex;
+            }
+        });
+        swapper.start();
+        for (int t = 0; t < n; t++) {
+            int cr = t;
+            ts[t] = new Thread(() -> {
+                try {
+                    for (int cc = 0; cc < 4; cc++) {
+                        Grids_2D_ID_int ci = new Grids_2D_ID_int(cr, cc);
+                        g.pin(ci);
+                        try {
+                            for (int r = cr * 2; r < cr * 2 + 2; r++) {
+                                for (int c = cc * 2; c < cc * 2 + 2; c++) {
+                                    g.setCell(r, c, r * 8 + c);
+                                }
+                            }
+                        } finally {
+                            g.unpin(ci);
+                        }
+                    }
+                } catch (Exception ex) {
+                    es[cr] = ex;
+                }
+            });
+            ts[t].start();
+        }
+        for (Thread t : ts) {
+            t.join();
+        }
+        done.set(true);
+        swapper.join();
+        for (Exception e : es) {
+            assertNull(e);
+        }
+        ge.awaitWrites();
+        for (int r = 0; r < 8; r++) {
+            for (int c = 0; c < 8; c++) {
+                assertEquals(r * 8 + c, g.getCell(r, c));
+            }
+        }
+    }
+
+    /**
+     * Test that chunks are got by chunk row and column from the chunk table
+     * and that it is kept in step as chunks are swapped, loaded and replaced.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testChunkTable() throws Exception {
+        System.out.println("chunkTable");
+        Grids_GridFactoryDouble gfd = gp.gridFactoryDouble;
+        gfd.setChunkNRows(2);
+        gfd.setChunkNCols(2);
+        Grids_GridDouble g = (Grids_GridDouble) gfd.create(8, 6);
+        assertTrue(g.isChunkTableEnabled());
+        g.setCell(5, 3, 1d);
+        Grids_2D_ID_int i = new Grids_2D_ID_int(2, 1);
+        assertSame(g.getChunk(i), g.getLoadedChunk(2, 1));
+        assertSame(g.getChunk(i), g.getChunk(2, 1));
+        assertTrue(g.swapChunk(i));
+        ge.awaitWrites();
+        assertNull(g.getLoadedChunk(2, 1));
+        assertNull(g.getLoadedChunk(4, 0));
+        assertNull(g.getLoadedChunk(-1, 0));
+        assertEquals(1d, g.getCell(5, 3));
+        assertSame(g.getChunk(i), g.getLoadedChunk(2, 1));
+        g.setChunkTableEnabled(false);
+        assertFalse(g.isChunkTableEnabled());
+        assertNull(g.getLoadedChunk(2, 1));
+        assertSame(g.getChunk(i), g.getChunk(2, 1));
+        g.setCell(4, 2, 2d);
+        g.setChunkTableEnabled(true);
+        assertSame(g.getChunk(i), g.getLoadedChunk(2, 1));
+        g.swapChunks();
+        ge.awaitWrites();
+        assertNull(g.getLoadedChunk(2, 1));
+        for (int cr = 0; cr < 4; cr++) {
+            for (int cc = 0; cc < 3; cc++) {
+                assertEquals(g.isLoaded(new Grids_2D_ID_int(cr, cc)),
+                        g.getLoadedChunk(cr, cc) != null);
+            }
+        }
+        assertEquals(2d, g.getCell(4, 2));
+        assertEquals(1d, g.getCell(5, 3));
+        assertSame(g.getChunk(i), g.getChunk(2, 1));
+    }
+
+    /**
+     * Test of getting and setting cells with cursors.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testCursor() throws Exception {
+        System.out.println("cursor");
+        Grids_GridFactoryDouble gfd = gp.gridFactoryDouble;
+        gfd.setChunkNRows(2);
+        gfd.setChunkNCols(2);
+        Grids_GridDouble g = (Grids_GridDouble) gfd.create(5, 6);
+        double ndv = g.getNoDataValue();
+        try (Grids_GridCursorDouble c = g.cursor()) {
+            for (int r = 0; r < 5; r++) {
+                for (int col = 0; col < 6; col++) {
+                    c.moveTo(r, col);
+                    assertEquals(ndv, c.set(r * 6 + col));
+                    // The chunk may have been converted to another type.
+                    assertEquals(r * 6 + col, c.get());
+                }
+            }
+            Grids_2D_ID_int i = c.getChunkID();
+            assertEquals(new Grids_2D_ID_int(2, 2), i);
+            assertTrue(g.isPinned(i));
+            assertFalse(g.swapChunk(i));
+            c.moveTo(2, 3);
+            for (int dr = -1; dr < 2; dr++) {
+                for (int dc = -1; dc < 2; dc++) {
+                    assertEquals(g.getCell(2 + dr, 3 + dc), c.get(dr, dc));
+                }
+            }
+            assertFalse(g.isPinned(i));
+            c.move(2, 2);
+            assertEquals(29d, c.get());
+            assertEquals(ndv, c.get(1, 0));
+            assertEquals(ndv, c.set(0, 1, 1d));
+            c.moveTo(-1, 0);
+            assertEquals(ndv, c.get());
+            assertEquals(0d, c.get(1, 0));
+            assertEquals(6d, c.set(2, 0, -6d));
+        }
+        assertTrue(g.getPinned().isEmpty());
+        assertEquals(-6d, g.getCell(1, 0));
+        g.swapChunks();
+        ge.awaitWrites();
+        Grids_GridInt gi = (Grids_GridInt) gp.gridFactoryInt.create(3, 3);
+        try (Grids_GridCursorInt c = gi.cursor()) {
+            c.moveTo(1, 1);
+            c.set(1, 1, 5);
+            assertEquals(5, c.get(1, 1));
+            assertEquals(gi.getNoDataValue(), c.get(-2, 0));
+        }
+        assertEquals(5, gi.getCell(2, 2));
+        for (int r = 0; r < 5; r++) {
+            for (int col = 0; col < 6; col++) {
+                if (!(r == 1 && col == 0)) {
+                    assertEquals(r * 6 + col, g.getCell(r, col));
+                }
+            }
+        }
+    }
 }
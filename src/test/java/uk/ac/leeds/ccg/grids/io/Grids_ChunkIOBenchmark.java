@@ -0,0 +1,117 @@
+/*
+ * Copyright 2020 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.grids.io;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import uk.ac.leeds.ccg.generic.core.Generic_Environment;
+import uk.ac.leeds.ccg.generic.io.Generic_Defaults;
+import uk.ac.leeds.ccg.generic.io.Generic_IO;
+import uk.ac.leeds.ccg.generic.io.Generic_Path;
+import uk.ac.leeds.ccg.grids.core.Grids_Environment;
+import uk.ac.leeds.ccg.grids.core.Grids_Strings;
+import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
+import uk.ac.leeds.ccg.grids.d2.chunk.Grids_Chunk;
+import uk.ac.leeds.ccg.grids.d2.grid.Grids_Grid;
+import uk.ac.leeds.ccg.grids.d2.grid.d.Grids_GridDouble;
+import uk.ac.leeds.ccg.grids.d2.grid.i.Grids_GridInt;
+import uk.ac.leeds.ccg.grids.process.Grids_Processor;
+
+/**
+ * A benchmark comparing the number of bytes written and the time taken to
+ * store and load chunks using {@link Grids_ChunkIO} and using Java Object
+ * Serialization via {@link Generic_IO}. This is not run as part of the tests.
+ * Run it with an optional argument for the number of rows and columns of the
+ * chunk benchmarked (default and maximum 512 - the default chunk size) e.g.:
+ * {@code java uk.ac.leeds.ccg.grids.io.Grids_ChunkIOBenchmark 256}
+ *
+ * @author Andy Turner
+ * @version 1.0.0
+ */
+public class Grids_ChunkIOBenchmark {
+
+    /**
+     * The number of times each store and load is repeated.
+     */
+    static final int REPEATS = 20;
+
+    public static void main(String[] args) throws Exception {
+        int n = args.length > 0 ? Math.min(512, Integer.parseInt(args[0]))
+                : 512;
+        Path dataDir = Paths.get(System.getProperty("user.home"),
+                Grids_Strings.s_data);
+        Generic_Environment env = new Generic_Environment(new Generic_Defaults(
+                Paths.get(dataDir.toString(), Grids_Strings.s_generic)));
+        Grids_Environment ge = new Grids_Environment(env,
+                new Generic_Path(dataDir));
+        Grids_Processor gp = new Grids_Processor(ge);
+        Grids_GridDouble gd = (Grids_GridDouble) gp.gridFactoryDouble.create(
+                n, n);
+        Grids_GridInt gi = (Grids_GridInt) gp.gridFactoryInt.create(n, n);
+        for (int r = 0; r < n; r++) {
+            for (int c = 0; c < n; c++) {
+                gd.setCell(r, c, Math.sin(r) * c);
+                gi.setCell(r, c, r * c);
+            }
+        }
+        run(gd, n);
+        run(gi, n);
+    }
+
+    static void run(Grids_Grid g, int n) throws Exception {
+        Grids_2D_ID_int i = new Grids_2D_ID_int(0, 0);
+        Grids_Chunk c = g.getChunk(i);
+        Path p = Files.createTempFile(null, null);
+        String name = c.getClass().getSimpleName() + " " + n + "x" + n;
+        // Warm up.
+        for (int k = 0; k < REPEATS; k++) {
+            Generic_IO.writeObject(c, p);
+            Generic_IO.readObject(p);
+            Grids_ChunkIO.write(c, p);
+            Grids_ChunkIO.read(g, i, p);
+        }
+        long t0 = System.nanoTime();
+        for (int k = 0; k < REPEATS; k++) {
+            Generic_IO.writeObject(c, p);
+        }
+        long t1 = System.nanoTime();
+        long bytesSerialized = Files.size(p);
+        for (int k = 0; k < REPEATS; k++) {
+            Generic_IO.readObject(p);
+        }
+        long t2 = System.nanoTime();
+        for (int k = 0; k < REPEATS; k++) {
+            Grids_ChunkIO.write(c, p);
+        }
+        long t3 = System.nanoTime();
+        long bytesChunkIO = Files.size(p);
+        for (int k = 0; k < REPEATS; k++) {
+            Grids_ChunkIO.read(g, i, p);
+        }
+        long t4 = System.nanoTime();
+        Files.delete(p);
+        System.out.println(name);
+        System.out.println("Serialization: bytes=" + bytesSerialized
+                + " store=" + ms(t1 - t0) + "ms load=" + ms(t2 - t1) + "ms");
+        System.out.println("Grids_ChunkIO: bytes=" + bytesChunkIO
+                + " store=" + ms(t3 - t2) + "ms load=" + ms(t4 - t3) + "ms");
+    }
+
+    static String ms(long nanos) {
+        return String.format("%.3f", nanos / 1000000d / REPEATS);
+    }
+}
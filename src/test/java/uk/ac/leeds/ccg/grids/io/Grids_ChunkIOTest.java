@@ -0,0 +1,456 @@
+/*
+ * Copyright 2020 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.grids.io;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import uk.ac.leeds.ccg.generic.core.Generic_Environment;
+import uk.ac.leeds.ccg.generic.io.Generic_Defaults;
+import uk.ac.leeds.ccg.generic.io.Generic_IO;
+import uk.ac.leeds.ccg.generic.io.Generic_Path;
+import uk.ac.leeds.ccg.grids.core.Grids_Environment;
+import uk.ac.leeds.ccg.grids.core.Grids_Strings;
+import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
+import uk.ac.leeds.ccg.grids.d2.chunk.Grids_Chunk;
+import uk.ac.leeds.ccg.grids.d2.chunk.b.Grids_ChunkBinary;
+import uk.ac.leeds.ccg.grids.d2.chunk.b.Grids_ChunkBoolean;
+import uk.ac.leeds.ccg.grids.d2.chunk.b.Grids_ChunkBooleanArray;
+import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkDouble;
+import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkDoubleArray;
+import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkDoubleMap;
+import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkDoubleSinglet;
+import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkFactoryDoubleArray;
+import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkFactoryDoubleMap;
+import uk.ac.leeds.ccg.grids.d2.chunk.f.Grids_ChunkFloat;
+import uk.ac.leeds.ccg.grids.d2.chunk.f.Grids_ChunkFloatArray;
+import uk.ac.leeds.ccg.grids.d2.chunk.f.Grids_ChunkFloatSinglet;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkByte;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkByteArray;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkFactoryIntMap;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkInt;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkIntMap;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkIteratorIntMapASpatial;
+import uk.ac.leeds.ccg.grids.d2.chunk.i.Grids_ChunkShort;
+import uk.ac.leeds.ccg.grids.d2.grid.b.Grids_GridBinary;
+import uk.ac.leeds.ccg.grids.d2.grid.b.Grids_GridBoolean;
+import uk.ac.leeds.ccg.grids.d2.grid.d.Grids_GridDouble;
+import uk.ac.leeds.ccg.grids.d2.grid.f.Grids_GridFloat;
+import uk.ac.leeds.ccg.grids.d2.grid.i.Grids_GridByte;
+import uk.ac.leeds.ccg.grids.d2.grid.i.Grids_GridInt;
+import uk.ac.leeds.ccg.grids.d2.grid.i.Grids_GridShort;
+import uk.ac.leeds.ccg.grids.process.Grids_Processor;
+
+/**
+ * Tests for {@link Grids_ChunkIO}.
+ *
+ * @author Andy Turner
+ * @version 1.0.0
+ */
+public class Grids_ChunkIOTest {
+
+    Generic_Environment env;
+    Grids_Environment ge;
+    Grids_Processor gp;
+
+    public Grids_ChunkIOTest() {
+    }
+
+    @BeforeAll
+    public static void setUpClass() {
+    }
+
+    @AfterAll
+    public static void tearDownClass() {
+    }
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        Path dataDir = Paths.get(System.getProperty("user.home"),
+                Grids_Strings.s_data);
+        env = new Generic_Environment(new Generic_Defaults(
+                Paths.get(dataDir.toString(), Grids_Strings.s_generic)));
+        Generic_Path dir = new Generic_Path(dataDir);
+        ge = new Grids_Environment(env, dir);
+        gp = new Grids_Processor(ge);
+    }
+
+    @AfterEach
+    public void tearDown() {
+    }
+
+    /**
+     * Test of write and read methods, of class Grids_ChunkIO for double
+     * chunks.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testWriteReadDouble() throws Exception {
+        System.out.println("writeReadDouble");
+        Grids_GridDouble g = (Grids_GridDouble) gp.gridFactoryDouble.create(
+                10, 13);
+        for (int r = 0; r < 10; r++) {
+            for (int c = 0; c < 13; c++) {
+                g.setCell(r, c, r * 0.5d + c);
+            }
+        }
+        Grids_2D_ID_int i = new Grids_2D_ID_int(0, 0);
+        Grids_ChunkDouble c = (Grids_ChunkDouble) g.getChunk(i);
+        assertTrue(c instanceof Grids_ChunkDoubleArray);
+        Path p = Files.createTempFile(null, null);
+        long n = Grids_ChunkIO.write(c, p);
+        assertEquals(Grids_ChunkIO.HEADER_LENGTH + 10 * 13 * 8, n);
+        assertEquals(n, Files.size(p));
+        Grids_ChunkDouble c2 = (Grids_ChunkDouble) Grids_ChunkIO.read(g, i, p);
+        assertTrue(c2 instanceof Grids_ChunkDoubleArray);
+        assertTrue(c2.isCacheUpToDate());
+        for (int r = 0; r < 10; r++) {
+            for (int col = 0; col < 13; col++) {
+                assertEquals(c.getCell(r, col), c2.getCell(r, col));
+            }
+        }
+        // Bulk access
+        double[] vs = new double[10 * 13];
+        c2.copyInto(vs, 0);
+        assertEquals(c.getCell(3, 4), vs[3 * 13 + 4]);
+        double[] row = new double[13];
+        c.getRow(2, row, 0);
+        row[0] = -1d;
+        c2.setRow(2, row, 0);
+        assertFalse(c2.isCacheUpToDate());
+        assertEquals(-1d, c2.getCell(2, 0));
+        assertEquals(c.getCell(2, 5), c2.getCell(2, 5));
+        // Singlet
+        c = new Grids_ChunkDoubleSinglet(g, i, 3.5d);
+        n = Grids_ChunkIO.write(c, p);
+        assertEquals(Grids_ChunkIO.HEADER_LENGTH + 8, n);
+        c2 = (Grids_ChunkDouble) Grids_ChunkIO.read(g, i, p);
+        assertTrue(c2 instanceof Grids_ChunkDoubleSinglet);
+        assertEquals(3.5d, c2.getCell(1, 2));
+        Files.delete(p);
+    }
+
+    /**
+     * Test of write and read methods, of class Grids_ChunkIO for float
+     * chunks.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testWriteReadFloat() throws Exception {
+        System.out.println("writeReadFloat");
+        Grids_GridFloat g = (Grids_GridFloat) gp.gridFactoryFloat.create(10,
+                13);
+        Grids_GridDouble gd = (Grids_GridDouble) gp.gridFactoryDouble.create(
+                10, 13);
+        for (int r = 0; r < 10; r++) {
+            for (int c = 0; c < 13; c++) {
+                g.setCell(r, c, r * 0.1f + c);
+                gd.setCell(r, c, r * 0.1d + c);
+            }
+        }
+        Grids_2D_ID_int i = new Grids_2D_ID_int(0, 0);
+        Grids_ChunkFloat c = (Grids_ChunkFloat) g.getChunk(i);
+        assertTrue(c instanceof Grids_ChunkFloatArray);
+        assertTrue(c.getMemoryFootprint()
+                < gd.getChunk(i).getMemoryFootprint());
+        Path p = Files.createTempFile(null, null);
+        long n = Grids_ChunkIO.write(c, p);
+        assertEquals(Grids_ChunkIO.HEADER_LENGTH + 10 * 13 * 4, n);
+        Grids_ChunkFloat c2 = (Grids_ChunkFloat) Grids_ChunkIO.read(g, i, p);
+        assertTrue(c2 instanceof Grids_ChunkFloatArray);
+        for (int r = 0; r < 10; r++) {
+            for (int col = 0; col < 13; col++) {
+                assertEquals(c.getCell(r, col), c2.getCell(r, col));
+            }
+        }
+        // Singlet
+        c = new Grids_ChunkFloatSinglet(g, i, 3.5f);
+        n = Grids_ChunkIO.write(c, p);
+        assertEquals(Grids_ChunkIO.HEADER_LENGTH + 4, n);
+        c2 = (Grids_ChunkFloat) Grids_ChunkIO.read(g, i, p);
+        assertTrue(c2 instanceof Grids_ChunkFloatSinglet);
+        assertEquals(3.5f, c2.getCell(1, 2));
+        Files.delete(p);
+        // A float grid from a double grid.
+        Grids_GridFloat g2 = (Grids_GridFloat) gp.gridFactoryFloat.create(gd);
+        assertEquals(9 * 0.1f + 12f, g2.getCell(9, 12));
+        assertEquals(g.getNoDataValue(), g2.getNoDataValue());
+    }
+
+    /**
+     * Test of write and read methods, of class Grids_ChunkIO for byte and
+     * short chunks converted from an int grid.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testWriteReadByteShort() throws Exception {
+        System.out.println("writeReadByteShort");
+        Grids_GridInt gi = (Grids_GridInt) gp.gridFactoryInt.create(10, 13);
+        for (int r = 0; r < 10; r++) {
+            for (int c = 0; c < 13; c++) {
+                gi.setCell(r, c, (r * 13 + c) * 3 - 100);
+            }
+        }
+        Grids_GridByte gb = gp.toByte(gi);
+        Grids_GridShort gs = gp.toShort(gi);
+        assertEquals(-100, gb.getCell(0, 0));
+        // 253 is out of the range of a byte.
+        assertEquals(gb.getNoDataValue(), gb.getCell(9, 12));
+        assertEquals(287, gs.getCell(9, 12));
+        assertEquals(gi.getNoDataValue(), gp.toInt(gb).getCell(9, 12));
+        assertEquals(287, gp.toInt(gs).getCell(9, 12));
+        Grids_2D_ID_int i = new Grids_2D_ID_int(0, 0);
+        Grids_ChunkByte cb = gb.getChunk(i);
+        assertTrue(cb instanceof Grids_ChunkByteArray);
+        assertTrue(cb.getMemoryFootprint() < gs.getChunk(i)
+                .getMemoryFootprint());
+        assertTrue(gs.getChunk(i).getMemoryFootprint() < gi.getChunk(i)
+                .getMemoryFootprint());
+        Path p = Files.createTempFile(null, null);
+        long n = Grids_ChunkIO.write(cb, p);
+        assertEquals(Grids_ChunkIO.HEADER_LENGTH + 10 * 13, n);
+        Grids_ChunkByte cb2 = (Grids_ChunkByte) Grids_ChunkIO.read(gb, i, p);
+        Grids_ChunkShort cs = gs.getChunk(i);
+        n = Grids_ChunkIO.write(cs, p);
+        assertEquals(Grids_ChunkIO.HEADER_LENGTH + 10 * 13 * 2, n);
+        Grids_ChunkShort cs2 = (Grids_ChunkShort) Grids_ChunkIO.read(gs, i,
+                p);
+        for (int r = 0; r < 10; r++) {
+            for (int c = 0; c < 13; c++) {
+                assertEquals(cb.getCell(r, c), cb2.getCell(r, c));
+                assertEquals(cs.getCell(r, c), cs2.getCell(r, c));
+            }
+        }
+        Files.delete(p);
+    }
+
+    /**
+     * Test of write and read methods, of class Grids_ChunkIO for int, binary
+     * and boolean chunks.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testWriteReadIntBinaryBoolean() throws Exception {
+        System.out.println("writeReadIntBinaryBoolean");
+        Grids_2D_ID_int i = new Grids_2D_ID_int(0, 0);
+        Path p = Files.createTempFile(null, null);
+        Grids_GridInt gi = (Grids_GridInt) gp.gridFactoryInt.create(7, 9);
+        Grids_GridBinary gb = (Grids_GridBinary) gp.gridFactoryBinary.create(
+                7, 9);
+        Grids_GridBoolean gbo = (Grids_GridBoolean) gp.gridFactoryBoolean
+                .create(7, 9);
+        long nTrue = 0;
+        for (int r = 0; r < 7; r++) {
+            for (int c = 0; c < 9; c += 2) {
+                gi.setCell(r, c, r * c);
+                gb.setCell(r, c, (r + c) % 3 == 0);
+                gbo.setCell(r, c, (r + c) % 3 == 0);
+                if ((r + c) % 3 == 0) {
+                    nTrue++;
+                }
+            }
+        }
+        Grids_ChunkInt ci = (Grids_ChunkInt) gi.getChunk(i);
+        Grids_ChunkIO.write(ci, p);
+        Grids_ChunkInt ci2 = (Grids_ChunkInt) Grids_ChunkIO.read(gi, i, p);
+        Grids_ChunkBinary cb = (Grids_ChunkBinary) gb.getChunk(i);
+        long n = Grids_ChunkIO.write(cb, p);
+        // 63 cells packed 8 to a byte.
+        assertEquals(Grids_ChunkIO.HEADER_LENGTH + 8, n);
+        Grids_ChunkBinary cb2 = (Grids_ChunkBinary) Grids_ChunkIO.read(gb, i,
+                p);
+        Grids_ChunkBoolean cbo = (Grids_ChunkBoolean) gbo.getChunk(i);
+        n = Grids_ChunkIO.write(cbo, p);
+        // 63 cells packed 4 to a byte.
+        assertEquals(Grids_ChunkIO.HEADER_LENGTH + 16, n);
+        Grids_ChunkBoolean cbo2 = (Grids_ChunkBoolean) Grids_ChunkIO.read(gbo,
+                i, p);
+        for (int r = 0; r < 7; r++) {
+            for (int c = 0; c < 9; c++) {
+                assertEquals(ci.getCell(r, c), ci2.getCell(r, c));
+                assertEquals(cb.getCell(r, c), cb2.getCell(r, c));
+                assertEquals(cbo.getCell(r, c), cbo2.getCell(r, c));
+            }
+        }
+        // Counts from the packed bits.
+        assertEquals(nTrue, (long) cb2.getN());
+        assertEquals(35L, (long) cbo2.getN());
+        assertEquals(nTrue, ((Grids_ChunkBooleanArray) cbo2).getNTrue());
+        Files.delete(p);
+    }
+
+    /**
+     * Test that files written using Java Object Serialization are not read by
+     * Grids_ChunkIO and are still loaded by the grid.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testReadSerialized() throws Exception {
+        System.out.println("readSerialized");
+        Grids_GridDouble g = (Grids_GridDouble) gp.gridFactoryDouble.create(
+                5, 5);
+        g.setCell(2, 3, 4.0d);
+        Grids_2D_ID_int i = new Grids_2D_ID_int(0, 0);
+        Grids_Chunk c = g.getChunk(i);
+        Path f = Paths.get(g.getDirectory().toString(), "0_0");
+        Generic_IO.writeObject(c, f);
+        assertFalse(Grids_ChunkIO.isChunkIOFile(f));
+        assertNull(Grids_ChunkIO.read(g, i, f));
+        g.clearChunk(i);
+        assertTrue(g.loadChunk(i));
+        assertEquals(4.0d, g.getCell(2, 3));
+    }
+
+    /**
+     * Test of write and read methods, of class Grids_ChunkIO for chunks
+     * encoded using each codec, and that a grid created by a factory with a
+     * codec set encodes the chunks it writes.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testWriteReadEncoded() throws Exception {
+        System.out.println("writeReadEncoded");
+        gp.gridFactoryDouble.setChunkNRows(32);
+        gp.gridFactoryDouble.setChunkNCols(32);
+        gp.gridFactoryDouble.setCodec(Grids_ChunkCodec.DELTA_DEFLATE);
+        Grids_GridDouble g = (Grids_GridDouble) gp.gridFactoryDouble.create(
+                40, 40);
+        gp.gridFactoryDouble.setCodec(Grids_ChunkCodec.NONE);
+        for (int r = 0; r < 40; r++) {
+            for (int c = 0; c < 40; c++) {
+                g.setCell(r, c, 250d + r * 0.125d - c * 0.5d);
+            }
+        }
+        Grids_2D_ID_int i = new Grids_2D_ID_int(0, 0);
+        Grids_Chunk c = g.getChunk(i);
+        Path p = Files.createTempFile(null, null);
+        for (byte type = Grids_ChunkCodec.NONE;
+                type <= Grids_ChunkCodec.DELTA_DEFLATE; type++) {
+            Grids_ChunkCodec codec = new Grids_ChunkCodec(type);
+            long n = Grids_ChunkIO.write(c, p, codec);
+            assertEquals(n, Files.size(p));
+            assertTrue(Grids_ChunkIO.isChunkIOFile(p));
+            if (type != Grids_ChunkCodec.NONE) {
+                assertTrue(n < Grids_ChunkIO.HEADER_LENGTH + 32 * 32 * 8);
+                assertEquals(1L, codec.getEncoded());
+                assertTrue(codec.getCompressionRatio() > 1d);
+            }
+            Grids_ChunkDouble c2 = (Grids_ChunkDouble) Grids_ChunkIO.read(g,
+                    i, p);
+            assertTrue(c2.isCacheUpToDate());
+            for (int r = 0; r < 32; r++) {
+                for (int col = 0; col < 32; col++) {
+                    assertEquals(g.getCell(r, col), c2.getCell(r, col));
+                }
+            }
+        }
+        Files.delete(p);
+        // The grid encodes and decodes swapped chunks.
+        Grids_ChunkCodec codec = g.getCodec();
+        assertEquals(Grids_ChunkCodec.DELTA_DEFLATE, codec.getType());
+        long decoded = codec.getDecoded();
+        assertTrue(g.swapChunk(i));
+        ge.awaitWrites();
+        assertEquals(1L, codec.getEncoded());
+        assertTrue(codec.getCompressionRatio() > 2d);
+        assertEquals(250d + 31 * 0.125d - 7 * 0.5d, g.getCell(31, 7));
+        assertEquals(decoded + 1L, codec.getDecoded());
+        assertTrue(codec.getEncodeThroughput() > 0d);
+    }
+
+    /**
+     * Test of write and read methods, of class Grids_ChunkIO for map chunks
+     * and of the statistics of map chunks.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testWriteReadMap() throws Exception {
+        System.out.println("writeReadMap");
+        Grids_GridInt g = (Grids_GridInt) gp.gridFactoryInt.create(10, 13);
+        int ndv = g.getNoDataValue();
+        Grids_2D_ID_int i = new Grids_2D_ID_int(0, 0);
+        Grids_ChunkIntMap c = new Grids_ChunkFactoryIntMap().create(g, i, 0);
+        c.setCell(9, 12, -7);
+        c.setCell(3, 4, 5);
+        c.setCell(1, 2, 5);
+        c.setCell(0, 0, ndv);
+        c.setCell(5, 5, 3);
+        assertEquals(3, c.setCell(5, 5, 0));
+        assertEquals(4, c.getNumberOfValuesStored());
+        assertEquals(5, c.getCell(3, 4));
+        assertEquals(0, c.getCell(5, 5));
+        assertEquals(ndv, c.getCell(0, 0));
+        assertEquals(129L, (long) c.getN());
+        assertEquals(3L, c.getSum().longValueExact());
+        assertEquals(-7, (int) c.getMin());
+        assertEquals(5, (int) c.getMax());
+        assertEquals(0d, c.getMedian());
+        Grids_ChunkIteratorIntMapASpatial ite
+                = new Grids_ChunkIteratorIntMapASpatial(c);
+        int n = 0;
+        long sum = 0L;
+        while (ite.hasNext()) {
+            int v = ite.next();
+            if (v != ndv) {
+                sum += v;
+            }
+            n++;
+        }
+        assertEquals(130, n);
+        assertEquals(3L, sum);
+        Path p = Files.createTempFile(null, null);
+        Grids_ChunkIO.write(c, p);
+        Grids_ChunkIntMap c2 = (Grids_ChunkIntMap) Grids_ChunkIO.read(g, i, p);
+        assertEquals(4, c2.getNumberOfValuesStored());
+        for (int r = 0; r < 10; r++) {
+            for (int col = 0; col < 13; col++) {
+                assertEquals(c.getCell(r, col), c2.getCell(r, col));
+            }
+        }
+        Files.delete(p);
+        // A map chunk with the noDataValue as the default value.
+        Grids_GridDouble gd = (Grids_GridDouble) gp.gridFactoryDouble.create(
+                10, 13);
+        Grids_ChunkDoubleMap cd = new Grids_ChunkFactoryDoubleMap().create(gd,
+                i, gd.getNoDataValue());
+        cd.setCell(6, 7, 4d);
+        cd.setCell(0, 1, 1d);
+        cd.setCell(4, 5, 2d);
+        cd.setCell(2, 3, 3d);
+        assertEquals(4L, (long) cd.getN());
+        assertEquals(2.5d, cd.getMedian());
+        assertEquals(1d, (double) cd.getMin());
+        assertEquals(4d, (double) cd.getMax());
+        assertEquals(0, new BigDecimal("10").compareTo(cd.getSum()));
+        assertTrue(cd.getMemoryFootprint() < new Grids_ChunkFactoryDoubleArray()
+                .create(cd, i)
+                .getMemoryFootprint());
+    }
+}
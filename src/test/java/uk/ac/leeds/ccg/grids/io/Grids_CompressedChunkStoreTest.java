@@ -0,0 +1,116 @@
+/*
+ * Copyright 2020 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.grids.io;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import uk.ac.leeds.ccg.generic.core.Generic_Environment;
+import uk.ac.leeds.ccg.generic.io.Generic_Defaults;
+import uk.ac.leeds.ccg.generic.io.Generic_Path;
+import uk.ac.leeds.ccg.grids.core.Grids_Environment;
+import uk.ac.leeds.ccg.grids.core.Grids_Strings;
+import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
+import uk.ac.leeds.ccg.grids.d2.grid.d.Grids_GridDouble;
+import uk.ac.leeds.ccg.grids.process.Grids_Processor;
+
+/**
+ * Tests for {@link Grids_CompressedChunkStore}.
+ *
+ * @author Andy Turner
+ * @version 1.0.0
+ */
+public class Grids_CompressedChunkStoreTest {
+
+    Generic_Environment env;
+    Grids_Environment ge;
+    Grids_Processor gp;
+
+    public Grids_CompressedChunkStoreTest() {
+    }
+
+    @BeforeAll
+    public static void setUpClass() {
+    }
+
+    @AfterAll
+    public static void tearDownClass() {
+    }
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        Path dataDir = Paths.get(System.getProperty("user.home"),
+                Grids_Strings.s_data);
+        env = new Generic_Environment(new Generic_Defaults(
+                Paths.get(dataDir.toString(), Grids_Strings.s_generic)));
+        Generic_Path dir = new Generic_Path(dataDir);
+        ge = new Grids_Environment(env, dir);
+        gp = new Grids_Processor(ge);
+    }
+
+    @AfterEach
+    public void tearDown() {
+    }
+
+    /**
+     * Test that a swapped chunk of smoothly varying values is held compressed
+     * rather than written, that it is loaded from the store and that it is
+     * written when spilled.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testStoreTakeSpill() throws Exception {
+        System.out.println("storeTakeSpill");
+        gp.gridFactoryDouble.setChunkNRows(32);
+        gp.gridFactoryDouble.setChunkNCols(32);
+        Grids_GridDouble g = (Grids_GridDouble) gp.gridFactoryDouble.create(64,
+                64);
+        for (int r = 0; r < 64; r++) {
+            for (int c = 0; c < 64; c++) {
+                g.setCell(r, c, 100d + r * 0.25d + c * 0.5d);
+            }
+        }
+        ge.initNotToClear();
+        ge.setCompressedStore(1L << 20, 2d);
+        Grids_CompressedChunkStore s = ge.getCompressedStore();
+        Grids_2D_ID_int i = new Grids_2D_ID_int(0, 1);
+        boolean file = g.isChunkFile(i);
+        assertTrue(g.swapChunk(i));
+        assertFalse(g.isLoaded(i));
+        assertTrue(s.contains(g, i));
+        assertEquals(file, g.isChunkFile(i));
+        assertTrue(s.getCompressionRatio() > 2d);
+        assertEquals(100.25d + 40 * 0.5d, g.getCell(1, 40));
+        assertEquals(1L, s.getTaken());
+        assertFalse(s.contains(g, i));
+        // Spill the changed chunk to file.
+        g.setCell(2, 33, -1d);
+        assertTrue(g.swapChunk(i));
+        assertTrue(s.spill());
+        assertEquals(0L, s.getSize());
+        assertTrue(g.isChunkFile(i));
+        assertEquals(-1d, g.getCell(2, 33));
+        assertEquals(100.5d + 63 * 0.5d, g.getCell(2, 63));
+        ge.setCompressedStore(0L, 2d);
+        assertNull(ge.getCompressedStore());
+    }
+}
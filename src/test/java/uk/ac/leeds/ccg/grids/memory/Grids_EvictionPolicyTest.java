@@ -0,0 +1,312 @@
+/*
+ * Copyright 2020 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.grids.memory;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import uk.ac.leeds.ccg.generic.core.Generic_Environment;
+import uk.ac.leeds.ccg.generic.io.Generic_Defaults;
+import uk.ac.leeds.ccg.generic.io.Generic_Path;
+import uk.ac.leeds.ccg.grids.core.Grids_Environment;
+import uk.ac.leeds.ccg.grids.core.Grids_Strings;
+import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
+import uk.ac.leeds.ccg.grids.d2.chunk.Grids_Chunk;
+import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkDoubleMap;
+import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkFactoryDouble;
+import uk.ac.leeds.ccg.grids.d2.chunk.d.Grids_ChunkFactoryDoubleMap;
+import uk.ac.leeds.ccg.grids.d2.grid.d.Grids_GridDouble;
+import uk.ac.leeds.ccg.grids.d2.grid.d.Grids_GridFactoryDouble;
+import uk.ac.leeds.ccg.grids.process.Grids_Processor;
+
+/**
+ * Tests for {@link Grids_EvictionPolicy} and its subclasses.
+ *
+ * @author Andy Turner
+ * @version 1.0.0
+ */
+public class Grids_EvictionPolicyTest {
+
+    Generic_Environment env;
+    Grids_Environment ge;
+    Grids_Processor gp;
+
+    public Grids_EvictionPolicyTest() {
+    }
+
+    @BeforeAll
+    public static void setUpClass() {
+    }
+
+    @AfterAll
+    public static void tearDownClass() {
+    }
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        Path dataDir = Paths.get(System.getProperty("user.home"),
+                Grids_Strings.s_data);
+        env = new Generic_Environment(new Generic_Defaults(
+                Paths.get(dataDir.toString(), Grids_Strings.s_generic)));
+        Generic_Path dir = new Generic_Path(dataDir);
+        ge = new Grids_Environment(env, dir);
+        gp = new Grids_Processor(ge);
+    }
+
+    @AfterEach
+    public void tearDown() {
+    }
+
+    /**
+     * @param n The number of rows and columns.
+     * @return A grid with {@code n} rows and columns in chunks of 2 rows and 2
+     * columns with all cells set to different values.
+     */
+    private Grids_GridDouble getGrid(int n) throws Exception {
+        gp.gridFactoryDouble.setChunkNRows(2);
+        gp.gridFactoryDouble.setChunkNCols(2);
+        Grids_GridDouble r = (Grids_GridDouble) gp.gridFactoryDouble.create(n,
+                n);
+        for (int row = 0; row < n; row++) {
+            for (int col = 0; col < n; col++) {
+                r.setCell(row, col, row * n + col);
+            }
+        }
+        ge.initNotToClear();
+        return r;
+    }
+
+    /**
+     * Test that the least recently used chunk is swapped and that hits,
+     * misses and evictions are counted.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testLRU() throws Exception {
+        System.out.println("LRU");
+        Grids_GridDouble g = getGrid(4);
+        Grids_EvictionPolicy p = new Grids_EvictionPolicyLRU();
+        ge.setEvictionPolicy(p);
+        assertSame(p, ge.getEvictionPolicy());
+        assertEquals(4, p.size());
+        long t = p.getTime();
+        g.getChunk(new Grids_2D_ID_int(0, 1));
+        g.getChunk(new Grids_2D_ID_int(1, 0));
+        g.getChunk(new Grids_2D_ID_int(1, 1));
+        g.getChunk(new Grids_2D_ID_int(0, 0));
+        g.getChunk(new Grids_2D_ID_int(0, 1));
+        // Hits do not advance the clock, so (0, 1) is ordered by its first
+        // access.
+        assertEquals(t, p.getTime());
+        assertEquals(5L, p.getHits());
+        assertEquals(0L, p.getMisses());
+        assertTrue(ge.swapChunk(false));
+        assertEquals(1L, p.getEvictions());
+        assertEquals(3, p.size());
+        assertFalse(g.isLoaded(new Grids_2D_ID_int(0, 1)));
+        assertTrue(g.isLoaded(new Grids_2D_ID_int(0, 0)));
+        assertEquals(2d, g.getCell(0, 2));
+        assertEquals(1L, p.getMisses());
+        assertTrue(g.isLoaded(new Grids_2D_ID_int(0, 1)));
+        assertEquals(4, p.size());
+        // The clock has advanced so this moves (1, 0) to the end.
+        g.getChunk(new Grids_2D_ID_int(1, 0));
+        // (1, 1) is now the least recently used.
+        assertTrue(ge.swapChunk(false));
+        assertFalse(g.isLoaded(new Grids_2D_ID_int(1, 1)));
+        assertTrue(g.isLoaded(new Grids_2D_ID_int(1, 0)));
+        p.resetCounts();
+        assertEquals(0L, p.getEvictions());
+    }
+
+    /**
+     * Test of select method, of class Grids_EvictionPolicyClock.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testClock() throws Exception {
+        System.out.println("Clock");
+        Grids_GridDouble g = getGrid(4);
+        Grids_EvictionPolicy p = new Grids_EvictionPolicyClock();
+        ge.setEvictionPolicy(p);
+        List<Grids_Chunk> cs = new ArrayList<>();
+        cs.add(g.getChunk(new Grids_2D_ID_int(0, 0)));
+        cs.add(g.getChunk(new Grids_2D_ID_int(0, 1)));
+        cs.add(g.getChunk(new Grids_2D_ID_int(1, 0)));
+        // Put the chunks in cs at the end of the ring in order.
+        cs.forEach(c -> {
+            p.removed(c);
+            p.added(c);
+        });
+        // All are referenced so the first sweep clears them all.
+        assertSame(cs.get(0), p.select(cs::contains));
+        g.getChunk(new Grids_2D_ID_int(0, 1));
+        // (0, 1) gets a second chance.
+        assertSame(cs.get(2), p.select(cs::contains));
+        assertFalse(cs.get(1).isReferenced());
+        // The hand carries on from where it stopped.
+        assertSame(cs.get(0), p.select(cs::contains));
+        assertSame(cs.get(1), p.select(cs::contains));
+        assertNull(p.select(c -> false));
+    }
+
+    /**
+     * Test of select method, of class Grids_EvictionPolicySize.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testSize() throws Exception {
+        System.out.println("Size");
+        // Chunk (2, 2) has just one cell.
+        Grids_GridDouble g = getGrid(5);
+        Grids_EvictionPolicy lru = new Grids_EvictionPolicyLRU();
+        ge.setEvictionPolicy(lru);
+        List<Grids_Chunk> cs = new ArrayList<>();
+        cs.add(g.getChunk(new Grids_2D_ID_int(2, 2)));
+        cs.add(g.getChunk(new Grids_2D_ID_int(0, 0)));
+        assertSame(cs.get(0), lru.select(cs::contains));
+        assertTrue(cs.get(0).getMemoryFootprint()
+                < cs.get(1).getMemoryFootprint());
+        Grids_EvictionPolicy size = new Grids_EvictionPolicySize();
+        ge.setEvictionPolicy(size);
+        g.getChunk(new Grids_2D_ID_int(2, 2));
+        g.getChunk(new Grids_2D_ID_int(0, 0));
+        assertSame(cs.get(1), size.select(cs::contains));
+        // Only the first candidate is scored.
+        Grids_EvictionPolicy size1 = new Grids_EvictionPolicySize(1);
+        ge.setEvictionPolicy(size1);
+        g.getChunk(new Grids_2D_ID_int(2, 2));
+        g.getChunk(new Grids_2D_ID_int(0, 0));
+        assertSame(cs.get(0), size1.select(cs::contains));
+    }
+
+    /**
+     * Test that chunks are accounted for and swapped to keep within the
+     * memory budget of the environment.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testMemoryBudget() throws Exception {
+        System.out.println("MemoryBudget");
+        long used0 = ge.getMemoryUsed();
+        Grids_GridDouble g = getGrid(4);
+        long used = ge.getMemoryUsed() - used0;
+        long sum = 0L;
+        for (int cr = 0; cr < 2; cr++) {
+            for (int cc = 0; cc < 2; cc++) {
+                Grids_Chunk c = g.getChunk(new Grids_2D_ID_int(cr, cc));
+                assertEquals(c.getMemoryFootprint(), c.getAccountedMemory());
+                sum += c.getAccountedMemory();
+            }
+        }
+        assertEquals(sum, used);
+        ge.setMemoryBudget(ge.getMemoryUsed() - 1L);
+        assertFalse(ge.isMemoryLow());
+        assertTrue(ge.getMemoryUsed() <= ge.getMemoryBudget());
+        assertEquals(1L, ge.getEvictionPolicy().getEvictions());
+        // Getting each cell loads any swapped chunk.
+        for (int row = 0; row < 4; row++) {
+            for (int col = 0; col < 4; col++) {
+                assertEquals(row * 4 + col, g.getCell(row, col));
+                ge.checkAndMaybeFreeMemory();
+                assertTrue(ge.getMemoryUsed() <= ge.getMemoryBudget());
+            }
+        }
+        ge.awaitWrites();
+        g.clearChunks();
+        assertEquals(used0, ge.getMemoryUsed());
+        ge.setMemoryBudget(0L);
+        assertEquals(0L, ge.getMemoryBudget());
+    }
+
+    /**
+     * Test that a chunk storing values in a map is accounted for afresh as it
+     * grows.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testMemoryBudgetMapChunk() throws Exception {
+        System.out.println("MemoryBudgetMapChunk");
+        long used0 = ge.getMemoryUsed();
+        Grids_GridFactoryDouble gfd = ge.getProcessor().gridFactoryDouble;
+        Grids_ChunkFactoryDouble dcf = gfd.defaultGridChunkDoubleFactory;
+        gfd.setDefaultChunkFactory(new Grids_ChunkFactoryDoubleMap());
+        gfd.setChunkNRows(8);
+        gfd.setChunkNCols(8);
+        Grids_GridDouble g = (Grids_GridDouble) gfd.create(8, 8);
+        Grids_2D_ID_int i = new Grids_2D_ID_int(0, 0);
+        g.setCell(0, 0, 1d);
+        Grids_Chunk c = g.getChunk(i);
+        assertTrue(c instanceof Grids_ChunkDoubleMap);
+        long m = c.getMemoryFootprint();
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                g.setCell(row, col, row * 8 + col + 1);
+            }
+        }
+        assertSame(c, g.getChunk(i));
+        assertTrue(c.getMemoryFootprint() > m);
+        assertEquals(c.getMemoryFootprint(), c.getAccountedMemory());
+        assertEquals(c.getMemoryFootprint(), ge.getMemoryUsed() - used0);
+        ((Grids_ChunkDoubleMap) c).trimToSize();
+        assertEquals(c.getMemoryFootprint(), ge.getMemoryUsed() - used0);
+        g.clearChunks();
+        assertEquals(used0, ge.getMemoryUsed());
+        gfd.setDefaultChunkFactory(dcf);
+    }
+
+    /**
+     * Test that checking memory returns when there is nothing that can be
+     * swapped rather than trying again.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testMemoryBudgetPinned() throws Exception {
+        System.out.println("MemoryBudgetPinned");
+        Grids_GridDouble g = getGrid(4);
+        Grids_2D_ID_int i = new Grids_2D_ID_int(0, 0);
+        for (Grids_2D_ID_int j : g.getChunkIDs()) {
+            g.pin(j);
+        }
+        ge.setMemoryBudget(1L);
+        assertTrue(ge.isMemoryLow());
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            assertThrows(OutOfMemoryError.class,
+                    () -> ge.checkAndMaybeFreeMemory(g, i, false));
+            assertThrows(OutOfMemoryError.class,
+                    () -> ge.checkAndMaybeFreeMemory_Account(g, i, false));
+        });
+        assertTrue(g.isLoaded(i));
+        for (Grids_2D_ID_int j : g.getChunkIDs()) {
+            g.unpin(j);
+        }
+        ge.setMemoryBudget(0L);
+    }
+}
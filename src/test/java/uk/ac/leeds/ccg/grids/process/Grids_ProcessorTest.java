@@ -19,7 +19,10 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Assertions;
@@ -33,10 +36,17 @@ import uk.ac.leeds.ccg.generic.io.Generic_FileStore;
 import uk.ac.leeds.ccg.generic.io.Generic_Path;
 import uk.ac.leeds.ccg.grids.core.Grids_Environment;
 import uk.ac.leeds.ccg.grids.core.Grids_Strings;
+import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
 import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_long;
+import uk.ac.leeds.ccg.grids.d2.chunk.b.Grids_ChunkBinarySinglet;
+import uk.ac.leeds.ccg.grids.d2.chunk.b.Grids_ChunkBooleanSinglet;
 import uk.ac.leeds.ccg.grids.d2.grid.Grids_Dimensions;
 import uk.ac.leeds.ccg.grids.d2.grid.Grids_Grid;
 import uk.ac.leeds.ccg.grids.d2.grid.Grids_GridNumber;
+import uk.ac.leeds.ccg.grids.d2.grid.b.Grids_GridBinary;
+import uk.ac.leeds.ccg.grids.d2.grid.b.Grids_GridBoolean;
+import uk.ac.leeds.ccg.grids.d2.grid.b.Grids_GridFactoryBinary;
+import uk.ac.leeds.ccg.grids.d2.grid.b.Grids_GridFactoryBoolean;
 import uk.ac.leeds.ccg.grids.d2.grid.bd.Grids_GridBD;
 import uk.ac.leeds.ccg.grids.d2.grid.bd.Grids_GridFactoryBD;
 import uk.ac.leeds.ccg.grids.d2.grid.d.Grids_GridDouble;
@@ -151,6 +161,34 @@ public class Grids_ProcessorTest {
         assertTrue(equal);
     }
 
+    /**
+     * Test of mask method, of class Grids_Processor, for a grid of
+     * BigDecimal values.
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testMaskBigDecimal() throws Exception {
+        System.out.println("maskBigDecimal");
+        Grids_GridFactoryBD gf = gp.gridFactoryBD;
+        Grids_GridBD g = (Grids_GridBD) gf.create(2, 3);
+        //g.setCell(0, 0, BigDecimal.ONE);
+        g.setCell(0, 1, BigDecimal.ONE);
+        g.setCell(0, 2, new BigDecimal("2.50"));
+        g.setCell(1, 0, new BigDecimal("3"));
+        g.setCell(1, 1, new BigDecimal("3.01"));
+        g.setCell(1, 2, new BigDecimal("2.4999"));
+        Grids_GridBD er = (Grids_GridBD) gf.create(2, 3);
+        er.setCell(0, 1, BigDecimal.ONE);
+        er.setCell(1, 1, new BigDecimal("3.01"));
+        er.setCell(1, 2, new BigDecimal("2.4999"));
+        gp.mask(g, new BigDecimal("2.5"), new BigDecimal("3.00"));
+        assertTrue(g.isSameDimensionsAndValues(er));
+        BigDecimal ndv = g.getNoDataValue();
+        assertEquals(0, ndv.compareTo(g.getCell(0, 2)));
+        assertEquals(0, ndv.compareTo(g.getCell(1, 0)));
+        assertEquals(3L, g.getStats().getN());
+    }
+
 //    /**
 //     * Test of mask method, of class Grids_Processor.
 //     */
@@ -490,6 +528,10 @@ public class Grids_ProcessorTest {
         //System.out.println("er");
         //er.log(maxNrowsToPrint, maxNcolsToPrint);
         Grids_GridNumber r = gp.multiply(type, g0, g1, dp, rm);
+        assertEquals(3.0d * 0.6d, ((Grids_GridDouble) r).getCell(1, 2));
+        // 3.0 * 0.6 is 1.8 only if BigDecimal arithmetic is used.
+        gp.setExact(true);
+        r = gp.multiply(type, g0, g1, dp, rm);
         //r.log(maxNrowsToPrint, maxNcolsToPrint);
         boolean equal = r.isSameDimensionsAndValues(er);
         assertTrue(equal);
@@ -789,6 +831,7 @@ public class Grids_ProcessorTest {
 //        r.log(maxNrowsToPrint, maxNcolsToPrint);
         equal = r.isSameDimensionsAndValues(er);
         assertTrue(equal);
+        gp.setExact(false);
     }
 
     /**
@@ -1453,6 +1496,416 @@ public class Grids_ProcessorTest {
         assertTrue(equal);        
     }
 
+    /**
+     * Test that addToGrid, mask and divide give the same results processing
+     * chunks in parallel as processing them one at a time.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testChunkParallel() throws Exception {
+        System.out.println("chunkParallel");
+        Grids_GridFactoryDouble gfd = gp.gridFactoryDouble;
+        gfd.setChunkNRows(3);
+        gfd.setChunkNCols(3);
+        Grids_GridDouble[] rs = new Grids_GridDouble[2];
+        int[] ns = {1, 4};
+        for (int k = 0; k < 2; k++) {
+            gp.setParallelism(ns[k]);
+            assertEquals(ns[k], gp.getChunkExecutor().getParallelism());
+            Grids_GridDouble g0 = (Grids_GridDouble) gfd.create(10, 10);
+            Grids_GridDouble g1 = (Grids_GridDouble) gfd.create(10, 10);
+            for (int r = 0; r < 10; r++) {
+                for (int c = 0; c < 10; c++) {
+                    g0.setCell(r, c, r * 10 + c);
+                    if (c != 5) {
+                        g1.setCell(r, c, c);
+                    }
+                }
+            }
+            gp.addToGrid(g0, BigDecimal.ONE);
+            assertEquals(100d, g0.getCell(9, 9));
+            gp.mask(g0, BigDecimal.valueOf(11), BigDecimal.valueOf(20));
+            assertEquals(g0.getNoDataValue(), g0.getCell(1, 0));
+            assertEquals(21d, g0.getCell(2, 0));
+            rs[k] = gp.divide(g0, g1);
+            assertEquals(100d / 9d, rs[k].getCell(9, 9));
+        }
+        assertTrue(rs[0].isSameDimensionsAndValues(rs[1]));
+        gp.getChunkExecutor().shutdown();
+    }
+
+    /**
+     * Test that processing with double arithmetic gives the same results as
+     * processing with BigDecimal arithmetic.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testExact() throws Exception {
+        System.out.println("exact");
+        Grids_GridFactoryDouble gfd = gp.gridFactoryDouble;
+        gfd.setChunkNRows(3);
+        gfd.setChunkNCols(3);
+        Grids_GridNumber[] rs = new Grids_GridNumber[2];
+        boolean[] exacts = {false, true};
+        for (int k = 0; k < 2; k++) {
+            gp.setExact(exacts[k]);
+            assertEquals(exacts[k], gp.isExact());
+            Grids_GridDouble g0 = (Grids_GridDouble) gfd.create(10, 10);
+            Grids_GridDouble g1 = (Grids_GridDouble) gfd.create(10, 10);
+            for (int r = 0; r < 10; r++) {
+                for (int c = 0; c < 10; c++) {
+                    g0.setCell(r, c, r * 10 + c);
+                    if (c != 5) {
+                        g1.setCell(r, c, c);
+                    }
+                }
+            }
+            gp.addToGrid(g0, BigDecimal.valueOf(0.5d));
+            assertEquals(99.5d, g0.getCell(9, 9));
+            gp.mask(g0, BigDecimal.valueOf(11), BigDecimal.valueOf(20));
+            assertEquals(g0.getNoDataValue(), g0.getCell(1, 1));
+            assertEquals(21.5d, g0.getCell(2, 1));
+            gp.addToGrid(g0, g1, BigDecimal.valueOf(2), 10,
+                    RoundingMode.HALF_UP);
+            assertEquals(117.5d, g0.getCell(9, 9));
+            rs[k] = gp.multiply(0d, g0, g1, 10, RoundingMode.HALF_UP);
+            assertEquals(117.5d * 9d,
+                    ((Grids_GridDouble) rs[k]).getCell(9, 9));
+        }
+        assertTrue(rs[0].isSameDimensionsAndValues(rs[1]));
+        gp.setExact(false);
+    }
+
+    /**
+     * Test that regionUnivariateStatistics of class Grids_ProcessorGWS gives
+     * the same results getting weighted sums by FFT convolution as by direct
+     * summation for a grid with chunks that are not square and cells with no
+     * data. The results are taken to be the same if they differ by no more
+     * than {@code 1E4} times {@link Grids_FFTConvolution#TOLERANCE} relative
+     * to the larger of {@code 1} and the magnitude of the direct result.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testRegionUnivariateStatisticsFFT() throws Exception {
+        System.out.println("regionUnivariateStatisticsFFT");
+        Grids_ProcessorGWS gws = new Grids_ProcessorGWS(ge);
+        Grids_GridFactoryDouble gfd = gws.gridFactoryDouble;
+        gfd.setChunkNRows(4);
+        gfd.setChunkNCols(9);
+        int nRows = 19;
+        int nCols = 31;
+        Grids_GridDouble g = (Grids_GridDouble) gfd.create(nRows, nCols);
+        for (int r = 0; r < nRows; r++) {
+            for (int c = 0; c < nCols; c++) {
+                if ((r * c) % 7 != 3 && !(r > 4 && r < 9 && c > 10 && c < 15)) {
+                    g.setCell(r, c, ((r * 31 + c * 17) % 23) * 0.5d + r * 0.1d);
+                }
+            }
+        }
+        List<String> stats = Arrays.asList("WSum", "NWSum", "WSumN", "WMean1",
+                "WMean2", "NWMean", "WMeanN", "WeightedSecondOrder");
+        BigDecimal distance = BigDecimal.valueOf(2);
+        List<List<Grids_GridNumber>> rs = new ArrayList<>();
+        Boolean[] useFFTs = {Boolean.TRUE, Boolean.FALSE};
+        for (Boolean useFFT : useFFTs) {
+            gws.setUseFFT(useFFT);
+            assertEquals(useFFT, gws.getUseFFT());
+            rs.add(gws.regionUnivariateStatistics(g, stats, distance,
+                    BigDecimal.ONE, 1, gfd, 10, RoundingMode.HALF_UP));
+        }
+        assertEquals(rs.get(1).size(), rs.get(0).size());
+        for (int i = 0; i < rs.get(0).size(); i++) {
+            Grids_GridDouble f = (Grids_GridDouble) rs.get(0).get(i);
+            Grids_GridDouble e = (Grids_GridDouble) rs.get(1).get(i);
+            assertEquals(e.getName(), f.getName());
+            double ndv = e.getNoDataValue();
+            for (int r = 0; r < nRows; r++) {
+                for (int c = 0; c < nCols; c++) {
+                    double ev = e.getCell(r, c);
+                    double fv = f.getCell(r, c);
+                    if (ev == ndv) {
+                        assertEquals(ndv, fv, e.getName());
+                    } else {
+                        double tol = 1E4 * Grids_FFTConvolution.TOLERANCE
+                                * Math.max(1.0d, Math.abs(ev));
+                        assertEquals(ev, fv, tol, e.getName());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Test of and, or, xor, andNot and not methods, of class Grids_Processor.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testLogical() throws Exception {
+        System.out.println("logical");
+        Grids_GridFactoryBinary gfb = gp.gridFactoryBinary;
+        Grids_GridFactoryBoolean gfo = gp.gridFactoryBoolean;
+        Grids_GridBinary[] bs = new Grids_GridBinary[3];
+        Grids_GridBoolean[] os = new Grids_GridBoolean[3];
+        // Chunks of 81 cells span two longs. The third grids have different
+        // chunks so are combined cell by cell.
+        int[] cns = {9, 9, 7};
+        for (int k = 0; k < 3; k++) {
+            gfb.setChunkNRows(cns[k]);
+            gfb.setChunkNCols(cns[k]);
+            gfo.setChunkNRows(cns[k]);
+            gfo.setChunkNCols(cns[k]);
+            bs[k] = (Grids_GridBinary) gfb.create(20, 20);
+            os[k] = (Grids_GridBoolean) gfo.create(20, 20);
+            for (int r = 0; r < 20; r++) {
+                for (int c = 0; c < 20; c++) {
+                    boolean v = k == 0 ? (r + c) % 3 == 0 : (r * c) % 2 == 0;
+                    bs[k].setCell(r, c, v);
+                    if ((r * c + k) % 5 != 1) {
+                        os[k].setCell(r, c, v);
+                    }
+                }
+            }
+        }
+        // Singlet chunks.
+        Grids_2D_ID_int i = new Grids_2D_ID_int(1, 1);
+        bs[1].setChunk(i, new Grids_ChunkBinarySinglet(bs[1], i, true));
+        os[1].setChunk(i, new Grids_ChunkBooleanSinglet(os[1], i, false));
+        i = new Grids_2D_ID_int(0, 1);
+        bs[0].setChunk(i, new Grids_ChunkBinarySinglet(bs[0], i, false));
+        os[0].setChunk(i, new Grids_ChunkBooleanSinglet(os[0], i, null));
+        for (int k = 1; k < 3; k++) {
+            Grids_GridBinary[] br = {gp.and(bs[0], bs[k]),
+                gp.or(bs[0], bs[k]), gp.xor(bs[0], bs[k]),
+                gp.andNot(bs[0], bs[k]), gp.not(bs[k])};
+            Grids_GridBoolean[] or = {gp.and(os[0], os[k]),
+                gp.or(os[0], os[k]), gp.xor(os[0], os[k]),
+                gp.andNot(os[0], os[k]), gp.not(os[k])};
+            long n = 0;
+            for (int r = 0; r < 20; r++) {
+                for (int c = 0; c < 20; c++) {
+                    boolean b0 = bs[0].getCell(r, c);
+                    boolean b1 = bs[k].getCell(r, c);
+                    assertEquals(b0 & b1, br[0].getCell(r, c));
+                    assertEquals(b0 | b1, br[1].getCell(r, c));
+                    assertEquals(b0 ^ b1, br[2].getCell(r, c));
+                    assertEquals(b0 & !b1, br[3].getCell(r, c));
+                    assertEquals(!b1, br[4].getCell(r, c));
+                    if (b0 & b1) {
+                        n++;
+                    }
+                    Boolean o0 = os[0].getCell(r, c);
+                    Boolean o1 = os[k].getCell(r, c);
+                    if (o0 == null || o1 == null) {
+                        for (int j = 0; j < 4; j++) {
+                            assertNull(or[j].getCell(r, c));
+                        }
+                    } else {
+                        assertEquals(o0 & o1, or[0].getCell(r, c));
+                        assertEquals(o0 | o1, or[1].getCell(r, c));
+                        assertEquals(o0 ^ o1, or[2].getCell(r, c));
+                        assertEquals(o0 & !o1, or[3].getCell(r, c));
+                    }
+                    assertEquals(o1 == null ? null : !o1, or[4].getCell(r, c));
+                }
+            }
+            assertEquals(n, br[0].getStats().getN());
+        }
+        // Where g0 has a false singlet, the result of and is a singlet.
+        assertTrue(gp.and(bs[0], bs[1]).getChunk(i)
+                instanceof Grids_ChunkBinarySinglet);
+    }
+
+    /**
+     * Test that a kernel run using a Grids_Stencil gets the same values
+     * across chunk and grid edges as getting them cell by cell.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testStencil() throws Exception {
+        System.out.println("stencil");
+        Grids_GridFactoryDouble gfd = gp.gridFactoryDouble;
+        gfd.setChunkNRows(3);
+        gfd.setChunkNCols(4);
+        Grids_GridDouble g = (Grids_GridDouble) gfd.create(10, 11);
+        for (int r = 0; r < 10; r++) {
+            for (int c = 0; c < 11; c++) {
+                if ((r * c) % 7 != 3) {
+                    g.setCell(r, c, r * 11 + c);
+                }
+            }
+        }
+        int halo = 4;
+        double ndv = g.getNoDataValue();
+        gp.setParallelism(4);
+        Grids_GridDouble sum = (Grids_GridDouble) gfd.create(10, 11);
+        Grids_GridDouble n = (Grids_GridDouble) gfd.create(10, 11);
+        // The chunks around each chunk processed are read ahead. How many
+        // reads are issued depends on timing so only the results are tested.
+        g.swapChunks();
+        ge.awaitWrites();
+        ge.setPrefetch(1, 0, 64);
+        new Grids_Stencil(gp).run(g, halo, (b, r, c, out) -> {
+            out[0] = 0d;
+            out[1] = 0d;
+            for (int p = -halo; p <= halo; p++) {
+                for (int q = -halo; q <= halo; q++) {
+                    double v = b.get(r + p, c + q);
+                    if (!Double.isNaN(v)) {
+                        out[0] += v;
+                        out[1]++;
+                    }
+                }
+            }
+        }, sum, n);
+        for (int r = 0; r < 10; r++) {
+            for (int c = 0; c < 11; c++) {
+                if (g.getCell(r, c) == ndv) {
+                    assertEquals(ndv, sum.getCell(r, c));
+                } else {
+                    double s = 0d;
+                    double m = 0d;
+                    for (int p = -halo; p <= halo; p++) {
+                        for (int q = -halo; q <= halo; q++) {
+                            double v = g.getCell(r + p, c + q);
+                            if (v != ndv) {
+                                s += v;
+                                m++;
+                            }
+                        }
+                    }
+                    assertEquals(s, sum.getCell(r, c));
+                    assertEquals(m, n.getCell(r, c));
+                }
+            }
+        }
+        ge.setPrefetch(0, 0, 0);
+        gp.getChunkExecutor().shutdown();
+    }
+
+    /**
+     * Test that window sums got from a Grids_SummedAreaTable are the same as
+     * summing the values in the window.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testSummedAreaTable() throws Exception {
+        System.out.println("summedAreaTable");
+        Grids_GridFactoryDouble gfd = gp.gridFactoryDouble;
+        gfd.setChunkNRows(3);
+        gfd.setChunkNCols(4);
+        Grids_GridDouble g = (Grids_GridDouble) gfd.create(10, 11);
+        for (int r = 0; r < 10; r++) {
+            for (int c = 0; c < 11; c++) {
+                if ((r * c) % 7 != 3) {
+                    g.setCell(r, c, 100d + (r * 11 + c) % 13);
+                }
+            }
+        }
+        double ndv = g.getNoDataValue();
+        Grids_SummedAreaTable sat = new Grids_SummedAreaTable(gp, g, 3);
+        double shift = sat.getShift();
+        double[] sums = new double[4];
+        int[] ds = {0, 1, 2, 5, 20};
+        try (Grids_SummedAreaTable.Reader sr = sat.getReader()) {
+            for (int d : ds) {
+                for (int r = 0; r < 10; r++) {
+                    for (int c = 0; c < 11; c++) {
+                        double[] e = new double[4];
+                        for (int p = r - d; p <= r + d; p++) {
+                            for (int q = c - d; q <= c + d; q++) {
+                                double v = g.getCell(p, q);
+                                if (v != ndv) {
+                                    double y = v - shift;
+                                    e[0]++;
+                                    e[1] += y;
+                                    e[2] += y * y;
+                                    e[3] += y * y * y;
+                                }
+                            }
+                        }
+                        sr.getSums(r - d, c - d, r + d, c + d, sums);
+                        assertArrayEquals(e, sums, 1E-6);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Test of Grids_FFTConvolution.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testFFTConvolution() throws Exception {
+        System.out.println("fftConvolution");
+        Grids_GridFactoryDouble gfd = gp.gridFactoryDouble;
+        gfd.setChunkNRows(3);
+        gfd.setChunkNCols(4);
+        Grids_GridDouble g = (Grids_GridDouble) gfd.create(10, 11);
+        for (int r = 0; r < 10; r++) {
+            for (int c = 0; c < 11; c++) {
+                if ((r * c) % 7 != 3) {
+                    g.setCell(r, c, 100d + (r * 11 + c) % 13);
+                }
+            }
+        }
+        double ndv = g.getNoDataValue();
+        int kd = 3;
+        double[][] w = new double[2 * kd + 1][2 * kd + 1];
+        for (int p = 0; p < w.length; p++) {
+            for (int q = 0; q < w.length; q++) {
+                w[p][q] = (p * w.length + q) % 5;
+            }
+        }
+        Grids_FFTConvolution conv = new Grids_FFTConvolution(w, 3, 4, 4);
+        Grids_GridDouble sum = (Grids_GridDouble) gfd.create(10, 11);
+        Grids_GridDouble sumWeight = (Grids_GridDouble) gfd.create(10, 11);
+        gp.setParallelism(3);
+        int n = conv.getBufferLength();
+        new Grids_Stencil(gp).runChunks(new Grids_GridNumber[]{g}, 4, false,
+                () -> {
+            double[] a = new double[n];
+            double[] m = new double[n];
+            Grids_FFTConvolution.Workspace ws = conv.getWorkspace();
+            return (b, out) -> {
+                double[] data = b.getData(0);
+                for (int k = 0; k < n; k++) {
+                    boolean has = !Double.isNaN(data[k]);
+                    a[k] = has ? data[k] : 0.0d;
+                    m[k] = has ? 1.0d : 0.0d;
+                }
+                conv.convolve(a, m, out[0], out[1], ws);
+            };
+        }, sum, sumWeight);
+        gp.getChunkExecutor().shutdown();
+        for (int r = 0; r < 10; r++) {
+            for (int c = 0; c < 11; c++) {
+                double es = 0.0d;
+                double ec = 0.0d;
+                for (int p = -kd; p <= kd; p++) {
+                    for (int q = -kd; q <= kd; q++) {
+                        double v = g.getCell(r + p, c + q);
+                        if (v != ndv) {
+                            es += w[p + kd][q + kd] * v;
+                            ec += w[p + kd][q + kd];
+                        }
+                    }
+                }
+                assertEquals(es, sum.getCell(r, c),
+                        Grids_FFTConvolution.TOLERANCE * es);
+                assertEquals(ec, sumWeight.getCell(r, c),
+                        Grids_FFTConvolution.TOLERANCE * ec);
+            }
+        }
+    }
+
 //
 //    /**
 //     * Test of divide method, of class Grids_Processor.